@@ -20,8 +20,9 @@
 
 package org.matsim.api.core.v01;
 
-import java.util.Map;
+import java.util.Arrays;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import org.matsim.api.core.v01.network.Link;
 import org.matsim.api.core.v01.network.Node;
@@ -39,7 +40,7 @@ import org.matsim.vehicles.Vehicle;
  */
 public abstract class Id<T> implements Comparable<Id<T>> {
 
-	private final static Map<Class<?>, Map<String, Id<?>>> cache = new ConcurrentHashMap<Class<?>, Map<String, Id<?>>>();
+	private final static ConcurrentMap<Class<?>, Registry<?>> cache = new ConcurrentHashMap<Class<?>, Registry<?>>();
 	
 	
 	public static <T> Id<T> create(final long key, final Class<T> type) {
@@ -54,21 +55,113 @@ public abstract class Id<T> implements Comparable<Id<T>> {
 	}
 	
 	/**
-	 * This method supports a cache where ids are stored and re-used per type.   
+	 * This method supports a cache where ids are stored and re-used per type.
+	 * It may be called concurrently; the same instance is returned to all callers.
 	 */
 	public static <T> Id<T> create(final String key, final Class<T> type) {
-		Map<String, Id<?>> map = cache.get(type);
-		if (map == null) {
-			map = new ConcurrentHashMap<String, Id<?>>();
-			cache.put(type, map);
+		return registry(type).create(key);
+	}
+
+	/**
+	 * @return the id of the given type with the given index, see {@link #index()}.
+	 *
+	 * @throws IndexOutOfBoundsException if no id with this index was created so far
+	 */
+	public static <T> Id<T> get(final int index, final Class<T> type) {
+		return registry(type).get(index);
+	}
+
+	/**
+	 * @return the number of ids of the given type created so far, which is one more than the largest index.
+	 */
+	public static <T> int getNumberOfIds(final Class<T> type) {
+		return registry(type).size();
+	}
+
+	/**
+	 * @return the index of the id of the given type with the same key as the given id, see {@link #index()}. Unlike
+	 * {@link #index()}, this also works for ids which were not created by {@link #create(String, Class)}; the id
+	 * of the given type is created if necessary.
+	 */
+	public static <T> int getIndex(final Id<T> id, final Class<T> type) {
+		int index = id.index();
+		return index >= 0 ? index : create(id.toString(), type).index();
+	}
+
+	/**
+	 * @return a dense index of this id among all ids of the same type, starting at 0 in the order in which the ids
+	 * were created. It is meant for array-based data structures such as {@link IdMap} and {@link IdSet}.  Only the
+	 * ids created by {@link #create(String, Class)} have an index; ids of other subclasses return -1, see
+	 * {@link #getIndex(Id, Class)}.
+	 */
+	public int index() {
+		return -1;
+	}
+
+	/*package*/ static <T> Registry<T> registry(final Class<T> type) {
+		@SuppressWarnings("unchecked")
+		Registry<T> registry = (Registry<T>) cache.get(type);
+		if (registry == null) {
+			registry = new Registry<T>();
+			@SuppressWarnings("unchecked")
+			Registry<T> existing = (Registry<T>) cache.putIfAbsent(type, registry);
+			if (existing != null) {
+				registry = existing;
+			}
 		}
-		Id<?> id = map.get(key);
-		if (id == null) {
-			id = new IdImpl<T>(key);
-			map.put(key, id);
+		return registry;
+	}
+
+	/**
+	 * The ids of one type, by key and by index. Lookups of existing ids do not lock; new ids are created
+	 * under the lock of the registry so that the indices stay dense.
+	 */
+	/*package*/ static final class Registry<T> {
+
+		private final ConcurrentMap<String, Id<T>> ids = new ConcurrentHashMap<String, Id<T>>();
+		private volatile Id<?>[] byIndex = new Id<?>[16];
+		private volatile int size = 0;
+
+		/*package*/ Id<T> create(final String key) {
+			Id<T> id = this.ids.get(key);
+			if (id == null) {
+				synchronized (this) {
+					id = this.ids.get(key);
+					if (id == null) {
+						id = new IdImpl<T>(key, this.size);
+						Id<?>[] array = this.byIndex;
+						if (this.size == array.length) {
+							array = Arrays.copyOf(array, 2 * array.length);
+						}
+						array[this.size] = id;
+						// the volatile writes publish the new element to unsynchronized readers of get(int)
+						this.byIndex = array;
+						this.size++;
+						this.ids.put(key, id);
+					}
+				}
+			}
+			return id;
+		}
+
+		/**
+		 * @return the existing id with the given key, or <code>null</code>
+		 */
+		/*package*/ Id<T> find(final String key) {
+			return this.ids.get(key);
+		}
+
+		@SuppressWarnings("unchecked")
+		/*package*/ Id<T> get(final int index) {
+			if (index < 0 || index >= this.size) {
+				throw new IndexOutOfBoundsException("index " + index + ", number of ids " + this.size);
+			}
+			return (Id<T>) this.byIndex[index];
+		}
+
+		/*package*/ int size() {
+			return this.size;
 		}
-		
-		return (Id<T>) id;
 	}
 	
 	/**
@@ -111,9 +204,16 @@ public abstract class Id<T> implements Comparable<Id<T>> {
 	private static class IdImpl<T> extends Id<T> {
 
 		private final String id; 
+		private final int index;
 		
-		/*package*/ IdImpl(final String id) {
+		/*package*/ IdImpl(final String id, final int index) {
 			this.id = id;
+			this.index = index;
+		}
+
+		@Override
+		public int index() {
+			return this.index;
 		}
 
 		@Override
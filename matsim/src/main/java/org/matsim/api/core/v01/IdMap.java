@@ -0,0 +1,269 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * IdMap.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2016 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.api.core.v01;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * A map with {@link Id}s of one type as keys, backed by an array indexed by {@link Id#index()}. Lookups
+ * neither hash the key nor allocate, and an entry costs a single array slot instead of a hash map entry.
+ * The memory used depends on the number of ids of the type, not on the number of entries; the map is meant
+ * for cases where a large part of all ids of a type are used as keys, e.g. all links or all persons.
+ * <p></p>
+ * Iteration is in the order of the indices, i.e. the order in which the ids were created.  Like
+ * {@link java.util.HashMap}, the map is not synchronized and <code>null</code> values are allowed.
+ */
+public final class IdMap<T, V> extends AbstractMap<Id<T>, V> {
+
+	/** marks entries with a <code>null</code> value */
+	private static final Object NULL = new Object();
+
+	private final Id.Registry<T> registry;
+	private Object[] values;
+	private int size = 0;
+	private int modCount = 0;
+
+	public IdMap(final Class<T> type) {
+		this(type, Id.getNumberOfIds(type));
+	}
+
+	public IdMap(final Class<T> type, final int expectedNumberOfIds) {
+		this.registry = Id.registry(type);
+		this.values = new Object[Math.max(expectedNumberOfIds, 16)];
+	}
+
+	@Override
+	public int size() {
+		return this.size;
+	}
+
+	@Override
+	public boolean isEmpty() {
+		return this.size == 0;
+	}
+
+	@Override
+	public boolean containsKey(final Object key) {
+		int index = indexOf(key);
+		return index >= 0 && index < this.values.length && this.values[index] != null;
+	}
+
+	@Override
+	public V get(final Object key) {
+		int index = indexOf(key);
+		if (index < 0 || index >= this.values.length) {
+			return null;
+		}
+		return unmask(this.values[index]);
+	}
+
+	@Override
+	public V put(final Id<T> key, final V value) {
+		int index = indexOf(key);
+		if (index < 0) {
+			index = this.registry.create(key.toString()).index();
+		}
+		if (index >= this.values.length) {
+			this.values = Arrays.copyOf(this.values, Math.max(index + 1, this.values.length + (this.values.length >> 1)));
+		}
+		Object previous = this.values[index];
+		this.values[index] = value == null ? NULL : value;
+		if (previous == null) {
+			this.size++;
+			this.modCount++;
+		}
+		return unmask(previous);
+	}
+
+	@Override
+	public V remove(final Object key) {
+		int index = indexOf(key);
+		if (index < 0 || index >= this.values.length) {
+			return null;
+		}
+		return removeAt(index);
+	}
+
+	@Override
+	public void clear() {
+		Arrays.fill(this.values, null);
+		this.size = 0;
+		this.modCount++;
+	}
+
+	@Override
+	public Set<Map.Entry<Id<T>, V>> entrySet() {
+		return new EntrySet();
+	}
+
+	private V removeAt(final int index) {
+		Object previous = this.values[index];
+		if (previous != null) {
+			this.values[index] = null;
+			this.size--;
+			this.modCount++;
+		}
+		return unmask(previous);
+	}
+
+	/**
+	 * @return the index of the key, or -1 if the key is not an id of the type of this map.
+	 */
+	private int indexOf(final Object key) {
+		if (!(key instanceof Id)) {
+			return -1;
+		}
+		Id<?> id = (Id<?>) key;
+		int index = id.index();
+		if (index >= 0 && index < this.registry.size() && this.registry.get(index) == id) {
+			return index;
+		}
+		// an id of another type or without index, which is still equal to the id of this type with the same key
+		Id<T> sameKey = this.registry.find(id.toString());
+		return sameKey == null ? -1 : sameKey.index();
+	}
+
+	@SuppressWarnings("unchecked")
+	private static <V> V unmask(final Object value) {
+		return value == NULL ? null : (V) value;
+	}
+
+	private final class EntrySet extends AbstractSet<Map.Entry<Id<T>, V>> {
+
+		@Override
+		public Iterator<Map.Entry<Id<T>, V>> iterator() {
+			return new EntryIterator();
+		}
+
+		@Override
+		public int size() {
+			return IdMap.this.size;
+		}
+
+		@Override
+		public void clear() {
+			IdMap.this.clear();
+		}
+	}
+
+	private final class EntryIterator implements Iterator<Map.Entry<Id<T>, V>> {
+
+		private int next = -1;
+		private int current = -1;
+		private int expectedModCount = IdMap.this.modCount;
+
+		private EntryIterator() {
+			advance();
+		}
+
+		private void advance() {
+			do {
+				this.next++;
+			} while (this.next < IdMap.this.values.length && IdMap.this.values[this.next] == null);
+		}
+
+		@Override
+		public boolean hasNext() {
+			return this.next < IdMap.this.values.length;
+		}
+
+		@Override
+		public Map.Entry<Id<T>, V> next() {
+			if (IdMap.this.modCount != this.expectedModCount) {
+				throw new ConcurrentModificationException();
+			}
+			if (!hasNext()) {
+				throw new NoSuchElementException();
+			}
+			this.current = this.next;
+			advance();
+			return new Entry(this.current);
+		}
+
+		@Override
+		public void remove() {
+			if (this.current < 0) {
+				throw new IllegalStateException();
+			}
+			if (IdMap.this.modCount != this.expectedModCount) {
+				throw new ConcurrentModificationException();
+			}
+			removeAt(this.current);
+			this.current = -1;
+			this.expectedModCount = IdMap.this.modCount;
+		}
+	}
+
+	private final class Entry implements Map.Entry<Id<T>, V> {
+
+		private final int index;
+
+		private Entry(final int index) {
+			this.index = index;
+		}
+
+		@Override
+		public Id<T> getKey() {
+			return IdMap.this.registry.get(this.index);
+		}
+
+		@Override
+		public V getValue() {
+			return unmask(IdMap.this.values[this.index]);
+		}
+
+		@Override
+		public V setValue(final V value) {
+			V previous = getValue();
+			IdMap.this.values[this.index] = value == null ? NULL : value;
+			return previous;
+		}
+
+		@Override
+		public boolean equals(final Object o) {
+			if (!(o instanceof Map.Entry)) {
+				return false;
+			}
+			Map.Entry<?, ?> e = (Map.Entry<?, ?>) o;
+			Object value = getValue();
+			return getKey().equals(e.getKey()) && (value == null ? e.getValue() == null : value.equals(e.getValue()));
+		}
+
+		@Override
+		public int hashCode() {
+			Object value = getValue();
+			return getKey().hashCode() ^ (value == null ? 0 : value.hashCode());
+		}
+
+		@Override
+		public String toString() {
+			return getKey() + "=" + getValue();
+		}
+	}
+
+}
@@ -0,0 +1,162 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * IdSet.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2016 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.api.core.v01;
+
+import java.util.AbstractSet;
+import java.util.BitSet;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * A set of {@link Id}s of one type, backed by a bit set indexed by {@link Id#index()}. It uses one bit per
+ * id of the type, see {@link IdMap} for when this pays off.
+ * <p></p>
+ * Iteration is in the order of the indices, i.e. the order in which the ids were created.  The set is not
+ * synchronized.
+ */
+public final class IdSet<T> extends AbstractSet<Id<T>> {
+
+	private final Id.Registry<T> registry;
+	private final BitSet bits;
+	private int size = 0;
+	private int modCount = 0;
+
+	public IdSet(final Class<T> type) {
+		this(type, Id.getNumberOfIds(type));
+	}
+
+	public IdSet(final Class<T> type, final int expectedNumberOfIds) {
+		this.registry = Id.registry(type);
+		this.bits = new BitSet(Math.max(expectedNumberOfIds, 64));
+	}
+
+	@Override
+	public int size() {
+		return this.size;
+	}
+
+	@Override
+	public boolean isEmpty() {
+		return this.size == 0;
+	}
+
+	@Override
+	public boolean contains(final Object o) {
+		int index = indexOf(o);
+		return index >= 0 && this.bits.get(index);
+	}
+
+	@Override
+	public boolean add(final Id<T> id) {
+		int index = indexOf(id);
+		if (index < 0) {
+			index = this.registry.create(id.toString()).index();
+		}
+		if (this.bits.get(index)) {
+			return false;
+		}
+		this.bits.set(index);
+		this.size++;
+		this.modCount++;
+		return true;
+	}
+
+	@Override
+	public boolean remove(final Object o) {
+		int index = indexOf(o);
+		if (index < 0 || !this.bits.get(index)) {
+			return false;
+		}
+		this.bits.clear(index);
+		this.size--;
+		this.modCount++;
+		return true;
+	}
+
+	@Override
+	public void clear() {
+		this.bits.clear();
+		this.size = 0;
+		this.modCount++;
+	}
+
+	@Override
+	public Iterator<Id<T>> iterator() {
+		return new Iterator<Id<T>>() {
+
+			private int next = IdSet.this.bits.nextSetBit(0);
+			private int current = -1;
+			private int expectedModCount = IdSet.this.modCount;
+
+			@Override
+			public boolean hasNext() {
+				return this.next >= 0;
+			}
+
+			@Override
+			public Id<T> next() {
+				if (IdSet.this.modCount != this.expectedModCount) {
+					throw new ConcurrentModificationException();
+				}
+				if (this.next < 0) {
+					throw new NoSuchElementException();
+				}
+				this.current = this.next;
+				this.next = IdSet.this.bits.nextSetBit(this.next + 1);
+				return IdSet.this.registry.get(this.current);
+			}
+
+			@Override
+			public void remove() {
+				if (this.current < 0) {
+					throw new IllegalStateException();
+				}
+				if (IdSet.this.modCount != this.expectedModCount) {
+					throw new ConcurrentModificationException();
+				}
+				IdSet.this.bits.clear(this.current);
+				IdSet.this.size--;
+				IdSet.this.modCount++;
+				this.current = -1;
+				this.expectedModCount = IdSet.this.modCount;
+			}
+		};
+	}
+
+	/**
+	 * @return the index of the id, or -1 if it is not an id of the type of this set.
+	 */
+	private int indexOf(final Object o) {
+		if (!(o instanceof Id)) {
+			return -1;
+		}
+		Id<?> id = (Id<?>) o;
+		int index = id.index();
+		if (index >= 0 && index < this.registry.size() && this.registry.get(index) == id) {
+			return index;
+		}
+		// an id of another type or without index, which is still equal to the id of this type with the same key
+		Id<T> sameKey = this.registry.find(id.toString());
+		return sameKey == null ? -1 : sameKey.index();
+	}
+
+}
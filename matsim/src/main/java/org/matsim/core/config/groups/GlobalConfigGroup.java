@@ -37,10 +37,12 @@ public final class GlobalConfigGroup extends ReflectiveConfigGroup {
 	private static final String RANDOM_SEED = "randomSeed";
 	private static final String NUMBER_OF_THREADS = "numberOfThreads";
 	private static final String COORDINATE_SYSTEM = "coordinateSystem";
+	private static final String USING_REPLANNING_WORK_STEALING = "usingReplanningWorkStealing";
 
 	private long randomSeed = 4711L;
 	private int numberOfThreads = 2;
 	private String coordinateSystem = "Atlantis";
+	private boolean usingReplanningWorkStealing = false;
 	
 	@Override
 	public Map<String, String> getComments() {
@@ -48,6 +50,11 @@ public final class GlobalConfigGroup extends ReflectiveConfigGroup {
 		map.put(NUMBER_OF_THREADS, "\"global\" number of threads.  "
 				+ "This number is used, e.g., for replanning, but NOT in the mobsim.  "
 				+ "This can typically be set to as many cores as you have available, or possibly even slightly more.") ;
+		map.put(USING_REPLANNING_WORK_STEALING, "if true, the multi-threaded replanning modules run their plans on a pool of "
+				+ NUMBER_OF_THREADS + " threads which is shared by all modules and iterations.  The plans are handed to the threads in small "
+				+ "batches, and threads which are done take over batches of the others.  Faster if some plans take much longer than others, "
+				+ "but plans are no longer assigned to the threads in a reproducible way, so modules using random numbers may give different "
+				+ "results from run to run.  Default: false.") ;
 		return map ;
 	}
 
@@ -72,6 +79,15 @@ public final class GlobalConfigGroup extends ReflectiveConfigGroup {
 		this.numberOfThreads = numberOfThreads;
 	}
 
+	@StringGetter( USING_REPLANNING_WORK_STEALING )
+	public boolean isUsingReplanningWorkStealing() {
+		return this.usingReplanningWorkStealing;
+	}
+	@StringSetter( USING_REPLANNING_WORK_STEALING )
+	public void setUsingReplanningWorkStealing(final boolean usingReplanningWorkStealing) {
+		this.usingReplanningWorkStealing = usingReplanningWorkStealing;
+	}
+
 	@StringGetter( COORDINATE_SYSTEM )
 	public String getCoordinateSystem() {
 		return this.coordinateSystem;
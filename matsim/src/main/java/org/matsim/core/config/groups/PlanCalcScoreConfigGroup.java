@@ -59,6 +59,8 @@ public final class PlanCalcScoreConfigGroup extends ConfigGroup {
 
 	private static final String WRITE_EXPERIENCED_PLANS = "writeExperiencedPlans";
 
+	private static final String NUMBER_OF_THREADS = "numberOfThreads";
+
 	private static final String MARGINAL_UTL_OF_MONEY = "marginalUtilityOfMoney" ;
 
 	private static final String UTL_OF_LINE_SWITCH = "utilityOfLineSwitch" ;
@@ -313,6 +315,8 @@ public final class PlanCalcScoreConfigGroup extends ConfigGroup {
 		map.put(UTL_OF_LINE_SWITCH, "[utils] utility of switching a line (= transfer penalty).  Normally negative") ;
 		map.put(MARGINAL_UTL_OF_MONEY, "[utils/unit_of_money] conversion of money (e.g. toll, distance cost) into utils. Normall positive (i.e. toll/cost/fare are processed as negative amounts of money)." ) ;
 		map.put(WRITE_EXPERIENCED_PLANS, "write a plans file in each iteration directory which contains what each agent actually did, and the score it received.");
+		map.put(NUMBER_OF_THREADS, "number of threads the persons are scored on.  If larger than one, the persons are split into that many shards by "
+				+ "their id, and each shard turns its events into activities and legs and scores them on its own thread.  Default: 1.");
 
 		return map;
 	}
@@ -541,6 +545,14 @@ public final class PlanCalcScoreConfigGroup extends ConfigGroup {
 		delegate.setWriteExperiencedPlans(writeExperiencedPlans);
 	}
 
+	public int getNumberOfThreads() {
+		return delegate.getNumberOfThreads();
+	}
+
+	public void setNumberOfThreads(int numberOfThreads) {
+		delegate.setNumberOfThreads(numberOfThreads);
+	}
+
 	public double getMarginalUtlOfWaiting_utils_hr() {
 		return getScoringParameters( null ).getMarginalUtlOfWaiting_utils_hr();
 	}
@@ -1181,6 +1193,8 @@ public final class PlanCalcScoreConfigGroup extends ConfigGroup {
 
 		private boolean writeExperiencedPlans = false;
 
+		private int numberOfThreads = 1;
+
 		private Double fractionOfIterationsToStartScoreMSA = null ;
 
 		private boolean usingOldScoringBelowZeroUtilityDuration = false;
@@ -1254,6 +1268,20 @@ public final class PlanCalcScoreConfigGroup extends ConfigGroup {
 			this.writeExperiencedPlans = writeExperiencedPlans;
 		}
 
+		@StringGetter( NUMBER_OF_THREADS )
+		public int getNumberOfThreads() {
+			return numberOfThreads;
+		}
+
+		@StringSetter( NUMBER_OF_THREADS )
+		public void setNumberOfThreads(int numberOfThreads) {
+			testForLocked() ;
+			if ( numberOfThreads < 1 ) {
+				throw new IllegalArgumentException( "number of scoring threads must be at least 1, got " + numberOfThreads );
+			}
+			this.numberOfThreads = numberOfThreads;
+		}
+
 	}
 
 }
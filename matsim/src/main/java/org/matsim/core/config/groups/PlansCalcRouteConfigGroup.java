@@ -376,7 +376,8 @@ public final class PlansCalcRouteConfigGroup extends ConfigGroup {
 		map.put(NETWORK_MODES, "All the modes for which the router is supposed to generate network routes (like car)") ;
 	        map.put(RANDOMNESS, "strength of the randomness for the utility of money in routing under toll.  "
 	          		+ "Leads to Pareto-optimal route with randomly drawn money-vs-other-attributes tradeoff. "
-	          		+ "Technically the width parameter of a log-normal distribution. 3.0 seems to be a good value. " ) ;
+	          		+ "Technically the width parameter of a log-normal distribution. 3.0 seems to be a good value. "
+	          		+ "Not applied to the choice of the routes by the ContractionHierarchies routing algorithm. " ) ;
 		return map;
 	}
 
@@ -87,6 +87,9 @@ public final class PlansConfigGroup extends ReflectiveConfigGroup {
 		comments.put(REMOVING_UNNECESSARY_PLAN_ATTRIBUTES, "(not tested) will remove plan attributes that are presumably not used, such as " +
 		"activityStartTime. default=false") ;
 
+		comments.put(USING_COMPACT_POPULATION, "If true, plans are stored in primitive arrays instead of one object per activity, leg and route. " +
+				"This needs much less memory, but activities, legs and routes can only be changed through the objects returned by the plans. default=false") ;
+
 		comments.put( INPUT_CRS , "The Coordinates Reference System in which the coordinates are expressed in the input file." +
 				" At import, the coordinates will be converted to the coordinate system defined in \"global\", and will" +
 				"be converted back at export. If not specified, no conversion happens." );
@@ -186,6 +189,17 @@ public final class PlansConfigGroup extends ReflectiveConfigGroup {
 	}
 
 
+	private static final String USING_COMPACT_POPULATION = "usingCompactPopulation";
+	private boolean usingCompactPopulation = false;
+	@StringGetter(USING_COMPACT_POPULATION)
+	public boolean isUsingCompactPopulation() {
+		return this.usingCompactPopulation;
+	}
+	@StringSetter(USING_COMPACT_POPULATION)
+	public void setUsingCompactPopulation(final boolean usingCompactPopulation) {
+		this.usingCompactPopulation = usingCompactPopulation;
+	}
+
 	@StringGetter( INPUT_CRS )
 	public String getInputCRS() {
 		return inputCRS;
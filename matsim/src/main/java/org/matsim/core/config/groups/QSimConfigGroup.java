@@ -240,6 +240,23 @@ public final class QSimConfigGroup extends ReflectiveConfigGroup implements Mobs
 		map.put(USE_PERSON_ID_FOR_MISSING_VEHICLE_ID, "If a route does not reference a vehicle, agents will use the vehicle with the same id as their own.");
 		map.put(USING_THREADPOOL, "if the qsim should use as many runners as there are threads (Christoph's dissertation version)"
 				+ " or more of them, together with a thread pool (seems to be faster in some situations, but is not tested).") ;
+		map.put(USING_WORK_STEALING, "if true, the runners of the qsim split their active nodes and links into chunks, and runners that are done "
+				+ "with their own chunks help the others within the same time step.  Uses dedicated threads, i.e. "+USING_THREADPOOL+" is ignored.  Default: false.") ;
+		{
+			StringBuilder stb = new StringBuilder() ;
+			for ( RunnerAssignment ra : RunnerAssignment.values() ) {
+				stb.append(" ").append( ra.toString() ) ;
+			}
+			map.put(RUNNER_ASSIGNMENT, "How the nodes (and their out-links) are assigned to the runners of the qsim. "
+					+ RunnerAssignment.roundRobin + " spreads them evenly without looking at the network; "
+					+ RunnerAssignment.partitioned + " gives each runner a spatially connected region with few links to the other "
+					+ "regions.  The runners still share the network of a single JVM, the assignment does not change the events.  "
+					+ "Default: " + RunnerAssignment.roundRobin + ". Possible values:" + stb ) ;
+		}
+		map.put(WORK_STEALING_CHUNK_SIZE, "number of nodes or links that are claimed at once by a runner if "+USING_WORK_STEALING+" is true.  Default: 64.") ;
+		map.put(USING_EVENT_DRIVEN_LINKS, "if true, a link on which no vehicle can reach the buffer before a later time step is not simulated "
+				+ "until then (or until a vehicle departs on it).  Only has an effect for "+LINK_DYNAMICS+"="+LinkDynamics.FIFO+" and "+TRAFFIC_DYNAMICS+"="+TrafficDynamics.queue
+				+ " without inflow constraint; produces the same events as without.  Default: false.") ;
 		map.put(FAST_CAPACITY_UPDATE, "normally, the qsim accumulates fractional flows up to one flow unit in every time step.  If this switch is set to true, "
 				+ "flows are updated only if an agent wants to enter the link or an agent is added to buffer."
 				+ "Will probably become the default eventually.") ;
@@ -498,6 +515,54 @@ public final class QSimConfigGroup extends ReflectiveConfigGroup implements Mobs
 		this.usingThreadpool = val ;
 	}
 
+	private static final String USING_WORK_STEALING = "usingWorkStealing" ;
+	private boolean usingWorkStealing = false ;
+	@StringGetter(USING_WORK_STEALING)
+	public boolean isUsingWorkStealing() {
+		return this.usingWorkStealing ;
+	}
+	@StringSetter(USING_WORK_STEALING)
+	public void setUsingWorkStealing( boolean val ) {
+		this.usingWorkStealing = val ;
+	}
+
+	private static final String WORK_STEALING_CHUNK_SIZE = "workStealingChunkSize" ;
+	private int workStealingChunkSize = 64 ;
+	@StringGetter(WORK_STEALING_CHUNK_SIZE)
+	public int getWorkStealingChunkSize() {
+		return this.workStealingChunkSize ;
+	}
+	@StringSetter(WORK_STEALING_CHUNK_SIZE)
+	public void setWorkStealingChunkSize( int val ) {
+		if ( val < 1 ) {
+			throw new IllegalArgumentException( "Work stealing chunk size must be strictly positive, got "+val );
+		}
+		this.workStealingChunkSize = val ;
+	}
+
+	private static final String USING_EVENT_DRIVEN_LINKS = "usingEventDrivenLinks" ;
+	private boolean usingEventDrivenLinks = false ;
+	@StringGetter(USING_EVENT_DRIVEN_LINKS)
+	public boolean isUsingEventDrivenLinks() {
+		return this.usingEventDrivenLinks ;
+	}
+	@StringSetter(USING_EVENT_DRIVEN_LINKS)
+	public void setUsingEventDrivenLinks( boolean val ) {
+		this.usingEventDrivenLinks = val ;
+	}
+
+	private static final String RUNNER_ASSIGNMENT = "runnerAssignment" ;
+	public static enum RunnerAssignment { roundRobin, partitioned } ;
+	private RunnerAssignment runnerAssignment = RunnerAssignment.roundRobin ;
+	@StringGetter(RUNNER_ASSIGNMENT)
+	public RunnerAssignment getRunnerAssignment() {
+		return this.runnerAssignment ;
+	}
+	@StringSetter(RUNNER_ASSIGNMENT)
+	public void setRunnerAssignment( RunnerAssignment val ) {
+		this.runnerAssignment = val ;
+	}
+
 	private static final String USE_LANES="useLanes" ;
 	private boolean useLanes = false ;
 
@@ -38,11 +38,13 @@ public final class ScenarioConfigGroup extends ConfigGroup {
 	private static final String USE_TRANSIT = "useTransit";
 	private static final String USE_VEHICLES = "useVehicles";
 	private static final String SIMULATION_PERIOD_DAYS = "simulationPeriodInDays"; // is not yet written to log-output so we can still rename it internally
+	private static final String SNAPSHOT_FILE = "snapshotFile";
 	
 	@SuppressWarnings("unused")
 	private static final Logger log = Logger.getLogger( ScenarioConfigGroup.class ) ;
 
 	private int simulationPeriodInDays = 1;
+	private String snapshotFile = null;
 	
 	public ScenarioConfigGroup() {
 		super(GROUP_NAME);
@@ -58,6 +60,10 @@ public final class ScenarioConfigGroup extends ConfigGroup {
 		map.put(USE_HOUSEHOLDS, message); // since jul'15
 		map.put(USE_VEHICLES, message); // since jul'15
 		map.put(USE_TRANSIT, "Deprecated, do not use.  See transit section of config file.") ; // since jul'15
+		map.put(SNAPSHOT_FILE, "If set, network, facilities, population, transit schedule, vehicles and households are read from this "
+				+ "binary snapshot instead of their "
+				+ "files, provided it was created from the same files.  Otherwise they are read from their files and the snapshot "
+				+ "is (re-)created.  Speeds up the start of repeated runs on the same input files.");
 		
 		return map;
 	}
@@ -75,6 +81,8 @@ public final class ScenarioConfigGroup extends ConfigGroup {
 			this.setUseVehicles( Boolean.parseBoolean(value) );
 		} else if (USE_TRANSIT.equals(paramName)) {
 			this.setUseTransit( Boolean.parseBoolean(value) );
+		} else if (SNAPSHOT_FILE.equals(paramName)) {
+			this.setSnapshotFile( value );
 		} else {
 			throw new IllegalArgumentException("Parameter '" + paramName + "' is not supported by config group '" + GROUP_NAME + "'.");
 		}
@@ -87,6 +95,7 @@ public final class ScenarioConfigGroup extends ConfigGroup {
 	@Override
 	public final Map<String, String> getParams() {
 		Map<String, String> params = super.getParams();
+		params.put(SNAPSHOT_FILE, this.snapshotFile);
 		return params;
 	}
 
@@ -138,6 +147,19 @@ public final class ScenarioConfigGroup extends ConfigGroup {
 	}
 
 	
+	public String getSnapshotFile() {
+		return this.snapshotFile;
+	}
+
+	/**
+	 * @param snapshotFile the file from which network, facilities, population, transit schedule, vehicles and
+	 * households are read if it was created from the same input files, and to which they are written otherwise;
+	 * <code>null</code> to always read the input files
+	 */
+	public void setSnapshotFile(final String snapshotFile) {
+		this.snapshotFile = snapshotFile;
+	}
+
 	private static String getMessage( String module ) {
 		return "The " + module + " switch is no longer operational.  The file is loaded if the file name"
 				+ " is different from null.  If you needed this for the creation of the container, use the ScenarioBuilder in "
@@ -20,6 +20,9 @@
 
 package org.matsim.core.events;
 
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.util.ArrayList;
@@ -77,6 +80,12 @@ import org.matsim.core.events.handler.EventHandler;
  * up execution!</li>
  * </ol>
  *
+ * Handlers for event types not covered by callHandlerFast() are called through
+ * a {@link MethodHandle} that is bound to the handler when the handler is registered
+ * for an event class. This avoids the overhead of {@link Method#invoke(Object, Object...)}
+ * (argument array, access checks) for every single event. The old reflective dispatch
+ * can still be selected with {@link #EventsManagerImpl(boolean)}, mostly for comparison.
+ *
  * @author dstrippgen
  * @author mrieser
  */
@@ -89,9 +98,11 @@ public class EventsManagerImpl implements EventsManager {
 		protected Class<?> eventklass;
 		protected ArrayList<EventHandler> handlerList = new ArrayList<EventHandler>(5);
 		protected Method method;
-		protected HandlerData(final Class<?> eventklass, final Method method) {
+		protected MethodHandle handle;
+		protected HandlerData(final Class<?> eventklass, final Method method, final MethodHandle handle) {
 			this.eventklass = eventklass;
 			this.method = method;
+			this.handle = handle;
 		}
 		protected void removeHandler(final EventHandler handler) {
 			this.handlerList.remove(handler);
@@ -102,14 +113,21 @@ public class EventsManagerImpl implements EventsManager {
 		protected final Class<?> eventClass;
 		protected final EventHandler eventHandler;
 		protected final Method method;
+		/** the handle of the handleEvent-method bound to eventHandler, <code>null</code> if reflection has to be used. */
+		protected final MethodHandle boundHandle;
 
-		protected HandlerInfo(final Class<?> eventClass, final EventHandler eventHandler, final Method method) {
+		protected HandlerInfo(final Class<?> eventClass, final EventHandler eventHandler, final Method method, final MethodHandle handle) {
 			this.eventClass = eventClass;
 			this.eventHandler = eventHandler;
 			this.method = method;
+			this.boundHandle = handle == null ? null : handle.bindTo(eventHandler);
 		}
 	}
 
+	private static final MethodType DISPATCH_TYPE = MethodType.methodType(void.class, EventHandler.class, Event.class);
+
+	private final boolean useCompiledDispatch;
+
 	private final List<HandlerData> handlerData = new ArrayList<HandlerData>();
 
 	private final Map<Class<?>, HandlerInfo[]> cacheHandlers = new ConcurrentHashMap<Class<?>, HandlerInfo[]>(15);
@@ -117,6 +135,18 @@ public class EventsManagerImpl implements EventsManager {
 	private long counter = 0;
 	private long nextCounterMsg = 1;
 
+	public EventsManagerImpl() {
+		this(true);
+	}
+
+	/**
+	 * @param useCompiledDispatch whether handlers of event types not known to callHandlerFast() are
+	 * called through method handles (<code>true</code>, the default) or by reflection.
+	 */
+	public EventsManagerImpl(final boolean useCompiledDispatch) {
+		this.useCompiledDispatch = useCompiledDispatch;
+	}
+
 	private HandlerData findHandler(final Class<?> evklass) {
 		for (HandlerData handler : this.handlerData) {
 			if (handler.eventklass == evklass) {
@@ -207,7 +237,7 @@ public class EventsManagerImpl implements EventsManager {
 					log.info("    > " + eventClass.getName());
 					HandlerData dat = findHandler(eventClass);
 					if (dat == null) {
-						dat = new HandlerData(eventClass, method);
+						dat = new HandlerData(eventClass, method, createHandle(method));
 						this.handlerData.add(dat);
 					}
 					dat.handlerList.add(handler);
@@ -216,12 +246,38 @@ public class EventsManagerImpl implements EventsManager {
 		}
 	}
 
+	/**
+	 * @return a handle of type (EventHandler, Event)void for the given handleEvent-method, or <code>null</code>
+	 * if compiled dispatch is switched off or the method is not accessible from here.
+	 */
+	private MethodHandle createHandle(final Method method) {
+		if (!this.useCompiledDispatch) {
+			return null;
+		}
+		try {
+			// the lookup of this class has the same access rights as Method.invoke() called from here
+			return MethodHandles.lookup().unreflect(method).asType(DISPATCH_TYPE);
+		} catch (IllegalAccessException e) {
+			log.warn("cannot create method handle for " + method + ", using reflection instead.");
+			return null;
+		}
+	}
+
 	private void computeEvent(final Event event) {
 		for (HandlerInfo info : getHandlersForClass(event.getClass())) {
 			synchronized(info.eventHandler) {
 				if (callHandlerFast(info.eventClass, event, info.eventHandler)) {
 					continue;
 				}
+				if (info.boundHandle != null) {
+					try {
+						info.boundHandle.invokeExact(event);
+					} catch (Throwable e) {
+						// wrapped the same way as with reflection, so callers see the same exceptions in both modes
+						throw new RuntimeException("problem invoking EventHandler " + info.eventHandler.getClass().getCanonicalName() + " for event-class " + info.eventClass.getCanonicalName(), new InvocationTargetException(e));
+					}
+					continue;
+				}
 				try {
 					info.method.invoke(info.eventHandler, event);
 				} catch (IllegalArgumentException e) {
@@ -248,7 +304,7 @@ public class EventsManagerImpl implements EventsManager {
 			HandlerData dat = findHandler(klass);
 			if (dat != null) {
 				for(EventHandler handler: dat.handlerList) {
-					info.add(new HandlerInfo(klass, handler, dat.method));
+					info.add(new HandlerInfo(klass, handler, dat.method, dat.handle));
 				}
 			}
 			klass = klass.getSuperclass();
@@ -258,7 +314,7 @@ public class EventsManagerImpl implements EventsManager {
 			HandlerData dat = findHandler(intfc);
 			if (dat != null) {
 				for(EventHandler handler: dat.handlerList) {
-					info.add(new HandlerInfo(intfc, handler, dat.method));
+					info.add(new HandlerInfo(intfc, handler, dat.method, dat.handle));
 				}
 			}
 		}
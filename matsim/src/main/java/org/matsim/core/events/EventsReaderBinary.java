@@ -0,0 +1,342 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * EventsReaderBinary.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2016 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.events;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.Inflater;
+
+import org.apache.log4j.Logger;
+import org.matsim.api.core.v01.events.Event;
+import org.matsim.core.api.experimental.events.EventsManager;
+import org.matsim.core.api.internal.MatsimReader;
+import org.matsim.core.events.EventsReaderXMLv1.CustomEventMapper;
+import org.matsim.core.events.algorithms.BinaryEventsFormat;
+import org.matsim.core.events.algorithms.BinaryEventsFormat.ByteSource;
+import org.matsim.core.events.algorithms.BinaryEventsFormat.CompressedSection;
+import org.matsim.core.events.handler.EventHandler;
+import org.matsim.core.utils.io.IOUtils;
+import org.matsim.core.utils.io.UncheckedIOException;
+import org.xml.sax.helpers.AttributesImpl;
+
+/**
+ * Reads events files written by {@link org.matsim.core.events.algorithms.EventWriterBinary}.
+ * <p></p>
+ * The file is read sequentially by the calling thread, which also maintains the dictionaries.  Decompressing
+ * and decoding the blocks, including the creation of the events, is done by a pool of threads.  The events
+ * are passed to the EventsManager in the calling thread and in the order of the file.
+ * <p></p>
+ * Events are created from their attributes in exactly the same way as by the {@link EventsReaderXMLv1}, so
+ * reading a binary events file results in the same events as reading the corresponding XML file.
+ */
+public class EventsReaderBinary implements MatsimReader {
+
+	private final static Logger log = Logger.getLogger(EventsReaderBinary.class);
+
+	private final EventsManager events;
+	private final int numberOfThreads;
+	private final Map<String, CustomEventMapper> customEventMappers = new HashMap<>();
+
+	// dictionaries; only appended to, so decoders can use them while later blocks are read
+	private String[] keys;
+	private int nOfKeys;
+	private String[] types;
+	private int nOfTypes;
+	private int[][] schemas;
+	private int nOfSchemas;
+	private String[] values;
+	private int nOfValues;
+
+	public EventsReaderBinary(final EventsManager events) {
+		this(events, Math.min(4, Runtime.getRuntime().availableProcessors()));
+	}
+
+	/**
+	 * @param numberOfThreads the number of threads decoding blocks.
+	 */
+	public EventsReaderBinary(final EventsManager events, final int numberOfThreads) {
+		if (numberOfThreads < 1) {
+			throw new IllegalArgumentException("number of threads must be strictly positive, got " + numberOfThreads);
+		}
+		this.events = events;
+		this.numberOfThreads = numberOfThreads;
+	}
+
+	public void addCustomEventMapper(String eventType, CustomEventMapper cem) {
+		this.customEventMappers.put(eventType, cem);
+	}
+
+	@Override
+	public void readFile(final String filename) {
+		InputStream stream = IOUtils.getInputStream(filename);
+		try {
+			readStream(stream);
+		} finally {
+			try {
+				stream.close();
+			} catch (IOException e) {
+				log.warn("Could not close stream.", e);
+			}
+		}
+	}
+
+	public void readStream(final InputStream stream) {
+		this.keys = new String[16];
+		this.types = new String[16];
+		this.schemas = new int[16][];
+		this.values = new String[1024];
+		this.nOfKeys = this.nOfTypes = this.nOfSchemas = this.nOfValues = 0;
+
+		ExecutorService executor = Executors.newFixedThreadPool(this.numberOfThreads);
+		// bounds the number of decoded blocks waiting to be processed, and thus the memory usage
+		int maxPendingBlocks = 2 * this.numberOfThreads;
+		ArrayDeque<Future<List<Event>>> pending = new ArrayDeque<>();
+		Inflater inflater = new Inflater();
+		try {
+			DataInputStream in = new DataInputStream(new BufferedInputStream(stream, 1 << 16));
+			readHeader(in);
+			int nOfEvents;
+			while ((nOfEvents = in.readInt()) > 0) {
+				CompressedSection dictionary = ByteSource.readCompressed(in);
+				CompressedSection columns = ByteSource.readCompressed(in);
+				readDictionaryAdditions(dictionary.decompress(inflater));
+				if (pending.size() == maxPendingBlocks) {
+					processEvents(pending.poll());
+				}
+				pending.add(executor.submit(new BlockDecoder(nOfEvents, columns, this.keys, this.nOfKeys, this.types,
+						this.schemas, this.values)));
+			}
+			while (!pending.isEmpty()) {
+				processEvents(pending.poll());
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		} finally {
+			executor.shutdownNow();
+			inflater.end();
+		}
+	}
+
+	private static void readHeader(DataInputStream in) throws IOException {
+		byte[] magic = new byte[BinaryEventsFormat.MAGIC.length];
+		in.readFully(magic);
+		if (!Arrays.equals(magic, BinaryEventsFormat.MAGIC)) {
+			throw new IllegalArgumentException("not a binary MATSim events file.");
+		}
+		int version = in.readInt();
+		if (version != BinaryEventsFormat.VERSION) {
+			throw new IllegalArgumentException("unsupported version " + version + " of the binary events format.");
+		}
+	}
+
+	private void processEvents(Future<List<Event>> block) {
+		List<Event> decoded;
+		try {
+			decoded = block.get();
+		} catch (InterruptedException e) {
+			throw new RuntimeException(e);
+		} catch (ExecutionException e) {
+			throw new RuntimeException("could not decode events block.", e.getCause());
+		}
+		for (Event event : decoded) {
+			this.events.processEvent(event);
+		}
+	}
+
+	/*
+	 * Arrays are replaced by larger copies instead of being resized in place, so decoders of earlier blocks can
+	 * keep using the array they got.  Entries are never changed once written.
+	 */
+	private void readDictionaryAdditions(ByteSource source) {
+		int n = source.readVarInt();
+		if (this.nOfKeys + n > this.keys.length) this.keys = Arrays.copyOf(this.keys, 2 * (this.nOfKeys + n));
+		for (int i = 0; i < n; i++) this.keys[this.nOfKeys++] = source.readString();
+
+		n = source.readVarInt();
+		if (this.nOfTypes + n > this.types.length) this.types = Arrays.copyOf(this.types, 2 * (this.nOfTypes + n));
+		for (int i = 0; i < n; i++) this.types[this.nOfTypes++] = source.readString().intern();
+
+		n = source.readVarInt();
+		if (this.nOfSchemas + n > this.schemas.length) this.schemas = Arrays.copyOf(this.schemas, 2 * (this.nOfSchemas + n));
+		for (int i = 0; i < n; i++) {
+			int[] schema = new int[source.readVarInt()];
+			for (int k = 0; k < schema.length; k++) schema[k] = source.readVarInt();
+			this.schemas[this.nOfSchemas++] = schema;
+		}
+
+		n = source.readVarInt();
+		if (this.nOfValues + n > this.values.length) this.values = Arrays.copyOf(this.values, 2 * (this.nOfValues + n));
+		for (int i = 0; i < n; i++) this.values[this.nOfValues++] = source.readString();
+	}
+
+	private final ThreadLocal<DecoderState> decoderStates = new ThreadLocal<DecoderState>() {
+		@Override
+		protected DecoderState initialValue() {
+			return new DecoderState();
+		}
+	};
+
+	/**
+	 * The per-thread objects needed for decoding, to avoid creating them for every block.
+	 */
+	private final class DecoderState {
+		final Inflater inflater = new Inflater();
+		final CollectingEventsManager collector = new CollectingEventsManager();
+		final EventsReaderXMLv1 converter = new EventsReaderXMLv1(this.collector);
+		final AttributesImpl attributes = new AttributesImpl();
+
+		DecoderState() {
+			for (Map.Entry<String, CustomEventMapper> e : EventsReaderBinary.this.customEventMappers.entrySet()) {
+				this.converter.addCustomEventMapper(e.getKey(), e.getValue());
+			}
+		}
+	}
+
+	private final class BlockDecoder implements Callable<List<Event>> {
+
+		private final int nOfEvents;
+		private final CompressedSection columns;
+		private final String[] keys;
+		private final int nOfKeys;
+		private final String[] types;
+		private final int[][] schemas;
+		private final String[] values;
+
+		BlockDecoder(int nOfEvents, CompressedSection columns, String[] keys, int nOfKeys, String[] types,
+				int[][] schemas, String[] values) {
+			this.nOfEvents = nOfEvents;
+			this.columns = columns;
+			this.keys = keys;
+			this.nOfKeys = nOfKeys;
+			this.types = types;
+			this.schemas = schemas;
+			this.values = values;
+		}
+
+		@Override
+		public List<Event> call() {
+			DecoderState state = decoderStates.get();
+			ByteSource source = this.columns.decompress(state.inflater);
+			int n = this.nOfEvents;
+
+			double[] times = new double[n];
+			long lastIntegralTime = 0;
+			for (int i = 0; i < n; i++) {
+				long v = source.readVarLong();
+				if ((v & 1) == 0) {
+					lastIntegralTime += BinaryEventsFormat.unzigzag(v >>> 1);
+					times[i] = lastIntegralTime;
+				} else {
+					times[i] = source.readDouble();
+				}
+			}
+			int[] typeIndices = new int[n];
+			for (int i = 0; i < n; i++) typeIndices[i] = source.readVarInt();
+			int[] schemaIndices = new int[n];
+			int[] valuesPerKey = new int[this.nOfKeys];
+			for (int i = 0; i < n; i++) {
+				schemaIndices[i] = source.readVarInt();
+				for (int key : this.schemas[schemaIndices[i]]) valuesPerKey[key]++;
+			}
+
+			// the value columns, one after the other in the order of the keys
+			String[][] valueColumns = new String[this.nOfKeys][];
+			for (int k = 0; k < this.nOfKeys; k++) {
+				String[] column = new String[valuesPerKey[k]];
+				for (int j = 0; j < column.length; j++) {
+					int code = source.readVarInt();
+					column[j] = code == BinaryEventsFormat.LITERAL ? source.readString() : this.values[code - 1];
+				}
+				valueColumns[k] = column;
+			}
+
+			int[] positions = new int[this.nOfKeys];
+			AttributesImpl atts = state.attributes;
+			List<Event> decoded = new ArrayList<>(n);
+			state.collector.target = decoded;
+			for (int i = 0; i < n; i++) {
+				atts.clear();
+				atts.addAttribute("", Event.ATTRIBUTE_TIME, Event.ATTRIBUTE_TIME, "CDATA", Double.toString(times[i]));
+				atts.addAttribute("", Event.ATTRIBUTE_TYPE, Event.ATTRIBUTE_TYPE, "CDATA", this.types[typeIndices[i]]);
+				for (int key : this.schemas[schemaIndices[i]]) {
+					String name = this.keys[key];
+					atts.addAttribute("", name, name, "CDATA", valueColumns[key][positions[key]++]);
+				}
+				state.converter.startTag(EventsReaderXMLv1.EVENT, atts, null);
+			}
+			state.collector.target = null;
+			return decoded;
+		}
+	}
+
+	/**
+	 * Collects the events created by the {@link EventsReaderXMLv1} of a decoding thread.
+	 */
+	private static final class CollectingEventsManager implements EventsManager {
+
+		List<Event> target = null;
+
+		@Override
+		public void processEvent(Event event) {
+			this.target.add(event);
+		}
+
+		@Override
+		public void addHandler(EventHandler handler) {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public void removeHandler(EventHandler handler) {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public void resetHandlers(int iteration) {
+		}
+
+		@Override
+		public void initProcessing() {
+		}
+
+		@Override
+		public void afterSimStep(double time) {
+		}
+
+		@Override
+		public void finishProcessing() {
+		}
+	}
+
+}
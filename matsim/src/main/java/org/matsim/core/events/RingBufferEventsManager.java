@@ -0,0 +1,382 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * RingBufferEventsManager.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2016 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.events;
+
+import java.lang.Thread.UncaughtExceptionHandler;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+
+import javax.inject.Inject;
+
+import org.apache.log4j.Logger;
+import org.matsim.api.core.v01.events.Event;
+import org.matsim.core.api.experimental.events.EventsManager;
+import org.matsim.core.config.groups.ParallelEventHandlingConfigGroup;
+import org.matsim.core.events.handler.EventHandler;
+import org.matsim.core.gbl.Gbl;
+
+/**
+ * An EventsManager that hands the events over to its processing threads through a pre-allocated ring buffer
+ * instead of queues.
+ * <p></p>
+ * The event handlers are distributed round robin over the processing threads.  Every thread reads the
+ * events from the same buffer and keeps track of the last event it has processed in its own sequence, so
+ * no thread ever waits for another one and no object is allocated per event.  The producer only has to wait
+ * if the slowest thread is a whole buffer behind.
+ * <p></p>
+ * Events created by handlers do not go through the buffer, since the creating thread might be the one that
+ * has to free a slot.  They are passed to the handlers of the creating thread directly and to the other
+ * threads through unbounded queues, which the threads process between the events of the buffer.
+ * <p></p>
+ * As in the {@link SimStepParallelEventsManagerImpl}, {@link #afterSimStep(double)} only returns once all events
+ * of the time step have been processed by all handlers, including events that were created by handlers
+ * while processing.
+ * <p></p>
+ * Events may be passed in from several threads (e.g. the runners of the QSim), so there is no need to wrap
+ * an instance of this class into a {@link SynchronizedEventsManagerImpl}.
+ */
+public final class RingBufferEventsManager implements EventsManager {
+
+	private final static Logger log = Logger.getLogger(RingBufferEventsManager.class);
+
+	public static final int DEFAULT_BUFFER_SIZE = 65536;
+
+	/*
+	 * Waiting threads first spin, then yield, and only then park, since the
+	 * next event or the end of the time step usually come very soon.
+	 */
+	private static final int SPIN_TRIES = 100;
+	private static final int YIELD_TRIES = 200;
+	private static final long PARK_NANOS = 1000;
+
+	private final int numOfThreads;
+	private final int bufferSize;
+	private final int mask;
+
+	private final EventsManagerImpl delegate;
+	private final EventsManagerImpl[] eventsManagers;
+	private int handlerCount = 0;
+
+	private Event[] buffer;
+	/** the sequence of the last published event */
+	private final Sequence cursor = new Sequence();
+	/** only accessed while holding the lock on this object */
+	private long nextSequence = 0;
+	/** the minimum of the consumer sequences as seen last time, to avoid reading all of them for every event */
+	private long cachedMinConsumerSequence = -1;
+
+	private Sequence[] consumerSequences;
+	private ProcessEventsThread[] threads;
+	/** the number of events created by handlers which are not yet processed by all other threads */
+	private final AtomicLong pendingHandlerEvents = new AtomicLong();
+
+	private volatile boolean parallelMode = false;
+	private volatile boolean running = false;
+	private final AtomicReference<Throwable> hadException = new AtomicReference<>();
+
+	@Inject
+	RingBufferEventsManager(ParallelEventHandlingConfigGroup config) {
+		this(config.getNumberOfThreads() != null ? config.getNumberOfThreads() : 1, DEFAULT_BUFFER_SIZE);
+	}
+
+	public RingBufferEventsManager(int numOfThreads) {
+		this(numOfThreads, DEFAULT_BUFFER_SIZE);
+	}
+
+	/**
+	 * @param numOfThreads the number of threads processing events
+	 * @param bufferSize the number of events that can be in the buffer at once, must be a power of two
+	 */
+	public RingBufferEventsManager(int numOfThreads, int bufferSize) {
+		if (numOfThreads < 1) {
+			throw new IllegalArgumentException("number of threads must be strictly positive, got " + numOfThreads);
+		}
+		if (bufferSize < 1 || Integer.bitCount(bufferSize) != 1) {
+			throw new IllegalArgumentException("buffer size must be a power of two, got " + bufferSize);
+		}
+		this.numOfThreads = numOfThreads;
+		this.bufferSize = bufferSize;
+		this.mask = bufferSize - 1;
+
+		this.delegate = new EventsManagerImpl();
+		this.eventsManagers = new EventsManagerImpl[numOfThreads];
+		for (int i = 0; i < numOfThreads; i++) this.eventsManagers[i] = new EventsManagerImpl();
+	}
+
+	@Override
+	public void processEvent(final Event event) {
+		if (!this.parallelMode) {
+			this.delegate.processEvent(event);
+			return;
+		}
+
+		Thread currentThread = Thread.currentThread();
+		if (currentThread instanceof ProcessEventsThread && ((ProcessEventsThread) currentThread).getOwner() == this) {
+			processHandlerEvent((ProcessEventsThread) currentThread, event);
+			return;
+		}
+
+		int tries = 0;
+		while (true) {
+			/*
+			 * If one of the processing threads died, it will never free its slots again. The events cannot
+			 * be processed completely anymore anyway; finishProcessing() will report this.
+			 */
+			if (this.hadException.get() != null) return;
+
+			synchronized (this) {
+				long next = this.nextSequence;
+				long wrapPoint = next - this.bufferSize;
+				if (wrapPoint > this.cachedMinConsumerSequence) {
+					this.cachedMinConsumerSequence = getMinimumConsumerSequence();
+				}
+				if (wrapPoint <= this.cachedMinConsumerSequence) {
+					this.buffer[(int) next & this.mask] = event;
+					this.nextSequence = next + 1;
+					// lazySet is sufficient: the consumers read the cursor before they read the slot
+					this.cursor.lazySet(next);
+					return;
+				}
+			}
+
+			// the buffer is full, wait without holding the lock
+			tries = idle(tries);
+		}
+	}
+
+	/*
+	 * The pending counter is increased before the event is handed over and the current event of the
+	 * creating thread is marked as processed, so awaitAllEventsProcessed() cannot miss the event.
+	 */
+	private void processHandlerEvent(final ProcessEventsThread creator, final Event event) {
+		for (ProcessEventsThread thread : this.threads) {
+			if (thread != creator) {
+				this.pendingHandlerEvents.incrementAndGet();
+				thread.handlerEvents.add(event);
+			}
+		}
+		creator.eventsManager.processEvent(event);
+	}
+
+	@Override
+	public void addHandler(final EventHandler handler) {
+		this.delegate.addHandler(handler);
+
+		this.eventsManagers[this.handlerCount % this.numOfThreads].addHandler(handler);
+		this.handlerCount++;
+	}
+
+	@Override
+	public void removeHandler(final EventHandler handler) {
+		if (this.parallelMode) log.warn("Removing EventHandler while events are processed in parallel. This is not expected to happen :?");
+
+		this.delegate.removeHandler(handler);
+		for (EventsManager eventsManager : this.eventsManagers) eventsManager.removeHandler(handler);
+	}
+
+	@Override
+	public void resetHandlers(int iteration) {
+		// the handlers are shared with the per-thread managers, so resetting them once is enough
+		this.delegate.resetHandlers(iteration);
+	}
+
+	@Override
+	public void initProcessing() {
+		this.delegate.initProcessing();
+		for (EventsManager eventsManager : this.eventsManagers) eventsManager.initProcessing();
+
+		this.buffer = new Event[this.bufferSize];
+		this.cursor.set(-1);
+		this.nextSequence = 0;
+		this.cachedMinConsumerSequence = -1;
+		this.hadException.set(null);
+		this.pendingHandlerEvents.set(0);
+
+		ExceptionHandler uncaughtExceptionHandler = new ExceptionHandler(this.hadException);
+		this.consumerSequences = new Sequence[this.numOfThreads];
+		this.threads = new ProcessEventsThread[this.numOfThreads];
+		this.running = true;
+		for (int i = 0; i < this.numOfThreads; i++) {
+			this.consumerSequences[i] = new Sequence();
+			this.consumerSequences[i].set(-1);
+			ProcessEventsThread thread = new ProcessEventsThread(this.eventsManagers[i], this.consumerSequences[i]);
+			thread.setDaemon(true);
+			thread.setUncaughtExceptionHandler(uncaughtExceptionHandler);
+			thread.setName(RingBufferEventsManager.class.getSimpleName() + i);
+			this.threads[i] = thread;
+		}
+		for (Thread thread : this.threads) thread.start();
+
+		this.parallelMode = true;
+	}
+
+	@Override
+	public void afterSimStep(double time) {
+		if (this.parallelMode) {
+			awaitAllEventsProcessed();
+		}
+	}
+
+	/*
+	 * Events created after this method has been called are processed in the calling thread,
+	 * e.g. money events created after the mobsim. This method must not hold the lock on this
+	 * object while waiting, since handlers may still publish events.
+	 */
+	@Override
+	public void finishProcessing() {
+		if (this.parallelMode) {
+			awaitAllEventsProcessed();
+
+			this.running = false;
+			try {
+				for (Thread thread : this.threads) thread.join();
+			} catch (InterruptedException e) {
+				this.hadException.compareAndSet(null, e);
+			}
+
+			this.parallelMode = false;
+			// do not keep the events of the last slots alive until the next iteration
+			this.buffer = null;
+		}
+
+		this.delegate.finishProcessing();
+		for (EventsManager eventsManager : this.eventsManagers) eventsManager.finishProcessing();
+
+		Throwable throwable = this.hadException.get();
+		if (throwable != null) {
+			throw new RuntimeException("Exception while processing events. Cannot guarantee that all events have been fully processed.", throwable);
+		}
+	}
+
+	/**
+	 * Waits until every processing thread has processed every published event and every event created by
+	 * the handlers.  Events created by handlers are counted before the event that caused them is marked as
+	 * processed, so they are seen here as soon as the threads have caught up.
+	 */
+	private void awaitAllEventsProcessed() {
+		int tries = 0;
+		while (this.hadException.get() == null) {
+			long published = this.cursor.get();
+			if (getMinimumConsumerSequence() >= published && this.pendingHandlerEvents.get() == 0
+					&& this.cursor.get() == published) {
+				return;
+			}
+			tries = idle(tries);
+		}
+	}
+
+	private long getMinimumConsumerSequence() {
+		long min = Long.MAX_VALUE;
+		for (Sequence sequence : this.consumerSequences) {
+			min = Math.min(min, sequence.get());
+		}
+		return min;
+	}
+
+	private static int idle(int tries) {
+		if (tries < SPIN_TRIES) {
+			// busy spin
+		} else if (tries < YIELD_TRIES) {
+			Thread.yield();
+		} else {
+			LockSupport.parkNanos(PARK_NANOS);
+		}
+		return tries + 1;
+	}
+
+	private class ProcessEventsThread extends Thread {
+
+		private final EventsManager eventsManager;
+		private final Sequence sequence;
+		/** events created by the handlers of the other threads */
+		private final Queue<Event> handlerEvents = new ConcurrentLinkedQueue<>();
+
+		public ProcessEventsThread(EventsManager eventsManager, Sequence sequence) {
+			this.eventsManager = eventsManager;
+			this.sequence = sequence;
+		}
+
+		/*package*/ RingBufferEventsManager getOwner() {
+			return RingBufferEventsManager.this;
+		}
+
+		@Override
+		public void run() {
+			final Event[] buffer = RingBufferEventsManager.this.buffer;
+			long next = this.sequence.get() + 1;
+			int tries = 0;
+			while (true) {
+				processHandlerEvents();
+				long available = cursor.get();
+				if (available < next) {
+					// leave only after having checked the cursor once more after the end was signaled
+					if (!running && cursor.get() < next && this.handlerEvents.isEmpty()) break;
+					tries = idle(tries);
+					continue;
+				}
+				tries = 0;
+				for (; next <= available; next++) {
+					this.eventsManager.processEvent(buffer[(int) next & mask]);
+					// free the slot right away, the producer might be waiting for it
+					this.sequence.lazySet(next);
+				}
+			}
+			Gbl.printCurrentThreadCpuTime();
+		}
+
+		private void processHandlerEvents() {
+			Event event;
+			while ((event = this.handlerEvents.poll()) != null) {
+				this.eventsManager.processEvent(event);
+				pendingHandlerEvents.decrementAndGet();
+			}
+		}
+	}
+
+	/**
+	 * An AtomicLong followed by some padding, so that the sequences of different threads do not share a
+	 * cache line.
+	 */
+	private static final class Sequence extends AtomicLong {
+		private static final long serialVersionUID = 1L;
+		@SuppressWarnings("unused")
+		private long p1, p2, p3, p4, p5, p6, p7;
+	}
+
+	private static class ExceptionHandler implements UncaughtExceptionHandler {
+
+		private final AtomicReference<Throwable> hadException;
+
+		public ExceptionHandler(final AtomicReference<Throwable> hadException) {
+			this.hadException = hadException;
+		}
+
+		@Override
+		public void uncaughtException(Thread t, Throwable e) {
+			this.hadException.compareAndSet(null, e);
+			log.error("Thread " + t.getName() + " died with exception while handling events.", e);
+		}
+	}
+
+}
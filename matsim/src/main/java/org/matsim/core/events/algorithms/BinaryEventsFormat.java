@@ -0,0 +1,264 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * BinaryEventsFormat.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2016 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.events.algorithms;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Constants and helpers for the binary events format written by {@link EventWriterBinary} and read by
+ * {@link org.matsim.core.events.EventsReaderBinary}.
+ * <p></p>
+ * An events file in this format contains exactly the same information as an XML events file: for every event
+ * its time, its type and the remaining attributes as strings, in their original order.  The file consists of
+ * the {@link #MAGIC} bytes, the {@link #VERSION} (int) and a sequence of blocks, terminated by a block with
+ * zero events.  A block has the following layout (ints are 4 byte big endian):
+ * <pre>
+ * int numberOfEvents
+ * int rawLength, int compressedLength, byte[compressedLength] dictionary additions (deflated)
+ * int rawLength, int compressedLength, byte[compressedLength] columns (deflated)
+ * </pre>
+ * The dictionaries (attribute keys, event types, schemas = ordered lists of attribute keys, and values) are
+ * shared by all blocks and only grow; every block contains the entries it adds, in this order:
+ * <pre>
+ * varint n, n * string            new attribute keys
+ * varint n, n * string            new event types
+ * varint n, n * (varint m, m * varint key)   new schemas
+ * varint n, n * string            new values
+ * </pre>
+ * The columns of a block are stored one after the other:<ul>
+ * <li> time: per event a varlong. If its lowest bit is 0, the time is integral and the rest of the varlong is the
+ * zigzag encoded difference to the previous integral time. Otherwise, the 8 bytes of the double follow.
+ * <li> type: per event the varint index into the event types.
+ * <li> schema: per event the varint index into the schemas.
+ * <li> values: for every attribute key used by a schema in this block, in ascending order of the key index,
+ * the values of all events having this key, in the order of the events. A value is either a varint
+ * <code>index + 1</code> into the value dictionary, or {@link #LITERAL} followed by the string.
+ * </ul>
+ * Strings are stored as varint length followed by their UTF-8 bytes.
+ */
+public final class BinaryEventsFormat {
+
+	public static final byte[] MAGIC = {'M', 'A', 'T', 'S', 'I', 'M', 'E', 'B'};
+	public static final int VERSION = 1;
+
+	public static final int DEFAULT_BLOCK_SIZE = 65536;
+
+	public static final int LITERAL = 0;
+
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	/** integral times up to this absolute value are delta encoded, larger ones are stored as double */
+	private static final double MAX_INTEGRAL_TIME = 1e15;
+
+	private BinaryEventsFormat() {
+	}
+
+	/*package*/ static boolean isIntegral(double time) {
+		return time == Math.rint(time) && Math.abs(time) < MAX_INTEGRAL_TIME
+				&& !(time == 0.0 && Double.doubleToRawLongBits(time) != 0L); // -0.0 would come back as 0.0
+	}
+
+	/**
+	 * A growable byte array to encode a block into.
+	 */
+	public static final class ByteSink {
+
+		private byte[] data;
+		private int size = 0;
+
+		public ByteSink(int initialCapacity) {
+			this.data = new byte[Math.max(initialCapacity, 16)];
+		}
+
+		private void ensureCapacity(int additional) {
+			if (this.size + additional > this.data.length) {
+				this.data = Arrays.copyOf(this.data, Math.max(2 * this.data.length, this.size + additional));
+			}
+		}
+
+		public void writeVarLong(long value) {
+			ensureCapacity(10);
+			while ((value & ~0x7FL) != 0) {
+				this.data[this.size++] = (byte) ((value & 0x7F) | 0x80);
+				value >>>= 7;
+			}
+			this.data[this.size++] = (byte) value;
+		}
+
+		public void writeVarInt(int value) {
+			writeVarLong(value & 0xFFFFFFFFL);
+		}
+
+		public void writeDouble(double value) {
+			ensureCapacity(8);
+			long bits = Double.doubleToRawLongBits(value);
+			for (int i = 56; i >= 0; i -= 8) {
+				this.data[this.size++] = (byte) (bits >>> i);
+			}
+		}
+
+		public void writeString(String value) {
+			byte[] bytes = value.getBytes(UTF8);
+			writeVarInt(bytes.length);
+			writeBytes(bytes, 0, bytes.length);
+		}
+
+		public void writeBytes(byte[] bytes, int offset, int length) {
+			ensureCapacity(length);
+			System.arraycopy(bytes, offset, this.data, this.size, length);
+			this.size += length;
+		}
+
+		public void writeTo(ByteSink other) {
+			other.writeBytes(this.data, 0, this.size);
+		}
+
+		public int size() {
+			return this.size;
+		}
+
+		public void clear() {
+			this.size = 0;
+		}
+
+		/**
+		 * Writes the raw length, the compressed length and the compressed content to the stream.
+		 */
+		public void writeCompressed(DataOutputStream out, Deflater deflater, byte[] buffer) throws IOException {
+			deflater.reset();
+			deflater.setInput(this.data, 0, this.size);
+			deflater.finish();
+			ByteSink compressed = new ByteSink(this.size / 4);
+			while (!deflater.finished()) {
+				int n = deflater.deflate(buffer);
+				compressed.writeBytes(buffer, 0, n);
+			}
+			out.writeInt(this.size);
+			out.writeInt(compressed.size);
+			out.write(compressed.data, 0, compressed.size);
+		}
+	}
+
+	/**
+	 * Reads from a decompressed section of a block.
+	 */
+	public static final class ByteSource {
+
+		private final byte[] data;
+		private int pos = 0;
+
+		public ByteSource(byte[] data) {
+			this.data = data;
+		}
+
+		public long readVarLong() {
+			long value = 0;
+			int shift = 0;
+			byte b;
+			do {
+				if (shift > 63) {
+					throw new IllegalStateException("malformed varint at position " + this.pos);
+				}
+				b = this.data[this.pos++];
+				value |= (long) (b & 0x7F) << shift;
+				shift += 7;
+			} while ((b & 0x80) != 0);
+			return value;
+		}
+
+		public int readVarInt() {
+			return (int) readVarLong();
+		}
+
+		public double readDouble() {
+			long bits = 0;
+			for (int i = 0; i < 8; i++) {
+				bits = (bits << 8) | (this.data[this.pos++] & 0xFF);
+			}
+			return Double.longBitsToDouble(bits);
+		}
+
+		public String readString() {
+			int length = readVarInt();
+			String value = new String(this.data, this.pos, length, UTF8);
+			this.pos += length;
+			return value;
+		}
+
+		/**
+		 * Reads a section written by {@link ByteSink#writeCompressed(DataOutputStream, Deflater, byte[])}, but
+		 * does not decompress it yet.
+		 */
+		public static CompressedSection readCompressed(DataInputStream in) throws IOException {
+			int rawLength = in.readInt();
+			int compressedLength = in.readInt();
+			byte[] compressed = new byte[compressedLength];
+			in.readFully(compressed);
+			return new CompressedSection(rawLength, compressed);
+		}
+	}
+
+	public static final class CompressedSection {
+
+		private final int rawLength;
+		private final byte[] compressed;
+
+		/*package*/ CompressedSection(int rawLength, byte[] compressed) {
+			this.rawLength = rawLength;
+			this.compressed = compressed;
+		}
+
+		public ByteSource decompress(Inflater inflater) {
+			inflater.reset();
+			inflater.setInput(this.compressed);
+			byte[] raw = new byte[this.rawLength];
+			try {
+				int n = 0;
+				while (n < this.rawLength) {
+					int read = inflater.inflate(raw, n, this.rawLength - n);
+					if (read == 0 && (inflater.finished() || inflater.needsInput())) {
+						throw new IllegalStateException("events block is truncated.");
+					}
+					n += read;
+				}
+			} catch (DataFormatException e) {
+				throw new IllegalStateException("events block is corrupt.", e);
+			}
+			return new ByteSource(raw);
+		}
+	}
+
+	public static long zigzag(long value) {
+		return (value << 1) ^ (value >> 63);
+	}
+
+	public static long unzigzag(long value) {
+		return (value >>> 1) ^ -(value & 1);
+	}
+
+}
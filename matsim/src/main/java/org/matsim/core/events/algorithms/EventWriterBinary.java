@@ -0,0 +1,339 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * EventWriterBinary.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2016 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.events.algorithms;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.Deflater;
+
+import org.matsim.api.core.v01.events.Event;
+import org.matsim.core.events.algorithms.BinaryEventsFormat.ByteSink;
+import org.matsim.core.events.handler.BasicEventHandler;
+import org.matsim.core.utils.io.UncheckedIOException;
+
+/**
+ * Writes events in the column oriented, block compressed format described in {@link BinaryEventsFormat}.
+ * Such files are typically several times smaller than gzipped XML events files and can be read back
+ * much faster by {@link org.matsim.core.events.EventsReaderBinary}.
+ * <p></p>
+ * Like the {@link EventWriterXML}, this writer stores the attributes of the events, so every event that can
+ * be written to XML can be written to this format as well.
+ */
+public class EventWriterBinary implements EventWriter, BasicEventHandler {
+
+	/*
+	 * A value is added to the value dictionary unless the attribute has turned out to be mostly unique
+	 * (e.g. monetary amounts), which is checked after this number of values of an attribute.
+	 */
+	private static final int DICTIONARY_CHECK_COUNT = 4096;
+
+	private final int blockSize;
+
+	private DataOutputStream out = null;
+	private final Deflater deflater = new Deflater();
+	private final byte[] deflaterBuffer = new byte[65536];
+
+	// dictionaries, growing over the whole file
+	private final Map<String, Integer> keyIndices = new HashMap<>();
+	private final List<String> keys = new ArrayList<>();
+	private final Map<String, Integer> typeIndices = new HashMap<>();
+	private final List<String> types = new ArrayList<>();
+	private final Map<Schema, Integer> schemaIndices = new HashMap<>();
+	private final List<int[]> schemas = new ArrayList<>();
+	private final Map<String, Integer> valueIndices = new HashMap<>();
+	private final List<String> values = new ArrayList<>();
+	private int[] valuesPerKey = new int[16];
+	private int[] newValuesPerKey = new int[16];
+	private boolean[] literalKey = new boolean[16];
+
+	// the number of dictionary entries already written in previous blocks
+	private int writtenKeys = 0;
+	private int writtenTypes = 0;
+	private int writtenSchemas = 0;
+	private int writtenValues = 0;
+
+	// the current block
+	private int eventsInBlock = 0;
+	private long lastIntegralTime = 0;
+	private final ByteSink timeColumn;
+	private final ByteSink typeColumn;
+	private final ByteSink schemaColumn;
+	private final List<ByteSink> valueColumns = new ArrayList<>();
+	private final ByteSink dictionarySection = new ByteSink(4096);
+	private final ByteSink dataSection;
+
+	private final Schema lookupSchema = new Schema(new int[16], 0);
+
+	public EventWriterBinary(final String filename) {
+		this(filename, BinaryEventsFormat.DEFAULT_BLOCK_SIZE);
+	}
+
+	/**
+	 * @param blockSize the number of events compressed together.
+	 */
+	public EventWriterBinary(final String filename, final int blockSize) {
+		if (blockSize < 1) {
+			throw new IllegalArgumentException("block size must be strictly positive, got " + blockSize);
+		}
+		this.blockSize = blockSize;
+		this.timeColumn = new ByteSink(2 * blockSize);
+		this.typeColumn = new ByteSink(blockSize);
+		this.schemaColumn = new ByteSink(blockSize);
+		this.dataSection = new ByteSink(8 * blockSize);
+		init(filename);
+	}
+
+	public void init(final String outfilename) {
+		closeFile();
+		try {
+			this.out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(outfilename), 1 << 16));
+			this.out.write(BinaryEventsFormat.MAGIC);
+			this.out.writeInt(BinaryEventsFormat.VERSION);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	@Override
+	public void closeFile() {
+		if (this.out != null) {
+			try {
+				if (this.eventsInBlock > 0) {
+					writeBlock();
+				}
+				this.out.writeInt(0);
+				this.out.close();
+				this.out = null;
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+	}
+
+	@Override
+	public void reset(final int iter) {
+		closeFile();
+	}
+
+	@Override
+	public void handleEvent(final Event event) {
+		Map<String, String> attributes = event.getAttributes();
+
+		double time = event.getTime();
+		if (BinaryEventsFormat.isIntegral(time)) {
+			long integralTime = (long) time;
+			this.timeColumn.writeVarLong(BinaryEventsFormat.zigzag(integralTime - this.lastIntegralTime) << 1);
+			this.lastIntegralTime = integralTime;
+		} else {
+			this.timeColumn.writeVarLong(1);
+			this.timeColumn.writeDouble(time);
+		}
+
+		String type = attributes.get(Event.ATTRIBUTE_TYPE);
+		this.typeColumn.writeVarInt(index(type == null ? event.getEventType() : type, this.typeIndices, this.types));
+
+		int nOfKeys = 0;
+		for (Map.Entry<String, String> e : attributes.entrySet()) {
+			String key = e.getKey();
+			if (Event.ATTRIBUTE_TIME.equals(key) || Event.ATTRIBUTE_TYPE.equals(key) || e.getValue() == null) {
+				continue;
+			}
+			int keyIndex = keyIndex(key);
+			if (nOfKeys == this.lookupSchema.keys.length) {
+				this.lookupSchema.keys = Arrays.copyOf(this.lookupSchema.keys, 2 * nOfKeys);
+			}
+			this.lookupSchema.keys[nOfKeys++] = keyIndex;
+			writeValue(keyIndex, e.getValue());
+		}
+		this.lookupSchema.length = nOfKeys;
+		this.lookupSchema.updateHashCode();
+		Integer schemaIndex = this.schemaIndices.get(this.lookupSchema);
+		if (schemaIndex == null) {
+			int[] keys = Arrays.copyOf(this.lookupSchema.keys, nOfKeys);
+			schemaIndex = this.schemas.size();
+			this.schemas.add(keys);
+			this.schemaIndices.put(new Schema(keys, nOfKeys), schemaIndex);
+		}
+		this.schemaColumn.writeVarInt(schemaIndex);
+
+		this.eventsInBlock++;
+		if (this.eventsInBlock == this.blockSize) {
+			try {
+				writeBlock();
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+	}
+
+	private int keyIndex(String key) {
+		Integer index = this.keyIndices.get(key);
+		if (index == null) {
+			index = this.keys.size();
+			this.keyIndices.put(key, index);
+			this.keys.add(key);
+			if (index == this.literalKey.length) {
+				this.valuesPerKey = Arrays.copyOf(this.valuesPerKey, 2 * index);
+				this.newValuesPerKey = Arrays.copyOf(this.newValuesPerKey, 2 * index);
+				this.literalKey = Arrays.copyOf(this.literalKey, 2 * index);
+			}
+			this.valueColumns.add(new ByteSink(256));
+		}
+		return index;
+	}
+
+	private void writeValue(int keyIndex, String value) {
+		ByteSink column = this.valueColumns.get(keyIndex);
+		if (!this.literalKey[keyIndex]) {
+			Integer valueIndex = this.valueIndices.get(value);
+			if (valueIndex == null) {
+				int seen = this.valuesPerKey[keyIndex];
+				if (seen >= DICTIONARY_CHECK_COUNT && 2 * this.newValuesPerKey[keyIndex] > seen) {
+					// this attribute is (almost) unique per event, a dictionary would only grow
+					this.literalKey[keyIndex] = true;
+				} else {
+					valueIndex = this.values.size();
+					this.valueIndices.put(value, valueIndex);
+					this.values.add(value);
+					this.newValuesPerKey[keyIndex]++;
+				}
+			}
+			this.valuesPerKey[keyIndex]++;
+			if (valueIndex != null) {
+				column.writeVarInt(valueIndex + 1);
+				return;
+			}
+		}
+		column.writeVarInt(BinaryEventsFormat.LITERAL);
+		column.writeString(value);
+	}
+
+	private static int index(String value, Map<String, Integer> indices, List<String> list) {
+		Integer index = indices.get(value);
+		if (index == null) {
+			index = list.size();
+			indices.put(value, index);
+			list.add(value);
+		}
+		return index;
+	}
+
+	private void writeBlock() throws IOException {
+		ByteSink dict = this.dictionarySection;
+		dict.clear();
+		dict.writeVarInt(this.keys.size() - this.writtenKeys);
+		for (int i = this.writtenKeys; i < this.keys.size(); i++) {
+			dict.writeString(this.keys.get(i));
+		}
+		dict.writeVarInt(this.types.size() - this.writtenTypes);
+		for (int i = this.writtenTypes; i < this.types.size(); i++) {
+			dict.writeString(this.types.get(i));
+		}
+		dict.writeVarInt(this.schemas.size() - this.writtenSchemas);
+		for (int i = this.writtenSchemas; i < this.schemas.size(); i++) {
+			int[] schema = this.schemas.get(i);
+			dict.writeVarInt(schema.length);
+			for (int key : schema) {
+				dict.writeVarInt(key);
+			}
+		}
+		dict.writeVarInt(this.values.size() - this.writtenValues);
+		for (int i = this.writtenValues; i < this.values.size(); i++) {
+			dict.writeString(this.values.get(i));
+		}
+		this.writtenKeys = this.keys.size();
+		this.writtenTypes = this.types.size();
+		this.writtenSchemas = this.schemas.size();
+		this.writtenValues = this.values.size();
+
+		ByteSink data = this.dataSection;
+		data.clear();
+		this.timeColumn.writeTo(data);
+		this.typeColumn.writeTo(data);
+		this.schemaColumn.writeTo(data);
+		// columns of keys that were not used in this block are empty and thus do not need to be skipped
+		for (ByteSink column : this.valueColumns) {
+			column.writeTo(data);
+			column.clear();
+		}
+
+		this.out.writeInt(this.eventsInBlock);
+		dict.writeCompressed(this.out, this.deflater, this.deflaterBuffer);
+		data.writeCompressed(this.out, this.deflater, this.deflaterBuffer);
+
+		this.timeColumn.clear();
+		this.typeColumn.clear();
+		this.schemaColumn.clear();
+		this.eventsInBlock = 0;
+		this.lastIntegralTime = 0;
+	}
+
+	/**
+	 * The key indices of an event, usable as key in a map without copying them for every event.
+	 */
+	private static final class Schema {
+		private int[] keys;
+		private int length;
+		private int hashCode;
+
+		Schema(int[] keys, int length) {
+			this.keys = keys;
+			this.length = length;
+			updateHashCode();
+		}
+
+		void updateHashCode() {
+			int h = 1;
+			for (int i = 0; i < this.length; i++) {
+				h = 31 * h + this.keys[i];
+			}
+			this.hashCode = h;
+		}
+
+		@Override
+		public int hashCode() {
+			return this.hashCode;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof Schema)) {
+				return false;
+			}
+			Schema other = (Schema) obj;
+			if (other.length != this.length) {
+				return false;
+			}
+			for (int i = 0; i < this.length; i++) {
+				if (other.keys[i] != this.keys[i]) return false;
+			}
+			return true;
+		}
+	}
+
+}
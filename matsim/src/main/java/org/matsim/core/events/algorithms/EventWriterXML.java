@@ -26,12 +26,25 @@ import java.io.OutputStreamWriter;
 import java.io.PrintStream;
 import java.util.Map;
 
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.events.ActivityEndEvent;
+import org.matsim.api.core.v01.events.ActivityStartEvent;
 import org.matsim.api.core.v01.events.Event;
+import org.matsim.api.core.v01.events.LinkEnterEvent;
+import org.matsim.api.core.v01.events.LinkLeaveEvent;
+import org.matsim.api.core.v01.events.PersonArrivalEvent;
+import org.matsim.api.core.v01.events.PersonDepartureEvent;
+import org.matsim.api.core.v01.events.PersonEntersVehicleEvent;
+import org.matsim.api.core.v01.events.PersonLeavesVehicleEvent;
+import org.matsim.api.core.v01.events.VehicleEntersTrafficEvent;
+import org.matsim.api.core.v01.events.VehicleLeavesTrafficEvent;
 import org.matsim.core.events.handler.BasicEventHandler;
 import org.matsim.core.utils.io.IOUtils;
+import org.matsim.core.utils.io.XmlValueWriter;
 
 public class EventWriterXML implements EventWriter, BasicEventHandler {
 	private BufferedWriter out = null;
+	private XmlValueWriter xml = null;
 
 	public EventWriterXML(final String filename) {
 		init(filename);
@@ -43,6 +56,7 @@ public class EventWriterXML implements EventWriter, BasicEventHandler {
 	 */
 	public EventWriterXML(final PrintStream stream ) {
 		this.out = new BufferedWriter(new OutputStreamWriter(stream));
+		this.xml = new XmlValueWriter(this.out);
 		try {
 			this.out.write("<events>\n");
 		} catch (IOException e) {
@@ -61,6 +75,7 @@ public class EventWriterXML implements EventWriter, BasicEventHandler {
 				// checksums of event files.  Removed that change again.  kai, oct'12
 				this.out.close();
 				this.out = null;
+				this.xml = null;
 			} catch (IOException e) {
 				e.printStackTrace();
 			}
@@ -71,6 +86,7 @@ public class EventWriterXML implements EventWriter, BasicEventHandler {
 
 		try {
 			this.out = IOUtils.getBufferedWriter(outfilename);
+			this.xml = new XmlValueWriter(this.out);
 			this.out.write("<?xml version=\"1.0\" encoding=\"utf-8\"?>\n<events version=\"1.0\">\n");
 		} catch (IOException e) {
 			e.printStackTrace();
@@ -85,73 +101,135 @@ public class EventWriterXML implements EventWriter, BasicEventHandler {
 	@Override
 	public void handleEvent(final Event event) {
 		try {
-			this.out.append("\t<event ");
-			Map<String, String> attr = event.getAttributes();
-			for (Map.Entry<String, String> entry : attr.entrySet()) {
-				this.out.append(entry.getKey());
-				this.out.append("=\"");
-				this.out.append(encodeAttributeValue(entry.getValue()));
-				this.out.append("\" ");
+			this.out.write("\t<event ");
+			if (!writeCoreEvent(event)) {
+				for (Map.Entry<String, String> entry : event.getAttributes().entrySet()) {
+					writeAttribute(entry.getKey(), entry.getValue());
+				}
 			}
-			this.out.append(" />\n");
+			this.out.write(" />\n");
 		} catch (IOException e) {
 			e.printStackTrace();
 		}
 	}
 
-	// the following method was taken from MatsimXmlWriter in order to correctly encode attributes, but
-	// to forego the overhead of using the full MatsimXmlWriter.
 	/**
-	 * Encodes the given string in such a way that it no longer contains
-	 * characters that have a special meaning in xml.
-	 * 
-	 * @see <a href="http://www.w3.org/International/questions/qa-escapes#use">http://www.w3.org/International/questions/qa-escapes#use</a>
-	 * @param attributeValue
-	 * @return String with some characters replaced by their xml-encoding.
+	 * Writes the attributes of the most frequent events without creating their attribute maps. Only exact
+	 * instances of the core event classes are written, subclasses might add attributes.
+	 *
+	 * @return <code>false</code> if the event is not one of these events
 	 */
-	private String encodeAttributeValue(final String attributeValue) {
-		if (attributeValue == null) {
-			return null;
-		}
-		int len = attributeValue.length();
-		boolean encode = false;
-		for (int pos = 0; pos < len; pos++) {
-			char ch = attributeValue.charAt(pos);
-			if (ch == '<') {
-				encode = true;
-				break;
-			} else if (ch == '>') {
-				encode = true;
-				break;
-			} else if (ch == '\"') {
-				encode = true;
-				break;
-			} else if (ch == '&') {
-				encode = true;
-				break;
+	private boolean writeCoreEvent(final Event event) throws IOException {
+		Class<? extends Event> type = event.getClass();
+		if (type == LinkLeaveEvent.class) {
+			LinkLeaveEvent e = (LinkLeaveEvent) event;
+			writeEventStart(e);
+			writeAttribute(LinkLeaveEvent.ATTRIBUTE_VEHICLE, e.getVehicleId());
+			writeAttribute(LinkLeaveEvent.ATTRIBUTE_LINK, e.getLinkId());
+		} else if (type == LinkEnterEvent.class) {
+			LinkEnterEvent e = (LinkEnterEvent) event;
+			writeEventStart(e);
+			writeAttribute(LinkEnterEvent.ATTRIBUTE_VEHICLE, e.getVehicleId());
+			writeAttribute(LinkEnterEvent.ATTRIBUTE_LINK, e.getLinkId());
+		} else if (type == VehicleEntersTrafficEvent.class) {
+			VehicleEntersTrafficEvent e = (VehicleEntersTrafficEvent) event;
+			writeEventStart(e);
+			writeAttribute(VehicleEntersTrafficEvent.ATTRIBUTE_DRIVER, e.getPersonId());
+			writeAttribute(VehicleEntersTrafficEvent.ATTRIBUTE_LINK, e.getLinkId());
+			if (e.getVehicleId() != null) {
+				writeAttribute(VehicleEntersTrafficEvent.ATTRIBUTE_VEHICLE, e.getVehicleId());
 			}
-		}
-		if (encode) {
-			StringBuffer bf = new StringBuffer();
-			for (int pos = 0; pos < len; pos++) {
-				char ch = attributeValue.charAt(pos);
-				if (ch == '<') {
-					bf.append("&lt;");
-				} else if (ch == '>') {
-					bf.append("&gt;");
-				} else if (ch == '\"') {
-					bf.append("&quot;");
-				} else if (ch == '&') {
-					bf.append("&amp;");
-				} else {
-					bf.append(ch);
-				}
+			if (e.getNetworkMode() != null) {
+				writeAttribute(VehicleEntersTrafficEvent.ATTRIBUTE_NETWORKMODE, e.getNetworkMode());
+			}
+			writeAttribute(VehicleEntersTrafficEvent.ATTRIBUTE_POSITION, e.getRelativePositionOnLink());
+		} else if (type == VehicleLeavesTrafficEvent.class) {
+			VehicleLeavesTrafficEvent e = (VehicleLeavesTrafficEvent) event;
+			writeEventStart(e);
+			writeAttribute(VehicleLeavesTrafficEvent.ATTRIBUTE_DRIVER, e.getPersonId());
+			writeAttribute(VehicleLeavesTrafficEvent.ATTRIBUTE_LINK, e.getLinkId());
+			if (e.getVehicleId() != null) {
+				writeAttribute(VehicleLeavesTrafficEvent.ATTRIBUTE_VEHICLE, e.getVehicleId());
+			}
+			if (e.getNetworkMode() != null) {
+				writeAttribute(VehicleLeavesTrafficEvent.ATTRIBUTE_NETWORKMODE, e.getNetworkMode());
+			}
+			writeAttribute(VehicleLeavesTrafficEvent.ATTRIBUTE_POSITION, e.getRelativePositionOnLink());
+		} else if (type == PersonEntersVehicleEvent.class) {
+			PersonEntersVehicleEvent e = (PersonEntersVehicleEvent) event;
+			writeEventStart(e);
+			writeAttribute(PersonEntersVehicleEvent.ATTRIBUTE_PERSON, e.getPersonId());
+			writeAttribute(PersonEntersVehicleEvent.ATTRIBUTE_VEHICLE, e.getVehicleId());
+		} else if (type == PersonLeavesVehicleEvent.class) {
+			PersonLeavesVehicleEvent e = (PersonLeavesVehicleEvent) event;
+			writeEventStart(e);
+			writeAttribute(PersonLeavesVehicleEvent.ATTRIBUTE_PERSON, e.getPersonId());
+			writeAttribute(PersonLeavesVehicleEvent.ATTRIBUTE_VEHICLE, e.getVehicleId());
+		} else if (type == PersonDepartureEvent.class) {
+			PersonDepartureEvent e = (PersonDepartureEvent) event;
+			writeEventStart(e);
+			writeAttribute(PersonDepartureEvent.ATTRIBUTE_PERSON, e.getPersonId());
+			writeAttribute(PersonDepartureEvent.ATTRIBUTE_LINK, e.getLinkId());
+			if (e.getLegMode() != null) {
+				writeAttribute(PersonDepartureEvent.ATTRIBUTE_LEGMODE, e.getLegMode());
+			}
+		} else if (type == PersonArrivalEvent.class) {
+			PersonArrivalEvent e = (PersonArrivalEvent) event;
+			writeEventStart(e);
+			writeAttribute(PersonArrivalEvent.ATTRIBUTE_PERSON, e.getPersonId());
+			writeAttribute(PersonArrivalEvent.ATTRIBUTE_LINK, e.getLinkId());
+			if (e.getLegMode() != null) {
+				writeAttribute(PersonArrivalEvent.ATTRIBUTE_LEGMODE, e.getLegMode());
+			}
+		} else if (type == ActivityEndEvent.class) {
+			ActivityEndEvent e = (ActivityEndEvent) event;
+			writeEventStart(e);
+			writeAttribute(ActivityEndEvent.ATTRIBUTE_PERSON, e.getPersonId());
+			if (e.getLinkId() != null) {
+				writeAttribute(ActivityEndEvent.ATTRIBUTE_LINK, e.getLinkId());
 			}
-			
-			return bf.toString();
+			if (e.getFacilityId() != null) {
+				writeAttribute(ActivityEndEvent.ATTRIBUTE_FACILITY, e.getFacilityId());
+			}
+			writeAttribute(ActivityEndEvent.ATTRIBUTE_ACTTYPE, e.getActType());
+		} else if (type == ActivityStartEvent.class) {
+			ActivityStartEvent e = (ActivityStartEvent) event;
+			writeEventStart(e);
+			writeAttribute(ActivityStartEvent.ATTRIBUTE_PERSON, e.getPersonId());
+			if (e.getLinkId() != null) {
+				writeAttribute(ActivityStartEvent.ATTRIBUTE_LINK, e.getLinkId());
+			}
+			if (e.getFacilityId() != null) {
+				writeAttribute(ActivityStartEvent.ATTRIBUTE_FACILITY, e.getFacilityId());
+			}
+			writeAttribute(ActivityStartEvent.ATTRIBUTE_ACTTYPE, e.getActType());
+		} else {
+			return false;
 		}
-		return attributeValue;
+		return true;
+	}
+
+	private void writeEventStart(final Event event) throws IOException {
+		writeAttribute(Event.ATTRIBUTE_TIME, event.getTime());
+		writeAttribute(Event.ATTRIBUTE_TYPE, event.getEventType());
+	}
+
+	private void writeAttribute(final String name, final String value) throws IOException {
+		this.out.write(name);
+		this.out.write("=\"");
+		this.xml.writeEscaped(value);
+		this.out.write("\" ");
+	}
+
+	private void writeAttribute(final String name, final Id<?> value) throws IOException {
+		writeAttribute(name, value == null ? null : value.toString());
+	}
 
+	private void writeAttribute(final String name, final double value) throws IOException {
+		this.out.write(name);
+		this.out.write("=\"");
+		this.xml.write(value);
+		this.out.write("\" ");
 	}
 
 }
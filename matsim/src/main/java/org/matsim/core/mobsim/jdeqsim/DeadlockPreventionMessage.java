@@ -50,4 +50,9 @@ public class DeadlockPreventionMessage extends EventMessage {
 		// don't do anything
 	}
 
+	@Override
+	public void recycleMessage() {
+		MessageFactory.disposeDeadlockPreventionMessage(this);
+	}
+
 }
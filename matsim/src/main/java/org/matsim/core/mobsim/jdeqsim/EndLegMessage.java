@@ -42,12 +42,23 @@ import org.matsim.core.mobsim.qsim.agents.ActivityDurationUtils;
  * @author rashid_waraich
  */
 public class EndLegMessage extends EventMessage {
-	private final PlansConfigGroup.ActivityDurationInterpretation activityDurationInterpretation ;
+	private PlansConfigGroup.ActivityDurationInterpretation activityDurationInterpretation ;
 	public EndLegMessage(final Scheduler scheduler, final Vehicle vehicle) {
 		// need the time interpretation info here.  Attaching it to the message feels weird.  The scheduler seems a pure simulation object.
 		// Consequence: attach it to Vehicle
 		super(scheduler, vehicle);
 		this.priority = JDEQSimConfigGroup.PRIORITY_ARRIVAL_MESSAGE;
+		setActivityDurationInterpretation(vehicle);
+	}
+
+	@Override
+	public void resetMessage(Scheduler scheduler, Vehicle vehicle) {
+		super.resetMessage(scheduler, vehicle);
+		// the recycled message may have belonged to a vehicle of another simulation
+		setActivityDurationInterpretation(vehicle);
+	}
+
+	private void setActivityDurationInterpretation(final Vehicle vehicle) {
 		if ( vehicle == null ) {
 			this.activityDurationInterpretation = PlansConfigGroup.ActivityDurationInterpretation.minOfDurationAndEndTime ;
 			// need this for some test cases. kai, nov'13
@@ -132,4 +143,9 @@ public class EndLegMessage extends EventMessage {
 
 	}
 
+	@Override
+	public void recycleMessage() {
+		MessageFactory.disposeEndLegMessage(this);
+	}
+
 }
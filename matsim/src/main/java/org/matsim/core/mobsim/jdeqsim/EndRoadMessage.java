@@ -57,4 +57,9 @@ public class EndRoadMessage extends EventMessage {
 		// don't need to output any event
 	}
 
+	@Override
+	public void recycleMessage() {
+		MessageFactory.disposeEndRoadMessage(this);
+	}
+
 }
@@ -57,4 +57,9 @@ public class EnterRoadMessage extends EventMessage {
 		eventsManager.processEvent(event);
 	}
 
+	@Override
+	public void recycleMessage() {
+		MessageFactory.disposeEnterRoadMessage(this);
+	}
+
 }
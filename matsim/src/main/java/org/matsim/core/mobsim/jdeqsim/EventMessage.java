@@ -37,6 +37,7 @@ public abstract class EventMessage extends Message {
 	public void resetMessage(Scheduler scheduler, Vehicle vehicle) {
 		this.scheduler = scheduler;
 		this.vehicle = vehicle;
+		reviveMessage();
 	}
 
 }
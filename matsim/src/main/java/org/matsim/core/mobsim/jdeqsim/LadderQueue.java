@@ -0,0 +1,241 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * LadderQueue.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2016 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.mobsim.jdeqsim;
+
+import java.util.ArrayList;
+import java.util.Collections;
+
+/**
+ * A ladder queue (Tang, Goh and Thng, 2005) for the messages of the {@link MessageQueue}. Messages far in the
+ * future are kept unsorted in the top, from where they are spread over the buckets of a rung when they are
+ * needed. Buckets with too many messages are spread over a finer rung below, and only small buckets are
+ * sorted into the bottom, from which the messages are taken. Inserting and removing a message thus takes
+ * amortized constant time instead of the logarithmic time of a binary heap, and the messages are touched
+ * in the order of their time instead of being swapped around a large heap.
+ * <p></p>
+ * The messages are returned in the order of {@link Message#compareTo(Message)}.
+ */
+/*package*/ final class LadderQueue {
+
+	/** the maximum number of messages in a bucket which is sorted into the bottom */
+	private static final int THRESHOLD = 50;
+	private static final int MAX_RUNGS = 8;
+
+	/** the unsorted messages later than {@link #topStart} */
+	private ArrayList<Message> top = new ArrayList<>();
+	private double topStart = Double.NEGATIVE_INFINITY;
+	private double topMin = Double.POSITIVE_INFINITY;
+	private double topMax = Double.NEGATIVE_INFINITY;
+
+	private final Rung[] rungs = new Rung[MAX_RUNGS];
+	private int nOfRungs = 0;
+
+	/** the earliest messages, sorted in reverse order so the next one is at the end */
+	private final ArrayList<Message> bottom = new ArrayList<>();
+
+	private int size = 0;
+
+	public void add(final Message m) {
+		double time = m.getMessageArrivalTime();
+		this.size++;
+		if (time > this.topStart) {
+			this.top.add(m);
+			this.topMin = Math.min(this.topMin, time);
+			this.topMax = Math.max(this.topMax, time);
+			return;
+		}
+		for (int i = 0; i < this.nOfRungs; i++) {
+			Rung rung = this.rungs[i];
+			if (rung.accepts(time)) {
+				rung.add(m);
+				return;
+			}
+		}
+		addToBottom(m);
+	}
+
+	/**
+	 * @return the first message, or <code>null</code> if the queue is empty.
+	 */
+	public Message poll() {
+		if (this.bottom.isEmpty() && !refillBottom()) {
+			return null;
+		}
+		this.size--;
+		return this.bottom.remove(this.bottom.size() - 1);
+	}
+
+	public Message peek() {
+		if (this.bottom.isEmpty() && !refillBottom()) {
+			return null;
+		}
+		return this.bottom.get(this.bottom.size() - 1);
+	}
+
+	public int size() {
+		return this.size;
+	}
+
+	private void addToBottom(final Message m) {
+		// binary search for the position after all messages which come later than m
+		int low = 0;
+		int high = this.bottom.size();
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+			if (this.bottom.get(mid).compareTo(m) > 0) {
+				low = mid + 1;
+			} else {
+				high = mid;
+			}
+		}
+		this.bottom.add(low, m);
+	}
+
+	/**
+	 * Moves the next bucket into the bottom, spreading the top or large buckets over new rungs as necessary.
+	 *
+	 * @return <code>false</code> if the queue is empty.
+	 */
+	private boolean refillBottom() {
+		while (true) {
+			if (this.nOfRungs == 0) {
+				if (this.top.isEmpty()) {
+					this.topStart = Double.NEGATIVE_INFINITY;
+					return false;
+				}
+				ArrayList<Message> messages = this.top;
+				this.top = new ArrayList<>();
+				this.topStart = this.topMax;
+				if (!spread(messages, this.topMin, this.topMax)) {
+					sortIntoBottom(messages);
+				}
+				this.topMin = Double.POSITIVE_INFINITY;
+				this.topMax = Double.NEGATIVE_INFINITY;
+				if (!this.bottom.isEmpty()) {
+					return true;
+				}
+				continue;
+			}
+			Rung rung = this.rungs[this.nOfRungs - 1];
+			ArrayList<Message> bucket = rung.removeNextBucket();
+			if (bucket == null) {
+				this.rungs[--this.nOfRungs] = null;
+				continue;
+			}
+			if (bucket.size() > THRESHOLD && this.nOfRungs < MAX_RUNGS) {
+				double min = Double.POSITIVE_INFINITY;
+				double max = Double.NEGATIVE_INFINITY;
+				for (Message m : bucket) {
+					min = Math.min(min, m.getMessageArrivalTime());
+					max = Math.max(max, m.getMessageArrivalTime());
+				}
+				if (spread(bucket, min, max)) {
+					continue;
+				}
+			}
+			sortIntoBottom(bucket);
+			return true;
+		}
+	}
+
+	/**
+	 * Spreads the messages over a new rung below the existing ones.
+	 *
+	 * @return <code>false</code> if the messages cannot be spread because they all have the same time.
+	 */
+	private boolean spread(final ArrayList<Message> messages, final double min, final double max) {
+		double width = (max - min) / messages.size();
+		if (Double.isInfinite(min) || Double.isInfinite(max) || !(width > 0) || min + width == min) {
+			return false;
+		}
+		Rung rung = new Rung(min, width, (int) Math.min((max - min) / width, messages.size()) + 1);
+		for (Message m : messages) {
+			rung.add(m);
+		}
+		this.rungs[this.nOfRungs++] = rung;
+		return true;
+	}
+
+	private void sortIntoBottom(final ArrayList<Message> messages) {
+		if (this.bottom.isEmpty()) {
+			Collections.sort(messages, Collections.reverseOrder());
+			this.bottom.addAll(messages);
+		} else {
+			for (Message m : messages) {
+				addToBottom(m);
+			}
+		}
+	}
+
+	/**
+	 * A row of buckets of equal width, of which the buckets before the current one were already taken.
+	 */
+	private static final class Rung {
+
+		private final double start;
+		private final double width;
+		private final ArrayList<Message>[] buckets;
+		private int current = 0;
+
+		@SuppressWarnings("unchecked")
+		Rung(final double start, final double width, final int nOfBuckets) {
+			this.start = start;
+			this.width = width;
+			this.buckets = new ArrayList[nOfBuckets];
+		}
+
+		/**
+		 * @return <code>true</code> if the time is not earlier than the current bucket. Once all buckets were taken,
+		 * the rung does not accept any messages anymore; the last bucket may then still be in the bottom.
+		 */
+		boolean accepts(final double time) {
+			return this.current < this.buckets.length && time >= this.start + this.current * this.width;
+		}
+
+		void add(final Message m) {
+			int index = (int) ((m.getMessageArrivalTime() - this.start) / this.width);
+			// guard against rounding, the message cannot be earlier than the current bucket
+			index = Math.max(this.current, Math.min(index, this.buckets.length - 1));
+			ArrayList<Message> bucket = this.buckets[index];
+			if (bucket == null) {
+				bucket = new ArrayList<>();
+				this.buckets[index] = bucket;
+			}
+			bucket.add(m);
+		}
+
+		/**
+		 * @return the next non-empty bucket, or <code>null</code> if all buckets were taken.
+		 */
+		ArrayList<Message> removeNextBucket() {
+			while (this.current < this.buckets.length) {
+				ArrayList<Message> bucket = this.buckets[this.current];
+				this.buckets[this.current] = null;
+				this.current++;
+				if (bucket != null && !bucket.isEmpty()) {
+					return bucket;
+				}
+			}
+			return null;
+		}
+	}
+
+}
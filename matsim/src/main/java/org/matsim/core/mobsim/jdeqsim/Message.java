@@ -39,6 +39,8 @@ public abstract class Message implements Comparable<Message> {
 	private SimUnit receivingUnit;
 	protected int priority = 0;
 	private boolean isAlive = true;
+	/** set by the {@link MessageQueue}, so messages with the same time and priority are handled in the order they were sent */
+	/*package*/ long sequenceNumber = 0;
 
 	public Message() {
 	}
@@ -66,7 +68,11 @@ public abstract class Message implements Comparable<Message> {
 			return -1;
 		} else {
 			// higher priority means for a queue, that it comes first
-			return otherMessage.getPriority() - priority;
+			int result = otherMessage.getPriority() - priority;
+			if (result == 0) {
+				result = Long.compare(sequenceNumber, otherMessage.sequenceNumber);
+			}
+			return result;
 		}
 	}
 
@@ -108,4 +114,11 @@ public abstract class Message implements Comparable<Message> {
 		return isAlive;
 	}
 
+	/**
+	 * Called by the scheduler once the message was handled or, if it was killed, taken out of the queue. Messages
+	 * created by the {@link MessageFactory} give themselves back to it here, so they can be reused.
+	 */
+	public void recycleMessage() {
+	}
+
 }
@@ -19,152 +19,161 @@
 
 package org.matsim.core.mobsim.jdeqsim;
 
-import java.util.LinkedList;
+import java.util.ArrayDeque;
 
 /**
  * The message factory is used for creating and disposing messages - mainly for
  * performance gain to have lesser garbage collection.
+ * <p></p>
+ * The pools are kept per thread, so simulations running at the same time on different threads, e.g. in tests or
+ * parallel experiments, do not share them.  A message is thus only re-used by the thread which disposed of it.
  * 
  * @author rashid_waraich
  */
 public class MessageFactory {
 
-	private static LinkedList<EndLegMessage> endLegMessageQueue = new LinkedList<EndLegMessage>();
-	private static LinkedList<EnterRoadMessage> enterRoadMessageQueue = new LinkedList<EnterRoadMessage>();
-	private static LinkedList<StartingLegMessage> startingLegMessageQueue = new LinkedList<StartingLegMessage>();
-	private static LinkedList<LeaveRoadMessage> leaveRoadMessageQueue = new LinkedList<LeaveRoadMessage>();
-	private static LinkedList<EndRoadMessage> endRoadMessageQueue = new LinkedList<EndRoadMessage>();
+	private static final ThreadLocal<Pools> pools = new ThreadLocal<Pools>() {
+		@Override
+		protected Pools initialValue() {
+			return new Pools();
+		}
+	};
+
+	private static final class Pools {
+		final ArrayDeque<EndLegMessage> endLegMessageQueue = new ArrayDeque<EndLegMessage>();
+		final ArrayDeque<EnterRoadMessage> enterRoadMessageQueue = new ArrayDeque<EnterRoadMessage>();
+		final ArrayDeque<StartingLegMessage> startingLegMessageQueue = new ArrayDeque<StartingLegMessage>();
+		final ArrayDeque<LeaveRoadMessage> leaveRoadMessageQueue = new ArrayDeque<LeaveRoadMessage>();
+		final ArrayDeque<EndRoadMessage> endRoadMessageQueue = new ArrayDeque<EndRoadMessage>();
 
-	private static LinkedList<DeadlockPreventionMessage> deadlockPreventionMessageQueue = new LinkedList<DeadlockPreventionMessage>();
+		final ArrayDeque<DeadlockPreventionMessage> deadlockPreventionMessageQueue = new ArrayDeque<DeadlockPreventionMessage>();
+	}
 
 	public static void disposeEndLegMessage(EndLegMessage message) {
 		if (!JDEQSimConfigGroup.isGC_MESSAGES()) {
-			endLegMessageQueue.add(message);
+			pools.get().endLegMessageQueue.add(message);
 		}
 	}
 
 	public static void disposeEnterRoadMessage(EnterRoadMessage message) {
 		if (!JDEQSimConfigGroup.isGC_MESSAGES()) {
-			enterRoadMessageQueue.add(message);
+			pools.get().enterRoadMessageQueue.add(message);
 		}
 	}
 
 	public static void disposeStartingLegMessage(StartingLegMessage message) {
 		if (!JDEQSimConfigGroup.isGC_MESSAGES()) {
-			startingLegMessageQueue.add(message);
+			pools.get().startingLegMessageQueue.add(message);
 		}
 	}
 
 	public static void disposeLeaveRoadMessage(LeaveRoadMessage message) {
 		if (!JDEQSimConfigGroup.isGC_MESSAGES()) {
-			leaveRoadMessageQueue.add(message);
+			pools.get().leaveRoadMessageQueue.add(message);
 		}
 	}
 
 	public static void disposeEndRoadMessage(EndRoadMessage message) {
 		if (!JDEQSimConfigGroup.isGC_MESSAGES()) {
-			endRoadMessageQueue.add(message);
+			pools.get().endRoadMessageQueue.add(message);
 		}
 	}
 
 	public static void disposeDeadlockPreventionMessage(DeadlockPreventionMessage message) {
 		if (!JDEQSimConfigGroup.isGC_MESSAGES()) {
-			deadlockPreventionMessageQueue.add(message);
+			pools.get().deadlockPreventionMessageQueue.add(message);
 		}
 	}
 
 	public static EndLegMessage getEndLegMessage(Scheduler scheduler, Vehicle vehicle) {
-		if (endLegMessageQueue.size() == 0) {
+		EndLegMessage message = pools.get().endLegMessageQueue.poll();
+		if (message == null) {
 			return new EndLegMessage(scheduler, vehicle);
 		} else {
-			EndLegMessage message = endLegMessageQueue.poll();
 			message.resetMessage(scheduler, vehicle);
 			return message;
 		}
 	}
 
 	public static EnterRoadMessage getEnterRoadMessage(Scheduler scheduler, Vehicle vehicle) {
-		if (enterRoadMessageQueue.size() == 0) {
+		EnterRoadMessage message = pools.get().enterRoadMessageQueue.poll();
+		if (message == null) {
 			return new EnterRoadMessage(scheduler, vehicle);
 		} else {
-			EnterRoadMessage message = enterRoadMessageQueue.poll();
 			message.resetMessage(scheduler, vehicle);
 			return message;
 		}
 	}
 
 	public static StartingLegMessage getStartingLegMessage(Scheduler scheduler, Vehicle vehicle) {
-		if (startingLegMessageQueue.size() == 0) {
+		StartingLegMessage message = pools.get().startingLegMessageQueue.poll();
+		if (message == null) {
 			return new StartingLegMessage(scheduler, vehicle);
 		} else {
-			StartingLegMessage message = startingLegMessageQueue.poll();
 			message.resetMessage(scheduler, vehicle);
 			return message;
 		}
 	}
 
 	public static LeaveRoadMessage getLeaveRoadMessage(Scheduler scheduler, Vehicle vehicle) {
-		if (leaveRoadMessageQueue.size() == 0) {
+		LeaveRoadMessage message = pools.get().leaveRoadMessageQueue.poll();
+		if (message == null) {
 			return new LeaveRoadMessage(scheduler, vehicle);
 		} else {
-			LeaveRoadMessage message = leaveRoadMessageQueue.poll();
 			message.resetMessage(scheduler, vehicle);
 			return message;
 		}
 	}
 
 	public static EndRoadMessage getEndRoadMessage(Scheduler scheduler, Vehicle vehicle) {
-		if (endRoadMessageQueue.size() == 0) {
+		EndRoadMessage message = pools.get().endRoadMessageQueue.poll();
+		if (message == null) {
 			return new EndRoadMessage(scheduler, vehicle);
 		} else {
-			EndRoadMessage message = endRoadMessageQueue.poll();
 			message.resetMessage(scheduler, vehicle);
 			return message;
 		}
 	}
 
 	public static DeadlockPreventionMessage getDeadlockPreventionMessage(Scheduler scheduler, Vehicle vehicle) {
-		if (deadlockPreventionMessageQueue.size() == 0) {
+		DeadlockPreventionMessage message = pools.get().deadlockPreventionMessageQueue.poll();
+		if (message == null) {
 			return new DeadlockPreventionMessage(scheduler, vehicle);
 		} else {
-			DeadlockPreventionMessage message = deadlockPreventionMessageQueue.poll();
 			message.resetMessage(scheduler, vehicle);
 			return message;
 		}
 	}
 
+	/**
+	 * Empties the pools of the calling thread.
+	 */
 	public static void GC_ALL_MESSAGES() {
-		endLegMessageQueue = new LinkedList<EndLegMessage>();
-		enterRoadMessageQueue = new LinkedList<EnterRoadMessage>();
-		startingLegMessageQueue = new LinkedList<StartingLegMessage>();
-		leaveRoadMessageQueue = new LinkedList<LeaveRoadMessage>();
-		endRoadMessageQueue = new LinkedList<EndRoadMessage>();
-
-		deadlockPreventionMessageQueue = new LinkedList<DeadlockPreventionMessage>();
+		pools.remove();
 	}
 
-	public static LinkedList<EndLegMessage> getEndLegMessageQueue() {
-		return endLegMessageQueue;
+	public static ArrayDeque<EndLegMessage> getEndLegMessageQueue() {
+		return pools.get().endLegMessageQueue;
 	}
 
-	public static LinkedList<EnterRoadMessage> getEnterRoadMessageQueue() {
-		return enterRoadMessageQueue;
+	public static ArrayDeque<EnterRoadMessage> getEnterRoadMessageQueue() {
+		return pools.get().enterRoadMessageQueue;
 	}
 
-	public static LinkedList<StartingLegMessage> getStartingLegMessageQueue() {
-		return startingLegMessageQueue;
+	public static ArrayDeque<StartingLegMessage> getStartingLegMessageQueue() {
+		return pools.get().startingLegMessageQueue;
 	}
 
-	public static LinkedList<LeaveRoadMessage> getLeaveRoadMessageQueue() {
-		return leaveRoadMessageQueue;
+	public static ArrayDeque<LeaveRoadMessage> getLeaveRoadMessageQueue() {
+		return pools.get().leaveRoadMessageQueue;
 	}
 
-	public static LinkedList<EndRoadMessage> getEndRoadMessageQueue() {
-		return endRoadMessageQueue;
+	public static ArrayDeque<EndRoadMessage> getEndRoadMessageQueue() {
+		return pools.get().endRoadMessageQueue;
 	}
 
-	public static LinkedList<DeadlockPreventionMessage> getDeadlockPreventionMessageQueue() {
-		return deadlockPreventionMessageQueue;
+	public static ArrayDeque<DeadlockPreventionMessage> getDeadlockPreventionMessageQueue() {
+		return pools.get().deadlockPreventionMessageQueue;
 	}
 
 }
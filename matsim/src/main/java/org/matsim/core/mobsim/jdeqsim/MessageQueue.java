@@ -19,16 +19,16 @@
 
 package org.matsim.core.mobsim.jdeqsim;
 
-import java.util.PriorityQueue;
-
 /**
- * The message queue of the micro-simulation.
+ * The message queue of the micro-simulation. The messages are kept in a {@link LadderQueue}; messages with the
+ * same time and priority are returned in the order in which they were put into the queue.
  *
  * @author rashid_waraich
  */
 public class MessageQueue {
-	private PriorityQueue<Message> queue1 = new PriorityQueue<Message>();
+	private LadderQueue queue1 = new LadderQueue();
 	private int queueSize = 0;
+	private long sequenceNumber = 0;
 
 	/**
 	 * 
@@ -37,6 +37,7 @@ public class MessageQueue {
 	 * @param m
 	 */
 	public void putMessage(Message m) {
+		m.sequenceNumber = sequenceNumber++;
 		queue1.add(m);
 		queueSize++;
 	}
@@ -69,7 +70,7 @@ public class MessageQueue {
 		if (queue1.peek() != null) {
 			// skip over dead messages
 			while ((m = queue1.poll()) != null && !m.isAlive()) {
-
+				m.recycleMessage();
 			}
 			// only decrement, if message fetched
 			if (m != null) {
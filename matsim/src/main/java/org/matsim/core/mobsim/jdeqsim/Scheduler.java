@@ -61,6 +61,7 @@ public class Scheduler {
 				simTime = m.getMessageArrivalTime();
 				m.processEvent();
 				m.handleMessage();
+				m.recycleMessage();
 			}
 			printLog();
 		}
@@ -0,0 +1,254 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * ActivityEndTimingWheel.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2016 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+package org.matsim.core.mobsim.qsim;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.TreeSet;
+
+import org.matsim.core.mobsim.framework.MobsimAgent;
+
+/**
+ * The activity ends of the {@link ActivityEngine}, in a timing wheel with one slot per simulated second.
+ * <p></p>
+ * An activity end within the next {@link #WHEEL_SIZE} seconds is linked into the slot of its second, so adding and
+ * removing it are constant time operations. Activity ends further in the future are kept in a sorted overflow set
+ * and moved into the wheel when the wheel reaches them. When the wheel advances, the activity ends of the passed
+ * seconds are moved into a small heap from which they are polled. This heap sorts them like the priority queue
+ * the engine used before, i.e. by their end time and, for equal times, by descending agent id, so the agents
+ * still end their activities in the same order.
+ * <p></p>
+ * Each agent has at most one activity end; the entries are found by agent, so rescheduling does not need to
+ * search the queue. All methods are synchronized, as agents may start activities from the threads of the
+ * parallel qsim.
+ */
+/*package*/ final class ActivityEndTimingWheel {
+
+	/*package*/ static final int WHEEL_SIZE = 1 << 17; // about 36 hours
+	private static final int MASK = WHEEL_SIZE - 1;
+
+	private static final byte IN_WHEEL = 0;
+	private static final byte DUE = 1;
+	private static final byte IN_OVERFLOW = 2;
+
+	/*package*/ static final Comparator<AgentEntry> COMPARATOR = new Comparator<AgentEntry>() {
+		@Override
+		public int compare(AgentEntry arg0, AgentEntry arg1) {
+			int cmp = Double.compare(arg0.activityEndTime, arg1.activityEndTime);
+			if (cmp == 0) {
+				// Both depart at the same time -> let the one with the larger id be first (=smaller)
+				//
+				// yy We are not sure what the above comment line is supposed to say.  Presumably, it is supposed
+				// to say that the agent with the larger ID should be "smaller" one in the comparison.
+				// In practice, it seems
+				// that something like "emob_9" is before "emob_8", and something like "emob_10" before "emob_1".
+				// It is unclear why this convention is supposed to be helpful.
+				// kai & dominik, jul'12
+				//
+				return arg1.agent.getId().compareTo(arg0.agent.getId());
+			}
+			return cmp;
+		}
+	};
+
+	/**
+	 * Agents cannot be added directly to the activityEndsList since that would
+	 * not be thread-safe when within-day replanning is used. There, an agent's
+	 * activity end time can be modified. As a result, the agent is located at
+	 * the wrong position in the activityEndsList until it is updated by using
+	 * rescheduleActivityEnd(...). However, if another agent is added to the list
+	 * in the mean time, it might be inserted at the wrong position.
+	 * cdobler, apr'12
+	 */
+	/*package*/ static final class AgentEntry {
+		final MobsimAgent agent;
+		final double activityEndTime;
+		final long second;
+		byte location;
+		AgentEntry previous;
+		AgentEntry next;
+
+		AgentEntry(MobsimAgent agent, double activityEndTime) {
+			this.agent = agent;
+			this.activityEndTime = activityEndTime;
+			this.second = toSecond(activityEndTime);
+		}
+	}
+
+	private final AgentEntry[] slots = new AgentEntry[WHEEL_SIZE];
+	private final PriorityQueue<AgentEntry> due = new PriorityQueue<>(500, COMPARATOR);
+	private final TreeSet<AgentEntry> overflow = new TreeSet<>(COMPARATOR);
+	private final Map<MobsimAgent, AgentEntry> entries = new IdentityHashMap<>();
+
+	/** the last second whose activity ends were moved into the heap of due activity ends */
+	private long cursor = -1;
+
+	/**
+	 * Adds the activity end of the agent, replacing a previous one.
+	 */
+	/*package*/ synchronized void add(MobsimAgent agent, double activityEndTime) {
+		AgentEntry entry = new AgentEntry(agent, activityEndTime);
+		AgentEntry previous = this.entries.put(agent, entry);
+		if (previous != null) {
+			unlink(previous);
+		}
+		insert(entry);
+	}
+
+	/**
+	 * Removes the activity end of the agent.
+	 *
+	 * @return <code>true</code> if the agent had an activity end
+	 */
+	/*package*/ synchronized boolean remove(MobsimAgent agent) {
+		AgentEntry entry = this.entries.remove(agent);
+		if (entry == null) {
+			return false;
+		}
+		unlink(entry);
+		return true;
+	}
+
+	/**
+	 * Retrieves and removes the first activity end which is not after the given time.
+	 *
+	 * @return the agent whose activity ends, or <code>null</code> if there is none until the given time
+	 */
+	/*package*/ synchronized MobsimAgent poll(double time) {
+		advance(toSecond(time));
+		AgentEntry entry = this.due.peek();
+		if (entry == null || !(entry.activityEndTime <= time)) {
+			return null;
+		}
+		this.due.poll();
+		this.entries.remove(entry.agent);
+		return entry.agent;
+	}
+
+	/*package*/ synchronized int size() {
+		return this.entries.size();
+	}
+
+	/**
+	 * Removes all activity ends.
+	 *
+	 * @return the removed activity ends, sorted like they would have been polled
+	 */
+	/*package*/ synchronized List<AgentEntry> removeAll() {
+		List<AgentEntry> result = new ArrayList<>(this.entries.values());
+		Collections.sort(result, COMPARATOR);
+		for (AgentEntry entry : result) {
+			entry.previous = null;
+			entry.next = null;
+		}
+		this.entries.clear();
+		this.due.clear();
+		this.overflow.clear();
+		for (int i = 0; i < WHEEL_SIZE; i++) {
+			this.slots[i] = null;
+		}
+		return result;
+	}
+
+	private void advance(long second) {
+		if (second <= this.cursor) {
+			return;
+		}
+		// each slot holds one second of the window after the cursor, so at most all slots have to be drained
+		long last = Math.min(second, this.cursor + WHEEL_SIZE);
+		for (long s = this.cursor + 1; s <= last; s++) {
+			int slot = (int) (s & MASK);
+			AgentEntry entry = this.slots[slot];
+			this.slots[slot] = null;
+			while (entry != null) {
+				AgentEntry next = entry.next;
+				entry.previous = null;
+				entry.next = null;
+				entry.location = DUE;
+				this.due.add(entry);
+				entry = next;
+			}
+		}
+		this.cursor = second;
+		while (!this.overflow.isEmpty() && this.overflow.first().second <= this.cursor + WHEEL_SIZE) {
+			insert(this.overflow.pollFirst());
+		}
+	}
+
+	private void insert(AgentEntry entry) {
+		if (entry.second <= this.cursor) {
+			entry.location = DUE;
+			this.due.add(entry);
+		} else if (entry.second <= this.cursor + WHEEL_SIZE) {
+			entry.location = IN_WHEEL;
+			int slot = (int) (entry.second & MASK);
+			AgentEntry head = this.slots[slot];
+			entry.next = head;
+			if (head != null) {
+				head.previous = entry;
+			}
+			this.slots[slot] = entry;
+		} else {
+			entry.location = IN_OVERFLOW;
+			this.overflow.add(entry);
+		}
+	}
+
+	private void unlink(AgentEntry entry) {
+		switch (entry.location) {
+		case IN_WHEEL:
+			if (entry.previous == null) {
+				this.slots[(int) (entry.second & MASK)] = entry.next;
+			} else {
+				entry.previous.next = entry.next;
+			}
+			if (entry.next != null) {
+				entry.next.previous = entry.previous;
+			}
+			entry.previous = null;
+			entry.next = null;
+			break;
+		case DUE:
+			this.due.remove(entry);
+			break;
+		case IN_OVERFLOW:
+			this.overflow.remove(entry);
+			break;
+		default:
+			throw new IllegalStateException("unknown location " + entry.location);
+		}
+	}
+
+	private static long toSecond(double time) {
+		if (time < Long.MIN_VALUE / 2) {
+			// e.g. an undefined time
+			return Long.MIN_VALUE / 2;
+		}
+		if (time > Long.MAX_VALUE / 2 || Double.isNaN(time)) {
+			return Long.MAX_VALUE / 2;
+		}
+		return (long) Math.floor(time);
+	}
+}
@@ -26,6 +26,7 @@ public class SteppableScheduler extends Scheduler implements Steppable {
         if (lookahead != null) {
             lookahead.processEvent();
             lookahead.handleMessage();
+            lookahead.recycleMessage();
             lookahead = null;
         }
         while (!queue.isEmpty()) {
@@ -33,6 +34,7 @@ public class SteppableScheduler extends Scheduler implements Steppable {
             if (m != null && m.getMessageArrivalTime() <= time) {
                 m.processEvent();
                 m.handleMessage();
+                m.recycleMessage();
             } else {
                 lookahead = m;
                 return;
@@ -99,6 +99,12 @@ abstract class AbstractQLink extends QLinkI {
 
 	private boolean active = false;
 
+	/**
+	 * Time until which the time steps of this link can be skipped since none of its vehicles can move before.
+	 * Only set if {@link org.matsim.core.config.groups.QSimConfigGroup#isUsingEventDrivenLinks()} is true.
+	 */
+	private double sleepingUntil = Double.NEGATIVE_INFINITY ;
+
 	private TransitQLink transitQLink;
 	
 	private final QNode toQNode ;
@@ -169,6 +175,7 @@ abstract class AbstractQLink extends QLinkI {
 		QVehicle vehicle = (QVehicle) mvehicle;
 		this.waitingList.add(vehicle);
 		vehicle.setCurrentLink(this.getLink());
+		this.wakeUp();
 		this.activateLink();
 	}
 
@@ -450,6 +457,22 @@ abstract class AbstractQLink extends QLinkI {
 		this.active = active;
 	}
 
+	final boolean isSleeping(double now) {
+		return now < this.sleepingUntil ;
+	}
+
+	final void sleepUntil(double time) {
+		this.sleepingUntil = time ;
+	}
+
+	/**
+	 * Makes the link simulate its next time step again; needs to be called whenever something changes on the link
+	 * that is not done by its own time step, except for vehicles entering at the upstream end.
+	 */
+	final void wakeUp() {
+		this.sleepingUntil = Double.NEGATIVE_INFINITY ;
+	}
+
 	Queue<QVehicle> getWaitingList() {
 		return waitingList;
 	}
@@ -0,0 +1,72 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * AbstractQNetsimEngineRunner.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2016 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.mobsim.qsim.qnetsimengine;
+
+import org.matsim.core.mobsim.qsim.QSim;
+
+/**
+ * State that is shared by all kinds of runners of the {@link QNetsimEngine}: the current time step, the
+ * "simulation running" flag, and the time the runner spent doing actual work (as opposed to waiting at a
+ * barrier) in the current time step.  The latter is used by the {@link QNetsimEngine} to compute its
+ * load balance statistics.
+ */
+abstract class AbstractQNetsimEngineRunner extends NetElementActivationRegistry {
+
+	private double time = 0.0;
+
+	private volatile boolean simulationRunning = true;
+
+	private long busyTime = 0;
+
+	/*package*/ long[] runTimes;
+	{
+		if (QSim.analyzeRunTimes) runTimes = new long[QNetsimEngine.numObservedTimeSteps];
+		else runTimes = null;
+	}
+
+	/*package*/ final void setTime(final double t) {
+		this.time = t;
+		this.busyTime = 0;
+	}
+
+	/*package*/ final double getTime() {
+		return this.time;
+	}
+
+	public final void afterSim() {
+		this.simulationRunning = false;
+	}
+
+	/*package*/ final boolean isSimulationRunning() {
+		return this.simulationRunning;
+	}
+
+	/*package*/ final void addBusyTime(final long nanos) {
+		this.busyTime += nanos;
+	}
+
+	/**
+	 * @return the nano seconds this runner spent moving nodes and links in the current time step.
+	 */
+	/*package*/ final long getBusyTime() {
+		return this.busyTime;
+	}
+}
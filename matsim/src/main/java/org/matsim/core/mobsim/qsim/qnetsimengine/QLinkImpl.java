@@ -101,6 +101,7 @@ public final class QLinkImpl extends AbstractQLink implements SignalizeableItem
 
 	@Override
 	void clearVehicles() {
+		this.wakeUp();
 		super.clearVehicles();
 		qlane.clearVehicles();
 	}
@@ -110,6 +111,9 @@ public final class QLinkImpl extends AbstractQLink implements SignalizeableItem
 //		((QueueWithBuffer)qlane).updateRemainingFlowCapacity(); 
 		
 		double now = context.getSimTimer().getTimeOfDay() ;
+		if ( this.isSleeping(now) ) {
+			return true ;
+		}
 		if ( context.qsimConfig.isInsertingWaitingVehiclesBeforeDrivingVehicles() ) {
 			this.moveWaitToRoad();
 			this.getTransitQLink().handleTransitVehiclesInStopQueue(now);
@@ -120,6 +124,9 @@ public final class QLinkImpl extends AbstractQLink implements SignalizeableItem
 			this.moveWaitToRoad();
 		}
 		this.setActive(this.checkForActivity());
+		if ( context.qsimConfig.isUsingEventDrivenLinks() && isActive() ) {
+			this.sleepUntil( this.getEarliestTimeOfNextMove() );
+		}
 		return isActive();
 		// yy seems to me that for symmetry there should be something like
 		// 			netElementActivationRegistry.registerLinkAsActive(this);
@@ -164,6 +171,7 @@ public final class QLinkImpl extends AbstractQLink implements SignalizeableItem
 
 	@Override public void recalcTimeVariantAttributes() {
 		double now = context.getSimTimer().getTimeOfDay() ;
+		this.wakeUp();
 		qlane.changeUnscaledFlowCapacityPerSecond( ((Link) this.getLink()).getFlowCapacityPerSec(now) );
 		qlane.changeEffectiveNumberOfLanes(this.getLink().getNumberOfLanes(now));
 		qlane.changeSpeedMetersPerSecond( getLink().getFreespeed(now) ) ;
@@ -212,6 +220,18 @@ public final class QLinkImpl extends AbstractQLink implements SignalizeableItem
 		return this.visdata;
 	}
 
+	/**
+	 * Vehicles entering from upstream are added at the end of the queue and do not change this time.  Everything
+	 * else that may allow an earlier move (departing vehicles, changed attributes, signals) wakes the link up.
+	 */
+	private double getEarliestTimeOfNextMove() {
+		if ( !this.getWaitingList().isEmpty() || !this.getTransitQLink().getTransitVehicleStopQueue().isEmpty() 
+				|| !(qlane instanceof QueueWithBuffer) ) {
+			return Double.NEGATIVE_INFINITY ;
+		}
+		return ((QueueWithBuffer) qlane).getEarliestTimeOfNextMove() ;
+	}
+
 	private boolean checkForActivity() {
 		/*
 		 * Leave Link active as long as there are vehicles on the link (ignore
@@ -223,10 +243,12 @@ public final class QLinkImpl extends AbstractQLink implements SignalizeableItem
 	}
 
 	@Override public void setSignalStateAllTurningMoves(SignalGroupState state) {
+		this.wakeUp();
 		((SignalizeableItem) qlane).setSignalStateAllTurningMoves(state);
 	}
 
 	@Override public void setSignalStateForTurningMove(SignalGroupState state, Id<Link> toLinkId) {
+		this.wakeUp();
 		((SignalizeableItem) qlane).setSignalStateForTurningMove(state, toLinkId);
 	}
 
@@ -22,7 +22,6 @@ package org.matsim.core.mobsim.qsim.qnetsimengine;
 
 import java.util.ArrayList;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
@@ -38,6 +37,7 @@ import javax.inject.Inject;
 
 import org.apache.log4j.Logger;
 import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.IdMap;
 import org.matsim.api.core.v01.Scenario;
 import org.matsim.api.core.v01.events.PersonLeavesVehicleEvent;
 import org.matsim.api.core.v01.network.Link;
@@ -47,6 +47,7 @@ import org.matsim.core.api.experimental.events.EventsManager;
 import org.matsim.core.config.Config;
 import org.matsim.core.config.groups.QSimConfigGroup;
 import org.matsim.core.config.groups.QSimConfigGroup.LinkDynamics;
+import org.matsim.core.config.groups.QSimConfigGroup.RunnerAssignment;
 import org.matsim.core.config.groups.QSimConfigGroup.SnapshotStyle;
 import org.matsim.core.config.groups.QSimConfigGroup.StarttimeInterpretation;
 import org.matsim.core.config.groups.QSimConfigGroup.VehicleBehavior;
@@ -60,6 +61,7 @@ import org.matsim.core.mobsim.qsim.interfaces.AgentCounter;
 import org.matsim.core.mobsim.qsim.interfaces.MobsimEngine;
 import org.matsim.core.mobsim.qsim.interfaces.MobsimVehicle;
 import org.matsim.core.mobsim.qsim.interfaces.NetsimNetwork;
+import org.matsim.core.network.algorithms.NetworkPartitioner;
 import org.matsim.core.utils.misc.Time;
 import org.matsim.vehicles.Vehicle;
 import org.matsim.vis.snapshotwriters.SnapshotLinkWidthCalculator;
@@ -105,7 +107,7 @@ public class QNetsimEngine implements MobsimEngine {
 
 	private QNetwork network;
 
-	private final Map<Id<Vehicle>, QVehicle> vehicles = new HashMap<>();
+	private final Map<Id<Vehicle>, QVehicle> vehicles = new IdMap<>(Vehicle.class);
 
 	private final QSim qsim;
 
@@ -115,7 +117,13 @@ public class QNetsimEngine implements MobsimEngine {
 
 	private final int numOfThreads;
 
-	private List<QNetsimEngineRunner> engines;
+	private List<AbstractQNetsimEngineRunner> engines;
+
+	// only filled when using the thread pool, since this needs the runners as Callables
+	private List<QNetsimEngineRunner> pooledEngines;
+
+	// only filled when using work stealing
+	private List<QNetsimEngineWorkStealingRunner> stealingEngines;
 
 	private Phaser startBarrier;
 	private Phaser endBarrier;
@@ -129,6 +137,15 @@ public class QNetsimEngine implements MobsimEngine {
 	private ExecutorService pool;
 
 	private final boolean usingThreadpool;
+
+	private final boolean usingWorkStealing;
+
+	private final int workStealingChunkSize;
+
+	// load balance statistics, see getLoadImbalance()
+	private double lastLoadImbalance = 1.0;
+	private double loadImbalanceSum = 0.0;
+	private int loadImbalanceCnt = 0;
 	
 	// for detailed run time analysis - used in combination with QSim.analyzeRunTimes
 	public static int numObservedTimeSteps = 24*3600;
@@ -149,8 +166,12 @@ public class QNetsimEngine implements MobsimEngine {
 
 		final Config config = sim.getScenario().getConfig();
 		final QSimConfigGroup qsimConfigGroup = config.qsim();
-		this.usingThreadpool = qsimConfigGroup.isUsingThreadpool();
-
+		this.usingWorkStealing = qsimConfigGroup.isUsingWorkStealing();
+		this.workStealingChunkSize = qsimConfigGroup.getWorkStealingChunkSize();
+		if (this.usingWorkStealing && qsimConfigGroup.isUsingThreadpool()) {
+			log.info("Work stealing between the QNetsimEngineRunners is enabled. This needs dedicated threads, i.e. the thread pool is not used.");
+		}
+		this.usingThreadpool = qsimConfigGroup.isUsingThreadpool() && !this.usingWorkStealing;
 
 		// configuring the car departure hander (including the vehicle behavior)
 		QSimConfigGroup qSimConfigGroup = this.qsim.getScenario().getConfig().qsim();
@@ -245,7 +266,7 @@ public class QNetsimEngine implements MobsimEngine {
 		 * Calling the afterSim Method of the QSimEngineThreads
 		 * will set their simulationRunning flag to false.
 		 */
-		for (QNetsimEngineRunner engine : this.engines) {
+		for (AbstractQNetsimEngineRunner engine : this.engines) {
 			engine.afterSim();
 		}
 
@@ -317,22 +338,22 @@ public class QNetsimEngine implements MobsimEngine {
 		// as input for the domain decomposition under (b).
 
 		// set current Time
-		for (QNetsimEngineRunner engine : this.engines) {
+		for (AbstractQNetsimEngineRunner engine : this.engines) {
 			engine.setTime(time);
 		}
 
 		if (this.usingThreadpool) {
 			try {
-				for (QNetsimEngineRunner engine : this.engines) {
+				for (QNetsimEngineRunner engine : this.pooledEngines) {
 					engine.setMovingNodes(true);
 				}
-				for (Future<Boolean> future : pool.invokeAll(this.engines)) {
+				for (Future<Boolean> future : pool.invokeAll(this.pooledEngines)) {
 					future.get();
 				}
-				for (QNetsimEngineRunner engine : this.engines) {
+				for (QNetsimEngineRunner engine : this.pooledEngines) {
 					engine.setMovingNodes(false);
 				}
-				for (Future<Boolean> future : pool.invokeAll(this.engines)) {
+				for (Future<Boolean> future : pool.invokeAll(this.pooledEngines)) {
 					future.get();
 				}
 			} catch (InterruptedException e) {
@@ -343,7 +364,42 @@ public class QNetsimEngine implements MobsimEngine {
 		} else {
 			this.startBarrier.arriveAndAwaitAdvance();
 			this.endBarrier.arriveAndAwaitAdvance();
+
+			for (QNetsimEngineWorkStealingRunner engine : this.stealingEngines) {
+				if (engine.getFailure() != null) {
+					throw engine.getFailure();
+				}
+			}
+		}
+
+		updateLoadImbalance();
+	}
+
+	/*
+	 * The load imbalance of a time step is the maximum time a runner was busy divided by the average
+	 * time the runners were busy.  1.0 means perfectly balanced; with n runners, n means that a single
+	 * runner did all the work while the others were waiting at the barriers.
+	 */
+	private void updateLoadImbalance() {
+		long max = 0;
+		long sum = 0;
+		for (AbstractQNetsimEngineRunner engine : this.engines) {
+			long busyTime = engine.getBusyTime();
+			sum += busyTime;
+			if (busyTime > max) max = busyTime;
 		}
+		this.lastLoadImbalance = sum > 0 ? (double) max * this.engines.size() / sum : 1.0;
+		this.loadImbalanceSum += this.lastLoadImbalance;
+		this.loadImbalanceCnt++;
+	}
+
+	/**
+	 * @return the load imbalance between the runners in the last time step, i.e. the maximum time a runner was
+	 * busy moving nodes and links divided by the average of these times.  1.0 means that all runners had
+	 * the same amount of work.
+	 */
+	public double getLoadImbalance() {
+		return this.lastLoadImbalance;
 	}
 
 
@@ -352,9 +408,13 @@ public class QNetsimEngine implements MobsimEngine {
 			this.infoTime += INFO_PERIOD;
 			int nofActiveLinks = this.getNumberOfSimulatedLinks();
 			int nofActiveNodes = this.getNumberOfSimulatedNodes();
+			double avgLoadImbalance = this.loadImbalanceCnt > 0 ? this.loadImbalanceSum / this.loadImbalanceCnt : 1.0;
+			this.loadImbalanceSum = 0.0;
+			this.loadImbalanceCnt = 0;
 			log.info("SIMULATION (QNetsimEngine) AT " + Time.writeTime(time)
 					+ " : #links=" + nofActiveLinks
-					+ " #nodes=" + nofActiveNodes);
+					+ " #nodes=" + nofActiveNodes
+					+ " avg. load imbalance=" + String.format("%.2f", avgLoadImbalance));
 		}
 	}
 
@@ -362,7 +422,7 @@ public class QNetsimEngine implements MobsimEngine {
 
 		int numLinks = 0;
 
-		for (QNetsimEngineRunner engine : this.engines) {
+		for (AbstractQNetsimEngineRunner engine : this.engines) {
 			numLinks = numLinks + engine.getNumberOfSimulatedLinks();
 		}
 
@@ -373,7 +433,7 @@ public class QNetsimEngine implements MobsimEngine {
 
 		int numNodes = 0;
 
-		for (QNetsimEngineRunner engine : this.engines) {
+		for (AbstractQNetsimEngineRunner engine : this.engines) {
 			numNodes = numNodes + engine.getNumberOfSimulatedNodes();
 		}
 
@@ -426,6 +486,8 @@ public class QNetsimEngine implements MobsimEngine {
 	private void initQSimEngineThreads() {
 
 		this.engines = new ArrayList<>();
+		this.pooledEngines = new ArrayList<>();
+		this.stealingEngines = new ArrayList<>();
 
 		this.startBarrier = new Phaser(this.numOfThreads + 1);
 		Phaser separationBarrier = new Phaser(this.numOfThreads);
@@ -442,18 +504,36 @@ public class QNetsimEngine implements MobsimEngine {
 		}
 
 		// setup threads
-		for (int i = 0; i < numOfRunners; i++) {
-			QNetsimEngineRunner engine ;
-			if (this.usingThreadpool) {
-				engine = new QNetsimEngineRunner();
-			} else {
-				engine = new QNetsimEngineRunner(this.startBarrier, separationBarrier, endBarrier);
-				Thread thread = new Thread(engine);
-				thread.setName("QNetsimEngineRunner_" + i);
+		if (this.usingWorkStealing) {
+			QNetsimEngineWorkStealingRunner[] runners = new QNetsimEngineWorkStealingRunner[numOfRunners];
+			for (int i = 0; i < numOfRunners; i++) {
+				runners[i] = new QNetsimEngineWorkStealingRunner(this.startBarrier, separationBarrier, endBarrier, this.workStealingChunkSize);
+				this.engines.add(runners[i]);
+				this.stealingEngines.add(runners[i]);
+			}
+			// the runners need to know each other before they are started
+			for (int i = 0; i < numOfRunners; i++) {
+				runners[i].setPeers(runners);
+				Thread thread = new Thread(runners[i]);
+				thread.setName("QNetsimEngineWorkStealingRunner_" + i);
 				thread.setDaemon(true);	// make the Thread Daemons so they will terminate automatically
 				thread.start();
 			}
-			this.engines.add(engine);
+		} else {
+			for (int i = 0; i < numOfRunners; i++) {
+				QNetsimEngineRunner engine ;
+				if (this.usingThreadpool) {
+					engine = new QNetsimEngineRunner();
+					this.pooledEngines.add(engine);
+				} else {
+					engine = new QNetsimEngineRunner(this.startBarrier, separationBarrier, endBarrier);
+					Thread thread = new Thread(engine);
+					thread.setName("QNetsimEngineRunner_" + i);
+					thread.setDaemon(true);	// make the Thread Daemons so they will terminate automatically
+					thread.start();
+				}
+				this.engines.add(engine);
+			}
 		}
 
 		/*
@@ -475,9 +555,20 @@ public class QNetsimEngine implements MobsimEngine {
 		int nodes[] = new int[numOfRunners];
 		int links[] = new int[numOfRunners];
 
+		// (b) from the list in run(...): deliberate domain decomposition instead of round robin
+		NetworkPartitioner partitioner = null;
+		if (qsim.getScenario().getConfig().qsim().getRunnerAssignment() == RunnerAssignment.partitioned) {
+			partitioner = new NetworkPartitioner(this.numOfRunners);
+			partitioner.run(qsim.getScenario().getNetwork());
+		}
+
 		int roundRobin = 0;
 		for (QNode node : network.getNetsimNodes().values()) {
-			int i = roundRobin % this.numOfRunners;
+			int i = partitioner != null ? partitioner.getPartition(node.getNode()) : -1;
+			if (i < 0) {
+				// also for nodes the partitioner does not know, e.g. if the network was changed after creating the qsim
+				i = roundRobin % this.numOfRunners;
+			}
 			node.setNetElementActivationRegistry(this.engines.get(i));
 			nodes[i]++;
 
@@ -535,7 +626,7 @@ public class QNetsimEngine implements MobsimEngine {
 			sb.append("\t" + i);
 			long min = Long.MAX_VALUE;
 			long max = Long.MIN_VALUE;
-			for (QNetsimEngineRunner runner : this.engines) {
+			for (AbstractQNetsimEngineRunner runner : this.engines) {
 				long runTime = runner.runTimes[i];
 				sum += runTime;
 				if (runTime < min) min = runTime;
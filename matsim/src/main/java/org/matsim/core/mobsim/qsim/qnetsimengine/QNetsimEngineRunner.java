@@ -34,11 +34,7 @@ import java.util.concurrent.Phaser;
  * @author (of this documentation) nagel
  *
  */
-class QNetsimEngineRunner extends NetElementActivationRegistry implements Runnable, Callable<Boolean> {
-
-	private double time = 0.0;
-
-	private volatile boolean simulationRunning = true;
+class QNetsimEngineRunner extends AbstractQNetsimEngineRunner implements Runnable, Callable<Boolean> {
 
 	private final Phaser startBarrier;
 	private final Phaser separationBarrier;
@@ -76,12 +72,7 @@ class QNetsimEngineRunner extends NetElementActivationRegistry implements Runnab
 
 	private boolean movingNodes;
 
-	/*package*/ long[] runTimes;
 	private long startTime = 0;
-	{	
-		if (QSim.analyzeRunTimes) runTimes = new long[QNetsimEngine.numObservedTimeSteps];
-		else runTimes = null;
-	}
 	
 	/*package*/ QNetsimEngineRunner(Phaser startBarrier, Phaser separationBarrier, Phaser endBarrier) {
 		this.startBarrier = startBarrier;
@@ -96,14 +87,6 @@ class QNetsimEngineRunner extends NetElementActivationRegistry implements Runnab
 		this.endBarrier = null;
 	}
 
-	/*package*/ void setTime(final double t) {
-		time = t;
-	}
-
-	public void afterSim() {
-		this.simulationRunning = false;
-	}
-
 	@Override
 	public Boolean call() {
 		// implementing "call" and "run" side by side because it seems the easier way to 
@@ -111,16 +94,18 @@ class QNetsimEngineRunner extends NetElementActivationRegistry implements Runnab
 		// kai, jan'14
 
 		// Check if Simulation is still running. Otherwise print CPU usage and end thread.
-		if (!this.simulationRunning) {
+		if (!this.isSimulationRunning()) {
 			Gbl.printCurrentThreadCpuTime();
 			return false;
 		}
 
+		long start = System.nanoTime();
 		if (this.movingNodes) {
 			moveNodes();
 		} else {
 			moveLinks();
 		}
+		this.addBusyTime(System.nanoTime() - start);
 		return true ;
 	}
 
@@ -139,21 +124,25 @@ class QNetsimEngineRunner extends NetElementActivationRegistry implements Runnab
 			if (QSim.analyzeRunTimes) this.startTime = System.nanoTime();
 			
 			// Check if Simulation is still running. Otherwise print CPU usage and end thread.
-			if (!this.simulationRunning) {
+			if (!this.isSimulationRunning()) {
 				Gbl.printCurrentThreadCpuTime();
 				return;
 			}
 
+			long start = System.nanoTime();
 			moveNodes();
+			this.addBusyTime(System.nanoTime() - start);
 
 			// After moving the QNodes all we use a Phaser to synchronize the threads.
 			this.separationBarrier.arriveAndAwaitAdvance();
 
+			start = System.nanoTime();
 			moveLinks();
+			this.addBusyTime(System.nanoTime() - start);
 
 			if (QSim.analyzeRunTimes) {
 				long end = System.nanoTime();
-				int bin = (int) this.time;
+				int bin = (int) this.getTime();
 				if (bin < this.runTimes.length) this.runTimes[bin] = end - this.startTime;
 			}
 			
@@ -171,7 +160,7 @@ class QNetsimEngineRunner extends NetElementActivationRegistry implements Runnab
 		Iterator<QNode> simNodes = this.nodesQueue.iterator();
 		while (simNodes.hasNext()) {
 			node = simNodes.next();
-			remainsActive = node.doSimStep(time);
+			remainsActive = node.doSimStep(this.getTime());
 			if (!remainsActive) simNodes.remove();
 		}
 		this.lockNodes = false;
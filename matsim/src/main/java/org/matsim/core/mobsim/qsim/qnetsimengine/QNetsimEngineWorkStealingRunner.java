@@ -0,0 +1,310 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * QNetsimEngineWorkStealingRunner.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2016 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.mobsim.qsim.qnetsimengine;
+
+import java.util.Arrays;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Phaser;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.log4j.Logger;
+import org.matsim.core.gbl.Gbl;
+import org.matsim.core.mobsim.qsim.QSim;
+
+/**
+ * A runner of the {@link QNetsimEngine} that does not only move its own nodes and links, but also helps
+ * the other runners once it is done with its own work.
+ * <p></p>
+ * As in the {@link QNetsimEngineRunner}, every node and link is statically assigned to one runner, which
+ * acts as its {@link NetElementActivationRegistry}.  In every time step, each runner takes a snapshot of its
+ * active nodes (and later: links) into an array.  The arrays are processed in chunks of a fixed size which
+ * are claimed by incrementing an atomic cursor.  A runner first claims chunks from its own array; once that
+ * is exhausted, it continues claiming chunks from the arrays of the other runners.  Thus, a runner that got a
+ * congested part of the network no longer determines the duration of the time step on its own.
+ * <p></p>
+ * Consequences of this design:<ul>
+ * <li> Nodes and links may now be activated by any thread, so the activation queues need to be thread-safe.
+ * <li> Whether an element stays active is written into a flag array by the thread that moved it; the owner
+ * drops the inactive elements when it takes the next snapshot.  No element is ever moved twice in one step.
+ * <li> Compared to the {@link QNetsimEngineRunner}, two more barriers are needed per time step to publish
+ * the snapshots before other runners may steal from them.
+ * </ul>
+ */
+final class QNetsimEngineWorkStealingRunner extends AbstractQNetsimEngineRunner implements Runnable {
+
+	private static final Logger log = Logger.getLogger(QNetsimEngineWorkStealingRunner.class);
+
+	private final Phaser startBarrier;
+	private final Phaser separationBarrier;
+	private final Phaser endBarrier;
+
+	private final int chunkSize;
+
+	private QNetsimEngineWorkStealingRunner[] peers = null;
+	private int index = -1;
+
+	/*
+	 * Nodes and links activated since the last snapshot. Since nodes and links owned by this
+	 * runner may be moved by any other runner, activations can come from every thread.
+	 */
+	private final Queue<QNode> activatedNodes = new ConcurrentLinkedQueue<>();
+	private final Queue<QLinkI> activatedLinks = new ConcurrentLinkedQueue<>();
+
+	private final ActiveElements<QNode> nodes = new ActiveElements<>();
+	private final ActiveElements<QLinkI> links = new ActiveElements<>();
+
+	/*
+	 * See QNetsimEngineRunner. These are set by the owner and read by all threads, therefore volatile.
+	 */
+	private volatile boolean lockNodes = false;
+	private volatile boolean lockLinks = false;
+
+	private long startTime = 0;
+
+	/*
+	 * An exception thrown while moving nodes or links must not make this thread leave the barriers,
+	 * otherwise all other threads would wait forever.  It is therefore kept here and re-thrown by the
+	 * QNetsimEngine on the main thread.
+	 */
+	private volatile RuntimeException failure = null;
+
+	// only for statistics
+	private long processedChunks = 0;
+	private long stolenChunks = 0;
+
+	/*package*/ QNetsimEngineWorkStealingRunner(Phaser startBarrier, Phaser separationBarrier, Phaser endBarrier, int chunkSize) {
+		if (chunkSize < 1) {
+			throw new IllegalArgumentException("chunk size must be strictly positive, got " + chunkSize);
+		}
+		this.startBarrier = startBarrier;
+		this.separationBarrier = separationBarrier;
+		this.endBarrier = endBarrier;
+		this.chunkSize = chunkSize;
+	}
+
+	/**
+	 * Must be called before the thread is started. <code>peers</code> has to contain this runner.
+	 */
+	/*package*/ void setPeers(QNetsimEngineWorkStealingRunner[] peers) {
+		this.peers = peers;
+		for (int i = 0; i < peers.length; i++) {
+			if (peers[i] == this) this.index = i;
+		}
+		if (this.index < 0) {
+			throw new IllegalArgumentException("runner is not contained in its own peers. Aborting!");
+		}
+	}
+
+	@Override
+	public void run() {
+
+		// The method is ended when the simulationRunning flag is set to false.
+		while (true) {
+
+			this.startBarrier.arriveAndAwaitAdvance();
+
+			if (QSim.analyzeRunTimes) this.startTime = System.nanoTime();
+
+			// Check if Simulation is still running. Otherwise print CPU usage and end thread.
+			if (!this.isSimulationRunning()) {
+				Gbl.printCurrentThreadCpuTime();
+				log.info(Thread.currentThread().getName() + " processed " + this.processedChunks + " chunks, "
+						+ this.stolenChunks + " of them stolen from other runners.");
+				return;
+			}
+
+			long start = System.nanoTime();
+			this.lockNodes = true;
+			this.nodes.takeSnapshot(this.activatedNodes);
+			this.addBusyTime(System.nanoTime() - start);
+
+			// all node snapshots have to be published before anybody starts stealing
+			this.separationBarrier.arriveAndAwaitAdvance();
+
+			start = System.nanoTime();
+			try {
+				if (this.failure == null) moveNodes();
+			} catch (RuntimeException e) {
+				this.failure = e;
+			}
+			this.addBusyTime(System.nanoTime() - start);
+
+			// all nodes have to be moved before the links are handled
+			this.separationBarrier.arriveAndAwaitAdvance();
+
+			start = System.nanoTime();
+			this.lockNodes = false;
+			this.lockLinks = true;
+			this.links.takeSnapshot(this.activatedLinks);
+			this.addBusyTime(System.nanoTime() - start);
+
+			// all link snapshots have to be published before anybody starts stealing
+			this.separationBarrier.arriveAndAwaitAdvance();
+
+			start = System.nanoTime();
+			try {
+				if (this.failure == null) moveLinks();
+			} catch (RuntimeException e) {
+				this.failure = e;
+			}
+			this.lockLinks = false;
+			long end = System.nanoTime();
+			this.addBusyTime(end - start);
+
+			if (QSim.analyzeRunTimes) {
+				int bin = (int) this.getTime();
+				if (bin < this.runTimes.length) this.runTimes[bin] = end - this.startTime;
+			}
+
+			/*
+			 * The end of moving is synchronized with the endBarrier. If all threads
+			 * reach this barrier the main thread can go on.
+			 */
+			this.endBarrier.arriveAndAwaitAdvance();
+		}
+	}
+
+	private void moveNodes() {
+		final double time = this.getTime();
+		for (int i = 0; i < this.peers.length; i++) {
+			// start with the own nodes, then continue with the ones of the following runners
+			ActiveElements<QNode> elements = this.peers[(this.index + i) % this.peers.length].nodes;
+			int from;
+			while ((from = elements.claimChunk(this.chunkSize)) >= 0) {
+				int to = Math.min(from + this.chunkSize, elements.size);
+				for (int j = from; j < to; j++) {
+					elements.remainsActive[j] = elements.get(j).doSimStep(time);
+				}
+				this.processedChunks++;
+				if (i > 0) this.stolenChunks++;
+			}
+		}
+	}
+
+	private void moveLinks() {
+		for (int i = 0; i < this.peers.length; i++) {
+			ActiveElements<QLinkI> elements = this.peers[(this.index + i) % this.peers.length].links;
+			int from;
+			while ((from = elements.claimChunk(this.chunkSize)) >= 0) {
+				int to = Math.min(from + this.chunkSize, elements.size);
+				for (int j = from; j < to; j++) {
+					elements.remainsActive[j] = elements.get(j).doSimStep();
+				}
+				this.processedChunks++;
+				if (i > 0) this.stolenChunks++;
+			}
+		}
+	}
+
+	/**
+	 * @return the exception that was thrown while this runner moved nodes or links, or <code>null</code>.
+	 */
+	/*package*/ RuntimeException getFailure() {
+		return this.failure;
+	}
+
+	@Override
+	protected void registerLinkAsActive(QLinkI link) {
+		if (!this.lockLinks) this.activatedLinks.add(link);
+		else throw new RuntimeException("Tried to activate a QLink at a time where this was not allowed. Aborting!");
+	}
+
+	/*
+	 * Only called once every simulated hour for the log message. Therefore, the O(n) size() of the
+	 * ConcurrentLinkedQueue should be okay.
+	 */
+	@Override
+	public int getNumberOfSimulatedLinks() {
+		return this.links.countRemainingActive() + this.activatedLinks.size();
+	}
+
+	@Override
+	protected void registerNodeAsActive(QNode node) {
+		if (!this.lockNodes) this.activatedNodes.add(node);
+		else throw new RuntimeException("Tried to activate a QNode at a time where this was not allowed. Aborting!");
+	}
+
+	@Override
+	public int getNumberOfSimulatedNodes() {
+		return this.nodes.countRemainingActive() + this.activatedNodes.size();
+	}
+
+	/**
+	 * The active elements of one runner for the current time step.  Everything but
+	 * {@link #claimChunk(int)} and the writes into {@link #remainsActive} is only done by the owner
+	 * while no other runner accesses the snapshot; the barriers take care of the visibility.
+	 */
+	private static final class ActiveElements<T> {
+
+		private Object[] elements = new Object[16];
+		private boolean[] remainsActive = new boolean[16];
+		private int size = 0;
+
+		private final AtomicInteger cursor = new AtomicInteger(0);
+
+		/**
+		 * Drops the elements that became inactive in the last time step and appends the elements that
+		 * were activated since then.  The order of the remaining elements is kept.
+		 */
+		void takeSnapshot(Queue<? extends T> activated) {
+			int n = 0;
+			for (int i = 0; i < this.size; i++) {
+				if (this.remainsActive[i]) this.elements[n++] = this.elements[i];
+			}
+			Arrays.fill(this.elements, n, this.size, null);
+
+			T element;
+			while ((element = activated.poll()) != null) {
+				if (n == this.elements.length) {
+					this.elements = Arrays.copyOf(this.elements, 2 * n);
+					this.remainsActive = Arrays.copyOf(this.remainsActive, 2 * n);
+				}
+				this.elements[n++] = element;
+			}
+			this.size = n;
+			this.cursor.set(0);
+		}
+
+		/**
+		 * @return the index of the first element of the claimed chunk, or -1 if everything is taken.
+		 */
+		int claimChunk(int chunkSize) {
+			// avoid the contended getAndAdd if there is obviously nothing left
+			if (this.cursor.get() >= this.size) return -1;
+			int from = this.cursor.getAndAdd(chunkSize);
+			return from < this.size ? from : -1;
+		}
+
+		@SuppressWarnings("unchecked")
+		T get(int i) {
+			return (T) this.elements[i];
+		}
+
+		int countRemainingActive() {
+			int cnt = 0;
+			for (int i = 0; i < this.size; i++) {
+				if (this.remainsActive[i]) cnt++;
+			}
+			return cnt;
+		}
+	}
+}
@@ -428,6 +428,33 @@ final class QueueWithBuffer extends QLaneI implements SignalizeableItem {
 		return true ;
 	}
 
+	/**
+	 * Returns the earliest time at which {@link #doSimStep()} can move a vehicle of this lane, or
+	 * {@link Double#NEGATIVE_INFINITY} if the lane has to be simulated in every time step.  Until the returned time,
+	 * the time steps of the lane do nothing as long as no vehicle is put in front of the queue, which is why this
+	 * is only used with FIFO link dynamics.  Capacity accumulation is no reason to simulate the lane as long as the
+	 * accumulated flow is sufficient for the next vehicle, since it is not changed in that case.
+	 */
+	final double getEarliestTimeOfNextMove() {
+		if ( context.qsimConfig.getLinkDynamics()!=LinkDynamics.FIFO 
+				|| context.qsimConfig.getTrafficDynamics()!=TrafficDynamics.queue
+				|| context.qsimConfig.getInflowConstraint()!=InflowConstraint.none ) {
+			return Double.NEGATIVE_INFINITY ;
+		}
+		if ( context.qsimConfig.isUsingFastCapacityUpdate() ) {
+			if ( flowcap_accumulate.getValue() <= 0. ) {
+				return Double.NEGATIVE_INFINITY ; // still accumulating in every time step while the buffer is empty
+			}
+		} else if ( flowcap_accumulate.getValue() < 1.0 ) {
+			return Double.NEGATIVE_INFINITY ;
+		}
+		QVehicle veh = vehQueue.peek() ;
+		if ( veh == null ) {
+			return Double.NEGATIVE_INFINITY ; // nothing to wait for; the link deactivates itself once the buffer is empty
+		}
+		return veh.getEarliestLinkExitTime() ;
+	}
+
 	private void processArrivalOfHoles() {
 		double now = context.getSimTimer().getTimeOfDay() ;
 		while ( this.holes.size()>0 && this.holes.peek().getEarliestLinkExitTime() < now ) {
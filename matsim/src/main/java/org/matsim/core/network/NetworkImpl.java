@@ -36,6 +36,7 @@ import org.matsim.api.core.v01.network.Network;
 import org.matsim.api.core.v01.network.NetworkFactory;
 import org.matsim.api.core.v01.network.Node;
 import org.matsim.core.scenario.Lockable;
+import org.matsim.core.utils.collections.PackedRTree;
 import org.matsim.core.utils.collections.QuadTree;
 
 /**
@@ -61,7 +62,8 @@ import org.matsim.core.utils.collections.QuadTree;
 
 	private QuadTree<Node> nodeQuadTree = null;
 
-	private LinkQuadTree linkQuadTree = null;
+	/** built when first needed, and built again after links were added or removed */
+	private PackedRTree<Link> linkIndex = null;
 
 	private static final double DEFAULT_EFFECTIVE_CELL_SIZE = 7.5;
 
@@ -116,6 +118,7 @@ import org.matsim.core.utils.collections.QuadTree;
 		toNode.addInLink(link);
 
 		links.put(link.getId(), link);
+		this.linkIndex = null;
 
 		// show counter
 		this.counter++;
@@ -208,6 +211,7 @@ import org.matsim.core.utils.collections.QuadTree;
 		l.getFromNode().removeOutLink(l.getId()) ; 
 		//		l.getToNode().getInLinks().remove(l.getId());
 		l.getToNode().removeInLink(l.getId()) ;
+		this.linkIndex = null;
 		return l;
 	}
 
@@ -306,10 +310,11 @@ import org.matsim.core.utils.collections.QuadTree;
 	}
 
 	@Override public Link getNearestLinkExactly(final Coord coord) {
-		if (this.linkQuadTree == null) {
-			buildLinkQuadTree();
+		PackedRTree<Link> index = this.linkIndex;
+		if (index == null) {
+			index = buildLinkIndex();
 		}
-		return this.linkQuadTree.getNearest(coord.getX(), coord.getY());
+		return index.getClosest(coord.getX(), coord.getY());
 	}
 
 	/**
@@ -396,34 +401,43 @@ import org.matsim.core.utils.collections.QuadTree;
 		log.info("Building QuadTree took " + ((System.currentTimeMillis() - startTime) / 1000.0) + " seconds.");
 	}
 
-	synchronized private void buildLinkQuadTree() {
-		if (this.linkQuadTree != null) {
-			return;
+	synchronized private PackedRTree<Link> buildLinkIndex() {
+		if (this.linkIndex != null) {
+			return this.linkIndex;
 		}
 		double startTime = System.currentTimeMillis();
-		double minx = Double.POSITIVE_INFINITY;
-		double miny = Double.POSITIVE_INFINITY;
-		double maxx = Double.NEGATIVE_INFINITY;
-		double maxy = Double.NEGATIVE_INFINITY;
-		for (Node n : this.nodes.values()) {
-			if (n.getCoord().getX() < minx) { minx = n.getCoord().getX(); }
-			if (n.getCoord().getY() < miny) { miny = n.getCoord().getY(); }
-			if (n.getCoord().getX() > maxx) { maxx = n.getCoord().getX(); }
-			if (n.getCoord().getY() > maxy) { maxy = n.getCoord().getY(); }
+		PackedRTree.Builder<Link> builder = new PackedRTree.Builder<>();
+		for (Link l : this.links.values()) {
+			Coord from = l.getFromNode().getCoord();
+			Coord to = l.getToNode().getCoord();
+			builder.put(from.getX(), from.getY(), to.getX(), to.getY(), l);
 		}
-		minx -= 1.0;
-		miny -= 1.0;
-		maxx += 1.0;
-		maxy += 1.0;
-		// yy the above four lines are problematic if the coordinate values are much smaller than one. kai, oct'15
+		builder.setElementDistance(new LinkDistance());
+		PackedRTree<Link> index = builder.build();
+		this.linkIndex = index;
+		log.info("Building link index took " + ((System.currentTimeMillis() - startTime) / 1000.0) + " seconds.");
+		return index;
+	}
 
-		log.info("building LinkQuadTree for nodes: xrange(" + minx + "," + maxx + "); yrange(" + miny + "," + maxy + ")");
-		LinkQuadTree qt = new LinkQuadTree(minx, miny, maxx, maxy);
-		for (Link l : this.links.values()) {
-			qt.put(l);
+	/**
+	 * The distance of a point to the line segment between the nodes of a link.
+	 */
+	private static final class LinkDistance implements PackedRTree.ElementDistance<Link> {
+		@Override
+		public double calcDistance(final double x, final double y, final Link link) {
+			double fx = link.getFromNode().getCoord().getX();
+			double fy = link.getFromNode().getCoord().getY();
+			double lineDX = link.getToNode().getCoord().getX() - fx;
+			double lineDY = link.getToNode().getCoord().getY() - fy;
+			double u = 0.0;
+			if ((lineDX != 0.0) || (lineDY != 0.0)) {
+				u = ((x - fx)*lineDX + (y - fy)*lineDY) / (lineDX*lineDX + lineDY*lineDY);
+				u = Math.max(0.0, Math.min(1.0, u));
+			}
+			double dx = fx + u*lineDX - x;
+			double dy = fy + u*lineDY - y;
+			return Math.sqrt(dx*dx + dy*dy);
 		}
-		this.linkQuadTree = qt;
-		log.info("Building LinkQuadTree took " + ((System.currentTimeMillis() - startTime) / 1000.0) + " seconds.");
 	}
 
 	@Override
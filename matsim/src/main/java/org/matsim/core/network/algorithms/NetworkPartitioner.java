@@ -0,0 +1,327 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * NetworkPartitioner.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2016 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.network.algorithms;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+import org.apache.log4j.Logger;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.api.core.v01.network.Node;
+import org.matsim.core.api.internal.NetworkRunnable;
+import org.matsim.core.network.NetworkUtils;
+
+/**
+ * Splits the nodes of a network into a given number of partitions of (approximately) equal weight
+ * while trying to keep the number of links between different partitions small.
+ * <p></p>
+ * The weight of a node is 1 plus the number of its out-links, since the QSim handles the out-links
+ * of a node together with the node itself.
+ * <p></p>
+ * The algorithm works in two phases, similar to what graph partitioning tools like METIS do on
+ * their coarsest level:<ol>
+ * <li> Recursive coordinate bisection: the nodes are sorted along the longer extent of their
+ * bounding box and split where the cumulative weight reaches the share of the first half. This is
+ * repeated until the requested number of partitions is reached (which does not need to be a power of two).
+ * <li> Greedy boundary refinement: nodes are moved to the neighboring partition they have the most
+ * links to, as long as this reduces the number of cut links and keeps the partition weights within
+ * the allowed imbalance.
+ * </ol>
+ * The result is deterministic, i.e. it does not depend on the iteration order of the network's maps.
+ */
+public class NetworkPartitioner implements NetworkRunnable {
+
+	private static final Logger log = Logger.getLogger(NetworkPartitioner.class);
+
+	private static final int MAX_REFINEMENT_PASSES = 10;
+
+	private final int numberOfPartitions;
+	private final double imbalanceTolerance;
+
+	private final Map<Node, Integer> partitionPerNode = new IdentityHashMap<>();
+	private long[] partitionWeights;
+	private int numberOfCutLinks = 0;
+
+	/**
+	 * @param numberOfPartitions the number of partitions to create, at least 1.
+	 */
+	public NetworkPartitioner(final int numberOfPartitions) {
+		this(numberOfPartitions, 0.05);
+	}
+
+	/**
+	 * @param numberOfPartitions the number of partitions to create, at least 1.
+	 * @param imbalanceTolerance by how much (relative to the average) the weight of a partition may
+	 * deviate from the average during the refinement phase. E.g. 0.05 for 5%.
+	 */
+	public NetworkPartitioner(final int numberOfPartitions, final double imbalanceTolerance) {
+		if (numberOfPartitions < 1) {
+			throw new IllegalArgumentException("Number of partitions must be strictly positive, got " + numberOfPartitions);
+		}
+		if (imbalanceTolerance < 0.0) {
+			throw new IllegalArgumentException("Imbalance tolerance must not be negative, got " + imbalanceTolerance);
+		}
+		this.numberOfPartitions = numberOfPartitions;
+		this.imbalanceTolerance = imbalanceTolerance;
+		this.partitionWeights = new long[numberOfPartitions];
+	}
+
+	@Override
+	public void run(final Network network) {
+		this.partitionPerNode.clear();
+		this.partitionWeights = new long[this.numberOfPartitions];
+		this.numberOfCutLinks = 0;
+
+		Node[] nodes = NetworkUtils.getSortedNodes(network);
+		int n = nodes.length;
+		if (n == 0) {
+			return;
+		}
+
+		Map<Node, Integer> indices = new IdentityHashMap<>(n);
+		double[] x = new double[n];
+		double[] y = new double[n];
+		int[] weights = new int[n];
+		for (int i = 0; i < n; i++) {
+			indices.put(nodes[i], i);
+			x[i] = nodes[i].getCoord().getX();
+			y[i] = nodes[i].getCoord().getY();
+			weights[i] = 1 + nodes[i].getOutLinks().size();
+		}
+
+		// undirected adjacency in compressed row format; parallel links appear multiple times, which is what we want.
+		int[] adjacencyStart = new int[n + 1];
+		for (int i = 0; i < n; i++) {
+			adjacencyStart[i + 1] = adjacencyStart[i] + nodes[i].getInLinks().size() + nodes[i].getOutLinks().size();
+		}
+		int[] adjacency = new int[adjacencyStart[n]];
+		for (int i = 0; i < n; i++) {
+			int pos = adjacencyStart[i];
+			for (Link link : nodes[i].getInLinks().values()) {
+				adjacency[pos++] = indices.get(link.getFromNode());
+			}
+			for (Link link : nodes[i].getOutLinks().values()) {
+				adjacency[pos++] = indices.get(link.getToNode());
+			}
+		}
+
+		int[] partition = new int[n];
+		int[] order = new int[n];
+		for (int i = 0; i < n; i++) {
+			order[i] = i;
+		}
+		bisect(order, 0, n, 0, this.numberOfPartitions, x, y, weights, partition);
+
+		for (int i = 0; i < n; i++) {
+			this.partitionWeights[partition[i]] += weights[i];
+		}
+
+		refine(partition, weights, adjacencyStart, adjacency);
+
+		for (int i = 0; i < n; i++) {
+			this.partitionPerNode.put(nodes[i], partition[i]);
+		}
+		for (int i = 0; i < n; i++) {
+			for (int k = adjacencyStart[i]; k < adjacencyStart[i + 1]; k++) {
+				if (partition[i] != partition[adjacency[k]]) this.numberOfCutLinks++;
+			}
+		}
+		// every link was counted twice, once at its from- and once at its to-node
+		this.numberOfCutLinks /= 2;
+
+		log.info("Partitioned " + n + " nodes into " + this.numberOfPartitions + " partitions; " + this.numberOfCutLinks
+				+ " links connect different partitions.");
+	}
+
+	private static void bisect(final int[] order, final int from, final int to, final int firstPartition,
+			final int nOfPartitions, final double[] x, final double[] y, final int[] weights, final int[] partition) {
+		if (nOfPartitions == 1 || to - from <= 1) {
+			for (int i = from; i < to; i++) {
+				partition[order[i]] = firstPartition;
+			}
+			return;
+		}
+
+		double minX = Double.POSITIVE_INFINITY;
+		double minY = Double.POSITIVE_INFINITY;
+		double maxX = Double.NEGATIVE_INFINITY;
+		double maxY = Double.NEGATIVE_INFINITY;
+		long totalWeight = 0;
+		for (int i = from; i < to; i++) {
+			int node = order[i];
+			if (x[node] < minX) minX = x[node];
+			if (x[node] > maxX) maxX = x[node];
+			if (y[node] < minY) minY = y[node];
+			if (y[node] > maxY) maxY = y[node];
+			totalWeight += weights[node];
+		}
+		sortByKey(order, from, to, (maxX - minX) >= (maxY - minY) ? x : y);
+
+		int nOfPartitionsFirstHalf = nOfPartitions / 2;
+		double targetWeight = (double) totalWeight * nOfPartitionsFirstHalf / nOfPartitions;
+		long cumulativeWeight = 0;
+		int split = from;
+		while (split < to && cumulativeWeight + weights[order[split]] / 2.0 <= targetWeight) {
+			cumulativeWeight += weights[order[split]];
+			split++;
+		}
+		// both halves need at least one node if there is enough of them
+		split = Math.max(split, from + 1);
+		split = Math.min(split, to - 1);
+
+		bisect(order, from, split, firstPartition, nOfPartitionsFirstHalf, x, y, weights, partition);
+		bisect(order, split, to, firstPartition + nOfPartitionsFirstHalf, nOfPartitions - nOfPartitionsFirstHalf, x, y, weights, partition);
+	}
+
+	private void refine(final int[] partition, final int[] weights, final int[] adjacencyStart, final int[] adjacency) {
+		long totalWeight = 0;
+		for (long w : this.partitionWeights) {
+			totalWeight += w;
+		}
+		double avgWeight = (double) totalWeight / this.numberOfPartitions;
+		double maxWeight = avgWeight * (1.0 + this.imbalanceTolerance);
+		double minWeight = avgWeight * (1.0 - this.imbalanceTolerance);
+
+		int[] connections = new int[this.numberOfPartitions];
+		int[] touched = new int[this.numberOfPartitions];
+		for (int pass = 0; pass < MAX_REFINEMENT_PASSES; pass++) {
+			int moved = 0;
+			for (int node = 0; node < partition.length; node++) {
+				int own = partition[node];
+				int nTouched = 0;
+				for (int k = adjacencyStart[node]; k < adjacencyStart[node + 1]; k++) {
+					int p = partition[adjacency[k]];
+					if (connections[p] == 0) touched[nTouched++] = p;
+					connections[p]++;
+				}
+				int best = own;
+				int bestGain = 0;
+				for (int t = 0; t < nTouched; t++) {
+					int p = touched[t];
+					int gain = connections[p] - connections[own];
+					if (p != own && (gain > bestGain || (gain == bestGain && gain > 0 && p < best))
+							&& this.partitionWeights[p] + weights[node] <= maxWeight) {
+						best = p;
+						bestGain = gain;
+					}
+				}
+				for (int t = 0; t < nTouched; t++) {
+					connections[touched[t]] = 0;
+				}
+				if (best != own && this.partitionWeights[own] - weights[node] >= minWeight) {
+					partition[node] = best;
+					this.partitionWeights[own] -= weights[node];
+					this.partitionWeights[best] += weights[node];
+					moved++;
+				}
+			}
+			if (moved == 0) {
+				break;
+			}
+		}
+	}
+
+	/**
+	 * Sorts <code>order[from..to)</code> ascending by <code>key[order[i]]</code>, ties broken by the index itself.
+	 * Uses a quicksort on the primitive arrays in order to avoid boxing for large networks.
+	 */
+	private static void sortByKey(final int[] order, final int from, final int to, final double[] key) {
+		int lo = from;
+		int hi = to - 1;
+		while (hi - lo > 16) {
+			int mid = (lo + hi) >>> 1;
+			// median of three as pivot
+			if (less(order[mid], order[lo], key)) swap(order, mid, lo);
+			if (less(order[hi], order[lo], key)) swap(order, hi, lo);
+			if (less(order[hi], order[mid], key)) swap(order, hi, mid);
+			int pivot = order[mid];
+			int i = lo;
+			int j = hi;
+			while (i <= j) {
+				while (less(order[i], pivot, key)) i++;
+				while (less(pivot, order[j], key)) j--;
+				if (i <= j) {
+					swap(order, i, j);
+					i++;
+					j--;
+				}
+			}
+			// recurse into the smaller part, loop on the larger one to bound the stack depth
+			if (j - lo < hi - i) {
+				sortByKey(order, lo, j + 1, key);
+				lo = i;
+			} else {
+				sortByKey(order, i, hi + 1, key);
+				hi = j;
+			}
+		}
+		for (int i = lo + 1; i <= hi; i++) {
+			int v = order[i];
+			int j = i - 1;
+			while (j >= lo && less(v, order[j], key)) {
+				order[j + 1] = order[j];
+				j--;
+			}
+			order[j + 1] = v;
+		}
+	}
+
+	private static boolean less(final int a, final int b, final double[] key) {
+		return key[a] < key[b] || (key[a] == key[b] && a < b);
+	}
+
+	private static void swap(final int[] array, final int i, final int j) {
+		int tmp = array[i];
+		array[i] = array[j];
+		array[j] = tmp;
+	}
+
+	/**
+	 * @return the partition of the given node, in the range <code>[0, numberOfPartitions)</code>, or -1
+	 * if the node was not part of the network this algorithm was run on.
+	 */
+	public int getPartition(final Node node) {
+		Integer partition = this.partitionPerNode.get(node);
+		if (partition == null) {
+			return -1;
+		}
+		return partition;
+	}
+
+	public int getNumberOfPartitions() {
+		return this.numberOfPartitions;
+	}
+
+	/**
+	 * @return the sum of the node weights per partition.
+	 */
+	public long[] getPartitionWeights() {
+		return this.partitionWeights.clone();
+	}
+
+	/**
+	 * @return the number of links whose from- and to-node are in different partitions.
+	 */
+	public int getNumberOfCutLinks() {
+		return this.numberOfCutLinks;
+	}
+}
@@ -31,11 +31,15 @@ import org.matsim.api.core.v01.network.Node;
 import org.matsim.core.network.NetworkUtils;
 import org.matsim.core.utils.geometry.CoordinateTransformation;
 import org.matsim.core.utils.geometry.transformations.IdentityTransformation;
+import org.matsim.core.utils.io.XmlValueWriter;
 import org.matsim.core.utils.misc.Time;
 
 /*package*/ class NetworkWriterHandlerImplV1 implements NetworkWriterHandler {
 	private final CoordinateTransformation transformation;
 
+	private XmlValueWriter xml = null;
+	private BufferedWriter xmlOut = null;
+
 	NetworkWriterHandlerImplV1() {
 		this( new IdentityTransformation() );
 	}
@@ -112,16 +116,17 @@ import org.matsim.core.utils.misc.Time;
 
 	@Override
 	public void startNode(final Node node, final BufferedWriter out) throws IOException {
+		XmlValueWriter xml = getXmlValueWriter(out);
 		out.write("\t\t<node");
-		out.write(" id=\"" + node.getId() + "\"");
+		xml.writeAttribute("id", node.getId().toString());
 		final Coord coord = transformation.transform( node.getCoord() );
-		out.write(" x=\"" + coord.getX() + "\"");
-		out.write(" y=\"" + coord.getY() + "\"");
+		xml.writeAttribute("x", coord.getX());
+		xml.writeAttribute("y", coord.getY());
 		if (NetworkUtils.getType( node ) != null) {
-			out.write(" type=\"" + NetworkUtils.getType( node ) + "\"");
+			xml.writeAttribute("type", NetworkUtils.getType( node ));
 		}
 		if (NetworkUtils.getOrigId( node ) != null) {
-			out.write(" origid=\"" + NetworkUtils.getOrigId( node ) + "\"");
+			xml.writeAttribute("origid", NetworkUtils.getOrigId( node ));
 		}
 		out.write(" />\n");
 	}
@@ -139,14 +144,15 @@ import org.matsim.core.utils.misc.Time;
 
 	@Override
 	public void startLink(final Link link, final BufferedWriter out) throws IOException {
+		XmlValueWriter xml = getXmlValueWriter(out);
 		out.write("\t\t<link");
-		out.write(" id=\"" + link.getId() + "\"");
-		out.write(" from=\"" + link.getFromNode().getId() + "\"");
-		out.write(" to=\"" + link.getToNode().getId() + "\"");
-		out.write(" length=\"" + link.getLength() + "\"");
-		out.write(" freespeed=\"" + link.getFreespeed() + "\"");
-		out.write(" capacity=\"" + link.getCapacity() + "\"");
-		out.write(" permlanes=\"" + link.getNumberOfLanes() + "\"");
+		xml.writeAttribute("id", link.getId().toString());
+		xml.writeAttribute("from", link.getFromNode().getId().toString());
+		xml.writeAttribute("to", link.getToNode().getId().toString());
+		xml.writeAttribute("length", link.getLength());
+		xml.writeAttribute("freespeed", link.getFreespeed());
+		xml.writeAttribute("capacity", link.getCapacity());
+		xml.writeAttribute("permlanes", link.getNumberOfLanes());
 		out.write(" oneway=\"1\"");
 
 		Set<String> modes = link.getAllowedModes();
@@ -164,17 +170,14 @@ import org.matsim.core.utils.misc.Time;
 				this.lastModes = buffer.toString();
 				this.lastSet = modes;
 			}
-			out.write(" modes=\"" + this.lastModes + "\"");
+			xml.writeAttribute("modes", this.lastModes);
 		}
 
-		if (link instanceof Link) {
-			Link li = (Link) link;
-			if (NetworkUtils.getOrigId( li ) != null) {
-				out.write(" origid=\"" + NetworkUtils.getOrigId( li ) + "\"");
-			}
-			if (NetworkUtils.getType(li) != null) {
-				out.write(" type=\"" + NetworkUtils.getType(li) + "\"");
-			}
+		if (NetworkUtils.getOrigId( link ) != null) {
+			xml.writeAttribute("origid", NetworkUtils.getOrigId( link ));
+		}
+		if (NetworkUtils.getType(link) != null) {
+			xml.writeAttribute("type", NetworkUtils.getType(link));
 		}
 		out.write(" />\n");
 	}
@@ -183,6 +186,14 @@ import org.matsim.core.utils.misc.Time;
 	public void endLink(final BufferedWriter out) throws IOException {
 	}
 
+	private XmlValueWriter getXmlValueWriter(final BufferedWriter out) {
+		if (out != this.xmlOut) {
+			this.xml = new XmlValueWriter(out);
+			this.xmlOut = out;
+		}
+		return this.xml;
+	}
+
 	//////////////////////////////////////////////////////////////////////
 	// <!-- ============ ... ========== -->
 	//////////////////////////////////////////////////////////////////////
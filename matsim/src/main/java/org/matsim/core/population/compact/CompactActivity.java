@@ -0,0 +1,120 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * CompactActivity.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2016 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.population.compact;
+
+import org.matsim.api.core.v01.Coord;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.population.Activity;
+import org.matsim.core.utils.misc.Time;
+import org.matsim.facilities.ActivityFacility;
+
+/*package*/ final class CompactActivity extends CompactPlanElement implements Activity {
+
+	/*package*/ CompactActivity(final ElementStore store, final int offset) {
+		super(store, offset);
+	}
+
+	@Override
+	public double getEndTime() {
+		return this.store.getDouble(this.offset + ElementStore.ACT_END);
+	}
+
+	@Override
+	public void setEndTime(final double seconds) {
+		this.store.setDouble(this.offset + ElementStore.ACT_END, seconds);
+	}
+
+	@Override
+	public String getType() {
+		return this.store.factory.strings.get(this.store.headerValue(this.offset));
+	}
+
+	@Override
+	public void setType(final String type) {
+		this.store.setHeaderValue(this.offset, this.store.factory.strings.index(type));
+	}
+
+	@Override
+	public Coord getCoord() {
+		if (!this.store.hasFlag(this.offset, ElementStore.HAS_COORD)) {
+			return null;
+		}
+		return new Coord(this.store.getDouble(this.offset + ElementStore.ACT_X), this.store.getDouble(this.offset + ElementStore.ACT_Y));
+	}
+
+	@Override
+	public void setCoord(final Coord coord) {
+		this.store.setCoord(this.offset, coord);
+	}
+
+	@Override
+	public double getStartTime() {
+		return this.store.getDouble(this.offset + ElementStore.ACT_START);
+	}
+
+	@Override
+	public void setStartTime(final double seconds) {
+		this.store.setDouble(this.offset + ElementStore.ACT_START, seconds);
+	}
+
+	@Override
+	public double getMaximumDuration() {
+		return this.store.getDouble(this.offset + ElementStore.ACT_MAXDUR);
+	}
+
+	@Override
+	public void setMaximumDuration(final double seconds) {
+		this.store.setDouble(this.offset + ElementStore.ACT_MAXDUR, seconds);
+	}
+
+	@Override
+	public Id<Link> getLinkId() {
+		return this.store.factory.linkIds.get(this.store.first(this.offset + ElementStore.ACT_LINK_FACILITY));
+	}
+
+	@Override
+	public void setLinkId(final Id<Link> id) {
+		this.store.setFirst(this.offset + ElementStore.ACT_LINK_FACILITY, this.store.factory.linkIds.index(id));
+	}
+
+	@Override
+	public Id<ActivityFacility> getFacilityId() {
+		return this.store.factory.facilityIds.get(this.store.second(this.offset + ElementStore.ACT_LINK_FACILITY));
+	}
+
+	@Override
+	public void setFacilityId(final Id<ActivityFacility> id) {
+		this.store.setSecond(this.offset + ElementStore.ACT_LINK_FACILITY, this.store.factory.facilityIds.index(id));
+	}
+
+	@Override
+	public String toString() {
+		return "[type=" + this.getType() + "]" +
+				"[coord=" + this.getCoord() + "]" +
+				"[linkId=" + this.getLinkId() + "]" +
+				"[startTime=" + Time.writeTime(this.getStartTime()) + "]" +
+				"[endTime=" + Time.writeTime(this.getEndTime()) + "]" +
+				"[duration=" + Time.writeTime(this.getMaximumDuration()) + "]" +
+				"[facilityId=" + this.getFacilityId() + "]" ;
+	}
+
+}
@@ -0,0 +1,90 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * CompactLeg.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2016 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.population.compact;
+
+import org.matsim.api.core.v01.population.Leg;
+import org.matsim.api.core.v01.population.Route;
+import org.matsim.core.utils.misc.Time;
+
+/*package*/ final class CompactLeg extends CompactPlanElement implements Leg {
+
+	/*package*/ CompactLeg(final ElementStore store, final int offset) {
+		super(store, offset);
+	}
+
+	@Override
+	public String getMode() {
+		return this.store.factory.strings.get(this.store.headerValue(this.offset));
+	}
+
+	@Override
+	public void setMode(final String mode) {
+		this.store.setHeaderValue(this.offset, this.store.factory.strings.index(mode));
+	}
+
+	/**
+	 * Network routes are returned as views on the stored route, so changes to them (e.g. setting the vehicle)
+	 * are stored in the plan. All other routes are returned as they were set.
+	 */
+	@Override
+	public Route getRoute() {
+		return this.store.getRoute(this.offset);
+	}
+
+	/**
+	 * Network routes are copied into the compact storage; later changes have to be made through
+	 * {@link #getRoute()}.
+	 */
+	@Override
+	public void setRoute(final Route route) {
+		this.store.setRoute(this.offset, route);
+	}
+
+	@Override
+	public double getDepartureTime() {
+		return this.store.getDouble(this.offset + ElementStore.LEG_DEPARTURE);
+	}
+
+	@Override
+	public void setDepartureTime(final double seconds) {
+		this.store.setDouble(this.offset + ElementStore.LEG_DEPARTURE, seconds);
+	}
+
+	@Override
+	public double getTravelTime() {
+		return this.store.getDouble(this.offset + ElementStore.LEG_TRAVELTIME);
+	}
+
+	@Override
+	public void setTravelTime(final double seconds) {
+		this.store.setDouble(this.offset + ElementStore.LEG_TRAVELTIME, seconds);
+	}
+
+	@Override
+	public String toString() {
+		return "[mode=" + this.getMode() + "]" +
+				"[depTime=" + Time.writeTime(this.getDepartureTime()) + "]" +
+				"[travTime=" + Time.writeTime(this.getTravelTime()) + "]" +
+				"[arrTime=" + Time.writeTime(this.getDepartureTime() + this.getTravelTime()) + "]" +
+				"[route=" + this.getRoute() + "]";
+	}
+
+}
@@ -0,0 +1,228 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * CompactNetworkRoute.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2016 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.population.compact;
+
+import java.util.AbstractList;
+import java.util.List;
+import java.util.RandomAccess;
+
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.core.network.NetworkUtils;
+import org.matsim.core.population.routes.LinkNetworkRouteImpl;
+import org.matsim.core.population.routes.NetworkRoute;
+import org.matsim.vehicles.Vehicle;
+
+/**
+ * A flyweight view on a network route record of an {@link ElementStore}. The links of the route are stored
+ * as indices into the link id dictionary, two per long.
+ */
+/*package*/ final class CompactNetworkRoute implements NetworkRoute {
+
+	/*package*/ final ElementStore store;
+	/*package*/ int offset;
+	private final int legOffset;
+
+	/*package*/ CompactNetworkRoute(final ElementStore store, final int offset, final int legOffset) {
+		this.store = store;
+		this.offset = offset;
+		this.legOffset = legOffset;
+	}
+
+	@Override
+	public double getDistance() {
+		return this.store.getDouble(this.offset + ElementStore.ROUTE_DISTANCE);
+	}
+
+	@Override
+	public void setDistance(final double distance) {
+		this.store.setDouble(this.offset + ElementStore.ROUTE_DISTANCE, distance);
+	}
+
+	@Override
+	public double getTravelTime() {
+		return this.store.getDouble(this.offset + ElementStore.ROUTE_TRAVELTIME);
+	}
+
+	@Override
+	public void setTravelTime(final double travelTime) {
+		this.store.setDouble(this.offset + ElementStore.ROUTE_TRAVELTIME, travelTime);
+	}
+
+	@Override
+	public double getTravelCost() {
+		return this.store.getDouble(this.offset + ElementStore.ROUTE_COST);
+	}
+
+	@Override
+	public void setTravelCost(final double travelCost) {
+		this.store.setDouble(this.offset + ElementStore.ROUTE_COST, travelCost);
+	}
+
+	@Override
+	public Id<Link> getStartLinkId() {
+		return this.store.factory.linkIds.get(this.store.first(this.offset + ElementStore.ROUTE_START_END));
+	}
+
+	@Override
+	public void setStartLinkId(final Id<Link> linkId) {
+		this.store.setFirst(this.offset + ElementStore.ROUTE_START_END, this.store.factory.linkIds.index(linkId));
+	}
+
+	@Override
+	public Id<Link> getEndLinkId() {
+		return this.store.factory.linkIds.get(this.store.second(this.offset + ElementStore.ROUTE_START_END));
+	}
+
+	@Override
+	public void setEndLinkId(final Id<Link> linkId) {
+		this.store.setSecond(this.offset + ElementStore.ROUTE_START_END, this.store.factory.linkIds.index(linkId));
+	}
+
+	@Override
+	public Id<Vehicle> getVehicleId() {
+		return this.store.factory.vehicleIds.get(this.store.first(this.offset + ElementStore.ROUTE_VEHICLE));
+	}
+
+	@Override
+	public void setVehicleId(final Id<Vehicle> vehicleId) {
+		this.store.setFirst(this.offset + ElementStore.ROUTE_VEHICLE, this.store.factory.vehicleIds.index(vehicleId));
+	}
+
+	@Override
+	public List<Id<Link>> getLinkIds() {
+		return new LinkIds();
+	}
+
+	@Override
+	public void setLinkIds(final Id<Link> startLinkId, final List<Id<Link>> linkIds, final Id<Link> endLinkId) {
+		int nOfLinks = linkIds == null ? 0 : linkIds.size();
+		if (nOfLinks > this.store.headerValue(this.offset)) {
+			// the record is too short, append a new one and let the leg refer to it
+			int newOffset = this.store.addNetworkRoute(startLinkId, linkIds, endLinkId);
+			for (int i = ElementStore.ROUTE_DISTANCE; i <= ElementStore.ROUTE_VEHICLE; i++) {
+				this.store.set(newOffset + i, this.store.get(this.offset + i));
+			}
+			if (this.store.get(this.legOffset + ElementStore.LEG_ROUTE) == this.offset + 1) {
+				this.store.set(this.legOffset + ElementStore.LEG_ROUTE, newOffset + 1);
+			}
+			this.offset = newOffset;
+		} else {
+			setStartLinkId(startLinkId);
+			setEndLinkId(endLinkId);
+			this.store.writeLinks(this.offset, linkIds);
+		}
+	}
+
+	@Override
+	public NetworkRoute getSubRoute(final Id<Link> fromLinkId, final Id<Link> toLinkId) {
+		return clone().getSubRoute(fromLinkId, toLinkId);
+	}
+
+	@Override
+	public String getRouteDescription() {
+		StringBuilder desc = new StringBuilder(100);
+		desc.append(this.getStartLinkId().toString());
+		List<Id<Link>> linkIds = this.getLinkIds();
+		for (Id<Link> linkId : linkIds) {
+			desc.append(" ");
+			desc.append(linkId.toString());
+		}
+		if (!this.getEndLinkId().equals(this.getStartLinkId()) || linkIds.size() > 0) {
+			desc.append(" ");
+			desc.append(this.getEndLinkId().toString());
+		}
+		return desc.toString();
+	}
+
+	@Override
+	public void setRouteDescription(final String routeDescription) {
+		List<Id<Link>> linkIds = NetworkUtils.getLinkIds(routeDescription);
+		Id<Link> startLinkId = getStartLinkId();
+		Id<Link> endLinkId = getEndLinkId();
+		if (linkIds.size() > 0) {
+			startLinkId = linkIds.remove(0);
+		}
+		if (linkIds.size() > 0) {
+			endLinkId = linkIds.remove(linkIds.size() - 1);
+		}
+		this.setLinkIds(startLinkId, linkIds, endLinkId);
+	}
+
+	@Override
+	public String getRouteType() {
+		return "links";
+	}
+
+	/**
+	 * Returns a copy of this route as a regular {@link LinkNetworkRouteImpl}, which does not depend on the plan.
+	 */
+	@Override
+	public NetworkRoute clone() {
+		LinkNetworkRouteImpl route = new LinkNetworkRouteImpl(getStartLinkId(), getLinkIds(), getEndLinkId());
+		route.setDistance(getDistance());
+		route.setTravelTime(getTravelTime());
+		route.setTravelCost(getTravelCost());
+		route.setVehicleId(getVehicleId());
+		return route;
+	}
+
+	@Override
+	public boolean equals(final Object obj) {
+		if (!(obj instanceof CompactNetworkRoute)) {
+			return false;
+		}
+		CompactNetworkRoute other = (CompactNetworkRoute) obj;
+		return other.store == this.store && other.offset == this.offset;
+	}
+
+	@Override
+	public int hashCode() {
+		return 31 * System.identityHashCode(this.store) + this.offset;
+	}
+
+	@Override
+	public String toString() {
+		return " startLinkId=" + getStartLinkId() +
+				" endLinkId=" + getEndLinkId() +
+				" travTime=" + getTravelTime() +
+				" dist=" + getDistance() +
+				" linkIds=" + getLinkIds() +
+				" travelCost=" + getTravelCost();
+	}
+
+	private final class LinkIds extends AbstractList<Id<Link>> implements RandomAccess {
+
+		@Override
+		public Id<Link> get(final int index) {
+			if (index < 0 || index >= size()) {
+				throw new IndexOutOfBoundsException("index " + index + ", size " + size());
+			}
+			return store.factory.linkIds.get(store.linkIndex(offset, index));
+		}
+
+		@Override
+		public int size() {
+			return store.headerValue(offset);
+		}
+	}
+
+}
@@ -0,0 +1,159 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * CompactPerson.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2016 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.population.compact;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.matsim.api.core.v01.Customizable;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.api.core.v01.population.Plan;
+import org.matsim.core.replanning.selectors.RandomPlanSelector;
+import org.matsim.core.scenario.CustomizableUtils;
+
+/*package*/ final class CompactPerson implements Person {
+
+	/*package*/ final CompactPopulationFactory factory;
+	private final Id<Person> id;
+	private final List<Plan> plans;
+	private Plan selectedPlan = null;
+	private Customizable customizableDelegate;
+
+	/*package*/ CompactPerson(final CompactPopulationFactory factory, final Id<Person> id, final int expectedNumberOfPlans) {
+		this.factory = factory;
+		this.id = id;
+		this.plans = new ArrayList<>(expectedNumberOfPlans);
+	}
+
+	/**
+	 * Creates a copy of the given person with compact copies of its plans.
+	 */
+	/*package*/ static CompactPerson copyOf(final CompactPopulationFactory factory, final Person person) {
+		CompactPerson copy = new CompactPerson(factory, person.getId(), Math.max(person.getPlans().size(), 1));
+		Map<String, Object> customAttributes = person.getCustomAttributes();
+		if (!customAttributes.isEmpty()) {
+			copy.getCustomAttributes().putAll(customAttributes);
+		}
+		for (Plan plan : person.getPlans()) {
+			CompactPlan planCopy = CompactPlan.copyOf(factory, plan);
+			if (!plan.getCustomAttributes().isEmpty()) {
+				planCopy.getCustomAttributes().putAll(plan.getCustomAttributes());
+			}
+			copy.addPlan(planCopy);
+			if (plan == person.getSelectedPlan()) {
+				copy.setSelectedPlan(planCopy);
+			}
+		}
+		return copy;
+	}
+
+	/**
+	 * Replaces plans which are not stored compactly, e.g. because they were added to the person by a reader
+	 * and filled afterwards, by compact copies.
+	 */
+	/*package*/ void compactPlans() {
+		for (int i = 0; i < this.plans.size(); i++) {
+			Plan plan = this.plans.get(i);
+			if (!(plan instanceof CompactPlan)) {
+				CompactPlan planCopy = CompactPlan.copyOf(this.factory, plan);
+				if (!plan.getCustomAttributes().isEmpty()) {
+					planCopy.getCustomAttributes().putAll(plan.getCustomAttributes());
+				}
+				planCopy.setPerson(this);
+				this.plans.set(i, planCopy);
+				if (plan == this.selectedPlan) {
+					this.selectedPlan = planCopy;
+				}
+			}
+		}
+	}
+
+	@Override
+	public Id<Person> getId() {
+		return this.id;
+	}
+
+	@Override
+	public List<Plan> getPlans() {
+		return this.plans;
+	}
+
+	@Override
+	public boolean addPlan(final Plan plan) {
+		plan.setPerson(this);
+		if (this.selectedPlan == null) this.selectedPlan = plan;
+		return this.plans.add(plan);
+	}
+
+	@Override
+	public boolean removePlan(final Plan plan) {
+		boolean result = this.plans.remove(plan);
+		if ((this.selectedPlan == plan) && result) {
+			this.setSelectedPlan(new RandomPlanSelector<Plan, Person>().selectPlan(this));
+		}
+		return result;
+	}
+
+	@Override
+	public Plan getSelectedPlan() {
+		return this.selectedPlan;
+	}
+
+	@Override
+	public void setSelectedPlan(final Plan selectedPlan) {
+		if (selectedPlan != null && !this.plans.contains( selectedPlan )) {
+			throw new IllegalStateException("The plan to be set as selected is not null nor stored in the person's plans");
+		}
+		this.selectedPlan = selectedPlan;
+	}
+
+	@Override
+	public Plan createCopyOfSelectedPlanAndMakeSelected() {
+		Plan oldPlan = this.getSelectedPlan();
+		if (oldPlan == null) {
+			return null;
+		}
+		Plan newPlan = CompactPlan.copyOf(this.factory, oldPlan);
+		newPlan.setPerson(oldPlan.getPerson());
+		this.plans.add(newPlan);
+		this.setSelectedPlan(newPlan);
+		return newPlan;
+	}
+
+	@Override
+	public Map<String, Object> getCustomAttributes() {
+		if (this.customizableDelegate == null) {
+			this.customizableDelegate = CustomizableUtils.createCustomizable();
+		}
+		return this.customizableDelegate.getCustomAttributes();
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder b = new StringBuilder();
+		b.append("[id=").append(this.getId()).append("]");
+		b.append("[nof_plans=").append(this.plans.size()).append("]");
+		return b.toString();
+	}
+
+}
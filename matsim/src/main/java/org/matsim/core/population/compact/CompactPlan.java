@@ -0,0 +1,265 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * CompactPlan.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2016 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.population.compact;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+
+import org.matsim.api.core.v01.Customizable;
+import org.matsim.api.core.v01.population.Activity;
+import org.matsim.api.core.v01.population.Leg;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.api.core.v01.population.Plan;
+import org.matsim.api.core.v01.population.PlanElement;
+import org.matsim.core.scenario.CustomizableUtils;
+
+/**
+ * A plan storing its elements in an {@link ElementStore} instead of one object per activity, leg and route.
+ * The elements returned by {@link #getPlanElements()} are views on the stored records.
+ * <p></p>
+ * Elements created by the {@link CompactPopulationFactory} are moved into the plan when they are added, so
+ * they can still be modified afterwards. All other elements are copied; this includes elements of other plans.
+ */
+/*package*/ final class CompactPlan implements Plan {
+
+	private final ElementStore store;
+	/** the offsets of the records of the elements, in the order of the plan */
+	private int[] elements;
+	private int nOfElements = 0;
+
+	private Double score = null;
+	private Person person = null;
+	private String type = null;
+	private Customizable customizableDelegate;
+
+	/*package*/ CompactPlan(final CompactPopulationFactory factory, final int expectedNumberOfElements) {
+		this.store = new ElementStore(factory, expectedNumberOfElements * ElementStore.ACTIVITY_LENGTH, false);
+		this.elements = new int[Math.max(expectedNumberOfElements, 1)];
+	}
+
+	/**
+	 * Creates a copy of the given plan, which is not added to any person. Routes which are not stored
+	 * compactly are cloned, as by {@link org.matsim.core.population.PopulationUtils#copyFromTo(Plan, Plan)}.
+	 */
+	/*package*/ static CompactPlan copyOf(final CompactPopulationFactory factory, final Plan plan) {
+		List<PlanElement> planElements = plan.getPlanElements();
+		CompactPlan copy = new CompactPlan(factory, planElements.size());
+		copy.score = plan.getScore();
+		copy.type = plan.getType();
+		if (plan instanceof CompactPlan) {
+			CompactPlan other = (CompactPlan) plan;
+			for (int i = 0; i < other.nOfElements; i++) {
+				copy.append(copy.store.copyElement(other.store, other.elements[i], true));
+			}
+		} else {
+			for (PlanElement pe : planElements) {
+				copy.append(copy.offsetOf(pe, true));
+			}
+		}
+		copy.trimToSize();
+		return copy;
+	}
+
+	/**
+	 * Releases the unused capacity of the plan, e.g. once it is completely built.
+	 */
+	/*package*/ void trimToSize() {
+		this.store.trimToSize();
+		if (this.elements.length > this.nOfElements && this.nOfElements > 0) {
+			this.elements = Arrays.copyOf(this.elements, this.nOfElements);
+		}
+	}
+
+	@Override
+	public List<PlanElement> getPlanElements() {
+		return new PlanElements();
+	}
+
+	@Override
+	public void addLeg(final Leg leg) {
+		append(offsetOf(leg, false));
+	}
+
+	@Override
+	public void addActivity(final Activity act) {
+		append(offsetOf(act, false));
+	}
+
+	private void append(final int offset) {
+		insert(this.nOfElements, offset);
+	}
+
+	private void insert(final int index, final int offset) {
+		if (this.nOfElements == this.elements.length) {
+			this.elements = Arrays.copyOf(this.elements, 2 * this.nOfElements);
+		}
+		System.arraycopy(this.elements, index, this.elements, index + 1, this.nOfElements - index);
+		this.elements[index] = offset;
+		this.nOfElements++;
+	}
+
+	/**
+	 * Returns the offset of the record of the element in the store of this plan, copying the element if necessary.
+	 *
+	 * @param copyingPlan <code>true</code> if the element is copied as part of a plan copy, in which case routes
+	 * are cloned and detached elements remain detached.
+	 */
+	private int offsetOf(final PlanElement pe, final boolean copyingPlan) {
+		if (pe instanceof CompactPlanElement) {
+			CompactPlanElement element = (CompactPlanElement) pe;
+			if (element.store == this.store) {
+				// already part of this plan, e.g. when elements are rearranged
+				return element.offset;
+			}
+			int offset = this.store.copyElement(element.store, element.offset, copyingPlan);
+			if (element.store.detached && !copyingPlan) {
+				element.attach(this.store, offset);
+			}
+			return offset;
+		} else if (pe instanceof Activity) {
+			return this.store.addActivity((Activity) pe);
+		} else if (pe instanceof Leg) {
+			return this.store.addLeg((Leg) pe, copyingPlan);
+		}
+		throw new IllegalArgumentException("unrecognized plan element type: " + pe);
+	}
+
+	private PlanElement view(final int index) {
+		int offset = this.elements[index];
+		if (this.store.kind(offset) == ElementStore.ACTIVITY) {
+			return new CompactActivity(this.store, offset);
+		}
+		return new CompactLeg(this.store, offset);
+	}
+
+	@Override
+	public Person getPerson() {
+		return this.person;
+	}
+
+	@Override
+	public void setPerson(final Person person) {
+		this.person = person;
+	}
+
+	@Override
+	public Double getScore() {
+		return this.score;
+	}
+
+	@Override
+	public void setScore(final Double score) {
+		this.score = score;
+	}
+
+	@Override
+	public String getType() {
+		return this.type;
+	}
+
+	@Override
+	public void setType(final String type) {
+		this.type = type;
+	}
+
+	@Override
+	public Map<String, Object> getCustomAttributes() {
+		if (this.customizableDelegate == null) {
+			this.customizableDelegate = CustomizableUtils.createCustomizable();
+		}
+		return this.customizableDelegate.getCustomAttributes();
+	}
+
+	@Override
+	public String toString() {
+		String scoreString = "undefined";
+		if (this.getScore() != null) {
+			scoreString = this.getScore().toString();
+		}
+		String personIdString = "undefined" ;
+		if ( this.getPerson() != null ) {
+			personIdString = this.getPerson().getId().toString() ;
+		}
+		return "[score=" + scoreString + "]" +
+				"[nof_acts_legs=" + this.nOfElements + "]" +
+				"[type=" + this.type + "]" +
+				"[personId=" + personIdString + "]" ;
+	}
+
+	/**
+	 * The plan elements as a modifiable list of views.
+	 */
+	private final class PlanElements extends AbstractList<PlanElement> implements RandomAccess {
+
+		@Override
+		public PlanElement get(final int index) {
+			checkIndex(index, nOfElements);
+			return view(index);
+		}
+
+		@Override
+		public int size() {
+			return nOfElements;
+		}
+
+		@Override
+		public PlanElement set(final int index, final PlanElement element) {
+			checkIndex(index, nOfElements);
+			PlanElement previous = view(index);
+			elements[index] = offsetOf(element, false);
+			return previous;
+		}
+
+		@Override
+		public void add(final int index, final PlanElement element) {
+			checkIndex(index, nOfElements + 1);
+			insert(index, offsetOf(element, false));
+			this.modCount++;
+		}
+
+		@Override
+		public PlanElement remove(final int index) {
+			checkIndex(index, nOfElements);
+			PlanElement previous = view(index);
+			System.arraycopy(elements, index + 1, elements, index, nOfElements - index - 1);
+			nOfElements--;
+			this.modCount++;
+			return previous;
+		}
+
+		@Override
+		protected void removeRange(final int fromIndex, final int toIndex) {
+			System.arraycopy(elements, toIndex, elements, fromIndex, nOfElements - toIndex);
+			nOfElements -= toIndex - fromIndex;
+			this.modCount++;
+		}
+
+		private void checkIndex(final int index, final int size) {
+			if (index < 0 || index >= size) {
+				throw new IndexOutOfBoundsException("index " + index + ", size " + nOfElements);
+			}
+		}
+	}
+
+}
@@ -0,0 +1,62 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * CompactPlanElement.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2016 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.population.compact;
+
+import org.matsim.api.core.v01.population.PlanElement;
+
+/**
+ * A flyweight view on the record of a plan element in an {@link ElementStore}. Views are created when the
+ * elements of a plan are accessed; two views are equal if they refer to the same record.
+ */
+/*package*/ abstract class CompactPlanElement implements PlanElement {
+
+	/*package*/ ElementStore store;
+	/*package*/ int offset;
+
+	/*package*/ CompactPlanElement(final ElementStore store, final int offset) {
+		this.store = store;
+		this.offset = offset;
+	}
+
+	/**
+	 * Lets the view refer to the copy of its record after a detached element has been added to a plan, so
+	 * changes made through the reference held by the caller end up in the plan.
+	 */
+	/*package*/ final void attach(final ElementStore newStore, final int newOffset) {
+		this.store = newStore;
+		this.offset = newOffset;
+	}
+
+	@Override
+	public final boolean equals(final Object obj) {
+		if (!(obj instanceof CompactPlanElement)) {
+			return false;
+		}
+		CompactPlanElement other = (CompactPlanElement) obj;
+		return other.store == this.store && other.offset == this.offset;
+	}
+
+	@Override
+	public final int hashCode() {
+		return 31 * System.identityHashCode(this.store) + this.offset;
+	}
+
+}
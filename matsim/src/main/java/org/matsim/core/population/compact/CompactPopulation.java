@@ -0,0 +1,136 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * CompactPopulation.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2016 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.population.compact;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.apache.log4j.Logger;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.api.core.v01.population.Plan;
+import org.matsim.api.core.v01.population.Population;
+import org.matsim.api.core.v01.population.PopulationFactory;
+import org.matsim.core.population.routes.RouteFactories;
+import org.matsim.utils.objectattributes.ObjectAttributes;
+
+/**
+ * A population which stores the plan elements of its persons in primitive arrays instead of one object per
+ * activity, leg, route and coordinate. Ids, activity types and modes are stored as int indices into dictionaries
+ * shared by the whole population, times and coordinates as the bits of the doubles, and network routes as
+ * arrays of link indices. The plan elements returned by the plans are flyweight views on this storage.
+ * <p></p>
+ * Persons which were not created by the factory of this population are copied when they are added, so the
+ * readers, which create their persons with the default factory, can be used unchanged. Code holding on to the
+ * added person (instead of getting it from {@link #getPersons()}) does thus not see the stored person.
+ * <p></p>
+ * Plan elements and network routes are stored by value. Activities and legs created by {@link #getFactory()}
+ * are moved into the plan they are added to and can still be changed afterwards; all other elements and
+ * routes are copied when added, so later changes must be made through the views returned by the plan.
+ * <p></p>
+ * Use {@link org.matsim.core.config.groups.PlansConfigGroup#setUsingCompactPopulation(boolean)} to get this
+ * population from {@link org.matsim.core.population.PopulationUtils#createPopulation(org.matsim.core.config.Config)}.
+ */
+public final class CompactPopulation implements Population {
+
+	private static final Logger log = Logger.getLogger(CompactPopulation.class);
+
+	private String name;
+	private final Map<Id<Person>, Person> persons = new LinkedHashMap<>();
+	private final CompactPopulationFactory factory;
+	private final ObjectAttributes personAttributes = new ObjectAttributes();
+
+	private long counter = 0;
+	private long nextMsg = 1;
+
+	public CompactPopulation(final RouteFactories routeFactories) {
+		this.factory = new CompactPopulationFactory(routeFactories);
+	}
+
+	@Override
+	public void addPerson(final Person p) {
+		if (this.persons.containsKey(p.getId())) {
+			throw new IllegalArgumentException("Person with id = " + p.getId() + " already exists.");
+		}
+		Person person = p;
+		if (!(p instanceof CompactPerson) || ((CompactPerson) p).factory != this.factory) {
+			person = CompactPerson.copyOf(this.factory, p);
+		} else {
+			// the plans are usually complete when the person is added
+			for (Plan plan : person.getPlans()) {
+				if (plan instanceof CompactPlan) {
+					((CompactPlan) plan).trimToSize();
+				}
+			}
+		}
+		this.counter++;
+		if (this.counter % this.nextMsg == 0) {
+			this.nextMsg *= 2;
+			printPlansCount();
+		}
+		this.persons.put(person.getId(), person);
+	}
+
+	/**
+	 * Converts the plans which were added to the persons of this population after the persons themselves, as
+	 * done by readers which fill the persons in parallel.
+	 */
+	public void compactPlans() {
+		for (Person person : this.persons.values()) {
+			((CompactPerson) person).compactPlans();
+		}
+	}
+
+	@Override
+	public Person removePerson(final Id<Person> personId) {
+		return this.persons.remove(personId);
+	}
+
+	@Override
+	public Map<Id<Person>, ? extends Person> getPersons() {
+		return this.persons;
+	}
+
+	@Override
+	public ObjectAttributes getPersonAttributes() {
+		return this.personAttributes;
+	}
+
+	@Override
+	public PopulationFactory getFactory() {
+		return this.factory;
+	}
+
+	@Override
+	public String getName() {
+		return this.name;
+	}
+
+	@Override
+	public void setName(final String name) {
+		this.name = name;
+	}
+
+	public void printPlansCount() {
+		log.info(" person # " + this.counter);
+	}
+
+}
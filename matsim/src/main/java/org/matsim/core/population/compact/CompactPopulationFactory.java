@@ -0,0 +1,88 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * CompactPopulationFactory.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2016 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.population.compact;
+
+import org.matsim.api.core.v01.Coord;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.population.Activity;
+import org.matsim.api.core.v01.population.Leg;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.api.core.v01.population.Plan;
+import org.matsim.api.core.v01.population.PopulationFactory;
+import org.matsim.core.population.routes.RouteFactories;
+import org.matsim.facilities.ActivityFacility;
+import org.matsim.vehicles.Vehicle;
+
+/**
+ * Creates the compact persons, plans and plan elements of a {@link CompactPopulation}. Also holds the
+ * dictionaries shared by all plans of the population.
+ */
+/*package*/ final class CompactPopulationFactory implements PopulationFactory {
+
+	/** the expected number of elements of a new plan */
+	private static final int PLAN_CAPACITY = 8;
+
+	private final RouteFactories routeFactories;
+
+	/*package*/ final Dictionary<String> strings = new Dictionary<>();
+	/*package*/ final Dictionary<Id<Link>> linkIds = new Dictionary<>();
+	/*package*/ final Dictionary<Id<ActivityFacility>> facilityIds = new Dictionary<>();
+	/*package*/ final Dictionary<Id<Vehicle>> vehicleIds = new Dictionary<>();
+
+	/*package*/ CompactPopulationFactory(final RouteFactories routeFactories) {
+		this.routeFactories = routeFactories;
+	}
+
+	@Override
+	public Person createPerson(final Id<Person> id) {
+		return new CompactPerson(this, id, 1);
+	}
+
+	@Override
+	public Plan createPlan() {
+		return new CompactPlan(this, PLAN_CAPACITY);
+	}
+
+	@Override
+	public Activity createActivityFromCoord(final String actType, final Coord coord) {
+		ElementStore store = new ElementStore(this, ElementStore.ACTIVITY_LENGTH, true);
+		return new CompactActivity(store, store.addActivity(actType, coord, null));
+	}
+
+	@Override
+	public Activity createActivityFromLinkId(final String actType, final Id<Link> linkId) {
+		ElementStore store = new ElementStore(this, ElementStore.ACTIVITY_LENGTH, true);
+		return new CompactActivity(store, store.addActivity(actType, null, linkId));
+	}
+
+	@Override
+	public Leg createLeg(final String legMode) {
+		ElementStore store = new ElementStore(this, ElementStore.LEG_LENGTH, true);
+		return new CompactLeg(store, store.addLeg(legMode));
+	}
+
+	@Override
+	public RouteFactories getRouteFactories() {
+		return this.routeFactories;
+	}
+
+}
@@ -0,0 +1,74 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * Dictionary.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2016 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.population.compact;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Assigns consecutive int indices to values, so plan elements can store ids and strings as ints.
+ * Values are never removed. Safe for concurrent use, e.g. by the threads of the parallel population
+ * reader or of replanning.
+ */
+/*package*/ final class Dictionary<T> {
+
+	/** the index of <code>null</code> */
+	/*package*/ static final int NULL = -1;
+
+	private final ConcurrentHashMap<T, Integer> indices = new ConcurrentHashMap<>();
+	private volatile Object[] values = new Object[64];
+	private int size = 0;
+
+	/*package*/ int index(final T value) {
+		if (value == null) {
+			return NULL;
+		}
+		Integer index = this.indices.get(value);
+		if (index != null) {
+			return index;
+		}
+		synchronized (this) {
+			index = this.indices.get(value);
+			if (index == null) {
+				Object[] vals = this.values;
+				if (this.size == vals.length) {
+					vals = Arrays.copyOf(vals, 2 * this.size);
+				}
+				vals[this.size] = value;
+				// publish the array before the index, so everybody knowing the index sees the value
+				this.values = vals;
+				index = this.size++;
+				this.indices.put(value, index);
+			}
+			return index;
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	/*package*/ T get(final int index) {
+		return index == NULL ? null : (T) this.values[index];
+	}
+
+	/*package*/ synchronized int size() {
+		return this.size;
+	}
+
+}
@@ -0,0 +1,339 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * ElementStore.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2016 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.population.compact;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.matsim.api.core.v01.Coord;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.population.Activity;
+import org.matsim.api.core.v01.population.Leg;
+import org.matsim.api.core.v01.population.Route;
+import org.matsim.core.population.routes.NetworkRoute;
+import org.matsim.core.utils.misc.Time;
+
+/**
+ * The records of the plan elements of one plan, stored in a single <code>long[]</code>. Every record starts
+ * with a header containing the kind of the record in its lower bits and a value (e.g. the index of the activity
+ * type) in its upper 32 bits. Times, coordinates and distances are stored as the bits of the double, ids and
+ * strings as index into one of the {@link Dictionary}s of the {@link CompactPopulationFactory}, two per long.
+ * <p></p>
+ * Records are only appended, never moved, so the offset of a record identifies it for the whole lifetime of
+ * the store. Records which are no longer used (e.g. elements removed from the plan, or network routes which had
+ * to be relocated because they got longer) are not reclaimed; they are dropped when the plan is copied or
+ * garbage collected.
+ * <p></p>
+ * Network routes are stored as records as well, all other routes are kept as objects.
+ */
+/*package*/ final class ElementStore {
+
+	/*package*/ static final int ACTIVITY = 1;
+	/*package*/ static final int LEG = 2;
+	/*package*/ static final int NETWORK_ROUTE = 3;
+
+	private static final long KIND_MASK = 0xFFL;
+	/*package*/ static final long HAS_COORD = 0x100L;
+
+	/*package*/ static final int ACT_LINK_FACILITY = 1;
+	/*package*/ static final int ACT_X = 2;
+	/*package*/ static final int ACT_Y = 3;
+	/*package*/ static final int ACT_START = 4;
+	/*package*/ static final int ACT_END = 5;
+	/*package*/ static final int ACT_MAXDUR = 6;
+	/*package*/ static final int ACTIVITY_LENGTH = 7;
+
+	/*package*/ static final int LEG_DEPARTURE = 1;
+	/*package*/ static final int LEG_TRAVELTIME = 2;
+	/** 0 if there is no route, offset + 1 of a network route record, or -(index + 1) of a route object */
+	/*package*/ static final int LEG_ROUTE = 3;
+	/*package*/ static final int LEG_LENGTH = 4;
+
+	/*package*/ static final int ROUTE_START_END = 1;
+	/*package*/ static final int ROUTE_DISTANCE = 2;
+	/*package*/ static final int ROUTE_TRAVELTIME = 3;
+	/*package*/ static final int ROUTE_COST = 4;
+	/*package*/ static final int ROUTE_VEHICLE = 5;
+	/** followed by the link indices, two per long */
+	/*package*/ static final int ROUTE_HEADER_LENGTH = 6;
+
+	/*package*/ final CompactPopulationFactory factory;
+	/** stores of elements created by the factory are detached until the element is added to a plan */
+	/*package*/ final boolean detached;
+
+	private long[] data;
+	private int size = 0;
+	private Route[] routes = null;
+	private int nOfRoutes = 0;
+
+	/*package*/ ElementStore(final CompactPopulationFactory factory, final int initialCapacity, final boolean detached) {
+		this.factory = factory;
+		this.data = new long[Math.max(initialCapacity, 4)];
+		this.detached = detached;
+	}
+
+	/*package*/ int size() {
+		return this.size;
+	}
+
+	/*package*/ int allocate(final int length) {
+		if (this.size + length > this.data.length) {
+			this.data = Arrays.copyOf(this.data, Math.max(this.data.length + (this.data.length >> 1), this.size + length));
+		}
+		int offset = this.size;
+		this.size += length;
+		return offset;
+	}
+
+	/*package*/ void trimToSize() {
+		if (this.data.length > this.size) {
+			this.data = Arrays.copyOf(this.data, this.size);
+		}
+	}
+
+	// --- raw access
+
+	/*package*/ long get(final int pos) {
+		return this.data[pos];
+	}
+
+	/*package*/ void set(final int pos, final long value) {
+		this.data[pos] = value;
+	}
+
+	/*package*/ double getDouble(final int pos) {
+		return Double.longBitsToDouble(this.data[pos]);
+	}
+
+	/*package*/ void setDouble(final int pos, final double value) {
+		this.data[pos] = Double.doubleToRawLongBits(value);
+	}
+
+	/*package*/ int kind(final int offset) {
+		return (int) (this.data[offset] & KIND_MASK);
+	}
+
+	/*package*/ boolean hasFlag(final int offset, final long flag) {
+		return (this.data[offset] & flag) != 0;
+	}
+
+	/*package*/ void setFlag(final int offset, final long flag, final boolean value) {
+		if (value) {
+			this.data[offset] |= flag;
+		} else {
+			this.data[offset] &= ~flag;
+		}
+	}
+
+	/*package*/ int headerValue(final int offset) {
+		return (int) (this.data[offset] >>> 32) - 1;
+	}
+
+	/*package*/ void setHeaderValue(final int offset, final int value) {
+		this.data[offset] = ((long) (value + 1) << 32) | (this.data[offset] & 0xFFFFFFFFL);
+	}
+
+	/*package*/ int first(final int pos) {
+		return (int) (this.data[pos] >>> 32) - 1;
+	}
+
+	/*package*/ int second(final int pos) {
+		return (int) this.data[pos] - 1;
+	}
+
+	/*package*/ void setFirst(final int pos, final int value) {
+		this.data[pos] = ((long) (value + 1) << 32) | (this.data[pos] & 0xFFFFFFFFL);
+	}
+
+	/*package*/ void setSecond(final int pos, final int value) {
+		this.data[pos] = (this.data[pos] & 0xFFFFFFFF00000000L) | ((value + 1) & 0xFFFFFFFFL);
+	}
+
+	private static long header(final int kind, final int value) {
+		return ((long) (value + 1) << 32) | kind;
+	}
+
+	// --- records
+
+	/*package*/ int addActivity(final String type, final Coord coord, final Id<Link> linkId) {
+		int offset = allocate(ACTIVITY_LENGTH);
+		this.data[offset] = header(ACTIVITY, this.factory.strings.index(type));
+		setFirst(offset + ACT_LINK_FACILITY, this.factory.linkIds.index(linkId));
+		setSecond(offset + ACT_LINK_FACILITY, Dictionary.NULL);
+		setCoord(offset, coord);
+		setDouble(offset + ACT_START, Time.UNDEFINED_TIME);
+		setDouble(offset + ACT_END, Time.UNDEFINED_TIME);
+		setDouble(offset + ACT_MAXDUR, Time.UNDEFINED_TIME);
+		return offset;
+	}
+
+	/*package*/ void setCoord(final int offset, final Coord coord) {
+		setFlag(offset, HAS_COORD, coord != null);
+		setDouble(offset + ACT_X, coord == null ? 0.0 : coord.getX());
+		setDouble(offset + ACT_Y, coord == null ? 0.0 : coord.getY());
+	}
+
+	/*package*/ int addLeg(final String mode) {
+		int offset = allocate(LEG_LENGTH);
+		this.data[offset] = header(LEG, this.factory.strings.index(mode));
+		setDouble(offset + LEG_DEPARTURE, Time.UNDEFINED_TIME);
+		setDouble(offset + LEG_TRAVELTIME, Time.UNDEFINED_TIME);
+		this.data[offset + LEG_ROUTE] = 0;
+		return offset;
+	}
+
+	/**
+	 * Copies a plan element which is not stored compactly into a new record.
+	 */
+	/*package*/ int addActivity(final Activity act) {
+		int offset = addActivity(act.getType(), act.getCoord(), act.getLinkId());
+		setSecond(offset + ACT_LINK_FACILITY, this.factory.facilityIds.index(act.getFacilityId()));
+		setDouble(offset + ACT_START, act.getStartTime());
+		setDouble(offset + ACT_END, act.getEndTime());
+		setDouble(offset + ACT_MAXDUR, act.getMaximumDuration());
+		return offset;
+	}
+
+	/*package*/ int addLeg(final Leg leg, final boolean cloneRoute) {
+		int offset = addLeg(leg.getMode());
+		setDouble(offset + LEG_DEPARTURE, leg.getDepartureTime());
+		setDouble(offset + LEG_TRAVELTIME, leg.getTravelTime());
+		Route route = leg.getRoute();
+		setRoute(offset, cloneRoute && route != null && !(route instanceof NetworkRoute) ? route.clone() : route);
+		return offset;
+	}
+
+	/**
+	 * Copies a record, including the route of a leg, from another store.
+	 */
+	/*package*/ int copyElement(final ElementStore from, final int fromOffset, final boolean cloneRoutes) {
+		int kind = from.kind(fromOffset);
+		int length = kind == ACTIVITY ? ACTIVITY_LENGTH : LEG_LENGTH;
+		int offset = allocate(length);
+		System.arraycopy(from.data, fromOffset, this.data, offset, length);
+		if (kind == LEG) {
+			long ref = from.data[fromOffset + LEG_ROUTE];
+			if (ref > 0) {
+				this.data[offset + LEG_ROUTE] = copyNetworkRoute(from, (int) ref - 1) + 1;
+			} else if (ref < 0) {
+				Route route = from.getRouteObject((int) ref);
+				this.data[offset + LEG_ROUTE] = addRouteObject(cloneRoutes ? route.clone() : route);
+			}
+		}
+		return offset;
+	}
+
+	// --- routes
+
+	/*package*/ void setRoute(final int legOffset, final Route route) {
+		if (route == null) {
+			this.data[legOffset + LEG_ROUTE] = 0;
+		} else if (route instanceof CompactNetworkRoute && ((CompactNetworkRoute) route).store == this) {
+			this.data[legOffset + LEG_ROUTE] = ((CompactNetworkRoute) route).offset + 1;
+		} else if (route instanceof CompactNetworkRoute) {
+			CompactNetworkRoute other = (CompactNetworkRoute) route;
+			this.data[legOffset + LEG_ROUTE] = copyNetworkRoute(other.store, other.offset) + 1;
+		} else if (route instanceof NetworkRoute) {
+			NetworkRoute networkRoute = (NetworkRoute) route;
+			int offset = addNetworkRoute(networkRoute.getStartLinkId(), networkRoute.getLinkIds(), networkRoute.getEndLinkId());
+			setDouble(offset + ROUTE_DISTANCE, networkRoute.getDistance());
+			setDouble(offset + ROUTE_TRAVELTIME, networkRoute.getTravelTime());
+			setDouble(offset + ROUTE_COST, networkRoute.getTravelCost());
+			setFirst(offset + ROUTE_VEHICLE, this.factory.vehicleIds.index(networkRoute.getVehicleId()));
+			this.data[legOffset + LEG_ROUTE] = offset + 1;
+		} else {
+			this.data[legOffset + LEG_ROUTE] = addRouteObject(route);
+		}
+	}
+
+	/*package*/ Route getRoute(final int legOffset) {
+		long ref = this.data[legOffset + LEG_ROUTE];
+		if (ref == 0) {
+			return null;
+		}
+		if (ref > 0) {
+			return new CompactNetworkRoute(this, (int) ref - 1, legOffset);
+		}
+		return getRouteObject((int) ref);
+	}
+
+	private Route getRouteObject(final int ref) {
+		return this.routes[-ref - 1];
+	}
+
+	private long addRouteObject(final Route route) {
+		if (this.routes == null) {
+			this.routes = new Route[2];
+		} else if (this.nOfRoutes == this.routes.length) {
+			this.routes = Arrays.copyOf(this.routes, 2 * this.nOfRoutes);
+		}
+		this.routes[this.nOfRoutes++] = route;
+		return -this.nOfRoutes;
+	}
+
+	/*package*/ static int networkRouteLength(final int nOfLinks) {
+		return ROUTE_HEADER_LENGTH + (nOfLinks + 1) / 2;
+	}
+
+	/*package*/ int addNetworkRoute(final Id<Link> startLinkId, final List<Id<Link>> linkIds, final Id<Link> endLinkId) {
+		int nOfLinks = linkIds == null ? 0 : linkIds.size();
+		int offset = allocate(networkRouteLength(nOfLinks));
+		this.data[offset] = header(NETWORK_ROUTE, nOfLinks);
+		setFirst(offset + ROUTE_START_END, this.factory.linkIds.index(startLinkId));
+		setSecond(offset + ROUTE_START_END, this.factory.linkIds.index(endLinkId));
+		setDouble(offset + ROUTE_DISTANCE, Double.NaN);
+		setDouble(offset + ROUTE_TRAVELTIME, Time.UNDEFINED_TIME);
+		setDouble(offset + ROUTE_COST, Double.NaN);
+		setFirst(offset + ROUTE_VEHICLE, Dictionary.NULL);
+		setSecond(offset + ROUTE_VEHICLE, Dictionary.NULL);
+		writeLinks(offset, linkIds);
+		return offset;
+	}
+
+	/*package*/ void writeLinks(final int routeOffset, final List<Id<Link>> linkIds) {
+		int nOfLinks = linkIds == null ? 0 : linkIds.size();
+		setHeaderValue(routeOffset, nOfLinks);
+		for (int i = 0; i < nOfLinks; i++) {
+			int pos = routeOffset + ROUTE_HEADER_LENGTH + i / 2;
+			int index = this.factory.linkIds.index(linkIds.get(i));
+			if ((i & 1) == 0) {
+				setFirst(pos, index);
+				setSecond(pos, Dictionary.NULL);
+			} else {
+				setSecond(pos, index);
+			}
+		}
+	}
+
+	/*package*/ int linkIndex(final int routeOffset, final int i) {
+		int pos = routeOffset + ROUTE_HEADER_LENGTH + i / 2;
+		return (i & 1) == 0 ? first(pos) : second(pos);
+	}
+
+	private int copyNetworkRoute(final ElementStore from, final int fromOffset) {
+		int length = networkRouteLength(from.headerValue(fromOffset));
+		int offset = allocate(length);
+		System.arraycopy(from.data, fromOffset, this.data, offset, length);
+		return offset;
+	}
+
+}
@@ -35,6 +35,7 @@ import org.matsim.api.core.v01.population.Person;
 import org.matsim.api.core.v01.population.Population;
 import org.matsim.api.core.v01.population.PopulationFactory;
 import org.matsim.core.config.Config;
+import org.matsim.core.population.compact.CompactPopulation;
 import org.matsim.core.utils.geometry.CoordinateTransformation;
 import org.matsim.core.utils.geometry.transformations.IdentityTransformation;
 import org.matsim.facilities.ActivityFacilities;
@@ -184,6 +185,11 @@ import org.xml.sax.helpers.AttributesImpl;
 				throw new RuntimeException(e);
 			}
 			
+			// the persons were added before their plans were read
+			if (this.plans instanceof CompactPopulation) {
+				((CompactPopulation) this.plans).compactPlans();
+			}
+
 			super.endTag(name, content, context);
 			log.info("Finished parallel population reading...");
 		} else {
@@ -0,0 +1,249 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * ParallelPopulationReaderMatsimV5.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2016 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.population.io;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Stack;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+import org.apache.log4j.Logger;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.Scenario;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.api.core.v01.population.Population;
+import org.matsim.api.core.v01.population.PopulationFactory;
+import org.matsim.core.utils.geometry.CoordinateTransformation;
+import org.matsim.utils.objectattributes.ObjectAttributes;
+import org.xml.sax.Attributes;
+import org.xml.sax.helpers.AttributesImpl;
+
+/**
+ * Parallel implementation of the PopulationReaderMatsimV5. The main thread only reads the
+ * file and collects the tags of a number of persons into a chunk. The chunks are interpreted
+ * by a pool of threads, each creating the persons of a chunk with its own PopulationReaderMatsimV5.
+ * <p></p>
+ * The persons are added to the population by the main thread and in the order of the file.
+ * This reader can thus also be used with population streaming, in which case the person
+ * algorithms are run by the main thread while the next chunks are interpreted.
+ * The number of chunks waiting to be added is limited, so the memory usage does not depend
+ * on the size of the file.
+ */
+/* deliberately package */ class ParallelPopulationReaderMatsimV5 extends PopulationReaderMatsimV5 {
+
+	private static final Logger log = Logger.getLogger(ParallelPopulationReaderMatsimV5.class);
+
+	/*package*/ static final int PERSONS_PER_CHUNK = 256;
+
+	private final CoordinateTransformation coordinateTransformation;
+	private final Scenario scenario;
+	private final Population population;
+	private final int numThreads;
+
+	private ExecutorService executor = null;
+	private final ArrayDeque<Future<List<Person>>> pending = new ArrayDeque<>();
+	private List<Tag> currentChunk = new ArrayList<>();
+	private int personsInChunk = 0;
+
+	public ParallelPopulationReaderMatsimV5(
+			final CoordinateTransformation coordinateTransformation,
+			final Scenario scenario,
+			final int numThreads) {
+		super( coordinateTransformation , scenario );
+		if (numThreads < 1) {
+			throw new IllegalArgumentException("number of threads must be strictly positive, got " + numThreads);
+		}
+		this.coordinateTransformation = coordinateTransformation;
+		this.scenario = scenario;
+		this.population = scenario.getPopulation();
+		this.numThreads = numThreads;
+	}
+
+	@Override
+	public void startTag(final String name, final Attributes atts, final Stack<String> context) {
+		if (POPULATION.equals(name)) {
+			log.info("Start parallel population reading using " + this.numThreads + " threads...");
+			this.executor = Executors.newFixedThreadPool(this.numThreads, new ThreadFactory() {
+				private int cnt = 0;
+				@Override
+				public Thread newThread(Runnable r) {
+					Thread thread = new Thread(r, ParallelPopulationReaderMatsimV5.class.getSimpleName() + "-" + this.cnt++);
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+			super.startTag(name, atts, context);
+		} else {
+			// We have to create copies of the attributes because the object is re-used by the parser!
+			this.currentChunk.add(new Tag(name, new AttributesImpl(atts), null));
+		}
+	}
+
+	@Override
+	public void endTag(final String name, final String content, final Stack<String> context) {
+		if (POPULATION.equals(name)) {
+			try {
+				if (this.personsInChunk > 0) {
+					submitChunk();
+				}
+				while (!this.pending.isEmpty()) {
+					addPersons(this.pending.poll());
+				}
+			} finally {
+				this.executor.shutdownNow();
+				this.executor = null;
+			}
+			super.endTag(name, content, context);
+			log.info("Finished parallel population reading...");
+		} else {
+			this.currentChunk.add(new Tag(name, null, content));
+			if (PERSON.equals(name)) {
+				this.personsInChunk++;
+				if (this.personsInChunk == PERSONS_PER_CHUNK) {
+					submitChunk();
+				}
+			}
+		}
+	}
+
+	private void submitChunk() {
+		if (this.pending.size() == 2 * this.numThreads) {
+			addPersons(this.pending.poll());
+		}
+		this.pending.add(this.executor.submit(new ChunkReader(this.currentChunk, this.personsInChunk)));
+		this.currentChunk = new ArrayList<>();
+		this.personsInChunk = 0;
+	}
+
+	private void addPersons(final Future<List<Person>> chunk) {
+		List<Person> persons;
+		try {
+			persons = chunk.get();
+		} catch (InterruptedException e) {
+			this.executor.shutdownNow();
+			throw new RuntimeException(e);
+		} catch (ExecutionException e) {
+			this.executor.shutdownNow();
+			if (e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) e.getCause();
+			}
+			throw new RuntimeException(e.getCause());
+		}
+		for (Person person : persons) {
+			this.population.addPerson(person);
+		}
+	}
+
+	private final class ChunkReader implements Callable<List<Person>> {
+
+		private final List<Tag> tags;
+		private final int nOfPersons;
+
+		ChunkReader(final List<Tag> tags, final int nOfPersons) {
+			this.tags = tags;
+			this.nOfPersons = nOfPersons;
+		}
+
+		@Override
+		public List<Person> call() {
+			CollectorPopulation collector = new CollectorPopulation(this.nOfPersons);
+			PopulationReaderMatsimV5 reader = new PopulationReaderMatsimV5(coordinateTransformation, scenario, collector);
+			for (Tag tag : this.tags) {
+				if (tag.atts != null) {
+					reader.startTag(tag.name, tag.atts, null);
+				} else {
+					reader.endTag(tag.name, tag.content, null);
+				}
+			}
+			return collector.persons;
+		}
+	}
+
+	/**
+	 * A start tag if it has attributes, otherwise an end tag.
+	 */
+	private static final class Tag {
+		final String name;
+		final Attributes atts;
+		final String content;
+
+		Tag(final String name, final Attributes atts, final String content) {
+			this.name = name;
+			this.atts = atts;
+			this.content = content;
+		}
+	}
+
+	/**
+	 * Collects the persons of a chunk, in the order they are added.
+	 */
+	private final class CollectorPopulation implements Population {
+
+		final List<Person> persons;
+
+		CollectorPopulation(final int expectedSize) {
+			this.persons = new ArrayList<>(expectedSize);
+		}
+
+		@Override
+		public void addPerson(final Person p) {
+			this.persons.add(p);
+		}
+
+		@Override
+		public PopulationFactory getFactory() {
+			return population.getFactory();
+		}
+
+		@Override
+		public ObjectAttributes getPersonAttributes() {
+			return population.getPersonAttributes();
+		}
+
+		@Override
+		public String getName() {
+			throw new RuntimeException("Calls to this method are not expected to happen...");
+		}
+
+		@Override
+		public void setName(final String name) {
+			throw new RuntimeException("Calls to this method are not expected to happen...");
+		}
+
+		@Override
+		public Map<Id<Person>, ? extends Person> getPersons() {
+			throw new RuntimeException("Calls to this method are not expected to happen...");
+		}
+
+		@Override
+		public Person removePerson(final Id<Person> personId) {
+			throw new RuntimeException("Calls to this method are not expected to happen...");
+		}
+	}
+
+}
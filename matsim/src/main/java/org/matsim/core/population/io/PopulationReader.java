@@ -96,10 +96,19 @@ public class PopulationReader extends MatsimXmlParser implements MatsimReader {
 							this.scenario);
 			log.info("using plans_v4-reader.");
 		} else if (POPULATION_V5.equals(doctype)) {
-			this.delegate =
-					new PopulationReaderMatsimV5(
-							coordinateTransformation,
-							this.scenario);
+			int numThreads = this.scenario.getConfig().global().getNumberOfThreads();
+			if (numThreads > 1) {
+				this.delegate =
+						new ParallelPopulationReaderMatsimV5(
+								coordinateTransformation,
+								this.scenario,
+								numThreads);
+			} else {
+				this.delegate =
+						new PopulationReaderMatsimV5(
+								coordinateTransformation,
+								this.scenario);
+			}
 			log.info("using population_v5-reader.");
 		} else if (PLANS_V1.equals(doctype)) {
 			this.delegate =
@@ -56,8 +56,8 @@ import org.xml.sax.Attributes;
  */
 /* deliberately package */ class PopulationReaderMatsimV5 extends MatsimXmlParser implements MatsimReader {
 
-	private final static String POPULATION = "population";
-	private final static String PERSON = "person";
+	/*package*/ final static String POPULATION = "population";
+	/*package*/ final static String PERSON = "person";
 	private final static String PLAN = "plan";
 	private final static String ACT = "act";
 	private final static String LEG = "leg";
@@ -113,9 +113,20 @@ import org.xml.sax.Attributes;
 	public PopulationReaderMatsimV5(
 			final CoordinateTransformation coordinateTransformation,
 			final Scenario scenario) {
+		this( coordinateTransformation , scenario , scenario.getPopulation() );
+	}
+
+	/**
+	 * Adds the persons read to the given population instead of the one of the scenario.  Used by
+	 * {@link ParallelPopulationReaderMatsimV5} to collect the persons of a chunk.
+	 */
+	/*package*/ PopulationReaderMatsimV5(
+			final CoordinateTransformation coordinateTransformation,
+			final Scenario scenario,
+			final Population plans) {
 		this.coordinateTransformation = coordinateTransformation;
 		this.scenario = scenario;
-		this.plans = scenario.getPopulation();
+		this.plans = plans;
 	}
 
 	@Override
@@ -22,9 +22,12 @@ package org.matsim.core.population.io;
 
 import java.io.BufferedWriter;
 import java.io.IOException;
+import java.util.List;
 
 import org.apache.log4j.Logger;
 import org.matsim.api.core.v01.Coord;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.network.Link;
 import org.matsim.api.core.v01.population.Activity;
 import org.matsim.api.core.v01.population.Leg;
 import org.matsim.api.core.v01.population.Person;
@@ -33,8 +36,11 @@ import org.matsim.api.core.v01.population.PlanElement;
 import org.matsim.api.core.v01.population.Population;
 import org.matsim.api.core.v01.population.Route;
 import org.matsim.core.population.PersonUtils;
+import org.matsim.core.population.routes.LinkNetworkRouteImpl;
+import org.matsim.core.population.routes.NetworkRoute;
 import org.matsim.core.utils.geometry.CoordinateTransformation;
 import org.matsim.core.utils.io.MatsimXmlWriter;
+import org.matsim.core.utils.io.XmlValueWriter;
 import org.matsim.core.utils.misc.Time;
 
 /**
@@ -47,6 +53,9 @@ import org.matsim.core.utils.misc.Time;
 
 	private final CoordinateTransformation coordinateTransformation;
 
+	private XmlValueWriter xml = null;
+	private BufferedWriter xmlOut = null;
+
 	PopulationWriterHandlerImplV5(CoordinateTransformation coordinateTransformation) {
 		this.coordinateTransformation = coordinateTransformation;
 	}
@@ -68,22 +77,23 @@ import org.matsim.core.utils.misc.Time;
 
 	@Override
 	public void writePerson(final Person person, final BufferedWriter out) throws IOException {
-		PopulationWriterHandlerImplV5.startPerson(person, out);
+		XmlValueWriter xml = getXmlValueWriter(out);
+		PopulationWriterHandlerImplV5.startPerson(person, out, xml);
 		for (Plan plan : person.getPlans()) {
-			PopulationWriterHandlerImplV5.startPlan(plan, out);
+			PopulationWriterHandlerImplV5.startPlan(plan, out, xml);
 			// act/leg
 			for (PlanElement pe : plan.getPlanElements()) {
 				if (pe instanceof Activity) {
 					Activity act = (Activity) pe;
-					this.writeAct(act, out);
+					this.writeAct(act, out, xml);
 				}
 				else if (pe instanceof Leg) {
 					Leg leg = (Leg) pe;
-					PopulationWriterHandlerImplV5.startLeg(leg, out);
+					PopulationWriterHandlerImplV5.startLeg(leg, out, xml);
 					// route
 					Route route = leg.getRoute();
 					if (route != null) {
-						PopulationWriterHandlerImplV5.startRoute(route, out);
+						PopulationWriterHandlerImplV5.startRoute(route, out, xml);
 						PopulationWriterHandlerImplV5.endRoute(out);
 					}
 					PopulationWriterHandlerImplV5.endLeg(out);
@@ -93,7 +103,6 @@ import org.matsim.core.utils.misc.Time;
 		}
 		PopulationWriterHandlerImplV5.endPerson(out);
 		this.writeSeparator(out);
-		out.flush();
 	}
 
 	@Override
@@ -101,37 +110,31 @@ import org.matsim.core.utils.misc.Time;
 		out.write("</population>\n");
 	}
 
-	private static void startPerson(final Person p, final BufferedWriter out) throws IOException {
-		out.write("\t<person id=\"");
-		out.write(p.getId().toString());
-		out.write("\"");
-		if (p != null){
-			Person person = p;
-			if (PersonUtils.getSex(person) != null) {
-				out.write(" sex=\"");
-				out.write(PersonUtils.getSex(person));
-				out.write("\"");
-			}
-			if (PersonUtils.getAge(person) != null) {
-				out.write(" age=\"");
-				out.write(Integer.toString(PersonUtils.getAge(person)));
-				out.write("\"");
-			}
-			if (PersonUtils.getLicense(person) != null) {
-				out.write(" license=\"");
-				out.write(PersonUtils.getLicense(person));
-				out.write("\"");
-			}
-			if (PersonUtils.getCarAvail(person) != null) {
-				out.write(" car_avail=\"");
-				out.write(PersonUtils.getCarAvail(person));
-				out.write("\"");
-			}
-			if (PersonUtils.isEmployed(person) != null) {
-				out.write(" employed=\"");
-				out.write((PersonUtils.isEmployed(person) ? "yes" : "no"));
-				out.write("\"");
-			}
+	private XmlValueWriter getXmlValueWriter(final BufferedWriter out) {
+		if (out != this.xmlOut) {
+			this.xml = new XmlValueWriter(out);
+			this.xmlOut = out;
+		}
+		return this.xml;
+	}
+
+	private static void startPerson(final Person person, final BufferedWriter out, final XmlValueWriter xml) throws IOException {
+		out.write("\t<person");
+		xml.writeAttribute("id", person.getId().toString());
+		if (PersonUtils.getSex(person) != null) {
+			xml.writeAttribute("sex", PersonUtils.getSex(person));
+		}
+		if (PersonUtils.getAge(person) != null) {
+			xml.writeAttribute("age", PersonUtils.getAge(person).intValue());
+		}
+		if (PersonUtils.getLicense(person) != null) {
+			xml.writeAttribute("license", PersonUtils.getLicense(person));
+		}
+		if (PersonUtils.getCarAvail(person) != null) {
+			xml.writeAttribute("car_avail", PersonUtils.getCarAvail(person));
+		}
+		if (PersonUtils.isEmployed(person) != null) {
+			xml.writeAttribute("employed", (PersonUtils.isEmployed(person) ? "yes" : "no"));
 		}
 		out.write(">\n");
 	}
@@ -140,24 +143,17 @@ import org.matsim.core.utils.misc.Time;
 		out.write("\t</person>\n\n");
 	}
 
-	private static void startPlan(final Plan plan, final BufferedWriter out) throws IOException {
+	private static void startPlan(final Plan plan, final BufferedWriter out, final XmlValueWriter xml) throws IOException {
 		out.write("\t\t<plan");
 		if (plan.getScore() != null) {
-			out.write(" score=\"");
-			out.write(plan.getScore().toString());
-			out.write("\"");
+			xml.writeAttribute("score", plan.getScore().doubleValue());
 		}
 		if (PersonUtils.isSelected(plan))
 			out.write(" selected=\"yes\"");
 		else
 			out.write(" selected=\"no\"");
-		if (plan != null){
-			Plan p = plan;
-			if ((p.getType() != null)) {
-				out.write(" type=\"");
-				out.write(p.getType());
-				out.write("\"");
-			}
+		if ((plan.getType() != null)) {
+			xml.writeAttribute("type", plan.getType());
 		}
 		out.write(">\n");
 	}
@@ -166,71 +162,41 @@ import org.matsim.core.utils.misc.Time;
 		out.write("\t\t</plan>\n\n");
 	}
 
-	private void writeAct(final Activity act, final BufferedWriter out) throws IOException {
-		out.write("\t\t\t<act type=\"");
-		out.write(act.getType());
-		out.write("\"");
+	private void writeAct(final Activity act, final BufferedWriter out, final XmlValueWriter xml) throws IOException {
+		out.write("\t\t\t<act");
+		xml.writeAttribute("type", act.getType());
 		if (act.getLinkId() != null) {
-			out.write(" link=\"");
-			out.write(act.getLinkId().toString());
-			out.write("\"");
+			xml.writeAttribute("link", act.getLinkId().toString());
 		}
 		if (act.getFacilityId() != null) {
-			out.write(" facility=\"");
-			out.write(act.getFacilityId().toString());
-			out.write("\"");
+			xml.writeAttribute("facility", act.getFacilityId().toString());
 		}
 		if (act.getCoord() != null) {
 			final Coord coord = coordinateTransformation.transform( act.getCoord() );
-			out.write(" x=\"");
-			out.write(Double.toString( coord.getX() ));
-			out.write("\" y=\"");
-			out.write(Double.toString( coord.getY() ));
-			out.write("\"");
+			xml.writeAttribute("x", coord.getX());
+			xml.writeAttribute("y", coord.getY());
 		}
 		if (act.getStartTime() != Time.UNDEFINED_TIME) {
-			out.write(" start_time=\"");
-			out.write(Time.writeTime(act.getStartTime()));
-			out.write("\"");
+			xml.writeTimeAttribute("start_time", act.getStartTime());
 		}
-		if (act != null){
-			Activity a = act;
-			if (a.getMaximumDuration() != Time.UNDEFINED_TIME) {
-				out.write(" max_dur=\"");
-				out.write(Time.writeTime(a.getMaximumDuration()));
-				out.write("\"");
-			}
+		if (act.getMaximumDuration() != Time.UNDEFINED_TIME) {
+			xml.writeTimeAttribute("max_dur", act.getMaximumDuration());
 		}
 		if (act.getEndTime() != Time.UNDEFINED_TIME) {
-			out.write(" end_time=\"");
-			out.write(Time.writeTime(act.getEndTime()));
-			out.write("\"");
+			xml.writeTimeAttribute("end_time", act.getEndTime());
 		}
 		out.write(" />\n");
 	}
 
-	private static void startLeg(final Leg leg, final BufferedWriter out) throws IOException {
-		out.write("\t\t\t<leg mode=\"");
-		out.write(leg.getMode());
-		out.write("\"");
+	private static void startLeg(final Leg leg, final BufferedWriter out, final XmlValueWriter xml) throws IOException {
+		out.write("\t\t\t<leg");
+		xml.writeAttribute("mode", leg.getMode());
 		if (leg.getDepartureTime() != Time.UNDEFINED_TIME) {
-			out.write(" dep_time=\"");
-			out.write(Time.writeTime(leg.getDepartureTime()));
-			out.write("\"");
+			xml.writeTimeAttribute("dep_time", leg.getDepartureTime());
 		}
 		if (leg.getTravelTime() != Time.UNDEFINED_TIME) {
-			out.write(" trav_time=\"");
-			out.write(Time.writeTime(leg.getTravelTime()));
-			out.write("\"");
+			xml.writeTimeAttribute("trav_time", leg.getTravelTime());
 		}
-//		if (leg instanceof LegImpl) {
-//			LegImpl l = (LegImpl)leg;
-//			if (l.getDepartureTime() + l.getTravelTime() != Time.UNDEFINED_TIME) {
-//				out.write(" arr_time=\"");
-//				out.write(Time.writeTime(l.getDepartureTime() + l.getTravelTime()));
-//				out.write("\"");
-//			}
-//		}
 		// arrival time is in dtd, but no longer evaluated in code (according to not being in API).  kai, jun'16
 
 		out.write(">\n");
@@ -240,27 +206,32 @@ import org.matsim.core.utils.misc.Time;
 		out.write("\t\t\t</leg>\n");
 	}
 
-	private static void startRoute(final Route route, final BufferedWriter out) throws IOException {
-		out.write("\t\t\t\t<route ");
-		out.write("type=\"");
-		out.write(route.getRouteType());
-		out.write("\"");
-		out.write(" start_link=\"");
-		out.write(route.getStartLinkId().toString());
-		out.write("\"");
-		out.write(" end_link=\"");
-		out.write(route.getEndLinkId().toString());
-		out.write("\"");
-		out.write(" trav_time=\"");
-		out.write(Time.writeTime(route.getTravelTime()));
-		out.write("\"");
-		out.write(" distance=\"");
-		out.write(Double.toString(route.getDistance()));
-		out.write("\"");
+	private static void startRoute(final Route route, final BufferedWriter out, final XmlValueWriter xml) throws IOException {
+		out.write("\t\t\t\t<route");
+		xml.writeAttribute("type", route.getRouteType());
+		xml.writeAttribute("start_link", route.getStartLinkId().toString());
+		xml.writeAttribute("end_link", route.getEndLinkId().toString());
+		xml.writeTimeAttribute("trav_time", route.getTravelTime());
+		xml.writeAttribute("distance", route.getDistance());
 		out.write(">");
-		String rd = route.getRouteDescription();
-		if (rd != null) {
-			out.write(rd);
+		if (route.getClass() == LinkNetworkRouteImpl.class) {
+			// the same as its route description, without building it first
+			NetworkRoute networkRoute = (NetworkRoute) route;
+			out.write(networkRoute.getStartLinkId().toString());
+			List<Id<Link>> linkIds = networkRoute.getLinkIds();
+			for (int i = 0, n = linkIds.size(); i < n; i++) {
+				out.write(' ');
+				out.write(linkIds.get(i).toString());
+			}
+			if (!networkRoute.getEndLinkId().equals(networkRoute.getStartLinkId()) || linkIds.size() > 0) {
+				out.write(' ');
+				out.write(networkRoute.getEndLinkId().toString());
+			}
+		} else {
+			String rd = route.getRouteDescription();
+			if (rd != null) {
+				out.write(rd);
+			}
 		}
 	}
 
@@ -39,6 +39,14 @@ import org.matsim.core.utils.geometry.CoordinateTransformation;
 import org.matsim.core.utils.geometry.transformations.IdentityTransformation;
 import org.matsim.utils.objectattributes.ObjectAttributes;
 
+/**
+ * Reads a population file and runs the added {@link PersonAlgorithm}s on every person instead of keeping the persons
+ * in memory.
+ * <p></p>
+ * Files in the <code>population_v5</code> format are parsed in parallel if more than one thread is configured in the
+ * global config group.  The algorithms are nevertheless run by the calling thread, one person after the other and in
+ * the order of the file.
+ */
 public final class StreamingPopulationReader implements MatsimReader {
 	private static final Logger log = Logger.getLogger(StreamingPopulationReader.class);
 	
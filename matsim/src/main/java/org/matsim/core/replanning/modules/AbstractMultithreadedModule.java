@@ -29,8 +29,12 @@ import org.matsim.core.replanning.ReplanningContext;
 import org.matsim.core.utils.misc.Counter;
 
 import java.lang.Thread.UncaughtExceptionHandler;
+import java.util.ArrayList;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.RecursiveAction;
 import java.util.concurrent.atomic.AtomicReference;
 
 /**
@@ -50,6 +54,12 @@ import java.util.concurrent.atomic.AtomicReference;
  * "fast threads"), it helps building reproducible runs.  Additionally, as the threads are only
  * started after all to-be-handled plans are added, we can use unsynchronized data structures.
  * <p/>
+ * With {@link GlobalConfigGroup#isUsingReplanningWorkStealing()}, <code>finishReplanning()</code> instead splits
+ * the plans into batches which are run on a thread pool shared by all modules and iterations.  Threads which are
+ * done with their batches take over batches of the others, so a few slow plans no longer delay the whole module.
+ * Each running batch uses a plan algorithm instance of its own; the instances are created on demand and re-used
+ * for later batches.
+ * <p/>
  * Design comments/questions:<ul>
  * <li> As a consequence of the design, the instances that getPlanAlgoInstance() returns, need to be thread-safe.  kai, dec'12
  * For an example with discussions, see {@link tutorial.programming.multiThreadedPlanStrategy.RunWithMultithreadedModule}
@@ -59,6 +69,14 @@ import java.util.concurrent.atomic.AtomicReference;
  */
 abstract public class AbstractMultithreadedModule implements PlanStrategyModule {
 	private final int numOfThreads;
+	private final boolean usingWorkStealing;
+
+	/** the number of batches per thread the plans are split into at least if work stealing is used */
+	private static final int BATCHES_PER_THREAD = 8;
+	private static final int MAX_BATCH_SIZE = 64;
+
+	private List<Plan> plansForPool = null;
+	private final Queue<PlanAlgorithm> idlePoolAlgos = new ConcurrentLinkedQueue<>();
 
 	private PlanAlgoThread[] algothreads = null;
 	private Thread[] threads = null;
@@ -83,11 +101,27 @@ abstract public class AbstractMultithreadedModule implements PlanStrategyModule
 	abstract public PlanAlgorithm getPlanAlgoInstance();
 
 	public AbstractMultithreadedModule(GlobalConfigGroup globalConfigGroup) {
-		this.numOfThreads = globalConfigGroup.getNumberOfThreads();
+		this(globalConfigGroup.getNumberOfThreads(), globalConfigGroup.isUsingReplanningWorkStealing());
 	}
 
 	public AbstractMultithreadedModule(final int numOfThreads) {
+		this(numOfThreads, false);
+	}
+
+	public AbstractMultithreadedModule(final int numOfThreads, final boolean usingWorkStealing) {
 		this.numOfThreads = numOfThreads;
+		this.usingWorkStealing = usingWorkStealing;
+	}
+
+	/**
+	 * Only used with work stealing.  Return <code>true</code> if the instances returned by getPlanAlgoInstance() may
+	 * also be used in later iterations, which saves creating them (and, e.g., their routers) anew for every iteration.
+	 * This is not the case if they depend on the replanning context or draw random numbers at construction, or if they
+	 * keep state derived from the travel times, e.g. routers using
+	 * {@link org.matsim.core.router.ContractionHierarchies}, whose arc weights are only computed once per router.
+	 */
+	protected boolean isReusingPlanAlgoInstances() {
+		return false;
 	}
 	
 	protected void beforePrepareReplanningHook(@SuppressWarnings("unused") ReplanningContext replanningContextTmp) {
@@ -105,6 +139,13 @@ abstract public class AbstractMultithreadedModule implements PlanStrategyModule
 		if (this.numOfThreads == 0) {
 			// it seems, no threads are desired :(
 			this.directAlgo = getPlanAlgoInstance();
+		} else if (this.usingWorkStealing) {
+			this.hadException.set(null);
+			this.plansForPool = new ArrayList<>();
+			this.name = this.getClass().getSimpleName();
+			if (!isReusingPlanAlgoInstances()) {
+				this.idlePoolAlgos.clear();
+			}
 		} else {
 			initThreads();
 		}
@@ -117,7 +158,9 @@ abstract public class AbstractMultithreadedModule implements PlanStrategyModule
 
 	@Override
 	public final void handlePlan(final Plan plan) {
-		if (this.directAlgo == null) {
+		if (this.plansForPool != null) {
+			this.plansForPool.add(plan);
+		} else if (this.directAlgo == null) {
 			this.algothreads[this.count % this.numOfThreads].addPlanToThread(plan);
 			this.count++;
 		} else {
@@ -136,7 +179,9 @@ abstract public class AbstractMultithreadedModule implements PlanStrategyModule
 	public final void finishReplanning() {
 		this.beforeFinishReplanningHook();
 		
-		if (this.directAlgo == null) {
+		if (this.plansForPool != null) {
+			runPlansInPool();
+		} else if (this.directAlgo == null) {
 			// only try to start threads if we did not directly work on all the plans
 			log.info("[" + this.name + "] starting " + this.threads.length + " threads, handling " + this.count + " plans");
 
@@ -160,6 +205,7 @@ abstract public class AbstractMultithreadedModule implements PlanStrategyModule
 			}
 		}
 		// reset
+		this.plansForPool = null;
 		this.algothreads = null;
 		this.threads = null;
 		this.replanningContext = null;
@@ -168,6 +214,35 @@ abstract public class AbstractMultithreadedModule implements PlanStrategyModule
 		this.afterFinishReplanningHook();
 	}
 
+	private void runPlansInPool() {
+		log.info("[" + this.name + "] handling " + this.plansForPool.size() + " plans on a pool of " + this.numOfThreads + " threads");
+		Counter counter = new Counter("[" + this.name + "] handled plan # ");
+		int batchSize = Math.max(1, Math.min(MAX_BATCH_SIZE, this.plansForPool.size() / (BATCHES_PER_THREAD * this.numOfThreads)));
+		try {
+			ReplanningWorkerPool.getPool(this.numOfThreads).invoke(new PlanBatch(this.plansForPool, 0, this.plansForPool.size(), batchSize, counter));
+			counter.printCounter();
+		} catch (RuntimeException | Error e) {
+			log.error("[" + this.name + "] a thread died with exception.", e);
+			this.hadException.set(e);
+		}
+		log.info("[" + this.name + "] all " + this.plansForPool.size() + " plans handled.");
+		Throwable throwable = this.hadException.get();
+		if (throwable != null) {
+			throw new RuntimeException("Some threads crashed, thus not all plans may have been handled.", throwable);
+		}
+	}
+
+	private PlanAlgorithm takePoolAlgo() {
+		PlanAlgorithm algo = this.idlePoolAlgos.poll();
+		if (algo == null) {
+			synchronized (this) {
+				// implementations of getPlanAlgoInstance() are not required to be thread-safe
+				algo = getPlanAlgoInstance();
+			}
+		}
+		return algo;
+	}
+
 	private void initThreads() {
 		if (this.threads != null) {
 			throw new RuntimeException("threads are already initialized");
@@ -213,6 +288,44 @@ abstract public class AbstractMultithreadedModule implements PlanStrategyModule
 
 	}
 
+	/**
+	 * A range of plans which is split into two halves as long as it is larger than the batch size, so idle threads of
+	 * the pool can steal one of them.
+	 */
+	private final class PlanBatch extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+
+		private final List<Plan> plans;
+		private final int from;
+		private final int to;
+		private final int batchSize;
+		private final Counter counter;
+
+		PlanBatch(final List<Plan> plans, final int from, final int to, final int batchSize, final Counter counter) {
+			this.plans = plans;
+			this.from = from;
+			this.to = to;
+			this.batchSize = batchSize;
+			this.counter = counter;
+		}
+
+		@Override
+		protected void compute() {
+			if (this.to - this.from > this.batchSize) {
+				int middle = (this.from + this.to) >>> 1;
+				invokeAll(new PlanBatch(this.plans, this.from, middle, this.batchSize, this.counter),
+						new PlanBatch(this.plans, middle, this.to, this.batchSize, this.counter));
+				return;
+			}
+			PlanAlgorithm algo = takePoolAlgo();
+			for (int i = this.from; i < this.to; i++) {
+				algo.run(this.plans.get(i));
+				this.counter.incCounter();
+			}
+			idlePoolAlgos.add(algo);
+		}
+	}
+
 	private final static class PlanAlgoThread implements Runnable {
 
 		private final PlanAlgorithm planAlgo;
@@ -0,0 +1,65 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * ReplanningWorkerPool.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2016 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.replanning.modules;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+
+/**
+ * The long-lived thread pools used by {@link AbstractMultithreadedModule} if work stealing is switched on.  There
+ * is one pool per number of threads, which is shared by all modules and kept for the remaining lifetime of the JVM,
+ * so the threads are not created anew in every module and iteration.  The threads are daemon threads.
+ */
+/*package*/ final class ReplanningWorkerPool {
+
+	private static final Map<Integer, ForkJoinPool> pools = new HashMap<>();
+
+	private ReplanningWorkerPool() {
+		// static methods only
+	}
+
+	/*package*/ static synchronized ForkJoinPool getPool(final int numOfThreads) {
+		ForkJoinPool pool = pools.get(numOfThreads);
+		if (pool == null) {
+			pool = new ForkJoinPool(numOfThreads, new WorkerFactory(numOfThreads), null, false);
+			pools.put(numOfThreads, pool);
+		}
+		return pool;
+	}
+
+	private static final class WorkerFactory implements ForkJoinPool.ForkJoinWorkerThreadFactory {
+		private final int numOfThreads;
+
+		WorkerFactory(final int numOfThreads) {
+			this.numOfThreads = numOfThreads;
+		}
+
+		@Override
+		public ForkJoinWorkerThread newThread(final ForkJoinPool pool) {
+			ForkJoinWorkerThread thread = new ForkJoinWorkerThread(pool) {};
+			thread.setName("ReplanningWorker-" + this.numOfThreads + "." + thread.getPoolIndex());
+			return thread;
+		}
+	}
+
+}
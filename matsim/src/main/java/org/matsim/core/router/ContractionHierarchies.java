@@ -0,0 +1,309 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * ContractionHierarchies.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2016 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.router;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.log4j.Logger;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Node;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.core.router.util.ArrayRoutingNetworkNode;
+import org.matsim.core.router.util.LeastCostPathCalculator;
+import org.matsim.core.router.util.RoutingNetworkNode;
+import org.matsim.core.router.util.TravelDisutility;
+import org.matsim.core.router.util.TravelTime;
+import org.matsim.vehicles.Vehicle;
+
+/**
+ * <p>
+ * Least cost path router using a {@link ContractionHierarchy}. The arc weights are computed from the travel
+ * disutility per time bin, when the first path departing in that bin is requested ("customization"). A query
+ * is a bidirectional Dijkstra search in the upward graphs of the hierarchy, using the weights of the bin of the
+ * departure time for the whole path.
+ * </p>
+ * <p>
+ * The result is thus an approximation of the time-dependent least cost path found by {@link Dijkstra}: it is the
+ * least cost path if the disutilities do not change during the trip, and the same path as found by Dijkstra for
+ * time-independent disutilities. The travel time and cost of the returned path are evaluated time-dependently
+ * along the path, as Dijkstra does.
+ * </p>
+ * <p>
+ * The customizations are shared by all requests, so the disutility is evaluated without person and vehicle
+ * when computing them, and person-dependent disutilities are not supported: the randomizing one chooses the routes
+ * without randomization then, and a disutility which requires a person is rejected at the first customization.
+ * </p>
+ * <p>
+ * A router keeps its customizations, so a new router should be created whenever the travel times change, e.g.
+ * per iteration, which is what the trip routers do anyway. Not thread-safe.
+ * </p>
+ *
+ * @see ContractionHierarchy
+ * @see org.matsim.core.router.util.ContractionHierarchiesFactory
+ */
+public class ContractionHierarchies implements LeastCostPathCalculator {
+
+	private static final Logger log = Logger.getLogger(ContractionHierarchies.class);
+
+	/** marks arcs without weight, i.e. shortcuts not (yet) customized */
+	private static final int NO_VIA = Integer.MIN_VALUE;
+
+	private final ContractionHierarchy hierarchy;
+	private final TravelDisutility travelDisutility;
+	private final TravelTime travelTime;
+	private final double binSize;
+
+	private Customization[] customizations = new Customization[0];
+
+	private int iteration = 0;
+	private final int[] forwardIteration;
+	private final double[] forwardCost;
+	private final int[] forwardArc;
+	private final int[] backwardIteration;
+	private final double[] backwardCost;
+	private final int[] backwardArc;
+	private final NodeHeap forwardHeap = new NodeHeap();
+	private final NodeHeap backwardHeap = new NodeHeap();
+	private int[] stack = new int[64];
+
+	/**
+	 * @param customizationBinSize the length of the time bins for which the arc weights are computed, in seconds
+	 */
+	public ContractionHierarchies(final ContractionHierarchy hierarchy, final TravelDisutility travelDisutility,
+			final TravelTime travelTime, final double customizationBinSize) {
+		this.hierarchy = hierarchy;
+		this.travelDisutility = travelDisutility;
+		this.travelTime = travelTime;
+		this.binSize = customizationBinSize;
+		int numberOfNodes = hierarchy.nodes.length;
+		this.forwardIteration = new int[numberOfNodes];
+		this.forwardCost = new double[numberOfNodes];
+		this.forwardArc = new int[numberOfNodes];
+		this.backwardIteration = new int[numberOfNodes];
+		this.backwardCost = new double[numberOfNodes];
+		this.backwardArc = new int[numberOfNodes];
+	}
+
+	@Override
+	public Path calcLeastCostPath(final Node fromNode, final Node toNode, final double starttime, final Person person, final Vehicle vehicle) {
+		int from = index(fromNode);
+		int to = index(toNode);
+		Customization customization = getCustomization(starttime);
+
+		this.iteration++;
+		if (this.iteration == Integer.MAX_VALUE) {
+			Arrays.fill(this.forwardIteration, 0);
+			Arrays.fill(this.backwardIteration, 0);
+			this.iteration = 1;
+		}
+		this.forwardHeap.clear();
+		this.backwardHeap.clear();
+		visit(this.forwardIteration, this.forwardCost, this.forwardArc, this.forwardHeap, from, 0.0, -1);
+		visit(this.backwardIteration, this.backwardCost, this.backwardArc, this.backwardHeap, to, 0.0, -1);
+
+		double best = from == to ? 0.0 : Double.POSITIVE_INFINITY;
+		int meetingNode = from == to ? from : -1;
+		int[] rank = this.hierarchy.rank;
+		while (true) {
+			double forwardMin = this.forwardHeap.isEmpty() ? Double.POSITIVE_INFINITY : this.forwardHeap.peekCost();
+			double backwardMin = this.backwardHeap.isEmpty() ? Double.POSITIVE_INFINITY : this.backwardHeap.peekCost();
+			if (Math.min(forwardMin, backwardMin) >= best) {
+				break;
+			}
+			boolean forward = forwardMin <= backwardMin;
+			NodeHeap heap = forward ? this.forwardHeap : this.backwardHeap;
+			double cost = heap.peekCost();
+			int node = heap.poll();
+			double[] costs = forward ? this.forwardCost : this.backwardCost;
+			if (cost > costs[node]) {
+				continue; // outdated heap entry
+			}
+			int[] otherIteration = forward ? this.backwardIteration : this.forwardIteration;
+			double[] otherCosts = forward ? this.backwardCost : this.forwardCost;
+			if (otherIteration[node] == this.iteration && cost + otherCosts[node] < best) {
+				best = cost + otherCosts[node];
+				meetingNode = node;
+			}
+			int[] start = forward ? this.hierarchy.upStart : this.hierarchy.downStart;
+			int[] arcs = forward ? this.hierarchy.upArcs : this.hierarchy.downArcs;
+			for (int i = start[node]; i < start[node + 1]; i++) {
+				int arc = arcs[i];
+				double weight = customization.weights[arc];
+				if (weight == Double.POSITIVE_INFINITY) {
+					continue;
+				}
+				int neighbor = forward ? this.hierarchy.arcTo[arc] : this.hierarchy.arcFrom[arc];
+				assert rank[neighbor] > rank[node];
+				if (forward) {
+					visit(this.forwardIteration, this.forwardCost, this.forwardArc, this.forwardHeap, neighbor, cost + weight, arc);
+				} else {
+					visit(this.backwardIteration, this.backwardCost, this.backwardArc, this.backwardHeap, neighbor, cost + weight, arc);
+				}
+			}
+		}
+
+		if (meetingNode < 0) {
+			log.warn("No route was found from node " + fromNode.getId() + " to node " + toNode.getId());
+			return null;
+		}
+		return constructPath(from, meetingNode, starttime, person, vehicle, customization);
+	}
+
+	private void visit(final int[] iterations, final double[] costs, final int[] arcs, final NodeHeap heap,
+			final int node, final double cost, final int arc) {
+		if (iterations[node] != this.iteration || cost < costs[node]) {
+			iterations[node] = this.iteration;
+			costs[node] = cost;
+			arcs[node] = arc;
+			heap.add(node, cost);
+		}
+	}
+
+	private int index(final Node node) {
+		RoutingNetworkNode routingNode = this.hierarchy.routingNetwork.getNodes().get(node.getId());
+		if (routingNode == null) {
+			throw new IllegalArgumentException("The node " + node.getId() + " is not part of the network used by "
+					+ getClass().getSimpleName() + ". Aborting!");
+		}
+		return ((ArrayRoutingNetworkNode) routingNode).getArrayIndex();
+	}
+
+	private Path constructPath(final int from, final int meetingNode, final double starttime, final Person person,
+			final Vehicle vehicle, final Customization customization) {
+		// the arcs from the start node up to the meeting node, collected backwards, then the ones down to the end node
+		List<Integer> upArcs = new ArrayList<>();
+		for (int node = meetingNode; this.forwardArc[node] >= 0; node = this.hierarchy.arcFrom[this.forwardArc[node]]) {
+			upArcs.add(this.forwardArc[node]);
+		}
+		List<Link> links = new ArrayList<>();
+		for (int i = upArcs.size() - 1; i >= 0; i--) {
+			unpack(upArcs.get(i), customization, links);
+		}
+		for (int node = meetingNode; this.backwardArc[node] >= 0; node = this.hierarchy.arcTo[this.backwardArc[node]]) {
+			unpack(this.backwardArc[node], customization, links);
+		}
+
+		List<Node> nodes = new ArrayList<>(links.size() + 1);
+		nodes.add(this.hierarchy.nodes[from].getNode());
+		double time = starttime;
+		double cost = 0.0;
+		for (Link link : links) {
+			nodes.add(link.getToNode());
+			cost += this.travelDisutility.getLinkTravelDisutility(link, time, person, vehicle);
+			time += this.travelTime.getLinkTravelTime(link, time, person, vehicle);
+		}
+		return new Path(nodes, links, time - starttime, cost);
+	}
+
+	/**
+	 * Appends the links represented by the arc to the list.
+	 */
+	private void unpack(final int arc, final Customization customization, final List<Link> links) {
+		int size = 0;
+		this.stack[size++] = arc;
+		while (size > 0) {
+			int current = this.stack[--size];
+			int via = customization.via[current];
+			if (via >= 0) {
+				if (size + 2 > this.stack.length) {
+					this.stack = Arrays.copyOf(this.stack, 2 * this.stack.length);
+				}
+				// the second half is handled after the first one
+				this.stack[size++] = this.hierarchy.triangles[3 * via + 1];
+				this.stack[size++] = this.hierarchy.triangles[3 * via];
+			} else {
+				links.add(this.hierarchy.links[-via - 1]);
+			}
+		}
+	}
+
+	private Customization getCustomization(final double time) {
+		int bin = time > 0 ? (int) (time / this.binSize) : 0;
+		if (bin >= this.customizations.length) {
+			this.customizations = Arrays.copyOf(this.customizations, bin + 1);
+		}
+		Customization customization = this.customizations[bin];
+		if (customization == null) {
+			customization = customize(bin * this.binSize);
+			this.customizations[bin] = customization;
+		}
+		return customization;
+	}
+
+	/**
+	 * Computes the weights of all arcs for the given time, first the ones of the links, then the ones of the
+	 * shortcuts in the order of the triangles.
+	 */
+	private Customization customize(final double time) {
+		ContractionHierarchy ch = this.hierarchy;
+		Customization customization = new Customization(ch.numberOfArcs);
+		double[] weights = customization.weights;
+		int[] via = customization.via;
+		for (int arc = 0; arc < ch.numberOfArcs; arc++) {
+			double weight = Double.POSITIVE_INFINITY;
+			int best = NO_VIA;
+			for (int i = ch.arcLinksStart[arc]; i < ch.arcLinksStart[arc + 1]; i++) {
+				int link = ch.arcLinks[i];
+				double disutility = getLinkTravelDisutility(ch.links[link], time);
+				if (disutility < weight) {
+					weight = disutility;
+					best = -link - 1;
+				}
+			}
+			weights[arc] = weight;
+			via[arc] = best;
+		}
+		int[] triangles = ch.triangles;
+		for (int t = 0; t < ch.numberOfTriangles; t++) {
+			double weight = weights[triangles[3 * t]] + weights[triangles[3 * t + 1]];
+			int upper = triangles[3 * t + 2];
+			if (weight < weights[upper]) {
+				weights[upper] = weight;
+				via[upper] = t;
+			}
+		}
+		return customization;
+	}
+
+	private double getLinkTravelDisutility(final Link link, final double time) {
+		try {
+			return this.travelDisutility.getLinkTravelDisutility(link, time, null, null);
+		} catch (RuntimeException e) {
+			throw new RuntimeException(getClass().getSimpleName() + " only supports travel disutilities which do not depend"
+					+ " on the person or vehicle, but " + this.travelDisutility.getClass().getName() + " failed without them."
+					+ " Use another routing algorithm for it.", e);
+		}
+	}
+
+	private static final class Customization {
+		final double[] weights;
+		/** the triangle giving the weight of each arc, or -(link index + 1) if it is a link */
+		final int[] via;
+
+		Customization(final int numberOfArcs) {
+			this.weights = new double[numberOfArcs];
+			this.via = new int[numberOfArcs];
+		}
+	}
+
+}
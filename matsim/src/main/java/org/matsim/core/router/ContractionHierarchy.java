@@ -0,0 +1,443 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * ContractionHierarchy.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2016 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.router;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+import org.apache.log4j.Logger;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.core.router.util.ArrayRoutingNetwork;
+import org.matsim.core.router.util.ArrayRoutingNetworkLink;
+import org.matsim.core.router.util.ArrayRoutingNetworkNode;
+import org.matsim.core.router.util.RoutingNetworkLink;
+import org.matsim.core.router.util.RoutingNetworkNode;
+
+/**
+ * <p>
+ * The metric-independent part of a contraction hierarchy over an {@link ArrayRoutingNetwork}, i.e. a node order
+ * and the arcs (links and shortcuts) of the contracted network. It is built once per network and shared by all
+ * {@link ContractionHierarchies} routers, which compute the weights of the arcs from their travel disutility
+ * ("customization").
+ * </p>
+ * <p>
+ * Nodes are contracted without witness searches: when a node is contracted, every pair of its remaining in- and
+ * out-neighbors is connected. The hierarchy is thus valid for every metric, at the price of more shortcuts than a
+ * hierarchy built for one fixed metric. The order is chosen greedily by the number of shortcuts a node adds.
+ * </p>
+ * <p>
+ * The customization visits the triangles <code>u-&gt;v-&gt;w</code> of the hierarchy, where <code>v</code> was
+ * contracted before <code>u</code> and <code>w</code>, in the order in which the nodes were contracted. They
+ * are stored in that order, so a customization is a linear pass over the links and the triangles.
+ * </p>
+ *
+ * @see ContractionHierarchies
+ */
+public final class ContractionHierarchy {
+
+	private static final Logger log = Logger.getLogger(ContractionHierarchy.class);
+
+	/*package*/ final ArrayRoutingNetwork routingNetwork;
+	/*package*/ final RoutingNetworkNode[] nodes;
+	/*package*/ final Link[] links;
+	/** the position of each node in the contraction order */
+	/*package*/ final int[] rank;
+
+	/*package*/ final int numberOfArcs;
+	private final int numberOfShortcuts;
+	/*package*/ final int[] arcFrom;
+	/*package*/ final int[] arcTo;
+	/** the links represented by each arc, usually one, none for shortcuts, more for parallel links */
+	/*package*/ final int[] arcLinksStart;
+	/*package*/ final int[] arcLinks;
+
+	/** the arcs leaving each node towards nodes contracted later */
+	/*package*/ final int[] upStart;
+	/*package*/ final int[] upArcs;
+	/** the arcs entering each node from nodes contracted later */
+	/*package*/ final int[] downStart;
+	/*package*/ final int[] downArcs;
+
+	/** triples of arcs (u-&gt;v, v-&gt;w, u-&gt;w), in the order of the contraction of v */
+	/*package*/ final int[] triangles;
+	/*package*/ final int numberOfTriangles;
+
+	private ContractionHierarchy(final Builder builder) {
+		this.routingNetwork = builder.routingNetwork;
+		this.nodes = builder.nodes;
+		this.links = builder.links;
+		this.rank = builder.rank;
+		this.numberOfArcs = builder.numberOfArcs;
+		this.arcFrom = Arrays.copyOf(builder.arcFrom, builder.numberOfArcs);
+		this.arcTo = Arrays.copyOf(builder.arcTo, builder.numberOfArcs);
+		this.numberOfTriangles = builder.numberOfTriangles;
+		this.triangles = Arrays.copyOf(builder.triangles, 3 * builder.numberOfTriangles);
+
+		this.arcLinksStart = new int[this.numberOfArcs + 1];
+		int[] arcLinks = new int[this.links.length];
+		int n = 0;
+		int shortcuts = 0;
+		for (int a = 0; a < this.numberOfArcs; a++) {
+			this.arcLinksStart[a] = n;
+			IntList linksOfArc = builder.arcLinks.get(a);
+			if (linksOfArc == null) {
+				shortcuts++;
+			} else {
+				for (int i = 0; i < linksOfArc.size; i++) {
+					arcLinks[n++] = linksOfArc.values[i];
+				}
+			}
+		}
+		this.arcLinksStart[this.numberOfArcs] = n;
+		this.numberOfShortcuts = shortcuts;
+		this.arcLinks = Arrays.copyOf(arcLinks, n);
+
+		int numberOfNodes = this.nodes.length;
+		this.upStart = new int[numberOfNodes + 1];
+		this.downStart = new int[numberOfNodes + 1];
+		for (int a = 0; a < this.numberOfArcs; a++) {
+			if (this.rank[this.arcTo[a]] > this.rank[this.arcFrom[a]]) {
+				this.upStart[this.arcFrom[a] + 1]++;
+			} else {
+				this.downStart[this.arcTo[a] + 1]++;
+			}
+		}
+		for (int i = 0; i < numberOfNodes; i++) {
+			this.upStart[i + 1] += this.upStart[i];
+			this.downStart[i + 1] += this.downStart[i];
+		}
+		this.upArcs = new int[this.upStart[numberOfNodes]];
+		this.downArcs = new int[this.downStart[numberOfNodes]];
+		int[] upFill = Arrays.copyOf(this.upStart, numberOfNodes);
+		int[] downFill = Arrays.copyOf(this.downStart, numberOfNodes);
+		for (int a = 0; a < this.numberOfArcs; a++) {
+			if (this.rank[this.arcTo[a]] > this.rank[this.arcFrom[a]]) {
+				this.upArcs[upFill[this.arcFrom[a]]++] = a;
+			} else {
+				this.downArcs[downFill[this.arcTo[a]]++] = a;
+			}
+		}
+	}
+
+	/**
+	 * Contracts the given network. This may take a while for large networks.
+	 */
+	public static ContractionHierarchy create(final ArrayRoutingNetwork routingNetwork) {
+		long start = System.currentTimeMillis();
+		Builder builder = new Builder(routingNetwork);
+		builder.contract();
+		ContractionHierarchy hierarchy = new ContractionHierarchy(builder);
+		log.info("contraction hierarchy with " + hierarchy.nodes.length + " nodes, " + hierarchy.links.length + " links, "
+				+ hierarchy.numberOfShortcuts + " shortcuts and " + hierarchy.numberOfTriangles
+				+ " triangles built in " + (System.currentTimeMillis() - start) + " ms.");
+		return hierarchy;
+	}
+
+	public int getNumberOfShortcuts() {
+		return this.numberOfShortcuts;
+	}
+
+	/**
+	 * Contracts the nodes and collects the arcs and triangles.
+	 */
+	private static final class Builder {
+
+		private final ArrayRoutingNetwork routingNetwork;
+		private final RoutingNetworkNode[] nodes;
+		private final Link[] links;
+		private final int[] rank;
+
+		private int numberOfArcs = 0;
+		private int[] arcFrom;
+		private int[] arcTo;
+		private final Map<Integer, IntList> arcLinks = new HashMap<>();
+		private final ArcIndex arcIndex = new ArcIndex();
+		/** the arcs leaving and entering each node, including the ones to contracted nodes */
+		private final IntList[] outArcs;
+		private final IntList[] inArcs;
+
+		private int numberOfTriangles = 0;
+		private int[] triangles = new int[3 * 1024];
+
+		private final int[] contractedNeighbors;
+
+		Builder(final ArrayRoutingNetwork routingNetwork) {
+			this.routingNetwork = routingNetwork;
+			int numberOfNodes = routingNetwork.getNodes().size();
+			this.nodes = new RoutingNetworkNode[numberOfNodes];
+			int numberOfLinks = 0;
+			for (RoutingNetworkNode node : routingNetwork.getNodes().values()) {
+				this.nodes[((ArrayRoutingNetworkNode) node).getArrayIndex()] = node;
+				numberOfLinks += node.getOutLinksArray().length;
+			}
+			this.links = new Link[numberOfLinks];
+			this.rank = new int[numberOfNodes];
+			Arrays.fill(this.rank, -1);
+			this.contractedNeighbors = new int[numberOfNodes];
+			this.outArcs = new IntList[numberOfNodes];
+			this.inArcs = new IntList[numberOfNodes];
+			for (int i = 0; i < numberOfNodes; i++) {
+				this.outArcs[i] = new IntList();
+				this.inArcs[i] = new IntList();
+			}
+			this.arcFrom = new int[2 * numberOfLinks + 16];
+			this.arcTo = new int[2 * numberOfLinks + 16];
+
+			for (RoutingNetworkNode node : this.nodes) {
+				for (RoutingNetworkLink link : node.getOutLinksArray()) {
+					int linkIndex = ((ArrayRoutingNetworkLink) link).getArrayIndex();
+					this.links[linkIndex] = link.getLink();
+					int from = ((ArrayRoutingNetworkNode) link.getFromNode()).getArrayIndex();
+					int to = ((ArrayRoutingNetworkNode) link.getToNode()).getArrayIndex();
+					if (from == to) {
+						// loops are never part of a least cost path
+						continue;
+					}
+					int arc = arc(from, to);
+					IntList linksOfArc = this.arcLinks.get(arc);
+					if (linksOfArc == null) {
+						linksOfArc = new IntList();
+						this.arcLinks.put(arc, linksOfArc);
+					}
+					linksOfArc.add(linkIndex);
+				}
+			}
+		}
+
+		void contract() {
+			int numberOfNodes = this.nodes.length;
+			int[] priorities = new int[numberOfNodes];
+			PriorityQueue<Long> queue = new PriorityQueue<>(Math.max(numberOfNodes, 1));
+			for (int v = 0; v < numberOfNodes; v++) {
+				priorities[v] = priority(v);
+				queue.add(entry(priorities[v], v));
+			}
+			int nextRank = 0;
+			while (!queue.isEmpty()) {
+				long entry = queue.poll();
+				int v = (int) entry;
+				int p = (int) (entry >>> 32) - (1 << 30);
+				if (this.rank[v] >= 0 || p != priorities[v]) {
+					continue; // outdated entry
+				}
+				// lazy update: the priority may have changed since contracting other nodes
+				int current = priority(v);
+				if (current > p && !queue.isEmpty() && current > (int) (queue.peek() >>> 32) - (1 << 30)) {
+					priorities[v] = current;
+					queue.add(entry(current, v));
+					continue;
+				}
+				this.rank[v] = nextRank++;
+				IntList neighbors = contractNode(v);
+				for (int i = 0; i < neighbors.size; i++) {
+					int x = neighbors.values[i];
+					this.contractedNeighbors[x]++;
+					priorities[x] = priority(x);
+					queue.add(entry(priorities[x], x));
+				}
+			}
+		}
+
+		private static long entry(final int priority, final int node) {
+			return ((long) (priority + (1 << 30)) << 32) | node;
+		}
+
+		/**
+		 * The edge difference of the node, i.e. the number of new arcs minus the number of arcs removed from
+		 * the remaining network, plus the number of contracted neighbors to spread the contraction evenly.
+		 */
+		private int priority(final int v) {
+			IntList in = remainingNeighbors(this.inArcs[v], true);
+			IntList out = remainingNeighbors(this.outArcs[v], false);
+			int newArcs = 0;
+			for (int i = 0; i < in.size; i++) {
+				int u = in.values[i];
+				for (int j = 0; j < out.size; j++) {
+					int w = out.values[j];
+					if (u != w && this.arcIndex.get(u, w) < 0) {
+						newArcs++;
+					}
+				}
+			}
+			return newArcs - in.size - out.size + this.contractedNeighbors[v];
+		}
+
+		/**
+		 * Connects all remaining in-neighbors with all remaining out-neighbors of the node and records the triangles.
+		 *
+		 * @return the remaining neighbors of the node
+		 */
+		private IntList contractNode(final int v) {
+			IntList in = remainingNeighbors(this.inArcs[v], true);
+			IntList out = remainingNeighbors(this.outArcs[v], false);
+			for (int i = 0; i < in.size; i++) {
+				int u = in.values[i];
+				int uv = this.arcIndex.get(u, v);
+				for (int j = 0; j < out.size; j++) {
+					int w = out.values[j];
+					if (u != w) {
+						int vw = this.arcIndex.get(v, w);
+						addTriangle(uv, vw, arc(u, w));
+					}
+				}
+			}
+			IntList neighbors = new IntList();
+			for (int i = 0; i < in.size; i++) {
+				neighbors.add(in.values[i]);
+			}
+			for (int j = 0; j < out.size; j++) {
+				if (!in.contains(out.values[j])) {
+					neighbors.add(out.values[j]);
+				}
+			}
+			return neighbors;
+		}
+
+		/**
+		 * Also removes the arcs to contracted neighbors from the list, they are not needed for the contraction anymore.
+		 */
+		private IntList remainingNeighbors(final IntList arcs, final boolean incoming) {
+			IntList neighbors = new IntList();
+			int remaining = 0;
+			for (int i = 0; i < arcs.size; i++) {
+				int arc = arcs.values[i];
+				int neighbor = incoming ? this.arcFrom[arc] : this.arcTo[arc];
+				if (this.rank[neighbor] < 0) {
+					neighbors.add(neighbor);
+					arcs.values[remaining++] = arc;
+				}
+			}
+			arcs.size = remaining;
+			return neighbors;
+		}
+
+		private int arc(final int from, final int to) {
+			int arc = this.arcIndex.get(from, to);
+			if (arc < 0) {
+				arc = this.numberOfArcs++;
+				if (arc == this.arcFrom.length) {
+					this.arcFrom = Arrays.copyOf(this.arcFrom, 2 * arc);
+					this.arcTo = Arrays.copyOf(this.arcTo, 2 * arc);
+				}
+				this.arcFrom[arc] = from;
+				this.arcTo[arc] = to;
+				this.arcIndex.put(from, to, arc);
+				this.outArcs[from].add(arc);
+				this.inArcs[to].add(arc);
+			}
+			return arc;
+		}
+
+		private void addTriangle(final int uv, final int vw, final int uw) {
+			if (3 * this.numberOfTriangles == this.triangles.length) {
+				this.triangles = Arrays.copyOf(this.triangles, 2 * this.triangles.length);
+			}
+			int i = 3 * this.numberOfTriangles++;
+			this.triangles[i] = uv;
+			this.triangles[i + 1] = vw;
+			this.triangles[i + 2] = uw;
+		}
+	}
+
+	/**
+	 * The arcs by their end nodes, in an open addressing hash table to avoid boxing.
+	 */
+	private static final class ArcIndex {
+		private long[] keys = new long[1024];
+		private int[] arcs = new int[1024];
+		private int size = 0;
+
+		ArcIndex() {
+			Arrays.fill(this.keys, -1L);
+		}
+
+		int get(final int from, final int to) {
+			long key = key(from, to);
+			int mask = this.keys.length - 1;
+			for (int i = hash(key) & mask; this.keys[i] != -1L; i = (i + 1) & mask) {
+				if (this.keys[i] == key) {
+					return this.arcs[i];
+				}
+			}
+			return -1;
+		}
+
+		void put(final int from, final int to, final int arc) {
+			if (2 * (this.size + 1) > this.keys.length) {
+				long[] oldKeys = this.keys;
+				int[] oldArcs = this.arcs;
+				this.keys = new long[2 * oldKeys.length];
+				this.arcs = new int[2 * oldKeys.length];
+				Arrays.fill(this.keys, -1L);
+				for (int i = 0; i < oldKeys.length; i++) {
+					if (oldKeys[i] != -1L) {
+						insert(oldKeys[i], oldArcs[i]);
+					}
+				}
+			}
+			insert(key(from, to), arc);
+			this.size++;
+		}
+
+		private void insert(final long key, final int arc) {
+			int mask = this.keys.length - 1;
+			int i = hash(key) & mask;
+			while (this.keys[i] != -1L && this.keys[i] != key) {
+				i = (i + 1) & mask;
+			}
+			this.keys[i] = key;
+			this.arcs[i] = arc;
+		}
+
+		private static long key(final int from, final int to) {
+			return ((long) from << 32) | (to & 0xffffffffL);
+		}
+
+		private static int hash(final long key) {
+			long h = key * 0x9E3779B97F4A7C15L;
+			return (int) (h ^ (h >>> 32));
+		}
+	}
+
+	private static final class IntList {
+		int[] values = new int[4];
+		int size = 0;
+
+		void add(final int value) {
+			if (this.size == this.values.length) {
+				this.values = Arrays.copyOf(this.values, 2 * this.size);
+			}
+			this.values[this.size++] = value;
+		}
+
+		boolean contains(final int value) {
+			for (int i = 0; i < this.size; i++) {
+				if (this.values[i] == value) {
+					return true;
+				}
+			}
+			return false;
+		}
+	}
+
+}
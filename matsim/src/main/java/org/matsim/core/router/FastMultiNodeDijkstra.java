@@ -25,7 +25,8 @@ import java.util.Iterator;
 
 import org.matsim.api.core.v01.network.Node;
 import org.matsim.api.core.v01.population.Person;
-import org.matsim.core.router.priorityqueue.BinaryMinHeap;
+import org.matsim.core.router.priorityqueue.MinHeap;
+import org.matsim.core.router.priorityqueue.MinHeapType;
 import org.matsim.core.router.util.ArrayRoutingNetwork;
 import org.matsim.core.router.util.ArrayRoutingNetworkNode;
 import org.matsim.core.router.util.DijkstraNodeData;
@@ -51,7 +52,8 @@ public class FastMultiNodeDijkstra extends MultiNodeDijkstra {
 
 	/*package*/ final RoutingNetwork routingNetwork;
 	private final FastRouterDelegate fastRouter;
-	private BinaryMinHeap<ArrayRoutingNetworkNode> heap = null;
+	private final MinHeapType minHeapType;
+	private MinHeap<ArrayRoutingNetworkNode> heap = null;
 	private int maxSize = -1;
 	
 	/*
@@ -61,9 +63,16 @@ public class FastMultiNodeDijkstra extends MultiNodeDijkstra {
 	public FastMultiNodeDijkstra(final RoutingNetwork routingNetwork, final TravelDisutility costFunction, 
 			final TravelTime timeFunction, final PreProcessDijkstra preProcessData, 
 			final FastRouterDelegateFactory fastRouterFactory, boolean searchAllEndNodes) {
+		this(routingNetwork, costFunction, timeFunction, preProcessData, fastRouterFactory, searchAllEndNodes, MinHeapType.BINARY);
+	}
+
+	public FastMultiNodeDijkstra(final RoutingNetwork routingNetwork, final TravelDisutility costFunction, 
+			final TravelTime timeFunction, final PreProcessDijkstra preProcessData, 
+			final FastRouterDelegateFactory fastRouterFactory, boolean searchAllEndNodes, final MinHeapType minHeapType) {
 		super(routingNetwork, costFunction, timeFunction, preProcessData, searchAllEndNodes);
 		
 		this.routingNetwork = routingNetwork;
+		this.minHeapType = minHeapType;
 		this.fastRouter = fastRouterFactory.createFastRouterDelegate(this, new DijkstraNodeDataFactory(), routingNetwork);
 
 		this.nodeData.clear();
@@ -107,7 +116,7 @@ public class FastMultiNodeDijkstra extends MultiNodeDijkstra {
 			int size = this.routingNetwork.getNodes().size();
 			if (this.heap == null || this.maxSize != size) {
 				this.maxSize = size;
-				this.heap = new BinaryMinHeap<>(maxSize);
+				this.heap = this.minHeapType.createMinHeap(maxSize);
 				return this.heap;
 			} else {
 				this.heap.reset();
@@ -0,0 +1,138 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * LeastCostPathMatrix.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2016 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.router;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.matsim.api.core.v01.network.Node;
+import org.matsim.matrices.FloatMatrix;
+import org.matsim.matrices.Matrix;
+
+/**
+ * The travel times, distances and costs of the least cost paths between a list of origin and a list of destination
+ * nodes, as computed by {@link LeastCostPathMatrixCalculator}. The values are stored as floats in row-major arrays,
+ * i.e. the value for origin <code>i</code> and destination <code>j</code> is at <code>i * destinations + j</code>.
+ * Destinations which cannot be reached from an origin have infinite values.
+ */
+public final class LeastCostPathMatrix {
+
+	public enum Value { TRAVEL_TIME, DISTANCE, COST }
+
+	private final List<Node> origins;
+	private final List<Node> destinations;
+	/*package*/ final float[] travelTimes;
+	/*package*/ final float[] distances;
+	/*package*/ final float[] costs;
+
+	/*package*/ LeastCostPathMatrix(final List<Node> origins, final List<Node> destinations) {
+		this.origins = Collections.unmodifiableList(origins);
+		this.destinations = Collections.unmodifiableList(destinations);
+		int size = origins.size() * destinations.size();
+		this.travelTimes = new float[size];
+		this.distances = new float[size];
+		this.costs = new float[size];
+	}
+
+	public List<Node> getOrigins() {
+		return this.origins;
+	}
+
+	public List<Node> getDestinations() {
+		return this.destinations;
+	}
+
+	public float getTravelTime(final int origin, final int destination) {
+		return this.travelTimes[index(origin, destination)];
+	}
+
+	public float getDistance(final int origin, final int destination) {
+		return this.distances[index(origin, destination)];
+	}
+
+	public float getCost(final int origin, final int destination) {
+		return this.costs[index(origin, destination)];
+	}
+
+	/**
+	 * @return the values in row-major order; the array is not copied.
+	 */
+	public float[] getValues(final Value value) {
+		switch (value) {
+		case TRAVEL_TIME:
+			return this.travelTimes;
+		case DISTANCE:
+			return this.distances;
+		case COST:
+			return this.costs;
+		default:
+			throw new IllegalArgumentException("unknown value " + value);
+		}
+	}
+
+	/**
+	 * Copies the values into a {@link Matrix} with the node ids as location ids. Unreachable destinations get no
+	 * entry. Nodes appearing more than once in the origins or destinations get one entry per appearance.
+	 */
+	public Matrix toMatrix(final String id, final Value value) {
+		Matrix matrix = new Matrix(id, value.toString().toLowerCase() + " of least cost paths");
+		float[] values = getValues(value);
+		for (int i = 0; i < this.origins.size(); i++) {
+			String from = this.origins.get(i).getId().toString();
+			for (int j = 0; j < this.destinations.size(); j++) {
+				float v = values[index(i, j)];
+				if (v != Float.POSITIVE_INFINITY) {
+					matrix.createEntry(from, this.destinations.get(j).getId().toString(), v);
+				}
+			}
+		}
+		return matrix;
+	}
+
+	/**
+	 * Copies the values into a {@link FloatMatrix} with the node ids as zone ids. Unreachable destinations keep
+	 * their infinite values.
+	 *
+	 * @throws IllegalArgumentException if a node appears more than once in the origins or destinations
+	 */
+	public FloatMatrix toFloatMatrix(final String id, final Value value) {
+		return new FloatMatrix(id, value.toString().toLowerCase() + " of least cost paths", nodeIds(this.origins),
+				nodeIds(this.destinations), getValues(value).clone());
+	}
+
+	private static List<String> nodeIds(final List<Node> nodes) {
+		List<String> ids = new ArrayList<>(nodes.size());
+		for (Node node : nodes) {
+			ids.add(node.getId().toString());
+		}
+		return ids;
+	}
+
+	private int index(final int origin, final int destination) {
+		if (origin < 0 || origin >= this.origins.size() || destination < 0 || destination >= this.destinations.size()) {
+			throw new IndexOutOfBoundsException("origin " + origin + ", destination " + destination + ", size "
+					+ this.origins.size() + "x" + this.destinations.size());
+		}
+		return origin * this.destinations.size() + destination;
+	}
+
+}
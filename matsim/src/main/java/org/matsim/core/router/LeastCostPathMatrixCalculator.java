@@ -0,0 +1,408 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * LeastCostPathMatrixCalculator.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2016 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.router;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.apache.log4j.Logger;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.api.core.v01.network.Node;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.core.router.util.ArrayRoutingNetworkFactory;
+import org.matsim.core.router.util.ArrayRoutingNetworkNode;
+import org.matsim.core.router.util.RoutingNetworkNode;
+import org.matsim.core.router.util.TravelDisutility;
+import org.matsim.core.router.util.TravelTime;
+import org.matsim.vehicles.Vehicle;
+
+/**
+ * <p>
+ * Computes the least cost paths between many origins and many destinations at once, e.g. for accessibility
+ * computations or demand models, which would otherwise need one tree or one query per origin.
+ * </p>
+ * <p>
+ * The computation uses the bucket algorithm on a {@link ContractionHierarchy}: an upward search from every
+ * destination in the reversed hierarchy stores its costs in buckets at the nodes it reaches, then an upward search
+ * from every origin scans the buckets of the nodes it reaches. Each search only visits a small part of the network,
+ * and both phases are run on several threads. The travel disutility and travel time are only called by the
+ * calling thread, so they need not be thread-safe.
+ * </p>
+ * <p>
+ * As with {@link ContractionHierarchies}, the disutilities and travel times of all links are evaluated at the
+ * departure time, so the paths are the least cost paths if the travel times do not change during the trip. The
+ * travel time and distance are the ones of the least cost path, summed up with these travel times.
+ * </p>
+ *
+ * @see LeastCostPathMatrix
+ */
+public final class LeastCostPathMatrixCalculator {
+
+	private static final Logger log = Logger.getLogger(LeastCostPathMatrixCalculator.class);
+
+	private final ContractionHierarchy hierarchy;
+	private final TravelDisutility travelDisutility;
+	private final TravelTime travelTime;
+	private final int numberOfThreads;
+
+	/**
+	 * Contracts the network, which may take a while for large networks. Use the other constructor to share a
+	 * contraction hierarchy between several calculators.
+	 */
+	public LeastCostPathMatrixCalculator(final Network network, final TravelDisutility travelDisutility,
+			final TravelTime travelTime, final int numberOfThreads) {
+		this(ContractionHierarchy.create(new ArrayRoutingNetworkFactory(null).createRoutingNetwork(network)),
+				travelDisutility, travelTime, numberOfThreads);
+	}
+
+	public LeastCostPathMatrixCalculator(final ContractionHierarchy hierarchy, final TravelDisutility travelDisutility,
+			final TravelTime travelTime, final int numberOfThreads) {
+		if (numberOfThreads < 1) {
+			throw new IllegalArgumentException("Number of threads must be positive, but is " + numberOfThreads);
+		}
+		this.hierarchy = hierarchy;
+		this.travelDisutility = travelDisutility;
+		this.travelTime = travelTime;
+		this.numberOfThreads = numberOfThreads;
+	}
+
+	public LeastCostPathMatrix calcLeastCostPathMatrix(final List<Node> origins, final List<Node> destinations,
+			final double departureTime, final Person person, final Vehicle vehicle) {
+		long start = System.currentTimeMillis();
+		final int[] originIndices = indices(origins);
+		final int[] destinationIndices = indices(destinations);
+		final Customization customization = customize(departureTime, person, vehicle);
+		final LeastCostPathMatrix matrix = new LeastCostPathMatrix(new ArrayList<>(origins), new ArrayList<>(destinations));
+
+		final SearchSpace[] backwardSearchSpaces = new SearchSpace[destinations.size()];
+		runInParallel(destinations.size(), new Task() {
+			@Override
+			void run(final int destination, final Search search) {
+				search.search(destinationIndices[destination], false, customization);
+				backwardSearchSpaces[destination] = search.getSearchSpace();
+			}
+		});
+		final Buckets buckets = new Buckets(this.hierarchy.nodes.length, backwardSearchSpaces);
+		runInParallel(origins.size(), new Task() {
+			@Override
+			void run(final int origin, final Search search) {
+				search.search(originIndices[origin], true, customization);
+				search.scanBuckets(buckets, origin, matrix);
+			}
+		});
+
+		log.info(origins.size() + "x" + destinations.size() + " least cost path matrix computed in "
+				+ (System.currentTimeMillis() - start) + " ms.");
+		return matrix;
+	}
+
+	private int[] indices(final List<Node> nodes) {
+		int[] indices = new int[nodes.size()];
+		for (int i = 0; i < indices.length; i++) {
+			Node node = nodes.get(i);
+			RoutingNetworkNode routingNode = this.hierarchy.routingNetwork.getNodes().get(node.getId());
+			if (routingNode == null) {
+				throw new IllegalArgumentException("The node " + node.getId() + " is not part of the network used by "
+						+ getClass().getSimpleName() + ". Aborting!");
+			}
+			indices[i] = ((ArrayRoutingNetworkNode) routingNode).getArrayIndex();
+		}
+		return indices;
+	}
+
+	/**
+	 * Computes the weights, travel times and distances of all arcs, first the ones of the links, then the ones of
+	 * the shortcuts in the order of the triangles.
+	 */
+	private Customization customize(final double time, final Person person, final Vehicle vehicle) {
+		ContractionHierarchy ch = this.hierarchy;
+		Customization customization = new Customization(ch.numberOfArcs);
+		for (int arc = 0; arc < ch.numberOfArcs; arc++) {
+			double weight = Double.POSITIVE_INFINITY;
+			Link best = null;
+			for (int i = ch.arcLinksStart[arc]; i < ch.arcLinksStart[arc + 1]; i++) {
+				Link link = ch.links[ch.arcLinks[i]];
+				double disutility = this.travelDisutility.getLinkTravelDisutility(link, time, person, vehicle);
+				if (disutility < weight) {
+					weight = disutility;
+					best = link;
+				}
+			}
+			customization.weights[arc] = weight;
+			if (best != null) {
+				customization.travelTimes[arc] = this.travelTime.getLinkTravelTime(best, time, person, vehicle);
+				customization.distances[arc] = best.getLength();
+			}
+		}
+		int[] triangles = ch.triangles;
+		for (int t = 0; t < ch.numberOfTriangles; t++) {
+			int lower1 = triangles[3 * t];
+			int lower2 = triangles[3 * t + 1];
+			int upper = triangles[3 * t + 2];
+			double weight = customization.weights[lower1] + customization.weights[lower2];
+			if (weight < customization.weights[upper]) {
+				customization.weights[upper] = weight;
+				customization.travelTimes[upper] = customization.travelTimes[lower1] + customization.travelTimes[lower2];
+				customization.distances[upper] = customization.distances[lower1] + customization.distances[lower2];
+			}
+		}
+		return customization;
+	}
+
+	/**
+	 * Runs the task for the indices <code>0 .. size-1</code> on up to the configured number of threads.
+	 */
+	private void runInParallel(final int size, final Task task) {
+		int numberOfThreads = Math.min(this.numberOfThreads, size);
+		if (numberOfThreads <= 1) {
+			Search search = new Search();
+			for (int i = 0; i < size; i++) {
+				task.run(i, search);
+			}
+			return;
+		}
+		final AtomicInteger next = new AtomicInteger(0);
+		final AtomicReference<Throwable> exception = new AtomicReference<>();
+		Thread[] threads = new Thread[numberOfThreads];
+		for (int t = 0; t < numberOfThreads; t++) {
+			threads[t] = new Thread(new Runnable() {
+				@Override
+				public void run() {
+					try {
+						Search search = new Search();
+						for (int i = next.getAndIncrement(); i < size && exception.get() == null; i = next.getAndIncrement()) {
+							task.run(i, search);
+						}
+					} catch (RuntimeException | Error e) {
+						exception.compareAndSet(null, e);
+					}
+				}
+			}, "LeastCostPathMatrix." + t);
+			threads[t].setDaemon(true);
+			threads[t].start();
+		}
+		try {
+			for (Thread thread : threads) {
+				thread.join();
+			}
+		} catch (InterruptedException e) {
+			throw new RuntimeException(e);
+		}
+		if (exception.get() != null) {
+			throw new RuntimeException("Some threads crashed, thus the matrix is not complete.", exception.get());
+		}
+	}
+
+	private static abstract class Task {
+		abstract void run(int index, Search search);
+	}
+
+	private static final class Customization {
+		final double[] weights;
+		final double[] travelTimes;
+		final double[] distances;
+
+		Customization(final int numberOfArcs) {
+			this.weights = new double[numberOfArcs];
+			this.travelTimes = new double[numberOfArcs];
+			this.distances = new double[numberOfArcs];
+		}
+	}
+
+	/**
+	 * The nodes reached by an upward search and their costs, travel times and distances.
+	 */
+	private static final class SearchSpace {
+		final int[] nodes;
+		final double[] costs;
+		final double[] travelTimes;
+		final double[] distances;
+
+		SearchSpace(final int size) {
+			this.nodes = new int[size];
+			this.costs = new double[size];
+			this.travelTimes = new double[size];
+			this.distances = new double[size];
+		}
+	}
+
+	/**
+	 * The search spaces of the backward searches by node, i.e. the destinations reachable from each node and the
+	 * costs, travel times and distances to them.
+	 */
+	private static final class Buckets {
+		final int[] start;
+		final int[] destinations;
+		final double[] costs;
+		final double[] travelTimes;
+		final double[] distances;
+
+		Buckets(final int numberOfNodes, final SearchSpace[] searchSpaces) {
+			this.start = new int[numberOfNodes + 1];
+			for (SearchSpace searchSpace : searchSpaces) {
+				for (int node : searchSpace.nodes) {
+					this.start[node + 1]++;
+				}
+			}
+			for (int i = 0; i < numberOfNodes; i++) {
+				this.start[i + 1] += this.start[i];
+			}
+			int size = this.start[numberOfNodes];
+			this.destinations = new int[size];
+			this.costs = new double[size];
+			this.travelTimes = new double[size];
+			this.distances = new double[size];
+			int[] fill = Arrays.copyOf(this.start, numberOfNodes);
+			for (int j = 0; j < searchSpaces.length; j++) {
+				SearchSpace searchSpace = searchSpaces[j];
+				for (int k = 0; k < searchSpace.nodes.length; k++) {
+					int b = fill[searchSpace.nodes[k]]++;
+					this.destinations[b] = j;
+					this.costs[b] = searchSpace.costs[k];
+					this.travelTimes[b] = searchSpace.travelTimes[k];
+					this.distances[b] = searchSpace.distances[k];
+				}
+			}
+		}
+	}
+
+	/**
+	 * An upward search in the hierarchy, without a stopping criterion, as all reachable nodes may be meeting nodes.
+	 * One instance per thread.
+	 */
+	private final class Search {
+		private int iteration = 0;
+		private final int[] iterations;
+		private final double[] costs;
+		private final double[] travelTimes;
+		private final double[] distances;
+		private final NodeHeap heap = new NodeHeap();
+		private int[] settled = new int[64];
+		private int numberOfSettled = 0;
+
+		private double[] rowCosts = new double[0];
+		private double[] rowTravelTimes = new double[0];
+		private double[] rowDistances = new double[0];
+
+		Search() {
+			int numberOfNodes = hierarchy.nodes.length;
+			this.iterations = new int[numberOfNodes];
+			this.costs = new double[numberOfNodes];
+			this.travelTimes = new double[numberOfNodes];
+			this.distances = new double[numberOfNodes];
+		}
+
+		void search(final int start, final boolean forward, final Customization customization) {
+			this.iteration++;
+			if (this.iteration == Integer.MAX_VALUE) {
+				Arrays.fill(this.iterations, 0);
+				this.iteration = 1;
+			}
+			this.heap.clear();
+			this.numberOfSettled = 0;
+			visit(start, 0.0, 0.0, 0.0);
+			int[] arcStart = forward ? hierarchy.upStart : hierarchy.downStart;
+			int[] arcs = forward ? hierarchy.upArcs : hierarchy.downArcs;
+			int[] neighbors = forward ? hierarchy.arcTo : hierarchy.arcFrom;
+			while (!this.heap.isEmpty()) {
+				double cost = this.heap.peekCost();
+				int node = this.heap.poll();
+				if (cost > this.costs[node]) {
+					continue; // outdated heap entry
+				}
+				if (this.numberOfSettled == this.settled.length) {
+					this.settled = Arrays.copyOf(this.settled, 2 * this.numberOfSettled);
+				}
+				this.settled[this.numberOfSettled++] = node;
+				for (int i = arcStart[node]; i < arcStart[node + 1]; i++) {
+					int arc = arcs[i];
+					double weight = customization.weights[arc];
+					if (weight == Double.POSITIVE_INFINITY) {
+						continue;
+					}
+					visit(neighbors[arc], cost + weight, this.travelTimes[node] + customization.travelTimes[arc],
+							this.distances[node] + customization.distances[arc]);
+				}
+			}
+		}
+
+		private void visit(final int node, final double cost, final double travelTime, final double distance) {
+			if (this.iterations[node] != this.iteration || cost < this.costs[node]) {
+				this.iterations[node] = this.iteration;
+				this.costs[node] = cost;
+				this.travelTimes[node] = travelTime;
+				this.distances[node] = distance;
+				this.heap.add(node, cost);
+			}
+		}
+
+		SearchSpace getSearchSpace() {
+			SearchSpace searchSpace = new SearchSpace(this.numberOfSettled);
+			for (int k = 0; k < this.numberOfSettled; k++) {
+				int node = this.settled[k];
+				searchSpace.nodes[k] = node;
+				searchSpace.costs[k] = this.costs[node];
+				searchSpace.travelTimes[k] = this.travelTimes[node];
+				searchSpace.distances[k] = this.distances[node];
+			}
+			return searchSpace;
+		}
+
+		/**
+		 * Combines the last (forward) search with the buckets at the reached nodes into the row of the origin.
+		 */
+		void scanBuckets(final Buckets buckets, final int origin, final LeastCostPathMatrix matrix) {
+			int numberOfDestinations = matrix.getDestinations().size();
+			if (this.rowCosts.length != numberOfDestinations) {
+				this.rowCosts = new double[numberOfDestinations];
+				this.rowTravelTimes = new double[numberOfDestinations];
+				this.rowDistances = new double[numberOfDestinations];
+			}
+			Arrays.fill(this.rowCosts, Double.POSITIVE_INFINITY);
+			Arrays.fill(this.rowTravelTimes, Double.POSITIVE_INFINITY);
+			Arrays.fill(this.rowDistances, Double.POSITIVE_INFINITY);
+			for (int k = 0; k < this.numberOfSettled; k++) {
+				int node = this.settled[k];
+				double cost = this.costs[node];
+				for (int b = buckets.start[node]; b < buckets.start[node + 1]; b++) {
+					int destination = buckets.destinations[b];
+					double total = cost + buckets.costs[b];
+					if (total < this.rowCosts[destination]) {
+						this.rowCosts[destination] = total;
+						this.rowTravelTimes[destination] = this.travelTimes[node] + buckets.travelTimes[b];
+						this.rowDistances[destination] = this.distances[node] + buckets.distances[b];
+					}
+				}
+			}
+			int offset = origin * numberOfDestinations;
+			for (int j = 0; j < numberOfDestinations; j++) {
+				matrix.costs[offset + j] = (float) this.rowCosts[j];
+				matrix.travelTimes[offset + j] = (float) this.rowTravelTimes[j];
+				matrix.distances[offset + j] = (float) this.rowDistances[j];
+			}
+		}
+	}
+
+}
@@ -0,0 +1,92 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * NodeHeap.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2016 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.router;
+
+import java.util.Arrays;
+
+/**
+ * A binary heap of node indices, used by the searches in contraction hierarchies. Nodes are added again instead
+ * of decreasing their keys, so the searches must skip outdated entries.
+ */
+/*package*/ final class NodeHeap {
+
+	private int[] nodes = new int[64];
+	private double[] costs = new double[64];
+	private int size = 0;
+
+	void clear() {
+		this.size = 0;
+	}
+
+	boolean isEmpty() {
+		return this.size == 0;
+	}
+
+	double peekCost() {
+		return this.costs[0];
+	}
+
+	void add(final int node, final double cost) {
+		if (this.size == this.nodes.length) {
+			this.nodes = Arrays.copyOf(this.nodes, 2 * this.size);
+			this.costs = Arrays.copyOf(this.costs, 2 * this.size);
+		}
+		int i = this.size++;
+		while (i > 0) {
+			int parent = (i - 1) >> 1;
+			if (this.costs[parent] <= cost) {
+				break;
+			}
+			this.nodes[i] = this.nodes[parent];
+			this.costs[i] = this.costs[parent];
+			i = parent;
+		}
+		this.nodes[i] = node;
+		this.costs[i] = cost;
+	}
+
+	int poll() {
+		int result = this.nodes[0];
+		this.size--;
+		int node = this.nodes[this.size];
+		double cost = this.costs[this.size];
+		int i = 0;
+		while (true) {
+			int child = 2 * i + 1;
+			if (child >= this.size) {
+				break;
+			}
+			if (child + 1 < this.size && this.costs[child + 1] < this.costs[child]) {
+				child++;
+			}
+			if (cost <= this.costs[child]) {
+				break;
+			}
+			this.nodes[i] = this.nodes[child];
+			this.costs[i] = this.costs[child];
+			i = child;
+		}
+		this.nodes[i] = node;
+		this.costs[i] = cost;
+		return result;
+	}
+
+}
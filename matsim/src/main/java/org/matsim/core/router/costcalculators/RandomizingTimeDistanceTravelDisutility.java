@@ -74,8 +74,9 @@ final class RandomizingTimeDistanceTravelDisutility implements TravelDisutility
 		// randomize if applicable:
 		if ( sigma != 0. ) {
 			if ( person==null ) {
-				throw new RuntimeException("you cannot use the randomzing travel disutility without person.  If you need this without a person, set"
-						+ "sigma to zero.") ;
+				// without person, e.g. for routers which share their arc weights between all persons (ContractionHierarchies), use the
+				// non-randomized disutility, which is also the expectation value of the randomized one (see below).
+				return getNonRandomizedTravelDisutility(link, time, vehicle) ;
 			}
 			if ( person != prevPerson ) {
 				prevPerson = person ;
@@ -106,6 +107,11 @@ final class RandomizingTimeDistanceTravelDisutility implements TravelDisutility
 		return this.marginalCostOfTime * travelTime + logNormalRnd * this.marginalCostOfDistance * link.getLength();
 	}
 
+	private double getNonRandomizedTravelDisutility(final Link link, final double time, final Vehicle vehicle) {
+		double travelTime = this.timeCalculator.getLinkTravelTime(link, time, null, vehicle);
+		return this.marginalCostOfTime * travelTime + this.marginalCostOfDistance * link.getLength();
+	}
+
 	@Override
 	public double getLinkMinimumTravelDisutility(final Link link) {
 		return (link.getLength() / link.getFreespeed()) * this.marginalCostOfTime + this.marginalCostOfDistance * link.getLength();
@@ -0,0 +1,255 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * DaryMinHeap.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2016 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+package org.matsim.core.router.priorityqueue;
+
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * A d-ary min heap which, unlike {@link BinaryMinHeap}, keeps the heap itself as an array of the
+ * elements' array indices. Sifting thus only touches primitive arrays and never has to dereference the
+ * elements to break ties, which saves a cache miss per comparison on large networks. The elements are
+ * only looked up when they are returned.
+ * <p></p>
+ * Elements with equal priorities are ordered by their array index, so the order in which elements are
+ * polled is the same as the one of a {@link BinaryMinHeap}.
+ *
+ * @param <E> the type of elements held in this collection
+ */
+public class DaryMinHeap<E extends HasIndex> implements MinHeap<E> {
+
+	/*package*/ static final int defaultFanout = 4;
+
+	/** the elements by their array index */
+	private final E[] elements;
+	/** the array indices of the elements in heap order */
+	private final int[] heap;
+	/** the costs of the elements in heap order */
+	private final double[] costs;
+	/** the positions in the heap by array index, -1 if the element is not in the heap */
+	private final int[] positions;
+
+	private final int fanout;
+	private int heapSize = 0;
+	private transient int modCount = 0;
+
+	public DaryMinHeap(int maxSize) {
+		this(maxSize, defaultFanout);
+	}
+
+	@SuppressWarnings("unchecked")
+	public DaryMinHeap(int maxSize, int fanout) {
+		if (fanout < 2) {
+			throw new IllegalArgumentException("fanout must be at least 2, but is " + fanout);
+		}
+		this.fanout = fanout;
+		this.elements = (E[]) new HasIndex[maxSize];
+		this.heap = new int[maxSize];
+		this.costs = new double[maxSize];
+		this.positions = new int[maxSize];
+		for (int i = 0; i < maxSize; i++) {
+			this.positions[i] = -1;
+		}
+	}
+
+	@Override
+	public void reset() {
+		if (this.heapSize < this.positions.length / 10) {
+			for (int i = 0; i < this.heapSize; i++) {
+				this.positions[this.heap[i]] = -1;
+			}
+		} else {
+			for (int i = 0; i < this.positions.length; i++) {
+				this.positions[i] = -1;
+			}
+		}
+		this.heapSize = 0;
+		this.modCount = 0;
+	}
+
+	@Override
+	public boolean add(E value, double priority) {
+		if (value == null) {
+			throw new NullPointerException("null values are not supported!");
+		}
+		int index = value.getArrayIndex();
+		if (this.positions[index] >= 0) {
+			return false;
+		}
+		if (this.heapSize == this.heap.length) throw new RuntimeException("Heap's underlying storage is overflow!");
+
+		this.modCount++;
+		this.elements[index] = value;
+		siftUp(this.heapSize, index, priority);
+		this.heapSize++;
+		return true;
+	}
+
+	@Override
+	public E poll() {
+		if (this.heapSize == 0) return null;
+		this.modCount++;
+		int index = this.heap[0];
+		removeAt(0);
+		return this.elements[index];
+	}
+
+	@Override
+	public boolean remove(E value) {
+		if (value == null) return false;
+		int position = this.positions[value.getArrayIndex()];
+		if (position < 0) return false;
+		this.modCount++;
+		removeAt(position);
+		return true;
+	}
+
+	@Override
+	public boolean decreaseKey(E value, double cost) {
+		int index = value.getArrayIndex();
+		int position = this.positions[index];
+		if (position < 0) {
+			return this.add(value, cost);
+		}
+		if (this.costs[position] < cost) return false;
+
+		this.elements[index] = value;
+		siftUp(position, index, cost);
+		return true;
+	}
+
+	@Override
+	public E peek() {
+		if (this.heapSize == 0) return null;
+		return this.elements[this.heap[0]];
+	}
+
+	@Override
+	public int size() {
+		return this.heapSize;
+	}
+
+	@Override
+	public boolean isEmpty() {
+		return this.heapSize == 0;
+	}
+
+	/**
+	 * Returns an iterator over the elements in this queue. The iterator does NOT return the elements sorted by
+	 * their priority. Removing elements is not supported via the iterator.
+	 */
+	@Override
+	public Iterator<E> iterator() {
+		return new HeapIterator();
+	}
+
+	private void removeAt(int position) {
+		this.positions[this.heap[position]] = -1;
+		this.heapSize--;
+		if (position == this.heapSize) {
+			return;
+		}
+		int lastIndex = this.heap[this.heapSize];
+		double lastCost = this.costs[this.heapSize];
+		if (position > 0 && isLess(lastCost, lastIndex, this.costs[parent(position)], this.heap[parent(position)])) {
+			siftUp(position, lastIndex, lastCost);
+		} else {
+			siftDown(position, lastIndex, lastCost);
+		}
+	}
+
+	private void siftUp(int position, int index, double cost) {
+		while (position > 0) {
+			int parent = parent(position);
+			if (!isLess(cost, index, this.costs[parent], this.heap[parent])) break;
+			move(parent, position);
+			position = parent;
+		}
+		set(position, index, cost);
+	}
+
+	private void siftDown(int position, int index, double cost) {
+		while (true) {
+			int firstChild = this.fanout * position + 1;
+			if (firstChild >= this.heapSize) break;
+			int limit = Math.min(firstChild + this.fanout, this.heapSize);
+
+			int minChild = firstChild;
+			double minCost = this.costs[firstChild];
+			for (int child = firstChild + 1; child < limit; child++) {
+				double childCost = this.costs[child];
+				if (isLess(childCost, this.heap[child], minCost, this.heap[minChild])) {
+					minChild = child;
+					minCost = childCost;
+				}
+			}
+			if (!isLess(minCost, this.heap[minChild], cost, index)) break;
+			move(minChild, position);
+			position = minChild;
+		}
+		set(position, index, cost);
+	}
+
+	private int parent(int position) {
+		return (position - 1) / this.fanout;
+	}
+
+	private void move(int from, int to) {
+		int index = this.heap[from];
+		this.heap[to] = index;
+		this.costs[to] = this.costs[from];
+		this.positions[index] = to;
+	}
+
+	private void set(int position, int index, double cost) {
+		this.heap[position] = index;
+		this.costs[position] = cost;
+		this.positions[index] = position;
+	}
+
+	private static boolean isLess(double cost1, int index1, double cost2, int index2) {
+		return cost1 < cost2 || (cost1 == cost2 && index1 < index2);
+	}
+
+	private final class HeapIterator implements Iterator<E> {
+
+		private final int expectedModCount = modCount;
+		private final int size = heapSize;
+		private int position = 0;
+
+		@Override
+		public boolean hasNext() {
+			return this.position < this.size;
+		}
+
+		@Override
+		public E next() {
+			if (modCount != this.expectedModCount) throw new ConcurrentModificationException();
+			if (!hasNext()) throw new NoSuchElementException();
+			return elements[heap[this.position++]];
+		}
+
+		@Override
+		public void remove() {
+			throw new UnsupportedOperationException("Not supported operation!");
+		}
+	}
+}
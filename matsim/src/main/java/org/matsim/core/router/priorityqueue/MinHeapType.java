@@ -0,0 +1,49 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * MinHeapType.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2016 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+package org.matsim.core.router.priorityqueue;
+
+/**
+ * The {@link MinHeap} implementations the fast routers can use as priority queue.
+ * <ul>
+ * <li>{@link #BINARY}: the {@link BinaryMinHeap}, the default.</li>
+ * <li>{@link #DARY}: the {@link DaryMinHeap}, which polls the elements in the same order.</li>
+ * <li>{@link #RADIX}: the {@link RadixMinHeap}, which is meant for monotone searches, i.e. the Dijkstra based
+ * routers with non-negative travel disutilities.</li>
+ * </ul>
+ * Which one is fastest depends on the network and the router, see the <code>MinHeapBenchmark</code> in the tests.
+ * On the Berlin test network, the d-ary heap was faster with A* and landmarks, and the radix heap was slower
+ * with all routers, as the many distinct double costs lead to many redistributions.
+ */
+public enum MinHeapType {
+	BINARY, DARY, RADIX;
+
+	public <E extends HasIndex> MinHeap<E> createMinHeap(final int maxSize) {
+		switch (this) {
+		case BINARY:
+			return new BinaryMinHeap<>(maxSize);
+		case DARY:
+			return new DaryMinHeap<>(maxSize);
+		case RADIX:
+			return new RadixMinHeap<>(maxSize);
+		default:
+			throw new RuntimeException("Undefined MinHeapType: " + this);
+		}
+	}
+}
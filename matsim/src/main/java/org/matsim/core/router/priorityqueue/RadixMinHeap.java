@@ -0,0 +1,324 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * RadixMinHeap.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2016 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+package org.matsim.core.router.priorityqueue;
+
+import java.util.Arrays;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * A radix heap for monotone searches, i.e. searches which never add an element with a lower priority than
+ * the one of the element polled last, as Dijkstra's algorithm with non-negative costs.
+ * <p></p>
+ * The priorities are not discretized. Instead, the radix of an element is taken from the bits of its
+ * priority, which are mapped to a long whose unsigned order is the order of the doubles. An element is kept
+ * in the bucket of the highest bit in which its key differs from the one of the last polled element. Adding an
+ * element and decreasing its priority are thus constant time operations, and each element is moved to a lower
+ * bucket at most 64 times until it is polled.
+ * <p></p>
+ * Priorities lower than the last polled one are supported, but all elements have to be redistributed when such
+ * a priority is added. This happens e.g. with A* and landmarks, whose estimations are not always consistent
+ * with the time dependent costs, so the heap is best suited for the Dijkstra based routers. Elements with
+ * equal priorities are not ordered by their array index, so routes with equal costs may differ from the ones
+ * found with a {@link BinaryMinHeap}.
+ *
+ * @param <E> the type of elements held in this collection
+ */
+public class RadixMinHeap<E extends HasIndex> implements MinHeap<E> {
+
+	private static final int NUMBER_OF_BUCKETS = 65;
+	private static final int INITIAL_BUCKET_CAPACITY = 16;
+	/** the key of a priority of 0.0 */
+	private static final long ZERO_KEY = Long.MIN_VALUE;
+
+	/** the elements by their array index */
+	private final E[] elements;
+	/** the priority bits by array index */
+	private final long[] keys;
+	/** the bucket by array index, -1 if the element is not in the queue */
+	private final byte[] bucketOf;
+	/** the position in its bucket by array index */
+	private final int[] positions;
+
+	/** the array indices of the elements in each bucket */
+	private final int[][] buckets = new int[NUMBER_OF_BUCKETS][];
+	private final int[] bucketSizes = new int[NUMBER_OF_BUCKETS];
+
+	/** the key of the last polled element, or the lowest key added since */
+	private long last = ZERO_KEY;
+	private int size = 0;
+	private transient int modCount = 0;
+
+	@SuppressWarnings("unchecked")
+	public RadixMinHeap(int maxSize) {
+		this.elements = (E[]) new HasIndex[maxSize];
+		this.keys = new long[maxSize];
+		this.bucketOf = new byte[maxSize];
+		this.positions = new int[maxSize];
+		Arrays.fill(this.bucketOf, (byte) -1);
+		for (int i = 0; i < NUMBER_OF_BUCKETS; i++) {
+			this.buckets[i] = new int[INITIAL_BUCKET_CAPACITY];
+		}
+	}
+
+	@Override
+	public void reset() {
+		for (int b = 0; b < NUMBER_OF_BUCKETS; b++) {
+			int[] bucket = this.buckets[b];
+			for (int i = 0; i < this.bucketSizes[b]; i++) {
+				this.bucketOf[bucket[i]] = -1;
+			}
+			this.bucketSizes[b] = 0;
+		}
+		this.last = ZERO_KEY;
+		this.size = 0;
+		this.modCount = 0;
+	}
+
+	@Override
+	public boolean add(E value, double priority) {
+		if (value == null) {
+			throw new NullPointerException("null values are not supported!");
+		}
+		int index = value.getArrayIndex();
+		if (this.bucketOf[index] >= 0) {
+			return false;
+		}
+		this.modCount++;
+		this.elements[index] = value;
+		insert(index, toKey(priority));
+		this.size++;
+		return true;
+	}
+
+	@Override
+	public boolean decreaseKey(E value, double cost) {
+		int index = value.getArrayIndex();
+		if (this.bucketOf[index] < 0) {
+			return this.add(value, cost);
+		}
+		long key = toKey(cost);
+		if (isLess(this.keys[index], key)) return false;
+
+		this.modCount++;
+		this.elements[index] = value;
+		removeFromBucket(index);
+		insert(index, key);
+		return true;
+	}
+
+	@Override
+	public boolean remove(E value) {
+		if (value == null) return false;
+		int index = value.getArrayIndex();
+		if (this.bucketOf[index] < 0) return false;
+		this.modCount++;
+		removeFromBucket(index);
+		this.size--;
+		return true;
+	}
+
+	@Override
+	public E poll() {
+		if (this.size == 0) return null;
+		this.modCount++;
+		fillFirstBucket();
+		int index = this.buckets[0][--this.bucketSizes[0]];
+		this.bucketOf[index] = -1;
+		this.size--;
+		return this.elements[index];
+	}
+
+	/**
+	 * Does not redistribute the elements, as that would raise the last priority before the element is
+	 * polled, but searches the first non-empty bucket.
+	 */
+	@Override
+	public E peek() {
+		if (this.size == 0) return null;
+		if (this.bucketSizes[0] > 0) {
+			return this.elements[this.buckets[0][this.bucketSizes[0] - 1]];
+		}
+		int b = firstNonEmptyBucket();
+		int[] bucket = this.buckets[b];
+		int min = bucket[0];
+		for (int i = 1; i < this.bucketSizes[b]; i++) {
+			if (isLess(this.keys[bucket[i]], this.keys[min])) {
+				min = bucket[i];
+			}
+		}
+		return this.elements[min];
+	}
+
+	@Override
+	public int size() {
+		return this.size;
+	}
+
+	@Override
+	public boolean isEmpty() {
+		return this.size == 0;
+	}
+
+	/**
+	 * Returns an iterator over the elements in this queue. The iterator does NOT return the elements sorted by
+	 * their priority. Removing elements is not supported via the iterator.
+	 */
+	@Override
+	public Iterator<E> iterator() {
+		return new BucketIterator();
+	}
+
+	/**
+	 * Moves the elements with the lowest priority into the first bucket, if it is empty, by taking the lowest
+	 * priority of the first non-empty bucket as new last priority and redistributing that bucket's elements.
+	 */
+	private void fillFirstBucket() {
+		if (this.bucketSizes[0] > 0) {
+			return;
+		}
+		int b = firstNonEmptyBucket();
+		int[] bucket = this.buckets[b];
+		int n = this.bucketSizes[b];
+		long min = this.keys[bucket[0]];
+		for (int i = 1; i < n; i++) {
+			if (isLess(this.keys[bucket[i]], min)) {
+				min = this.keys[bucket[i]];
+			}
+		}
+		this.last = min;
+		this.bucketSizes[b] = 0;
+		for (int i = 0; i < n; i++) {
+			// all keys of the bucket share the bits above b with the new last key, so they end up in lower buckets
+			int index = bucket[i];
+			addToBucket(index, bucketOf(this.keys[index]));
+		}
+	}
+
+	private int firstNonEmptyBucket() {
+		int b = 0;
+		while (this.bucketSizes[b] == 0) {
+			b++;
+		}
+		return b;
+	}
+
+	private void insert(int index, long key) {
+		if (isLess(key, this.last)) {
+			rebase(key);
+		}
+		this.keys[index] = key;
+		addToBucket(index, bucketOf(key));
+	}
+
+	/**
+	 * Lowers the last key and redistributes all elements according to it.
+	 */
+	private void rebase(long key) {
+		this.last = key;
+		for (int b = 0; b < NUMBER_OF_BUCKETS; b++) {
+			int[] bucket = this.buckets[b];
+			int n = this.bucketSizes[b];
+			this.bucketSizes[b] = 0;
+			for (int i = 0; i < n; i++) {
+				int index = bucket[i];
+				int newBucket = bucketOf(this.keys[index]);
+				// the elements only move to higher buckets, so the ones of this bucket are not overwritten
+				addToBucket(index, newBucket);
+			}
+		}
+	}
+
+	private int bucketOf(long key) {
+		return 64 - Long.numberOfLeadingZeros(key ^ this.last);
+	}
+
+	private void addToBucket(int index, int b) {
+		int n = this.bucketSizes[b];
+		if (n == this.buckets[b].length) {
+			this.buckets[b] = Arrays.copyOf(this.buckets[b], 2 * n);
+		}
+		this.buckets[b][n] = index;
+		this.bucketSizes[b] = n + 1;
+		this.bucketOf[index] = (byte) b;
+		this.positions[index] = n;
+	}
+
+	private void removeFromBucket(int index) {
+		int b = this.bucketOf[index];
+		int position = this.positions[index];
+		int lastPosition = --this.bucketSizes[b];
+		if (position != lastPosition) {
+			int moved = this.buckets[b][lastPosition];
+			this.buckets[b][position] = moved;
+			this.positions[moved] = position;
+		}
+		this.bucketOf[index] = -1;
+	}
+
+	/**
+	 * Converts a priority to a key whose unsigned order is the order of the priorities.
+	 */
+	private static long toKey(double priority) {
+		if (Double.isNaN(priority)) {
+			throw new IllegalArgumentException("priority must not be NaN");
+		}
+		// adding 0.0 turns -0.0 into 0.0
+		long bits = Double.doubleToRawLongBits(priority + 0.0);
+		return bits < 0 ? ~bits : bits | Long.MIN_VALUE;
+	}
+
+	private static boolean isLess(long key1, long key2) {
+		return (key1 ^ Long.MIN_VALUE) < (key2 ^ Long.MIN_VALUE);
+	}
+
+	private final class BucketIterator implements Iterator<E> {
+
+		private final int expectedModCount = modCount;
+		private int bucket = 0;
+		private int position = 0;
+
+		@Override
+		public boolean hasNext() {
+			checkForComodification();
+			while (this.bucket < NUMBER_OF_BUCKETS && this.position >= bucketSizes[this.bucket]) {
+				this.bucket++;
+				this.position = 0;
+			}
+			return this.bucket < NUMBER_OF_BUCKETS;
+		}
+
+		@Override
+		public E next() {
+			if (!hasNext()) throw new NoSuchElementException();
+			return elements[buckets[this.bucket][this.position++]];
+		}
+
+		@Override
+		public void remove() {
+			throw new UnsupportedOperationException("Not supported operation!");
+		}
+
+		private void checkForComodification() {
+			if (modCount != this.expectedModCount) throw new ConcurrentModificationException();
+		}
+	}
+}
@@ -0,0 +1,76 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * ContractionHierarchiesFactory.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2016 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.router.util;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.core.config.Config;
+import org.matsim.core.router.ContractionHierarchies;
+import org.matsim.core.router.ContractionHierarchy;
+
+/**
+ * Creates {@link ContractionHierarchies} routers. The contraction hierarchy of a network is built when the first
+ * router for it is requested and then shared by all routers; each router computes its own arc weights from its
+ * travel disutility. By default, the weights are computed per time bin of the travel time calculator.
+ */
+@Singleton
+public class ContractionHierarchiesFactory implements LeastCostPathCalculatorFactory {
+
+	private final RoutingNetworkFactory routingNetworkFactory = new ArrayRoutingNetworkFactory(null);
+	private final Map<Network, ContractionHierarchy> hierarchies = new HashMap<>();
+	private final double customizationBinSize;
+
+	@Inject
+	ContractionHierarchiesFactory(final Config config) {
+		this(config.travelTimeCalculator().getTraveltimeBinSize());
+	}
+
+	/**
+	 * @param customizationBinSize the length of the time bins for which the arc weights are computed, in seconds
+	 */
+	public ContractionHierarchiesFactory(final double customizationBinSize) {
+		this.customizationBinSize = customizationBinSize;
+	}
+
+	@Override
+	public LeastCostPathCalculator createPathCalculator(final Network network, final TravelDisutility travelCosts, final TravelTime travelTimes) {
+		return new ContractionHierarchies(getContractionHierarchy(network), travelCosts, travelTimes, this.customizationBinSize);
+	}
+
+	/**
+	 * Trip routers are created concurrently, but the hierarchy should only be built once per network.
+	 */
+	private synchronized ContractionHierarchy getContractionHierarchy(final Network network) {
+		ContractionHierarchy hierarchy = this.hierarchies.get(network);
+		if (hierarchy == null) {
+			ArrayRoutingNetwork routingNetwork = (ArrayRoutingNetwork) this.routingNetworkFactory.createRoutingNetwork(network);
+			hierarchy = ContractionHierarchy.create(routingNetwork);
+			this.hierarchies.put(network, hierarchy);
+		}
+		return hierarchy;
+	}
+
+}
@@ -25,6 +25,7 @@ import org.matsim.core.router.ArrayFastRouterDelegateFactory;
 import org.matsim.core.router.FastAStarEuclidean;
 import org.matsim.core.router.FastRouterDelegateFactory;
 import org.matsim.core.router.FastRouterType;
+import org.matsim.core.router.priorityqueue.MinHeapType;
 
 import java.util.HashMap;
 import java.util.Map;
@@ -35,15 +36,21 @@ import java.util.Map;
 public class FastAStarEuclideanFactory implements LeastCostPathCalculatorFactory {
 
 	private final PreProcessEuclidean preProcessData;
+	private final MinHeapType minHeapType;
 	private final RoutingNetworkFactory routingNetworkFactory;
 	private final Map<Network, RoutingNetwork> routingNetworks;
 
 	public FastAStarEuclideanFactory(Network network, final TravelDisutility fsttc) {
-		this(network, fsttc, FastRouterType.ARRAY);		
+		this(network, fsttc, FastRouterType.ARRAY, MinHeapType.BINARY);
+	}
+
+	public FastAStarEuclideanFactory(Network network, final TravelDisutility fsttc, final MinHeapType minHeapType) {
+		this(network, fsttc, FastRouterType.ARRAY, minHeapType);
 	}
 
 	private FastAStarEuclideanFactory(Network network, final TravelDisutility fsttc,
-			FastRouterType fastRouterType) {
+			FastRouterType fastRouterType, MinHeapType minHeapType) {
+		this.minHeapType = minHeapType;
 		this.preProcessData = new PreProcessEuclidean(fsttc);
 		this.preProcessData.run(network);
 
@@ -73,6 +80,6 @@ public class FastAStarEuclideanFactory implements LeastCostPathCalculatorFactory
 		FastRouterDelegateFactory fastRouterFactory = new ArrayFastRouterDelegateFactory();
 		
 		return new FastAStarEuclidean(routingNetwork, this.preProcessData, travelCosts, travelTimes, 1,
-			fastRouterFactory);
+			fastRouterFactory, this.minHeapType);
 	}
 }
\ No newline at end of file
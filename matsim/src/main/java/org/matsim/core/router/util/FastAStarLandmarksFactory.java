@@ -27,6 +27,7 @@ import org.matsim.core.router.ArrayFastRouterDelegateFactory;
 import org.matsim.core.router.FastAStarLandmarks;
 import org.matsim.core.router.FastRouterDelegateFactory;
 import org.matsim.core.router.FastRouterType;
+import org.matsim.core.router.priorityqueue.MinHeapType;
 import org.matsim.core.router.costcalculators.TravelDisutilityFactory;
 
 import javax.inject.Inject;
@@ -41,21 +42,27 @@ import java.util.Map;
 public class FastAStarLandmarksFactory implements LeastCostPathCalculatorFactory {
 
 	private final PreProcessLandmarks preProcessData;
+	private final MinHeapType minHeapType;
 	private final RoutingNetworkFactory routingNetworkFactory;
 	private final Map<Network, RoutingNetwork> routingNetworks;
 
 	@Inject
 	FastAStarLandmarksFactory(Network network, Config config, Map<String,TravelTime> travelTime, Map<String,TravelDisutilityFactory> fsttc) {
 		//TODO: No guarantee that these are the same travel times for which the router is later requested.
-		this(network, fsttc.get(TransportMode.car).createTravelDisutility(travelTime.get(TransportMode.car)), FastRouterType.ARRAY);
+		this(network, fsttc.get(TransportMode.car).createTravelDisutility(travelTime.get(TransportMode.car)), FastRouterType.ARRAY, MinHeapType.BINARY);
 	}
 
 	public FastAStarLandmarksFactory(Network network, final TravelDisutility fsttc) {
-		this(network, fsttc, FastRouterType.ARRAY);
+		this(network, fsttc, FastRouterType.ARRAY, MinHeapType.BINARY);
+	}
+
+	public FastAStarLandmarksFactory(Network network, final TravelDisutility fsttc, final MinHeapType minHeapType) {
+		this(network, fsttc, FastRouterType.ARRAY, minHeapType);
 	}
 
 	private FastAStarLandmarksFactory(Network network, final TravelDisutility fsttc,
-			FastRouterType fastRouterType) {
+			FastRouterType fastRouterType, MinHeapType minHeapType) {
+		this.minHeapType = minHeapType;
 		this.preProcessData = new PreProcessLandmarks(fsttc);
 		this.preProcessData.run(network);
 		
@@ -85,6 +92,6 @@ public class FastAStarLandmarksFactory implements LeastCostPathCalculatorFactory
 		FastRouterDelegateFactory fastRouterFactory = new ArrayFastRouterDelegateFactory();
 
 		return new FastAStarLandmarks(routingNetwork, this.preProcessData, travelCosts, travelTimes, 1,
-				fastRouterFactory);
+				fastRouterFactory, this.minHeapType);
 	}
 }
\ No newline at end of file
@@ -25,6 +25,7 @@ import org.matsim.core.router.ArrayFastRouterDelegateFactory;
 import org.matsim.core.router.FastDijkstra;
 import org.matsim.core.router.FastRouterDelegateFactory;
 import org.matsim.core.router.FastRouterType;
+import org.matsim.core.router.priorityqueue.MinHeapType;
 
 import javax.inject.Inject;
 import javax.inject.Singleton;
@@ -35,20 +36,26 @@ import java.util.Map;
 public class FastDijkstraFactory implements LeastCostPathCalculatorFactory {
 	
 	private final PreProcessDijkstra preProcessData;
+	private final MinHeapType minHeapType;
 	private final RoutingNetworkFactory routingNetworkFactory;
 	private final Map<Network, RoutingNetwork> routingNetworks;
 
 	@Inject
 	public FastDijkstraFactory() {
-		this(null, FastRouterType.ARRAY);
+		this(null, FastRouterType.ARRAY, MinHeapType.BINARY);
 	}
 
     public FastDijkstraFactory(final PreProcessDijkstra preProcessData) {
-		this(preProcessData, FastRouterType.ARRAY);
+		this(preProcessData, FastRouterType.ARRAY, MinHeapType.BINARY);
 	}
 
-	private FastDijkstraFactory(final PreProcessDijkstra preProcessData, FastRouterType fastRouterType) {
+	public FastDijkstraFactory(final PreProcessDijkstra preProcessData, final MinHeapType minHeapType) {
+		this(preProcessData, FastRouterType.ARRAY, minHeapType);
+	}
+
+	private FastDijkstraFactory(final PreProcessDijkstra preProcessData, FastRouterType fastRouterType, MinHeapType minHeapType) {
 		this.preProcessData = preProcessData;
+		this.minHeapType = minHeapType;
 		
 		this.routingNetworks = new HashMap<Network, RoutingNetwork>();
 		
@@ -74,6 +81,6 @@ public class FastDijkstraFactory implements LeastCostPathCalculatorFactory {
 		}
 		FastRouterDelegateFactory fastRouterFactory = new ArrayFastRouterDelegateFactory();
 		
-		return new FastDijkstra(routingNetwork, travelCosts, travelTimes, preProcessData, fastRouterFactory);
+		return new FastDijkstra(routingNetwork, travelCosts, travelTimes, preProcessData, fastRouterFactory, this.minHeapType);
 	}
 }
\ No newline at end of file
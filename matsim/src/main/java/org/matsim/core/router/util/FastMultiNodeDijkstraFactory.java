@@ -27,11 +27,13 @@ import org.matsim.api.core.v01.network.Network;
 import org.matsim.core.router.ArrayFastRouterDelegateFactory;
 import org.matsim.core.router.FastMultiNodeDijkstra;
 import org.matsim.core.router.FastRouterDelegateFactory;
+import org.matsim.core.router.priorityqueue.MinHeapType;
 
 public class FastMultiNodeDijkstraFactory implements LeastCostPathCalculatorFactory {
 	
 	private final boolean searchAllEndNodes;
 	private final PreProcessDijkstra preProcessData;
+	private final MinHeapType minHeapType;
 	private final RoutingNetworkFactory routingNetworkFactory;
 	private final Map<Network, RoutingNetwork> routingNetworks;
 	
@@ -44,7 +46,13 @@ public class FastMultiNodeDijkstraFactory implements LeastCostPathCalculatorFact
 	}
 		
 	public FastMultiNodeDijkstraFactory(final PreProcessDijkstra preProcessData, final boolean searchAllEndNodes) {
+		this(preProcessData, searchAllEndNodes, MinHeapType.BINARY);
+	}
+
+	public FastMultiNodeDijkstraFactory(final PreProcessDijkstra preProcessData, final boolean searchAllEndNodes,
+			final MinHeapType minHeapType) {
 		this.preProcessData = preProcessData;
+		this.minHeapType = minHeapType;
 		this.searchAllEndNodes = searchAllEndNodes;
 		
 		this.routingNetworks = new HashMap<Network, RoutingNetwork>();
@@ -62,6 +70,6 @@ public class FastMultiNodeDijkstraFactory implements LeastCostPathCalculatorFact
 		}
 		
 		return new FastMultiNodeDijkstra(routingNetwork, travelCosts, travelTimes, 
-				this.preProcessData, fastRouterFactory, this.searchAllEndNodes);
+				this.preProcessData, fastRouterFactory, this.searchAllEndNodes, this.minHeapType);
 	}
 }
\ No newline at end of file
@@ -20,6 +20,7 @@
 package org.matsim.core.scenario;
 
 import java.io.File;
+import java.net.URISyntaxException;
 import java.net.URL;
 import java.util.ArrayList;
 import java.util.Collections;
@@ -38,6 +39,7 @@ import org.matsim.core.population.PopulationUtils;
 import org.matsim.core.population.io.PopulationReader;
 import org.matsim.core.utils.geometry.CoordinateTransformation;
 import org.matsim.core.utils.geometry.transformations.TransformationFactory;
+import org.matsim.core.utils.io.IOUtils;
 import org.matsim.core.utils.io.MatsimFileTypeGuesser;
 import org.matsim.core.utils.io.UncheckedIOException;
 import org.matsim.facilities.MatsimFacilitiesReader;
@@ -104,15 +106,32 @@ class ScenarioLoaderImpl {
 		String currentDir = new File("tmp").getAbsolutePath();
 		currentDir = currentDir.substring(0, currentDir.length() - 3);
 		log.info("loading scenario from base directory: " + currentDir);
-		this.loadNetwork();
-		this.loadActivityFacilities();
-		this.loadPopulation();
-		this.loadHouseholds();
-		this.loadTransit(); // tests internally if the file is there
-		this.loadTransitVehicles(); // tests internally if the file is there
-		if (this.config.vehicles().getVehiclesFile()!=null ) {
-			this.loadVehicles() ;
+		String snapshotFile = this.config.scenario().getSnapshotFile();
+		String snapshotSource = snapshotFile == null ? null : this.createSnapshotSource();
+		if (snapshotFile != null && new File(snapshotFile).exists()
+				&& snapshotSource.equals(ScenarioSnapshotReader.readSource(snapshotFile))) {
+			new ScenarioSnapshotReader(this.scenario).readFile(snapshotFile);
+		} else {
+			this.loadNetwork();
+			this.loadActivityFacilities();
+			this.loadPopulation();
+			this.loadHouseholds();
+			this.loadTransit(); // tests internally if the file is there
+			this.loadTransitVehicles(); // tests internally if the file is there
+			if (this.config.vehicles().getVehiclesFile()!=null ) {
+				this.loadVehicles() ;
+			}
+			if (snapshotFile != null) {
+				ScenarioSnapshotWriter snapshotWriter = new ScenarioSnapshotWriter(this.scenario);
+				snapshotWriter.setSource(snapshotSource);
+				snapshotWriter.write(snapshotFile);
+			}
 		}
+		this.loadNetworkChangeEvents();
+		this.loadActivityFacilityAttributes();
+		this.loadPersonAttributes();
+		this.loadHouseholdAttributes();
+		this.loadTransitAttributes();
 		if (this.config.network().getLaneDefinitionsFile()!=null ) {
 			this.loadLanes();
 		}
@@ -137,7 +156,11 @@ class ScenarioLoaderImpl {
 								config.global().getCoordinateSystem() );
 				new MatsimNetworkReader( transformation , this.scenario.getNetwork() ).parse(networkUrl);
 			}
+		}
+	}
 
+	private void loadNetworkChangeEvents() {
+		if ((this.config.network() != null) && (this.config.network().getInputFile() != null)) {
 			if ((this.config.network().getChangeEventsInputFile() != null) && this.config.network().isTimeVariantNetwork()) {
 				log.info("loading network change events from " + this.config.network().getChangeEventsInputFile());
 				Network network = this.scenario.getNetwork();
@@ -175,6 +198,9 @@ class ScenarioLoaderImpl {
 		else {
 			log.info("no facilities file set in config, therefore not loading any facilities.  This is not a problem except if you are using facilities");
 		}
+	}
+
+	private void loadActivityFacilityAttributes() {
 		if ((this.config.facilities() != null) && (this.config.facilities().getInputFacilitiesAttributesFile() != null)) {
 			String facilitiesAttributesFileName = this.config.facilities().getInputFacilitiesAttributesFile();
 			log.info("loading facility attributes from " + facilitiesAttributesFileName);
@@ -214,6 +240,9 @@ class ScenarioLoaderImpl {
 		else {
 			log.info("no population file set in config, not able to load population");
 		}
+	}
+
+	private void loadPersonAttributes() {
 		if ((this.config.plans() != null) && (this.config.plans().getInputPersonAttributeFile() != null)) {
 			URL personAttributesURL = this.config.plans().getInputPersonAttributeFileURL(this.config.getContext());
 			log.info("loading person attributes from " + personAttributesURL);
@@ -226,6 +255,61 @@ class ScenarioLoaderImpl {
 		}
 	}
 
+	/**
+	 * Describes the input files which are contained in a snapshot, so that a snapshot of other or modified
+	 * files is not used.
+	 */
+	private String createSnapshotSource() {
+		StringBuilder source = new StringBuilder();
+		appendSnapshotSource(source, "network", this.config.network().getInputFile() == null ? null :
+				this.config.network().getInputFileURL(this.config.getContext()), this.config.network().getInputCRS());
+		appendSnapshotSource(source, "facilities", this.config.facilities().getInputFile() == null ? null :
+				this.config.facilities().getInputFileURL(this.config.getContext()), this.config.facilities().getInputCRS());
+		appendSnapshotSource(source, "plans", this.config.plans().getInputFile() == null ? null :
+				this.config.plans().getInputFileURL(this.config.getContext()), this.config.plans().getInputCRS());
+		appendSnapshotSource(source, "households", this.config.households().getInputFile());
+		appendSnapshotSource(source, "transitSchedule", this.config.transit().getTransitScheduleFile() == null ? null :
+				this.config.transit().getTransitScheduleFileURL(this.config.getContext()), this.config.transit().getInputScheduleCRS());
+		appendSnapshotSource(source, "transitVehicles", this.config.transit().getVehiclesFile() == null ? null :
+				this.config.transit().getVehiclesFileURL(this.config.getContext()), null);
+		appendSnapshotSource(source, "vehicles", this.config.vehicles().getVehiclesFile());
+		source.append("crs=").append(this.config.global().getCoordinateSystem());
+		return source.toString();
+	}
+
+	/**
+	 * For the files which are read with their file name instead of relative to the config.
+	 */
+	private static void appendSnapshotSource(final StringBuilder source, final String name, final String filename) {
+		URL url = filename == null ? null : IOUtils.getUrlFromFileOrResource(filename);
+		if (filename != null && url == null) {
+			// not found, so the snapshot must not be used either
+			source.append(name).append('=').append(filename).append(';');
+		} else {
+			appendSnapshotSource(source, name, url, null);
+		}
+	}
+
+	private static void appendSnapshotSource(final StringBuilder source, final String name, final URL url, final String inputCRS) {
+		source.append(name).append('=');
+		if (url != null) {
+			source.append(url);
+			if ("file".equals(url.getProtocol())) {
+				File file;
+				try {
+					file = new File(url.toURI());
+				} catch (URISyntaxException | IllegalArgumentException e) {
+					file = new File(url.getPath());
+				}
+				source.append(',').append(file.length()).append(',').append(file.lastModified());
+			}
+			if (inputCRS != null) {
+				source.append(",crs=").append(inputCRS);
+			}
+		}
+		source.append(';');
+	}
+
 	private void loadHouseholds() {
 		final String householdsFile = this.config.households().getInputFile();
 		if ( (this.config.households() != null) && (householdsFile != null) ) {
@@ -236,6 +320,9 @@ class ScenarioLoaderImpl {
 		else {
 			log.info("no households file set in config, not loading households");
 		}
+	}
+
+	private void loadHouseholdAttributes() {
 		if ((this.config.households() != null) && (this.config.households().getInputHouseholdAttributesFile() != null)) {
 			String householdAttributesFileName = this.config.households().getInputHouseholdAttributesFile();
 			log.info("loading household attributes from " + householdAttributesFileName);
@@ -272,7 +359,9 @@ class ScenarioLoaderImpl {
 		else {
 			log.info("no transit schedule file set in config, not loading any transit schedule");
 		}
+	}
 
+	private void loadTransitAttributes() {
 		if ( this.config.transit().getTransitLinesAttributesFile() != null ) {
 			String transitLinesAttributesFileName = this.config.transit().getTransitLinesAttributesFile();
 			log.info("loading transit lines attributes from " + transitLinesAttributesFileName);
@@ -0,0 +1,198 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * ScenarioSnapshotFormat.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2016 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.scenario;
+
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Constants and helpers for the scenario snapshots written by {@link ScenarioSnapshotWriter} and read by
+ * {@link ScenarioSnapshotReader}.
+ * <p></p>
+ * A snapshot consists of the {@link #MAGIC} bytes, the {@link #VERSION} (int), the source (a string written with
+ * {@link DataOutput#writeUTF(String)} describing the input files the snapshot was created from) and a sequence of
+ * chunks, terminated by a chunk of kind {@link #END}. A chunk has the following layout (ints are 4 byte big endian):
+ * <pre>
+ * byte kind, int numberOfRecords, int length, byte[length] records
+ * </pre>
+ * Every chunk can be decoded on its own, so chunks of the same kind can be decoded in parallel. The chunks are
+ * written in the order network, nodes, links, facilities, facility records, population, persons, transit stops,
+ * transit lines, vehicle types, vehicles, transit vehicle types, transit vehicles, households; the first chunk of
+ * the network, the facilities and the population only holds the attributes of its container. Chunks may only
+ * refer to objects of earlier kinds, e.g. the transit lines to the stops.
+ * <p></p>
+ * Records consist of varints, doubles (8 bytes big endian) and strings. The first occurrence of a string in a
+ * chunk is written as varint <code>0</code> followed by the varint length and the UTF-8 bytes, later occurrences
+ * as varint <code>index + 1</code> into the strings of the chunk in the order of their first occurrence.
+ */
+/*package*/ final class ScenarioSnapshotFormat {
+
+	/*package*/ static final byte[] MAGIC = {'M', 'A', 'T', 'S', 'I', 'M', 'S', 'S'};
+	/*package*/ static final int VERSION = 2;
+
+	/*package*/ static final byte END = 0;
+	/*package*/ static final byte NETWORK = 1;
+	/*package*/ static final byte NODES = 2;
+	/*package*/ static final byte LINKS = 3;
+	/*package*/ static final byte FACILITIES = 4;
+	/*package*/ static final byte FACILITY_RECORDS = 5;
+	/*package*/ static final byte POPULATION = 6;
+	/*package*/ static final byte PERSONS = 7;
+	/*package*/ static final byte TRANSIT_STOPS = 8;
+	/*package*/ static final byte TRANSIT_LINES = 9;
+	/*package*/ static final byte VEHICLE_TYPES = 10;
+	/*package*/ static final byte VEHICLES = 11;
+	/*package*/ static final byte TRANSIT_VEHICLE_TYPES = 12;
+	/*package*/ static final byte TRANSIT_VEHICLES = 13;
+	/*package*/ static final byte HOUSEHOLDS = 14;
+
+	/** kind (1 byte), number of records and length (4 bytes each) */
+	/*package*/ static final int CHUNK_HEADER_LENGTH = 9;
+
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	private ScenarioSnapshotFormat() {
+	}
+
+	/**
+	 * A growable byte array to encode a chunk into.
+	 */
+	/*package*/ static final class Sink {
+
+		private byte[] data = new byte[1 << 16];
+		private int size = 0;
+		private final Map<String, Integer> strings = new HashMap<>();
+
+		private void ensureCapacity(final int additional) {
+			if (this.size + additional > this.data.length) {
+				this.data = Arrays.copyOf(this.data, Math.max(2 * this.data.length, this.size + additional));
+			}
+		}
+
+		/*package*/ void writeVarInt(final int value) {
+			ensureCapacity(5);
+			int v = value;
+			while ((v & ~0x7F) != 0) {
+				this.data[this.size++] = (byte) ((v & 0x7F) | 0x80);
+				v >>>= 7;
+			}
+			this.data[this.size++] = (byte) v;
+		}
+
+		/*package*/ void writeDouble(final double value) {
+			ensureCapacity(8);
+			long bits = Double.doubleToRawLongBits(value);
+			for (int i = 56; i >= 0; i -= 8) {
+				this.data[this.size++] = (byte) (bits >>> i);
+			}
+		}
+
+		/*package*/ void writeString(final String value) {
+			Integer index = this.strings.get(value);
+			if (index != null) {
+				writeVarInt(index + 1);
+				return;
+			}
+			this.strings.put(value, this.strings.size());
+			writeVarInt(0);
+			byte[] bytes = value.getBytes(UTF8);
+			writeVarInt(bytes.length);
+			ensureCapacity(bytes.length);
+			System.arraycopy(bytes, 0, this.data, this.size, bytes.length);
+			this.size += bytes.length;
+		}
+
+		/*package*/ int size() {
+			return this.size;
+		}
+
+		/**
+		 * Writes the chunk header and the records to the output and clears the sink for the next chunk.
+		 */
+		/*package*/ void writeChunk(final DataOutput out, final byte kind, final int numberOfRecords) throws IOException {
+			out.writeByte(kind);
+			out.writeInt(numberOfRecords);
+			out.writeInt(this.size);
+			out.write(this.data, 0, this.size);
+			this.size = 0;
+			this.strings.clear();
+		}
+	}
+
+	/**
+	 * Reads the records of a chunk.
+	 */
+	/*package*/ static final class Source {
+
+		private final ByteBuffer buffer;
+		private final List<String> strings = new ArrayList<>();
+
+		/*package*/ Source(final ByteBuffer buffer) {
+			this.buffer = buffer;
+		}
+
+		/*package*/ int readVarInt() {
+			int value = 0;
+			int shift = 0;
+			byte b;
+			do {
+				if (shift > 28) {
+					throw new IllegalStateException("malformed varint at position " + this.buffer.position());
+				}
+				b = this.buffer.get();
+				value |= (b & 0x7F) << shift;
+				shift += 7;
+			} while ((b & 0x80) != 0);
+			return value;
+		}
+
+		/*package*/ double readDouble() {
+			return this.buffer.getDouble();
+		}
+
+		/*package*/ String readString() {
+			int index = readVarInt();
+			if (index > 0) {
+				return this.strings.get(index - 1);
+			}
+			int length = readVarInt();
+			String value;
+			if (this.buffer.hasArray()) {
+				value = new String(this.buffer.array(), this.buffer.arrayOffset() + this.buffer.position(), length, UTF8);
+				this.buffer.position(this.buffer.position() + length);
+			} else {
+				byte[] bytes = new byte[length];
+				this.buffer.get(bytes);
+				value = new String(bytes, UTF8);
+			}
+			this.strings.add(value);
+			return value;
+		}
+	}
+
+}
@@ -0,0 +1,708 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * ScenarioSnapshotReader.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2016 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.scenario;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+import org.apache.log4j.Logger;
+import org.matsim.api.core.v01.Coord;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.Scenario;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.api.core.v01.network.Node;
+import org.matsim.api.core.v01.population.Activity;
+import org.matsim.api.core.v01.population.Leg;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.api.core.v01.population.Plan;
+import org.matsim.api.core.v01.population.Route;
+import org.matsim.core.network.NetworkUtils;
+import org.matsim.core.population.PersonUtils;
+import org.matsim.core.population.PopulationUtils;
+import org.matsim.core.population.routes.NetworkRoute;
+import org.matsim.core.population.routes.RouteFactories;
+import org.matsim.core.scenario.ScenarioSnapshotFormat.Source;
+import org.matsim.core.utils.io.UncheckedIOException;
+import org.matsim.facilities.ActivityFacilities;
+import org.matsim.facilities.ActivityFacilitiesFactory;
+import org.matsim.facilities.ActivityFacility;
+import org.matsim.facilities.ActivityFacilityImpl;
+import org.matsim.facilities.ActivityOption;
+import org.matsim.facilities.OpeningTimeImpl;
+import org.matsim.households.Household;
+import org.matsim.households.HouseholdImpl;
+import org.matsim.households.HouseholdsImpl;
+import org.matsim.households.Income;
+import org.matsim.households.Income.IncomePeriod;
+import org.matsim.pt.transitSchedule.api.Departure;
+import org.matsim.pt.transitSchedule.api.TransitLine;
+import org.matsim.pt.transitSchedule.api.TransitRoute;
+import org.matsim.pt.transitSchedule.api.TransitRouteStop;
+import org.matsim.pt.transitSchedule.api.TransitSchedule;
+import org.matsim.pt.transitSchedule.api.TransitScheduleFactory;
+import org.matsim.pt.transitSchedule.api.TransitStopFacility;
+import org.matsim.vehicles.EngineInformation.FuelType;
+import org.matsim.vehicles.Vehicle;
+import org.matsim.vehicles.VehicleCapacity;
+import org.matsim.vehicles.VehicleType;
+import org.matsim.vehicles.VehicleType.DoorOperationMode;
+import org.matsim.vehicles.Vehicles;
+import org.matsim.vehicles.VehiclesFactory;
+
+/**
+ * Reads a snapshot written by {@link ScenarioSnapshotWriter} into the network, facilities, population, transit
+ * schedule, vehicles, transit vehicles and households of a scenario, which should be empty. The chunks of the snapshot are mapped into memory and decoded on
+ * <code>global.numberOfThreads</code> threads; the objects are added to the scenario in the order in which they
+ * were written.
+ */
+public final class ScenarioSnapshotReader {
+
+	private static final Logger log = Logger.getLogger(ScenarioSnapshotReader.class);
+
+	private final Scenario scenario;
+	private final int numberOfThreads;
+	private ExecutorService executor = null;
+	private final ArrayDeque<Future<List<Object>>> pending = new ArrayDeque<>();
+
+	public ScenarioSnapshotReader(final Scenario scenario) {
+		this.scenario = scenario;
+		this.numberOfThreads = scenario.getConfig().global().getNumberOfThreads();
+	}
+
+	/**
+	 * @return the source stored by {@link ScenarioSnapshotWriter#setSource(String)}, <code>null</code> if the file
+	 * is not a snapshot of the current version
+	 */
+	public static String readSource(final String filename) {
+		try (RandomAccessFile file = new RandomAccessFile(filename, "r")) {
+			return readHeader(file);
+		} catch (IOException e) {
+			throw new UncheckedIOException("could not read scenario snapshot " + filename, e);
+		}
+	}
+
+	private static String readHeader(final RandomAccessFile file) throws IOException {
+		if (file.length() < ScenarioSnapshotFormat.MAGIC.length + 4) {
+			return null;
+		}
+		byte[] magic = new byte[ScenarioSnapshotFormat.MAGIC.length];
+		file.readFully(magic);
+		if (!Arrays.equals(magic, ScenarioSnapshotFormat.MAGIC) || file.readInt() != ScenarioSnapshotFormat.VERSION) {
+			return null;
+		}
+		return file.readUTF();
+	}
+
+	public void readFile(final String filename) {
+		log.info("reading scenario snapshot from " + filename);
+		if (this.numberOfThreads > 1) {
+			this.executor = Executors.newFixedThreadPool(this.numberOfThreads, new ThreadFactory() {
+				private int cnt = 0;
+				@Override
+				public Thread newThread(Runnable r) {
+					Thread thread = new Thread(r, ScenarioSnapshotReader.class.getSimpleName() + "-" + this.cnt++);
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+		}
+		try (RandomAccessFile file = new RandomAccessFile(filename, "r")) {
+			if (readHeader(file) == null) {
+				throw new UncheckedIOException(filename + " is not a scenario snapshot of version " + ScenarioSnapshotFormat.VERSION);
+			}
+			FileChannel channel = file.getChannel();
+			byte pendingKind = ScenarioSnapshotFormat.END;
+			while (true) {
+				byte kind = file.readByte();
+				int numberOfRecords = file.readInt();
+				int length = file.readInt();
+				if (kind != pendingKind) {
+					// e.g. all nodes must be added before the links can be decoded
+					while (!this.pending.isEmpty()) {
+						add(pendingKind, this.pending.poll());
+					}
+					pendingKind = kind;
+				}
+				if (kind == ScenarioSnapshotFormat.END) {
+					break;
+				}
+				ByteBuffer records = channel.map(FileChannel.MapMode.READ_ONLY, file.getFilePointer(), length);
+				file.seek(file.getFilePointer() + length);
+				ChunkDecoder decoder = new ChunkDecoder(kind, numberOfRecords, records);
+				if (this.executor == null || kind == ScenarioSnapshotFormat.NETWORK || kind == ScenarioSnapshotFormat.FACILITIES
+						|| kind == ScenarioSnapshotFormat.POPULATION) {
+					add(kind, decoder.call());
+				} else {
+					if (this.pending.size() == 2 * this.numberOfThreads) {
+						add(kind, this.pending.poll());
+					}
+					this.pending.add(this.executor.submit(decoder));
+				}
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException("could not read scenario snapshot " + filename, e);
+		} finally {
+			if (this.executor != null) {
+				this.executor.shutdownNow();
+				this.executor = null;
+			}
+			this.pending.clear();
+		}
+		log.info("read " + this.scenario.getNetwork().getLinks().size() + " links, "
+				+ this.scenario.getActivityFacilities().getFacilities().size() + " facilities, "
+				+ this.scenario.getPopulation().getPersons().size() + " persons, "
+				+ this.scenario.getTransitSchedule().getTransitLines().size() + " transit lines, "
+				+ this.scenario.getVehicles().getVehicles().size() + " vehicles, "
+				+ this.scenario.getTransitVehicles().getVehicles().size() + " transit vehicles and "
+				+ this.scenario.getHouseholds().getHouseholds().size() + " households from the snapshot.");
+	}
+
+	private void add(final byte kind, final Future<List<Object>> chunk) {
+		List<Object> objects;
+		try {
+			objects = chunk.get();
+		} catch (InterruptedException e) {
+			throw new RuntimeException(e);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) e.getCause();
+			}
+			throw new RuntimeException(e.getCause());
+		}
+		add(kind, objects);
+	}
+
+	@SuppressWarnings("unchecked")
+	private void add(final byte kind, final List<Object> objects) {
+		switch (kind) {
+		case ScenarioSnapshotFormat.NODES:
+			for (Object node : objects) {
+				this.scenario.getNetwork().addNode((Node) node);
+			}
+			break;
+		case ScenarioSnapshotFormat.LINKS:
+			for (int i = 0; i < objects.size(); i += 2) {
+				Link link = (Link) objects.get(i);
+				// the modes are set here, the cache of mode sets of the links is not thread-safe
+				link.setAllowedModes((Set<String>) objects.get(i + 1));
+				this.scenario.getNetwork().addLink(link);
+			}
+			break;
+		case ScenarioSnapshotFormat.FACILITY_RECORDS:
+			for (Object facility : objects) {
+				this.scenario.getActivityFacilities().addActivityFacility((ActivityFacility) facility);
+			}
+			break;
+		case ScenarioSnapshotFormat.PERSONS:
+			for (Object person : objects) {
+				this.scenario.getPopulation().addPerson((Person) person);
+			}
+			break;
+		case ScenarioSnapshotFormat.TRANSIT_STOPS:
+			for (Object stop : objects) {
+				this.scenario.getTransitSchedule().addStopFacility((TransitStopFacility) stop);
+			}
+			break;
+		case ScenarioSnapshotFormat.TRANSIT_LINES:
+			for (Object line : objects) {
+				this.scenario.getTransitSchedule().addTransitLine((TransitLine) line);
+			}
+			break;
+		case ScenarioSnapshotFormat.VEHICLE_TYPES:
+		case ScenarioSnapshotFormat.TRANSIT_VEHICLE_TYPES:
+			for (Object type : objects) {
+				getVehicles(kind).addVehicleType((VehicleType) type);
+			}
+			break;
+		case ScenarioSnapshotFormat.VEHICLES:
+		case ScenarioSnapshotFormat.TRANSIT_VEHICLES:
+			for (Object vehicle : objects) {
+				getVehicles(kind).addVehicle((Vehicle) vehicle);
+			}
+			break;
+		case ScenarioSnapshotFormat.HOUSEHOLDS:
+			for (Object household : objects) {
+				((HouseholdsImpl) this.scenario.getHouseholds()).addHousehold((Household) household);
+			}
+			break;
+		default:
+			// the attributes of the containers are set while decoding
+			break;
+		}
+	}
+
+	private Vehicles getVehicles(final byte kind) {
+		if (kind == ScenarioSnapshotFormat.TRANSIT_VEHICLE_TYPES || kind == ScenarioSnapshotFormat.TRANSIT_VEHICLES) {
+			return this.scenario.getTransitVehicles();
+		}
+		return this.scenario.getVehicles();
+	}
+
+	/**
+	 * Decodes the records of one chunk.
+	 */
+	private final class ChunkDecoder implements Callable<List<Object>> {
+
+		private final byte kind;
+		private final int numberOfRecords;
+		private final Source in;
+
+		ChunkDecoder(final byte kind, final int numberOfRecords, final ByteBuffer records) {
+			this.kind = kind;
+			this.numberOfRecords = numberOfRecords;
+			this.in = new Source(records);
+		}
+
+		@Override
+		public List<Object> call() {
+			List<Object> objects = new ArrayList<>(this.numberOfRecords);
+			switch (this.kind) {
+			case ScenarioSnapshotFormat.NETWORK:
+				readNetwork(scenario.getNetwork());
+				break;
+			case ScenarioSnapshotFormat.NODES:
+				for (int i = 0; i < this.numberOfRecords; i++) {
+					objects.add(readNode(scenario.getNetwork()));
+				}
+				break;
+			case ScenarioSnapshotFormat.LINKS:
+				for (int i = 0; i < this.numberOfRecords; i++) {
+					readLink(scenario.getNetwork(), objects);
+				}
+				break;
+			case ScenarioSnapshotFormat.FACILITIES:
+				scenario.getActivityFacilities().setName(readName());
+				break;
+			case ScenarioSnapshotFormat.FACILITY_RECORDS:
+				for (int i = 0; i < this.numberOfRecords; i++) {
+					objects.add(readFacility(scenario.getActivityFacilities()));
+				}
+				break;
+			case ScenarioSnapshotFormat.POPULATION:
+				scenario.getPopulation().setName(readName());
+				break;
+			case ScenarioSnapshotFormat.PERSONS:
+				RouteFactories routeFactories = scenario.getPopulation().getFactory().getRouteFactories();
+				for (int i = 0; i < this.numberOfRecords; i++) {
+					objects.add(readPerson(routeFactories));
+				}
+				break;
+			case ScenarioSnapshotFormat.TRANSIT_STOPS:
+				for (int i = 0; i < this.numberOfRecords; i++) {
+					objects.add(readTransitStop(scenario.getTransitSchedule().getFactory()));
+				}
+				break;
+			case ScenarioSnapshotFormat.TRANSIT_LINES:
+				RouteFactories lineRouteFactories = scenario.getPopulation().getFactory().getRouteFactories();
+				for (int i = 0; i < this.numberOfRecords; i++) {
+					objects.add(readTransitLine(scenario.getTransitSchedule(), lineRouteFactories));
+				}
+				break;
+			case ScenarioSnapshotFormat.VEHICLE_TYPES:
+			case ScenarioSnapshotFormat.TRANSIT_VEHICLE_TYPES:
+				for (int i = 0; i < this.numberOfRecords; i++) {
+					objects.add(readVehicleType(getVehicles(this.kind).getFactory()));
+				}
+				break;
+			case ScenarioSnapshotFormat.VEHICLES:
+			case ScenarioSnapshotFormat.TRANSIT_VEHICLES:
+				for (int i = 0; i < this.numberOfRecords; i++) {
+					objects.add(readVehicle(getVehicles(this.kind)));
+				}
+				break;
+			case ScenarioSnapshotFormat.HOUSEHOLDS:
+				for (int i = 0; i < this.numberOfRecords; i++) {
+					objects.add(readHousehold());
+				}
+				break;
+			default:
+				throw new IllegalStateException("unknown chunk kind " + this.kind);
+			}
+			return objects;
+		}
+
+		private void readNetwork(final Network network) {
+			network.setName(readName());
+			network.setCapacityPeriod(this.in.readDouble());
+			network.setEffectiveCellSize(this.in.readDouble());
+			network.setEffectiveLaneWidth(this.in.readDouble());
+		}
+
+		private Node readNode(final Network network) {
+			int flags = this.in.readVarInt();
+			Id<Node> id = Id.create(this.in.readString(), Node.class);
+			Node node = network.getFactory().createNode(id, new Coord(this.in.readDouble(), this.in.readDouble()));
+			if ((flags & 1) != 0) {
+				NetworkUtils.setType(node, this.in.readString());
+			}
+			if ((flags & 2) != 0) {
+				NetworkUtils.setOrigId(node, this.in.readString());
+			}
+			return node;
+		}
+
+		private void readLink(final Network network, final List<Object> objects) {
+			int flags = this.in.readVarInt();
+			Id<Link> id = Id.create(this.in.readString(), Link.class);
+			Node fromNode = getNode(network, this.in.readString());
+			Node toNode = getNode(network, this.in.readString());
+			Link link = network.getFactory().createLink(id, fromNode, toNode);
+			link.setLength(this.in.readDouble());
+			link.setFreespeed(this.in.readDouble());
+			link.setCapacity(this.in.readDouble());
+			link.setNumberOfLanes(this.in.readDouble());
+			int nOfModes = this.in.readVarInt();
+			Set<String> modes = new HashSet<>();
+			for (int i = 0; i < nOfModes; i++) {
+				modes.add(this.in.readString().intern());
+			}
+			if ((flags & 1) != 0) {
+				NetworkUtils.setType(link, this.in.readString());
+			}
+			if ((flags & 2) != 0) {
+				NetworkUtils.setOrigId(link, this.in.readString());
+			}
+			objects.add(link);
+			objects.add(modes);
+		}
+
+		private Node getNode(final Network network, final String nodeId) {
+			Node node = network.getNodes().get(Id.create(nodeId, Node.class));
+			if (node == null) {
+				throw new RuntimeException("node id given by link cannot be dereferenced; node label=" + nodeId);
+			}
+			return node;
+		}
+
+		private ActivityFacility readFacility(final ActivityFacilities facilities) {
+			ActivityFacilitiesFactory factory = facilities.getFactory();
+			int flags = this.in.readVarInt();
+			Id<ActivityFacility> id = Id.create(this.in.readString(), ActivityFacility.class);
+			Coord coord = (flags & 1) != 0 ? new Coord(this.in.readDouble(), this.in.readDouble()) : null;
+			Id<Link> linkId = (flags & 2) != 0 ? Id.create(this.in.readString(), Link.class) : null;
+			ActivityFacility facility;
+			if (coord == null) {
+				facility = factory.createActivityFacility(id, linkId);
+			} else if (linkId == null) {
+				facility = factory.createActivityFacility(id, coord);
+			} else {
+				facility = factory.createActivityFacility(id, coord, linkId);
+			}
+			if ((flags & 4) != 0) {
+				((ActivityFacilityImpl) facility).setDesc(this.in.readString());
+			}
+			int nOfOptions = this.in.readVarInt();
+			for (int i = 0; i < nOfOptions; i++) {
+				ActivityOption option = factory.createActivityOption(this.in.readString());
+				option.setCapacity(this.in.readDouble());
+				int nOfOpeningTimes = this.in.readVarInt();
+				for (int j = 0; j < nOfOpeningTimes; j++) {
+					option.addOpeningTime(new OpeningTimeImpl(this.in.readDouble(), this.in.readDouble()));
+				}
+				facility.addActivityOption(option);
+			}
+			return facility;
+		}
+
+		private Person readPerson(final RouteFactories routeFactories) {
+			int flags = this.in.readVarInt();
+			Person person = PopulationUtils.getFactory().createPerson(Id.create(this.in.readString(), Person.class));
+			if ((flags & 1) != 0) {
+				PersonUtils.setSex(person, this.in.readString());
+			}
+			if ((flags & 2) != 0) {
+				PersonUtils.setAge(person, this.in.readVarInt());
+			}
+			if ((flags & 4) != 0) {
+				PersonUtils.setLicence(person, this.in.readString());
+			}
+			if ((flags & 8) != 0) {
+				PersonUtils.setCarAvail(person, this.in.readString());
+			}
+			if ((flags & 16) != 0) {
+				PersonUtils.setEmployed(person, (flags & 32) != 0);
+			}
+			if ((flags & 64) != 0) {
+				int nOfTravelcards = this.in.readVarInt();
+				for (int i = 0; i < nOfTravelcards; i++) {
+					PersonUtils.addTravelcard(person, this.in.readString());
+				}
+			}
+			int nOfPlans = this.in.readVarInt();
+			int selected = this.in.readVarInt() - 1;
+			for (int i = 0; i < nOfPlans; i++) {
+				person.addPlan(readPlan(person, routeFactories));
+			}
+			person.setSelectedPlan(selected < 0 ? null : person.getPlans().get(selected));
+			return person;
+		}
+
+		private Plan readPlan(final Person person, final RouteFactories routeFactories) {
+			Plan plan = PopulationUtils.createPlan(person);
+			int flags = this.in.readVarInt();
+			if ((flags & 1) != 0) {
+				plan.setScore(this.in.readDouble());
+			}
+			if ((flags & 2) != 0) {
+				plan.setType(this.in.readString());
+			}
+			int nOfElements = this.in.readVarInt();
+			for (int i = 0; i < nOfElements; i++) {
+				int elementFlags = this.in.readVarInt();
+				if ((elementFlags & 1) == 0) {
+					plan.addActivity(readActivity(elementFlags));
+				} else {
+					plan.addLeg(readLeg(elementFlags, routeFactories));
+				}
+			}
+			return plan;
+		}
+
+		private Activity readActivity(final int flags) {
+			String type = this.in.readString();
+			Id<Link> linkId = (flags & 2) != 0 ? Id.create(this.in.readString(), Link.class) : null;
+			Coord coord = (flags & 4) != 0 ? new Coord(this.in.readDouble(), this.in.readDouble()) : null;
+			Activity act;
+			if (linkId != null) {
+				act = PopulationUtils.createActivityFromLinkId(type, linkId);
+				if (coord != null) {
+					act.setCoord(coord);
+				}
+			} else {
+				act = PopulationUtils.createActivityFromCoord(type, coord);
+			}
+			if ((flags & 8) != 0) {
+				act.setFacilityId(Id.create(this.in.readString(), ActivityFacility.class));
+			}
+			act.setStartTime(this.in.readDouble());
+			act.setEndTime(this.in.readDouble());
+			act.setMaximumDuration(this.in.readDouble());
+			return act;
+		}
+
+		private Leg readLeg(final int flags, final RouteFactories routeFactories) {
+			Leg leg = PopulationUtils.createLeg(this.in.readString());
+			leg.setDepartureTime(this.in.readDouble());
+			leg.setTravelTime(this.in.readDouble());
+			if ((flags & 2) == 0) {
+				return leg;
+			}
+			String routeType = this.in.readString();
+			Id<Link> startLinkId = (flags & 4) != 0 ? Id.create(this.in.readString(), Link.class) : null;
+			Id<Link> endLinkId = (flags & 8) != 0 ? Id.create(this.in.readString(), Link.class) : null;
+			Route route = routeFactories.createRoute(routeFactories.getRouteClassForType(routeType), startLinkId, endLinkId);
+			route.setTravelTime(this.in.readDouble());
+			route.setDistance(this.in.readDouble());
+			if ((flags & 16) != 0) {
+				if (!(route instanceof NetworkRoute)) {
+					throw new IllegalStateException("route type " + routeType + " does not create network routes.");
+				}
+				NetworkRoute networkRoute = (NetworkRoute) route;
+				if ((flags & 32) != 0) {
+					networkRoute.setVehicleId(Id.create(this.in.readString(), Vehicle.class));
+				}
+				int nOfLinks = this.in.readVarInt();
+				List<Id<Link>> linkIds = new ArrayList<>(nOfLinks);
+				for (int i = 0; i < nOfLinks; i++) {
+					linkIds.add(Id.create(this.in.readString(), Link.class));
+				}
+				networkRoute.setLinkIds(startLinkId, linkIds, endLinkId);
+			} else if ((flags & 64) != 0) {
+				route.setRouteDescription(this.in.readString());
+			}
+			leg.setRoute(route);
+			return leg;
+		}
+
+		private TransitStopFacility readTransitStop(final TransitScheduleFactory factory) {
+			int flags = this.in.readVarInt();
+			Id<TransitStopFacility> id = Id.create(this.in.readString(), TransitStopFacility.class);
+			Coord coord = new Coord(this.in.readDouble(), this.in.readDouble());
+			TransitStopFacility stop = factory.createTransitStopFacility(id, coord, (flags & 8) != 0);
+			if ((flags & 1) != 0) {
+				stop.setLinkId(Id.create(this.in.readString(), Link.class));
+			}
+			if ((flags & 2) != 0) {
+				stop.setName(this.in.readString());
+			}
+			if ((flags & 4) != 0) {
+				stop.setStopPostAreaId(this.in.readString());
+			}
+			return stop;
+		}
+
+		private TransitLine readTransitLine(final TransitSchedule schedule, final RouteFactories routeFactories) {
+			TransitScheduleFactory factory = schedule.getFactory();
+			int flags = this.in.readVarInt();
+			TransitLine line = factory.createTransitLine(Id.create(this.in.readString(), TransitLine.class));
+			if ((flags & 1) != 0) {
+				line.setName(this.in.readString());
+			}
+			int nOfRoutes = this.in.readVarInt();
+			for (int i = 0; i < nOfRoutes; i++) {
+				line.addRoute(readTransitRoute(schedule, routeFactories));
+			}
+			return line;
+		}
+
+		private TransitRoute readTransitRoute(final TransitSchedule schedule, final RouteFactories routeFactories) {
+			TransitScheduleFactory factory = schedule.getFactory();
+			int flags = this.in.readVarInt();
+			Id<TransitRoute> id = Id.create(this.in.readString(), TransitRoute.class);
+			String mode = this.in.readString().intern();
+			String description = (flags & 1) != 0 ? this.in.readString() : null;
+			int nOfStops = this.in.readVarInt();
+			List<TransitRouteStop> stops = new ArrayList<>(nOfStops);
+			for (int i = 0; i < nOfStops; i++) {
+				int stopFlags = this.in.readVarInt();
+				String stopId = this.in.readString();
+				TransitStopFacility facility = schedule.getFacilities().get(Id.create(stopId, TransitStopFacility.class));
+				if (facility == null) {
+					throw new RuntimeException("no stop/facility with id " + stopId);
+				}
+				TransitRouteStop stop = factory.createTransitRouteStop(facility, this.in.readDouble(), this.in.readDouble());
+				stop.setAwaitDepartureTime((stopFlags & 1) != 0);
+				stops.add(stop);
+			}
+			NetworkRoute networkRoute = null;
+			if ((flags & 2) != 0) {
+				Id<Link> startLinkId = Id.create(this.in.readString(), Link.class);
+				Id<Link> endLinkId = Id.create(this.in.readString(), Link.class);
+				int nOfLinks = this.in.readVarInt();
+				List<Id<Link>> linkIds = new ArrayList<>(nOfLinks);
+				for (int i = 0; i < nOfLinks; i++) {
+					linkIds.add(Id.create(this.in.readString(), Link.class));
+				}
+				networkRoute = routeFactories.createRoute(NetworkRoute.class, startLinkId, endLinkId);
+				networkRoute.setLinkIds(startLinkId, linkIds, endLinkId);
+			}
+			TransitRoute route = factory.createTransitRoute(id, networkRoute, stops, mode);
+			route.setDescription(description);
+			int nOfDepartures = this.in.readVarInt();
+			for (int i = 0; i < nOfDepartures; i++) {
+				int departureFlags = this.in.readVarInt();
+				Departure departure = factory.createDeparture(Id.create(this.in.readString(), Departure.class), this.in.readDouble());
+				if ((departureFlags & 1) != 0) {
+					departure.setVehicleId(Id.create(this.in.readString(), Vehicle.class));
+				}
+				route.addDeparture(departure);
+			}
+			return route;
+		}
+
+		private VehicleType readVehicleType(final VehiclesFactory factory) {
+			int flags = this.in.readVarInt();
+			VehicleType type = factory.createVehicleType(Id.create(this.in.readString(), VehicleType.class));
+			if ((flags & 1) != 0) {
+				type.setDescription(this.in.readString());
+			}
+			type.setLength(this.in.readDouble());
+			type.setWidth(this.in.readDouble());
+			type.setMaximumVelocity(this.in.readDouble());
+			type.setAccessTime(this.in.readDouble());
+			type.setEgressTime(this.in.readDouble());
+			type.setPcuEquivalents(this.in.readDouble());
+			type.setDoorOperationMode(DoorOperationMode.valueOf(this.in.readString()));
+			if ((flags & 2) != 0) {
+				VehicleCapacity capacity = factory.createVehicleCapacity();
+				int capacityFlags = this.in.readVarInt();
+				if ((capacityFlags & 1) != 0) {
+					capacity.setSeats(this.in.readVarInt());
+				}
+				if ((capacityFlags & 2) != 0) {
+					capacity.setStandingRoom(this.in.readVarInt());
+				}
+				if ((capacityFlags & 4) != 0) {
+					capacity.setFreightCapacity(factory.createFreigthCapacity());
+					capacity.getFreightCapacity().setVolume(this.in.readDouble());
+				}
+				type.setCapacity(capacity);
+			}
+			if ((flags & 4) != 0) {
+				type.setEngineInformation(factory.createEngineInformation(FuelType.valueOf(this.in.readString()), this.in.readDouble()));
+			}
+			return type;
+		}
+
+		private Vehicle readVehicle(final Vehicles vehicles) {
+			Id<Vehicle> id = Id.create(this.in.readString(), Vehicle.class);
+			String typeId = this.in.readString();
+			VehicleType type = vehicles.getVehicleTypes().get(Id.create(typeId, VehicleType.class));
+			if (type == null) {
+				throw new RuntimeException("no vehicle type with id " + typeId);
+			}
+			return vehicles.getFactory().createVehicle(id, type);
+		}
+
+		private Household readHousehold() {
+			int flags = this.in.readVarInt();
+			HouseholdImpl household = (HouseholdImpl) scenario.getHouseholds().getFactory().createHousehold(Id.create(this.in.readString(), Household.class));
+			// the factory creates empty lists
+			household.setMemberIds(null);
+			household.setVehicleIds(null);
+			if ((flags & 1) != 0) {
+				int nOfMembers = this.in.readVarInt();
+				List<Id<Person>> memberIds = new ArrayList<>(nOfMembers);
+				for (int i = 0; i < nOfMembers; i++) {
+					memberIds.add(Id.create(this.in.readString(), Person.class));
+				}
+				household.setMemberIds(memberIds);
+			}
+			if ((flags & 2) != 0) {
+				int nOfVehicles = this.in.readVarInt();
+				List<Id<Vehicle>> vehicleIds = new ArrayList<>(nOfVehicles);
+				for (int i = 0; i < nOfVehicles; i++) {
+					vehicleIds.add(Id.create(this.in.readString(), Vehicle.class));
+				}
+				household.setVehicleIds(vehicleIds);
+			}
+			if ((flags & 4) != 0) {
+				double amount = this.in.readDouble();
+				Income income = scenario.getHouseholds().getFactory().createIncome(amount, IncomePeriod.valueOf(this.in.readString()));
+				if ((flags & 8) != 0) {
+					income.setCurrency(this.in.readString());
+				}
+				household.setIncome(income);
+			}
+			return household;
+		}
+
+		private String readName() {
+			return this.in.readVarInt() != 0 ? this.in.readString() : null;
+		}
+	}
+
+}
@@ -0,0 +1,543 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * ScenarioSnapshotWriter.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2016 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.scenario;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.Set;
+
+import org.apache.log4j.Logger;
+import org.matsim.api.core.v01.Coord;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.Scenario;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.api.core.v01.network.Node;
+import org.matsim.api.core.v01.population.Activity;
+import org.matsim.api.core.v01.population.Leg;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.api.core.v01.population.Plan;
+import org.matsim.api.core.v01.population.PlanElement;
+import org.matsim.api.core.v01.population.Population;
+import org.matsim.api.core.v01.population.Route;
+import org.matsim.core.api.internal.MatsimWriter;
+import org.matsim.core.network.NetworkUtils;
+import org.matsim.core.population.PersonUtils;
+import org.matsim.core.population.routes.NetworkRoute;
+import org.matsim.core.scenario.ScenarioSnapshotFormat.Sink;
+import org.matsim.core.utils.io.UncheckedIOException;
+import org.matsim.facilities.ActivityFacilities;
+import org.matsim.facilities.ActivityFacility;
+import org.matsim.facilities.ActivityFacilityImpl;
+import org.matsim.facilities.ActivityOption;
+import org.matsim.facilities.OpeningTime;
+import org.matsim.households.Household;
+import org.matsim.households.Households;
+import org.matsim.households.Income;
+import org.matsim.pt.transitSchedule.api.Departure;
+import org.matsim.pt.transitSchedule.api.TransitLine;
+import org.matsim.pt.transitSchedule.api.TransitRoute;
+import org.matsim.pt.transitSchedule.api.TransitRouteStop;
+import org.matsim.pt.transitSchedule.api.TransitSchedule;
+import org.matsim.pt.transitSchedule.api.TransitStopFacility;
+import org.matsim.vehicles.EngineInformation;
+import org.matsim.vehicles.Vehicle;
+import org.matsim.vehicles.VehicleCapacity;
+import org.matsim.vehicles.VehicleType;
+import org.matsim.vehicles.Vehicles;
+
+/**
+ * Writes the network, the facilities, the population, the transit schedule, the vehicles, the transit vehicles and
+ * the households of a scenario to a binary snapshot, which {@link ScenarioSnapshotReader} reads much faster than the
+ * XML files, see {@link ScenarioSnapshotFormat}. The snapshot contains the same information as these files, with
+ * the exception of the desires of persons, which the population readers ignore anyway. The object attributes,
+ * network change events and lanes are not part of it and are still read from their files.
+ * <p></p>
+ * Use {@link org.matsim.core.config.groups.ScenarioConfigGroup#setSnapshotFile(String)} to let
+ * {@link ScenarioUtils#loadScenario(org.matsim.core.config.Config)} create and use snapshots.
+ */
+public final class ScenarioSnapshotWriter implements MatsimWriter {
+
+	private static final Logger log = Logger.getLogger(ScenarioSnapshotWriter.class);
+
+	/*package*/ static final int NODES_PER_CHUNK = 16384;
+	/*package*/ static final int LINKS_PER_CHUNK = 8192;
+	/*package*/ static final int FACILITIES_PER_CHUNK = 4096;
+	/*package*/ static final int PERSONS_PER_CHUNK = 512;
+	/*package*/ static final int TRANSIT_STOPS_PER_CHUNK = 8192;
+	/*package*/ static final int TRANSIT_LINES_PER_CHUNK = 64;
+	/*package*/ static final int VEHICLES_PER_CHUNK = 16384;
+	/*package*/ static final int HOUSEHOLDS_PER_CHUNK = 4096;
+
+	private final Scenario scenario;
+	private String source = "";
+
+	public ScenarioSnapshotWriter(final Scenario scenario) {
+		this.scenario = scenario;
+	}
+
+	/**
+	 * Sets the description of the input files the scenario was read from, which is stored in the snapshot and
+	 * can be compared with {@link ScenarioSnapshotReader#readSource(String)}.
+	 */
+	public void setSource(final String source) {
+		this.source = source;
+	}
+
+	@Override
+	public void write(final String filename) {
+		log.info("writing scenario snapshot to " + filename);
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(filename), 1 << 16))) {
+			out.write(ScenarioSnapshotFormat.MAGIC);
+			out.writeInt(ScenarioSnapshotFormat.VERSION);
+			out.writeUTF(this.source);
+			Sink sink = new Sink();
+			writeNetwork(this.scenario.getNetwork(), out, sink);
+			writeFacilities(this.scenario.getActivityFacilities(), out, sink);
+			writePopulation(this.scenario.getPopulation(), out, sink);
+			writeTransitSchedule(this.scenario.getTransitSchedule(), out, sink);
+			writeVehicles(this.scenario.getVehicles(), ScenarioSnapshotFormat.VEHICLE_TYPES, ScenarioSnapshotFormat.VEHICLES, out, sink);
+			writeVehicles(this.scenario.getTransitVehicles(), ScenarioSnapshotFormat.TRANSIT_VEHICLE_TYPES,
+					ScenarioSnapshotFormat.TRANSIT_VEHICLES, out, sink);
+			writeHouseholds(this.scenario.getHouseholds(), out, sink);
+			sink.writeChunk(out, ScenarioSnapshotFormat.END, 0);
+		} catch (IOException e) {
+			throw new UncheckedIOException("could not write scenario snapshot to " + filename, e);
+		}
+	}
+
+	private static void writeNetwork(final Network network, final DataOutputStream out, final Sink sink) throws IOException {
+		writeName(network.getName(), sink);
+		sink.writeDouble(network.getCapacityPeriod());
+		sink.writeDouble(network.getEffectiveCellSize());
+		sink.writeDouble(network.getEffectiveLaneWidth());
+		sink.writeChunk(out, ScenarioSnapshotFormat.NETWORK, 1);
+
+		int n = 0;
+		for (Node node : network.getNodes().values()) {
+			String type = NetworkUtils.getType(node);
+			String origId = NetworkUtils.getOrigId(node);
+			sink.writeVarInt((type != null ? 1 : 0) | (origId != null ? 2 : 0));
+			sink.writeString(node.getId().toString());
+			sink.writeDouble(node.getCoord().getX());
+			sink.writeDouble(node.getCoord().getY());
+			if (type != null) {
+				sink.writeString(type);
+			}
+			if (origId != null) {
+				sink.writeString(origId);
+			}
+			if (++n == NODES_PER_CHUNK) {
+				sink.writeChunk(out, ScenarioSnapshotFormat.NODES, n);
+				n = 0;
+			}
+		}
+		if (n > 0) {
+			sink.writeChunk(out, ScenarioSnapshotFormat.NODES, n);
+		}
+
+		n = 0;
+		for (Link link : network.getLinks().values()) {
+			String type = NetworkUtils.getType(link);
+			String origId = NetworkUtils.getOrigId(link);
+			sink.writeVarInt((type != null ? 1 : 0) | (origId != null ? 2 : 0));
+			sink.writeString(link.getId().toString());
+			sink.writeString(link.getFromNode().getId().toString());
+			sink.writeString(link.getToNode().getId().toString());
+			sink.writeDouble(link.getLength());
+			sink.writeDouble(link.getFreespeed());
+			sink.writeDouble(link.getCapacity());
+			sink.writeDouble(link.getNumberOfLanes());
+			sink.writeVarInt(link.getAllowedModes().size());
+			for (String mode : link.getAllowedModes()) {
+				sink.writeString(mode);
+			}
+			if (type != null) {
+				sink.writeString(type);
+			}
+			if (origId != null) {
+				sink.writeString(origId);
+			}
+			if (++n == LINKS_PER_CHUNK) {
+				sink.writeChunk(out, ScenarioSnapshotFormat.LINKS, n);
+				n = 0;
+			}
+		}
+		if (n > 0) {
+			sink.writeChunk(out, ScenarioSnapshotFormat.LINKS, n);
+		}
+	}
+
+	private static void writeFacilities(final ActivityFacilities facilities, final DataOutputStream out, final Sink sink) throws IOException {
+		writeName(facilities.getName(), sink);
+		sink.writeChunk(out, ScenarioSnapshotFormat.FACILITIES, 1);
+
+		int n = 0;
+		for (ActivityFacility facility : facilities.getFacilities().values()) {
+			Coord coord = facility.getCoord();
+			Id<Link> linkId = facility.getLinkId();
+			String desc = facility instanceof ActivityFacilityImpl ? ((ActivityFacilityImpl) facility).getDesc() : null;
+			sink.writeVarInt((coord != null ? 1 : 0) | (linkId != null ? 2 : 0) | (desc != null ? 4 : 0));
+			sink.writeString(facility.getId().toString());
+			if (coord != null) {
+				sink.writeDouble(coord.getX());
+				sink.writeDouble(coord.getY());
+			}
+			if (linkId != null) {
+				sink.writeString(linkId.toString());
+			}
+			if (desc != null) {
+				sink.writeString(desc);
+			}
+			sink.writeVarInt(facility.getActivityOptions().size());
+			for (ActivityOption option : facility.getActivityOptions().values()) {
+				sink.writeString(option.getType());
+				sink.writeDouble(option.getCapacity());
+				sink.writeVarInt(option.getOpeningTimes().size());
+				for (OpeningTime openingTime : option.getOpeningTimes()) {
+					sink.writeDouble(openingTime.getStartTime());
+					sink.writeDouble(openingTime.getEndTime());
+				}
+			}
+			if (++n == FACILITIES_PER_CHUNK) {
+				sink.writeChunk(out, ScenarioSnapshotFormat.FACILITY_RECORDS, n);
+				n = 0;
+			}
+		}
+		if (n > 0) {
+			sink.writeChunk(out, ScenarioSnapshotFormat.FACILITY_RECORDS, n);
+		}
+	}
+
+	private static void writePopulation(final Population population, final DataOutputStream out, final Sink sink) throws IOException {
+		writeName(population.getName(), sink);
+		sink.writeChunk(out, ScenarioSnapshotFormat.POPULATION, 1);
+
+		int n = 0;
+		for (Person person : population.getPersons().values()) {
+			writePerson(person, sink);
+			if (++n == PERSONS_PER_CHUNK) {
+				sink.writeChunk(out, ScenarioSnapshotFormat.PERSONS, n);
+				n = 0;
+			}
+		}
+		if (n > 0) {
+			sink.writeChunk(out, ScenarioSnapshotFormat.PERSONS, n);
+		}
+	}
+
+	private static void writePerson(final Person person, final Sink sink) {
+		String sex = PersonUtils.getSex(person);
+		Integer age = PersonUtils.getAge(person);
+		String license = PersonUtils.getLicense(person);
+		String carAvail = PersonUtils.getCarAvail(person);
+		Boolean employed = PersonUtils.isEmployed(person);
+		Set<String> travelcards = PersonUtils.getTravelcards(person);
+		sink.writeVarInt((sex != null ? 1 : 0) | (age != null ? 2 : 0) | (license != null ? 4 : 0) | (carAvail != null ? 8 : 0)
+				| (employed != null ? 16 : 0) | (Boolean.TRUE.equals(employed) ? 32 : 0) | (travelcards != null ? 64 : 0));
+		sink.writeString(person.getId().toString());
+		if (sex != null) {
+			sink.writeString(sex);
+		}
+		if (age != null) {
+			// age is an Integer, negative values are written as large varints
+			sink.writeVarInt(age);
+		}
+		if (license != null) {
+			sink.writeString(license);
+		}
+		if (carAvail != null) {
+			sink.writeString(carAvail);
+		}
+		if (travelcards != null) {
+			sink.writeVarInt(travelcards.size());
+			for (String travelcard : travelcards) {
+				sink.writeString(travelcard);
+			}
+		}
+		sink.writeVarInt(person.getPlans().size());
+		sink.writeVarInt(person.getPlans().indexOf(person.getSelectedPlan()) + 1);
+		for (Plan plan : person.getPlans()) {
+			sink.writeVarInt((plan.getScore() != null ? 1 : 0) | (plan.getType() != null ? 2 : 0));
+			if (plan.getScore() != null) {
+				sink.writeDouble(plan.getScore());
+			}
+			if (plan.getType() != null) {
+				sink.writeString(plan.getType());
+			}
+			sink.writeVarInt(plan.getPlanElements().size());
+			for (PlanElement pe : plan.getPlanElements()) {
+				if (pe instanceof Activity) {
+					writeActivity((Activity) pe, sink);
+				} else if (pe instanceof Leg) {
+					writeLeg((Leg) pe, sink);
+				} else {
+					throw new IllegalArgumentException("unrecognized plan element type: " + pe);
+				}
+			}
+		}
+	}
+
+	private static void writeActivity(final Activity act, final Sink sink) {
+		sink.writeVarInt((act.getLinkId() != null ? 2 : 0) | (act.getCoord() != null ? 4 : 0) | (act.getFacilityId() != null ? 8 : 0));
+		sink.writeString(act.getType());
+		if (act.getLinkId() != null) {
+			sink.writeString(act.getLinkId().toString());
+		}
+		if (act.getCoord() != null) {
+			sink.writeDouble(act.getCoord().getX());
+			sink.writeDouble(act.getCoord().getY());
+		}
+		if (act.getFacilityId() != null) {
+			sink.writeString(act.getFacilityId().toString());
+		}
+		sink.writeDouble(act.getStartTime());
+		sink.writeDouble(act.getEndTime());
+		sink.writeDouble(act.getMaximumDuration());
+	}
+
+	private static void writeLeg(final Leg leg, final Sink sink) {
+		Route route = leg.getRoute();
+		int flags = 1;
+		if (route != null) {
+			flags |= 2;
+			flags |= route.getStartLinkId() != null ? 4 : 0;
+			flags |= route.getEndLinkId() != null ? 8 : 0;
+			if (route instanceof NetworkRoute) {
+				flags |= 16;
+				flags |= ((NetworkRoute) route).getVehicleId() != null ? 32 : 0;
+			} else {
+				flags |= route.getRouteDescription() != null ? 64 : 0;
+			}
+		}
+		sink.writeVarInt(flags);
+		sink.writeString(leg.getMode());
+		sink.writeDouble(leg.getDepartureTime());
+		sink.writeDouble(leg.getTravelTime());
+		if (route == null) {
+			return;
+		}
+		sink.writeString(route.getRouteType());
+		if (route.getStartLinkId() != null) {
+			sink.writeString(route.getStartLinkId().toString());
+		}
+		if (route.getEndLinkId() != null) {
+			sink.writeString(route.getEndLinkId().toString());
+		}
+		sink.writeDouble(route.getTravelTime());
+		sink.writeDouble(route.getDistance());
+		if (route instanceof NetworkRoute) {
+			NetworkRoute networkRoute = (NetworkRoute) route;
+			if (networkRoute.getVehicleId() != null) {
+				sink.writeString(networkRoute.getVehicleId().toString());
+			}
+			sink.writeVarInt(networkRoute.getLinkIds().size());
+			for (Id<Link> linkId : networkRoute.getLinkIds()) {
+				sink.writeString(linkId.toString());
+			}
+		} else if (route.getRouteDescription() != null) {
+			sink.writeString(route.getRouteDescription());
+		}
+	}
+
+	private static void writeTransitSchedule(final TransitSchedule schedule, final DataOutputStream out, final Sink sink) throws IOException {
+		int n = 0;
+		for (TransitStopFacility stop : schedule.getFacilities().values()) {
+			sink.writeVarInt((stop.getLinkId() != null ? 1 : 0) | (stop.getName() != null ? 2 : 0)
+					| (stop.getStopPostAreaId() != null ? 4 : 0) | (stop.getIsBlockingLane() ? 8 : 0));
+			sink.writeString(stop.getId().toString());
+			sink.writeDouble(stop.getCoord().getX());
+			sink.writeDouble(stop.getCoord().getY());
+			if (stop.getLinkId() != null) {
+				sink.writeString(stop.getLinkId().toString());
+			}
+			if (stop.getName() != null) {
+				sink.writeString(stop.getName());
+			}
+			if (stop.getStopPostAreaId() != null) {
+				sink.writeString(stop.getStopPostAreaId());
+			}
+			if (++n == TRANSIT_STOPS_PER_CHUNK) {
+				sink.writeChunk(out, ScenarioSnapshotFormat.TRANSIT_STOPS, n);
+				n = 0;
+			}
+		}
+		if (n > 0) {
+			sink.writeChunk(out, ScenarioSnapshotFormat.TRANSIT_STOPS, n);
+		}
+
+		n = 0;
+		for (TransitLine line : schedule.getTransitLines().values()) {
+			sink.writeVarInt(line.getName() != null ? 1 : 0);
+			sink.writeString(line.getId().toString());
+			if (line.getName() != null) {
+				sink.writeString(line.getName());
+			}
+			sink.writeVarInt(line.getRoutes().size());
+			for (TransitRoute route : line.getRoutes().values()) {
+				writeTransitRoute(route, sink);
+			}
+			if (++n == TRANSIT_LINES_PER_CHUNK) {
+				sink.writeChunk(out, ScenarioSnapshotFormat.TRANSIT_LINES, n);
+				n = 0;
+			}
+		}
+		if (n > 0) {
+			sink.writeChunk(out, ScenarioSnapshotFormat.TRANSIT_LINES, n);
+		}
+	}
+
+	private static void writeTransitRoute(final TransitRoute route, final Sink sink) {
+		NetworkRoute networkRoute = route.getRoute();
+		sink.writeVarInt((route.getDescription() != null ? 1 : 0) | (networkRoute != null ? 2 : 0));
+		sink.writeString(route.getId().toString());
+		sink.writeString(route.getTransportMode());
+		if (route.getDescription() != null) {
+			sink.writeString(route.getDescription());
+		}
+		sink.writeVarInt(route.getStops().size());
+		for (TransitRouteStop stop : route.getStops()) {
+			sink.writeVarInt(stop.isAwaitDepartureTime() ? 1 : 0);
+			sink.writeString(stop.getStopFacility().getId().toString());
+			sink.writeDouble(stop.getArrivalOffset());
+			sink.writeDouble(stop.getDepartureOffset());
+		}
+		if (networkRoute != null) {
+			sink.writeString(networkRoute.getStartLinkId().toString());
+			sink.writeString(networkRoute.getEndLinkId().toString());
+			List<Id<Link>> linkIds = networkRoute.getLinkIds();
+			sink.writeVarInt(linkIds.size());
+			for (Id<Link> linkId : linkIds) {
+				sink.writeString(linkId.toString());
+			}
+		}
+		sink.writeVarInt(route.getDepartures().size());
+		for (Departure departure : route.getDepartures().values()) {
+			sink.writeVarInt(departure.getVehicleId() != null ? 1 : 0);
+			sink.writeString(departure.getId().toString());
+			sink.writeDouble(departure.getDepartureTime());
+			if (departure.getVehicleId() != null) {
+				sink.writeString(departure.getVehicleId().toString());
+			}
+		}
+	}
+
+	private static void writeVehicles(final Vehicles vehicles, final byte typesKind, final byte vehiclesKind, final DataOutputStream out,
+			final Sink sink) throws IOException {
+		// there are few vehicle types, so they all go into one chunk
+		for (VehicleType type : vehicles.getVehicleTypes().values()) {
+			VehicleCapacity capacity = type.getCapacity();
+			EngineInformation engine = type.getEngineInformation();
+			sink.writeVarInt((type.getDescription() != null ? 1 : 0) | (capacity != null ? 2 : 0) | (engine != null ? 4 : 0));
+			sink.writeString(type.getId().toString());
+			if (type.getDescription() != null) {
+				sink.writeString(type.getDescription());
+			}
+			sink.writeDouble(type.getLength());
+			sink.writeDouble(type.getWidth());
+			sink.writeDouble(type.getMaximumVelocity());
+			sink.writeDouble(type.getAccessTime());
+			sink.writeDouble(type.getEgressTime());
+			sink.writeDouble(type.getPcuEquivalents());
+			sink.writeString(type.getDoorOperationMode().name());
+			if (capacity != null) {
+				sink.writeVarInt((capacity.getSeats() != null ? 1 : 0) | (capacity.getStandingRoom() != null ? 2 : 0)
+						| (capacity.getFreightCapacity() != null ? 4 : 0));
+				if (capacity.getSeats() != null) {
+					sink.writeVarInt(capacity.getSeats());
+				}
+				if (capacity.getStandingRoom() != null) {
+					sink.writeVarInt(capacity.getStandingRoom());
+				}
+				if (capacity.getFreightCapacity() != null) {
+					sink.writeDouble(capacity.getFreightCapacity().getVolume());
+				}
+			}
+			if (engine != null) {
+				sink.writeString(engine.getFuelType().name());
+				sink.writeDouble(engine.getGasConsumption());
+			}
+		}
+		if (!vehicles.getVehicleTypes().isEmpty()) {
+			sink.writeChunk(out, typesKind, vehicles.getVehicleTypes().size());
+		}
+
+		int n = 0;
+		for (Vehicle vehicle : vehicles.getVehicles().values()) {
+			sink.writeString(vehicle.getId().toString());
+			sink.writeString(vehicle.getType().getId().toString());
+			if (++n == VEHICLES_PER_CHUNK) {
+				sink.writeChunk(out, vehiclesKind, n);
+				n = 0;
+			}
+		}
+		if (n > 0) {
+			sink.writeChunk(out, vehiclesKind, n);
+		}
+	}
+
+	private static void writeHouseholds(final Households households, final DataOutputStream out, final Sink sink) throws IOException {
+		int n = 0;
+		for (Household household : households.getHouseholds().values()) {
+			Income income = household.getIncome();
+			sink.writeVarInt((household.getMemberIds() != null ? 1 : 0) | (household.getVehicleIds() != null ? 2 : 0)
+					| (income != null ? 4 : 0) | (income != null && income.getCurrency() != null ? 8 : 0));
+			sink.writeString(household.getId().toString());
+			if (household.getMemberIds() != null) {
+				sink.writeVarInt(household.getMemberIds().size());
+				for (Id<Person> personId : household.getMemberIds()) {
+					sink.writeString(personId.toString());
+				}
+			}
+			if (household.getVehicleIds() != null) {
+				sink.writeVarInt(household.getVehicleIds().size());
+				for (Id<Vehicle> vehicleId : household.getVehicleIds()) {
+					sink.writeString(vehicleId.toString());
+				}
+			}
+			if (income != null) {
+				sink.writeDouble(income.getIncome());
+				sink.writeString(income.getIncomePeriod().name());
+				if (income.getCurrency() != null) {
+					sink.writeString(income.getCurrency());
+				}
+			}
+			if (++n == HOUSEHOLDS_PER_CHUNK) {
+				sink.writeChunk(out, ScenarioSnapshotFormat.HOUSEHOLDS, n);
+				n = 0;
+			}
+		}
+		if (n > 0) {
+			sink.writeChunk(out, ScenarioSnapshotFormat.HOUSEHOLDS, n);
+		}
+	}
+
+	private static void writeName(final String name, final Sink sink) {
+		sink.writeVarInt(name != null ? 1 : 0);
+		if (name != null) {
+			sink.writeString(name);
+		}
+	}
+
+}
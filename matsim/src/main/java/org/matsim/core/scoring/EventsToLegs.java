@@ -152,6 +152,13 @@ TeleportationArrivalEventHandler, TransitDriverStartsEventHandler, PersonEntersV
 
 
 
+	/**
+	 * Creates an instance which is not added to any events manager; the events need to be passed on by the caller.
+	 */
+	EventsToLegs(Network network) {
+		this.network = network;
+	}
+
 	public EventsToLegs(Scenario scenario) {
 		this.network = scenario.getNetwork();
 		if (scenario.getConfig().transit().isUseTransit()) {
@@ -26,32 +26,51 @@ import gnu.trove.iterator.TDoubleIterator;
 import gnu.trove.list.array.TDoubleArrayList;
 import org.apache.log4j.Logger;
 import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.IdMap;
 import org.matsim.api.core.v01.events.Event;
+import org.matsim.api.core.v01.events.LinkEnterEvent;
 import org.matsim.api.core.v01.events.PersonMoneyEvent;
 import org.matsim.api.core.v01.events.PersonStuckEvent;
+import org.matsim.api.core.v01.events.TransitDriverStartsEvent;
+import org.matsim.api.core.v01.events.VehicleEntersTrafficEvent;
+import org.matsim.api.core.v01.events.VehicleLeavesTrafficEvent;
 import org.matsim.api.core.v01.network.Network;
 import org.matsim.api.core.v01.population.*;
 import org.matsim.core.api.experimental.events.EventsManager;
+import org.matsim.core.api.experimental.events.VehicleArrivesAtFacilityEvent;
 import org.matsim.core.api.internal.HasPersonId;
+import org.matsim.core.config.groups.PlanCalcScoreConfigGroup;
 import org.matsim.core.config.groups.PlansConfigGroup;
 import org.matsim.core.controler.ControlerListenerManager;
 import org.matsim.core.controler.events.IterationStartsEvent;
 import org.matsim.core.controler.listener.IterationStartsListener;
+import org.matsim.core.events.EventsUtils;
+import org.matsim.core.events.algorithms.Vehicle2DriverEventHandler;
 import org.matsim.core.events.handler.BasicEventHandler;
 import org.matsim.core.utils.io.IOUtils;
+import org.matsim.pt.transitSchedule.api.TransitSchedule;
 
 import java.io.BufferedWriter;
 import java.io.IOException;
-import java.util.HashMap;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * This class helps EventsToScore by keeping ScoringFunctions for the entire Population - one per Person -, and dispatching Activities
  * and Legs to the ScoringFunctions. It also gives out the ScoringFunctions, so they can be given other events by EventsToScore.
  * It is not independently useful. Please do not make public.
+ * <p></p>
+ * With more than one thread, the persons are split into shards by the index of their id.  Each shard has its own
+ * {@link EventsToActivities} and {@link EventsToLegs} and scores its persons on its own thread, so no lock is needed.
+ * The events are passed to the shards in batches; only the mapping from vehicles to drivers (for the link events)
+ * is kept on the events handling thread, and the few transit vehicle events are given to all shards.
  * 
  * @author michaz
  *
@@ -73,14 +92,37 @@ class ScoringFunctionsForPopulation implements BasicEventHandler, EventsToLegs.L
 	 * should be faster and reduce the memory overhead.
 	 *
 	 * cdobler, nov'15
+	 *
+	 * 'agentScorers' is an IdMap, which looks up the scoring functions by the index of the person id.
 	 */
-	private final Map<Id<Person>, ScoringFunction> agentScorers = new HashMap<>();
+	private final Map<Id<Person>, ScoringFunction> agentScorers = new IdMap<>(Person.class);
 	private final Map<Id<Person>, TDoubleCollection> partialScores = new LinkedHashMap<>();
 	private final AtomicReference<Throwable> exception = new AtomicReference<>();
 
-	@Inject
+	/** the number of events which are handed to a shard at once */
+	private static final int BATCH_SIZE = 1024;
+	/** the number of batches which may wait for a shard before the events handling thread is blocked */
+	private static final int QUEUED_BATCHES = 64;
+	private static final Event[] END_OF_EVENTS = new Event[0];
+
+	private final int numberOfThreads;
+	private TransitSchedule transitSchedule = null;
+	private final Vehicle2DriverEventHandler vehicle2Driver = new Vehicle2DriverEventHandler();
+	private Shard[] shards = null;
+
 	ScoringFunctionsForPopulation(ControlerListenerManager controlerListenerManager, EventsManager eventsManager, EventsToActivities eventsToActivities, EventsToLegs eventsToLegs,
 								  PlansConfigGroup plansConfigGroup, Network network, Population population, ScoringFunctionFactory scoringFunctionFactory) {
+		this(controlerListenerManager, eventsManager, eventsToActivities, eventsToLegs, plansConfigGroup, network, population, scoringFunctionFactory, 1);
+	}
+
+	@Inject
+	ScoringFunctionsForPopulation(ControlerListenerManager controlerListenerManager, EventsManager eventsManager, EventsToActivities eventsToActivities, EventsToLegs eventsToLegs,
+								  PlansConfigGroup plansConfigGroup, PlanCalcScoreConfigGroup scoringConfigGroup, Network network, Population population, ScoringFunctionFactory scoringFunctionFactory) {
+		this(controlerListenerManager, eventsManager, eventsToActivities, eventsToLegs, plansConfigGroup, network, population, scoringFunctionFactory, scoringConfigGroup.getNumberOfThreads());
+	}
+
+	ScoringFunctionsForPopulation(ControlerListenerManager controlerListenerManager, EventsManager eventsManager, EventsToActivities eventsToActivities, EventsToLegs eventsToLegs,
+								  PlansConfigGroup plansConfigGroup, Network network, Population population, ScoringFunctionFactory scoringFunctionFactory, int numberOfThreads) {
 		controlerListenerManager.addControlerListener(new IterationStartsListener() {
 			@Override
 			public void notifyIterationStarts(IterationStartsEvent event) {
@@ -91,20 +133,56 @@ class ScoringFunctionsForPopulation implements BasicEventHandler, EventsToLegs.L
 		this.network = network;
 		this.population = population;
 		this.scoringFunctionFactory = scoringFunctionFactory;
+		this.numberOfThreads = numberOfThreads;
 		eventsManager.addHandler(this);
-		eventsToActivities.addActivityHandler(this);
-		eventsToLegs.addLegHandler(this);
+		if (numberOfThreads == 1) {
+			eventsToActivities.addActivityHandler(this);
+			eventsToLegs.addLegHandler(this);
+		}
+		// (otherwise, every shard gets its own EventsToActivities and EventsToLegs)
+	}
+
+	@Inject(optional = true)
+	void setTransitSchedule(TransitSchedule transitSchedule) {
+		this.transitSchedule = transitSchedule;
 	}
 
 	private void init() {
+		stopShards();
 		for (Person person : population.getPersons().values()) {
 			ScoringFunction data = scoringFunctionFactory.createNewScoringFunction(person);
 			this.agentScorers.put(person.getId(), data);
 			this.partialScores.put(person.getId(), new TDoubleArrayList());
 		}
+		if (this.numberOfThreads > 1) {
+			this.vehicle2Driver.reset(-1);
+			this.shards = new Shard[this.numberOfThreads];
+			for (int i = 0; i < this.shards.length; i++) {
+				this.shards[i] = new Shard(i);
+			}
+			for (Person person : population.getPersons().values()) {
+				this.shards[shardOf(person.getId())].personIds.add(person.getId());
+			}
+			for (Shard shard : this.shards) {
+				Thread thread = new Thread(shard, "ScoringShard-" + shard.index);
+				thread.setDaemon(true);
+				shard.thread = thread;
+				thread.start();
+			}
+		}
 	}
 
-	synchronized public void handleEvent(Event o) {
+	public void handleEvent(Event o) {
+		if (this.numberOfThreads > 1) {
+			dispatchEvent(o);
+		} else {
+			synchronized (this) {
+				scoreEvent(o);
+			}
+		}
+	}
+
+	private void scoreEvent(Event o) {
 		// this is for the stuff that is directly based on events.
 		// note that this passes on _all_ person events, even those which are aggregated into legs and activities.
 		// for the time being, not all PersonEvents may "implement HasPersonId".
@@ -125,6 +203,10 @@ class ScoringFunctionsForPopulation implements BasicEventHandler, EventsToLegs.L
 	}
 
 	synchronized public void handleLeg(PersonExperiencedLeg o) {
+		scoreLeg(o);
+	}
+
+	private void scoreLeg(PersonExperiencedLeg o) {
 		Id<Person> agentId = o.getAgentId();
 		Leg leg = o.getLeg();
 		ScoringFunction scoringFunction = ScoringFunctionsForPopulation.this.getScoringFunctionForAgent(agentId);
@@ -136,6 +218,10 @@ class ScoringFunctionsForPopulation implements BasicEventHandler, EventsToLegs.L
 	}
 
 	synchronized public void handleActivity(PersonExperiencedActivity o) {
+		scoreActivity(o);
+	}
+
+	private void scoreActivity(PersonExperiencedActivity o) {
 		Id<Person> agentId = o.getAgentId();
 		Activity activity = o.getActivity();
 		ScoringFunction scoringFunction = ScoringFunctionsForPopulation.this.getScoringFunctionForAgent(agentId);
@@ -160,7 +246,73 @@ class ScoringFunctionsForPopulation implements BasicEventHandler, EventsToLegs.L
 		return this.agentScorers.get(agentId);
 	}
 
+	private int shardOf(Id<Person> personId) {
+		return Id.getIndex(personId, Person.class) % this.shards.length;
+	}
+
+	/**
+	 * Passes the event to the shards which need it.  Runs on the events handling thread.
+	 */
+	private void dispatchEvent(Event event) {
+		if (this.shards == null) {
+			return; // not initialized for an iteration, thus nothing to score
+		}
+		if (event instanceof VehicleEntersTrafficEvent) {
+			this.vehicle2Driver.handleEvent((VehicleEntersTrafficEvent) event);
+		} else if (event instanceof VehicleLeavesTrafficEvent) {
+			this.vehicle2Driver.handleEvent((VehicleLeavesTrafficEvent) event);
+		}
+		if (event instanceof HasPersonId) {
+			this.shards[shardOf(((HasPersonId) event).getPersonId())].add(event);
+		} else if (event instanceof LinkEnterEvent) {
+			Id<Person> driverId = this.vehicle2Driver.getDriverOfVehicle(((LinkEnterEvent) event).getVehicleId());
+			if (driverId != null) {
+				this.shards[shardOf(driverId)].add(event);
+			}
+		} else if (event instanceof TransitDriverStartsEvent || event instanceof VehicleArrivesAtFacilityEvent) {
+			// needed by every shard to know which transit line its passengers use
+			for (Shard shard : this.shards) {
+				shard.add(event);
+			}
+		}
+		// all other events are used neither for legs nor activities, nor passed to the scoring functions
+	}
+
+	/**
+	 * Passes the remaining events to the shards and waits until they have scored them and finished their scoring
+	 * functions.
+	 */
+	private void finishShards() {
+		for (Shard shard : this.shards) {
+			shard.flush();
+			shard.put(END_OF_EVENTS);
+		}
+		for (Shard shard : this.shards) {
+			try {
+				shard.thread.join();
+			} catch (InterruptedException e) {
+				throw new RuntimeException(e);
+			}
+		}
+		this.shards = null;
+	}
+
+	private void stopShards() {
+		if (this.shards != null) {
+			// the previous iteration was not finished, e.g. after an exception
+			for (Shard shard : this.shards) {
+				shard.thread.interrupt();
+			}
+			this.shards = null;
+		}
+	}
+
 	public void finishScoringFunctions() {
+		boolean finishedByShards = false;
+		if (this.shards != null) {
+			finishShards();
+			finishedByShards = true;
+		}
 		// Rethrow an exception in a scoring function (user code) if there was one.
 		Throwable throwable = exception.get();
 		if (throwable != null) {
@@ -170,6 +322,9 @@ class ScoringFunctionsForPopulation implements BasicEventHandler, EventsToLegs.L
 				throw new RuntimeException(throwable);
 			}
 		}
+		if (finishedByShards) {
+			return;
+		}
 		for (ScoringFunction sf : this.agentScorers.values()) {
 			sf.finish();
 		}
@@ -198,4 +353,117 @@ class ScoringFunctionsForPopulation implements BasicEventHandler, EventsToLegs.L
 	public void reset(int iteration) {
 
 	}
+
+	/**
+	 * The persons with the same remainder of the index of their id.  The events of these persons are turned into
+	 * activities and legs and scored on the thread of the shard.
+	 */
+	private final class Shard implements Runnable, EventsToLegs.LegHandler, EventsToActivities.ActivityHandler {
+
+		private final int index;
+		private final List<Id<Person>> personIds = new ArrayList<>();
+		private final EventsManager events = EventsUtils.createEventsManager();
+		private final EventsToActivities eventsToActivities = new EventsToActivities();
+		private final BlockingQueue<Event[]> batches = new ArrayBlockingQueue<>(QUEUED_BATCHES);
+		private Event[] batch = new Event[BATCH_SIZE];
+		private int batchSize = 0;
+		private Thread thread;
+
+		Shard(int index) {
+			this.index = index;
+			EventsToLegs eventsToLegs = new EventsToLegs(network);
+			eventsToLegs.setTransitSchedule(transitSchedule);
+			// same order as the handlers are added to the events manager with only one thread
+			this.events.addHandler(this.eventsToActivities);
+			this.events.addHandler(eventsToLegs);
+			this.events.addHandler(new BasicEventHandler() {
+				@Override
+				public void handleEvent(Event event) {
+					if (event instanceof HasPersonId && shardOf(((HasPersonId) event).getPersonId()) == Shard.this.index) {
+						scoreEvent(event);
+					}
+				}
+
+				@Override
+				public void reset(int iteration) {
+				}
+			});
+			this.eventsToActivities.addActivityHandler(this);
+			eventsToLegs.addLegHandler(this);
+		}
+
+		/** Runs on the events handling thread. */
+		void add(Event event) {
+			this.batch[this.batchSize++] = event;
+			if (this.batchSize == BATCH_SIZE) {
+				put(this.batch);
+				this.batch = new Event[BATCH_SIZE];
+				this.batchSize = 0;
+			}
+		}
+
+		/** Runs on the events handling thread. */
+		void flush() {
+			if (this.batchSize > 0) {
+				put(Arrays.copyOf(this.batch, this.batchSize));
+				this.batchSize = 0;
+			}
+		}
+
+		void put(Event[] events) {
+			try {
+				this.batches.put(events);
+			} catch (InterruptedException e) {
+				throw new RuntimeException(e);
+			}
+		}
+
+		@Override
+		public void run() {
+			try {
+				Event[] events;
+				while ((events = this.batches.take()) != END_OF_EVENTS) {
+					if (exception.get() != null) {
+						continue; // keep taking the batches so the events handling thread is not blocked
+					}
+					try {
+						for (Event event : events) {
+							if (event == null) {
+								break;
+							}
+							this.events.processEvent(event);
+						}
+					} catch (Throwable e) {
+						exception.compareAndSet(null, e);
+					}
+				}
+				if (exception.get() == null) {
+					finish();
+				}
+			} catch (InterruptedException e) {
+				// the shard was stopped without finishing the iteration
+			} catch (Throwable e) {
+				exception.compareAndSet(null, e);
+			}
+		}
+
+		private void finish() {
+			this.eventsToActivities.finish();
+			for (Id<Person> personId : this.personIds) {
+				ScoringFunction sf = getScoringFunctionForAgent(personId);
+				sf.finish();
+				partialScores.get(personId).add(sf.getScore());
+			}
+		}
+
+		@Override
+		public void handleLeg(PersonExperiencedLeg leg) {
+			scoreLeg(leg);
+		}
+
+		@Override
+		public void handleActivity(PersonExperiencedActivity activity) {
+			scoreActivity(activity);
+		}
+	}
 }
\ No newline at end of file
@@ -0,0 +1,491 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * ConcurrentTravelTimeCalculator.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2016 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+package org.matsim.core.trafficmonitoring;
+
+import java.util.Arrays;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import javax.inject.Inject;
+
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.events.LinkEnterEvent;
+import org.matsim.api.core.v01.events.LinkLeaveEvent;
+import org.matsim.api.core.v01.events.VehicleAbortsEvent;
+import org.matsim.api.core.v01.events.VehicleEntersTrafficEvent;
+import org.matsim.api.core.v01.events.VehicleLeavesTrafficEvent;
+import org.matsim.api.core.v01.events.handler.LinkEnterEventHandler;
+import org.matsim.api.core.v01.events.handler.LinkLeaveEventHandler;
+import org.matsim.api.core.v01.events.handler.VehicleAbortsEventHandler;
+import org.matsim.api.core.v01.events.handler.VehicleEntersTrafficEventHandler;
+import org.matsim.api.core.v01.events.handler.VehicleLeavesTrafficEventHandler;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.core.api.experimental.events.EventsManager;
+import org.matsim.core.api.experimental.events.VehicleArrivesAtFacilityEvent;
+import org.matsim.core.api.experimental.events.handler.VehicleArrivesAtFacilityEventHandler;
+import org.matsim.core.config.groups.TravelTimeCalculatorConfigGroup;
+import org.matsim.core.router.util.LinkToLinkTravelTime;
+import org.matsim.core.router.util.TravelTime;
+import org.matsim.core.utils.collections.CollectionUtils;
+import org.matsim.vehicles.Vehicle;
+
+/**
+ * Calculates the same link and link-to-link travel times as a {@link TravelTimeCalculator} with the
+ * <code>optimistic</code> aggregator and the <code>average</code> getter, but stores them in primitive arrays
+ * indexed by the {@link Id#index() indices} of the link and vehicle ids instead of maps of objects, and
+ * accumulates them with atomic operations instead of locks.
+ * <p></p>
+ * The events may thus be handed to the calculator from several threads at the same time, e.g. by an events
+ * manager which splits the events by vehicle, as long as the events of each vehicle are handed over in order
+ * and not concurrently with each other. The sums per time bin are added up with compare-and-set, so their
+ * value does not depend on the order of the threads as long as the travel times are whole seconds.
+ * <p></p>
+ * The averages of the time bins of a link or turn are computed when its travel time is read for the first
+ * time after new travel times were observed on it, and kept until then. Reading a travel time thus only costs
+ * the consolidation of that one link while the events are handled, and is a plain array access afterwards, so
+ * the routers of the next iteration all share the travel times of the previous iteration without copying
+ * them. {@link #createSnapshot()} returns an immutable {@link TravelTimeSnapshot} of all links, e.g. for
+ * within-day replanning which should not see the travel times change during a time step.
+ * <p></p>
+ * Use {@link TravelTimeCalculatorConfigGroup.TravelTimeCalculatorType#TravelTimeCalculatorConcurrentArray}
+ * to get this calculator from the {@link TravelTimeCalculatorModule}.
+ */
+public final class ConcurrentTravelTimeCalculator implements LinkEnterEventHandler, LinkLeaveEventHandler,
+	VehicleEntersTrafficEventHandler, VehicleLeavesTrafficEventHandler, VehicleArrivesAtFacilityEventHandler,
+	VehicleAbortsEventHandler {
+
+	/** marks a vehicle which is not on a link */
+	private static final int NO_LINK = -1;
+	/** marks a vehicle whose travel times are not analyzed because of its mode */
+	private static final int IGNORED = -2;
+
+	private static final int PAGE_BITS = 10;
+	private static final int PAGE_SIZE = 1 << PAGE_BITS;
+
+	private final Layout layout;
+	private final int timeSlice;
+	private final int numSlots;
+
+	private final boolean calculateLinkTravelTimes;
+	private final boolean calculateLinkToLinkTravelTimes;
+	private final boolean filterAnalyzedModes;
+	private final Set<String> analyzedModes;
+
+	/** the observations per link position, created when the first travel time is observed on a link */
+	private final AtomicReferenceArray<Bins> linkBins;
+	/** the observations per turn position, <code>null</code> if no link to link travel times are calculated */
+	private final AtomicReferenceArray<Bins> turnBins;
+
+	/** the link enter times and links of the vehicles, in pages of {@link #PAGE_SIZE} vehicle indices */
+	private volatile VehiclePage[] vehiclePages = new VehiclePage[0];
+
+	@Inject
+	ConcurrentTravelTimeCalculator(final TravelTimeCalculatorConfigGroup config, final EventsManager eventsManager, final Network network) {
+		this(network, config);
+		eventsManager.addHandler(this);
+	}
+
+	public ConcurrentTravelTimeCalculator(final Network network, final TravelTimeCalculatorConfigGroup config) {
+		this(network, config.getTraveltimeBinSize(), config.getMaxTime(), config.isCalculateLinkTravelTimes(),
+				config.isCalculateLinkToLinkTravelTimes(), config.isFilterModes(), CollectionUtils.stringToSet(config.getAnalyzedModes()));
+		checkSupported(config);
+	}
+
+	/*package*/ static void checkSupported(final TravelTimeCalculatorConfigGroup config) {
+		if (!"optimistic".equals(config.getTravelTimeAggregatorType())) {
+			throw new RuntimeException(config.getTravelTimeAggregatorType() + " is not supported by the ConcurrentTravelTimeCalculator!");
+		}
+		if (!"average".equals(config.getTravelTimeGetterType())) {
+			throw new RuntimeException(config.getTravelTimeGetterType() + " is not supported by the ConcurrentTravelTimeCalculator!");
+		}
+	}
+
+	/*package*/ ConcurrentTravelTimeCalculator(final Network network, final int timeSlice, final int maxTime,
+			final boolean calculateLinkTravelTimes, final boolean calculateLinkToLinkTravelTimes, final boolean filterModes,
+			final Set<String> analyzedModes) {
+		this.layout = new Layout(network, calculateLinkToLinkTravelTimes);
+		this.timeSlice = timeSlice;
+		this.numSlots = TimeBinUtils.getTimeBinCount(maxTime, timeSlice);
+		this.calculateLinkTravelTimes = calculateLinkTravelTimes;
+		this.calculateLinkToLinkTravelTimes = calculateLinkToLinkTravelTimes;
+		this.filterAnalyzedModes = filterModes;
+		this.analyzedModes = analyzedModes;
+		this.linkBins = new AtomicReferenceArray<>(this.layout.links.length);
+		this.turnBins = calculateLinkToLinkTravelTimes ? new AtomicReferenceArray<Bins>(this.layout.turnTargets.length) : null;
+	}
+
+	@Override
+	public void handleEvent(final LinkEnterEvent e) {
+		VehiclePage page = getVehiclePage(Id.getIndex(e.getVehicleId(), Vehicle.class));
+		int i = Id.getIndex(e.getVehicleId(), Vehicle.class) & (PAGE_SIZE - 1);
+		int oldLinkPos = page.linkPositions[i];
+		if (oldLinkPos == IGNORED) return;
+
+		int linkPos = this.layout.getLinkPosition(e.getLinkId());
+		if (oldLinkPos >= 0 && linkPos >= 0 && this.calculateLinkToLinkTravelTimes) {
+			int turnPos = this.layout.getTurnPosition(oldLinkPos, linkPos);
+			if (turnPos >= 0) {
+				addTravelTime(this.turnBins, turnPos, page.enterTimes[i], e.getTime());
+			}
+		}
+		page.linkPositions[i] = linkPos;
+		page.enterTimes[i] = e.getTime();
+	}
+
+	@Override
+	public void handleEvent(final LinkLeaveEvent e) {
+		if (this.calculateLinkTravelTimes) {
+			VehiclePage page = getVehiclePage(Id.getIndex(e.getVehicleId(), Vehicle.class));
+			int i = Id.getIndex(e.getVehicleId(), Vehicle.class) & (PAGE_SIZE - 1);
+			int linkPos = page.linkPositions[i];
+			if (linkPos >= 0) {
+				addTravelTime(this.linkBins, linkPos, page.enterTimes[i], e.getTime());
+			}
+		}
+	}
+
+	@Override
+	public void handleEvent(final VehicleEntersTrafficEvent event) {
+		if (this.filterAnalyzedModes && !this.analyzedModes.contains(event.getNetworkMode())) {
+			VehiclePage page = getVehiclePage(Id.getIndex(event.getVehicleId(), Vehicle.class));
+			page.linkPositions[Id.getIndex(event.getVehicleId(), Vehicle.class) & (PAGE_SIZE - 1)] = IGNORED;
+		}
+	}
+
+	@Override
+	public void handleEvent(final VehicleLeavesTrafficEvent event) {
+		/* forget the link when a vehicle arrives, otherwise the activity duration
+		 * would be counted as travel time when the vehicle departs again. */
+		clearVehicle(event.getVehicleId(), true);
+	}
+
+	@Override
+	public void handleEvent(final VehicleArrivesAtFacilityEvent event) {
+		/* same for a bus stopping on a link, otherwise the stop time would be counted as travel time. */
+		clearVehicle(event.getVehicleId(), false);
+	}
+
+	@Override
+	public void handleEvent(final VehicleAbortsEvent event) {
+		/* the optimistic aggregator does not use the travel times of stuck vehicles */
+		clearVehicle(event.getVehicleId(), true);
+	}
+
+	private void clearVehicle(final Id<Vehicle> vehicleId, final boolean clearIgnored) {
+		VehiclePage page = getVehiclePage(Id.getIndex(vehicleId, Vehicle.class));
+		int i = Id.getIndex(vehicleId, Vehicle.class) & (PAGE_SIZE - 1);
+		if (clearIgnored || page.linkPositions[i] != IGNORED) {
+			page.linkPositions[i] = NO_LINK;
+		}
+	}
+
+	private VehiclePage getVehiclePage(final int vehicleIndex) {
+		int pageIndex = vehicleIndex >>> PAGE_BITS;
+		VehiclePage[] pages = this.vehiclePages;
+		if (pageIndex < pages.length && pages[pageIndex] != null) {
+			return pages[pageIndex];
+		}
+		return createVehiclePage(pageIndex);
+	}
+
+	/**
+	 * Pages are added to a copy of the page array which then replaces the old one, so threads reading the old
+	 * array never miss a page, they just end up here once more.
+	 */
+	private synchronized VehiclePage createVehiclePage(final int pageIndex) {
+		VehiclePage[] pages = this.vehiclePages;
+		if (pageIndex < pages.length && pages[pageIndex] != null) {
+			return pages[pageIndex];
+		}
+		VehiclePage[] newPages = Arrays.copyOf(pages, Math.max(pages.length, pageIndex + 1));
+		VehiclePage page = new VehiclePage();
+		newPages[pageIndex] = page;
+		this.vehiclePages = newPages;
+		return page;
+	}
+
+	private void addTravelTime(final AtomicReferenceArray<Bins> bins, final int pos, final double enterTime, final double leaveTime) {
+		Bins b = bins.get(pos);
+		if (b == null) {
+			b = new Bins(this.numSlots);
+			if (!bins.compareAndSet(pos, null, b)) {
+				b = bins.get(pos);
+			}
+		}
+		b.add(TimeBinUtils.getTimeBinIndex(enterTime, this.timeSlice, this.numSlots), leaveTime - enterTime);
+	}
+
+	/**
+	 * Takes a new snapshot of the travel times observed so far. Travel times observed while the snapshot is
+	 * taken may or may not be part of it. Only the links and turns with new observations since they were last
+	 * read are consolidated again.
+	 */
+	public TravelTimeSnapshot createSnapshot() {
+		double[][] linkTravelTimes = new double[this.layout.links.length][];
+		for (int pos = 0; pos < linkTravelTimes.length; pos++) {
+			Bins b = this.linkBins.get(pos);
+			if (b != null) {
+				linkTravelTimes[pos] = b.getTravelTimes(this.layout.links[pos], this.timeSlice);
+			}
+		}
+		double[][] turnTravelTimes = null;
+		if (this.turnBins != null) {
+			turnTravelTimes = new double[this.turnBins.length()][];
+			for (int fromPos = 0; fromPos < this.layout.links.length; fromPos++) {
+				for (int pos = this.layout.turnOffsets[fromPos]; pos < this.layout.turnOffsets[fromPos + 1]; pos++) {
+					Bins b = this.turnBins.get(pos);
+					if (b != null) {
+						turnTravelTimes[pos] = b.getTravelTimes(this.layout.links[fromPos], this.timeSlice);
+					}
+				}
+			}
+		}
+		return new TravelTimeSnapshot(this.layout, this.timeSlice, this.numSlots, linkTravelTimes, turnTravelTimes);
+	}
+
+	public double getLinkTravelTime(final Link link, final double time) {
+		if (!this.calculateLinkTravelTimes) {
+			throw new IllegalStateException("No link travel time is available " +
+					"if calculation is switched off by config option!");
+		}
+		int linkPos = this.layout.getLinkPosition(link.getId());
+		Bins b = linkPos < 0 ? null : this.linkBins.get(linkPos);
+		if (b == null) {
+			return link.getLength() / link.getFreespeed(time);
+		}
+		return b.getTravelTimes(this.layout.links[linkPos], this.timeSlice)[TimeBinUtils.getTimeBinIndex(time, this.timeSlice, this.numSlots)];
+	}
+
+	public double getLinkToLinkTravelTime(final Link fromLink, final Link toLink, final double time) {
+		if (this.turnBins == null) {
+			throw new IllegalStateException("No link to link travel time is available " +
+					"if calculation is switched off by config option!");
+		}
+		int fromLinkPos = this.layout.getLinkPosition(fromLink.getId());
+		int turnPos = this.layout.getTurnPosition(fromLinkPos, toLink.getId());
+		Bins b = turnPos < 0 ? null : this.turnBins.get(turnPos);
+		if (b == null) {
+			return fromLink.getLength() / fromLink.getFreespeed(time);
+		}
+		return b.getTravelTimes(this.layout.links[fromLinkPos], this.timeSlice)[TimeBinUtils.getTimeBinIndex(time, this.timeSlice, this.numSlots)];
+	}
+
+	/**
+	 * Clears all observations. Must not be called concurrently with handling events.
+	 */
+	@Override
+	public void reset(final int iteration) {
+		for (int pos = 0; pos < this.linkBins.length(); pos++) {
+			this.linkBins.set(pos, null);
+		}
+		if (this.turnBins != null) {
+			for (int pos = 0; pos < this.turnBins.length(); pos++) {
+				this.turnBins.set(pos, null);
+			}
+		}
+		this.vehiclePages = new VehiclePage[0];
+	}
+
+	public int getNumSlots() {
+		return this.numSlots;
+	}
+
+	/**
+	 * @return the size of a time bin in seconds.
+	 */
+	public int getTimeSlice() {
+		return this.timeSlice;
+	}
+
+	/**
+	 * @return a view on the link travel times observed so far, see {@link #getLinkTravelTime(Link, double)}.
+	 */
+	public TravelTime getLinkTravelTimes() {
+		return new TravelTime() {
+			@Override
+			public double getLinkTravelTime(Link link, double time, Person person, Vehicle vehicle) {
+				return ConcurrentTravelTimeCalculator.this.getLinkTravelTime(link, time);
+			}
+		};
+	}
+
+	/**
+	 * @return a view on the link to link travel times observed so far.
+	 */
+	public LinkToLinkTravelTime getLinkToLinkTravelTimes() {
+		return new LinkToLinkTravelTime() {
+			@Override
+			public double getLinkToLinkTravelTime(Link fromLink, Link toLink, double time) {
+				return ConcurrentTravelTimeCalculator.this.getLinkToLinkTravelTime(fromLink, toLink, time);
+			}
+		};
+	}
+
+	/**
+	 * Maps the links of the network to dense positions, and the turns from each link to the out-links of its
+	 * to-node to consecutive positions after the turns of the previous link. Immutable, so it is shared with
+	 * the snapshots.
+	 */
+	/*package*/ static final class Layout {
+
+		/*package*/ final Link[] links;
+		/** the position of each link by the index of its id, -1 for links not in the network */
+		private final int[] linkPositions;
+		/** the first turn position of each link position, plus the number of turns at the end */
+		/*package*/ final int[] turnOffsets;
+		/** the link position of the to-link of each turn position */
+		/*package*/ final int[] turnTargets;
+
+		/*package*/ Layout(final Network network, final boolean withTurns) {
+			this.links = network.getLinks().values().toArray(new Link[network.getLinks().size()]);
+			int maxIndex = -1;
+			for (Link link : this.links) {
+				maxIndex = Math.max(maxIndex, Id.getIndex(link.getId(), Link.class));
+			}
+			this.linkPositions = new int[maxIndex + 1];
+			Arrays.fill(this.linkPositions, -1);
+			for (int pos = 0; pos < this.links.length; pos++) {
+				this.linkPositions[Id.getIndex(this.links[pos].getId(), Link.class)] = pos;
+			}
+			if (withTurns) {
+				this.turnOffsets = new int[this.links.length + 1];
+				for (int pos = 0; pos < this.links.length; pos++) {
+					this.turnOffsets[pos + 1] = this.turnOffsets[pos] + this.links[pos].getToNode().getOutLinks().size();
+				}
+				this.turnTargets = new int[this.turnOffsets[this.links.length]];
+				for (int pos = 0; pos < this.links.length; pos++) {
+					int turnPos = this.turnOffsets[pos];
+					for (Link toLink : this.links[pos].getToNode().getOutLinks().values()) {
+						this.turnTargets[turnPos++] = getLinkPosition(toLink.getId());
+					}
+				}
+			} else {
+				this.turnOffsets = null;
+				this.turnTargets = null;
+			}
+		}
+
+		/*package*/ int getLinkPosition(final Id<Link> linkId) {
+			int index = Id.getIndex(linkId, Link.class);
+			return index < this.linkPositions.length ? this.linkPositions[index] : -1;
+		}
+
+		/*package*/ int getTurnPosition(final int fromLinkPos, final Id<Link> toLinkId) {
+			return fromLinkPos < 0 ? -1 : getTurnPosition(fromLinkPos, getLinkPosition(toLinkId));
+		}
+
+		/*package*/ int getTurnPosition(final int fromLinkPos, final int toLinkPos) {
+			for (int pos = this.turnOffsets[fromLinkPos]; pos < this.turnOffsets[fromLinkPos + 1]; pos++) {
+				if (this.turnTargets[pos] == toLinkPos) {
+					return pos;
+				}
+			}
+			return -1;
+		}
+	}
+
+	/**
+	 * The sums and counts of the travel times per time bin of one link or turn, and their averages as of the
+	 * last time they were read.
+	 */
+	private static final class Bins {
+
+		/** the bits of the sums of the travel times */
+		private final AtomicLongArray sums;
+		private final AtomicIntegerArray counts;
+
+		/** set whenever a travel time is added, cleared before the averages are computed again */
+		private volatile boolean changed = true;
+		/** never modified once assigned, so it may be handed out to snapshots */
+		private volatile double[] travelTimes = null;
+
+		Bins(final int numSlots) {
+			this.sums = new AtomicLongArray(numSlots);
+			this.counts = new AtomicIntegerArray(numSlots);
+		}
+
+		void add(final int slot, final double travelTime) {
+			long bits;
+			do {
+				bits = this.sums.get(slot);
+			} while (!this.sums.compareAndSet(slot, bits, Double.doubleToRawLongBits(Double.longBitsToDouble(bits) + travelTime)));
+			this.counts.incrementAndGet(slot);
+			if (!this.changed) {
+				// only write if necessary, so the threads do not keep invalidating each others caches
+				this.changed = true;
+			}
+		}
+
+		/**
+		 * @return the average travel time per time bin, the free speed travel time for bins without observations,
+		 * consolidated as by TravelTimeCalculator.consolidateData. Must not be modified by the caller.
+		 */
+		double[] getTravelTimes(final Link link, final int timeSlice) {
+			double[] travelTimes = this.travelTimes;
+			if (travelTimes != null && !this.changed) {
+				return travelTimes;
+			}
+			synchronized (this) {
+				if (this.travelTimes == null || this.changed) {
+					// travel times added while computing set the flag again, so they are picked up by the next read
+					this.changed = false;
+					this.travelTimes = computeTravelTimes(link, timeSlice);
+				}
+				return this.travelTimes;
+			}
+		}
+
+		private double[] computeTravelTimes(final Link link, final int timeSlice) {
+			double[] travelTimes = new double[this.sums.length()];
+			for (int i = 0; i < travelTimes.length; i++) {
+				int cnt = this.counts.get(i);
+				if (cnt == 0) {
+					travelTimes[i] = link.getLength() / link.getFreespeed(i * timeSlice);
+				} else {
+					travelTimes[i] = Double.longBitsToDouble(this.sums.get(i)) / cnt;
+				}
+				if (i > 0 && travelTimes[i] < travelTimes[i - 1] - timeSlice) {
+					// a vehicle which entered in the previous bin still blocks the link
+					travelTimes[i] = travelTimes[i - 1] - timeSlice;
+				}
+			}
+			return travelTimes;
+		}
+	}
+
+	/**
+	 * The state of {@link #PAGE_SIZE} vehicles. Each entry is only accessed by the thread handling the events
+	 * of the vehicle at that moment.
+	 */
+	private static final class VehiclePage {
+
+		final int[] linkPositions = new int[PAGE_SIZE];
+		final double[] enterTimes = new double[PAGE_SIZE];
+
+		VehiclePage() {
+			Arrays.fill(this.linkPositions, NO_LINK);
+		}
+	}
+
+}
@@ -50,7 +50,9 @@ public class TravelTimeCalculatorModule extends AbstractModule {
 
     @Override
     public void install() {
-        if (getConfig().travelTimeCalculator().getSeparateModes()) {
+        if (getConfig().travelTimeCalculator().getTravelTimeCalculatorType() == TravelTimeCalculatorConfigGroup.TravelTimeCalculatorType.TravelTimeCalculatorConcurrentArray) {
+            installConcurrentTravelTimeCalculator();
+        } else if (getConfig().travelTimeCalculator().getSeparateModes()) {
             for (final String mode : CollectionUtils.stringToSet(getConfig().travelTimeCalculator().getAnalyzedModes())) {
                 bind(TravelTimeCalculator.class).annotatedWith(Names.named(mode)).toProvider(new SingleModeTravelTimeCalculatorProvider(mode)).in(Singleton.class);
                 addTravelTimeBinding(mode).toProvider(new Provider<TravelTime>() {
@@ -74,6 +76,64 @@ public class TravelTimeCalculatorModule extends AbstractModule {
         }
     }
 
+    private void installConcurrentTravelTimeCalculator() {
+        if (getConfig().travelTimeCalculator().getSeparateModes()) {
+            for (final String mode : CollectionUtils.stringToSet(getConfig().travelTimeCalculator().getAnalyzedModes())) {
+                bind(ConcurrentTravelTimeCalculator.class).annotatedWith(Names.named(mode)).toProvider(new SingleModeConcurrentTravelTimeCalculatorProvider(mode)).in(Singleton.class);
+                addTravelTimeBinding(mode).toProvider(new Provider<TravelTime>() {
+                    @Inject Injector injector;
+                    @Override
+                    public TravelTime get() {
+                        return injector.getInstance(Key.get(ConcurrentTravelTimeCalculator.class, Names.named(mode))).getLinkTravelTimes();
+                    }
+                });
+            }
+        } else {
+            bind(ConcurrentTravelTimeCalculator.class).in(Singleton.class);
+            if (getConfig().travelTimeCalculator().isCalculateLinkTravelTimes()) {
+                for (String mode : CollectionUtils.stringToSet(getConfig().travelTimeCalculator().getAnalyzedModes())) {
+                    addTravelTimeBinding(mode).toProvider(new Provider<TravelTime>() {
+                        @Inject ConcurrentTravelTimeCalculator calculator;
+                        @Override
+                        public TravelTime get() {
+                            return calculator.getLinkTravelTimes();
+                        }
+                    });
+                }
+            }
+            if (getConfig().travelTimeCalculator().isCalculateLinkToLinkTravelTimes()) {
+                bind(LinkToLinkTravelTime.class).toProvider(new Provider<LinkToLinkTravelTime>() {
+                    @Inject ConcurrentTravelTimeCalculator calculator;
+                    @Override
+                    public LinkToLinkTravelTime get() {
+                        return calculator.getLinkToLinkTravelTimes();
+                    }
+                });
+            }
+        }
+    }
+
+    private static class SingleModeConcurrentTravelTimeCalculatorProvider implements Provider<ConcurrentTravelTimeCalculator> {
+
+        @Inject TravelTimeCalculatorConfigGroup config;
+        @Inject EventsManager eventsManager;
+        @Inject Network network;
+
+        private String mode;
+
+        SingleModeConcurrentTravelTimeCalculatorProvider(String mode) {
+            this.mode = mode;
+        }
+
+        @Override
+        public ConcurrentTravelTimeCalculator get() {
+            ConcurrentTravelTimeCalculator.checkSupported(config);
+            ConcurrentTravelTimeCalculator calculator = new ConcurrentTravelTimeCalculator(network, config.getTraveltimeBinSize(), config.getMaxTime(), config.isCalculateLinkTravelTimes(), config.isCalculateLinkToLinkTravelTimes(), true, CollectionUtils.stringToSet(mode));
+            eventsManager.addHandler(calculator);
+            return calculator;
+        }
+    }
+
     private static class SingleModeTravelTimeCalculatorProvider implements Provider<TravelTimeCalculator> {
 
         @Inject TravelTimeCalculatorConfigGroup config;
@@ -0,0 +1,92 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * TravelTimeSnapshot.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2016 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+package org.matsim.core.trafficmonitoring;
+
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.core.router.util.LinkToLinkTravelTime;
+import org.matsim.core.router.util.TravelTime;
+import org.matsim.vehicles.Vehicle;
+
+/**
+ * An immutable view on the travel times collected by a {@link ConcurrentTravelTimeCalculator} up to the moment
+ * the snapshot was taken. The averages of all time bins are computed and consolidated (see
+ * {@link TravelTimeCalculator}) once when the snapshot is taken, so reading a travel time is a plain array
+ * access and the snapshot can be shared by any number of routers without copying or locking.
+ * <p></p>
+ * Links which are not part of the network the calculator was created with and links on which no travel time
+ * was observed have their free speed travel time, as with {@link TravelTimeCalculator}.
+ */
+public final class TravelTimeSnapshot implements TravelTime, LinkToLinkTravelTime {
+
+	private final ConcurrentTravelTimeCalculator.Layout layout;
+	private final int timeSlice;
+	private final int numSlots;
+	/** the travel times per link position and time bin, <code>null</code> for links without observations */
+	private final double[][] linkTravelTimes;
+	/** the travel times per turn position and time bin, <code>null</code> for turns without observations */
+	private final double[][] turnTravelTimes;
+
+	/*package*/ TravelTimeSnapshot(final ConcurrentTravelTimeCalculator.Layout layout, final int timeSlice, final int numSlots,
+			final double[][] linkTravelTimes, final double[][] turnTravelTimes) {
+		this.layout = layout;
+		this.timeSlice = timeSlice;
+		this.numSlots = numSlots;
+		this.linkTravelTimes = linkTravelTimes;
+		this.turnTravelTimes = turnTravelTimes;
+	}
+
+	@Override
+	public double getLinkTravelTime(final Link link, final double time, final Person person, final Vehicle vehicle) {
+		int linkPos = this.layout.getLinkPosition(link.getId());
+		if (linkPos < 0 || this.linkTravelTimes[linkPos] == null) {
+			return link.getLength() / link.getFreespeed(time);
+		}
+		return this.linkTravelTimes[linkPos][TimeBinUtils.getTimeBinIndex(time, this.timeSlice, this.numSlots)];
+	}
+
+	/**
+	 * @throws IllegalStateException if the calculator did not collect link to link travel times
+	 */
+	@Override
+	public double getLinkToLinkTravelTime(final Link fromLink, final Link toLink, final double time) {
+		if (this.turnTravelTimes == null) {
+			throw new IllegalStateException("No link to link travel time is available " +
+					"if calculation is switched off by config option!");
+		}
+		int turnPos = this.layout.getTurnPosition(this.layout.getLinkPosition(fromLink.getId()), toLink.getId());
+		if (turnPos < 0 || this.turnTravelTimes[turnPos] == null) {
+			return fromLink.getLength() / fromLink.getFreespeed(time);
+		}
+		return this.turnTravelTimes[turnPos][TimeBinUtils.getTimeBinIndex(time, this.timeSlice, this.numSlots)];
+	}
+
+	/**
+	 * @return the size of a time bin in seconds.
+	 */
+	public int getTimeSlice() {
+		return this.timeSlice;
+	}
+
+	public int getNumSlots() {
+		return this.numSlots;
+	}
+
+}
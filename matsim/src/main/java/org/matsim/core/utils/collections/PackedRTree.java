@@ -0,0 +1,502 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * PackedRTree.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2016 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.utils.collections;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * A static spatial index, packed into a few primitive arrays. The elements, which are points or rectangles, are
+ * sorted along a Hilbert curve by the center of their bounds; each node of the tree contains the bounds of up to
+ * {@value #NODE_SIZE} consecutive elements or nodes of the level below. This needs much less memory than a
+ * {@link QuadTree}, which creates several objects per element, and queries mostly read consecutive memory.
+ * <p></p>
+ * The index cannot be changed once built with a {@link Builder}. Queries do not change it either, so it can be
+ * used by several threads concurrently. If the elements are not points, the distance to an element can be given by
+ * an {@link ElementDistance}, e.g. the distance to a line segment; otherwise it is the distance to its bounds.
+ * Of several elements at the same distance, the one added first is returned first.
+ *
+ * @param <T> The type of data stored in the index.
+ */
+public final class PackedRTree<T> {
+
+	/*package*/ static final int NODE_SIZE = 16;
+
+	/**
+	 * Calculates the distance of a point to an element, which must not be smaller than the distance to the bounds
+	 * of the element.
+	 */
+	public interface ElementDistance<T> {
+		public double calcDistance(double x, double y, T element);
+	}
+
+	private final int size;
+	/** minX, minY, maxX, maxY of the elements, followed by the ones of the nodes, level by level */
+	private final double[] bounds;
+	/** for elements: the position at which they were added; for nodes: the position of the first child */
+	private final int[] indices;
+	/** the end of each level in the positions; level 0 are the elements, the last level is the root */
+	private final int[] levelEnds;
+	private final Object[] values;
+	private final ElementDistance<? super T> elementDistance;
+
+	private PackedRTree(final double[] bounds, final int[] indices, final int[] levelEnds, final Object[] values,
+			final ElementDistance<? super T> elementDistance) {
+		this.size = values.length;
+		this.bounds = bounds;
+		this.indices = indices;
+		this.levelEnds = levelEnds;
+		this.values = values;
+		this.elementDistance = elementDistance;
+	}
+
+	public int size() {
+		return this.size;
+	}
+
+	/**
+	 * Gets the object closest to x/y
+	 *
+	 * @param x easting, left-right location, longitude
+	 * @param y northing, up-down location, latitude
+	 * @return the object found closest to x/y, <code>null</code> if the index is empty
+	 */
+	public T getClosest(final double x, final double y) {
+		if (this.size == 0) {
+			return null;
+		}
+		int position = findClosest(x, y, new Queue());
+		return position < 0 ? null : value(position);
+	}
+
+	/**
+	 * Gets the objects closest to the given locations, in the same order as the locations. The locations are
+	 * processed in the order of the elements, so that consecutive queries mostly visit the same nodes.
+	 *
+	 * @return the objects closest to x[i]/y[i], all <code>null</code> if the index is empty
+	 */
+	public List<T> getClosest(final double[] x, final double[] y) {
+		if (x.length != y.length) {
+			throw new IllegalArgumentException("different number of x and y coordinates: " + x.length + ", " + y.length);
+		}
+		List<T> result = new ArrayList<>(Arrays.asList(newArray(x.length)));
+		if (this.size == 0) {
+			return result;
+		}
+		double[] root = rootBounds();
+		long[] order = new long[x.length];
+		for (int i = 0; i < x.length; i++) {
+			order[i] = ((long) hilbert(x[i], y[i], root) << 32) | i;
+		}
+		Arrays.sort(order);
+		Queue queue = new Queue();
+		for (long o : order) {
+			int i = (int) o;
+			int position = findClosest(x[i], y[i], queue);
+			if (position >= 0) {
+				result.set(i, value(position));
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Gets the <code>k</code> objects closest to x/y, ordered by their distance.
+	 *
+	 * @return fewer than <code>k</code> objects if the index contains fewer objects
+	 */
+	public List<T> getKNearest(final double x, final double y, final int k) {
+		return getKNearest(x, y, k, Double.POSITIVE_INFINITY);
+	}
+
+	/**
+	 * Gets up to <code>k</code> objects closest to x/y within the maximal distance, ordered by their distance.
+	 */
+	public List<T> getKNearest(final double x, final double y, final int k, final double maxDistance) {
+		List<T> result = new ArrayList<>(Math.min(k, this.size));
+		if (this.size > 0 && k > 0) {
+			findNearest(x, y, k, maxDistance * maxDistance, new Queue(), result);
+		}
+		return result;
+	}
+
+	/**
+	 * Gets all objects within a certain distance around x/y
+	 *
+	 * @param x left-right location, longitude
+	 * @param y up-down location, latitude
+	 * @param distance the maximal distance returned objects can be away from x/y
+	 * @return the objects found within distance to x/y
+	 */
+	public Collection<T> getDisk(final double x, final double y, final double distance) {
+		List<T> result = new ArrayList<>();
+		if (this.size == 0) {
+			return result;
+		}
+		double maxDistance2 = distance * distance;
+		int[] stack = new int[16 * this.levelEnds.length];
+		int stackSize = 0;
+		stack[stackSize++] = this.bounds.length / 4 - 1;
+		while (stackSize > 0) {
+			int node = stack[--stackSize];
+			int end = childrenEnd(node);
+			for (int child = this.indices[node]; child < end; child++) {
+				if (child < this.size) {
+					if (elementDistance2(x, y, child) <= maxDistance2) {
+						result.add(value(child));
+					}
+				} else if (boundsDistance2(x, y, child) <= maxDistance2) {
+					stack[stackSize++] = child;
+				}
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Gets all objects whose bounds intersect the rectangle, including its borders.
+	 *
+	 * @param values1 a collection to which the objects are added
+	 * @return the collection given as parameter
+	 */
+	public Collection<T> getRectangle(final double minX, final double minY, final double maxX, final double maxY, final Collection<T> values1) {
+		if (this.size == 0) {
+			return values1;
+		}
+		int[] stack = new int[16 * this.levelEnds.length];
+		int stackSize = 0;
+		stack[stackSize++] = this.bounds.length / 4 - 1;
+		while (stackSize > 0) {
+			int node = stack[--stackSize];
+			int end = childrenEnd(node);
+			for (int child = this.indices[node]; child < end; child++) {
+				int b = 4 * child;
+				if (this.bounds[b] <= maxX && this.bounds[b + 1] <= maxY && this.bounds[b + 2] >= minX && this.bounds[b + 3] >= minY) {
+					if (child < this.size) {
+						values1.add(value(child));
+					} else {
+						stack[stackSize++] = child;
+					}
+				}
+			}
+		}
+		return values1;
+	}
+
+	/**
+	 * Visits the nodes by increasing distance, keeping only the closest element found so far instead of queuing
+	 * all elements like {@link #findNearest}.
+	 *
+	 * @return the position of the closest element, of the one added first if several are equally close, -1 if
+	 * no distance could be calculated
+	 */
+	private int findClosest(final double x, final double y, final Queue queue) {
+		queue.clear();
+		int root = this.bounds.length / 4 - 1;
+		queue.add(root, boundsDistance2(x, y, root), 0);
+		int best = -1;
+		double bestDistance2 = Double.POSITIVE_INFINITY;
+		while (queue.size > 0 && queue.distances[0] <= bestDistance2) {
+			int position = queue.poll();
+			int end = childrenEnd(position);
+			for (int child = this.indices[position]; child < end; child++) {
+				if (child < this.size) {
+					double distance2 = elementDistance2(x, y, child);
+					if (best < 0 || distance2 < bestDistance2 || (distance2 == bestDistance2 && this.indices[child] < this.indices[best])) {
+						best = child;
+						bestDistance2 = distance2;
+					}
+				} else {
+					double distance2 = boundsDistance2(x, y, child);
+					if (distance2 <= bestDistance2) {
+						queue.add(child, distance2, 0);
+					}
+				}
+			}
+		}
+		return best;
+	}
+
+	/**
+	 * Visits the nodes and elements by increasing distance, until <code>k</code> elements are found.
+	 *
+	 * @param result the list to add the elements to
+	 */
+	private void findNearest(final double x, final double y, final int k, final double maxDistance2, final Queue queue,
+			final List<T> result) {
+		queue.clear();
+		int root = this.bounds.length / 4 - 1;
+		queue.add(root, boundsDistance2(x, y, root), 0);
+		while (queue.size > 0) {
+			int position = queue.poll();
+			if (position < this.size) {
+				result.add(value(position));
+				if (result.size() == k) {
+					break;
+				}
+				continue;
+			}
+			int end = childrenEnd(position);
+			for (int child = this.indices[position]; child < end; child++) {
+				double distance2 = child < this.size ? elementDistance2(x, y, child) : boundsDistance2(x, y, child);
+				if (distance2 <= maxDistance2) {
+					// at the same distance, nodes come before elements, so the element added first is found first
+					queue.add(child, distance2, child < this.size ? this.indices[child] + 1 : 0);
+				}
+			}
+		}
+	}
+
+	private int childrenEnd(final int node) {
+		int firstChild = this.indices[node];
+		int level = 0;
+		while (this.levelEnds[level] <= firstChild) {
+			level++;
+		}
+		return Math.min(firstChild + NODE_SIZE, this.levelEnds[level]);
+	}
+
+	private double boundsDistance2(final double x, final double y, final int position) {
+		int b = 4 * position;
+		double dx = x < this.bounds[b] ? this.bounds[b] - x : (x > this.bounds[b + 2] ? x - this.bounds[b + 2] : 0);
+		double dy = y < this.bounds[b + 1] ? this.bounds[b + 1] - y : (y > this.bounds[b + 3] ? y - this.bounds[b + 3] : 0);
+		return dx * dx + dy * dy;
+	}
+
+	private double elementDistance2(final double x, final double y, final int position) {
+		if (this.elementDistance == null) {
+			return boundsDistance2(x, y, position);
+		}
+		double distance = this.elementDistance.calcDistance(x, y, value(position));
+		return distance * distance;
+	}
+
+	@SuppressWarnings("unchecked")
+	private T value(final int position) {
+		return (T) this.values[position];
+	}
+
+	@SuppressWarnings("unchecked")
+	private T[] newArray(final int length) {
+		return (T[]) new Object[length];
+	}
+
+	private double[] rootBounds() {
+		int b = this.bounds.length - 4;
+		return new double[] {this.bounds[b], this.bounds[b + 1], this.bounds[b + 2], this.bounds[b + 3]};
+	}
+
+	/**
+	 * Returns the position of the point along a Hilbert curve of order 15 filling the rectangle.
+	 */
+	/*package*/ static int hilbert(final double x, final double y, final double[] rect) {
+		double width = rect[2] - rect[0];
+		double height = rect[3] - rect[1];
+		int hx = width > 0 ? (int) Math.max(0, Math.min(0x7fff, 0x7fff * (x - rect[0]) / width)) : 0;
+		int hy = height > 0 ? (int) Math.max(0, Math.min(0x7fff, 0x7fff * (y - rect[1]) / height)) : 0;
+		int d = 0;
+		for (int s = 1 << 14; s > 0; s >>= 1) {
+			int rx = (hx & s) > 0 ? 1 : 0;
+			int ry = (hy & s) > 0 ? 1 : 0;
+			d += s * s * ((3 * rx) ^ ry);
+			if (ry == 0) {
+				if (rx == 1) {
+					hx = s - 1 - hx;
+					hy = s - 1 - hy;
+				}
+				int t = hx;
+				hx = hy;
+				hy = t;
+			}
+		}
+		return d;
+	}
+
+	/**
+	 * Collects the elements of a {@link PackedRTree}.
+	 */
+	public static final class Builder<T> {
+
+		private double[] bounds = new double[64];
+		private Object[] values = new Object[16];
+		private int size = 0;
+		private ElementDistance<? super T> elementDistance = null;
+
+		public Builder<T> put(final double x, final double y, final T value) {
+			return put(x, y, x, y, value);
+		}
+
+		public Builder<T> put(final double minX, final double minY, final double maxX, final double maxY, final T value) {
+			if (this.size == this.values.length) {
+				this.values = Arrays.copyOf(this.values, 2 * this.size);
+				this.bounds = Arrays.copyOf(this.bounds, 8 * this.size);
+			}
+			int b = 4 * this.size;
+			this.bounds[b] = Math.min(minX, maxX);
+			this.bounds[b + 1] = Math.min(minY, maxY);
+			this.bounds[b + 2] = Math.max(minX, maxX);
+			this.bounds[b + 3] = Math.max(minY, maxY);
+			this.values[this.size++] = value;
+			return this;
+		}
+
+		public Builder<T> setElementDistance(final ElementDistance<? super T> elementDistance) {
+			this.elementDistance = elementDistance;
+			return this;
+		}
+
+		public PackedRTree<T> build() {
+			int n = this.size;
+			int numberOfPositions = n;
+			List<Integer> levelEnds = new ArrayList<>();
+			levelEnds.add(n);
+			int levelSize = n;
+			do {
+				levelSize = (levelSize + NODE_SIZE - 1) / NODE_SIZE;
+				numberOfPositions += levelSize;
+				levelEnds.add(numberOfPositions);
+			} while (levelSize > 1);
+
+			double[] rect = new double[] {Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY, Double.NEGATIVE_INFINITY};
+			for (int i = 0; i < n; i++) {
+				rect[0] = Math.min(rect[0], this.bounds[4 * i]);
+				rect[1] = Math.min(rect[1], this.bounds[4 * i + 1]);
+				rect[2] = Math.max(rect[2], this.bounds[4 * i + 2]);
+				rect[3] = Math.max(rect[3], this.bounds[4 * i + 3]);
+			}
+			long[] order = new long[n];
+			for (int i = 0; i < n; i++) {
+				double centerX = (this.bounds[4 * i] + this.bounds[4 * i + 2]) / 2;
+				double centerY = (this.bounds[4 * i + 1] + this.bounds[4 * i + 3]) / 2;
+				order[i] = ((long) hilbert(centerX, centerY, rect) << 32) | i;
+			}
+			Arrays.sort(order);
+
+			double[] packedBounds = new double[4 * numberOfPositions];
+			int[] indices = new int[numberOfPositions];
+			Object[] packedValues = new Object[n];
+			for (int p = 0; p < n; p++) {
+				int i = (int) order[p];
+				System.arraycopy(this.bounds, 4 * i, packedBounds, 4 * p, 4);
+				indices[p] = i;
+				packedValues[p] = this.values[i];
+			}
+			int node = n;
+			int levelStart = 0;
+			for (int level = 1; level < levelEnds.size(); level++) {
+				int levelEnd = levelEnds.get(level - 1);
+				for (int first = levelStart; first < levelEnd; first += NODE_SIZE) {
+					int b = 4 * node;
+					packedBounds[b] = Double.POSITIVE_INFINITY;
+					packedBounds[b + 1] = Double.POSITIVE_INFINITY;
+					packedBounds[b + 2] = Double.NEGATIVE_INFINITY;
+					packedBounds[b + 3] = Double.NEGATIVE_INFINITY;
+					for (int child = first; child < Math.min(first + NODE_SIZE, levelEnd); child++) {
+						packedBounds[b] = Math.min(packedBounds[b], packedBounds[4 * child]);
+						packedBounds[b + 1] = Math.min(packedBounds[b + 1], packedBounds[4 * child + 1]);
+						packedBounds[b + 2] = Math.max(packedBounds[b + 2], packedBounds[4 * child + 2]);
+						packedBounds[b + 3] = Math.max(packedBounds[b + 3], packedBounds[4 * child + 3]);
+					}
+					indices[node] = first;
+					node++;
+				}
+				levelStart = levelEnd;
+			}
+			int[] ends = new int[levelEnds.size()];
+			for (int i = 0; i < ends.length; i++) {
+				ends[i] = levelEnds.get(i);
+			}
+			return new PackedRTree<>(packedBounds, indices, ends, packedValues, this.elementDistance);
+		}
+	}
+
+	/**
+	 * A binary heap of positions, ordered by distance and then by a tie-breaking rank.
+	 */
+	private static final class Queue {
+		private int[] positions = new int[64];
+		private double[] distances = new double[64];
+		private int[] ranks = new int[64];
+		private int size = 0;
+
+		void clear() {
+			this.size = 0;
+		}
+
+		void add(final int position, final double distance, final int rank) {
+			if (this.size == this.positions.length) {
+				this.positions = Arrays.copyOf(this.positions, 2 * this.size);
+				this.distances = Arrays.copyOf(this.distances, 2 * this.size);
+				this.ranks = Arrays.copyOf(this.ranks, 2 * this.size);
+			}
+			int i = this.size++;
+			while (i > 0) {
+				int parent = (i - 1) / 2;
+				if (!less(distance, rank, this.distances[parent], this.ranks[parent])) {
+					break;
+				}
+				set(i, this.positions[parent], this.distances[parent], this.ranks[parent]);
+				i = parent;
+			}
+			set(i, position, distance, rank);
+		}
+
+		int poll() {
+			int result = this.positions[0];
+			this.size--;
+			if (this.size > 0) {
+				int position = this.positions[this.size];
+				double distance = this.distances[this.size];
+				int rank = this.ranks[this.size];
+				int i = 0;
+				while (true) {
+					int child = 2 * i + 1;
+					if (child >= this.size) {
+						break;
+					}
+					if (child + 1 < this.size && less(this.distances[child + 1], this.ranks[child + 1], this.distances[child], this.ranks[child])) {
+						child++;
+					}
+					if (!less(this.distances[child], this.ranks[child], distance, rank)) {
+						break;
+					}
+					set(i, this.positions[child], this.distances[child], this.ranks[child]);
+					i = child;
+				}
+				set(i, position, distance, rank);
+			}
+			return result;
+		}
+
+		private void set(final int i, final int position, final double distance, final int rank) {
+			this.positions[i] = position;
+			this.distances[i] = distance;
+			this.ranks[i] = rank;
+		}
+
+		private static boolean less(final double distance1, final int rank1, final double distance2, final int rank2) {
+			return distance1 < distance2 || (distance1 == distance2 && rank1 < rank2);
+		}
+	}
+
+}
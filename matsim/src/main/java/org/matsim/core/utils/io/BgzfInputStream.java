@@ -0,0 +1,250 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * BgzfInputStream.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2016 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.utils.io;
+
+import java.io.ByteArrayInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.SequenceInputStream;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.Inflater;
+import java.util.zip.ZipException;
+
+/**
+ * Reads gzip-compressed data. Blocks in the format written by {@link BgzfOutputStream} (and samtools, see
+ * there) are decompressed in batches on the given executor, at most <code>maxPending</code> batches ahead of
+ * the reading thread. Without executor, the batches are decompressed in the reading thread. As soon as a
+ * gzip member without block size is found, the rest of the data is read with a {@link GZIPInputStream}, so
+ * all gzip files can be read.
+ */
+/*package*/ final class BgzfInputStream extends InputStream {
+
+	private final InputStream in;
+	private final Executor executor;
+	private final int maxPending;
+	private final ArrayDeque<Future<byte[]>> pending = new ArrayDeque<>();
+	private final byte[] header = new byte[BgzfOutputStream.HEADER_LENGTH];
+	private boolean endOfBlocks = false;
+	private InputStream fallback = null;
+	private byte[] current = new byte[0];
+	private int pos = 0;
+
+	/*package*/ BgzfInputStream(final InputStream in, final Executor executor, final int maxPending) throws IOException {
+		this.in = in;
+		this.executor = executor;
+		this.maxPending = Math.max(1, maxPending);
+		int n = readFully(this.in, this.header, 0, this.header.length);
+		if (n < this.header.length || !isBlockHeader(this.header)) {
+			// not written in blocks, throws the usual exceptions for data which is not gzip-compressed
+			this.fallback = new GZIPInputStream(new SequenceInputStream(new ByteArrayInputStream(this.header, 0, n), this.in));
+			this.endOfBlocks = true;
+		} else {
+			this.current = null;
+		}
+	}
+
+	@Override
+	public int read() throws IOException {
+		if (!ensureAvailable()) {
+			return this.fallback == null ? -1 : this.fallback.read();
+		}
+		return this.current[this.pos++] & 0xff;
+	}
+
+	@Override
+	public int read(final byte[] b, final int off, final int len) throws IOException {
+		if (len == 0) {
+			return 0;
+		}
+		if (!ensureAvailable()) {
+			return this.fallback == null ? -1 : this.fallback.read(b, off, len);
+		}
+		int n = Math.min(len, this.current.length - this.pos);
+		System.arraycopy(this.current, this.pos, b, off, n);
+		this.pos += n;
+		return n;
+	}
+
+	@Override
+	public int available() throws IOException {
+		if (this.current != null && this.pos < this.current.length) {
+			return this.current.length - this.pos;
+		}
+		return this.fallback == null || !this.pending.isEmpty() ? 0 : this.fallback.available();
+	}
+
+	@Override
+	public void close() throws IOException {
+		for (Future<byte[]> future : this.pending) {
+			future.cancel(false);
+		}
+		this.pending.clear();
+		if (this.fallback != null) {
+			this.fallback.close();
+		}
+		this.in.close();
+	}
+
+	/**
+	 * @return <code>true</code> if there is decompressed data in {@link #current}, <code>false</code> if all
+	 * blocks are read.
+	 */
+	private boolean ensureAvailable() throws IOException {
+		while (this.current == null || this.pos == this.current.length) {
+			while (!this.endOfBlocks && this.pending.size() < this.maxPending) {
+				submitBatch();
+			}
+			if (this.pending.isEmpty()) {
+				return false;
+			}
+			try {
+				this.current = this.pending.poll().get();
+			} catch (InterruptedException e) {
+				throw new InterruptedIOException(e.getMessage());
+			} catch (ExecutionException e) {
+				if (e.getCause() instanceof IOException) {
+					throw (IOException) e.getCause();
+				}
+				throw new IOException(e.getCause());
+			}
+			this.pos = 0;
+		}
+		return true;
+	}
+
+	/**
+	 * Reads the next blocks and submits them for decompression. The header of the first block is already in
+	 * {@link #header}.
+	 */
+	private void submitBatch() throws IOException {
+		final List<byte[]> blocks = new ArrayList<>(BgzfOutputStream.BLOCKS_PER_BATCH);
+		while (!this.endOfBlocks && blocks.size() < BgzfOutputStream.BLOCKS_PER_BATCH) {
+			int blockLength = readShort(this.header, 16) + 1;
+			byte[] block = new byte[blockLength];
+			System.arraycopy(this.header, 0, block, 0, this.header.length);
+			if (readFully(this.in, block, this.header.length, blockLength - this.header.length) < blockLength - this.header.length) {
+				throw new EOFException("Unexpected end of gzip block");
+			}
+			blocks.add(block);
+			int n = readFully(this.in, this.header, 0, this.header.length);
+			if (n == 0) {
+				this.endOfBlocks = true;
+			} else if (n < this.header.length || !isBlockHeader(this.header)) {
+				this.fallback = new GZIPInputStream(new SequenceInputStream(new ByteArrayInputStream(this.header, 0, n), this.in));
+				this.endOfBlocks = true;
+			}
+		}
+		FutureTask<byte[]> task = new FutureTask<>(new Callable<byte[]>() {
+			@Override
+			public byte[] call() throws IOException {
+				return decompress(blocks);
+			}
+		});
+		if (this.executor == null) {
+			task.run();
+		} else {
+			this.executor.execute(task);
+		}
+		this.pending.add(task);
+	}
+
+	/*package*/ static byte[] decompress(final List<byte[]> blocks) throws IOException {
+		int length = 0;
+		for (byte[] block : blocks) {
+			length += readInt(block, block.length - 4);
+		}
+		byte[] result = new byte[length];
+		int pos = 0;
+		Inflater inflater = new Inflater(true);
+		CRC32 crc = new CRC32();
+		try {
+			for (byte[] block : blocks) {
+				int isize = readInt(block, block.length - 4);
+				inflater.reset();
+				inflater.setInput(block, BgzfOutputStream.HEADER_LENGTH,
+						block.length - BgzfOutputStream.HEADER_LENGTH - BgzfOutputStream.TRAILER_LENGTH);
+				int n = 0;
+				while (n < isize) {
+					int inflated = inflater.inflate(result, pos + n, isize - n);
+					if (inflated == 0 && (inflater.finished() || inflater.needsInput() || inflater.needsDictionary())) {
+						break;
+					}
+					n += inflated;
+				}
+				if (n != isize) {
+					throw new ZipException("Corrupt gzip block: wrong uncompressed size");
+				}
+				crc.reset();
+				crc.update(result, pos, isize);
+				if ((int) crc.getValue() != readInt(block, block.length - 8)) {
+					throw new ZipException("Corrupt gzip block: wrong CRC");
+				}
+				pos += isize;
+			}
+		} catch (DataFormatException e) {
+			throw new ZipException(e.getMessage());
+		} finally {
+			inflater.end();
+		}
+		return result;
+	}
+
+	/**
+	 * @return <code>true</code> if the header is the one of a block written by {@link BgzfOutputStream}
+	 */
+	private static boolean isBlockHeader(final byte[] h) {
+		return h[0] == 31 && h[1] == (byte) 139 && h[2] == 8 && (h[3] & 4) != 0
+				&& readShort(h, 10) == 6 && h[12] == 'B' && h[13] == 'C' && readShort(h, 14) == 2;
+	}
+
+	private static int readFully(final InputStream in, final byte[] b, final int off, final int len) throws IOException {
+		int n = 0;
+		while (n < len) {
+			int r = in.read(b, off + n, len - n);
+			if (r < 0) {
+				break;
+			}
+			n += r;
+		}
+		return n;
+	}
+
+	private static int readShort(final byte[] b, final int pos) {
+		return (b[pos] & 0xff) | ((b[pos + 1] & 0xff) << 8);
+	}
+
+	private static int readInt(final byte[] b, final int pos) {
+		return readShort(b, pos) | (readShort(b, pos + 2) << 16);
+	}
+
+}
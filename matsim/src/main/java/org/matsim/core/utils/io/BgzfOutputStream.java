@@ -0,0 +1,225 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * BgzfOutputStream.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2016 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.utils.io;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Writes gzip-compressed data in the blocked gzip format (BGZF) known from samtools: the data is split into
+ * blocks of at most 64 KiB, each written as a gzip member of its own which contains its compressed size in
+ * an extra field. Any gzip reader can read the written files, {@link BgzfInputStream} can additionally
+ * decompress their blocks in parallel. The empty block which samtools writes to mark the end of a file is
+ * omitted, it is not needed by gzip readers.
+ * <p></p>
+ * The blocks are compressed in batches on the given executor, at most <code>maxPending</code> batches at
+ * a time. Without executor, the batches are compressed in the writing thread.
+ * <p></p>
+ * Like {@link java.util.zip.GZIPOutputStream}, {@link #flush()} does not write data which is still buffered,
+ * it only writes the batches which are already compressed.
+ */
+/*package*/ final class BgzfOutputStream extends OutputStream {
+
+	/*package*/ static final int HEADER_LENGTH = 18;
+	/*package*/ static final int TRAILER_LENGTH = 8;
+	/*package*/ static final int MAX_BLOCK_LENGTH = 65536;
+	/** the uncompressed length of a block; leaves space for incompressible data, as in samtools */
+	/*package*/ static final int BLOCK_DATA_LENGTH = 65280;
+	/*package*/ static final int BLOCKS_PER_BATCH = 16;
+
+	private final OutputStream out;
+	private final ExecutorService executor;
+	private final int maxPending;
+	private final int level;
+	private final ArrayDeque<Future<byte[]>> pending = new ArrayDeque<>();
+	private byte[] buffer = new byte[BLOCK_DATA_LENGTH * BLOCKS_PER_BATCH];
+	private int count = 0;
+	private boolean closed = false;
+
+	/*package*/ BgzfOutputStream(final OutputStream out, final int level, final ExecutorService executor, final int maxPending) {
+		this.out = out;
+		this.level = level;
+		this.executor = executor;
+		this.maxPending = Math.max(1, maxPending);
+	}
+
+	@Override
+	public void write(final int b) throws IOException {
+		if (this.count == this.buffer.length) {
+			submitBuffer();
+		}
+		this.buffer[this.count++] = (byte) b;
+	}
+
+	@Override
+	public void write(final byte[] b, int off, int len) throws IOException {
+		while (len > 0) {
+			if (this.count == this.buffer.length) {
+				submitBuffer();
+			}
+			int n = Math.min(len, this.buffer.length - this.count);
+			System.arraycopy(b, off, this.buffer, this.count, n);
+			this.count += n;
+			off += n;
+			len -= n;
+		}
+	}
+
+	@Override
+	public void flush() throws IOException {
+		while (!this.pending.isEmpty() && this.pending.peek().isDone()) {
+			writeNextBatch();
+		}
+		this.out.flush();
+	}
+
+	@Override
+	public void close() throws IOException {
+		if (this.closed) {
+			return;
+		}
+		this.closed = true;
+		try {
+			if (this.count > 0) {
+				submitBuffer();
+			}
+			while (!this.pending.isEmpty()) {
+				writeNextBatch();
+			}
+		} finally {
+			for (Future<byte[]> future : this.pending) {
+				future.cancel(false);
+			}
+			this.out.close();
+		}
+	}
+
+	private void submitBuffer() throws IOException {
+		final byte[] data = this.buffer;
+		final int length = this.count;
+		final int level = this.level;
+		if (this.executor == null) {
+			this.out.write(compress(data, length, level));
+			this.count = 0;
+			return;
+		}
+		this.pending.add(this.executor.submit(new Callable<byte[]>() {
+			@Override
+			public byte[] call() {
+				return compress(data, length, level);
+			}
+		}));
+		this.buffer = new byte[data.length];
+		this.count = 0;
+		while (this.pending.size() >= this.maxPending) {
+			writeNextBatch();
+		}
+	}
+
+	private void writeNextBatch() throws IOException {
+		try {
+			this.out.write(this.pending.poll().get());
+		} catch (InterruptedException e) {
+			throw new InterruptedIOException(e.getMessage());
+		} catch (ExecutionException e) {
+			throw new IOException(e.getCause());
+		}
+	}
+
+	/**
+	 * @return the blocks containing the first <code>length</code> bytes of <code>data</code>
+	 */
+	/*package*/ static byte[] compress(final byte[] data, final int length, final int level) {
+		int blocks = (length + BLOCK_DATA_LENGTH - 1) / BLOCK_DATA_LENGTH;
+		byte[] result = new byte[blocks * MAX_BLOCK_LENGTH];
+		int pos = 0;
+		Deflater deflater = new Deflater(level, true);
+		CRC32 crc = new CRC32();
+		try {
+			for (int off = 0; off < length; off += BLOCK_DATA_LENGTH) {
+				int n = Math.min(BLOCK_DATA_LENGTH, length - off);
+				int cdataStart = pos + HEADER_LENGTH;
+				int cdataMax = MAX_BLOCK_LENGTH - HEADER_LENGTH - TRAILER_LENGTH;
+				deflater.reset();
+				deflater.setInput(data, off, n);
+				deflater.finish();
+				int cdataLength = 0;
+				while (!deflater.finished() && cdataLength < cdataMax) {
+					cdataLength += deflater.deflate(result, cdataStart + cdataLength, cdataMax - cdataLength);
+				}
+				if (!deflater.finished()) {
+					// incompressible, use a stored deflate block
+					result[cdataStart] = 1;
+					writeShort(result, cdataStart + 1, n);
+					writeShort(result, cdataStart + 3, ~n);
+					System.arraycopy(data, off, result, cdataStart + 5, n);
+					cdataLength = n + 5;
+				}
+				int blockLength = HEADER_LENGTH + cdataLength + TRAILER_LENGTH;
+				writeHeader(result, pos, blockLength);
+				crc.reset();
+				crc.update(data, off, n);
+				writeInt(result, cdataStart + cdataLength, (int) crc.getValue());
+				writeInt(result, cdataStart + cdataLength + 4, n);
+				pos += blockLength;
+			}
+		} finally {
+			deflater.end();
+		}
+		byte[] trimmed = new byte[pos];
+		System.arraycopy(result, 0, trimmed, 0, pos);
+		return trimmed;
+	}
+
+	private static void writeHeader(final byte[] b, final int pos, final int blockLength) {
+		b[pos] = 31; // ID1
+		b[pos + 1] = (byte) 139; // ID2
+		b[pos + 2] = 8; // CM = deflate
+		b[pos + 3] = 4; // FLG = FEXTRA
+		writeInt(b, pos + 4, 0); // MTIME
+		b[pos + 8] = 0; // XFL
+		b[pos + 9] = (byte) 255; // OS = unknown
+		writeShort(b, pos + 10, 6); // XLEN
+		b[pos + 12] = 'B';
+		b[pos + 13] = 'C';
+		writeShort(b, pos + 14, 2);
+		writeShort(b, pos + 16, blockLength - 1);
+	}
+
+	private static void writeShort(final byte[] b, final int pos, final int value) {
+		b[pos] = (byte) value;
+		b[pos + 1] = (byte) (value >>> 8);
+	}
+
+	private static void writeInt(final byte[] b, final int pos, final int value) {
+		writeShort(b, pos, value);
+		writeShort(b, pos + 2, value >>> 16);
+	}
+
+}
@@ -0,0 +1,49 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * Compression.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2016 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.utils.io;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * A compression format of files, chosen by the ending of the file name. {@link IOUtils} supports gzip
+ * (<code>.gz</code>); further formats, e.g. LZ4 or Zstandard, can be added with
+ * {@link IOUtils#registerCompression(Compression)}.
+ */
+public interface Compression {
+
+	/**
+	 * @return the ending of compressed file names including the dot, e.g. <code>.gz</code>
+	 */
+	String getFileEnding();
+
+	/**
+	 * @return a stream which decompresses the data read from the given stream
+	 */
+	InputStream createInputStream(InputStream in) throws IOException;
+
+	/**
+	 * @return a stream which compresses the data written to it to the given stream
+	 */
+	OutputStream createOutputStream(OutputStream out) throws IOException;
+
+}
@@ -0,0 +1,115 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * GzipCompression.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2016 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.utils.io;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.Deflater;
+
+/**
+ * gzip compression with blocks which are compressed and decompressed in parallel, see {@link BgzfOutputStream}
+ * and {@link BgzfInputStream}. All instances share one pool of daemon threads. The number of threads is set
+ * by the controler to <code>global.numberOfThreads</code>; until then, the data is compressed in the reading
+ * or writing thread.
+ */
+/*package*/ final class GzipCompression implements Compression {
+
+	/*package*/ static final String GZ = ".gz";
+
+	/**
+	 * The number of batches of {@link BgzfOutputStream#BLOCKS_PER_BATCH} blocks each stream keeps in flight,
+	 * independent of the number of threads, so open streams do not hold more than a few MiB each.
+	 */
+	/*package*/ static final int MAX_PENDING_BATCHES = 4;
+
+	/** how long idle threads are kept, so the threads of a replaced pool end once its streams are done */
+	private static final long KEEP_ALIVE_SECONDS = 10;
+
+	private static int numberOfThreads = 1;
+	private static ExecutorService executor = null;
+
+	@Override
+	public String getFileEnding() {
+		return GZ;
+	}
+
+	@Override
+	public InputStream createInputStream(final InputStream in) throws IOException {
+		ExecutorService executor = getExecutor();
+		return new BgzfInputStream(new BufferedInputStream(in, BgzfOutputStream.MAX_BLOCK_LENGTH), executor, executor == null ? 1 : MAX_PENDING_BATCHES);
+	}
+
+	@Override
+	public OutputStream createOutputStream(final OutputStream out) throws IOException {
+		ExecutorService executor = getExecutor();
+		return new BgzfOutputStream(out, Deflater.DEFAULT_COMPRESSION, executor, executor == null ? 1 : MAX_PENDING_BATCHES);
+	}
+
+	/**
+	 * Streams which are already open keep using the pool they were created with. That pool is not shut down,
+	 * its threads end by themselves after being idle for {@link #KEEP_ALIVE_SECONDS}.
+	 */
+	/*package*/ static synchronized void setNumberOfThreads(final int numberOfThreads) {
+		if (numberOfThreads < 1) {
+			throw new IllegalArgumentException("The number of threads must be at least 1, but is " + numberOfThreads);
+		}
+		if (numberOfThreads != GzipCompression.numberOfThreads) {
+			executor = null;
+		}
+		GzipCompression.numberOfThreads = numberOfThreads;
+	}
+
+	/*package*/ static synchronized int getNumberOfThreads() {
+		return numberOfThreads;
+	}
+
+	/**
+	 * @return the shared thread pool, or <code>null</code> if there is only one thread
+	 */
+	private static synchronized ExecutorService getExecutor() {
+		if (numberOfThreads == 1) {
+			return null;
+		}
+		if (executor == null) {
+			ThreadPoolExecutor pool = new ThreadPoolExecutor(numberOfThreads, numberOfThreads, KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+					new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+				private int cnt = 0;
+				@Override
+				public Thread newThread(final Runnable r) {
+					Thread thread = new Thread(r, GzipCompression.class.getSimpleName() + "-" + this.cnt++);
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+			pool.allowCoreThreadTimeOut(true);
+			executor = pool;
+		}
+		return executor;
+	}
+
+}
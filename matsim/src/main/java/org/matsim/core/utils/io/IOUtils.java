@@ -39,16 +39,19 @@ import java.nio.ByteBuffer;
 import java.nio.channels.Channels;
 import java.nio.channels.ReadableByteChannel;
 import java.nio.charset.Charset;
+import java.util.Collections;
+import java.util.List;
 import java.util.Locale;
-import java.util.zip.GZIPInputStream;
-import java.util.zip.GZIPOutputStream;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 import org.apache.log4j.Logger;
 
 /** A class with some static utility functions for file-I/O. */
 public class IOUtils {
 
-	private static final String GZ = ".gz";
+	private static final String GZ = GzipCompression.GZ;
+
+	private static final List<Compression> compressions = new CopyOnWriteArrayList<Compression>(Collections.singletonList(new GzipCompression()));
 	
 	public static final Charset CHARSET_UTF8 = Charset.forName("UTF8");
 	public static final Charset CHARSET_WINDOWS_ISO88591 = Charset.forName("ISO-8859-1");
@@ -101,54 +104,116 @@ public class IOUtils {
 	 * @author mrieser
 	 */
 	public static BufferedReader getBufferedReader(final String filename, final Charset charset) throws UncheckedIOException {
-		BufferedReader infile = null;
 		if (filename == null) {
 			throw new UncheckedIOException(new FileNotFoundException("No filename given (filename == null)"));
 		}
 		try {
-			if (new File(filename).exists()) {
-				if (filename.endsWith(GZ)) {
-					infile = new BufferedReader(new InputStreamReader(new UnicodeInputStream(new GZIPInputStream(new FileInputStream(filename))), charset));
-				} else {
-					infile = new BufferedReader(new InputStreamReader(new UnicodeInputStream(new FileInputStream(filename)), charset));
-				}
-			} else if (new File(filename + GZ).exists()) {
-				infile = new BufferedReader(new InputStreamReader(new UnicodeInputStream(new GZIPInputStream(new FileInputStream(filename  + GZ))), charset));
-			} else {
-				InputStream stream = IOUtils.class.getClassLoader().getResourceAsStream(filename);
-				if (stream != null) {
-					if (filename.endsWith(GZ)) {
-						infile = new BufferedReader(new InputStreamReader(new UnicodeInputStream(new GZIPInputStream(stream)), charset));
-						log.info("loading file from classpath: " + filename);
-					} else {
-						infile = new BufferedReader(new InputStreamReader(new UnicodeInputStream(stream), charset));
-						log.info("loading file from classpath: " + filename);
-					}
-				} else {
-					stream = IOUtils.class.getClassLoader().getResourceAsStream(filename + GZ);
-					if (stream != null) {
-						infile = new BufferedReader(new InputStreamReader(new UnicodeInputStream(new GZIPInputStream(stream)), charset));
-						log.info("loading file from classpath: " + filename + GZ);
-					}
-				}
+			InputStream stream = openInputStream(filename);
+			if (stream == null) {
+				throw new UncheckedIOException(new FileNotFoundException(filename));
 			}
+			return new BufferedReader(new InputStreamReader(new UnicodeInputStream(stream), charset));
 		} catch (IOException e) {
 			throw new UncheckedIOException(e);
 		}
+	}
+
+	/**
+	 * Opens the file, or the resource from the classpath, and decompresses it if its name has the ending of a
+	 * registered {@link Compression}. If neither is found, a compressed version with the added ending of one of
+	 * the compressions is searched for.
+	 *
+	 * @return the decompressed stream, or <code>null</code> if neither the file nor a compressed version of it is found
+	 */
+	private static InputStream openInputStream(final String filename) throws IOException {
+		if (new File(filename).exists()) {
+			return decompress(filename, new FileInputStream(filename));
+		}
+		for (Compression compression : compressions) {
+			String compressedFilename = filename + compression.getFileEnding();
+			if (new File(compressedFilename).exists()) {
+				return compression.createInputStream(new FileInputStream(compressedFilename));
+			}
+		}
+		InputStream stream = IOUtils.class.getClassLoader().getResourceAsStream(filename);
+		if (stream != null) {
+			log.info("loading file from classpath: " + filename);
+			return decompress(filename, stream);
+		}
+		for (Compression compression : compressions) {
+			String compressedFilename = filename + compression.getFileEnding();
+			stream = IOUtils.class.getClassLoader().getResourceAsStream(compressedFilename);
+			if (stream != null) {
+				log.info("loading file from classpath: " + compressedFilename);
+				return compression.createInputStream(stream);
+			}
+		}
+		return null;
+	}
+
+	private static InputStream decompress(final String filename, final InputStream stream) throws IOException {
+		Compression compression = getCompression(filename);
+		return compression == null ? stream : compression.createInputStream(stream);
+	}
+
+	/**
+	 * Adds a compression format which is used for files with its ending, replacing the compression
+	 * registered for the same ending. gzip is registered by default.
+	 */
+	public static void registerCompression(final Compression compression) {
+		synchronized (compressions) {
+			for (Compression c : compressions) {
+				if (c.getFileEnding().equalsIgnoreCase(compression.getFileEnding())) {
+					compressions.remove(c);
+				}
+			}
+			compressions.add(compression);
+		}
+	}
 
-		if (infile == null) {
-			throw new UncheckedIOException(new FileNotFoundException(filename));
+	/**
+	 * Removes the compression registered for the file ending, if any. Files with that ending are then read and
+	 * written uncompressed.
+	 */
+	public static void unregisterCompression(final String fileEnding) {
+		synchronized (compressions) {
+			for (Compression c : compressions) {
+				if (c.getFileEnding().equalsIgnoreCase(fileEnding)) {
+					compressions.remove(c);
+				}
+			}
+		}
+	}
+
+	/**
+	 * @return the compression used for the file, or <code>null</code> if the file is not compressed
+	 */
+	public static Compression getCompression(final String filename) {
+		String lowerCaseFilename = filename.toLowerCase(Locale.ROOT);
+		for (Compression compression : compressions) {
+			if (lowerCaseFilename.endsWith(compression.getFileEnding().toLowerCase(Locale.ROOT))) {
+				return compression;
+			}
 		}
-		return infile;
+		return null;
+	}
+
+	/**
+	 * Sets the number of threads used to compress and decompress gzip files. The controler sets it to
+	 * <code>global.numberOfThreads</code>. With one thread, the default, the files are compressed in the
+	 * reading or writing thread. Streams which are already open are not affected.
+	 */
+	public static void setNumberOfCompressionThreads(final int numberOfThreads) {
+		GzipCompression.setNumberOfThreads(numberOfThreads);
 	}
 
 
 	/**
 	 * Tries to open the specified file for writing and returns a BufferedWriter for it.
 	 * Supports gzip-compression of the written data. The filename may contain the
-	 * ending ".gz". If no compression is to be used, the ending will be removed
-	 * from the filename. If compression is to be used and the filename does not yet
-	 * have the ending ".gz", the ending will be added to it.
+	 * ending ".gz" (or the one of another registered {@link Compression}). If no compression
+	 * is to be used, the ending will be removed from the filename. If compression is to be used
+	 * and the filename does not yet have such an ending, the ending ".gz" will be added to it.
 	 *
 	 * @param filename The filename where to write the data.
 	 * @param useCompression whether the file should be gzip-compressed or not.
@@ -159,10 +224,11 @@ public class IOUtils {
 		if (filename == null) {
 			throw new UncheckedIOException(new FileNotFoundException("No filename given (filename == null)"));
 		}
-		if (useCompression && !filename.endsWith(GZ)) {
+		Compression compression = getCompression(filename);
+		if (useCompression && compression == null) {
 			return getBufferedWriter(filename + GZ);
-		} else if (!useCompression && filename.endsWith(GZ)) {
-			return getBufferedWriter(filename.substring(0, filename.length() - 3));
+		} else if (!useCompression && compression != null) {
+			return getBufferedWriter(filename.substring(0, filename.length() - compression.getFileEnding().length()));
 		} else {
 			return getBufferedWriter(filename);
 		}
@@ -245,12 +311,13 @@ public class IOUtils {
 			throw new UncheckedIOException(new FileNotFoundException("No filename given (filename == null)"));
 		}
 		try {
-			if (filename.toLowerCase(Locale.ROOT).endsWith(GZ)) {
+			Compression compression = getCompression(filename);
+			if (compression != null) {
 				File f = new File(filename);
 				if (append && f.exists() && (f.length() > 0)) {
-					throw new IllegalArgumentException("Appending to an existing gzip-compressed file is not supported.");
+					throw new IllegalArgumentException("Appending to an existing compressed file is not supported.");
 				}
-				return new BufferedWriter(new OutputStreamWriter(new GZIPOutputStream(new FileOutputStream(filename, append)), charset));
+				return new BufferedWriter(new OutputStreamWriter(compression.createOutputStream(new FileOutputStream(filename, append)), charset));
 			}
 			return new BufferedWriter(new OutputStreamWriter(new FileOutputStream (filename, append), charset));
 		} catch (IOException e) {
@@ -534,40 +601,11 @@ public class IOUtils {
    * @author dgrether
    */
 	public static InputStream getInputStream(final String filename) throws UncheckedIOException {
-		InputStream inputStream = null;
 		if (filename == null) {
 			throw new UncheckedIOException(new FileNotFoundException("No filename given (filename == null)"));
 		}
 		try {
-			// search in file system
-			if (new File(filename).exists()) {
-				if (filename.endsWith(GZ)) {
-					inputStream = new GZIPInputStream(new FileInputStream(filename));
-				} else {
-					inputStream = new FileInputStream(filename);
-				}
-			} else if (new File(filename + GZ).exists()) {
-				inputStream = new GZIPInputStream(new FileInputStream(filename));
-			} else {
-				// search in classpath
-				InputStream stream = IOUtils.class.getClassLoader().getResourceAsStream(filename);
-				if (stream != null) {
-					if (filename.endsWith(GZ)) {
-						inputStream = new GZIPInputStream(stream);
-					}
-					else {
-						inputStream = stream;
-					}
-				} else {
-					stream = IOUtils.class.getClassLoader().getResourceAsStream(filename + GZ);
-					if (stream != null) {
-						inputStream = new GZIPInputStream(stream);
-					}
-				}
-				if (inputStream != null) {
-					log.info("streaming file from classpath: " + filename);
-				}
-			}
+			InputStream inputStream = openInputStream(filename);
 			if (inputStream == null) {
 				throw new FileNotFoundException(filename);
 			}
@@ -591,8 +629,9 @@ public class IOUtils {
 			throw new UncheckedIOException(new FileNotFoundException("No filename given (filename == null)"));
 		}
 		try {
-			if (filename.toLowerCase(Locale.ROOT).endsWith(GZ)) {
-				return new BufferedOutputStream(new GZIPOutputStream(new FileOutputStream(filename)));
+			Compression compression = getCompression(filename);
+			if (compression != null) {
+				return new BufferedOutputStream(compression.createOutputStream(new FileOutputStream(filename)));
 			} else {
 				return new BufferedOutputStream(new FileOutputStream (filename));
 			}
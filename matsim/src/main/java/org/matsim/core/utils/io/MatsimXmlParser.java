@@ -34,7 +34,6 @@ import java.io.InputStream;
 import java.net.URL;
 import java.net.URLConnection;
 import java.util.Stack;
-import java.util.zip.GZIPInputStream;
 
 /**
  * An abstract XML-Parser which can be easily extended for reading custom XML-formats. This class handles all the low level
@@ -151,9 +150,10 @@ public abstract class MatsimXmlParser extends DefaultHandler implements MatsimRe
 	public final void parse(final URL url) throws UncheckedIOException {
 		this.theSource = url.toString();
 		log.info("starting to parse xml from url " + this.theSource + " ...");
-		if (url.getFile().endsWith(".gz")) {
+		Compression compression = IOUtils.getCompression(url.getFile());
+		if (compression != null) {
 			try {
-				parse(new InputSource(new GZIPInputStream(url.openStream())));
+				parse(new InputSource(compression.createInputStream(url.openStream())));
 			} catch (IOException e) {
 				throw new RuntimeException(e);
 			}
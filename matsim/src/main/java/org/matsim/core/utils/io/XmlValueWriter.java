@@ -0,0 +1,215 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * XmlValueWriter.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2016 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.utils.io;
+
+import java.io.IOException;
+import java.io.Writer;
+
+import org.matsim.core.utils.misc.Time;
+
+/**
+ * Writes the values of xml files to a writer without creating intermediate Strings: numbers and times are
+ * formatted into a reusable buffer, and attribute values are only escaped if they contain characters with
+ * a special meaning in xml. The output is the same as the one of {@link Double#toString(double)},
+ * {@link Long#toString(long)} and {@link Time#writeTime(double)}.
+ * <p></p>
+ * Use it on a {@link java.io.BufferedWriter}, it writes small pieces. Not thread-safe.
+ */
+public final class XmlValueWriter {
+
+	private static final double[] POWERS_OF_TEN = { 1, 10, 100, 1000 };
+
+	private final Writer out;
+	private final char[] buffer = new char[24];
+
+	public XmlValueWriter(final Writer out) {
+		this.out = out;
+	}
+
+	public void write(final String s) throws IOException {
+		this.out.write(s);
+	}
+
+	public void write(final char c) throws IOException {
+		this.out.write(c);
+	}
+
+	/**
+	 * Writes the value with the characters &amp;, &quot;, &lt; and &gt; replaced by their xml-encoding.
+	 * <code>null</code> is written as "null".
+	 */
+	public void writeEscaped(final String value) throws IOException {
+		if (value == null) {
+			this.out.write("null");
+			return;
+		}
+		int start = 0;
+		int len = value.length();
+		for (int pos = 0; pos < len; pos++) {
+			String replacement;
+			switch (value.charAt(pos)) {
+				case '&': replacement = "&amp;"; break;
+				case '"': replacement = "&quot;"; break;
+				case '<': replacement = "&lt;"; break;
+				case '>': replacement = "&gt;"; break;
+				default: continue;
+			}
+			this.out.write(value, start, pos - start);
+			this.out.write(replacement);
+			start = pos + 1;
+		}
+		this.out.write(value, start, len - start);
+	}
+
+	public void write(final long value) throws IOException {
+		if (value == Long.MIN_VALUE) {
+			this.out.write(Long.toString(value));
+			return;
+		}
+		long v = Math.abs(value);
+		int pos = this.buffer.length;
+		do {
+			this.buffer[--pos] = (char) ('0' + v % 10);
+			v /= 10;
+		} while (v > 0);
+		if (value < 0) {
+			this.buffer[--pos] = '-';
+		}
+		this.out.write(this.buffer, pos, this.buffer.length - pos);
+	}
+
+	/**
+	 * Writes the value like {@link Double#toString(double)}. Values with up to three decimals which
+	 * {@link Double#toString(double)} does not write in scientific notation are formatted directly, all
+	 * others with {@link Double#toString(double)}.
+	 */
+	public void write(final double value) throws IOException {
+		double abs = Math.abs(value);
+		if (abs >= 1e-3 && abs < 1e7) {
+			for (int decimals = 0; decimals < POWERS_OF_TEN.length; decimals++) {
+				double scaled = Math.rint(value * POWERS_OF_TEN[decimals]);
+				if (scaled / POWERS_OF_TEN[decimals] == value) {
+					// the shortest decimal representation, which Double.toString() returns as well
+					writeDecimal((long) scaled, decimals);
+					return;
+				}
+			}
+		} else if (value == 0) {
+			this.out.write(1 / value < 0 ? "-0.0" : "0.0");
+			return;
+		}
+		this.out.write(Double.toString(value));
+	}
+
+	private void writeDecimal(final long scaled, final int decimals) throws IOException {
+		long v = Math.abs(scaled);
+		int pos = this.buffer.length;
+		if (decimals == 0) {
+			this.buffer[--pos] = '0';
+		} else {
+			for (int i = 0; i < decimals; i++) {
+				this.buffer[--pos] = (char) ('0' + v % 10);
+				v /= 10;
+			}
+		}
+		this.buffer[--pos] = '.';
+		do {
+			this.buffer[--pos] = (char) ('0' + v % 10);
+			v /= 10;
+		} while (v > 0);
+		if (scaled < 0) {
+			this.buffer[--pos] = '-';
+		}
+		this.out.write(this.buffer, pos, this.buffer.length - pos);
+	}
+
+	/**
+	 * Writes the time like {@link Time#writeTime(double)}.
+	 */
+	public void writeTime(final double seconds) throws IOException {
+		if (seconds < 0 || !Time.TIMEFORMAT_HHMMSS.equals(Time.getDefaultTimeFormat())) {
+			this.out.write(Time.writeTime(seconds));
+			return;
+		}
+		double s = seconds;
+		long h = (long) (s / 3600);
+		s = s % 3600;
+		int m = (int) (s / 60);
+		s = s % 60;
+		if (h < 10) {
+			this.out.write('0');
+		}
+		write(h);
+		this.out.write(':');
+		writeTwoDigits(m);
+		this.out.write(':');
+		writeTwoDigits((int) s);
+	}
+
+	private void writeTwoDigits(final int value) throws IOException {
+		this.buffer[0] = (char) ('0' + value / 10);
+		this.buffer[1] = (char) ('0' + value % 10);
+		this.out.write(this.buffer, 0, 2);
+	}
+
+	/**
+	 * Writes <code> name="value"</code> with the value escaped.
+	 */
+	public void writeAttribute(final String name, final String value) throws IOException {
+		startAttribute(name);
+		writeEscaped(value);
+		this.out.write('"');
+	}
+
+	/**
+	 * Writes <code> name="value"</code>.
+	 */
+	public void writeAttribute(final String name, final long value) throws IOException {
+		startAttribute(name);
+		write(value);
+		this.out.write('"');
+	}
+
+	/**
+	 * Writes <code> name="value"</code>.
+	 */
+	public void writeAttribute(final String name, final double value) throws IOException {
+		startAttribute(name);
+		write(value);
+		this.out.write('"');
+	}
+
+	/**
+	 * Writes <code> name="time"</code>.
+	 */
+	public void writeTimeAttribute(final String name, final double seconds) throws IOException {
+		startAttribute(name);
+		writeTime(seconds);
+		this.out.write('"');
+	}
+
+	private void startAttribute(final String name) throws IOException {
+		this.out.write(' ');
+		this.out.write(name);
+		this.out.write("=\"");
+	}
+
+}
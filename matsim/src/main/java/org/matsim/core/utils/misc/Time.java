@@ -72,6 +72,13 @@ public class Time {
 		defaultTimeFormat = format;
 	}
 
+	/**
+	 * @return the time format used by {@link #writeTime(double)}
+	 */
+	public static final String getDefaultTimeFormat() {
+		return defaultTimeFormat;
+	}
+
 	public static final String writeTime(final double seconds, final String timeformat) {
 		return writeTime(seconds, timeformat, ':');
 	}
@@ -0,0 +1,242 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * FloatMatrix.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2016 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.matrices;
+
+import java.nio.FloatBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A matrix storing one float per pair of zones, e.g. a skim, instead of one {@link Entry} per pair like
+ * {@link Matrix}. The zones are given when the matrix is created and the values are stored row by row, so getting
+ * a value by the indices of its zones is a single array access. Missing values are stored as <code>NaN</code>.
+ * <p></p>
+ * The values are either held in an array or, when read with {@link FloatMatrixReader#map(String)}, mapped from
+ * a file, in which case the matrix cannot be changed. Reading values is thread-safe.
+ */
+public final class FloatMatrix {
+
+	private final String id;
+	private String desc;
+	private final List<String> fromZoneIds;
+	private final List<String> toZoneIds;
+	private final Map<String, Integer> fromIndices;
+	private final Map<String, Integer> toIndices;
+	private final FloatBuffer values;
+
+	/**
+	 * Creates a matrix with all values missing.
+	 */
+	public FloatMatrix(final String id, final String desc, final List<String> fromZoneIds, final List<String> toZoneIds) {
+		this(id, desc, fromZoneIds, toZoneIds, FloatBuffer.wrap(createValues(fromZoneIds.size(), toZoneIds.size())));
+	}
+
+	/**
+	 * Creates a matrix with the given values, row by row. The array is used by the matrix, not copied.
+	 */
+	public FloatMatrix(final String id, final String desc, final List<String> fromZoneIds, final List<String> toZoneIds,
+			final float[] values) {
+		this(id, desc, fromZoneIds, toZoneIds, FloatBuffer.wrap(values));
+	}
+
+	/*package*/ FloatMatrix(final String id, final String desc, final List<String> fromZoneIds, final List<String> toZoneIds,
+			final FloatBuffer values) {
+		if (id == null) {
+			throw new NullPointerException("id must not be null");
+		}
+		if (values.capacity() != (long) fromZoneIds.size() * toZoneIds.size()) {
+			throw new IllegalArgumentException("expected " + fromZoneIds.size() + "x" + toZoneIds.size() + " values, got "
+					+ values.capacity());
+		}
+		this.id = id;
+		this.desc = desc;
+		this.fromZoneIds = Collections.unmodifiableList(new ArrayList<>(fromZoneIds));
+		this.fromIndices = createIndices(fromZoneIds);
+		if (toZoneIds.equals(fromZoneIds)) {
+			this.toZoneIds = this.fromZoneIds;
+			this.toIndices = this.fromIndices;
+		} else {
+			this.toZoneIds = Collections.unmodifiableList(new ArrayList<>(toZoneIds));
+			this.toIndices = createIndices(toZoneIds);
+		}
+		this.values = values;
+	}
+
+	private static float[] createValues(final int nOfFromZones, final int nOfToZones) {
+		long size = (long) nOfFromZones * nOfToZones;
+		if (size > Integer.MAX_VALUE) {
+			throw new IllegalArgumentException(nOfFromZones + "x" + nOfToZones + " values do not fit into an array.");
+		}
+		float[] values = new float[(int) size];
+		Arrays.fill(values, Float.NaN);
+		return values;
+	}
+
+	private static Map<String, Integer> createIndices(final List<String> zoneIds) {
+		Map<String, Integer> indices = new HashMap<>(zoneIds.size() * 2);
+		for (int i = 0; i < zoneIds.size(); i++) {
+			if (indices.put(zoneIds.get(i), i) != null) {
+				throw new IllegalArgumentException("zone id " + zoneIds.get(i) + " appears more than once.");
+			}
+		}
+		return indices;
+	}
+
+	/**
+	 * Creates a matrix with the from and to locations of the given matrix as zones, in the order of their ids.
+	 */
+	public static FloatMatrix copyOf(final Matrix matrix) {
+		FloatMatrix copy = new FloatMatrix(matrix.getId(), matrix.getDesc(), new ArrayList<>(matrix.getFromLocations().keySet()),
+				new ArrayList<>(matrix.getToLocations().keySet()));
+		for (List<Entry> entries : matrix.getFromLocations().values()) {
+			for (Entry e : entries) {
+				copy.setValue(e.getFromLocation(), e.getToLocation(), (float) e.getValue());
+			}
+		}
+		return copy;
+	}
+
+	/**
+	 * Copies the values into a {@link Matrix}. Missing values get no entry.
+	 */
+	public Matrix toMatrix() {
+		Matrix matrix = new Matrix(this.id, this.desc);
+		for (int i = 0; i < this.fromZoneIds.size(); i++) {
+			for (int j = 0; j < this.toZoneIds.size(); j++) {
+				float v = getValue(i, j);
+				if (!Float.isNaN(v)) {
+					matrix.createEntry(this.fromZoneIds.get(i), this.toZoneIds.get(j), v);
+				}
+			}
+		}
+		return matrix;
+	}
+
+	public String getId() {
+		return this.id;
+	}
+
+	public String getDesc() {
+		return this.desc;
+	}
+
+	public void setDesc(final String desc) {
+		this.desc = desc;
+	}
+
+	public List<String> getFromZoneIds() {
+		return this.fromZoneIds;
+	}
+
+	public List<String> getToZoneIds() {
+		return this.toZoneIds;
+	}
+
+	/**
+	 * @return the index of the zone among the from zones, -1 if it is not one of them
+	 */
+	public int getFromIndex(final String zoneId) {
+		Integer index = this.fromIndices.get(zoneId);
+		return index == null ? -1 : index;
+	}
+
+	/**
+	 * @return the index of the zone among the to zones, -1 if it is not one of them
+	 */
+	public int getToIndex(final String zoneId) {
+		Integer index = this.toIndices.get(zoneId);
+		return index == null ? -1 : index;
+	}
+
+	public float getValue(final int fromIndex, final int toIndex) {
+		return this.values.get(index(fromIndex, toIndex));
+	}
+
+	/**
+	 * @return the value, <code>NaN</code> if it is missing or one of the zones is not part of the matrix
+	 */
+	public float getValue(final String fromZoneId, final String toZoneId) {
+		int from = getFromIndex(fromZoneId);
+		int to = getToIndex(toZoneId);
+		if (from < 0 || to < 0) {
+			return Float.NaN;
+		}
+		return getValue(from, to);
+	}
+
+	/**
+	 * Copies the values from the zone to all to zones into the array.
+	 *
+	 * @param row an array with at least as many elements as there are to zones
+	 * @return the array given as parameter
+	 */
+	public float[] getRow(final int fromIndex, final float[] row) {
+		FloatBuffer buffer = this.values.duplicate();
+		buffer.position(index(fromIndex, 0));
+		buffer.get(row, 0, this.toZoneIds.size());
+		return row;
+	}
+
+	public void setValue(final int fromIndex, final int toIndex, final float value) {
+		this.values.put(index(fromIndex, toIndex), value);
+	}
+
+	public void setValue(final String fromZoneId, final String toZoneId, final float value) {
+		int from = getFromIndex(fromZoneId);
+		int to = getToIndex(toZoneId);
+		if (from < 0 || to < 0) {
+			throw new IllegalArgumentException("zones " + fromZoneId + ", " + toZoneId + " are not part of matrix " + this.id);
+		}
+		setValue(from, to, value);
+	}
+
+	/**
+	 * @return <code>true</code> if the values are mapped from a file and cannot be changed
+	 */
+	public boolean isReadOnly() {
+		return this.values.isReadOnly();
+	}
+
+	/*package*/ FloatBuffer getValues() {
+		return this.values.duplicate();
+	}
+
+	private int index(final int fromIndex, final int toIndex) {
+		if (fromIndex < 0 || fromIndex >= this.fromZoneIds.size() || toIndex < 0 || toIndex >= this.toZoneIds.size()) {
+			throw new IndexOutOfBoundsException("from " + fromIndex + ", to " + toIndex + ", size "
+					+ this.fromZoneIds.size() + "x" + this.toZoneIds.size());
+		}
+		return fromIndex * this.toZoneIds.size() + toIndex;
+	}
+
+	@Override
+	public String toString() {
+		return "[id=" + this.id + "]" +
+				"[desc=" + this.desc + "]" +
+				"[nof_from_zones=" + this.fromZoneIds.size() + "]" +
+				"[nof_to_zones=" + this.toZoneIds.size() + "]";
+	}
+
+}
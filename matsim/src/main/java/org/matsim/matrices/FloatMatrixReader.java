@@ -0,0 +1,152 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * FloatMatrixReader.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2016 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.matrices;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.log4j.Logger;
+import org.matsim.core.utils.io.UncheckedIOException;
+
+/**
+ * Reads files written by {@link FloatMatrixWriter}.
+ */
+public class FloatMatrixReader {
+
+	private final static Logger log = Logger.getLogger(FloatMatrixReader.class);
+
+	private static final int BUFFER_SIZE = 1 << 16;
+
+	/**
+	 * Reads the matrix into memory.
+	 */
+	public FloatMatrix read(final String filename) {
+		try (RandomAccessFile file = new RandomAccessFile(filename, "r")) {
+			FileChannel channel = file.getChannel();
+			Header header = readHeader(channel, filename);
+			float[] values = new float[checkSize(header, filename, Integer.MAX_VALUE)];
+			ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+			channel.position(header.dataOffset);
+			int read = 0;
+			while (read < values.length) {
+				buffer.clear();
+				buffer.limit(Math.min(buffer.capacity(), 4 * (values.length - read)));
+				readFully(channel, buffer, filename);
+				buffer.flip();
+				int n = buffer.remaining() / 4;
+				buffer.asFloatBuffer().get(values, read, n);
+				read += n;
+			}
+			log.info("read matrix " + header.id + " with " + header.fromZoneIds.size() + "x" + header.toZoneIds.size() + " values.");
+			return new FloatMatrix(header.id, header.desc, header.fromZoneIds, header.toZoneIds, values);
+		} catch (IOException e) {
+			throw new UncheckedIOException("could not read matrix from " + filename, e);
+		}
+	}
+
+	/**
+	 * Maps the values of the matrix from the file instead of reading them, so that only the parts of the file
+	 * which are accessed are loaded, by the operating system, and can be shared with other processes. The
+	 * matrix cannot be changed. Files with more than 2 GB of values cannot be mapped.
+	 */
+	public FloatMatrix map(final String filename) {
+		try (RandomAccessFile file = new RandomAccessFile(filename, "r")) {
+			FileChannel channel = file.getChannel();
+			Header header = readHeader(channel, filename);
+			int size = checkSize(header, filename, Integer.MAX_VALUE / 4);
+			FloatBuffer values = channel.map(FileChannel.MapMode.READ_ONLY, header.dataOffset, 4L * size)
+					.order(ByteOrder.LITTLE_ENDIAN).asFloatBuffer();
+			log.info("mapped matrix " + header.id + " with " + header.fromZoneIds.size() + "x" + header.toZoneIds.size() + " values.");
+			return new FloatMatrix(header.id, header.desc, header.fromZoneIds, header.toZoneIds, values);
+		} catch (IOException e) {
+			throw new UncheckedIOException("could not map matrix from " + filename, e);
+		}
+	}
+
+	private static Header readHeader(final FileChannel channel, final String filename) throws IOException {
+		ByteBuffer prefix = ByteBuffer.allocate(FloatMatrixWriter.PREFIX_LENGTH);
+		readFully(channel, prefix, filename);
+		prefix.flip();
+		if (prefix.getInt() != FloatMatrixWriter.MAGIC) {
+			throw new UncheckedIOException(filename + " is not a matrix file.");
+		}
+		int version = prefix.getInt();
+		if (version != FloatMatrixWriter.VERSION) {
+			throw new UncheckedIOException("version " + version + " of " + filename + " is not supported.");
+		}
+		ByteBuffer bytes = ByteBuffer.allocate(prefix.getInt());
+		readFully(channel, bytes, filename);
+		DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes.array()));
+		Header header = new Header();
+		header.id = in.readUTF();
+		header.desc = in.readBoolean() ? in.readUTF() : null;
+		header.fromZoneIds = readZoneIds(in);
+		header.toZoneIds = readZoneIds(in);
+		header.dataOffset = FloatMatrixWriter.dataOffset(bytes.capacity());
+		long expectedLength = header.dataOffset + 4L * header.fromZoneIds.size() * header.toZoneIds.size();
+		if (channel.size() != expectedLength) {
+			throw new UncheckedIOException(filename + " has " + channel.size() + " bytes, expected " + expectedLength + ".");
+		}
+		return header;
+	}
+
+	private static List<String> readZoneIds(final DataInputStream in) throws IOException {
+		int size = in.readInt();
+		List<String> zoneIds = new ArrayList<>(size);
+		for (int i = 0; i < size; i++) {
+			zoneIds.add(in.readUTF());
+		}
+		return zoneIds;
+	}
+
+	private static int checkSize(final Header header, final String filename, final int maxSize) {
+		long size = (long) header.fromZoneIds.size() * header.toZoneIds.size();
+		if (size > maxSize) {
+			throw new UncheckedIOException("matrix " + header.id + " in " + filename + " has too many values: " + size);
+		}
+		return (int) size;
+	}
+
+	private static void readFully(final FileChannel channel, final ByteBuffer buffer, final String filename) throws IOException {
+		while (buffer.hasRemaining()) {
+			if (channel.read(buffer) < 0) {
+				throw new UncheckedIOException("unexpected end of " + filename);
+			}
+		}
+	}
+
+	private static class Header {
+		String id;
+		String desc;
+		List<String> fromZoneIds;
+		List<String> toZoneIds;
+		long dataOffset;
+	}
+
+}
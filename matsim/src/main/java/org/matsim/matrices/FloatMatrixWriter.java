@@ -0,0 +1,115 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * FloatMatrixWriter.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2016 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.matrices;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.channels.FileChannel;
+import java.util.List;
+
+import org.matsim.core.api.internal.MatsimWriter;
+import org.matsim.core.utils.io.UncheckedIOException;
+
+/**
+ * Writes a {@link FloatMatrix} to an uncompressed binary file, which {@link FloatMatrixReader} reads into memory
+ * or maps. The file starts with a header containing the ids of the matrix and its zones, followed by the
+ * values as little-endian floats, row by row, starting at a multiple of 8 bytes.
+ */
+public class FloatMatrixWriter implements MatsimWriter {
+
+	/*package*/ static final int MAGIC = 0x4d41544d; // "MATM"
+	/*package*/ static final int VERSION = 1;
+	/** magic, version and length of the header */
+	/*package*/ static final int PREFIX_LENGTH = 12;
+
+	private static final int BUFFER_SIZE = 1 << 16;
+
+	private final FloatMatrix matrix;
+
+	public FloatMatrixWriter(final FloatMatrix matrix) {
+		this.matrix = matrix;
+	}
+
+	@Override
+	public void write(final String filename) {
+		try (FileOutputStream out = new FileOutputStream(filename)) {
+			FileChannel channel = out.getChannel();
+			byte[] header = createHeader();
+			ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+			ByteBuffer prefix = ByteBuffer.allocate(dataOffset(header.length));
+			prefix.putInt(MAGIC).putInt(VERSION).putInt(header.length).put(header);
+			prefix.clear();
+			writeFully(channel, prefix);
+
+			FloatBuffer values = this.matrix.getValues();
+			values.clear();
+			while (values.hasRemaining()) {
+				buffer.clear();
+				FloatBuffer floats = buffer.asFloatBuffer();
+				int n = Math.min(floats.capacity(), values.remaining());
+				values.limit(values.position() + n);
+				floats.put(values);
+				values.limit(values.capacity());
+				buffer.limit(4 * n);
+				writeFully(channel, buffer);
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException("could not write matrix " + this.matrix.getId() + " to " + filename, e);
+		}
+	}
+
+	private byte[] createHeader() throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(bytes);
+		out.writeUTF(this.matrix.getId());
+		out.writeBoolean(this.matrix.getDesc() != null);
+		if (this.matrix.getDesc() != null) {
+			out.writeUTF(this.matrix.getDesc());
+		}
+		writeZoneIds(out, this.matrix.getFromZoneIds());
+		writeZoneIds(out, this.matrix.getToZoneIds());
+		out.close();
+		return bytes.toByteArray();
+	}
+
+	private static void writeZoneIds(final DataOutputStream out, final List<String> zoneIds) throws IOException {
+		out.writeInt(zoneIds.size());
+		for (String zoneId : zoneIds) {
+			out.writeUTF(zoneId);
+		}
+	}
+
+	private static void writeFully(final FileChannel channel, final ByteBuffer buffer) throws IOException {
+		while (buffer.hasRemaining()) {
+			channel.write(buffer);
+		}
+	}
+
+	/*package*/ static int dataOffset(final int headerLength) {
+		return (PREFIX_LENGTH + headerLength + 7) & ~7;
+	}
+
+}
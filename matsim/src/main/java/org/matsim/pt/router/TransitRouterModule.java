@@ -23,6 +23,7 @@
 package org.matsim.pt.router;
 
 import org.matsim.core.controler.AbstractModule;
+import org.matsim.pt.config.TransitRouterConfigGroup;
 
 import javax.inject.Provider;
 
@@ -31,7 +32,11 @@ public class TransitRouterModule extends AbstractModule {
     @Override
     public void install() {
         if (getConfig().transit().isUseTransit()) {
-            bind(TransitRouter.class).toProvider(TransitRouterImplFactory.class);
+            if (getConfig().transitRouter().getRoutingAlgorithmType() == TransitRouterConfigGroup.RoutingAlgorithmType.Raptor) {
+                bind(TransitRouter.class).toProvider(TransitRouterRaptorFactory.class);
+            } else {
+                bind(TransitRouter.class).toProvider(TransitRouterImplFactory.class);
+            }
         }
     }
 
@@ -35,7 +35,7 @@ import org.matsim.api.core.v01.network.Network;
 import org.matsim.api.core.v01.network.NetworkFactory;
 import org.matsim.api.core.v01.network.Node;
 import org.matsim.core.utils.collections.IdentifiableArrayMap;
-import org.matsim.core.utils.collections.QuadTree;
+import org.matsim.core.utils.collections.PackedRTree;
 import org.matsim.core.utils.collections.Tuple;
 import org.matsim.core.utils.geometry.CoordUtils;
 import org.matsim.core.utils.misc.Counter;
@@ -59,7 +59,7 @@ public final class TransitRouterNetwork implements Network {
 
 	private final Map<Id<Link>, TransitRouterNetworkLink> links = new LinkedHashMap<Id<Link>, TransitRouterNetworkLink>();
 	private final Map<Id<Node>, TransitRouterNetworkNode> nodes = new LinkedHashMap<Id<Node>, TransitRouterNetworkNode>();
-	private QuadTree<TransitRouterNetworkNode> qtNodes = null;
+	private PackedRTree<TransitRouterNetworkNode> qtNodes = null;
 
 	private long nextNodeId = 0;
 	private long nextLinkId = 0;
@@ -320,33 +320,12 @@ public final class TransitRouterNetwork implements Network {
 	}
 
 	public void finishInit() {
-		double minX = Double.POSITIVE_INFINITY;
-		double minY = Double.POSITIVE_INFINITY;
-		double maxX = Double.NEGATIVE_INFINITY;
-		double maxY = Double.NEGATIVE_INFINITY;
-
-		for (TransitRouterNetworkNode node : this.nodes.values()) {
-			Coord c = node.stop.getStopFacility().getCoord();
-			if (c.getX() < minX) {
-				minX = c.getX();
-			}
-			if (c.getY() < minY) {
-				minY = c.getY();
-			}
-			if (c.getX() > maxX) {
-				maxX = c.getX();
-			}
-			if (c.getY() > maxY) {
-				maxY = c.getY();
-			}
-		}
-
-		QuadTree<TransitRouterNetworkNode> quadTree = new QuadTree<TransitRouterNetworkNode>(minX, minY, maxX, maxY);
+		PackedRTree.Builder<TransitRouterNetworkNode> builder = new PackedRTree.Builder<>();
 		for (TransitRouterNetworkNode node : this.nodes.values()) {
 			Coord c = node.stop.getStopFacility().getCoord();
-			quadTree.put(c.getX(), c.getY(), node);
+			builder.put(c.getX(), c.getY(), node);
 		}
-		this.qtNodes = quadTree;
+		this.qtNodes = builder.build();
 	}
 
 	public Collection<TransitRouterNetworkNode> getNearestNodes(final Coord coord, final double distance) {
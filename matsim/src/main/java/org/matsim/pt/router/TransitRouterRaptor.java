@@ -0,0 +1,744 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * TransitRouterRaptor.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2016 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.pt.router;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import org.matsim.api.core.v01.Coord;
+import org.matsim.api.core.v01.TransportMode;
+import org.matsim.api.core.v01.population.Leg;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.api.core.v01.population.Route;
+import org.matsim.core.network.NetworkUtils;
+import org.matsim.core.population.PopulationUtils;
+import org.matsim.core.population.routes.GenericRouteImpl;
+import org.matsim.core.utils.geometry.CoordUtils;
+import org.matsim.facilities.Facility;
+import org.matsim.pt.routes.ExperimentalTransitRoute;
+import org.matsim.pt.transitSchedule.api.TransitStopFacility;
+
+/**
+ * <p>
+ * Transit router using the round-based RAPTOR algorithm on the arrays of a {@link TransitRouterRaptorData}
+ * instead of a Dijkstra search on the {@link TransitRouterNetwork}. Round <code>k</code> finds the earliest
+ * arrival at every stop using <code>k</code> vehicles, by scanning each route serving a stop improved in the
+ * previous round once, and then relaxing the walking transfers from the stops improved by it. The result of a query
+ * is the Pareto set of journeys with respect to arrival time and number of transfers.
+ * </p>
+ * <p>
+ * {@link #calcRoute} returns the journey of this set with the least disutility, evaluated with the same parameters
+ * as {@link TransitRouterNetworkTravelTimeAndDisutility}, or a direct walk if that has less disutility. This is
+ * usually, but not necessarily, the least cost path found by {@link TransitRouterImpl}: a journey which arrives
+ * later without fewer transfers, but has less disutility, e.g. because of less walking, is not part of the Pareto
+ * set. Transfers between routes at the same stop are always possible, also between routes of the same line.
+ * </p>
+ * <p>
+ * Not thread-safe, but cheap to create, as all routers of a schedule can share the same data.
+ * </p>
+ *
+ * @see TransitRouterRaptorFactory
+ */
+public class TransitRouterRaptor implements TransitRouter {
+
+	/** the maximum number of vehicles used by a journey */
+	private static final int MAX_ROUNDS = 16;
+
+	private static final int ACCESS = -1;
+
+	private final TransitRouterRaptorData data;
+	private final TransitRouterConfig config;
+	private final TransitTravelDisutility walkDisutility;
+
+	private int query = 0;
+	/** the labels of each round; only valid if their stamp equals the current query */
+	private final Round[] rounds = new Round[MAX_ROUNDS + 1];
+	/**
+	 * whether the query is a profile query, for which the best labels of each round replace the best labels over
+	 * all rounds
+	 */
+	private boolean profile = false;
+	/** the best labels over all rounds; only valid if their stamp equals the current query */
+	private final int[] bestStamps;
+	private final double[] bestTripArrivals;
+	private final double[] bestBoardingTimes;
+	/** the earliest arrival at the destination using at most <code>k</code> vehicles */
+	private final double[] bestTargetArrivals = new double[MAX_ROUNDS + 1];
+	private final int[] egressStamps;
+	private final double[] egressTimes;
+	private final IntList accessStops = new IntList();
+	private final double[] accessTimes;
+	private int routeStamp = 0;
+	private final int[] routeStamps;
+	private final int[] routeFirstPositions;
+	private int improvedStamp = 0;
+	private final int[] improvedStamps;
+	private final IntList markedStops = new IntList();
+	private final IntList nextMarkedStops = new IntList();
+	private final int[] markedStamps;
+	private final IntList improvedStops = new IntList();
+	private final IntList scannedRoutes = new IntList();
+
+	public TransitRouterRaptor(final TransitRouterConfig config, final TransitRouterRaptorData data) {
+		this.config = config;
+		this.data = data;
+		this.walkDisutility = new TransitRouterNetworkTravelTimeAndDisutility(config, null);
+		int numberOfStops = data.stops.length;
+		this.bestStamps = new int[numberOfStops];
+		this.bestTripArrivals = new double[numberOfStops];
+		this.bestBoardingTimes = new double[numberOfStops];
+		this.egressStamps = new int[numberOfStops];
+		this.egressTimes = new double[numberOfStops];
+		this.accessTimes = new double[numberOfStops];
+		this.improvedStamps = new int[numberOfStops];
+		this.markedStamps = new int[numberOfStops];
+		this.routeStamps = new int[data.routes.length];
+		this.routeFirstPositions = new int[data.routes.length];
+	}
+
+	@Override
+	public List<Leg> calcRoute(final Facility<?> fromFacility, final Facility<?> toFacility, final double departureTime, final Person person) {
+		List<Journey> journeys = calcParetoRoutes(fromFacility, toFacility, departureTime, person);
+		if (journeys.isEmpty()) {
+			return null;
+		}
+		Journey best = journeys.get(0);
+		for (Journey journey : journeys) {
+			if (journey.cost < best.cost) {
+				best = journey;
+			}
+		}
+		double directWalkCost = this.walkDisutility.getTravelDisutility(person, fromFacility.getCoord(), toFacility.getCoord());
+		if (directWalkCost < best.cost) {
+			return createDirectWalkLegList(person, fromFacility.getCoord(), toFacility.getCoord());
+		}
+		return best.legs;
+	}
+
+	/**
+	 * Returns the journeys with the earliest arrival for each number of vehicles used, as long as using more
+	 * vehicles leads to an earlier arrival, ordered by the number of vehicles.
+	 */
+	public List<Journey> calcParetoRoutes(final Facility<?> fromFacility, final Facility<?> toFacility, final double departureTime, final Person person) {
+		startQuery(fromFacility.getCoord(), toFacility.getCoord(), person, false);
+		List<Journey> journeys = new ArrayList<>();
+		search(departureTime, fromFacility.getCoord(), toFacility.getCoord(), person, journeys);
+		return journeys;
+	}
+
+	/**
+	 * <p>
+	 * Returns the profile of the journeys departing in the given time window: all journeys which are Pareto-optimal
+	 * with respect to departure time (later is better), arrival time and number of transfers, ordered by departure
+	 * time and then by the number of transfers. Someone departing at some time in the window takes one of the
+	 * journeys with the next departure time, so the profile replaces one {@link #calcParetoRoutes} query per
+	 * possible departure time. A direct walk is not part of the profile.
+	 * </p>
+	 * <p>
+	 * The profile is computed in one search (rRAPTOR): the times at which a trip can be caught at one of the stops
+	 * near the origin are processed from the latest to the earliest, and the labels of each round are kept for the
+	 * earlier departure times, as arriving as early as with a later departure is always possible by waiting. Each
+	 * departure time thus only scans the routes at which it improves the arrival times.
+	 * </p>
+	 * <p>
+	 * This makes the profile faster than the queries per minute it replaces only by a small factor, about two on a
+	 * generated grid of bus lines and less on small schedules (see TransitRouterRaptorProfileBenchmark). Its main
+	 * advantage is that it is exact, whereas queries per minute may miss departures.
+	 * </p>
+	 */
+	public List<Journey> calcProfileRoutes(final Facility<?> fromFacility, final Facility<?> toFacility,
+			final double earliestDepartureTime, final double latestDepartureTime, final Person person) {
+		startQuery(fromFacility.getCoord(), toFacility.getCoord(), person, true);
+		double[] departureTimes = collectDepartureTimes(earliestDepartureTime, latestDepartureTime);
+		List<Journey> journeys = new ArrayList<>();
+		for (int i = departureTimes.length - 1; i >= 0; i--) {
+			search(departureTimes[i], fromFacility.getCoord(), toFacility.getCoord(), person, journeys);
+		}
+		Collections.sort(journeys, new Comparator<Journey>() {
+			@Override
+			public int compare(final Journey j1, final Journey j2) {
+				int cmp = Double.compare(j1.departureTime, j2.departureTime);
+				return cmp != 0 ? cmp : Integer.compare(j1.numberOfTransfers, j2.numberOfTransfers);
+			}
+		});
+		return journeys;
+	}
+
+	/**
+	 * Invalidates the labels of the previous query and finds the stops near the origin and the destination.
+	 */
+	private void startQuery(final Coord fromCoord, final Coord toCoord, final Person person, final boolean profile) {
+		this.profile = profile;
+		this.query++;
+		if (this.query == Integer.MAX_VALUE) {
+			Arrays.fill(this.bestStamps, 0);
+			Arrays.fill(this.egressStamps, 0);
+			Arrays.fill(this.markedStamps, 0);
+			for (Round round : this.rounds) {
+				if (round != null) {
+					round.resetStamps();
+				}
+			}
+			this.query = 1;
+		}
+		if (profile) {
+			for (Round round : this.rounds) {
+				if (round != null && round.bestStamps == null) {
+					round.createBestLabels();
+				}
+			}
+		}
+		Arrays.fill(this.bestTargetArrivals, Double.POSITIVE_INFINITY);
+		for (int stop : this.data.getNearestStops(toCoord, this.config.getSearchRadius(), this.config.getExtensionRadius())) {
+			this.egressStamps[stop] = this.query;
+			this.egressTimes[stop] = this.walkDisutility.getTravelTime(person, this.data.stops[stop].getCoord(), toCoord);
+		}
+		this.accessStops.clear();
+		for (int stop : this.data.getNearestStops(fromCoord, this.config.getSearchRadius(), this.config.getExtensionRadius())) {
+			this.accessStops.add(stop);
+			this.accessTimes[stop] = this.walkDisutility.getTravelTime(person, fromCoord, this.data.stops[stop].getCoord());
+		}
+	}
+
+	/**
+	 * Returns the distinct times in the window at which one has to depart at the origin to just catch a trip at
+	 * one of the access stops, in ascending order.
+	 */
+	private double[] collectDepartureTimes(final double earliestDepartureTime, final double latestDepartureTime) {
+		TransitRouterRaptorData d = this.data;
+		double[] times = new double[16];
+		int size = 0;
+		for (int i = 0; i < this.accessStops.size; i++) {
+			int stop = this.accessStops.values[i];
+			for (int j = d.stopPositionsStart[stop]; j < d.stopPositionsStart[stop + 1]; j++) {
+				int position = d.stopPositions[j];
+				int route = d.positionRoute[position];
+				if (position == d.routePositionsStart[route + 1] - 1) {
+					continue; // trips cannot be boarded at their last stop
+				}
+				double offset = d.departureOffsets[position] - this.accessTimes[stop];
+				for (int k = d.departuresStart[route]; k < d.departuresStart[route + 1]; k++) {
+					double time = d.departures[k] + offset;
+					while (time < earliestDepartureTime) {
+						time += TransitRouterNetworkTravelTimeAndDisutility.MIDNIGHT;
+					}
+					for (; time <= latestDepartureTime; time += TransitRouterNetworkTravelTimeAndDisutility.MIDNIGHT) {
+						if (size == times.length) {
+							times = Arrays.copyOf(times, 2 * size);
+						}
+						times[size++] = time;
+					}
+				}
+			}
+		}
+		Arrays.sort(times, 0, size);
+		int distinct = 0;
+		for (int i = 0; i < size; i++) {
+			if (distinct == 0 || times[i] != times[distinct - 1]) {
+				times[distinct++] = times[i];
+			}
+		}
+		return Arrays.copyOf(times, distinct);
+	}
+
+	/**
+	 * Runs the rounds for one departure time, starting from the labels left by the later departure times of the
+	 * same query, and adds the journeys improving the arrival at the destination for some number of vehicles.
+	 * <p></p>
+	 * In a profile query, the labels are only improved if the new time is earlier than the best label of this and
+	 * the previous rounds, over all departure times processed so far. The best label over all rounds would prune
+	 * journeys with fewer transfers than the ones of a later departure time.
+	 */
+	private void search(final double departureTime, final Coord fromCoord, final Coord toCoord, final Person person,
+			final List<Journey> journeys) {
+		this.markedStops.clear();
+		this.nextMarkedStops.clear();
+		Round round0 = getRound(0);
+		for (int i = 0; i < this.accessStops.size; i++) {
+			int stop = this.accessStops.values[i];
+			double time = departureTime + this.accessTimes[stop];
+			if (time < bestBoardingTime(0, stop)) {
+				improveBoardingTime(0, stop, time);
+				round0.setBoarding(stop, time, ACCESS, this.query);
+				mark(stop);
+			}
+		}
+		swapMarkedStops();
+
+		for (int k = 1; k <= MAX_ROUNDS && this.markedStops.size > 0; k++) {
+			Round previous = getRound(k - 1);
+			Round round = getRound(k);
+			collectRoutes();
+			this.improvedStops.clear();
+			nextImprovedStamp();
+			for (int i = 0; i < this.scannedRoutes.size; i++) {
+				scanRoute(this.scannedRoutes.values[i], previous, round, k);
+			}
+			int egressStop = -1;
+			for (int i = 0; i < this.improvedStops.size; i++) {
+				int stop = this.improvedStops.values[i];
+				relaxTransfers(stop, round, k);
+				if (this.egressStamps[stop] == this.query) {
+					double arrival = round.tripArrivals[stop] + this.egressTimes[stop];
+					if (arrival < this.bestTargetArrivals[k]) {
+						for (int m = k; m <= MAX_ROUNDS && arrival < this.bestTargetArrivals[m]; m++) {
+							this.bestTargetArrivals[m] = arrival;
+						}
+						egressStop = stop;
+					}
+				}
+			}
+			swapMarkedStops();
+			if (egressStop >= 0) {
+				journeys.add(createJourney(k, egressStop, fromCoord, toCoord, person));
+			}
+		}
+	}
+
+	private Round getRound(final int k) {
+		if (this.rounds[k] == null) {
+			this.rounds[k] = new Round(this.data.stops.length);
+		}
+		if (this.profile && this.rounds[k].bestStamps == null) {
+			this.rounds[k].createBestLabels();
+		}
+		return this.rounds[k];
+	}
+
+	/**
+	 * Returns the earliest time the stop can be left using at most <code>k</code> trips.
+	 */
+	private double bestBoardingTime(final int k, final int stop) {
+		if (this.profile) {
+			return profileLabels(k, stop).bestBoardingTimes[stop];
+		}
+		checkBestStamp(stop);
+		return this.bestBoardingTimes[stop];
+	}
+
+	/**
+	 * Returns the earliest arrival at the stop using at most <code>k</code> trips.
+	 */
+	private double bestTripArrival(final int k, final int stop) {
+		if (this.profile) {
+			return profileLabels(k, stop).bestTripArrivals[stop];
+		}
+		checkBestStamp(stop);
+		return this.bestTripArrivals[stop];
+	}
+
+	private void improveBoardingTime(final int k, final int stop, final double time) {
+		if (!this.profile) {
+			this.bestBoardingTimes[stop] = time;
+			return;
+		}
+		for (int m = k; m <= MAX_ROUNDS; m++) {
+			Round round = this.rounds[m];
+			if (round == null || round.bestStamps[stop] != this.query || round.bestBoardingTimes[stop] <= time) {
+				break;
+			}
+			round.bestBoardingTimes[stop] = time;
+		}
+	}
+
+	private void improveTripArrival(final int k, final int stop, final double arrival) {
+		if (!this.profile) {
+			this.bestTripArrivals[stop] = arrival;
+			return;
+		}
+		for (int m = k; m <= MAX_ROUNDS; m++) {
+			Round round = this.rounds[m];
+			if (round == null || round.bestStamps[stop] != this.query || round.bestTripArrivals[stop] <= arrival) {
+				break;
+			}
+			round.bestTripArrivals[stop] = arrival;
+		}
+	}
+
+	private void checkBestStamp(final int stop) {
+		if (this.bestStamps[stop] != this.query) {
+			this.bestStamps[stop] = this.query;
+			this.bestBoardingTimes[stop] = Double.POSITIVE_INFINITY;
+			this.bestTripArrivals[stop] = Double.POSITIVE_INFINITY;
+		}
+	}
+
+	/**
+	 * Returns the round with valid best labels for the stop, initializing them from the rounds before if necessary.
+	 * The best labels of a stop are thus always valid for the rounds up to some round.
+	 */
+	private Round profileLabels(final int k, final int stop) {
+		Round round = getRound(k);
+		if (round.bestStamps[stop] != this.query) {
+			int j = k - 1;
+			while (j >= 0 && this.rounds[j].bestStamps[stop] != this.query) {
+				j--;
+			}
+			double bestTripArrival = j < 0 ? Double.POSITIVE_INFINITY : this.rounds[j].bestTripArrivals[stop];
+			double bestBoardingTime = j < 0 ? Double.POSITIVE_INFINITY : this.rounds[j].bestBoardingTimes[stop];
+			for (j++; j <= k; j++) {
+				Round r = this.rounds[j];
+				r.bestStamps[stop] = this.query;
+				r.bestTripArrivals[stop] = bestTripArrival;
+				r.bestBoardingTimes[stop] = bestBoardingTime;
+			}
+		}
+		return round;
+	}
+
+	/**
+	 * Marks the stop for the next round.
+	 */
+	private void mark(final int stop) {
+		if (this.markedStamps[stop] != this.query) {
+			this.markedStamps[stop] = this.query;
+			this.nextMarkedStops.add(stop);
+		}
+	}
+
+	private void swapMarkedStops() {
+		this.markedStops.clear();
+		for (int i = 0; i < this.nextMarkedStops.size; i++) {
+			int stop = this.nextMarkedStops.values[i];
+			this.markedStops.add(stop);
+			this.markedStamps[stop] = 0;
+		}
+		this.nextMarkedStops.clear();
+	}
+
+	private void nextImprovedStamp() {
+		this.improvedStamp++;
+		if (this.improvedStamp == Integer.MAX_VALUE) {
+			Arrays.fill(this.improvedStamps, 0);
+			this.improvedStamp = 1;
+		}
+	}
+
+	/**
+	 * Collects the routes serving the marked stops, each with the first route position at a marked stop.
+	 */
+	private void collectRoutes() {
+		this.scannedRoutes.clear();
+		this.routeStamp++;
+		if (this.routeStamp == Integer.MAX_VALUE) {
+			Arrays.fill(this.routeStamps, 0);
+			this.routeStamp = 1;
+		}
+		int stamp = this.routeStamp;
+		for (int i = 0; i < this.markedStops.size; i++) {
+			int stop = this.markedStops.values[i];
+			for (int j = this.data.stopPositionsStart[stop]; j < this.data.stopPositionsStart[stop + 1]; j++) {
+				int position = this.data.stopPositions[j];
+				int route = this.data.positionRoute[position];
+				if (this.routeStamps[route] != stamp) {
+					this.routeStamps[route] = stamp;
+					this.routeFirstPositions[route] = position;
+					this.scannedRoutes.add(route);
+				} else if (position < this.routeFirstPositions[route]) {
+					this.routeFirstPositions[route] = position;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Travels along the route from its first marked position, with the earliest trip which can be boarded at
+	 * any of the stops passed so far.
+	 */
+	private void scanRoute(final int route, final Round previous, final Round round, final int k) {
+		TransitRouterRaptorData d = this.data;
+		double bestArrival = this.bestTargetArrivals[k];
+		int last = d.routePositionsStart[route + 1] - 1;
+		int boardingPosition = -1;
+		double tripDeparture = Double.NaN; // the departure of the current trip at the first stop of the route
+		for (int position = this.routeFirstPositions[route]; position <= last; position++) {
+			int stop = d.positionStop[position];
+			if (boardingPosition >= 0) {
+				double arrival = tripDeparture + d.arrivalOffsets[position];
+				if (arrival < bestArrival && arrival < bestTripArrival(k, stop)) {
+					improveTripArrival(k, stop, arrival);
+					if (this.improvedStamps[stop] != this.improvedStamp) {
+						this.improvedStamps[stop] = this.improvedStamp;
+						this.improvedStops.add(stop);
+					}
+					round.setTrip(stop, arrival, boardingPosition, position, this.query);
+				}
+			}
+			if (position < last && previous.boardingStamps[stop] == this.query) {
+				double readyTime = previous.boardingTimes[stop];
+				if (boardingPosition < 0 || readyTime <= tripDeparture + d.departureOffsets[position]) {
+					double departure = d.getNextDepartureTime(route, position, readyTime) - d.departureOffsets[position];
+					if (boardingPosition < 0 || departure < tripDeparture) {
+						tripDeparture = departure;
+						boardingPosition = position;
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Lets the stop and the stops within walking distance be boarded in the next round after arriving by a trip.
+	 */
+	private void relaxTransfers(final int stop, final Round round, final int k) {
+		double arrival = round.tripArrivals[stop];
+		double additionalTransferTime = this.config.getAdditionalTransferTime();
+		relaxBoarding(stop, stop, arrival + additionalTransferTime, round, k);
+		for (int i = this.data.transfersStart[stop]; i < this.data.transfersStart[stop + 1]; i++) {
+			double walkTime = this.data.transferDistances[i] / this.config.getBeelineWalkSpeed();
+			relaxBoarding(this.data.transferStops[i], stop, arrival + walkTime + additionalTransferTime, round, k);
+		}
+	}
+
+	private void relaxBoarding(final int stop, final int fromStop, final double time, final Round round, final int k) {
+		if (time < this.bestTargetArrivals[k] && time < bestBoardingTime(k, stop)) {
+			improveBoardingTime(k, stop, time);
+			round.setBoarding(stop, time, fromStop, this.query);
+			mark(stop);
+		}
+	}
+
+	/**
+	 * Follows the labels back from the egress stop and converts the journey into legs, like
+	 * {@link TransitRouterImpl#convertPathToLegList} does.
+	 */
+	private Journey createJourney(final int k, final int egressStop, final Coord fromCoord, final Coord toCoord, final Person person) {
+		TransitRouterRaptorData d = this.data;
+		int[] boardingPositions = new int[k];
+		int[] alightingPositions = new int[k];
+		double[] arrivals = new double[k];
+		int stop = egressStop;
+		for (int r = k; r >= 1; r--) {
+			Round round = this.rounds[r];
+			boardingPositions[r - 1] = round.boardingPositions[stop];
+			alightingPositions[r - 1] = round.alightingPositions[stop];
+			arrivals[r - 1] = round.tripArrivals[stop];
+			stop = this.rounds[r - 1].fromStops[d.positionStop[boardingPositions[r - 1]]];
+		}
+
+		List<Leg> legs = new ArrayList<>();
+		double beelineDistanceFactor = this.config.getBeelineDistanceFactor();
+		int firstStopIndex = d.positionStop[boardingPositions[0]];
+		TransitStopFacility firstStop = d.stops[firstStopIndex];
+		double departureTime = this.rounds[0].boardingTimes[firstStopIndex] - this.accessTimes[firstStopIndex];
+		double time = departureTime;
+		double cost = 0;
+		{
+			double walkTime = this.walkDisutility.getTravelTime(person, fromCoord, firstStop.getCoord());
+			Leg leg = PopulationUtils.createLeg(TransportMode.transit_walk);
+			Route walkRoute = new GenericRouteImpl(null, firstStop.getLinkId());
+			walkRoute.setTravelTime(walkTime);
+			walkRoute.setDistance(beelineDistanceFactor * NetworkUtils.getEuclideanDistance(fromCoord, firstStop.getCoord()));
+			leg.setRoute(walkRoute);
+			leg.setTravelTime(walkTime);
+			legs.add(leg);
+			time += walkTime;
+			cost += this.walkDisutility.getTravelDisutility(person, fromCoord, firstStop.getCoord());
+		}
+		TransitStopFacility egressStopFacility = null;
+		for (int i = 0; i < k; i++) {
+			int boardingPosition = boardingPositions[i];
+			int alightingPosition = alightingPositions[i];
+			TransitStopFacility accessStopFacility = d.stops[d.positionStop[boardingPosition]];
+			double readyTime = time;
+			if (egressStopFacility != null) {
+				double distance = CoordUtils.calcEuclideanDistance(egressStopFacility.getCoord(), accessStopFacility.getCoord());
+				double walkTime = distance / this.config.getBeelineWalkSpeed();
+				double transferTime = walkTime + this.config.getAdditionalTransferTime();
+				if (egressStopFacility != accessStopFacility) {
+					Leg leg = PopulationUtils.createLeg(TransportMode.transit_walk);
+					Route walkRoute = new GenericRouteImpl(egressStopFacility.getLinkId(), accessStopFacility.getLinkId());
+					walkRoute.setTravelTime(transferTime);
+					walkRoute.setDistance(beelineDistanceFactor * distance);
+					leg.setRoute(walkRoute);
+					leg.setTravelTime(transferTime);
+					legs.add(leg);
+					time += transferTime;
+				}
+				readyTime = arrivals[i - 1] + transferTime;
+				cost += - walkTime * this.config.getMarginalUtilityOfTravelTimeWalk_utl_s()
+						- distance * this.config.getMarginalUtilityOfTravelDistanceWalk_utl_m()
+						- this.config.getAdditionalTransferTime() * this.config.getMarginalUtilityOfWaitingPt_utl_s()
+						- this.config.getUtilityOfLineSwitch_utl();
+			}
+			egressStopFacility = d.stops[d.positionStop[alightingPosition]];
+			int route = d.positionRoute[boardingPosition];
+			Leg leg = PopulationUtils.createLeg(TransportMode.pt);
+			ExperimentalTransitRoute ptRoute = new ExperimentalTransitRoute(accessStopFacility, d.lines[route], d.routes[route], egressStopFacility);
+			ptRoute.setTravelTime(arrivals[i] - time);
+			ptRoute.setDistance(beelineDistanceFactor * NetworkUtils.getEuclideanDistance(accessStopFacility.getCoord(), egressStopFacility.getCoord()));
+			leg.setRoute(ptRoute);
+			leg.setTravelTime(arrivals[i] - time);
+			legs.add(leg);
+			time = arrivals[i];
+
+			// the waiting time ends when the vehicle arrives at the stop, its dwell time counts as in-vehicle time
+			double departure = d.getNextDepartureTime(route, boardingPosition, readyTime);
+			double vehicleArrival = departure - (d.departureOffsets[boardingPosition] - d.arrivalOffsets[boardingPosition]);
+			double waitingTime = Math.max(0, vehicleArrival - readyTime);
+			double inVehicleTime = arrivals[i] - readyTime - waitingTime;
+			cost += - inVehicleTime * this.config.getMarginalUtilityOfTravelTimePt_utl_s()
+					- waitingTime * this.config.getMarginalUtilityOfWaitingPt_utl_s()
+					- (d.positionDistances[alightingPosition] - d.positionDistances[boardingPosition]) * this.config.getMarginalUtilityOfTravelDistancePt_utl_m();
+		}
+		{
+			double walkTime = this.walkDisutility.getTravelTime(person, egressStopFacility.getCoord(), toCoord);
+			Leg leg = PopulationUtils.createLeg(TransportMode.transit_walk);
+			leg.setTravelTime(walkTime);
+			legs.add(leg);
+			time += walkTime;
+			cost += this.walkDisutility.getTravelDisutility(person, egressStopFacility.getCoord(), toCoord);
+		}
+		return new Journey(Collections.unmodifiableList(legs), departureTime, time, k - 1, cost);
+	}
+
+	private List<Leg> createDirectWalkLegList(final Person person, final Coord fromCoord, final Coord toCoord) {
+		List<Leg> legs = new ArrayList<>();
+		Leg leg = PopulationUtils.createLeg(TransportMode.transit_walk);
+		double walkTime = this.walkDisutility.getTravelTime(person, fromCoord, toCoord);
+		leg.setTravelTime(walkTime);
+		Route walkRoute = new GenericRouteImpl(null, null);
+		walkRoute.setTravelTime(walkTime);
+		leg.setRoute(walkRoute);
+		legs.add(leg);
+		return legs;
+	}
+
+	/**
+	 * A journey of the Pareto set of a query.
+	 */
+	public static final class Journey {
+		private final List<Leg> legs;
+		private final double departureTime;
+		private final double arrivalTime;
+		private final int numberOfTransfers;
+		private final double cost;
+
+		Journey(final List<Leg> legs, final double departureTime, final double arrivalTime, final int numberOfTransfers, final double cost) {
+			this.legs = legs;
+			this.departureTime = departureTime;
+			this.arrivalTime = arrivalTime;
+			this.numberOfTransfers = numberOfTransfers;
+			this.cost = cost;
+		}
+
+		public List<Leg> getLegs() {
+			return this.legs;
+		}
+
+		/**
+		 * @return the time of leaving the origin, i.e. the start of the walk to the first stop
+		 */
+		public double getDepartureTime() {
+			return this.departureTime;
+		}
+
+		public double getArrivalTime() {
+			return this.arrivalTime;
+		}
+
+		public int getNumberOfTransfers() {
+			return this.numberOfTransfers;
+		}
+
+		/**
+		 * @return the disutility of the journey, including the walks to and from the stops
+		 */
+		public double getCost() {
+			return this.cost;
+		}
+	}
+
+	/**
+	 * The labels of one round: the arrival by the <code>k</code>-th trip, and the time the stop can be left with the
+	 * next trip, after walking there from the stop the <code>k</code>-th trip arrived at. The best labels over this
+	 * and the previous rounds are only created for profile queries.
+	 */
+	private static final class Round {
+		final int[] tripStamps;
+		final double[] tripArrivals;
+		final int[] boardingPositions;
+		final int[] alightingPositions;
+		final int[] boardingStamps;
+		final double[] boardingTimes;
+		final int[] fromStops;
+		int[] bestStamps = null;
+		double[] bestTripArrivals = null;
+		double[] bestBoardingTimes = null;
+
+		Round(final int numberOfStops) {
+			this.tripStamps = new int[numberOfStops];
+			this.tripArrivals = new double[numberOfStops];
+			this.boardingPositions = new int[numberOfStops];
+			this.alightingPositions = new int[numberOfStops];
+			this.boardingStamps = new int[numberOfStops];
+			this.boardingTimes = new double[numberOfStops];
+			this.fromStops = new int[numberOfStops];
+		}
+
+		void setTrip(final int stop, final double arrival, final int boardingPosition, final int alightingPosition, final int stamp) {
+			this.tripStamps[stop] = stamp;
+			this.tripArrivals[stop] = arrival;
+			this.boardingPositions[stop] = boardingPosition;
+			this.alightingPositions[stop] = alightingPosition;
+		}
+
+		void setBoarding(final int stop, final double time, final int fromStop, final int stamp) {
+			this.boardingStamps[stop] = stamp;
+			this.boardingTimes[stop] = time;
+			this.fromStops[stop] = fromStop;
+		}
+
+		void createBestLabels() {
+			this.bestStamps = new int[this.tripStamps.length];
+			this.bestTripArrivals = new double[this.tripStamps.length];
+			this.bestBoardingTimes = new double[this.tripStamps.length];
+		}
+
+		void resetStamps() {
+			Arrays.fill(this.tripStamps, 0);
+			Arrays.fill(this.boardingStamps, 0);
+			if (this.bestStamps != null) {
+				Arrays.fill(this.bestStamps, 0);
+			}
+		}
+	}
+
+	private static final class IntList {
+		int[] values = new int[64];
+		int size = 0;
+
+		void add(final int value) {
+			if (this.size == this.values.length) {
+				this.values = Arrays.copyOf(this.values, 2 * this.size);
+			}
+			this.values[this.size++] = value;
+		}
+
+		void clear() {
+			this.size = 0;
+		}
+	}
+
+}
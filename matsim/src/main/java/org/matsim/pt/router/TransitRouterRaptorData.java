@@ -0,0 +1,236 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * TransitRouterRaptorData.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2016 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.pt.router;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.log4j.Logger;
+import org.matsim.api.core.v01.Coord;
+import org.matsim.api.core.v01.Id;
+import org.matsim.core.utils.collections.PackedRTree;
+import org.matsim.core.utils.geometry.CoordUtils;
+import org.matsim.core.utils.misc.Time;
+import org.matsim.pt.transitSchedule.api.Departure;
+import org.matsim.pt.transitSchedule.api.TransitLine;
+import org.matsim.pt.transitSchedule.api.TransitRoute;
+import org.matsim.pt.transitSchedule.api.TransitRouteStop;
+import org.matsim.pt.transitSchedule.api.TransitSchedule;
+import org.matsim.pt.transitSchedule.api.TransitStopFacility;
+
+/**
+ * The transit schedule flattened into arrays for {@link TransitRouterRaptor}: the stops of all routes one after
+ * the other ("route positions"), with their offsets and the sorted departures of each route, the route positions
+ * at each stop, and the walking transfers between stops. Built once per schedule and shared by all routers.
+ * <p></p>
+ * Like {@link TransitRouterNetwork}, only stops served by a route are included, and transfers connect stops which
+ * are not further apart than the beeline walk connection distance. Does not expect the schedule to change once
+ * created. Thread-safe.
+ */
+public final class TransitRouterRaptorData {
+
+	private static final Logger log = Logger.getLogger(TransitRouterRaptorData.class);
+
+	/*package*/ final TransitStopFacility[] stops;
+	private final PackedRTree<Integer> stopsIndex;
+
+	/*package*/ final TransitLine[] lines;
+	/*package*/ final TransitRoute[] routes;
+	/** the first route position of each route, plus the number of route positions at the end */
+	/*package*/ final int[] routePositionsStart;
+
+	/*package*/ final int[] positionStop;
+	/*package*/ final int[] positionRoute;
+	/*package*/ final double[] arrivalOffsets;
+	/*package*/ final double[] departureOffsets;
+	/** the beeline distance along the stops of the route from its first stop */
+	/*package*/ final double[] positionDistances;
+
+	/** the sorted departure times at the first stop of each route */
+	/*package*/ final int[] departuresStart;
+	/*package*/ final double[] departures;
+
+	/** the route positions at each stop */
+	/*package*/ final int[] stopPositionsStart;
+	/*package*/ final int[] stopPositions;
+
+	/** the other stops within the beeline walk connection distance of each stop */
+	/*package*/ final int[] transfersStart;
+	/*package*/ final int[] transferStops;
+	/*package*/ final double[] transferDistances;
+
+	public TransitRouterRaptorData(final TransitSchedule schedule, final double beelineWalkConnectionDistance) {
+		List<TransitLine> lines = new ArrayList<>();
+		List<TransitRoute> routes = new ArrayList<>();
+		List<TransitStopFacility> stops = new ArrayList<>();
+		Map<Id<TransitStopFacility>, Integer> stopIndices = new HashMap<>();
+		int numberOfPositions = 0;
+		int numberOfDepartures = 0;
+		for (TransitLine line : schedule.getTransitLines().values()) {
+			for (TransitRoute route : line.getRoutes().values()) {
+				if (route.getStops().size() < 2 || route.getDepartures().isEmpty()) {
+					continue; // nobody can travel with this route
+				}
+				lines.add(line);
+				routes.add(route);
+				numberOfPositions += route.getStops().size();
+				numberOfDepartures += route.getDepartures().size();
+				for (TransitRouteStop stop : route.getStops()) {
+					if (!stopIndices.containsKey(stop.getStopFacility().getId())) {
+						stopIndices.put(stop.getStopFacility().getId(), stops.size());
+						stops.add(stop.getStopFacility());
+					}
+				}
+			}
+		}
+		this.stops = stops.toArray(new TransitStopFacility[stops.size()]);
+		this.lines = lines.toArray(new TransitLine[lines.size()]);
+		this.routes = routes.toArray(new TransitRoute[routes.size()]);
+
+		this.routePositionsStart = new int[this.routes.length + 1];
+		this.positionStop = new int[numberOfPositions];
+		this.positionRoute = new int[numberOfPositions];
+		this.arrivalOffsets = new double[numberOfPositions];
+		this.departureOffsets = new double[numberOfPositions];
+		this.positionDistances = new double[numberOfPositions];
+		this.departuresStart = new int[this.routes.length + 1];
+		this.departures = new double[numberOfDepartures];
+		int p = 0;
+		int d = 0;
+		for (int r = 0; r < this.routes.length; r++) {
+			this.routePositionsStart[r] = p;
+			Coord previousCoord = null;
+			double distance = 0;
+			for (TransitRouteStop stop : this.routes[r].getStops()) {
+				Coord coord = stop.getStopFacility().getCoord();
+				if (previousCoord != null) {
+					distance += CoordUtils.calcEuclideanDistance(previousCoord, coord);
+				}
+				previousCoord = coord;
+				this.positionStop[p] = stopIndices.get(stop.getStopFacility().getId());
+				this.positionRoute[p] = r;
+				// quite often, only one of the offsets is given, then we use it for both
+				this.arrivalOffsets[p] = stop.getArrivalOffset() != Time.UNDEFINED_TIME ? stop.getArrivalOffset() : stop.getDepartureOffset();
+				this.departureOffsets[p] = stop.getDepartureOffset() != Time.UNDEFINED_TIME ? stop.getDepartureOffset() : stop.getArrivalOffset();
+				this.positionDistances[p] = distance;
+				p++;
+			}
+			this.departuresStart[r] = d;
+			for (Departure departure : this.routes[r].getDepartures().values()) {
+				this.departures[d++] = departure.getDepartureTime();
+			}
+			Arrays.sort(this.departures, this.departuresStart[r], d);
+		}
+		this.routePositionsStart[this.routes.length] = p;
+		this.departuresStart[this.routes.length] = d;
+
+		this.stopPositionsStart = new int[this.stops.length + 1];
+		for (int position = 0; position < numberOfPositions; position++) {
+			this.stopPositionsStart[this.positionStop[position] + 1]++;
+		}
+		for (int s = 0; s < this.stops.length; s++) {
+			this.stopPositionsStart[s + 1] += this.stopPositionsStart[s];
+		}
+		this.stopPositions = new int[numberOfPositions];
+		int[] fill = Arrays.copyOf(this.stopPositionsStart, this.stops.length);
+		for (int position = 0; position < numberOfPositions; position++) {
+			this.stopPositions[fill[this.positionStop[position]]++] = position;
+		}
+
+		PackedRTree.Builder<Integer> stopsIndexBuilder = new PackedRTree.Builder<>();
+		for (int s = 0; s < this.stops.length; s++) {
+			stopsIndexBuilder.put(this.stops[s].getCoord().getX(), this.stops[s].getCoord().getY(), s);
+		}
+		this.stopsIndex = stopsIndexBuilder.build();
+		this.transfersStart = new int[this.stops.length + 1];
+		List<Integer> transferStops = new ArrayList<>();
+		List<Double> transferDistances = new ArrayList<>();
+		for (int s = 0; s < this.stops.length; s++) {
+			this.transfersStart[s] = transferStops.size();
+			Coord coord = this.stops[s].getCoord();
+			for (Integer other : this.stopsIndex.getDisk(coord.getX(), coord.getY(), beelineWalkConnectionDistance)) {
+				if (other != s) {
+					transferStops.add(other);
+					transferDistances.add(CoordUtils.calcEuclideanDistance(coord, this.stops[other].getCoord()));
+				}
+			}
+		}
+		this.transfersStart[this.stops.length] = transferStops.size();
+		this.transferStops = new int[transferStops.size()];
+		this.transferDistances = new double[transferStops.size()];
+		for (int i = 0; i < this.transferStops.length; i++) {
+			this.transferStops[i] = transferStops.get(i);
+			this.transferDistances[i] = transferDistances.get(i);
+		}
+
+		log.info("raptor data: " + this.stops.length + " stops, " + this.routes.length + " routes, " + numberOfPositions
+				+ " route stops, " + numberOfDepartures + " departures, " + this.transferStops.length + " transfers.");
+	}
+
+	/**
+	 * Returns the stops within the search radius, or within the distance of the nearest stop plus the extension
+	 * radius if there are less than two such stops, the same as {@link TransitRouterImpl} does.
+	 */
+	/*package*/ Collection<Integer> getNearestStops(final Coord coord, final double searchRadius, final double extensionRadius) {
+		Collection<Integer> nearestStops = this.stopsIndex.getDisk(coord.getX(), coord.getY(), searchRadius);
+		if (nearestStops.size() < 2 && this.stops.length > 0) {
+			// also enlarge search area if only one stop found, maybe a second one is near the border of the search area
+			Integer nearestStop = this.stopsIndex.getClosest(coord.getX(), coord.getY());
+			double distance = CoordUtils.calcEuclideanDistance(coord, this.stops[nearestStop].getCoord());
+			nearestStops = this.stopsIndex.getDisk(coord.getX(), coord.getY(), distance + extensionRadius);
+		}
+		return nearestStops;
+	}
+
+	/**
+	 * Returns the departure time of the next vehicle of the route at the given route position, with the same
+	 * wrap-around at midnight as {@link PreparedTransitSchedule#getNextDepartureTime}.
+	 */
+	/*package*/ double getNextDepartureTime(final int route, final int position, final double time) {
+		double departureOffset = this.departureOffsets[position];
+		double earliestDepartureTimeAtTerminus = time - departureOffset;
+		if (earliestDepartureTimeAtTerminus >= TransitRouterNetworkTravelTimeAndDisutility.MIDNIGHT) {
+			earliestDepartureTimeAtTerminus = earliestDepartureTimeAtTerminus % TransitRouterNetworkTravelTimeAndDisutility.MIDNIGHT;
+		}
+		if (earliestDepartureTimeAtTerminus < 0) {
+			earliestDepartureTimeAtTerminus += TransitRouterNetworkTravelTimeAndDisutility.MIDNIGHT;
+		}
+		int from = this.departuresStart[route];
+		int to = this.departuresStart[route + 1];
+		int pos = Arrays.binarySearch(this.departures, from, to, earliestDepartureTimeAtTerminus);
+		if (pos < 0) {
+			pos = -(pos + 1);
+		}
+		if (pos >= to) {
+			pos = from; // there is no later departure time, take the first in the morning
+		}
+		double departureTime = this.departures[pos] + departureOffset;
+		while (departureTime < time) {
+			departureTime += TransitRouterNetworkTravelTimeAndDisutility.MIDNIGHT;
+		}
+		return departureTime;
+	}
+
+}
@@ -51,11 +51,21 @@ import javax.inject.Singleton;
 import java.util.*;
 import java.util.concurrent.BrokenBarrierException;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * Collects link travel times over a given time span (storedTravelTimesBinSize)
  * and calculates an average travel time over this time span.
+ * <p></p>
+ * The events may be handled by several threads at the same time. Finished trips
+ * are only appended to a lock-free queue of their link, the averages are updated
+ * by the update threads at the beginning of each time step. The resulting travel
+ * times of all links are then published at once, so {@link #getLinkTravelTime}
+ * always returns the travel times of one time step. Since this only happens in
+ * {@link #notifyMobsimBeforeSimStep}, replanners running within a time step, e.g.
+ * in a ParallelDuringLegReplanner, see the same travel times for all their routes.
  * 
  * TODO:
  * - make storedTravelTimesBinSize configurable (e.g. via config)
@@ -79,6 +89,14 @@ public class TravelTimeCollector implements TravelTime,
 	
 	private TravelTimeInfoProvider travelTimeInfoProvider;
 
+	/*
+	 * The travel times of the current time step, indexed by TravelTimeInfo.index.
+	 * The update threads write into nextTravelTimes which is then swapped with
+	 * the published array.
+	 */
+	private volatile double[] travelTimes;
+	private double[] nextTravelTimes;
+
 	// Links that are changed by network change events
 	private Map<Double, Collection<Link>> changedLinks;
 	
@@ -124,15 +142,20 @@ public class TravelTimeCollector implements TravelTime,
 	}
 
 	private void init() {
-		this.regularActiveTrips = new HashMap<>();
+		this.regularActiveTrips = new ConcurrentHashMap<>();
 		this.travelTimeInfos = new ConcurrentHashMap<>();
 		this.changedLinks = new HashMap<>();
-		this.vehiclesToFilter = new HashSet<>();
+		this.vehiclesToFilter = Collections.newSetFromMap(new ConcurrentHashMap<Id<Vehicle>, Boolean>());
 				
+		int index = 0;
 		for (Link link : this.network.getLinks().values()) {
-			TravelTimeInfo travelTimeInfo = new TravelTimeInfo();
+			TravelTimeInfo travelTimeInfo = new TravelTimeInfo(index++);
 			this.travelTimeInfos.put(link.getId(), travelTimeInfo);
 		}
+		this.travelTimes = new double[index];
+		this.nextTravelTimes = new double[index];
+		Arrays.fill(this.travelTimes, Double.MAX_VALUE);
+		Arrays.fill(this.nextTravelTimes, Double.MAX_VALUE);
 		/*
 		 * If no RoutingNetwork is used, ArrayBasedTravelTimeInfoProvider uses 
 		 * a MapBasedTravelTimeInfoProvider as fall back solution. This increases 
@@ -166,7 +189,7 @@ public class TravelTimeCollector implements TravelTime,
 
 	@Override
 	public double getLinkTravelTime(Link link, double time, Person person, Vehicle vehicle) {
-		return this.travelTimeInfoProvider.getTravelTimeData(link).travelTime;
+		return this.travelTimes[this.travelTimeInfoProvider.getTravelTimeData(link).index];
 	}
 
 	@Override
@@ -209,15 +232,14 @@ public class TravelTimeCollector implements TravelTime,
 		if (tripBin != null) {
 			tripBin.leaveTime = time;
 
-			double tripTime = tripBin.leaveTime - tripBin.enterTime;
-
+			/*
+			 * The trip is added to the average by the update thread of the link
+			 * at the beginning of the next time step.
+			 */
 			TravelTimeInfo travelTimeInfo = this.travelTimeInfoProvider.getTravelTimeData(linkId);
-			travelTimeInfo.tripBins.add(tripBin);
-			travelTimeInfo.addedTravelTimes += tripTime;
-			travelTimeInfo.addedTrips++;
+			travelTimeInfo.addedTripBins.add(tripBin);
 
 			travelTimeInfo.checkActiveState();
-			travelTimeInfo.checkBinSize(tripTime);
 		}
 	}
 
@@ -279,6 +301,8 @@ public class TravelTimeCollector implements TravelTime,
 			TravelTimeInfo travelTimeInfo = this.travelTimeInfoProvider.getTravelTimeData(link);
 			travelTimeInfo.travelTime = freeSpeedTravelTime;
 			travelTimeInfo.init(freeSpeedTravelTime);
+			this.travelTimes[travelTimeInfo.index] = freeSpeedTravelTime;
+			this.nextTravelTimes[travelTimeInfo.index] = freeSpeedTravelTime;
 		}
 
 		// Now initialize the Parallel Update Threads
@@ -358,13 +382,15 @@ public class TravelTimeCollector implements TravelTime,
 
 	/*package*/ static class TravelTimeInfo {
 
+		final int index;
 		UpdateMeanTravelTimesRunnable runnable;
-		List<TripBin> tripBins = new ArrayList<>();
 
-		boolean isActive = false;
-		// int numActiveTrips = 0;
-		int addedTrips = 0;
-		double addedTravelTimes = 0.0;
+		// Trips which have been finished since the last update, filled by the event handling threads
+		final Queue<TripBin> addedTripBins = new ConcurrentLinkedQueue<>();
+		// Trips within the current time window, only used by the update thread
+		final Deque<TripBin> tripBins = new ArrayDeque<>();
+
+		final AtomicBoolean isActive = new AtomicBoolean(false);
 		double sumTravelTimes = 0.0; // We cache the sum of the TravelTimes
 
 		double freeSpeedTravelTime = Double.MAX_VALUE; // We cache the FreeSpeedTravelTimes
@@ -375,18 +401,32 @@ public class TravelTimeCollector implements TravelTime,
 		static Counter enlarge = new Counter("TravelTimeCollector: enlarged time bin size: ");
 		static Counter shrink = new Counter("TravelTimeCollector: shrunk time bin size: ");
 
+		/*package*/ TravelTimeInfo(int index) {
+			this.index = index;
+		}
+
 		/*package*/ void init(double freeSpeedTravelTime) {
 			this.freeSpeedTravelTime = freeSpeedTravelTime;
 			this.dynamicBinSize = freeSpeedTravelTime * 2.5;
 		}
 
 		/*package*/ void checkActiveState() {
-			if (!isActive) {
-				this.isActive = true;
+			if (this.isActive.compareAndSet(false, true)) {
 				runnable.addTravelTimeInfo(this);
 			}
 		}
 
+		/*
+		 * Called by the update thread if no trips are left. Returns false if trips
+		 * have been added in the meantime and the link has to stay active. If an
+		 * event handling thread activates the link again after this check, the
+		 * link is handed over to the runnable again by checkActiveState().
+		 */
+		/*package*/ boolean deactivate() {
+			this.isActive.set(false);
+			return this.addedTripBins.isEmpty() || !this.isActive.compareAndSet(false, true);
+		}
+
 		/*package*/ void checkBinSize(double tripTime) {
 			if (tripTime > dynamicBinSize) {
 				dynamicBinSize = tripTime * 2;
@@ -418,11 +458,17 @@ public class TravelTimeCollector implements TravelTime,
 			// set current Time
 			for (UpdateMeanTravelTimesRunnable updateMeanTravelTimesRunnable : updateMeanTravelTimesRunnables) {
 				updateMeanTravelTimesRunnable.setTime(time);
+				updateMeanTravelTimesRunnable.setTravelTimes(this.nextTravelTimes);
 			}
 
 			this.startBarrier.await();
 
 			this.endBarrier.await();
+
+			// publish the travel times of this time step
+			double[] updatedTravelTimes = this.nextTravelTimes;
+			this.nextTravelTimes = this.travelTimes;
+			this.travelTimes = updatedTravelTimes;
 		} catch (InterruptedException | BrokenBarrierException e) {
 			throw new RuntimeException(e);
 		}
@@ -483,10 +529,20 @@ public class TravelTimeCollector implements TravelTime,
 		private CyclicBarrier endBarrier = null;
 		
 		private double time = Time.UNDEFINED_TIME;
-		private Collection<TravelTimeInfo> activeTravelTimeInfos;
+		private double[] travelTimes = null;
+		private final Collection<TravelTimeInfo> activeTravelTimeInfos;
+		// Links activated by the event handling threads since the last update
+		private final Queue<TravelTimeInfo> activatedTravelTimeInfos;
+		/*
+		 * Links deactivated in the last update. Their free speed travel time has
+		 * also to be written to the other buffer.
+		 */
+		private final List<TravelTimeInfo> deactivatedTravelTimeInfos;
 
 		public UpdateMeanTravelTimesRunnable() {
 			activeTravelTimeInfos = new ArrayList<>();
+			activatedTravelTimeInfos = new ConcurrentLinkedQueue<>();
+			deactivatedTravelTimeInfos = new ArrayList<>();
 		}
 
 		public void setStartBarrier(CyclicBarrier cyclicBarrier) {
@@ -501,8 +557,12 @@ public class TravelTimeCollector implements TravelTime,
 			time = t;
 		}
 
+		public void setTravelTimes(final double[] travelTimes) {
+			this.travelTimes = travelTimes;
+		}
+
 		public void addTravelTimeInfo(TravelTimeInfo travelTimeInfo) {
-			this.activeTravelTimeInfos.add(travelTimeInfo);
+			this.activatedTravelTimeInfos.add(travelTimeInfo);
 		}
 
 		public int getActiveLinksCount() {
@@ -540,6 +600,16 @@ public class TravelTimeCollector implements TravelTime,
 						return;
 					}
 					
+					for (TravelTimeInfo travelTimeInfo : this.deactivatedTravelTimeInfos) {
+						this.travelTimes[travelTimeInfo.index] = travelTimeInfo.travelTime;
+					}
+					this.deactivatedTravelTimeInfos.clear();
+
+					TravelTimeInfo activated;
+					while ((activated = this.activatedTravelTimeInfos.poll()) != null) {
+						this.activeTravelTimeInfos.add(activated);
+					}
+
 					Iterator<TravelTimeInfo> iter = activeTravelTimeInfos.iterator();
 					while (iter.hasNext()) {
 						TravelTimeInfo travelTimeInfo = iter.next();
@@ -551,10 +621,13 @@ public class TravelTimeCollector implements TravelTime,
 						 * travel time is its free speed travel time.
 						 */
 						if (travelTimeInfo.tripBins.size() == 0) {
-							travelTimeInfo.isActive = false;
 							travelTimeInfo.travelTime = travelTimeInfo.freeSpeedTravelTime;
-							iter.remove();
+							if (travelTimeInfo.deactivate()) {
+								iter.remove();
+								this.deactivatedTravelTimeInfos.add(travelTimeInfo);
+							}
 						}
+						this.travelTimes[travelTimeInfo.index] = travelTimeInfo.travelTime;
 					}
 
 				} catch (InterruptedException | BrokenBarrierException e) {
@@ -564,9 +637,19 @@ public class TravelTimeCollector implements TravelTime,
 		} // run()
 
 		private void calcBinTravelTime(double time, TravelTimeInfo travelTimeInfo) {
+			double addedTravelTimes = 0.0;
 			double removedTravelTimes = 0.0;
 
-			List<TripBin> tripBins = travelTimeInfo.tripBins;
+			Deque<TripBin> tripBins = travelTimeInfo.tripBins;
+
+			// take over the trips finished since the last update
+			TripBin addedTripBin;
+			while ((addedTripBin = travelTimeInfo.addedTripBins.poll()) != null) {
+				double tripTime = addedTripBin.leaveTime - addedTripBin.enterTime;
+				tripBins.add(addedTripBin);
+				addedTravelTimes += tripTime;
+				travelTimeInfo.checkBinSize(tripTime);
+			}
 
 			// first remove old TravelTimes
 			Iterator<TripBin> iter = tripBins.iterator();
@@ -584,11 +667,9 @@ public class TravelTimeCollector implements TravelTime,
 			 * within the current SimStep. The initial FreeSpeedTravelTime has
 			 * to be set correctly via setTravelTime!
 			 */
-			if (removedTravelTimes == 0.0 && travelTimeInfo.addedTravelTimes == 0.0) return;
-
-			travelTimeInfo.sumTravelTimes = travelTimeInfo.sumTravelTimes - removedTravelTimes + travelTimeInfo.addedTravelTimes;
+			if (removedTravelTimes == 0.0 && addedTravelTimes == 0.0) return;
 
-			travelTimeInfo.addedTravelTimes = 0.0;
+			travelTimeInfo.sumTravelTimes = travelTimeInfo.sumTravelTimes - removedTravelTimes + addedTravelTimes;
 
 			/*
 			 * Ensure, that we don't allow TravelTimes shorter than the
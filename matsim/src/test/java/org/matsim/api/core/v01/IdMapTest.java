@@ -0,0 +1,122 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * IdMapTest.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2016 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.api.core.v01;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class IdMapTest {
+
+	@Test
+	public void testPutGetRemove() {
+		Map<Id<TMapped>, String> map = new IdMap<>(TMapped.class, 2);
+		Id<TMapped> id1 = Id.create("1", TMapped.class);
+		Id<TMapped> id2 = Id.create("2", TMapped.class);
+		Id<TMapped> id3 = Id.create("3", TMapped.class);
+
+		Assert.assertTrue(map.isEmpty());
+		Assert.assertNull(map.put(id1, "one"));
+		Assert.assertNull(map.put(id3, null));
+		Assert.assertEquals("one", map.put(id1, "eins"));
+		Assert.assertEquals(2, map.size());
+
+		Assert.assertEquals("eins", map.get(id1));
+		Assert.assertNull(map.get(id2));
+		Assert.assertNull(map.get(id3));
+		Assert.assertTrue(map.containsKey(id3));
+		Assert.assertFalse(map.containsKey(id2));
+		Assert.assertFalse(map.containsKey("1"));
+		Assert.assertTrue(map.containsValue(null));
+
+		// ids grow beyond the initial capacity
+		Id<TMapped> later = null;
+		for (int i = 0; i < 100; i++) {
+			later = Id.create("later" + i, TMapped.class);
+		}
+		map.put(later, "later");
+		Assert.assertEquals("later", map.get(later));
+		Assert.assertEquals(3, map.size());
+
+		Assert.assertNull(map.remove(id3));
+		Assert.assertFalse(map.containsKey(id3));
+		Assert.assertEquals("eins", map.remove(id1));
+		Assert.assertNull(map.remove(id1));
+		Assert.assertEquals(1, map.size());
+		map.clear();
+		Assert.assertTrue(map.isEmpty());
+		Assert.assertNull(map.get(later));
+	}
+
+	@Test
+	public void testKeysOfOtherTypes() {
+		Map<Id<TMapped>, String> map = new IdMap<>(TMapped.class);
+		Id<TMapped> id = Id.create("other", TMapped.class);
+		Id<TOther> sameKey = Id.create("other", TOther.class);
+		Id<TOther> otherKey = Id.create("unknown", TOther.class);
+		map.put(id, "value");
+
+		// consistent with Id.equals(), which compares the keys only
+		Assert.assertEquals("value", map.get(sameKey));
+		Assert.assertTrue(map.containsKey(sameKey));
+		Assert.assertNull(map.get(otherKey));
+		Assert.assertNull(map.remove(otherKey));
+		Assert.assertEquals(1, map.size());
+	}
+
+	@Test
+	public void testIterationAndEquality() {
+		IdMap<TMapped, Integer> map = new IdMap<>(TMapped.class);
+		Map<Id<TMapped>, Integer> expected = new HashMap<>();
+		for (int i = 0; i < 10; i++) {
+			Id<TMapped> id = Id.create("it" + i, TMapped.class);
+			map.put(id, i);
+			expected.put(id, i);
+		}
+		Assert.assertEquals(expected, map);
+		Assert.assertEquals(map, expected);
+		Assert.assertEquals(expected.hashCode(), map.hashCode());
+
+		int last = -1;
+		for (Map.Entry<Id<TMapped>, Integer> e : map.entrySet()) {
+			Assert.assertTrue(e.getKey().index() > last);
+			last = e.getKey().index();
+			e.setValue(e.getValue() * 2);
+		}
+		Assert.assertEquals(Integer.valueOf(18), map.get(Id.create("it9", TMapped.class)));
+
+		for (Iterator<Integer> it = map.values().iterator(); it.hasNext(); ) {
+			if (it.next() % 4 == 0) {
+				it.remove();
+			}
+		}
+		Assert.assertEquals(5, map.size());
+		Assert.assertFalse(map.containsKey(Id.create("it0", TMapped.class)));
+		Assert.assertTrue(map.containsKey(Id.create("it1", TMapped.class)));
+	}
+
+	private static class TMapped {}
+	private static class TOther {}
+
+}
@@ -0,0 +1,68 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * IdSetTest.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2016 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.api.core.v01;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Set;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class IdSetTest {
+
+	@Test
+	public void testAddContainsRemove() {
+		Set<Id<TElement>> set = new IdSet<>(TElement.class);
+		Id<TElement> id1 = Id.create("1", TElement.class);
+		Id<TElement> id2 = Id.create("2", TElement.class);
+		Id<TElement> id3 = Id.create("3", TElement.class);
+
+		Assert.assertTrue(set.add(id3));
+		Assert.assertTrue(set.add(id1));
+		Assert.assertFalse(set.add(id1));
+		Assert.assertEquals(2, set.size());
+		Assert.assertTrue(set.contains(id1));
+		Assert.assertFalse(set.contains(id2));
+		Assert.assertTrue(set.contains(Id.create("1", TOther.class)));
+		Assert.assertFalse(set.contains("1"));
+
+		// iteration is in the order of creation of the ids
+		Iterator<Id<TElement>> it = set.iterator();
+		Assert.assertSame(id1, it.next());
+		Assert.assertSame(id3, it.next());
+		Assert.assertFalse(it.hasNext());
+		Assert.assertEquals(new HashSet<>(Arrays.asList(id1, id3)), set);
+
+		it = set.iterator();
+		it.next();
+		it.remove();
+		Assert.assertFalse(set.contains(id1));
+		Assert.assertTrue(set.remove(id3));
+		Assert.assertFalse(set.remove(id3));
+		Assert.assertTrue(set.isEmpty());
+	}
+
+	private static class TElement {}
+	private static class TOther {}
+
+}
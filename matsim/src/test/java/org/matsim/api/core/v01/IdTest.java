@@ -67,7 +67,67 @@ public class IdTest {
 //		} // FIXME temporarily deactivated
 	}
 	
+	@Test
+	public void testIndex() {
+		int before = Id.getNumberOfIds(TIndexed.class);
+		Id<TIndexed> id1 = Id.create("1", TIndexed.class);
+		Id<TIndexed> id2 = Id.create("2", TIndexed.class);
+		Id<TIndexed> id1again = Id.create("1", TIndexed.class);
+
+		Assert.assertEquals(before, id1.index());
+		Assert.assertEquals(before + 1, id2.index());
+		Assert.assertEquals(id1.index(), id1again.index());
+		Assert.assertEquals(before + 2, Id.getNumberOfIds(TIndexed.class));
+		Assert.assertSame(id2, Id.get(id2.index(), TIndexed.class));
+		try {
+			Id.get(before + 2, TIndexed.class);
+			Assert.fail("expected exception, got none");
+		} catch (IndexOutOfBoundsException e) {
+			// expected exception
+		}
+	}
+	
+	/**
+	 * Subclasses of Id outside of it have no index; they still work as keys of {@link IdMap} and {@link IdSet}.
+	 */
+	@Test
+	public void testIndex_otherSubclass() {
+		Id<TIndexed> id1 = Id.create("1", TIndexed.class);
+		Id<TIndexed> other1 = new OtherId<TIndexed>("1");
+		Id<TIndexed> other3 = new OtherId<TIndexed>("3");
+
+		Assert.assertEquals(-1, other1.index());
+		Assert.assertEquals(id1.index(), Id.getIndex(other1, TIndexed.class));
+		Assert.assertEquals(id1.index(), Id.getIndex(id1, TIndexed.class));
+		Assert.assertEquals(Id.create("3", TIndexed.class).index(), Id.getIndex(other3, TIndexed.class));
+
+		IdMap<TIndexed, String> map = new IdMap<>(TIndexed.class);
+		map.put(other1, "one");
+		Assert.assertEquals("one", map.get(id1));
+		Assert.assertEquals("one", map.get(other1));
+		IdSet<TIndexed> set = new IdSet<>(TIndexed.class);
+		set.add(id1);
+		Assert.assertTrue(set.contains(other1));
+		Assert.assertFalse(set.contains(new OtherId<TIndexed>("no such id")));
+	}
+
+	private static class OtherId<T> extends Id<T> {
+		private final String key;
+		OtherId(final String key) {
+			this.key = key;
+		}
+		@Override
+		public int hashCode() {
+			return this.key.hashCode();
+		}
+		@Override
+		public String toString() {
+			return this.key;
+		}
+	}
+
 	private static class TLink {}
 	private static class TNode {}
+	private static class TIndexed {}
 	
 }
@@ -0,0 +1,85 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * EventsManagerImplDispatchBenchmark.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2016 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.events;
+
+import java.util.concurrent.TimeUnit;
+
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
+import org.matsim.core.events.EventsManagerImplTest.CountingMyEventHandler;
+import org.matsim.core.events.EventsManagerImplTest.MyEvent;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Compares the reflective and the method handle based dispatch of {@link EventsManagerImpl} for an
+ * event type that is not covered by its hard-coded fast path.  Not a unit test; run the main method
+ * after <code>mvn test-compile</code> with the test classpath.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class EventsManagerImplDispatchBenchmark {
+
+	@Param({"1", "20"})
+	public int numberOfHandlers;
+
+	@Param({"false", "true"})
+	public boolean compiledDispatch;
+
+	private EventsManagerImpl events;
+	private MyEvent event;
+
+	@Setup
+	public void setup() {
+		// addHandler() logs every handler, which would only clutter the benchmark output
+		Logger.getLogger(EventsManagerImpl.class).setLevel(Level.WARN);
+		this.events = new EventsManagerImpl(this.compiledDispatch);
+		for (int i = 0; i < this.numberOfHandlers; i++) {
+			this.events.addHandler(new CountingMyEventHandler());
+		}
+		this.event = new MyEvent(3600.0);
+	}
+
+	@Benchmark
+	public void processEvent() {
+		this.events.processEvent(this.event);
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		new Runner(new OptionsBuilder().include(EventsManagerImplDispatchBenchmark.class.getSimpleName()).build()).run();
+	}
+}
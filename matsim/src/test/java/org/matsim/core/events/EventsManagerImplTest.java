@@ -63,6 +63,49 @@ public class EventsManagerImplTest {
 		}
 	}
 
+	@Test
+	public void testProcessEvent_CustomEventHandler_ReflectiveDispatch() {
+		EventsManager manager = new EventsManagerImpl(false);
+		CountingMyEventHandler handler = new CountingMyEventHandler();
+		manager.addHandler(handler);
+		manager.processEvent(new MyEvent(123.45));
+		manager.processEvent(new MyEvent(234.56));
+		Assert.assertEquals("EventHandler was not called.", 2, handler.counter);
+	}
+
+	@Test
+	public void testProcessEvent_ExceptionInEventHandler_ReflectiveDispatch() {
+		EventsManager manager = new EventsManagerImpl(false);
+		CrashingMyEventHandler handler = new CrashingMyEventHandler();
+		manager.addHandler(handler);
+		try {
+			manager.processEvent(new MyEvent(123.45));
+			Assert.fail("expected exception, but got none.");
+		} catch (final RuntimeException e) {
+			log.info("Catched expected exception.", e);
+			Assert.assertEquals(1, handler.counter);
+			Assert.assertTrue(e.getCause().getCause() instanceof ArithmeticException);
+		}
+	}
+
+	/**
+	 * Makes sure the handle bound to one handler is not used for another one registered for the same event class.
+	 */
+	@Test
+	public void testProcessEvent_MultipleCustomEventHandlers() {
+		EventsManager manager = EventsUtils.createEventsManager();
+		CountingMyEventHandler handler1 = new CountingMyEventHandler();
+		CountingMyEventHandler handler2 = new CountingMyEventHandler();
+		manager.addHandler(handler1);
+		manager.processEvent(new MyEvent(123.45));
+		manager.addHandler(handler2);
+		manager.processEvent(new MyEvent(234.56));
+		manager.removeHandler(handler1);
+		manager.processEvent(new MyEvent(345.67));
+		Assert.assertEquals(2, handler1.counter);
+		Assert.assertEquals(2, handler2.counter);
+	}
+
 	/*package*/ static class MyEvent extends Event {
 		public MyEvent(final double time) {
 			super(time);
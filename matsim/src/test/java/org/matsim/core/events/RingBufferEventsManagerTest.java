@@ -0,0 +1,225 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * RingBufferEventsManagerTest.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2016 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.events;
+
+import static org.hamcrest.collection.IsIterableContainingInOrder.contains;
+import static org.junit.Assert.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.events.Event;
+import org.matsim.api.core.v01.events.LinkEnterEvent;
+import org.matsim.api.core.v01.events.LinkLeaveEvent;
+import org.matsim.api.core.v01.events.PersonStuckEvent;
+import org.matsim.api.core.v01.events.handler.LinkEnterEventHandler;
+import org.matsim.testcases.utils.EventsCollector;
+
+public class RingBufferEventsManagerTest {
+
+	/**
+	 * Uses a buffer much smaller than the number of events, so the producer has to wrap around many times.
+	 */
+	@Test(timeout = 20000)
+	public void testAllHandlersGetAllEventsInOrder() {
+		RingBufferEventsManager events = new RingBufferEventsManager(3, 16);
+		List<EventsCollector> collectors = new ArrayList<>();
+		for (int i = 0; i < 5; i++) {
+			EventsCollector collector = new EventsCollector();
+			collectors.add(collector);
+			events.addHandler(collector);
+		}
+
+		events.initProcessing();
+		for (int time = 0; time < 100; time++) {
+			for (int i = 0; i < 20; i++) {
+				events.processEvent(new LinkEnterEvent(time, Id.createVehicleId(i), Id.createLinkId(i)));
+			}
+			events.afterSimStep(time);
+		}
+		events.finishProcessing();
+
+		for (EventsCollector collector : collectors) {
+			Assert.assertEquals(2000, collector.getEvents().size());
+			int cnt = 0;
+			for (int time = 0; time < 100; time++) {
+				for (int i = 0; i < 20; i++) {
+					Assert.assertEquals(new LinkEnterEvent(time, Id.createVehicleId(i), Id.createLinkId(i)), collector.getEvents().get(cnt++));
+				}
+			}
+		}
+	}
+
+	@Test(timeout = 20000)
+	public void testAllEventsOfSimStepProcessedAfterSimStep() {
+		RingBufferEventsManager events = new RingBufferEventsManager(2, 1024);
+		final int[] counter = new int[1];
+		events.addHandler(new LinkEnterEventHandler() {
+			@Override
+			public void handleEvent(LinkEnterEvent event) {
+				try {
+					Thread.sleep(1);
+				} catch (InterruptedException e) {
+					e.printStackTrace();
+				}
+				counter[0]++;
+			}
+
+			@Override
+			public void reset(int iteration) {}
+		});
+
+		events.initProcessing();
+		for (int time = 0; time < 5; time++) {
+			for (int i = 0; i < 10; i++) {
+				events.processEvent(new LinkEnterEvent(time, Id.createVehicleId(i), Id.createLinkId(i)));
+			}
+			events.afterSimStep(time);
+			Assert.assertEquals(10 * (time + 1), counter[0]);
+		}
+		events.finishProcessing();
+	}
+
+	@Test(timeout = 20000)
+	public void testEventHandlerCanProduceAdditionalEventLateInSimStep() {
+		final RingBufferEventsManager events = new RingBufferEventsManager(8);
+		events.addHandler(new LinkEnterEventHandler() {
+			@Override
+			public void handleEvent(LinkEnterEvent event) {
+				try {
+					Thread.sleep(10);
+				} catch (InterruptedException e) {
+					e.printStackTrace();
+				}
+				events.processEvent(new PersonStuckEvent(event.getTime(), Id.createPersonId(0), Id.createLinkId(0), "car"));
+			}
+
+			@Override
+			public void reset(int iteration) {}
+		});
+		EventsCollector collector = new EventsCollector();
+		events.addHandler(collector);
+		events.initProcessing();
+		events.processEvent(new LinkEnterEvent(0.0, Id.createVehicleId(0), Id.createLinkId(0)));
+		events.processEvent(new LinkLeaveEvent(0.0, Id.createVehicleId(0), Id.createLinkId(0)));
+		events.afterSimStep(0.0);
+		events.processEvent(new LinkEnterEvent(1.0, Id.createVehicleId(0), Id.createLinkId(0)));
+		events.processEvent(new LinkLeaveEvent(1.0, Id.createVehicleId(0), Id.createLinkId(0)));
+		events.afterSimStep(1.0);
+		events.finishProcessing();
+
+		assertThat(collector.getEvents(),
+			contains(
+					new LinkEnterEvent(0.0, Id.createVehicleId(0), Id.createLinkId(0)),
+					new LinkLeaveEvent(0.0, Id.createVehicleId(0), Id.createLinkId(0)),
+					new PersonStuckEvent(0.0, Id.createPersonId(0), Id.createLinkId(0), "car"),
+					new LinkEnterEvent(1.0, Id.createVehicleId(0), Id.createLinkId(0)),
+					new LinkLeaveEvent(1.0, Id.createVehicleId(0), Id.createLinkId(0)),
+					new PersonStuckEvent(1.0, Id.createPersonId(0), Id.createLinkId(0), "car")));
+	}
+
+	/**
+	 * A handler creating an event for every event it handles must not fill up a small buffer, even if the
+	 * buffer is full most of the time.
+	 */
+	@Test(timeout = 20000)
+	public void testEventHandlerProducesEventForEveryEvent() {
+		final RingBufferEventsManager events = new RingBufferEventsManager(3, 16);
+		events.addHandler(new LinkEnterEventHandler() {
+			@Override
+			public void handleEvent(LinkEnterEvent event) {
+				events.processEvent(new LinkLeaveEvent(event.getTime(), event.getVehicleId(), event.getLinkId()));
+			}
+
+			@Override
+			public void reset(int iteration) {}
+		});
+		List<EventsCollector> collectors = new ArrayList<>();
+		for (int i = 0; i < 4; i++) {
+			EventsCollector collector = new EventsCollector();
+			collectors.add(collector);
+			events.addHandler(collector);
+		}
+
+		events.initProcessing();
+		for (int time = 0; time < 100; time++) {
+			for (int i = 0; i < 100; i++) {
+				events.processEvent(new LinkEnterEvent(time, Id.createVehicleId(i), Id.createLinkId(i)));
+			}
+			events.afterSimStep(time);
+			for (EventsCollector collector : collectors) {
+				Assert.assertEquals(200 * (time + 1), collector.getEvents().size());
+			}
+		}
+		events.finishProcessing();
+
+		for (EventsCollector collector : collectors) {
+			int leaveEvents = 0;
+			for (Event event : collector.getEvents()) {
+				if (event instanceof LinkLeaveEvent) leaveEvents++;
+			}
+			Assert.assertEquals(10000, leaveEvents);
+		}
+	}
+
+	@Test(timeout = 20000)
+	public void testExceptionInEventHandler() {
+		RingBufferEventsManager events = new RingBufferEventsManager(2, 16);
+		events.addHandler(new LinkEnterEventHandler() {
+			@Override
+			public void handleEvent(LinkEnterEvent event) {
+				throw new IllegalStateException("exception from within a handler");
+			}
+
+			@Override
+			public void reset(int iteration) {}
+		});
+		events.addHandler(new EventsCollector());
+
+		events.initProcessing();
+		for (int i = 0; i < 100; i++) {
+			events.processEvent(new LinkEnterEvent(i, Id.createVehicleId(i), Id.createLinkId(i)));
+			events.afterSimStep(i);
+		}
+		try {
+			events.finishProcessing();
+			Assert.fail("expected exception, but got none.");
+		} catch (RuntimeException e) {
+			Assert.assertNotNull(e.getCause());
+		}
+	}
+
+	@Test
+	public void testEventsAfterFinishProcessingAreHandledDirectly() {
+		RingBufferEventsManager events = new RingBufferEventsManager(2);
+		EventsCollector collector = new EventsCollector();
+		events.addHandler(collector);
+		events.initProcessing();
+		events.finishProcessing();
+
+		events.processEvent(new LinkEnterEvent(0.0, Id.createVehicleId(0), Id.createLinkId(0)));
+		Assert.assertEquals(1, collector.getEvents().size());
+	}
+
+}
@@ -0,0 +1,129 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * EventWriterBinaryTest.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2016 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.events.algorithms;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.events.ActivityEndEvent;
+import org.matsim.api.core.v01.events.Event;
+import org.matsim.api.core.v01.events.GenericEvent;
+import org.matsim.api.core.v01.events.LinkEnterEvent;
+import org.matsim.api.core.v01.events.LinkLeaveEvent;
+import org.matsim.api.core.v01.events.PersonMoneyEvent;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.core.api.experimental.events.EventsManager;
+import org.matsim.core.events.EventsReaderBinary;
+import org.matsim.core.events.EventsUtils;
+import org.matsim.core.events.MatsimEventsReader;
+import org.matsim.testcases.MatsimTestUtils;
+import org.matsim.testcases.utils.EventsCollector;
+import org.matsim.vehicles.Vehicle;
+
+public class EventWriterBinaryTest {
+
+	@Rule public MatsimTestUtils utils = new MatsimTestUtils();
+
+	@Test
+	public void testRoundTrip() {
+		List<Event> expected = new ArrayList<>();
+		for (int i = 0; i < 1000; i++) {
+			expected.add(new LinkLeaveEvent(3600.0 + i, Id.create("vehicle" + (i % 7), Vehicle.class), Id.create(i % 13, Link.class)));
+			expected.add(new LinkEnterEvent(3600.0 + i, Id.create("vehicle" + (i % 7), Vehicle.class), Id.create(i % 11, Link.class)));
+			// fractional times and unique values, as e.g. created by the JDEQSim or road pricing
+			expected.add(new PersonMoneyEvent(3600.25 + i, Id.create(i, Person.class), -0.01 * i));
+		}
+		expected.add(new ActivityEndEvent(7200.0, Id.create("1", Person.class), Id.create("1", Link.class), null, "höme"));
+		expected.add(new LinkLeaveEvent(-1.0, Id.create("vehicle>3", Vehicle.class), Id.create("link<2", Link.class)));
+		GenericEvent generic = new GenericEvent("custom", Double.MAX_VALUE);
+		generic.getAttributes().put("b", "1");
+		generic.getAttributes().put("a", "2");
+		expected.add(generic);
+
+		String filename = this.utils.getOutputDirectory() + "events.bin";
+		EventWriterBinary writer = new EventWriterBinary(filename, 100);
+		for (Event event : expected) {
+			writer.handleEvent(event);
+		}
+		writer.closeFile();
+		Assert.assertTrue(new File(filename).exists());
+
+		EventsManager events = EventsUtils.createEventsManager();
+		EventsCollector collector = new EventsCollector();
+		events.addHandler(collector);
+		new EventsReaderBinary(events, 3).readFile(filename);
+
+		Assert.assertEquals(expected.size(), collector.getEvents().size());
+		for (int i = 0; i < expected.size(); i++) {
+			Assert.assertEquals(expected.get(i).getAttributes(), collector.getEvents().get(i).getAttributes());
+		}
+	}
+
+	/**
+	 * Reading a binary events file must result in the same events as reading the XML file it was created from.
+	 */
+	@Test
+	public void testSameEventsAsXml() {
+		String xmlFile = "test/scenarios/equil/output_events.xml.gz";
+		EventsManager events = EventsUtils.createEventsManager();
+		EventsCollector fromXml = new EventsCollector();
+		events.addHandler(fromXml);
+		new MatsimEventsReader(events).readFile(xmlFile);
+
+		String filename = this.utils.getOutputDirectory() + "events.bin";
+		String gzippedXmlFile = this.utils.getOutputDirectory() + "events.xml.gz";
+		EventWriterBinary writer = new EventWriterBinary(filename);
+		EventWriterXML xmlWriter = new EventWriterXML(gzippedXmlFile);
+		for (Event event : fromXml.getEvents()) {
+			writer.handleEvent(event);
+			xmlWriter.handleEvent(event);
+		}
+		writer.closeFile();
+		xmlWriter.closeFile();
+		Assert.assertTrue(new File(filename).length() < new File(gzippedXmlFile).length());
+
+		events = EventsUtils.createEventsManager();
+		EventsCollector fromBinary = new EventsCollector();
+		events.addHandler(fromBinary);
+		new MatsimEventsReader(events).readFile(filename);
+
+		Assert.assertFalse(fromXml.getEvents().isEmpty());
+		Assert.assertEquals(fromXml.getEvents(), fromBinary.getEvents());
+	}
+
+	@Test
+	public void testEmptyFile() {
+		String filename = this.utils.getOutputDirectory() + "events.bin";
+		new EventWriterBinary(filename).closeFile();
+
+		EventsManager events = EventsUtils.createEventsManager();
+		EventsCollector collector = new EventsCollector();
+		events.addHandler(collector);
+		new EventsReaderBinary(events).readFile(filename);
+		Assert.assertTrue(collector.getEvents().isEmpty());
+	}
+}
@@ -0,0 +1,158 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * EventWriterXMLBenchmark.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2016 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.events.algorithms;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.log4j.Logger;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.events.ActivityEndEvent;
+import org.matsim.api.core.v01.events.ActivityStartEvent;
+import org.matsim.api.core.v01.events.Event;
+import org.matsim.api.core.v01.events.LinkEnterEvent;
+import org.matsim.api.core.v01.events.LinkLeaveEvent;
+import org.matsim.api.core.v01.events.PersonArrivalEvent;
+import org.matsim.api.core.v01.events.PersonDepartureEvent;
+import org.matsim.api.core.v01.events.PersonEntersVehicleEvent;
+import org.matsim.api.core.v01.events.PersonLeavesVehicleEvent;
+import org.matsim.api.core.v01.events.VehicleEntersTrafficEvent;
+import org.matsim.api.core.v01.events.VehicleLeavesTrafficEvent;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.vehicles.Vehicle;
+
+/**
+ * Measures the throughput of {@link EventWriterXML} and the memory it allocates per event, compared to writing
+ * the attribute maps of the events as done before. The events are those of car trips, written to a stream which
+ * discards them. Not a unit test; run the main method with the test classpath. The optional argument is the
+ * number of trips.
+ */
+public class EventWriterXMLBenchmark {
+
+	private static final Logger log = Logger.getLogger(EventWriterXMLBenchmark.class);
+
+	public static void main(String[] args) throws IOException {
+		int numberOfTrips = args.length > 0 ? Integer.parseInt(args[0]) : 50000;
+		List<Event> events = createEvents(numberOfTrips);
+		for (int round = 0; round < 3; round++) {
+			// the first rounds are the warm-up
+			CountingOutputStream stream = new CountingOutputStream();
+			long allocated = allocatedBytes();
+			long start = System.nanoTime();
+			EventWriterXML writer = new EventWriterXML(new PrintStream(stream));
+			for (Event event : events) {
+				writer.handleEvent(event);
+			}
+			writer.closeFile();
+			print("EventWriterXML", events.size(), stream.count, System.nanoTime() - start, allocatedBytes() - allocated);
+
+			stream = new CountingOutputStream();
+			allocated = allocatedBytes();
+			start = System.nanoTime();
+			writeAttributeMaps(events, stream);
+			print("attribute maps", events.size(), stream.count, System.nanoTime() - start, allocatedBytes() - allocated);
+		}
+	}
+
+	private static List<Event> createEvents(final int numberOfTrips) {
+		List<Event> events = new ArrayList<>();
+		for (int i = 0; i < numberOfTrips; i++) {
+			Id<Person> personId = Id.create(i, Person.class);
+			Id<Vehicle> vehicleId = Id.create(i, Vehicle.class);
+			double time = 6 * 3600 + i % 7200;
+			Id<Link> linkId = Id.create(i % 10000, Link.class);
+			events.add(new ActivityEndEvent(time, personId, linkId, null, "home"));
+			events.add(new PersonDepartureEvent(time, personId, linkId, "car"));
+			events.add(new PersonEntersVehicleEvent(time, personId, vehicleId));
+			events.add(new VehicleEntersTrafficEvent(time, personId, linkId, vehicleId, "car", 1.0));
+			for (int j = 1; j <= 20; j++) {
+				events.add(new LinkLeaveEvent(time, vehicleId, linkId));
+				linkId = Id.create((i + j * 97) % 10000, Link.class);
+				events.add(new LinkEnterEvent(time, vehicleId, linkId));
+				time += 13;
+			}
+			events.add(new VehicleLeavesTrafficEvent(time, personId, linkId, vehicleId, "car", 1.0));
+			events.add(new PersonLeavesVehicleEvent(time, personId, vehicleId));
+			events.add(new PersonArrivalEvent(time, personId, linkId, "car"));
+			events.add(new ActivityStartEvent(time, personId, linkId, null, "work"));
+		}
+		return events;
+	}
+
+	/**
+	 * Writes the events like {@link EventWriterXML} did before it wrote the frequent events directly.
+	 */
+	private static void writeAttributeMaps(final List<Event> events, final OutputStream stream) throws IOException {
+		BufferedWriter out = new BufferedWriter(new OutputStreamWriter(stream));
+		out.write("<events>\n");
+		for (Event event : events) {
+			out.append("\t<event ");
+			for (Map.Entry<String, String> entry : event.getAttributes().entrySet()) {
+				out.append(entry.getKey());
+				out.append("=\"");
+				out.append(entry.getValue());
+				out.append("\" ");
+			}
+			out.append(" />\n");
+		}
+		out.write("</events>");
+		out.close();
+	}
+
+	private static void print(final String name, final int events, final long bytes, final long nanos, final long allocated) {
+		log.info(name + ": " + events + " events, " + bytes / 1024 / 1024 + " MB in " + nanos / 1000000 + " ms, "
+				+ (long) (bytes / (nanos / 1e9) / 1024 / 1024) + " MB/s, " + allocated / events + " bytes allocated per event");
+	}
+
+	/**
+	 * @return the bytes allocated by the current thread so far, or 0 if the JVM does not tell
+	 */
+	private static long allocatedBytes() {
+		java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+		if (bean instanceof com.sun.management.ThreadMXBean) {
+			return ((com.sun.management.ThreadMXBean) bean).getThreadAllocatedBytes(Thread.currentThread().getId());
+		}
+		return 0;
+	}
+
+	private static final class CountingOutputStream extends OutputStream {
+		private long count = 0;
+
+		@Override
+		public void write(final int b) {
+			this.count++;
+		}
+
+		@Override
+		public void write(final byte[] b, final int off, final int len) {
+			this.count += len;
+		}
+	}
+
+}
@@ -20,17 +20,31 @@
 package org.matsim.core.events.algorithms;
 
 import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
 
 import org.junit.Assert;
 import org.junit.Rule;
 import org.junit.Test;
 import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.events.ActivityEndEvent;
+import org.matsim.api.core.v01.events.ActivityStartEvent;
+import org.matsim.api.core.v01.events.Event;
 import org.matsim.api.core.v01.events.GenericEvent;
+import org.matsim.api.core.v01.events.LinkEnterEvent;
 import org.matsim.api.core.v01.events.LinkLeaveEvent;
+import org.matsim.api.core.v01.events.PersonArrivalEvent;
+import org.matsim.api.core.v01.events.PersonDepartureEvent;
+import org.matsim.api.core.v01.events.PersonEntersVehicleEvent;
+import org.matsim.api.core.v01.events.PersonLeavesVehicleEvent;
+import org.matsim.api.core.v01.events.VehicleEntersTrafficEvent;
+import org.matsim.api.core.v01.events.VehicleLeavesTrafficEvent;
 import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.population.Person;
 import org.matsim.core.api.experimental.events.EventsManager;
 import org.matsim.core.events.EventsUtils;
 import org.matsim.core.events.MatsimEventsReader;
+import org.matsim.facilities.ActivityFacility;
 import org.matsim.testcases.MatsimTestUtils;
 import org.matsim.testcases.utils.EventsCollector;
 import org.matsim.vehicles.Vehicle;
@@ -92,4 +106,42 @@ public class EventWriterXMLTest {
 		
 		Assert.assertEquals("there must be 1 event.", 1, collector.getEvents().size());
 	}
+
+	/**
+	 * The most frequent events are written without their attribute maps, make sure they are read back with
+	 * the same attributes.
+	 */
+	@Test
+	public void testCoreEvents() {
+		String filename = this.utils.getOutputDirectory() + "testEvents.xml";
+		Id<Person> personId = Id.create("1", Person.class);
+		Id<Vehicle> vehicleId = Id.create("v1", Vehicle.class);
+		Id<Link> linkId = Id.create("l&1", Link.class);
+		List<Event> expected = new ArrayList<>();
+		expected.add(new ActivityEndEvent(21600.0, personId, linkId, Id.create("f1", ActivityFacility.class), "home"));
+		expected.add(new PersonDepartureEvent(21600.0, personId, linkId, "car"));
+		expected.add(new PersonEntersVehicleEvent(21600.5, personId, vehicleId));
+		expected.add(new VehicleEntersTrafficEvent(21601.25, personId, linkId, vehicleId, "car", 0.123456789));
+		expected.add(new LinkLeaveEvent(21610.0, vehicleId, linkId));
+		expected.add(new LinkEnterEvent(21610.0, vehicleId, Id.create("l2", Link.class)));
+		expected.add(new VehicleLeavesTrafficEvent(1.0e7, personId, linkId, vehicleId, "car", 1.0));
+		expected.add(new PersonLeavesVehicleEvent(1.0e7, personId, vehicleId));
+		expected.add(new PersonArrivalEvent(1.0e7, personId, linkId, null));
+		expected.add(new ActivityStartEvent(1.0e7, personId, linkId, null, "work"));
+		EventWriterXML writer = new EventWriterXML(filename);
+		for (Event event : expected) {
+			writer.handleEvent(event);
+		}
+		writer.closeFile();
+
+		EventsManager events = EventsUtils.createEventsManager();
+		EventsCollector collector = new EventsCollector();
+		events.addHandler(collector);
+		new MatsimEventsReader(events).readFile(filename);
+
+		Assert.assertEquals(expected.size(), collector.getEvents().size());
+		for (int i = 0; i < expected.size(); i++) {
+			Assert.assertEquals(expected.get(i).getAttributes(), collector.getEvents().get(i).getAttributes());
+		}
+	}
 }
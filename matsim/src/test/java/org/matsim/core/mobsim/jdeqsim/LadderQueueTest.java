@@ -0,0 +1,136 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * LadderQueueTest.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2016 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.mobsim.jdeqsim;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.matsim.core.mobsim.jdeqsim.util.DummyMessage;
+
+public class LadderQueueTest {
+
+	@Test
+	public void testEmpty() {
+		LadderQueue queue = new LadderQueue();
+		Assert.assertNull(queue.peek());
+		Assert.assertNull(queue.poll());
+		Assert.assertEquals(0, queue.size());
+	}
+
+	@Test
+	public void testSameTime() {
+		LadderQueue queue = new LadderQueue();
+		List<Message> messages = new ArrayList<>();
+		for (int i = 0; i < 1000; i++) {
+			Message m = createMessage(3600.0, i);
+			messages.add(m);
+			queue.add(m);
+		}
+		for (Message m : messages) {
+			Assert.assertSame(m, queue.poll());
+		}
+		Assert.assertNull(queue.poll());
+	}
+
+	@Test
+	public void testInfiniteTimes() {
+		LadderQueue queue = new LadderQueue();
+		Message first = createMessage(Double.NEGATIVE_INFINITY, 0);
+		Message last = createMessage(Double.POSITIVE_INFINITY, 1);
+		queue.add(last);
+		for (int i = 0; i < 100; i++) {
+			queue.add(createMessage(i, i + 2));
+		}
+		queue.add(first);
+		Assert.assertSame(first, queue.poll());
+		for (int i = 0; i < 100; i++) {
+			Assert.assertEquals(i, queue.poll().getMessageArrivalTime(), 0.0);
+		}
+		Assert.assertSame(last, queue.poll());
+		Assert.assertEquals(0, queue.size());
+	}
+
+	@Test
+	public void testAddAfterFinerRungWasTaken() {
+		LadderQueue queue = new LadderQueue();
+		// the first bucket gets too large and is spread over a finer rung which ends long before that bucket
+		for (int i = 0; i < 60; i++) {
+			queue.add(createMessage(i / 59.0, i));
+		}
+		queue.add(createMessage(1000.0, 60));
+		for (int i = 0; i < 60; i++) {
+			Assert.assertEquals(i / 59.0, queue.poll().getMessageArrivalTime(), 0.0);
+		}
+		// all buckets of the finer rung were taken, but the message is still earlier than the next coarse bucket
+		queue.add(createMessage(5.0, 61));
+		Assert.assertEquals(5.0, queue.poll().getMessageArrivalTime(), 0.0);
+		Assert.assertEquals(1000.0, queue.poll().getMessageArrivalTime(), 0.0);
+		Assert.assertNull(queue.poll());
+	}
+
+	/**
+	 * Simulates the hold model of a discrete event simulation: every message taken out of the queue schedules one
+	 * or two new messages later in time, sometimes at the same time with another priority.
+	 */
+	@Test
+	public void testSameOrderAsPriorityQueue() {
+		Random random = new Random(4711);
+		LadderQueue queue = new LadderQueue();
+		PriorityQueue<Message> expected = new PriorityQueue<>();
+		long sequenceNumber = 0;
+		for (int i = 0; i < 20000; i++) {
+			// many departures in the morning peak, with whole seconds as in the plans
+			Message m = createMessage(6 * 3600 + random.nextInt(3 * 3600), sequenceNumber++);
+			queue.add(m);
+			expected.add(m);
+		}
+		int polled = 0;
+		while (!expected.isEmpty()) {
+			Message m = expected.poll();
+			Assert.assertSame(m, queue.peek());
+			Assert.assertSame(m, queue.poll());
+			Assert.assertEquals(expected.size(), queue.size());
+			if (polled++ < 200000) {
+				int n = random.nextInt(3);
+				for (int j = 0; j < n; j++) {
+					double delay = random.nextInt(4) == 0 ? 0.0 : random.nextDouble() * (random.nextBoolean() ? 600 : 2);
+					Message next = createMessage(m.getMessageArrivalTime() + delay, sequenceNumber++);
+					next.setPriority(random.nextInt(3));
+					queue.add(next);
+					expected.add(next);
+				}
+			}
+		}
+		Assert.assertNull(queue.poll());
+	}
+
+	private static Message createMessage(final double time, final long sequenceNumber) {
+		Message m = new DummyMessage();
+		m.setMessageArrivalTime(time);
+		m.sequenceNumber = sequenceNumber;
+		return m;
+	}
+
+}
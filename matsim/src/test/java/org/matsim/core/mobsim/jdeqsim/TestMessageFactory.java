@@ -1,5 +1,10 @@
 package org.matsim.core.mobsim.jdeqsim;
 
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReference;
+
 import org.matsim.api.core.v01.Id;
 import org.matsim.api.core.v01.population.Person;
 import org.matsim.core.config.groups.PlansConfigGroup;
@@ -118,5 +123,42 @@ public class TestMessageFactory extends MatsimTestCase{
 		assertEquals(true,MessageFactory.getDeadlockPreventionMessage(scheduler, vehicle).vehicle==vehicle);
 	}
 	
+	// the pools of simulations running on other threads are not shared
+	public void testMessageFactoryPerThread() throws InterruptedException {
+		MessageFactory.GC_ALL_MESSAGES();
+		JDEQSimConfigGroup.setGC_MESSAGES(false);
+		final Scheduler scheduler=new Scheduler(new MessageQueue());
+		final AtomicReference<Throwable> failure = new AtomicReference<>();
+		Thread[] threads = new Thread[4];
+		for (int t = 0; t < threads.length; t++) {
+			threads[t] = new Thread(new Runnable() {
+				@Override
+				public void run() {
+					try {
+						Set<EnterRoadMessage> inUse = Collections.newSetFromMap(new IdentityHashMap<EnterRoadMessage, Boolean>());
+						for (int i = 0; i < 100000; i++) {
+							EnterRoadMessage message = MessageFactory.getEnterRoadMessage(scheduler, null);
+							assertTrue("message handed out twice", inUse.add(message));
+							if (i % 3 != 0) {
+								inUse.remove(message);
+								MessageFactory.disposeEnterRoadMessage(message);
+							}
+						}
+					} catch (Throwable e) {
+						failure.set(e);
+					}
+				}
+			});
+			threads[t].start();
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+		assertNull(failure.get());
+
+		MessageFactory.disposeEnterRoadMessage(new EnterRoadMessage(null,null));
+		assertEquals(1, MessageFactory.getEnterRoadMessageQueue().size());
+	}
+	
 	
 }
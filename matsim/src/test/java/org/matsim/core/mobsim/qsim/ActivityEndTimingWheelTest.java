@@ -0,0 +1,255 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * ActivityEndTimingWheelTest.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2016 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+package org.matsim.core.mobsim.qsim;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.core.mobsim.framework.MobsimAgent;
+import org.matsim.core.mobsim.qsim.ActivityEndTimingWheel.AgentEntry;
+import org.matsim.core.utils.misc.Time;
+import org.matsim.facilities.Facility;
+
+public class ActivityEndTimingWheelTest {
+
+	@Test
+	public void testPollOrder() {
+		ActivityEndTimingWheel wheel = new ActivityEndTimingWheel();
+		MobsimAgent a = new DummyAgent("a");
+		MobsimAgent b = new DummyAgent("b");
+		MobsimAgent c = new DummyAgent("c");
+		MobsimAgent d = new DummyAgent("d");
+		wheel.add(a, 7 * 3600);
+		wheel.add(b, 7 * 3600);
+		wheel.add(c, 6 * 3600 + 0.5);
+		wheel.add(d, 6 * 3600);
+		Assert.assertEquals(4, wheel.size());
+
+		Assert.assertNull(wheel.poll(6 * 3600 - 1));
+		Assert.assertSame(d, wheel.poll(6 * 3600));
+		Assert.assertNull(wheel.poll(6 * 3600));
+		Assert.assertSame(c, wheel.poll(6 * 3600 + 1));
+		Assert.assertNull(wheel.poll(7 * 3600 - 1));
+		// equal times: the larger id first
+		Assert.assertSame(b, wheel.poll(7 * 3600));
+		Assert.assertSame(a, wheel.poll(7 * 3600));
+		Assert.assertNull(wheel.poll(8 * 3600));
+		Assert.assertEquals(0, wheel.size());
+	}
+
+	@Test
+	public void testUndefinedTime() {
+		ActivityEndTimingWheel wheel = new ActivityEndTimingWheel();
+		MobsimAgent a = new DummyAgent("a");
+		MobsimAgent b = new DummyAgent("b");
+		wheel.add(a, 0.0);
+		wheel.add(b, Time.UNDEFINED_TIME);
+		Assert.assertSame(b, wheel.poll(0.0));
+		Assert.assertSame(a, wheel.poll(0.0));
+	}
+
+	@Test
+	public void testReschedule() {
+		ActivityEndTimingWheel wheel = new ActivityEndTimingWheel();
+		MobsimAgent a = new DummyAgent("a");
+		MobsimAgent b = new DummyAgent("b");
+		wheel.add(a, 100.0);
+		wheel.add(b, 200.0);
+		Assert.assertTrue(wheel.remove(a));
+		Assert.assertFalse(wheel.remove(a));
+		wheel.add(a, 300.0);
+		wheel.add(b, 250.0); // replaces the activity end at 200
+		Assert.assertEquals(2, wheel.size());
+		Assert.assertNull(wheel.poll(249.0));
+		Assert.assertSame(b, wheel.poll(250.0));
+		Assert.assertSame(a, wheel.poll(1000.0));
+	}
+
+	@Test
+	public void testBeyondWheel() {
+		ActivityEndTimingWheel wheel = new ActivityEndTimingWheel();
+		MobsimAgent a = new DummyAgent("a");
+		MobsimAgent b = new DummyAgent("b");
+		MobsimAgent c = new DummyAgent("c");
+		double far = 3.0 * ActivityEndTimingWheel.WHEEL_SIZE + 0.25;
+		wheel.add(a, far);
+		wheel.add(b, ActivityEndTimingWheel.WHEEL_SIZE + 10.0);
+		wheel.add(c, far + 1.0);
+		Assert.assertTrue(wheel.remove(c));
+		for (double time = 0.0; time < ActivityEndTimingWheel.WHEEL_SIZE + 10.0; time += 1000.0) {
+			Assert.assertNull(wheel.poll(time));
+		}
+		Assert.assertSame(b, wheel.poll(ActivityEndTimingWheel.WHEEL_SIZE + 10.0));
+		Assert.assertNull(wheel.poll(far - 0.5));
+		Assert.assertSame(a, wheel.poll(far));
+		Assert.assertEquals(0, wheel.size());
+	}
+
+	@Test
+	public void testRemoveAll() {
+		ActivityEndTimingWheel wheel = new ActivityEndTimingWheel();
+		wheel.add(new DummyAgent("a"), 5.0 * ActivityEndTimingWheel.WHEEL_SIZE);
+		wheel.add(new DummyAgent("b"), 7200.0);
+		wheel.add(new DummyAgent("c"), 3600.0);
+		wheel.add(new DummyAgent("d"), 3600.0);
+		Assert.assertNull(wheel.poll(3599.0));
+
+		List<AgentEntry> entries = wheel.removeAll();
+		Assert.assertEquals(4, entries.size());
+		Assert.assertEquals("d", entries.get(0).agent.getId().toString());
+		Assert.assertEquals("c", entries.get(1).agent.getId().toString());
+		Assert.assertEquals("b", entries.get(2).agent.getId().toString());
+		Assert.assertEquals("a", entries.get(3).agent.getId().toString());
+		Assert.assertEquals(0, wheel.size());
+		Assert.assertNull(wheel.poll(Double.MAX_VALUE));
+	}
+
+	/**
+	 * Performs random operations on the timing wheel and on a priority queue as used before by the
+	 * {@link ActivityEngine}, which must return the same agents.
+	 */
+	@Test
+	public void testSameOrderAsPriorityQueue() {
+		Random random = new Random(4711);
+		ActivityEndTimingWheel wheel = new ActivityEndTimingWheel();
+		PriorityQueue<AgentEntry> expected = new PriorityQueue<>(500, ActivityEndTimingWheel.COMPARATOR);
+		List<MobsimAgent> agents = new ArrayList<>();
+		for (int i = 0; i < 500; i++) {
+			agents.add(new DummyAgent(Integer.toString(i)));
+		}
+
+		double time = 0.0;
+		while (time < 2.0 * ActivityEndTimingWheel.WHEEL_SIZE) {
+			for (int i = 0; i < 10; i++) {
+				MobsimAgent agent = agents.get(random.nextInt(agents.size()));
+				removeFrom(expected, agent);
+				wheel.remove(agent);
+				if (random.nextInt(4) > 0) {
+					double endTime = time + (random.nextInt(10) == 0 ? 1.5 * ActivityEndTimingWheel.WHEEL_SIZE : 3600.0) * random.nextDouble();
+					if (random.nextBoolean()) {
+						// many equal times
+						endTime = Math.floor(endTime / 60.0) * 60.0;
+					}
+					expected.add(new AgentEntry(agent, endTime));
+					wheel.add(agent, endTime);
+				}
+			}
+			time += random.nextInt(10) == 0 ? 1000.0 : 1.0;
+			while (!expected.isEmpty() && expected.peek().activityEndTime <= time) {
+				Assert.assertSame(expected.poll().agent, wheel.poll(time));
+			}
+			Assert.assertNull(wheel.poll(time));
+			Assert.assertEquals(expected.size(), wheel.size());
+		}
+	}
+
+	private static void removeFrom(PriorityQueue<AgentEntry> queue, MobsimAgent agent) {
+		Iterator<AgentEntry> iterator = queue.iterator();
+		while (iterator.hasNext()) {
+			if (iterator.next().agent == agent) {
+				iterator.remove();
+				return;
+			}
+		}
+	}
+
+	private static class DummyAgent implements MobsimAgent {
+
+		private final Id<Person> id;
+
+		DummyAgent(String id) {
+			this.id = Id.create(id, Person.class);
+		}
+
+		@Override
+		public Id<Person> getId() {
+			return this.id;
+		}
+
+		@Override
+		public Id<Link> getCurrentLinkId() {
+			return null;
+		}
+
+		@Override
+		public Id<Link> getDestinationLinkId() {
+			return null;
+		}
+
+		@Override
+		public String getMode() {
+			return null;
+		}
+
+		@Override
+		public State getState() {
+			return State.ACTIVITY;
+		}
+
+		@Override
+		public double getActivityEndTime() {
+			return 0;
+		}
+
+		@Override
+		public void endActivityAndComputeNextState(double now) {
+		}
+
+		@Override
+		public void endLegAndComputeNextState(double now) {
+		}
+
+		@Override
+		public void setStateToAbort(double now) {
+		}
+
+		@Override
+		public Double getExpectedTravelTime() {
+			return null;
+		}
+
+		@Override
+		public Double getExpectedTravelDistance() {
+			return null;
+		}
+
+		@Override
+		public void notifyArrivalOnLinkByNonNetworkMode(Id<Link> linkId) {
+		}
+
+		@Override
+		public Facility<? extends Facility<?>> getCurrentFacility() {
+			return null;
+		}
+
+		@Override
+		public Facility<? extends Facility<?>> getDestinationFacility() {
+			return null;
+		}
+	}
+}
@@ -0,0 +1,103 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * QNetsimEngineEventDrivenLinksTest.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2016 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.mobsim.qsim.qnetsimengine;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.matsim.api.core.v01.Scenario;
+import org.matsim.api.core.v01.events.Event;
+import org.matsim.core.api.experimental.events.EventsManager;
+import org.matsim.core.config.Config;
+import org.matsim.core.events.EventsUtils;
+import org.matsim.core.events.handler.BasicEventHandler;
+import org.matsim.core.gbl.MatsimRandom;
+import org.matsim.core.mobsim.qsim.QSimUtils;
+import org.matsim.core.scenario.ScenarioUtils;
+import org.matsim.testcases.MatsimTestUtils;
+
+public class QNetsimEngineEventDrivenLinksTest {
+
+	@Rule
+	public MatsimTestUtils utils = new MatsimTestUtils();
+
+	/**
+	 * Skipping the time steps of links on which nothing can move must not change anything, not even the order of
+	 * the events within a time step.  2000 agents make sure that there is congestion on the equil network.
+	 */
+	@Test
+	public void testSameEventsAsTimeStepped() {
+		for (boolean fastCapacityUpdate : new boolean[] { false, true }) {
+			List<String> expected = runEquil(false, fastCapacityUpdate);
+			List<String> eventDriven = runEquil(true, fastCapacityUpdate);
+
+			Assert.assertFalse(expected.isEmpty());
+			Assert.assertEquals("fastCapacityUpdate=" + fastCapacityUpdate, expected, eventDriven);
+		}
+	}
+
+	@Test
+	public void testSameEventsAsTimeSteppedWithTransit() {
+		List<String> expected = runPtTutorial(false);
+		List<String> eventDriven = runPtTutorial(true);
+
+		Assert.assertFalse(expected.isEmpty());
+		Assert.assertEquals(expected, eventDriven);
+	}
+
+	private List<String> runEquil(boolean usingEventDrivenLinks, boolean usingFastCapacityUpdate) {
+		Config config = utils.loadConfig("test/scenarios/equil/config.xml");
+		config.plans().setInputFile("plans2000.xml.gz");
+		config.qsim().setUsingFastCapacityUpdate(usingFastCapacityUpdate);
+		return run(config, usingEventDrivenLinks);
+	}
+
+	private List<String> runPtTutorial(boolean usingEventDrivenLinks) {
+		Config config = utils.loadConfig("test/scenarios/pt-tutorial/config.xml");
+		return run(config, usingEventDrivenLinks);
+	}
+
+	private static List<String> run(Config config, boolean usingEventDrivenLinks) {
+		config.qsim().setNumberOfThreads(1);
+		config.qsim().setUsingEventDrivenLinks(usingEventDrivenLinks);
+		MatsimRandom.reset(config.global().getRandomSeed());
+		Scenario scenario = ScenarioUtils.loadScenario(config);
+
+		EventsManager events = EventsUtils.createEventsManager();
+		final List<String> eventStrings = new ArrayList<>();
+		events.addHandler(new BasicEventHandler() {
+			@Override
+			public void handleEvent(Event event) {
+				eventStrings.add(event.toString());
+			}
+
+			@Override
+			public void reset(int iteration) {
+			}
+		});
+
+		QSimUtils.createDefaultQSim(scenario, events).run();
+		return eventStrings;
+	}
+}
@@ -0,0 +1,117 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * QNetsimEnginePartitionedRunnersTest.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2016 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.mobsim.qsim.qnetsimengine;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.matsim.api.core.v01.Coord;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.Scenario;
+import org.matsim.api.core.v01.events.Event;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.api.core.v01.network.Node;
+import org.matsim.core.api.experimental.events.EventsManager;
+import org.matsim.core.config.Config;
+import org.matsim.core.config.groups.QSimConfigGroup.RunnerAssignment;
+import org.matsim.core.events.EventsUtils;
+import org.matsim.core.events.handler.BasicEventHandler;
+import org.matsim.core.gbl.MatsimRandom;
+import org.matsim.core.mobsim.qsim.QSim;
+import org.matsim.core.mobsim.qsim.QSimUtils;
+import org.matsim.core.scenario.ScenarioUtils;
+import org.matsim.testcases.MatsimTestUtils;
+
+public class QNetsimEnginePartitionedRunnersTest {
+
+	@Rule
+	public MatsimTestUtils utils = new MatsimTestUtils();
+
+	/**
+	 * Which runner moves a node and its out-links must not change what happens to the vehicles, so every
+	 * partitioning of the network has to produce the same events as the round robin assignment.  Only the
+	 * order of the events within a time step may differ, since this depends on the threads anyway.
+	 */
+	@Test
+	public void testSameEventsForAllPartitionings() {
+		List<String> expected = runEquil(RunnerAssignment.roundRobin, 4);
+		Assert.assertFalse(expected.isEmpty());
+		for (int runners = 2; runners <= 4; runners++) {
+			Assert.assertEquals("different events with " + runners + " partitions", expected, runEquil(RunnerAssignment.partitioned, runners));
+		}
+	}
+
+	/**
+	 * Nodes of the mobsim network which are not in the partitioned network, here one removed after creating the
+	 * qsim, fall back to the round robin assignment.
+	 */
+	@Test
+	public void testNodesUnknownToThePartitioner() {
+		List<String> expected = runEquil(RunnerAssignment.roundRobin, 3);
+		Assert.assertEquals(expected, runEquil(RunnerAssignment.partitioned, 3, true));
+	}
+
+	private List<String> runEquil(RunnerAssignment runnerAssignment, int numberOfThreads) {
+		return runEquil(runnerAssignment, numberOfThreads, false);
+	}
+
+	private List<String> runEquil(RunnerAssignment runnerAssignment, int numberOfThreads, boolean withUnknownNode) {
+		Config config = utils.loadConfig("test/scenarios/equil/config.xml");
+		config.qsim().setNumberOfThreads(numberOfThreads);
+		config.qsim().setUsingThreadpool(false);
+		config.qsim().setRunnerAssignment(runnerAssignment);
+		MatsimRandom.reset(config.global().getRandomSeed());
+		Scenario scenario = ScenarioUtils.loadScenario(config);
+
+		EventsManager events = EventsUtils.createEventsManager();
+		final List<String> eventStrings = new ArrayList<>();
+		events.addHandler(new BasicEventHandler() {
+			@Override
+			public void handleEvent(Event event) {
+				// time first, so sorting keeps the time steps apart
+				eventStrings.add(String.format("%09.1f", event.getTime()) + event.toString());
+			}
+
+			@Override
+			public void reset(int iteration) {
+			}
+		});
+
+		Node unknownNode = null;
+		if (withUnknownNode) {
+			Network network = scenario.getNetwork();
+			unknownNode = network.getFactory().createNode(Id.create("unknown", Node.class), new Coord(0, 0));
+			network.addNode(unknownNode);
+		}
+		QSim qsim = QSimUtils.createDefaultQSim(scenario, events);
+		if (unknownNode != null) {
+			scenario.getNetwork().removeNode(unknownNode.getId());
+		}
+		qsim.run();
+
+		Collections.sort(eventStrings);
+		return eventStrings;
+	}
+}
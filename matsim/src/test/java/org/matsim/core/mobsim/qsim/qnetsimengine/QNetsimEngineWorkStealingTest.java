@@ -0,0 +1,124 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * QNetsimEngineWorkStealingTest.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2016 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.mobsim.qsim.qnetsimengine;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.matsim.api.core.v01.Scenario;
+import org.matsim.api.core.v01.events.Event;
+import org.matsim.api.core.v01.events.LinkLeaveEvent;
+import org.matsim.api.core.v01.events.handler.LinkLeaveEventHandler;
+import org.matsim.core.api.experimental.events.EventsManager;
+import org.matsim.core.config.Config;
+import org.matsim.core.events.EventsUtils;
+import org.matsim.core.events.handler.BasicEventHandler;
+import org.matsim.core.gbl.MatsimRandom;
+import org.matsim.core.mobsim.qsim.QSimUtils;
+import org.matsim.core.scenario.ScenarioUtils;
+import org.matsim.testcases.MatsimTestUtils;
+
+public class QNetsimEngineWorkStealingTest {
+
+	@Rule
+	public MatsimTestUtils utils = new MatsimTestUtils();
+
+	/**
+	 * Moving a node or link on another thread must not change what happens to it.  Only the order of
+	 * the events within a time step may differ between the runs, since this depends on the threads anyway.
+	 */
+	@Test
+	public void testSameEventsAsWithoutWorkStealing() {
+		List<String> expected = runEquil(false, 64);
+		List<String> withLargeChunks = runEquil(true, 64);
+		List<String> withSingleElementChunks = runEquil(true, 1);
+
+		Assert.assertFalse(expected.isEmpty());
+		Assert.assertEquals(expected, withLargeChunks);
+		Assert.assertEquals(expected, withSingleElementChunks);
+	}
+
+	@Test(timeout = 10000)
+	public void testExceptionInRunnerIsPropagated() {
+		Config config = utils.loadConfig("test/scenarios/equil/config.xml");
+		config.qsim().setNumberOfThreads(2);
+		config.qsim().setUsingWorkStealing(true);
+		Scenario scenario = ScenarioUtils.loadScenario(config);
+
+		EventsManager events = EventsUtils.createEventsManager();
+		events.addHandler(new LinkLeaveEventHandler() {
+			@Override
+			public void handleEvent(LinkLeaveEvent event) {
+				throw new IllegalStateException("exception from within a runner");
+			}
+
+			@Override
+			public void reset(int iteration) {
+			}
+		});
+
+		try {
+			QSimUtils.createDefaultQSim(scenario, events).run();
+			Assert.fail("expected exception was not thrown.");
+		} catch (RuntimeException e) {
+			// the events manager wraps the exception of the handler
+			Throwable cause = e;
+			while (cause.getCause() != null) {
+				cause = cause.getCause();
+			}
+			Assert.assertTrue(cause instanceof IllegalStateException);
+			Assert.assertEquals("exception from within a runner", cause.getMessage());
+		}
+	}
+
+	private List<String> runEquil(boolean usingWorkStealing, int chunkSize) {
+		Config config = utils.loadConfig("test/scenarios/equil/config.xml");
+		config.qsim().setNumberOfThreads(4);
+		config.qsim().setUsingThreadpool(false);
+		config.qsim().setUsingWorkStealing(usingWorkStealing);
+		config.qsim().setWorkStealingChunkSize(chunkSize);
+		MatsimRandom.reset(config.global().getRandomSeed());
+		Scenario scenario = ScenarioUtils.loadScenario(config);
+
+		EventsManager events = EventsUtils.createEventsManager();
+		final List<String> eventStrings = new ArrayList<>();
+		events.addHandler(new BasicEventHandler() {
+			@Override
+			public void handleEvent(Event event) {
+				// time first, so sorting keeps the time steps apart
+				eventStrings.add(String.format("%09.1f", event.getTime()) + event.toString());
+			}
+
+			@Override
+			public void reset(int iteration) {
+			}
+		});
+
+		QSimUtils.createDefaultQSim(scenario, events).run();
+
+		Collections.sort(eventStrings);
+		return eventStrings;
+	}
+}
@@ -230,4 +230,23 @@ public class NetworkImplTest extends AbstractNetworkTest {
 		Assert.assertEquals(node2, n);
 	}
 
+	@Test
+	public void testGetNearestLinkExactly_addAndRemoveLinks() {
+		Network network = new NetworkImpl();
+		Node node1 = NetworkUtils.createAndAddNode(network, Id.create(1, Node.class), new Coord((double) 0, (double) 0));
+		Node node2 = NetworkUtils.createAndAddNode(network, Id.create(2, Node.class), new Coord((double) 1000, (double) 0));
+		Node node3 = NetworkUtils.createAndAddNode(network, Id.create(3, Node.class), new Coord((double) 1000, (double) 1000));
+		Link link1 = NetworkUtils.createAndAddLink(network, Id.create(1, Link.class), node1, node2, 1000, 10.0, 2000.0, 1.0);
+		Link link1r = NetworkUtils.createAndAddLink(network, Id.create("1r", Link.class), node2, node1, 1000, 10.0, 2000.0, 1.0);
+
+		Assert.assertEquals(link1, NetworkUtils.getNearestLinkExactly(network, new Coord((double) 500, (double) 10)));
+		Assert.assertEquals(link1, NetworkUtils.getNearestLinkExactly(network, new Coord((double) 990, (double) 500)));
+
+		Link link2 = NetworkUtils.createAndAddLink(network, Id.create(2, Link.class), node2, node3, 1000, 10.0, 2000.0, 1.0);
+		Assert.assertEquals(link2, NetworkUtils.getNearestLinkExactly(network, new Coord((double) 990, (double) 500)));
+
+		network.removeLink(link1.getId());
+		Assert.assertEquals(link1r, NetworkUtils.getNearestLinkExactly(network, new Coord((double) 500, (double) 10)));
+	}
+
 }
@@ -0,0 +1,135 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * NetworkPartitionerTest.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2016 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.network.algorithms;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.matsim.api.core.v01.Coord;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.api.core.v01.network.NetworkFactory;
+import org.matsim.api.core.v01.network.Node;
+import org.matsim.core.network.NetworkUtils;
+
+public class NetworkPartitionerTest {
+
+	private static final int GRID_SIZE = 20;
+
+	@Test
+	public void testSinglePartition() {
+		Network network = createGrid();
+		NetworkPartitioner partitioner = new NetworkPartitioner(1);
+		partitioner.run(network);
+
+		for (Node node : network.getNodes().values()) {
+			Assert.assertEquals(0, partitioner.getPartition(node));
+		}
+		Assert.assertEquals(0, partitioner.getNumberOfCutLinks());
+	}
+
+	@Test
+	public void testFourPartitions() {
+		Network network = createGrid();
+		NetworkPartitioner partitioner = new NetworkPartitioner(4);
+		partitioner.run(network);
+
+		assertBalanced(network, partitioner);
+		// four quadrants: two lines of GRID_SIZE crossings with two links each
+		Assert.assertEquals(4 * GRID_SIZE, partitioner.getNumberOfCutLinks());
+	}
+
+	@Test
+	public void testThreePartitions() {
+		Network network = createGrid();
+		NetworkPartitioner partitioner = new NetworkPartitioner(3);
+		partitioner.run(network);
+
+		assertBalanced(network, partitioner);
+		// a round robin assignment would cut (almost) every link
+		Assert.assertTrue(partitioner.getNumberOfCutLinks() < network.getLinks().size() / 5);
+	}
+
+	@Test
+	public void testDeterministic() {
+		Network network = createGrid();
+		NetworkPartitioner partitioner1 = new NetworkPartitioner(5);
+		partitioner1.run(network);
+		NetworkPartitioner partitioner2 = new NetworkPartitioner(5);
+		partitioner2.run(network);
+
+		for (Node node : network.getNodes().values()) {
+			Assert.assertEquals(partitioner1.getPartition(node), partitioner2.getPartition(node));
+		}
+	}
+
+	@Test
+	public void testUnknownNode() {
+		Network network = createGrid();
+		NetworkPartitioner partitioner = new NetworkPartitioner(2);
+		partitioner.run(network);
+
+		Node other = network.getFactory().createNode(Id.create("other", Node.class), new Coord(0.0, 0.0));
+		Assert.assertEquals(-1, partitioner.getPartition(other));
+	}
+
+	private static void assertBalanced(Network network, NetworkPartitioner partitioner) {
+		long totalWeight = 0;
+		for (Node node : network.getNodes().values()) {
+			int partition = partitioner.getPartition(node);
+			Assert.assertTrue(partition >= 0 && partition < partitioner.getNumberOfPartitions());
+			totalWeight += 1 + node.getOutLinks().size();
+		}
+		double avgWeight = (double) totalWeight / partitioner.getNumberOfPartitions();
+		for (long weight : partitioner.getPartitionWeights()) {
+			Assert.assertEquals(avgWeight, weight, 0.1 * avgWeight);
+		}
+	}
+
+	/**
+	 * A grid of GRID_SIZE x GRID_SIZE nodes with 100m spacing, every pair of neighbors connected in both directions.
+	 */
+	private static Network createGrid() {
+		Network network = NetworkUtils.createNetwork();
+		NetworkFactory nf = network.getFactory();
+		Node[][] nodes = new Node[GRID_SIZE][GRID_SIZE];
+		for (int i = 0; i < GRID_SIZE; i++) {
+			for (int j = 0; j < GRID_SIZE; j++) {
+				nodes[i][j] = nf.createNode(Id.create(i + "_" + j, Node.class), new Coord(i * 100.0, j * 100.0));
+				network.addNode(nodes[i][j]);
+			}
+		}
+		int linkCnt = 0;
+		for (int i = 0; i < GRID_SIZE; i++) {
+			for (int j = 0; j < GRID_SIZE; j++) {
+				if (i + 1 < GRID_SIZE) {
+					network.addLink(nf.createLink(Id.create(linkCnt++, Link.class), nodes[i][j], nodes[i + 1][j]));
+					network.addLink(nf.createLink(Id.create(linkCnt++, Link.class), nodes[i + 1][j], nodes[i][j]));
+				}
+				if (j + 1 < GRID_SIZE) {
+					network.addLink(nf.createLink(Id.create(linkCnt++, Link.class), nodes[i][j], nodes[i][j + 1]));
+					network.addLink(nf.createLink(Id.create(linkCnt++, Link.class), nodes[i][j + 1], nodes[i][j]));
+				}
+			}
+		}
+		return network;
+	}
+}
@@ -0,0 +1,129 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * CompactPopulationMemoryBenchmark.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2016 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.population.compact;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.log4j.Logger;
+import org.matsim.api.core.v01.Coord;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.population.Activity;
+import org.matsim.api.core.v01.population.Leg;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.api.core.v01.population.Plan;
+import org.matsim.api.core.v01.population.Population;
+import org.matsim.api.core.v01.population.PopulationFactory;
+import org.matsim.core.config.Config;
+import org.matsim.core.config.ConfigUtils;
+import org.matsim.core.population.PopulationUtils;
+import org.matsim.core.population.routes.LinkNetworkRouteImpl;
+import org.matsim.core.population.routes.NetworkRoute;
+
+/**
+ * Reports the heap used per plan element by the default population and by {@link CompactPopulation}, for
+ * synthetic persons with several plans of home-work-shop-home chains and network routes. Not a unit test;
+ * run the main method with the test classpath and a heap large enough for the default population, e.g.
+ * <code>-Xmx4g</code>. The optional arguments are the number of persons and the number of plans per person.
+ */
+public class CompactPopulationMemoryBenchmark {
+
+	private static final Logger log = Logger.getLogger(CompactPopulationMemoryBenchmark.class);
+
+	private static final int LINKS_PER_ROUTE = 20;
+	private static final int NUMBER_OF_LINKS = 100000;
+
+	public static void main(String[] args) {
+		int numberOfPersons = args.length > 0 ? Integer.parseInt(args[0]) : 100000;
+		int plansPerPerson = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+
+		List<Id<Link>> linkIds = new ArrayList<>(NUMBER_OF_LINKS);
+		for (int i = 0; i < NUMBER_OF_LINKS; i++) {
+			linkIds.add(Id.createLinkId(i));
+		}
+
+		Config config = ConfigUtils.createConfig();
+		measure("default", PopulationUtils.createPopulation(config), linkIds, numberOfPersons, plansPerPerson);
+		config.plans().setUsingCompactPopulation(true);
+		measure("compact", PopulationUtils.createPopulation(config), linkIds, numberOfPersons, plansPerPerson);
+	}
+
+	private static void measure(String name, Population population, List<Id<Link>> linkIds, int numberOfPersons, int plansPerPerson) {
+		long before = usedMemory();
+		long elements = fill(population, linkIds, numberOfPersons, plansPerPerson);
+		long after = usedMemory();
+		log.info(name + ": " + elements + " plan elements, " + ((after - before) / elements) + " bytes per plan element"
+				+ " (" + population.getPersons().size() + " persons)");
+	}
+
+	private static long fill(Population population, List<Id<Link>> linkIds, int numberOfPersons, int plansPerPerson) {
+		PopulationFactory factory = population.getFactory();
+		String[] types = {"home", "work", "shop", "home"};
+		long elements = 0;
+		for (int p = 0; p < numberOfPersons; p++) {
+			Person person = factory.createPerson(Id.createPersonId(p));
+			for (int n = 0; n < plansPerPerson; n++) {
+				Plan plan = factory.createPlan();
+				int link = (p * 7919 + n * 104729) % linkIds.size();
+				for (int i = 0; i < types.length; i++) {
+					Activity act = factory.createActivityFromLinkId(types[i], linkIds.get(link));
+					act.setCoord(new Coord(link * 10.0, link * 20.0));
+					if (i < types.length - 1) {
+						act.setEndTime(6 * 3600 + i * 4 * 3600 + n * 60);
+					}
+					plan.addActivity(act);
+					elements++;
+					if (i < types.length - 1) {
+						Leg leg = factory.createLeg("car");
+						leg.setDepartureTime(act.getEndTime());
+						leg.setTravelTime(1200);
+						int endLink = (link + LINKS_PER_ROUTE + 1) % linkIds.size();
+						List<Id<Link>> routeLinks = new ArrayList<>(LINKS_PER_ROUTE);
+						for (int l = 1; l <= LINKS_PER_ROUTE; l++) {
+							routeLinks.add(linkIds.get((link + l) % linkIds.size()));
+						}
+						NetworkRoute route = new LinkNetworkRouteImpl(linkIds.get(link), routeLinks, linkIds.get(endLink));
+						route.setDistance(5000);
+						route.setTravelTime(1200);
+						leg.setRoute(route);
+						plan.addLeg(leg);
+						elements++;
+						link = endLink;
+					}
+				}
+				plan.setScore(100.0);
+				person.addPlan(plan);
+			}
+			population.addPerson(person);
+		}
+		return elements;
+	}
+
+	private static long usedMemory() {
+		Runtime runtime = Runtime.getRuntime();
+		for (int i = 0; i < 3; i++) {
+			System.gc();
+		}
+		return runtime.totalMemory() - runtime.freeMemory();
+	}
+
+}
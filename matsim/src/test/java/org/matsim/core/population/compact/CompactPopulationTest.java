@@ -0,0 +1,277 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * CompactPopulationTest.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2016 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.population.compact;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.matsim.api.core.v01.Coord;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.Scenario;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.population.Activity;
+import org.matsim.api.core.v01.population.Leg;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.api.core.v01.population.Plan;
+import org.matsim.api.core.v01.population.PlanElement;
+import org.matsim.api.core.v01.population.Population;
+import org.matsim.api.core.v01.population.PopulationFactory;
+import org.matsim.core.config.Config;
+import org.matsim.core.config.ConfigUtils;
+import org.matsim.core.network.io.MatsimNetworkReader;
+import org.matsim.core.population.PersonUtils;
+import org.matsim.core.population.PopulationUtils;
+import org.matsim.core.population.io.PopulationReader;
+import org.matsim.core.population.io.PopulationWriter;
+import org.matsim.core.population.routes.GenericRouteImpl;
+import org.matsim.core.population.routes.LinkNetworkRouteImpl;
+import org.matsim.core.population.routes.NetworkRoute;
+import org.matsim.core.population.routes.RouteFactories;
+import org.matsim.core.scenario.ScenarioUtils;
+import org.matsim.core.utils.misc.CRCChecksum;
+import org.matsim.core.utils.misc.Time;
+import org.matsim.facilities.ActivityFacility;
+import org.matsim.testcases.MatsimTestUtils;
+import org.matsim.vehicles.Vehicle;
+
+public class CompactPopulationTest {
+
+	@Rule public MatsimTestUtils utils = new MatsimTestUtils();
+
+	@Test
+	public void testCreatedFromConfig() {
+		Config config = ConfigUtils.createConfig();
+		Assert.assertFalse(ScenarioUtils.createScenario(config).getPopulation() instanceof CompactPopulation);
+		config.plans().setUsingCompactPopulation(true);
+		Assert.assertTrue(ScenarioUtils.createScenario(config).getPopulation() instanceof CompactPopulation);
+	}
+
+	/**
+	 * Reads a population into a compact and a regular population; both must be written to the same file.
+	 */
+	@Test
+	public void testReadWriteSameAsDefault() {
+		Scenario regular = createScenario(false);
+		new PopulationReader(regular).readFile("test/scenarios/equil/plans2000.xml.gz");
+		Scenario compact = createScenario(true);
+		new PopulationReader(compact).readFile("test/scenarios/equil/plans2000.xml.gz");
+
+		Assert.assertEquals(regular.getPopulation().getPersons().size(), compact.getPopulation().getPersons().size());
+		for (Person person : compact.getPopulation().getPersons().values()) {
+			Assert.assertTrue(person instanceof CompactPerson);
+			Assert.assertTrue(person.getSelectedPlan() instanceof CompactPlan);
+			Assert.assertSame(person, person.getSelectedPlan().getPerson());
+		}
+
+		String regularFile = this.utils.getOutputDirectory() + "regular.xml";
+		String compactFile = this.utils.getOutputDirectory() + "compact.xml";
+		new PopulationWriter(regular.getPopulation(), regular.getNetwork()).writeV5(regularFile);
+		new PopulationWriter(compact.getPopulation(), compact.getNetwork()).writeV5(compactFile);
+		Assert.assertEquals(CRCChecksum.getCRCFromFile(regularFile), CRCChecksum.getCRCFromFile(compactFile));
+	}
+
+	@Test
+	public void testElementsCreatedByFactoryCanBeChangedAfterAdding() {
+		Population population = new CompactPopulation(new RouteFactories());
+		PopulationFactory factory = population.getFactory();
+		Plan plan = factory.createPlan();
+
+		Activity home = factory.createActivityFromCoord("home", new Coord(1.0, 2.0));
+		plan.addActivity(home);
+		home.setEndTime(7 * 3600);
+		home.setFacilityId(Id.create("f1", ActivityFacility.class));
+		Leg leg = factory.createLeg("car");
+		plan.addLeg(leg);
+		leg.setDepartureTime(7 * 3600);
+		Activity work = factory.createActivityFromLinkId("work", Id.createLinkId("2"));
+		plan.addActivity(work);
+		work.setStartTime(8 * 3600);
+
+		Assert.assertEquals(3, plan.getPlanElements().size());
+		Activity storedHome = (Activity) plan.getPlanElements().get(0);
+		Assert.assertEquals(home, storedHome);
+		Assert.assertEquals("home", storedHome.getType());
+		Assert.assertEquals(new Coord(1.0, 2.0), storedHome.getCoord());
+		Assert.assertNull(storedHome.getLinkId());
+		Assert.assertEquals(7 * 3600, storedHome.getEndTime(), 0.0);
+		Assert.assertEquals(Time.UNDEFINED_TIME, storedHome.getStartTime(), 0.0);
+		Assert.assertEquals(Id.create("f1", ActivityFacility.class), storedHome.getFacilityId());
+		Assert.assertEquals(7 * 3600, ((Leg) plan.getPlanElements().get(1)).getDepartureTime(), 0.0);
+		Assert.assertEquals(Time.UNDEFINED_TIME, ((Leg) plan.getPlanElements().get(1)).getTravelTime(), 0.0);
+		Activity storedWork = (Activity) plan.getPlanElements().get(2);
+		Assert.assertNull(storedWork.getCoord());
+		Assert.assertEquals(Id.createLinkId("2"), storedWork.getLinkId());
+		Assert.assertEquals(8 * 3600, storedWork.getStartTime(), 0.0);
+		Assert.assertEquals(2, PopulationUtils.getActLegIndex(plan, work));
+	}
+
+	@Test
+	public void testModifyPlanElements() {
+		Population population = new CompactPopulation(new RouteFactories());
+		PopulationFactory factory = population.getFactory();
+		Plan plan = factory.createPlan();
+		plan.addActivity(factory.createActivityFromLinkId("h", Id.createLinkId("1")));
+		plan.addLeg(factory.createLeg("car"));
+		plan.addActivity(factory.createActivityFromLinkId("w", Id.createLinkId("2")));
+
+		List<PlanElement> elements = plan.getPlanElements();
+		// elements of the default factory are copied into the plan
+		elements.add(2, PopulationUtils.createActivityFromLinkId("s", Id.createLinkId("3")));
+		elements.add(2, PopulationUtils.createLeg("walk"));
+		Assert.assertEquals(5, elements.size());
+		Assert.assertEquals("s", ((Activity) elements.get(3)).getType());
+		Assert.assertEquals("walk", ((Leg) elements.get(2)).getMode());
+
+		PlanElement removed = elements.remove(1);
+		Assert.assertEquals("car", ((Leg) removed).getMode());
+		Assert.assertEquals(4, plan.getPlanElements().size());
+
+		// rearranging elements of the same plan does not copy them
+		PlanElement last = elements.get(3);
+		elements.set(3, elements.get(0));
+		elements.set(0, last);
+		Assert.assertEquals("w", ((Activity) elements.get(0)).getType());
+		((Activity) elements.get(0)).setType("w2");
+		Assert.assertEquals("w2", ((Activity) last).getType());
+
+		elements.subList(1, 3).clear();
+		Assert.assertEquals(2, plan.getPlanElements().size());
+		Assert.assertEquals("h", ((Activity) plan.getPlanElements().get(1)).getType());
+	}
+
+	@Test
+	public void testNetworkRoute() {
+		Population population = new CompactPopulation(new RouteFactories());
+		PopulationFactory factory = population.getFactory();
+		Plan plan = factory.createPlan();
+		plan.addActivity(factory.createActivityFromLinkId("h", Id.createLinkId("1")));
+		Leg leg = factory.createLeg("car");
+		plan.addLeg(leg);
+		plan.addActivity(factory.createActivityFromLinkId("w", Id.createLinkId("4")));
+
+		NetworkRoute route = new LinkNetworkRouteImpl(Id.createLinkId("1"), Arrays.asList(Id.createLinkId("2"), Id.createLinkId("3")), Id.createLinkId("4"));
+		route.setDistance(1234.5);
+		leg.setRoute(route);
+
+		NetworkRoute stored = (NetworkRoute) ((Leg) plan.getPlanElements().get(1)).getRoute();
+		Assert.assertEquals("links", stored.getRouteType());
+		Assert.assertEquals("1 2 3 4", stored.getRouteDescription());
+		Assert.assertEquals(Arrays.asList(Id.createLinkId("2"), Id.createLinkId("3")), stored.getLinkIds());
+		Assert.assertEquals(1234.5, stored.getDistance(), 0.0);
+		Assert.assertEquals(Time.UNDEFINED_TIME, stored.getTravelTime(), 0.0);
+		Assert.assertNull(stored.getVehicleId());
+
+		stored.setVehicleId(Id.create("v1", Vehicle.class));
+		Assert.assertEquals(Id.create("v1", Vehicle.class), ((NetworkRoute) leg.getRoute()).getVehicleId());
+
+		// a longer route does not fit into the old record
+		stored.setLinkIds(Id.createLinkId("1"), Arrays.asList(Id.createLinkId("5"), Id.createLinkId("6"), Id.createLinkId("7")), Id.createLinkId("4"));
+		NetworkRoute changed = (NetworkRoute) leg.getRoute();
+		Assert.assertEquals("1 5 6 7 4", changed.getRouteDescription());
+		Assert.assertEquals("1 5 6 7 4", stored.getRouteDescription());
+		Assert.assertEquals(1234.5, changed.getDistance(), 0.0);
+		Assert.assertEquals(Id.create("v1", Vehicle.class), changed.getVehicleId());
+
+		changed.setRouteDescription("1 4");
+		Assert.assertTrue(leg.getRoute().getRouteDescription().equals("1 4"));
+		Assert.assertTrue(((NetworkRoute) leg.getRoute()).getLinkIds().isEmpty());
+
+		NetworkRoute clone = (NetworkRoute) leg.getRoute().clone();
+		Assert.assertTrue(clone instanceof LinkNetworkRouteImpl);
+		Assert.assertEquals("1 4", clone.getRouteDescription());
+
+		// other routes are kept as they are
+		GenericRouteImpl generic = new GenericRouteImpl(Id.createLinkId("1"), Id.createLinkId("4"));
+		leg.setRoute(generic);
+		Assert.assertSame(generic, leg.getRoute());
+		leg.setRoute(null);
+		Assert.assertNull(leg.getRoute());
+	}
+
+	@Test
+	public void testCopyOfSelectedPlan() {
+		Scenario scenario = createScenario(true);
+		Population population = scenario.getPopulation();
+		PopulationFactory factory = population.getFactory();
+		Person person = factory.createPerson(Id.createPersonId("1"));
+		Plan plan = factory.createPlan();
+		person.addPlan(plan);
+		plan.addActivity(factory.createActivityFromLinkId("h", Id.createLinkId("1")));
+		Leg leg = factory.createLeg("car");
+		plan.addLeg(leg);
+		leg.setRoute(new LinkNetworkRouteImpl(Id.createLinkId("1"), Arrays.asList(Id.createLinkId("2")), Id.createLinkId("3")));
+		plan.addActivity(factory.createActivityFromLinkId("w", Id.createLinkId("3")));
+		plan.setScore(12.0);
+		population.addPerson(person);
+		Assert.assertSame(person, population.getPersons().get(person.getId()));
+
+		Plan copy = person.createCopyOfSelectedPlanAndMakeSelected();
+		Assert.assertSame(copy, person.getSelectedPlan());
+		Assert.assertSame(person, copy.getPerson());
+		Assert.assertEquals(2, person.getPlans().size());
+		Assert.assertEquals(12.0, copy.getScore(), 0.0);
+		Assert.assertEquals(3, copy.getPlanElements().size());
+
+		((Activity) copy.getPlanElements().get(0)).setEndTime(3600.0);
+		((NetworkRoute) ((Leg) copy.getPlanElements().get(1)).getRoute()).setLinkIds(Id.createLinkId("1"), null, Id.createLinkId("3"));
+		Assert.assertEquals(Time.UNDEFINED_TIME, ((Activity) plan.getPlanElements().get(0)).getEndTime(), 0.0);
+		Assert.assertEquals("1 2 3", ((Leg) plan.getPlanElements().get(1)).getRoute().getRouteDescription());
+		Assert.assertEquals("1 3", ((Leg) copy.getPlanElements().get(1)).getRoute().getRouteDescription());
+	}
+
+	@Test
+	public void testRegularPersonIsCopiedWhenAdded() {
+		Population population = new CompactPopulation(new RouteFactories());
+		Person person = PopulationUtils.getFactory().createPerson(Id.createPersonId("1"));
+		PersonUtils.setAge(person, 42);
+		Plan plan = PersonUtils.createAndAddPlan(person, false);
+		PopulationUtils.createAndAddActivityFromLinkId(plan, "h", Id.createLinkId("1"));
+		Plan selected = PersonUtils.createAndAddPlan(person, true);
+		PopulationUtils.createAndAddActivityFromLinkId(selected, "w", Id.createLinkId("1"));
+		population.addPerson(person);
+
+		Person stored = population.getPersons().get(person.getId());
+		Assert.assertNotSame(person, stored);
+		Assert.assertEquals(Integer.valueOf(42), PersonUtils.getAge(stored));
+		Assert.assertEquals(2, stored.getPlans().size());
+		Assert.assertSame(stored.getPlans().get(1), stored.getSelectedPlan());
+		Assert.assertEquals("w", ((Activity) stored.getSelectedPlan().getPlanElements().get(0)).getType());
+
+		try {
+			population.addPerson(person);
+			Assert.fail("expected exception, got none.");
+		} catch (IllegalArgumentException e) {
+			// expected
+		}
+	}
+
+	private static Scenario createScenario(boolean compact) {
+		Config config = ConfigUtils.createConfig();
+		config.plans().setUsingCompactPopulation(compact);
+		Scenario scenario = ScenarioUtils.createScenario(config);
+		new MatsimNetworkReader(scenario.getNetwork()).readFile("test/scenarios/equil/network.xml");
+		return scenario;
+	}
+
+}
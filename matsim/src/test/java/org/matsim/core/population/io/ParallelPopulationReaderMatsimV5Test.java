@@ -0,0 +1,109 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * ParallelPopulationReaderMatsimV5Test.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2016 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.population.io;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.Scenario;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.core.config.Config;
+import org.matsim.core.config.ConfigUtils;
+import org.matsim.core.network.io.MatsimNetworkReader;
+import org.matsim.core.population.algorithms.PersonAlgorithm;
+import org.matsim.core.scenario.ScenarioUtils;
+import org.matsim.core.utils.geometry.transformations.IdentityTransformation;
+import org.matsim.core.utils.misc.CRCChecksum;
+import org.matsim.testcases.MatsimTestUtils;
+
+public class ParallelPopulationReaderMatsimV5Test {
+
+	@Rule public MatsimTestUtils utils = new MatsimTestUtils();
+
+	/**
+	 * Uses a population larger than a chunk, so several chunks are read concurrently.
+	 */
+	@Test
+	public void testSamePopulationAsSequentialReader() {
+		String v5File = writeV5Population();
+
+		Scenario sequential = createScenario(1);
+		new PopulationReaderMatsimV5(sequential).readFile(v5File);
+		Scenario parallel = createScenario(3);
+		new ParallelPopulationReaderMatsimV5(new IdentityTransformation(), parallel, 3).readFile(v5File);
+
+		Assert.assertEquals(2000, parallel.getPopulation().getPersons().size());
+		Assert.assertEquals(new ArrayList<>(sequential.getPopulation().getPersons().keySet()),
+				new ArrayList<>(parallel.getPopulation().getPersons().keySet()));
+
+		new PopulationWriter(sequential.getPopulation(), sequential.getNetwork()).writeV5(this.utils.getOutputDirectory() + "sequential.xml");
+		new PopulationWriter(parallel.getPopulation(), parallel.getNetwork()).writeV5(this.utils.getOutputDirectory() + "parallel.xml");
+		Assert.assertEquals(CRCChecksum.getCRCFromFile(this.utils.getOutputDirectory() + "sequential.xml"),
+				CRCChecksum.getCRCFromFile(this.utils.getOutputDirectory() + "parallel.xml"));
+	}
+
+	@Test
+	public void testStreamingInFileOrder() {
+		String v5File = writeV5Population();
+
+		Scenario scenario = createScenario(1);
+		new PopulationReaderMatsimV5(scenario).readFile(v5File);
+		List<Id<Person>> expected = new ArrayList<>(scenario.getPopulation().getPersons().keySet());
+
+		Scenario streamingScenario = createScenario(4);
+		StreamingPopulationReader reader = new StreamingPopulationReader(streamingScenario);
+		final List<Id<Person>> streamed = new ArrayList<>();
+		final Thread mainThread = Thread.currentThread();
+		reader.addAlgorithm(new PersonAlgorithm() {
+			@Override
+			public void run(Person person) {
+				Assert.assertSame(mainThread, Thread.currentThread());
+				Assert.assertFalse(person.getSelectedPlan().getPlanElements().isEmpty());
+				streamed.add(person.getId());
+			}
+		});
+		reader.readFile(v5File);
+
+		Assert.assertEquals(expected, streamed);
+		Assert.assertTrue(streamingScenario.getPopulation().getPersons().isEmpty());
+	}
+
+	private String writeV5Population() {
+		Scenario scenario = createScenario(1);
+		new PopulationReader(scenario).readFile("test/scenarios/equil/plans2000.xml.gz");
+		String filename = this.utils.getOutputDirectory() + "population_v5.xml";
+		new PopulationWriter(scenario.getPopulation(), scenario.getNetwork()).writeV5(filename);
+		return filename;
+	}
+
+	private static Scenario createScenario(int numberOfThreads) {
+		Config config = ConfigUtils.createConfig();
+		config.global().setNumberOfThreads(numberOfThreads);
+		Scenario scenario = ScenarioUtils.createScenario(config);
+		new MatsimNetworkReader(scenario.getNetwork()).readFile("test/scenarios/equil/network.xml");
+		return scenario;
+	}
+
+}
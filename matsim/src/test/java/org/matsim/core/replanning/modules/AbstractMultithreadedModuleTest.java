@@ -20,13 +20,43 @@
 
 package org.matsim.core.replanning.modules;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import javax.inject.Provider;
+
 import org.apache.log4j.Logger;
 import org.junit.Assert;
 import org.junit.Test;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.Scenario;
+import org.matsim.api.core.v01.TransportMode;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.population.Activity;
+import org.matsim.api.core.v01.population.Leg;
+import org.matsim.api.core.v01.population.Person;
 import org.matsim.api.core.v01.population.Plan;
 import org.matsim.core.config.Config;
+import org.matsim.core.config.ConfigUtils;
 import org.matsim.core.config.groups.GlobalConfigGroup;
+import org.matsim.core.network.io.MatsimNetworkReader;
+import org.matsim.core.population.PopulationUtils;
 import org.matsim.core.population.algorithms.PlanAlgorithm;
+import org.matsim.core.population.routes.NetworkRoute;
+import org.matsim.core.router.ContractionHierarchies;
+import org.matsim.core.router.DefaultRoutingModules;
+import org.matsim.core.router.TripRouter;
+import org.matsim.core.router.costcalculators.FreespeedTravelTimeAndDisutility;
+import org.matsim.core.router.util.ContractionHierarchiesFactory;
+import org.matsim.core.router.util.TravelDisutility;
+import org.matsim.core.router.util.TravelTime;
+import org.matsim.core.scenario.ScenarioUtils;
+import org.matsim.vehicles.Vehicle;
 
 /**
  * @author mrieser
@@ -60,6 +90,139 @@ public class AbstractMultithreadedModuleTest {
 
 	}
 
+	@Test
+	public void testWorkStealing_allPlansHandled() {
+		CountingModule testee = new CountingModule(3);
+		Set<Plan> plans = Collections.newSetFromMap(new IdentityHashMap<Plan, Boolean>());
+		for (int iteration = 0; iteration < 2; iteration++) {
+			testee.prepareReplanning(null);
+			for (int i = 0; i < 1000; i++) {
+				Plan plan = PopulationUtils.createPlan();
+				plans.add(plan);
+				testee.handlePlan(plan);
+			}
+			testee.finishReplanning();
+		}
+		for (Plan plan : plans) {
+			Assert.assertEquals(Double.valueOf(1.0), plan.getScore());
+		}
+		// one instance per running batch, at most one per pool thread and the calling thread
+		Assert.assertTrue(testee.createdAlgos.get() <= 2 * (3 + 1));
+	}
+
+	@Test
+	public void testWorkStealing_reusingPlanAlgoInstances() {
+		CountingModule reusing = new CountingModule(3, true);
+		CountingModule notReusing = new CountingModule(3, false);
+		int createdInFirstIteration = 0;
+		for (int iteration = 0; iteration < 3; iteration++) {
+			for (CountingModule testee : new CountingModule[] { reusing, notReusing }) {
+				testee.prepareReplanning(null);
+				for (int i = 0; i < 1000; i++) {
+					testee.handlePlan(PopulationUtils.createPlan());
+				}
+				testee.finishReplanning();
+			}
+			if (iteration == 0) {
+				createdInFirstIteration = reusing.createdAlgos.get();
+				Assert.assertTrue(createdInFirstIteration > 0);
+			}
+		}
+		// later iterations take the instances of the first one ...
+		Assert.assertEquals(createdInFirstIteration, reusing.createdAlgos.get());
+		// ... while they are created anew for every iteration otherwise
+		Assert.assertTrue(notReusing.createdAlgos.get() >= 3);
+	}
+
+	/**
+	 * The trip routers must see the travel times of the last iteration, also if their least cost path calculators
+	 * keep state derived from them, as {@link ContractionHierarchies} does.  So ReRoute creates them anew per iteration.
+	 */
+	@Test
+	public void testWorkStealing_reRouteWithChangedTravelTimes() {
+		Config config = ConfigUtils.createConfig();
+		config.global().setNumberOfThreads(2);
+		config.global().setUsingReplanningWorkStealing(true);
+		final Scenario scenario = ScenarioUtils.createScenario(config);
+		new MatsimNetworkReader(scenario.getNetwork()).readFile("test/scenarios/equil/network.xml");
+		final FreespeedTravelTimeAndDisutility freespeed = new FreespeedTravelTimeAndDisutility(config.planCalcScore());
+		final AtomicReference<Id<Link>> fastLinkId = new AtomicReference<>();
+		final TravelTime travelTime = new TravelTime() {
+			@Override
+			public double getLinkTravelTime(final Link link, final double time, final Person person, final Vehicle vehicle) {
+				double t = freespeed.getLinkTravelTime(link, time, person, vehicle);
+				return link.getId().equals(fastLinkId.get()) ? 0.5 * t : t;
+			}
+		};
+		final TravelDisutility disutility = new TravelDisutility() {
+			@Override
+			public double getLinkTravelDisutility(final Link link, final double time, final Person person, final Vehicle vehicle) {
+				return travelTime.getLinkTravelTime(link, time, person, vehicle);
+			}
+			@Override
+			public double getLinkMinimumTravelDisutility(final Link link) {
+				return freespeed.getLinkMinimumTravelDisutility(link);
+			}
+		};
+		final ContractionHierarchiesFactory factory = new ContractionHierarchiesFactory(900);
+		final AtomicInteger createdRouters = new AtomicInteger(0);
+		ReRoute testee = new ReRoute(null, new Provider<TripRouter>() {
+			@Override
+			public TripRouter get() {
+				createdRouters.incrementAndGet();
+				TripRouter tripRouter = new TripRouter();
+				tripRouter.setRoutingModule(TransportMode.car, DefaultRoutingModules.createPureNetworkRouter(TransportMode.car,
+						scenario.getPopulation().getFactory(), scenario.getNetwork(),
+						factory.createPathCalculator(scenario.getNetwork(), disutility, travelTime)));
+				return tripRouter;
+			}
+		}, config.global());
+
+		String[] fastLinks = { "6", "3" };
+		int createdInFirstIteration = 0;
+		for (int iteration = 0; iteration < fastLinks.length; iteration++) {
+			// the travel times change in place between the iterations, as the ones of the controler do
+			fastLinkId.set(Id.create(fastLinks[iteration], Link.class));
+			List<Plan> plans = new ArrayList<>();
+			testee.prepareReplanning(null);
+			for (int i = 0; i < 100; i++) {
+				Plan plan = PopulationUtils.createPlan();
+				Activity home = PopulationUtils.createActivityFromLinkId("h", Id.create("1", Link.class));
+				home.setEndTime(7 * 3600);
+				plan.addActivity(home);
+				plan.addLeg(PopulationUtils.createLeg(TransportMode.car));
+				plan.addActivity(PopulationUtils.createActivityFromLinkId("w", Id.create("20", Link.class)));
+				plans.add(plan);
+				testee.handlePlan(plan);
+			}
+			testee.finishReplanning();
+			for (Plan plan : plans) {
+				NetworkRoute route = (NetworkRoute) ((Leg) plan.getPlanElements().get(1)).getRoute();
+				Assert.assertTrue(route.getLinkIds().contains(fastLinkId.get()));
+			}
+			if (iteration == 0) {
+				createdInFirstIteration = createdRouters.get();
+				Assert.assertTrue(createdInFirstIteration > 0);
+			}
+		}
+		Assert.assertTrue(createdRouters.get() > createdInFirstIteration);
+	}
+
+	@Test
+	public void testWorkStealing_crashingThread() {
+		try {
+			DummyCrashingModule testee = new DummyCrashingModule(2, true);
+			testee.prepareReplanning(null);
+			testee.handlePlan(null);
+			testee.handlePlan(null);
+			testee.handlePlan(null);
+			testee.finishReplanning();
+			Assert.fail("expected exception, got none.");
+		} catch (Exception e) {
+			log.info("Catched expected exception.", e);
+		}
+	}
+
 	private static class DummyAbstractMultithreadedModule extends AbstractMultithreadedModule {
 		public DummyAbstractMultithreadedModule(GlobalConfigGroup globalConfigGroup) {
 			super(globalConfigGroup);
@@ -74,12 +237,44 @@ public class AbstractMultithreadedModuleTest {
 		public DummyCrashingModule(final int nOfThreads) {
 			super(nOfThreads);
 		}
+		public DummyCrashingModule(final int nOfThreads, final boolean usingWorkStealing) {
+			super(nOfThreads, usingWorkStealing);
+		}
 		@Override
 		public PlanAlgorithm getPlanAlgoInstance() {
 			return new CrashingPlanAlgo();
 		}
 	}
 
+	private static class CountingModule extends AbstractMultithreadedModule {
+		private final AtomicInteger createdAlgos = new AtomicInteger(0);
+		private final boolean reusingAlgos;
+		public CountingModule(final int nOfThreads) {
+			this(nOfThreads, false);
+		}
+		public CountingModule(final int nOfThreads, final boolean reusingAlgos) {
+			super(nOfThreads, true);
+			this.reusingAlgos = reusingAlgos;
+		}
+		@Override
+		protected boolean isReusingPlanAlgoInstances() {
+			return this.reusingAlgos;
+		}
+		@Override
+		public PlanAlgorithm getPlanAlgoInstance() {
+			this.createdAlgos.incrementAndGet();
+			return new PlanAlgorithm() {
+				@Override
+				public void run(Plan plan) {
+					if (plan.getScore() != null) {
+						throw new IllegalStateException("plan handled twice");
+					}
+					plan.setScore(1.0);
+				}
+			};
+		}
+	}
+
 	private static class CrashingPlanAlgo implements PlanAlgorithm {
 		@Override
 		public void run(Plan plan) {
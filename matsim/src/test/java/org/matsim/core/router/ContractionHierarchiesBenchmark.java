@@ -0,0 +1,103 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * ContractionHierarchiesBenchmark.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2016 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.router;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.apache.log4j.Logger;
+import org.matsim.api.core.v01.Scenario;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.api.core.v01.network.Node;
+import org.matsim.core.config.ConfigUtils;
+import org.matsim.core.config.groups.PlanCalcScoreConfigGroup;
+import org.matsim.core.network.io.MatsimNetworkReader;
+import org.matsim.core.router.costcalculators.FreespeedTravelTimeAndDisutility;
+import org.matsim.core.router.util.ArrayRoutingNetwork;
+import org.matsim.core.router.util.ArrayRoutingNetworkFactory;
+import org.matsim.core.router.util.FastAStarLandmarksFactory;
+import org.matsim.core.router.util.FastDijkstraFactory;
+import org.matsim.core.router.util.LeastCostPathCalculator;
+import org.matsim.core.scenario.ScenarioUtils;
+
+/**
+ * Compares the query times of {@link ContractionHierarchies} with the ones of {@link FastDijkstra} and
+ * {@link FastAStarLandmarks} for random node pairs, and reports the time needed to build the hierarchy and to
+ * customize it for one time bin. Not a unit test; run the main method with the test classpath. The optional
+ * arguments are a network file and the number of queries.
+ */
+public class ContractionHierarchiesBenchmark {
+
+	private static final Logger log = Logger.getLogger(ContractionHierarchiesBenchmark.class);
+
+	public static void main(String[] args) {
+		String networkFile = args.length > 0 ? args[0] : "test/scenarios/berlin/network.xml.gz";
+		int numberOfQueries = args.length > 1 ? Integer.parseInt(args[1]) : 2000;
+
+		Scenario scenario = ScenarioUtils.createScenario(ConfigUtils.createConfig());
+		new MatsimNetworkReader(scenario.getNetwork()).readFile(networkFile);
+		Network network = scenario.getNetwork();
+		FreespeedTravelTimeAndDisutility calculator = new FreespeedTravelTimeAndDisutility(new PlanCalcScoreConfigGroup());
+
+		List<Node> nodes = new ArrayList<>(network.getNodes().values());
+		Random random = new Random(4711);
+		Node[][] queries = new Node[numberOfQueries][];
+		for (int i = 0; i < numberOfQueries; i++) {
+			queries[i] = new Node[] {nodes.get(random.nextInt(nodes.size())), nodes.get(random.nextInt(nodes.size()))};
+		}
+
+		long start = System.nanoTime();
+		ArrayRoutingNetwork routingNetwork = (ArrayRoutingNetwork) new ArrayRoutingNetworkFactory(null).createRoutingNetwork(network);
+		ContractionHierarchy hierarchy = ContractionHierarchy.create(routingNetwork);
+		log.info("nodes: " + nodes.size() + ", links: " + network.getLinks().size() + ", shortcuts: " + hierarchy.getNumberOfShortcuts());
+		log.info("contraction: " + (System.nanoTime() - start) / 1000000 + " ms");
+
+		ContractionHierarchies ch = new ContractionHierarchies(hierarchy, calculator, calculator, 900);
+		start = System.nanoTime();
+		ch.calcLeastCostPath(nodes.get(0), nodes.get(0), 8 * 3600, null, null);
+		log.info("customization of one time bin: " + (System.nanoTime() - start) / 1000000 + " ms");
+
+		LeastCostPathCalculator fastDijkstra = new FastDijkstraFactory().createPathCalculator(network, calculator, calculator);
+		LeastCostPathCalculator fastAStarLandmarks = new FastAStarLandmarksFactory(network, calculator).createPathCalculator(network, calculator, calculator);
+		for (int round = 0; round < 2; round++) {
+			// the first round is the warm-up
+			measure("FastDijkstra", fastDijkstra, queries, round == 1);
+			measure("FastAStarLandmarks", fastAStarLandmarks, queries, round == 1);
+			measure("ContractionHierarchies", ch, queries, round == 1);
+		}
+	}
+
+	private static void measure(String name, LeastCostPathCalculator router, Node[][] queries, boolean print) {
+		long start = System.nanoTime();
+		double sum = 0;
+		for (Node[] query : queries) {
+			LeastCostPathCalculator.Path path = router.calcLeastCostPath(query[0], query[1], 8 * 3600, null, null);
+			if (path != null) {
+				sum += path.travelCost;
+			}
+		}
+		if (print) {
+			log.info(name + ": " + (System.nanoTime() - start) / 1000 / queries.length + " us per query (sum of costs " + sum + ")");
+		}
+	}
+
+}
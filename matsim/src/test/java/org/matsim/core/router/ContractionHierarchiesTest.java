@@ -0,0 +1,205 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * ContractionHierarchiesTest.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2016 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.router;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.Scenario;
+import org.matsim.api.core.v01.TransportMode;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.api.core.v01.network.Node;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.core.config.Config;
+import org.matsim.core.config.ConfigUtils;
+import org.matsim.core.config.groups.ControlerConfigGroup;
+import org.matsim.core.config.groups.PlanCalcScoreConfigGroup;
+import org.matsim.core.network.io.MatsimNetworkReader;
+import org.matsim.core.population.PopulationUtils;
+import org.matsim.core.router.costcalculators.FreespeedTravelTimeAndDisutility;
+import org.matsim.core.router.costcalculators.RandomizingTimeDistanceTravelDisutilityFactory;
+import org.matsim.core.router.util.ContractionHierarchiesFactory;
+import org.matsim.core.router.util.LeastCostPathCalculator;
+import org.matsim.core.router.util.LeastCostPathCalculator.Path;
+import org.matsim.core.router.util.TravelDisutility;
+import org.matsim.core.router.util.TravelTime;
+import org.matsim.core.scenario.ScenarioUtils;
+import org.matsim.vehicles.Vehicle;
+
+public class ContractionHierarchiesTest extends AbstractLeastCostPathCalculatorTest {
+
+	@Override
+	protected LeastCostPathCalculator getLeastCostPathCalculator(final Network network) {
+		FreespeedTravelTimeAndDisutility travelTimeCostCalculator = new FreespeedTravelTimeAndDisutility(new PlanCalcScoreConfigGroup());
+		return new ContractionHierarchiesFactory(900).createPathCalculator(network, travelTimeCostCalculator, travelTimeCostCalculator);
+	}
+
+	/**
+	 * Compares the costs of the paths between random nodes of a real network with the ones found by Dijkstra.
+	 */
+	public void testSameCostsAsDijkstra() {
+		Network network = readNetwork("test/scenarios/berlin/network.xml.gz");
+		FreespeedTravelTimeAndDisutility calculator = new FreespeedTravelTimeAndDisutility(new PlanCalcScoreConfigGroup());
+		LeastCostPathCalculator dijkstra = new Dijkstra(network, calculator, calculator);
+		LeastCostPathCalculator ch = new ContractionHierarchiesFactory(900).createPathCalculator(network, calculator, calculator);
+
+		List<Node> nodes = new ArrayList<>(network.getNodes().values());
+		Random random = new Random(4711);
+		int found = 0;
+		for (int i = 0; i < 200; i++) {
+			Node from = nodes.get(random.nextInt(nodes.size()));
+			Node to = nodes.get(random.nextInt(nodes.size()));
+			Path expected = dijkstra.calcLeastCostPath(from, to, 7 * 3600, null, null);
+			Path actual = ch.calcLeastCostPath(from, to, 7 * 3600, null, null);
+			if (expected == null) {
+				assertNull(actual);
+				continue;
+			}
+			found++;
+			assertEquals(expected.travelCost, actual.travelCost, 1e-6);
+			assertEquals(from, actual.nodes.get(0));
+			assertEquals(to, actual.nodes.get(actual.nodes.size() - 1));
+			assertEquals(actual.nodes.size(), actual.links.size() + 1);
+			for (int l = 0; l < actual.links.size(); l++) {
+				assertEquals(actual.nodes.get(l), actual.links.get(l).getFromNode());
+				assertEquals(actual.nodes.get(l + 1), actual.links.get(l).getToNode());
+			}
+		}
+		assertTrue(found > 100);
+	}
+
+	/**
+	 * The weights are computed per time bin: the fastest of the parallel routes of the equil network is congested
+	 * in the morning and thus only avoided then.
+	 */
+	public void testTimeDependentCustomization() {
+		Network network = readNetwork("test/scenarios/equil/network.xml");
+		final Id<Link> congestedLinkId = Id.create("6", Link.class);
+		final FreespeedTravelTimeAndDisutility freespeed = new FreespeedTravelTimeAndDisutility(new PlanCalcScoreConfigGroup());
+		final TravelTime travelTime = new TravelTime() {
+			@Override
+			public double getLinkTravelTime(final Link link, final double time, final Person person, final Vehicle vehicle) {
+				double t = freespeed.getLinkTravelTime(link, time, person, vehicle);
+				if (link.getId().equals(congestedLinkId)) {
+					return time >= 7 * 3600 && time < 8 * 3600 ? 100 * t : 0.5 * t;
+				}
+				return t;
+			}
+		};
+		TravelDisutility disutility = new TravelDisutility() {
+			@Override
+			public double getLinkTravelDisutility(final Link link, final double time, final Person person, final Vehicle vehicle) {
+				return travelTime.getLinkTravelTime(link, time, person, vehicle);
+			}
+			@Override
+			public double getLinkMinimumTravelDisutility(final Link link) {
+				return freespeed.getLinkMinimumTravelDisutility(link);
+			}
+		};
+		LeastCostPathCalculator ch = new ContractionHierarchiesFactory(3600).createPathCalculator(network, disutility, travelTime);
+		Node node2 = network.getNodes().get(Id.create("2", Node.class));
+		Node node12 = network.getNodes().get(Id.create("12", Node.class));
+
+		Path congested = ch.calcLeastCostPath(node2, node12, 7.5 * 3600, null, null);
+		assertEquals(2, congested.links.size());
+		assertFalse(congested.links.contains(network.getLinks().get(congestedLinkId)));
+		Path uncongested = ch.calcLeastCostPath(node2, node12, 9 * 3600, null, null);
+		assertEquals(congestedLinkId, uncongested.links.get(0).getId());
+
+		double expectedTime = 0;
+		for (Link link : uncongested.links) {
+			expectedTime += travelTime.getLinkTravelTime(link, 9 * 3600 + expectedTime, null, null);
+		}
+		assertEquals(expectedTime, uncongested.travelTime, 1e-6);
+		assertEquals(expectedTime, uncongested.travelCost, 1e-6);
+	}
+
+	/**
+	 * The weights are shared by all persons, so a disutility which needs the person is rejected instead of being
+	 * evaluated for whichever person triggers the customization.
+	 */
+	public void testRejectsPersonDependentDisutility() {
+		Network network = readNetwork("test/scenarios/equil/network.xml");
+		final FreespeedTravelTimeAndDisutility freespeed = new FreespeedTravelTimeAndDisutility(new PlanCalcScoreConfigGroup());
+		TravelDisutility disutility = new TravelDisutility() {
+			@Override
+			public double getLinkTravelDisutility(final Link link, final double time, final Person person, final Vehicle vehicle) {
+				if (person == null) {
+					throw new IllegalArgumentException("person required");
+				}
+				return freespeed.getLinkTravelDisutility(link, time, person, vehicle);
+			}
+			@Override
+			public double getLinkMinimumTravelDisutility(final Link link) {
+				return freespeed.getLinkMinimumTravelDisutility(link);
+			}
+		};
+		LeastCostPathCalculator ch = new ContractionHierarchiesFactory(900).createPathCalculator(network, disutility, freespeed);
+		Node node2 = network.getNodes().get(Id.create("2", Node.class));
+		Node node12 = network.getNodes().get(Id.create("12", Node.class));
+		Person person = PopulationUtils.getFactory().createPerson(Id.create("1", Person.class));
+		try {
+			ch.calcLeastCostPath(node2, node12, 7 * 3600, person, null);
+			fail("expected RuntimeException.");
+		} catch (RuntimeException e) {
+			assertTrue(e.getCause() instanceof IllegalArgumentException);
+		}
+	}
+
+	/**
+	 * With the default config, the car disutility is randomized per person.  The shared weights are computed without
+	 * the randomization, so routing works and finds the least cost paths of the non-randomized disutility.
+	 */
+	public void testDefaultConfigWithRoutingRandomness() {
+		Config config = ConfigUtils.createConfig();
+		config.controler().setRoutingAlgorithmType(ControlerConfigGroup.RoutingAlgorithmType.ContractionHierarchies);
+		assertTrue(config.plansCalcRoute().getRoutingRandomness() != 0);
+		Network network = readNetwork("test/scenarios/equil/network.xml");
+		FreespeedTravelTimeAndDisutility freespeed = new FreespeedTravelTimeAndDisutility(config.planCalcScore());
+		TravelDisutility randomized = new RandomizingTimeDistanceTravelDisutilityFactory(TransportMode.car, config.planCalcScore())
+				.setSigma(config.plansCalcRoute().getRoutingRandomness()).createTravelDisutility(freespeed);
+		TravelDisutility base = new RandomizingTimeDistanceTravelDisutilityFactory(TransportMode.car, config.planCalcScore())
+				.createTravelDisutility(freespeed);
+		LeastCostPathCalculator ch = new ContractionHierarchiesFactory(config.travelTimeCalculator().getTraveltimeBinSize())
+				.createPathCalculator(network, randomized, freespeed);
+		LeastCostPathCalculator dijkstra = new Dijkstra(network, base, freespeed);
+
+		Person person = PopulationUtils.getFactory().createPerson(Id.create("1", Person.class));
+		for (Node from : network.getNodes().values()) {
+			for (Node to : network.getNodes().values()) {
+				Path expected = dijkstra.calcLeastCostPath(from, to, 7 * 3600, null, null);
+				Path actual = ch.calcLeastCostPath(from, to, 7 * 3600, person, null);
+				assertNotNull(actual);
+				assertEquals(expected.travelTime, actual.travelTime, 1e-6);
+			}
+		}
+	}
+
+	private static Network readNetwork(final String file) {
+		Scenario scenario = ScenarioUtils.createScenario(ConfigUtils.createConfig());
+		new MatsimNetworkReader(scenario.getNetwork()).readFile(file);
+		return scenario.getNetwork();
+	}
+
+}
@@ -0,0 +1,143 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * LeastCostPathMatrixCalculatorTest.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2016 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.router;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.Scenario;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.api.core.v01.network.Node;
+import org.matsim.core.config.ConfigUtils;
+import org.matsim.core.config.groups.PlanCalcScoreConfigGroup;
+import org.matsim.core.network.io.MatsimNetworkReader;
+import org.matsim.core.router.LeastCostPathMatrix.Value;
+import org.matsim.core.router.costcalculators.FreespeedTravelTimeAndDisutility;
+import org.matsim.core.router.util.ArrayRoutingNetworkFactory;
+import org.matsim.core.router.util.LeastCostPathCalculator;
+import org.matsim.core.router.util.LeastCostPathCalculator.Path;
+import org.matsim.core.scenario.ScenarioUtils;
+import org.matsim.matrices.FloatMatrix;
+import org.matsim.matrices.Matrix;
+
+public class LeastCostPathMatrixCalculatorTest {
+
+	/**
+	 * Compares the matrix between random nodes of a real network with the paths found by Dijkstra.
+	 */
+	@Test
+	public void testSameAsDijkstra() {
+		Network network = readNetwork("test/scenarios/berlin/network.xml.gz");
+		FreespeedTravelTimeAndDisutility calculator = new FreespeedTravelTimeAndDisutility(new PlanCalcScoreConfigGroup());
+		LeastCostPathCalculator dijkstra = new Dijkstra(network, calculator, calculator);
+		ContractionHierarchy hierarchy = ContractionHierarchy.create(new ArrayRoutingNetworkFactory(null).createRoutingNetwork(network));
+
+		List<Node> nodes = new ArrayList<>(network.getNodes().values());
+		Collections.shuffle(nodes, new Random(4711));
+		List<Node> origins = nodes.subList(0, 30);
+		List<Node> destinations = new ArrayList<>(nodes.subList(20, 60));
+		LeastCostPathMatrix matrix = new LeastCostPathMatrixCalculator(hierarchy, calculator, calculator, 1)
+				.calcLeastCostPathMatrix(origins, destinations, 7 * 3600, null, null);
+		Assert.assertEquals(origins, matrix.getOrigins());
+		Assert.assertEquals(destinations, matrix.getDestinations());
+
+		int found = 0;
+		for (int i = 0; i < origins.size(); i++) {
+			for (int j = 0; j < destinations.size(); j++) {
+				Path path = dijkstra.calcLeastCostPath(origins.get(i), destinations.get(j), 7 * 3600, null, null);
+				if (path == null) {
+					Assert.assertEquals(Float.POSITIVE_INFINITY, matrix.getCost(i, j), 0.0);
+					Assert.assertEquals(Float.POSITIVE_INFINITY, matrix.getTravelTime(i, j), 0.0);
+					continue;
+				}
+				found++;
+				double distance = 0;
+				for (Link link : path.links) {
+					distance += link.getLength();
+				}
+				Assert.assertEquals(path.travelCost, matrix.getCost(i, j), 1e-5 * path.travelCost + 1e-3);
+				Assert.assertEquals(path.travelTime, matrix.getTravelTime(i, j), 1e-5 * path.travelTime + 1e-3);
+				Assert.assertEquals(distance, matrix.getDistance(i, j), 1e-5 * distance + 1e-3);
+			}
+		}
+		Assert.assertTrue(found > 600);
+	}
+
+	@Test
+	public void testSameResultWithSeveralThreads() {
+		Network network = readNetwork("test/scenarios/berlin/network.xml.gz");
+		FreespeedTravelTimeAndDisutility calculator = new FreespeedTravelTimeAndDisutility(new PlanCalcScoreConfigGroup());
+		ContractionHierarchy hierarchy = ContractionHierarchy.create(new ArrayRoutingNetworkFactory(null).createRoutingNetwork(network));
+
+		List<Node> nodes = new ArrayList<>(network.getNodes().values());
+		Collections.shuffle(nodes, new Random(42));
+		List<Node> origins = nodes.subList(0, 50);
+		List<Node> destinations = nodes.subList(50, 80);
+		LeastCostPathMatrix expected = new LeastCostPathMatrixCalculator(hierarchy, calculator, calculator, 1)
+				.calcLeastCostPathMatrix(origins, destinations, 0, null, null);
+		LeastCostPathMatrix actual = new LeastCostPathMatrixCalculator(hierarchy, calculator, calculator, 4)
+				.calcLeastCostPathMatrix(origins, destinations, 0, null, null);
+		for (Value value : Value.values()) {
+			Assert.assertArrayEquals(expected.getValues(value), actual.getValues(value), 0.0f);
+		}
+	}
+
+	@Test
+	public void testToMatrix() {
+		Network network = readNetwork("test/scenarios/equil/network.xml");
+		FreespeedTravelTimeAndDisutility calculator = new FreespeedTravelTimeAndDisutility(new PlanCalcScoreConfigGroup());
+		Node node1 = network.getNodes().get(Id.create("1", Node.class));
+		Node node2 = network.getNodes().get(Id.create("2", Node.class));
+		Node node12 = network.getNodes().get(Id.create("12", Node.class));
+		LeastCostPathMatrix lcpMatrix = new LeastCostPathMatrixCalculator(network, calculator, calculator, 2)
+				.calcLeastCostPathMatrix(Arrays.asList(node1, node2), Arrays.asList(node2, node12), 0, null, null);
+
+		Assert.assertEquals(0.0f, lcpMatrix.getDistance(1, 0), 0.0f);
+		// node 1 -> node 2 is link 1 with a length of 10000
+		Assert.assertEquals(10000.0f, lcpMatrix.getDistance(0, 0), 0.0f);
+		Assert.assertTrue(lcpMatrix.getDistance(0, 1) > lcpMatrix.getDistance(1, 1));
+
+		Matrix matrix = lcpMatrix.toMatrix("distances", Value.DISTANCE);
+		Assert.assertEquals(2, matrix.getFromLocations().size());
+		Assert.assertEquals(10000.0, matrix.getEntry("1", "2").getValue(), 0.0);
+		Assert.assertEquals(lcpMatrix.getDistance(1, 1), matrix.getEntry("2", "12").getValue(), 0.0);
+
+		FloatMatrix floatMatrix = lcpMatrix.toFloatMatrix("distances", Value.DISTANCE);
+		Assert.assertEquals(Arrays.asList("1", "2"), floatMatrix.getFromZoneIds());
+		Assert.assertEquals(Arrays.asList("2", "12"), floatMatrix.getToZoneIds());
+		Assert.assertEquals(10000.0f, floatMatrix.getValue("1", "2"), 0.0f);
+		Assert.assertEquals(lcpMatrix.getDistance(1, 1), floatMatrix.getValue(1, 1), 0.0f);
+	}
+
+	private static Network readNetwork(final String file) {
+		Scenario scenario = ScenarioUtils.createScenario(ConfigUtils.createConfig());
+		new MatsimNetworkReader(scenario.getNetwork()).readFile(file);
+		return scenario.getNetwork();
+	}
+
+}
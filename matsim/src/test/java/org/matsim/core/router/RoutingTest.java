@@ -40,8 +40,10 @@ import org.matsim.core.population.algorithms.PersonAlgorithm;
 import org.matsim.core.population.io.PopulationReader;
 import org.matsim.core.router.costcalculators.FreespeedTravelTimeAndDisutility;
 import org.matsim.core.router.costcalculators.TravelDisutilityFactory;
+import org.matsim.core.router.priorityqueue.MinHeapType;
 import org.matsim.core.router.util.AStarEuclideanFactory;
 import org.matsim.core.router.util.AStarLandmarksFactory;
+import org.matsim.core.router.util.ContractionHierarchiesFactory;
 import org.matsim.core.router.util.DijkstraFactory;
 import org.matsim.core.router.util.FastAStarEuclideanFactory;
 import org.matsim.core.router.util.FastAStarLandmarksFactory;
@@ -172,6 +174,62 @@ public class RoutingTest  {
 		});
 	}
 
+	@Test
+	public void testFastDijkstraDaryMinHeap() {
+		doTest(new RouterProvider() {
+			@Override
+			public String getName() {
+				return "FastDijkstraDaryMinHeap";
+			}
+			@Override
+			public LeastCostPathCalculatorFactory getFactory(final Network network, final TravelDisutility costCalc, final TravelTime timeCalc) {
+				return new FastDijkstraFactory(null, MinHeapType.DARY);
+			}
+		});
+	}
+
+	@Test
+	public void testFastDijkstraRadixMinHeap() {
+		doTest(new RouterProvider() {
+			@Override
+			public String getName() {
+				return "FastDijkstraRadixMinHeap";
+			}
+			@Override
+			public LeastCostPathCalculatorFactory getFactory(final Network network, final TravelDisutility costCalc, final TravelTime timeCalc) {
+				return new FastDijkstraFactory(null, MinHeapType.RADIX);
+			}
+		});
+	}
+
+	@Test
+	public void testFastAStarLandmarksRadixMinHeap() {
+		doTest(new RouterProvider() {
+			@Override
+			public String getName() {
+				return "FastAStarLandmarksRadixMinHeap";
+			}
+			@Override
+			public LeastCostPathCalculatorFactory getFactory(final Network network, final TravelDisutility costCalc, final TravelTime timeCalc) {
+				return new FastAStarLandmarksFactory(network, costCalc, MinHeapType.RADIX);
+			}
+		});
+	}
+
+	@Test
+	public void testContractionHierarchies() {
+		doTest(new RouterProvider() {
+			@Override
+			public String getName() {
+				return "ContractionHierarchies";
+			}
+			@Override
+			public LeastCostPathCalculatorFactory getFactory(final Network network, final TravelDisutility costCalc, final TravelTime timeCalc) {
+				return new ContractionHierarchiesFactory(900);
+			}
+		});
+	}
+
 	private void doTest(final RouterProvider provider) {
 //		final Config config = loadConfig("test/input/" + this.getClass().getCanonicalName().replace('.', '/') + "/config.xml");
 		final Config config = ConfigUtils.loadConfig( utils.getClassInputDirectory() + "/config.xml" );
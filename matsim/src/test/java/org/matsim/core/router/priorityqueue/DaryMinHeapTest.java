@@ -0,0 +1,188 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * DaryMinHeapTest.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2016 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+package org.matsim.core.router.priorityqueue;
+
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class DaryMinHeapTest {
+
+	@Test
+	public void testAddPoll() {
+		MinHeap<DummyHeapEntry> pq = new DaryMinHeap<>(10);
+		DummyHeapEntry entry0 = new DummyHeapEntry(5);
+		DummyHeapEntry entry1 = new DummyHeapEntry(3);
+		DummyHeapEntry entry2 = new DummyHeapEntry(6);
+
+		Assert.assertTrue(pq.add(entry0, 5.0));
+		Assert.assertTrue(pq.add(entry1, 3.0));
+		Assert.assertTrue(pq.add(entry2, 3.0));
+		Assert.assertFalse(pq.add(entry2, 1.0)); // already contained
+		Assert.assertEquals(3, pq.size());
+
+		Assert.assertSame(entry1, pq.peek());
+		Assert.assertSame(entry1, pq.poll());
+		Assert.assertSame(entry2, pq.poll());
+		Assert.assertSame(entry0, pq.poll());
+		Assert.assertNull(pq.poll());
+		Assert.assertTrue(pq.isEmpty());
+	}
+
+	@Test(expected = NullPointerException.class)
+	public void testAdd_Null() {
+		new DaryMinHeap<DummyHeapEntry>(10).add(null, 1.0);
+	}
+
+	@Test
+	public void testDecreaseKey() {
+		MinHeap<DummyHeapEntry> pq = new DaryMinHeap<>(10);
+		DummyHeapEntry entry0 = new DummyHeapEntry(0);
+		DummyHeapEntry entry1 = new DummyHeapEntry(1);
+		pq.add(entry0, 5.0);
+		pq.add(entry1, 6.0);
+
+		Assert.assertFalse(pq.decreaseKey(entry1, 7.0));
+		Assert.assertTrue(pq.decreaseKey(entry1, 4.0));
+		Assert.assertSame(entry1, pq.poll());
+		Assert.assertTrue(pq.decreaseKey(entry1, 8.0)); // not contained anymore, so it is added
+		Assert.assertEquals(2, pq.size());
+		Assert.assertSame(entry0, pq.poll());
+		Assert.assertSame(entry1, pq.poll());
+	}
+
+	@Test
+	public void testRemove() {
+		MinHeap<DummyHeapEntry> pq = new DaryMinHeap<>(10);
+		DummyHeapEntry[] entries = new DummyHeapEntry[10];
+		for (int i = 0; i < 10; i++) {
+			entries[i] = new DummyHeapEntry(i);
+			pq.add(entries[i], 10 - i);
+		}
+		Assert.assertTrue(pq.remove(entries[9]));
+		Assert.assertFalse(pq.remove(entries[9]));
+		Assert.assertTrue(pq.remove(entries[4]));
+		Assert.assertFalse(pq.remove(null));
+		Assert.assertEquals(8, pq.size());
+		for (int i = 8; i >= 0; i--) {
+			if (i != 4) {
+				Assert.assertSame(entries[i], pq.poll());
+			}
+		}
+		Assert.assertTrue(pq.isEmpty());
+	}
+
+	@Test
+	public void testReset() {
+		MinHeap<DummyHeapEntry> pq = new DaryMinHeap<>(10);
+		DummyHeapEntry entry0 = new DummyHeapEntry(0);
+		pq.add(entry0, 1.0);
+		pq.add(new DummyHeapEntry(1), 2.0);
+		pq.reset();
+		Assert.assertEquals(0, pq.size());
+		Assert.assertNull(pq.peek());
+		Assert.assertTrue(pq.add(entry0, 3.0));
+		Assert.assertSame(entry0, pq.poll());
+	}
+
+	@Test
+	public void testIterator() {
+		MinHeap<DummyHeapEntry> pq = new DaryMinHeap<>(10);
+		pq.add(new DummyHeapEntry(0), 1.0);
+		pq.add(new DummyHeapEntry(1), 2.0);
+		pq.add(new DummyHeapEntry(2), 0.5);
+		int count = 0;
+		for (DummyHeapEntry entry : pq) {
+			Assert.assertNotNull(entry);
+			count++;
+		}
+		Assert.assertEquals(3, count);
+
+		Iterator<DummyHeapEntry> iter = pq.iterator();
+		iter.next();
+		pq.poll();
+		try {
+			iter.next();
+			Assert.fail("missing ConcurrentModificationException.");
+		} catch (ConcurrentModificationException e) {
+			// expected
+		}
+	}
+
+	/**
+	 * Performs the same random operations on a {@link BinaryMinHeap} and a {@link DaryMinHeap}, which must poll
+	 * the elements in the same order since both order elements with equal costs by their index.
+	 */
+	@Test
+	public void testSameOrderAsBinaryMinHeap() {
+		int n = 1000;
+		for (int fanout = 2; fanout <= 8; fanout++) {
+			Random random = new Random(fanout);
+			MinHeap<DummyHeapEntry> expected = new BinaryMinHeap<>(n);
+			MinHeap<DummyHeapEntry> actual = new DaryMinHeap<>(n, fanout);
+			DummyHeapEntry[] entries = new DummyHeapEntry[n];
+			for (int i = 0; i < n; i++) {
+				entries[i] = new DummyHeapEntry(i);
+			}
+			for (int step = 0; step < 20000; step++) {
+				DummyHeapEntry entry = entries[random.nextInt(n)];
+				// few distinct costs to get many ties
+				double cost = random.nextInt(50);
+				int op = random.nextInt(10);
+				if (op < 4) {
+					Assert.assertEquals(expected.add(entry, cost), actual.add(entry, cost));
+				} else if (op < 7) {
+					Assert.assertEquals(expected.decreaseKey(entry, cost), actual.decreaseKey(entry, cost));
+				} else if (op < 8) {
+					Assert.assertEquals(expected.remove(entry), actual.remove(entry));
+				} else {
+					Assert.assertSame(expected.poll(), actual.poll());
+				}
+				Assert.assertEquals(expected.size(), actual.size());
+			}
+			while (!expected.isEmpty()) {
+				Assert.assertSame(expected.poll(), actual.poll());
+			}
+			Assert.assertTrue(actual.isEmpty());
+		}
+	}
+
+	/*package*/ static class DummyHeapEntry implements HasIndex {
+
+		final int index;
+
+		public DummyHeapEntry(int index) {
+			this.index = index;
+		}
+
+		@Override
+		public int getArrayIndex() {
+			return this.index;
+		}
+
+		@Override
+		public String toString() {
+			return String.valueOf(this.index);
+		}
+	}
+}
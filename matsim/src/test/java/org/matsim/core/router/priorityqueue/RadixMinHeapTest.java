@@ -0,0 +1,264 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * RadixMinHeapTest.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2016 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+package org.matsim.core.router.priorityqueue;
+
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.matsim.core.router.priorityqueue.DaryMinHeapTest.DummyHeapEntry;
+
+public class RadixMinHeapTest {
+
+	@Test
+	public void testAddPoll() {
+		MinHeap<DummyHeapEntry> pq = new RadixMinHeap<>(10);
+		DummyHeapEntry entry0 = new DummyHeapEntry(5);
+		DummyHeapEntry entry1 = new DummyHeapEntry(3);
+		DummyHeapEntry entry2 = new DummyHeapEntry(6);
+
+		Assert.assertTrue(pq.add(entry0, 5.0));
+		Assert.assertTrue(pq.add(entry1, 3.0));
+		Assert.assertTrue(pq.add(entry2, 4.5));
+		Assert.assertFalse(pq.add(entry2, 1.0)); // already contained
+		Assert.assertEquals(3, pq.size());
+
+		Assert.assertSame(entry1, pq.peek());
+		Assert.assertSame(entry1, pq.poll());
+		Assert.assertSame(entry2, pq.peek());
+		Assert.assertSame(entry2, pq.poll());
+		Assert.assertSame(entry0, pq.poll());
+		Assert.assertNull(pq.poll());
+		Assert.assertNull(pq.peek());
+		Assert.assertTrue(pq.isEmpty());
+	}
+
+	@Test(expected = NullPointerException.class)
+	public void testAdd_Null() {
+		new RadixMinHeap<DummyHeapEntry>(10).add(null, 1.0);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testAdd_NaN() {
+		new RadixMinHeap<DummyHeapEntry>(10).add(new DummyHeapEntry(0), Double.NaN);
+	}
+
+	@Test
+	public void testEqualPriorities() {
+		MinHeap<DummyHeapEntry> pq = new RadixMinHeap<>(10);
+		for (int i = 0; i < 5; i++) {
+			pq.add(new DummyHeapEntry(i), 2.0);
+		}
+		pq.add(new DummyHeapEntry(5), 1.0);
+		pq.add(new DummyHeapEntry(6), 3.0);
+		Assert.assertEquals(5, pq.poll().getArrayIndex());
+		boolean[] polled = new boolean[5];
+		for (int i = 0; i < 5; i++) {
+			polled[pq.poll().getArrayIndex()] = true;
+		}
+		for (boolean p : polled) {
+			Assert.assertTrue(p);
+		}
+		Assert.assertEquals(6, pq.poll().getArrayIndex());
+	}
+
+	@Test
+	public void testDecreaseKey() {
+		MinHeap<DummyHeapEntry> pq = new RadixMinHeap<>(10);
+		DummyHeapEntry entry0 = new DummyHeapEntry(0);
+		DummyHeapEntry entry1 = new DummyHeapEntry(1);
+		pq.add(entry0, 5.0);
+		pq.add(entry1, 6.0);
+
+		Assert.assertFalse(pq.decreaseKey(entry1, 7.0));
+		Assert.assertTrue(pq.decreaseKey(entry1, 4.0));
+		Assert.assertSame(entry1, pq.poll());
+		Assert.assertTrue(pq.decreaseKey(entry1, 8.0)); // not contained anymore, so it is added
+		Assert.assertEquals(2, pq.size());
+		Assert.assertSame(entry0, pq.poll());
+		Assert.assertSame(entry1, pq.poll());
+	}
+
+	/**
+	 * Peeking must not raise the lowest priority which may still be added.
+	 */
+	@Test
+	public void testPeekThenAddLower() {
+		MinHeap<DummyHeapEntry> pq = new RadixMinHeap<>(10);
+		DummyHeapEntry entry0 = new DummyHeapEntry(0);
+		DummyHeapEntry entry1 = new DummyHeapEntry(1);
+		pq.add(entry0, 100.0);
+		Assert.assertSame(entry0, pq.peek());
+		pq.add(entry1, 10.0);
+		Assert.assertSame(entry1, pq.poll());
+		Assert.assertSame(entry0, pq.poll());
+	}
+
+	@Test
+	public void testNonMonotonePriority() {
+		MinHeap<DummyHeapEntry> pq = new RadixMinHeap<>(10);
+		DummyHeapEntry entry0 = new DummyHeapEntry(0);
+		DummyHeapEntry entry1 = new DummyHeapEntry(1);
+		DummyHeapEntry entry2 = new DummyHeapEntry(2);
+		pq.add(entry0, 10.0);
+		pq.add(entry1, 20.0);
+		Assert.assertSame(entry0, pq.poll());
+		// lower than the last polled priority
+		pq.add(entry2, 5.0);
+		pq.add(entry0, 15.0);
+		Assert.assertSame(entry2, pq.poll());
+		Assert.assertSame(entry0, pq.poll());
+		Assert.assertSame(entry1, pq.poll());
+	}
+
+	@Test
+	public void testNegativePriorities() {
+		MinHeap<DummyHeapEntry> pq = new RadixMinHeap<>(10);
+		double[] priorities = {3.0, -1.5, 0.0, -0.0, Double.POSITIVE_INFINITY, -1000.0, 0.25};
+		for (int i = 0; i < priorities.length; i++) {
+			pq.add(new DummyHeapEntry(i), priorities[i]);
+		}
+		Assert.assertEquals(5, pq.poll().getArrayIndex());
+		Assert.assertEquals(1, pq.poll().getArrayIndex());
+		int zero1 = pq.poll().getArrayIndex();
+		int zero2 = pq.poll().getArrayIndex();
+		Assert.assertEquals(5, zero1 + zero2); // 2 and 3 in any order
+		Assert.assertEquals(6, pq.poll().getArrayIndex());
+		Assert.assertEquals(0, pq.poll().getArrayIndex());
+		Assert.assertEquals(4, pq.poll().getArrayIndex());
+		Assert.assertTrue(pq.isEmpty());
+	}
+
+	@Test
+	public void testRemove() {
+		MinHeap<DummyHeapEntry> pq = new RadixMinHeap<>(10);
+		DummyHeapEntry[] entries = new DummyHeapEntry[10];
+		for (int i = 0; i < 10; i++) {
+			entries[i] = new DummyHeapEntry(i);
+			pq.add(entries[i], 10 - i);
+		}
+		Assert.assertTrue(pq.remove(entries[9]));
+		Assert.assertFalse(pq.remove(entries[9]));
+		Assert.assertTrue(pq.remove(entries[4]));
+		Assert.assertFalse(pq.remove(null));
+		Assert.assertEquals(8, pq.size());
+		for (int i = 8; i >= 0; i--) {
+			if (i != 4) {
+				Assert.assertSame(entries[i], pq.poll());
+			}
+		}
+		Assert.assertTrue(pq.isEmpty());
+	}
+
+	@Test
+	public void testReset() {
+		MinHeap<DummyHeapEntry> pq = new RadixMinHeap<>(10);
+		DummyHeapEntry entry0 = new DummyHeapEntry(0);
+		DummyHeapEntry entry1 = new DummyHeapEntry(1);
+		pq.add(entry0, 100.0);
+		pq.add(entry1, 200.0);
+		Assert.assertSame(entry0, pq.poll());
+		pq.reset();
+		Assert.assertEquals(0, pq.size());
+		Assert.assertNull(pq.peek());
+		// the last polled priority is reset as well
+		pq.add(entry1, 2.0);
+		pq.add(entry0, 1.0);
+		Assert.assertSame(entry0, pq.poll());
+		Assert.assertSame(entry1, pq.poll());
+	}
+
+	@Test
+	public void testIterator() {
+		MinHeap<DummyHeapEntry> pq = new RadixMinHeap<>(10);
+		pq.add(new DummyHeapEntry(0), 1.0);
+		pq.add(new DummyHeapEntry(1), 2.0);
+		pq.add(new DummyHeapEntry(2), 0.5);
+		int count = 0;
+		for (DummyHeapEntry entry : pq) {
+			Assert.assertNotNull(entry);
+			count++;
+		}
+		Assert.assertEquals(3, count);
+
+		Iterator<DummyHeapEntry> iter = pq.iterator();
+		iter.next();
+		pq.poll();
+		try {
+			iter.next();
+			Assert.fail("missing ConcurrentModificationException.");
+		} catch (ConcurrentModificationException e) {
+			// expected
+		}
+	}
+
+	/**
+	 * Simulates a search and checks that the elements are polled in the same order as from a
+	 * {@link BinaryMinHeap}. The priorities are random doubles, so there are no ties.
+	 */
+	@Test
+	public void testSameOrderAsBinaryMinHeap() {
+		int n = 2000;
+		Random random = new Random(4711);
+		MinHeap<DummyHeapEntry> expected = new BinaryMinHeap<>(n);
+		MinHeap<DummyHeapEntry> actual = new RadixMinHeap<>(n);
+		DummyHeapEntry[] entries = new DummyHeapEntry[n];
+		double[] costs = new double[n];
+		for (int i = 0; i < n; i++) {
+			entries[i] = new DummyHeapEntry(i);
+		}
+		for (int run = 0; run < 3; run++) {
+			expected.reset();
+			actual.reset();
+			boolean[] settled = new boolean[n];
+			double last = 0.0;
+			for (int i = 0; i < 50; i++) {
+				decreaseKey(expected, actual, entries[random.nextInt(n)], random.nextDouble() * 100, costs);
+			}
+			while (!expected.isEmpty()) {
+				Assert.assertEquals(expected.size(), actual.size());
+				DummyHeapEntry entry = expected.poll();
+				Assert.assertSame(entry, actual.poll());
+				settled[entry.getArrayIndex()] = true;
+				last = costs[entry.getArrayIndex()];
+				// relax a few neighbors which are not settled yet, sometimes with a lower priority than the last
+				for (int k = 0; k < 3; k++) {
+					int index = random.nextInt(n);
+					if (!settled[index]) {
+						double offset = random.nextInt(10) == 0 ? -10.0 : 0.0;
+						decreaseKey(expected, actual, entries[index], last + offset + random.nextDouble() * 50, costs);
+					}
+				}
+			}
+			Assert.assertTrue(actual.isEmpty());
+		}
+	}
+
+	private static void decreaseKey(MinHeap<DummyHeapEntry> expected, MinHeap<DummyHeapEntry> actual,
+			DummyHeapEntry entry, double cost, double[] costs) {
+		boolean decreased = expected.decreaseKey(entry, cost);
+		Assert.assertEquals(decreased, actual.decreaseKey(entry, cost));
+		if (decreased) {
+			costs[entry.getArrayIndex()] = cost;
+		}
+	}
+}
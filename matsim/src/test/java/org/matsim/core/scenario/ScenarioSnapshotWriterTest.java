@@ -0,0 +1,205 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * ScenarioSnapshotWriterTest.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2016 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.scenario;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.matsim.api.core.v01.Coord;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.Scenario;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.population.Activity;
+import org.matsim.api.core.v01.population.Leg;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.api.core.v01.population.Plan;
+import org.matsim.api.core.v01.population.PopulationFactory;
+import org.matsim.api.core.v01.population.Route;
+import org.matsim.core.config.Config;
+import org.matsim.core.network.NetworkUtils;
+import org.matsim.core.network.io.NetworkWriter;
+import org.matsim.core.population.PersonUtils;
+import org.matsim.core.population.io.PopulationWriter;
+import org.matsim.core.population.routes.GenericRouteImpl;
+import org.matsim.core.utils.misc.CRCChecksum;
+import org.matsim.facilities.ActivityFacility;
+import org.matsim.facilities.FacilitiesWriter;
+import org.matsim.households.HouseholdsWriterV10;
+import org.matsim.pt.transitSchedule.api.TransitScheduleWriter;
+import org.matsim.testcases.MatsimTestUtils;
+import org.matsim.vehicles.VehicleWriterV1;
+
+public class ScenarioSnapshotWriterTest {
+
+	@Rule public MatsimTestUtils utils = new MatsimTestUtils();
+
+	@Test
+	public void testWriteRead() {
+		Config config = this.utils.loadConfig("test/scenarios/equil/config.xml");
+		// enough persons for several chunks
+		config.plans().setInputFile("plans2000.xml.gz");
+		Scenario scenario = ScenarioUtils.loadScenario(config);
+		addSpecialCases(scenario);
+		String filename = this.utils.getOutputDirectory() + "snapshot.bin";
+		new ScenarioSnapshotWriter(scenario).write(filename);
+
+		Scenario read = ScenarioUtils.createScenario(config);
+		new ScenarioSnapshotReader(read).readFile(filename);
+		assertSameScenario(scenario, read, "read");
+		Link link = read.getNetwork().getLinks().get(Id.create("1", Link.class));
+		Assert.assertEquals("car", NetworkUtils.getType(link));
+		Assert.assertEquals(Collections.singleton("bike"), link.getAllowedModes());
+
+		// the chunks are decoded in parallel
+		config.global().setNumberOfThreads(3);
+		Scenario readInParallel = ScenarioUtils.createScenario(config);
+		new ScenarioSnapshotReader(readInParallel).readFile(filename);
+		assertSameScenario(scenario, readInParallel, "parallel");
+	}
+
+	@Test
+	public void testWriteRead_transitVehiclesHouseholds() {
+		Config config = this.utils.loadConfig("test/scenarios/pt-tutorial/config.xml");
+		config.vehicles().setVehiclesFile("test/input/org/matsim/vehicles/testVehicles.xml");
+		config.households().setInputFile("test/input/org/matsim/households/testHouseholds.xml");
+		config.global().setNumberOfThreads(2);
+		Scenario scenario = ScenarioUtils.loadScenario(config);
+		Assert.assertFalse(scenario.getTransitSchedule().getTransitLines().isEmpty());
+		Assert.assertFalse(scenario.getTransitVehicles().getVehicles().isEmpty());
+		Assert.assertFalse(scenario.getVehicles().getVehicles().isEmpty());
+		Assert.assertFalse(scenario.getHouseholds().getHouseholds().isEmpty());
+		Person person = scenario.getPopulation().getPersons().values().iterator().next();
+		PersonUtils.addTravelcard(person, "ga");
+		String filename = this.utils.getOutputDirectory() + "snapshot.bin";
+		new ScenarioSnapshotWriter(scenario).write(filename);
+
+		Scenario read = ScenarioUtils.createScenario(config);
+		new ScenarioSnapshotReader(read).readFile(filename);
+		String dir = this.utils.getOutputDirectory();
+		new TransitScheduleWriter(scenario.getTransitSchedule()).writeFile(dir + "expected_schedule.xml");
+		new TransitScheduleWriter(read.getTransitSchedule()).writeFile(dir + "read_schedule.xml");
+		Assert.assertEquals(CRCChecksum.getCRCFromFile(dir + "expected_schedule.xml"), CRCChecksum.getCRCFromFile(dir + "read_schedule.xml"));
+		new VehicleWriterV1(scenario.getTransitVehicles()).writeFile(dir + "expected_transitVehicles.xml");
+		new VehicleWriterV1(read.getTransitVehicles()).writeFile(dir + "read_transitVehicles.xml");
+		Assert.assertEquals(CRCChecksum.getCRCFromFile(dir + "expected_transitVehicles.xml"), CRCChecksum.getCRCFromFile(dir + "read_transitVehicles.xml"));
+		new VehicleWriterV1(scenario.getVehicles()).writeFile(dir + "expected_vehicles.xml");
+		new VehicleWriterV1(read.getVehicles()).writeFile(dir + "read_vehicles.xml");
+		Assert.assertEquals(CRCChecksum.getCRCFromFile(dir + "expected_vehicles.xml"), CRCChecksum.getCRCFromFile(dir + "read_vehicles.xml"));
+		new HouseholdsWriterV10(scenario.getHouseholds()).writeFile(dir + "expected_households.xml");
+		new HouseholdsWriterV10(read.getHouseholds()).writeFile(dir + "read_households.xml");
+		Assert.assertEquals(CRCChecksum.getCRCFromFile(dir + "expected_households.xml"), CRCChecksum.getCRCFromFile(dir + "read_households.xml"));
+		new PopulationWriter(scenario.getPopulation()).write(dir + "expected_plans.xml");
+		new PopulationWriter(read.getPopulation()).write(dir + "read_plans.xml");
+		Assert.assertEquals(CRCChecksum.getCRCFromFile(dir + "expected_plans.xml"), CRCChecksum.getCRCFromFile(dir + "read_plans.xml"));
+		Assert.assertEquals(Collections.singleton("ga"), PersonUtils.getTravelcards(read.getPopulation().getPersons().get(person.getId())));
+	}
+
+	@Test
+	public void testLoadScenario_snapshotFile() {
+		Config config = this.utils.loadConfig("test/scenarios/equil/config.xml");
+		String filename = this.utils.getOutputDirectory() + "snapshot.bin";
+		config.scenario().setSnapshotFile(filename);
+
+		Scenario scenario = ScenarioUtils.loadScenario(config);
+		Assert.assertTrue(new File(filename).exists());
+		String source = ScenarioSnapshotReader.readSource(filename);
+		Assert.assertTrue(source, source.contains("plans100.xml"));
+
+		// a snapshot of the same input files is used instead of the files
+		scenario.getPopulation().removePerson(Id.create("1", Person.class));
+		ScenarioSnapshotWriter writer = new ScenarioSnapshotWriter(scenario);
+		writer.setSource(source);
+		writer.write(filename);
+		Assert.assertEquals(99, ScenarioUtils.loadScenario(config).getPopulation().getPersons().size());
+
+		// a snapshot of other input files is replaced
+		writer.setSource("other input files");
+		writer.write(filename);
+		Assert.assertEquals(100, ScenarioUtils.loadScenario(config).getPopulation().getPersons().size());
+		Assert.assertEquals(source, ScenarioSnapshotReader.readSource(filename));
+	}
+
+	/**
+	 * Adds values which are not in the equil scenario.
+	 */
+	private static void addSpecialCases(final Scenario scenario) {
+		Link link = scenario.getNetwork().getLinks().get(Id.create("1", Link.class));
+		NetworkUtils.setType(link, "car");
+		NetworkUtils.setOrigId(link, "orig 1");
+		link.setAllowedModes(new HashSet<>(Arrays.asList("bike")));
+
+		PopulationFactory factory = scenario.getPopulation().getFactory();
+		Person person = factory.createPerson(Id.create("special", Person.class));
+		PersonUtils.setAge(person, 42);
+		PersonUtils.setSex(person, "f");
+		PersonUtils.setEmployed(person, false);
+		Plan plan = factory.createPlan();
+		plan.setScore(-12.5);
+		plan.setType("some type");
+		Activity home = factory.createActivityFromCoord("home", new Coord(1000.5, -20.25));
+		home.setFacilityId(Id.create("1", ActivityFacility.class));
+		home.setEndTime(7 * 3600);
+		plan.addActivity(home);
+		Leg leg = factory.createLeg("walk");
+		leg.setDepartureTime(7 * 3600);
+		Route route = new GenericRouteImpl(Id.create("1", Link.class), Id.create("20", Link.class));
+		route.setDistance(1234.5);
+		route.setTravelTime(600);
+		route.setRouteDescription("some description");
+		leg.setRoute(route);
+		plan.addLeg(leg);
+		Activity work = factory.createActivityFromLinkId("work", Id.create("20", Link.class));
+		work.setMaximumDuration(8 * 3600);
+		plan.addActivity(work);
+		person.addPlan(plan);
+		person.addPlan(factory.createPlan());
+		person.setSelectedPlan(plan);
+		scenario.getPopulation().addPerson(person);
+	}
+
+	private void assertSameScenario(final Scenario expected, final Scenario actual, final String name) {
+		Assert.assertEquals(expected.getNetwork().getCapacityPeriod(), actual.getNetwork().getCapacityPeriod(), 0.0);
+		String dir = this.utils.getOutputDirectory();
+		new NetworkWriter(expected.getNetwork()).write(dir + "expected_network.xml");
+		new NetworkWriter(actual.getNetwork()).write(dir + name + "_network.xml");
+		Assert.assertEquals(CRCChecksum.getCRCFromFile(dir + "expected_network.xml"), CRCChecksum.getCRCFromFile(dir + name + "_network.xml"));
+		new FacilitiesWriter(expected.getActivityFacilities()).write(dir + "expected_facilities.xml");
+		new FacilitiesWriter(actual.getActivityFacilities()).write(dir + name + "_facilities.xml");
+		Assert.assertEquals(CRCChecksum.getCRCFromFile(dir + "expected_facilities.xml"), CRCChecksum.getCRCFromFile(dir + name + "_facilities.xml"));
+		new PopulationWriter(expected.getPopulation()).write(dir + "expected_plans.xml");
+		new PopulationWriter(actual.getPopulation()).write(dir + name + "_plans.xml");
+		Assert.assertEquals(CRCChecksum.getCRCFromFile(dir + "expected_plans.xml"), CRCChecksum.getCRCFromFile(dir + name + "_plans.xml"));
+
+		Person person = actual.getPopulation().getPersons().get(Id.create("special", Person.class));
+		Assert.assertEquals(42, PersonUtils.getAge(person).intValue());
+		Assert.assertEquals(Boolean.FALSE, PersonUtils.isEmployed(person));
+		Assert.assertSame(person.getPlans().get(0), person.getSelectedPlan());
+		Leg leg = (Leg) person.getSelectedPlan().getPlanElements().get(1);
+		Assert.assertEquals("some description", leg.getRoute().getRouteDescription());
+		Assert.assertEquals(1234.5, leg.getRoute().getDistance(), 0.0);
+	}
+
+}
@@ -0,0 +1,138 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * ScoringFunctionsForPopulationBenchmark.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2016 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.scoring;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.log4j.Logger;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.Scenario;
+import org.matsim.api.core.v01.TransportMode;
+import org.matsim.api.core.v01.events.ActivityEndEvent;
+import org.matsim.api.core.v01.events.ActivityStartEvent;
+import org.matsim.api.core.v01.events.Event;
+import org.matsim.api.core.v01.events.LinkEnterEvent;
+import org.matsim.api.core.v01.events.LinkLeaveEvent;
+import org.matsim.api.core.v01.events.PersonArrivalEvent;
+import org.matsim.api.core.v01.events.PersonDepartureEvent;
+import org.matsim.api.core.v01.events.PersonEntersVehicleEvent;
+import org.matsim.api.core.v01.events.PersonLeavesVehicleEvent;
+import org.matsim.api.core.v01.events.VehicleEntersTrafficEvent;
+import org.matsim.api.core.v01.events.VehicleLeavesTrafficEvent;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.core.api.experimental.events.EventsManager;
+import org.matsim.core.config.Config;
+import org.matsim.core.config.ConfigUtils;
+import org.matsim.core.controler.ControlerListenerManagerImpl;
+import org.matsim.core.events.EventsUtils;
+import org.matsim.core.network.io.MatsimNetworkReader;
+import org.matsim.core.scenario.ScenarioUtils;
+import org.matsim.core.scoring.functions.CharyparNagelScoringFunctionFactory;
+import org.matsim.vehicles.Vehicle;
+
+/**
+ * Measures how many events per second {@link ScoringFunctionsForPopulation} scores with different numbers of
+ * threads.  The events are those of home-work-home car trips on the equil network, generated for a synthetic
+ * population.  Not a unit test; run the main method with the test classpath.  The optional arguments are the number
+ * of persons and the largest number of threads.
+ */
+public class ScoringFunctionsForPopulationBenchmark {
+
+	private static final Logger log = Logger.getLogger(ScoringFunctionsForPopulationBenchmark.class);
+
+	private static final String[] TO_WORK = {"1", "2", "7", "12", "14", "20"};
+	private static final String[] TO_HOME = {"20", "21", "22", "23", "1"};
+
+	public static void main(String[] args) {
+		int numberOfPersons = args.length > 0 ? Integer.parseInt(args[0]) : 100000;
+		int maxThreads = args.length > 1 ? Integer.parseInt(args[1]) : 8;
+
+		Config config = ConfigUtils.loadConfig("test/scenarios/equil/config.xml");
+		Scenario scenario = ScenarioUtils.createScenario(config);
+		new MatsimNetworkReader(scenario.getNetwork()).readFile("test/scenarios/equil/network.xml");
+		List<Event> events = new ArrayList<>();
+		for (int i = 0; i < numberOfPersons; i++) {
+			Id<Person> personId = Id.createPersonId(i);
+			scenario.getPopulation().addPerson(scenario.getPopulation().getFactory().createPerson(personId));
+			double time = 6 * 3600 + i % 3600;
+			time = addTrip(events, personId, Id.create(i, Vehicle.class), "h", "w", TO_WORK, time);
+			addTrip(events, personId, Id.create(i, Vehicle.class), "w", "h", TO_HOME, time + 8 * 3600);
+		}
+		log.info("persons: " + numberOfPersons + ", events: " + events.size());
+
+		for (int round = 0; round < 2; round++) {
+			// the first round is the warm-up
+			for (int threads = 1; threads <= maxThreads; threads *= 2) {
+				long start = System.nanoTime();
+				score(scenario, events, threads);
+				long time = System.nanoTime() - start;
+				if (round == 1) {
+					log.info(threads + " thread(s): " + (time / 1000000) + " ms, "
+							+ (long) (events.size() / (time / 1e9)) + " events/s");
+				}
+			}
+		}
+	}
+
+	private static double addTrip(List<Event> events, Id<Person> personId, Id<Vehicle> vehicleId, String fromType, String toType,
+			String[] route, double time) {
+		Id<Link> fromLinkId = Id.createLinkId(route[0]);
+		Id<Link> toLinkId = Id.createLinkId(route[route.length - 1]);
+		events.add(new ActivityEndEvent(time, personId, fromLinkId, null, fromType));
+		events.add(new PersonDepartureEvent(time, personId, fromLinkId, TransportMode.car));
+		events.add(new PersonEntersVehicleEvent(time, personId, vehicleId));
+		events.add(new VehicleEntersTrafficEvent(time, personId, fromLinkId, vehicleId, TransportMode.car, 1.0));
+		for (int i = 1; i < route.length; i++) {
+			time += 60;
+			events.add(new LinkLeaveEvent(time, vehicleId, Id.createLinkId(route[i - 1])));
+			events.add(new LinkEnterEvent(time, vehicleId, Id.createLinkId(route[i])));
+		}
+		time += 60;
+		events.add(new VehicleLeavesTrafficEvent(time, personId, toLinkId, vehicleId, TransportMode.car, 1.0));
+		events.add(new PersonLeavesVehicleEvent(time, personId, vehicleId));
+		events.add(new PersonArrivalEvent(time, personId, toLinkId, TransportMode.car));
+		events.add(new ActivityStartEvent(time, personId, toLinkId, null, toType));
+		return time;
+	}
+
+	private static void score(Scenario scenario, List<Event> simulatedEvents, int numberOfThreads) {
+		EventsManager events = EventsUtils.createEventsManager();
+		ControlerListenerManagerImpl controlerListenerManager = new ControlerListenerManagerImpl();
+		EventsToActivities eventsToActivities = new EventsToActivities();
+		EventsToLegs eventsToLegs = new EventsToLegs(scenario.getNetwork());
+		if (numberOfThreads == 1) {
+			// with more threads, each shard has its own
+			eventsToActivities = new EventsToActivities(controlerListenerManager, events);
+			eventsToLegs = new EventsToLegs(scenario.getNetwork(), events);
+		}
+		ScoringFunctionsForPopulation scoringFunctionsForPopulation = new ScoringFunctionsForPopulation(controlerListenerManager, events,
+				eventsToActivities, eventsToLegs, scenario.getConfig().plans(), scenario.getNetwork(), scenario.getPopulation(),
+				new CharyparNagelScoringFunctionFactory(scenario), numberOfThreads);
+		controlerListenerManager.fireControlerIterationStartsEvent(0);
+		for (Event event : simulatedEvents) {
+			events.processEvent(event);
+		}
+		controlerListenerManager.fireControlerAfterMobsimEvent(0);
+		scoringFunctionsForPopulation.finishScoringFunctions();
+	}
+}
@@ -0,0 +1,169 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * ScoringFunctionsForPopulationTest.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2016 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.scoring;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.Scenario;
+import org.matsim.api.core.v01.events.Event;
+import org.matsim.api.core.v01.events.PersonMoneyEvent;
+import org.matsim.api.core.v01.population.Activity;
+import org.matsim.api.core.v01.population.Leg;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.core.api.experimental.events.EventsManager;
+import org.matsim.core.config.Config;
+import org.matsim.core.controler.ControlerListenerManagerImpl;
+import org.matsim.core.events.EventsUtils;
+import org.matsim.core.events.handler.BasicEventHandler;
+import org.matsim.core.gbl.MatsimRandom;
+import org.matsim.core.mobsim.qsim.QSimUtils;
+import org.matsim.core.scenario.ScenarioUtils;
+import org.matsim.core.scoring.functions.CharyparNagelScoringFunctionFactory;
+import org.matsim.testcases.MatsimTestUtils;
+
+public class ScoringFunctionsForPopulationTest {
+
+	@Rule
+	public MatsimTestUtils utils = new MatsimTestUtils();
+
+	@Test
+	public void testShardedScoresEqualSerialScores() throws IOException {
+		Config config = utils.loadConfig("test/scenarios/equil/config.xml");
+		config.plans().setInputFile("plans2000.xml.gz");
+		assertShardedScoresEqualSerialScores(config);
+	}
+
+	@Test
+	public void testShardedScoresEqualSerialScoresWithTransit() throws IOException {
+		assertShardedScoresEqualSerialScores(utils.loadConfig("test/scenarios/pt-tutorial/config.xml"));
+	}
+
+	@Test(expected = RuntimeException.class)
+	public void testExceptionInShardPropagates() {
+		Config config = utils.loadConfig("test/scenarios/equil/config.xml");
+		Scenario scenario = ScenarioUtils.loadScenario(config);
+		EventsManager events = EventsUtils.createEventsManager();
+		ControlerListenerManagerImpl controlerListenerManager = new ControlerListenerManagerImpl();
+		ScoringFunctionsForPopulation scoringFunctionsForPopulation = new ScoringFunctionsForPopulation(controlerListenerManager, events,
+				new EventsToActivities(controlerListenerManager, events), new EventsToLegs(scenario.getNetwork(), events), config.plans(),
+				scenario.getNetwork(), scenario.getPopulation(), new ScoringFunctionFactory() {
+					@Override
+					public ScoringFunction createNewScoringFunction(Person person) {
+						return new ScoringFunction() {
+							@Override
+							public void handleActivity(Activity activity) {
+							}
+
+							@Override
+							public void handleLeg(Leg leg) {
+							}
+
+							@Override
+							public void agentStuck(double time) {
+							}
+
+							@Override
+							public void addMoney(double amount) {
+								throw new IllegalStateException();
+							}
+
+							@Override
+							public void finish() {
+							}
+
+							@Override
+							public double getScore() {
+								return 0;
+							}
+
+							@Override
+							public void handleEvent(Event event) {
+							}
+						};
+					}
+				}, 4);
+		controlerListenerManager.fireControlerIterationStartsEvent(0);
+		for (Id<Person> personId : scenario.getPopulation().getPersons().keySet()) {
+			events.processEvent(new PersonMoneyEvent(3600.0, personId, 3.4));
+		}
+		scoringFunctionsForPopulation.finishScoringFunctions();
+	}
+
+	private void assertShardedScoresEqualSerialScores(Config config) throws IOException {
+		MatsimRandom.reset(config.global().getRandomSeed());
+		Scenario scenario = ScenarioUtils.loadScenario(config);
+		final List<Event> simulatedEvents = new ArrayList<>();
+		EventsManager qsimEvents = EventsUtils.createEventsManager();
+		qsimEvents.addHandler(new BasicEventHandler() {
+			@Override
+			public void handleEvent(Event event) {
+				simulatedEvents.add(event);
+			}
+
+			@Override
+			public void reset(int iteration) {
+			}
+		});
+		QSimUtils.createDefaultQSim(scenario, qsimEvents).run();
+
+		ScoringFunctionsForPopulation serial = score(scenario, simulatedEvents, 1);
+		ScoringFunctionsForPopulation sharded = score(scenario, simulatedEvents, 4);
+
+		for (Id<Person> personId : scenario.getPopulation().getPersons().keySet()) {
+			Assert.assertEquals(serial.getScoringFunctionForAgent(personId).getScore(),
+					sharded.getScoringFunctionForAgent(personId).getScore(), 0.0);
+		}
+		String serialFile = utils.getOutputDirectory() + "serial.txt";
+		String shardedFile = utils.getOutputDirectory() + "sharded.txt";
+		serial.writePartialScores(serialFile);
+		sharded.writePartialScores(shardedFile);
+		Assert.assertEquals(Files.readAllLines(Paths.get(serialFile), StandardCharsets.UTF_8),
+				Files.readAllLines(Paths.get(shardedFile), StandardCharsets.UTF_8));
+	}
+
+	private static ScoringFunctionsForPopulation score(Scenario scenario, List<Event> simulatedEvents, int numberOfThreads) {
+		EventsManager events = EventsUtils.createEventsManager();
+		ControlerListenerManagerImpl controlerListenerManager = new ControlerListenerManagerImpl();
+		EventsToActivities eventsToActivities = new EventsToActivities(controlerListenerManager, events);
+		EventsToLegs eventsToLegs = new EventsToLegs(scenario.getNetwork(), events);
+		eventsToLegs.setTransitSchedule(scenario.getTransitSchedule());
+		ScoringFunctionsForPopulation scoringFunctionsForPopulation = new ScoringFunctionsForPopulation(controlerListenerManager, events,
+				eventsToActivities, eventsToLegs, scenario.getConfig().plans(), scenario.getNetwork(), scenario.getPopulation(),
+				new CharyparNagelScoringFunctionFactory(scenario), numberOfThreads);
+		scoringFunctionsForPopulation.setTransitSchedule(scenario.getTransitSchedule());
+		controlerListenerManager.fireControlerIterationStartsEvent(0);
+		for (Event event : simulatedEvents) {
+			events.processEvent(event);
+		}
+		controlerListenerManager.fireControlerAfterMobsimEvent(0);
+		scoringFunctionsForPopulation.finishScoringFunctions();
+		return scoringFunctionsForPopulation;
+	}
+}
@@ -0,0 +1,283 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * ConcurrentTravelTimeCalculatorTest.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2016 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+package org.matsim.core.trafficmonitoring;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.Scenario;
+import org.matsim.api.core.v01.events.Event;
+import org.matsim.api.core.v01.events.LinkEnterEvent;
+import org.matsim.api.core.v01.events.LinkLeaveEvent;
+import org.matsim.api.core.v01.events.VehicleEntersTrafficEvent;
+import org.matsim.api.core.v01.events.VehicleLeavesTrafficEvent;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.core.config.ConfigUtils;
+import org.matsim.core.config.groups.TravelTimeCalculatorConfigGroup;
+import org.matsim.core.events.EventsUtils;
+import org.matsim.core.api.experimental.events.EventsManager;
+import org.matsim.core.network.io.MatsimNetworkReader;
+import org.matsim.core.router.util.LinkToLinkTravelTime;
+import org.matsim.core.router.util.TravelTime;
+import org.matsim.core.scenario.ScenarioUtils;
+import org.matsim.vehicles.Vehicle;
+
+public class ConcurrentTravelTimeCalculatorTest {
+
+	private static final int N_VEHICLES = 2000;
+	private static final int N_THREADS = 4;
+
+	@Test
+	public void testSameTravelTimesAsTravelTimeCalculator() {
+		Network network = loadNetwork();
+		TravelTimeCalculatorConfigGroup config = createConfig();
+		List<List<Event>> events = createEvents(network, new Random(4711));
+
+		TravelTimeCalculator expected = TravelTimeCalculator.create(network, config);
+		ConcurrentTravelTimeCalculator testee = new ConcurrentTravelTimeCalculator(network, config);
+		EventsManager manager = EventsUtils.createEventsManager();
+		manager.addHandler(expected);
+		manager.addHandler(testee);
+		for (Event event : sortByTime(events)) {
+			manager.processEvent(event);
+		}
+
+		assertSameTravelTimes(network, expected, testee.getLinkTravelTimes(), testee.getLinkToLinkTravelTimes());
+		assertSameTravelTimes(network, expected, testee.createSnapshot(), testee.createSnapshot());
+	}
+
+	@Test
+	public void testConcurrentEventHandling() throws InterruptedException {
+		Network network = loadNetwork();
+		TravelTimeCalculatorConfigGroup config = createConfig();
+		final List<List<Event>> events = createEvents(network, new Random(42));
+
+		TravelTimeCalculator expected = TravelTimeCalculator.create(network, config);
+		EventsManager manager = EventsUtils.createEventsManager();
+		manager.addHandler(expected);
+		for (Event event : sortByTime(events)) {
+			manager.processEvent(event);
+		}
+
+		final ConcurrentTravelTimeCalculator testee = new ConcurrentTravelTimeCalculator(network, config);
+		Thread[] threads = new Thread[N_THREADS];
+		for (int t = 0; t < N_THREADS; t++) {
+			final int thread = t;
+			threads[t] = new Thread() {
+				@Override
+				public void run() {
+					// each thread handles the events of every N_THREADS-th vehicle, in order
+					for (int v = thread; v < events.size(); v += N_THREADS) {
+						for (Event event : events.get(v)) {
+							handle(testee, event);
+						}
+					}
+				}
+			};
+			threads[t].start();
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+
+		TravelTimeSnapshot snapshot = testee.createSnapshot();
+		assertSameTravelTimes(network, expected, snapshot, snapshot);
+	}
+
+	@Test
+	public void testSnapshotIsImmutable() {
+		Network network = loadNetwork();
+		Link link = network.getLinks().get(Id.createLinkId(1));
+		ConcurrentTravelTimeCalculator testee = new ConcurrentTravelTimeCalculator(network, createConfig());
+		double freeSpeedTravelTime = link.getLength() / link.getFreespeed();
+
+		TravelTimeSnapshot empty = testee.createSnapshot();
+		Assert.assertEquals(freeSpeedTravelTime, empty.getLinkTravelTime(link, 100.0, null, null), 1e-10);
+
+		Id<Vehicle> vehicleId = Id.createVehicleId(1);
+		testee.handleEvent(new LinkEnterEvent(100.0, vehicleId, link.getId()));
+		testee.handleEvent(new LinkLeaveEvent(400.0, vehicleId, link.getId()));
+
+		TravelTimeSnapshot snapshot = testee.createSnapshot();
+		Assert.assertEquals(freeSpeedTravelTime, empty.getLinkTravelTime(link, 100.0, null, null), 1e-10);
+		Assert.assertEquals(300.0, snapshot.getLinkTravelTime(link, 100.0, null, null), 1e-10);
+		Assert.assertEquals(300.0, testee.getLinkTravelTimes().getLinkTravelTime(link, 100.0, null, null), 1e-10);
+
+		// the travel times of a link are computed again when it is read after new observations, not copied into the snapshot
+		testee.handleEvent(new LinkEnterEvent(150.0, vehicleId, link.getId()));
+		testee.handleEvent(new LinkLeaveEvent(250.0, vehicleId, link.getId()));
+		Assert.assertEquals(200.0, testee.getLinkTravelTime(link, 100.0), 1e-10);
+		Assert.assertEquals(300.0, snapshot.getLinkTravelTime(link, 100.0, null, null), 1e-10);
+
+		testee.reset(1);
+		Assert.assertEquals(300.0, snapshot.getLinkTravelTime(link, 100.0, null, null), 1e-10);
+		Assert.assertEquals(freeSpeedTravelTime, testee.getLinkTravelTime(link, 100.0), 1e-10);
+	}
+
+	@Test
+	public void testReadsWhileHandlingEvents() throws InterruptedException {
+		final Network network = loadNetwork();
+		TravelTimeCalculatorConfigGroup config = createConfig();
+		final List<List<Event>> events = createEvents(network, new Random(7));
+
+		TravelTimeCalculator expected = TravelTimeCalculator.create(network, config);
+		EventsManager manager = EventsUtils.createEventsManager();
+		manager.addHandler(expected);
+		for (Event event : sortByTime(events)) {
+			manager.processEvent(event);
+		}
+
+		final ConcurrentTravelTimeCalculator testee = new ConcurrentTravelTimeCalculator(network, config);
+		final TravelTime travelTimes = testee.getLinkTravelTimes();
+		final AtomicBoolean done = new AtomicBoolean(false);
+		Thread reader = new Thread() {
+			@Override
+			public void run() {
+				while (!done.get()) {
+					for (Link link : network.getLinks().values()) {
+						travelTimes.getLinkTravelTime(link, 8 * 3600, null, null);
+					}
+				}
+			}
+		};
+		reader.start();
+		for (List<Event> vehicleEvents : events) {
+			for (Event event : vehicleEvents) {
+				handle(testee, event);
+			}
+		}
+		done.set(true);
+		reader.join();
+
+		// no observation may get lost between two reads of the same link
+		assertSameTravelTimes(network, expected, travelTimes, testee.getLinkToLinkTravelTimes());
+	}
+
+	@Test
+	public void testFilterModes() {
+		Network network = loadNetwork();
+		Link link = network.getLinks().get(Id.createLinkId(1));
+		TravelTimeCalculatorConfigGroup config = createConfig();
+		config.setAnalyzedModes("car");
+		config.setFilterModes(true);
+		ConcurrentTravelTimeCalculator testee = new ConcurrentTravelTimeCalculator(network, config);
+
+		Id<Vehicle> car = Id.createVehicleId(1);
+		Id<Vehicle> bike = Id.createVehicleId(2);
+		testee.handleEvent(new VehicleEntersTrafficEvent(100.0, Id.createPersonId(1), link.getId(), car, "car", 1.0));
+		testee.handleEvent(new VehicleEntersTrafficEvent(100.0, Id.createPersonId(2), link.getId(), bike, "bike", 1.0));
+		testee.handleEvent(new LinkEnterEvent(100.0, car, link.getId()));
+		testee.handleEvent(new LinkEnterEvent(100.0, bike, link.getId()));
+		testee.handleEvent(new LinkLeaveEvent(200.0, car, link.getId()));
+		testee.handleEvent(new LinkLeaveEvent(900.0, bike, link.getId()));
+
+		Assert.assertEquals(100.0, testee.getLinkTravelTime(link, 100.0), 1e-10);
+	}
+
+	private static TravelTimeCalculatorConfigGroup createConfig() {
+		TravelTimeCalculatorConfigGroup config = ConfigUtils.createConfig().travelTimeCalculator();
+		config.setCalculateLinkToLinkTravelTimes(true);
+		config.setTraveltimeBinSize(300);
+		return config;
+	}
+
+	private static Network loadNetwork() {
+		Scenario scenario = ScenarioUtils.createScenario(ConfigUtils.createConfig());
+		new MatsimNetworkReader(scenario.getNetwork()).readFile("test/scenarios/equil/network.xml");
+		return scenario.getNetwork();
+	}
+
+	/**
+	 * Lets every vehicle drive a random sequence of links, with whole second travel times so the sums do not
+	 * depend on the order in which they are added up.
+	 */
+	private static List<List<Event>> createEvents(final Network network, final Random random) {
+		List<Link> links = new ArrayList<>(network.getLinks().values());
+		List<List<Event>> events = new ArrayList<>();
+		for (int v = 0; v < N_VEHICLES; v++) {
+			List<Event> vehicleEvents = new ArrayList<>();
+			Id<Vehicle> vehicleId = Id.createVehicleId("ttc" + v);
+			Link link = links.get(random.nextInt(links.size()));
+			double time = random.nextInt(24 * 3600);
+			vehicleEvents.add(new VehicleEntersTrafficEvent(time, Id.createPersonId(v), link.getId(), vehicleId, "car", 1.0));
+			for (int i = random.nextInt(10); i >= 0 && !link.getToNode().getOutLinks().isEmpty(); i--) {
+				time += 1 + random.nextInt(1200);
+				vehicleEvents.add(new LinkLeaveEvent(time, vehicleId, link.getId()));
+				List<Link> outLinks = new ArrayList<>(link.getToNode().getOutLinks().values());
+				link = outLinks.get(random.nextInt(outLinks.size()));
+				vehicleEvents.add(new LinkEnterEvent(time, vehicleId, link.getId()));
+			}
+			time += 1 + random.nextInt(600);
+			vehicleEvents.add(new VehicleLeavesTrafficEvent(time, Id.createPersonId(v), link.getId(), vehicleId, "car", 1.0));
+			events.add(vehicleEvents);
+		}
+		return events;
+	}
+
+	private static List<Event> sortByTime(final List<List<Event>> events) {
+		List<Event> all = new ArrayList<>();
+		for (List<Event> vehicleEvents : events) {
+			all.addAll(vehicleEvents);
+		}
+		// stable, so the events of each vehicle keep their order
+		Collections.sort(all, new Comparator<Event>() {
+			@Override
+			public int compare(Event e1, Event e2) {
+				return Double.compare(e1.getTime(), e2.getTime());
+			}
+		});
+		return all;
+	}
+
+	private static void handle(final ConcurrentTravelTimeCalculator calculator, final Event event) {
+		if (event instanceof LinkEnterEvent) {
+			calculator.handleEvent((LinkEnterEvent) event);
+		} else if (event instanceof LinkLeaveEvent) {
+			calculator.handleEvent((LinkLeaveEvent) event);
+		} else if (event instanceof VehicleEntersTrafficEvent) {
+			calculator.handleEvent((VehicleEntersTrafficEvent) event);
+		} else if (event instanceof VehicleLeavesTrafficEvent) {
+			calculator.handleEvent((VehicleLeavesTrafficEvent) event);
+		}
+	}
+
+	private static void assertSameTravelTimes(final Network network, final TravelTimeCalculator expected,
+			final TravelTime travelTimes, final LinkToLinkTravelTime linkToLinkTravelTimes) {
+		for (Link link : network.getLinks().values()) {
+			for (int slot = 0; slot < expected.getNumSlots(); slot++) {
+				double time = slot * expected.getTimeSlice() + 10;
+				Assert.assertEquals(expected.getLinkTravelTime(link.getId(), time), travelTimes.getLinkTravelTime(link, time, null, null), 1e-8);
+				for (Link toLink : link.getToNode().getOutLinks().values()) {
+					Assert.assertEquals(expected.getLinkToLinkTravelTime(link.getId(), toLink.getId(), time),
+							linkToLinkTravelTimes.getLinkToLinkTravelTime(link, toLink, time), 1e-8);
+				}
+			}
+		}
+	}
+
+}
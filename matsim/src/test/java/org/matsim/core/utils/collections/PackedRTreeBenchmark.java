@@ -0,0 +1,154 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * PackedRTreeBenchmark.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2016 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.utils.collections;
+
+import java.util.Random;
+
+import org.apache.log4j.Logger;
+
+/**
+ * Compares {@link PackedRTree} with {@link QuadTree} for random points, like facilities of a region: the time to
+ * build them, the memory they retain and the query times. Not a unit test; run the main method with the test
+ * classpath. The optional arguments are the number of points (e.g. 10000000, with a heap of several GB) and the
+ * number of queries.
+ */
+public class PackedRTreeBenchmark {
+
+	private static final Logger log = Logger.getLogger(PackedRTreeBenchmark.class);
+
+	private static final double SIZE = 100000.0;
+
+	public static void main(String[] args) {
+		int numberOfPoints = args.length > 0 ? Integer.parseInt(args[0]) : 1000000;
+		int numberOfQueries = args.length > 1 ? Integer.parseInt(args[1]) : 200000;
+
+		Random random = new Random(4711);
+		double[] xs = new double[numberOfPoints];
+		double[] ys = new double[numberOfPoints];
+		Integer[] values = new Integer[numberOfPoints];
+		for (int i = 0; i < numberOfPoints; i++) {
+			// clustered, like facilities around some centers
+			double cx = (i % 50) * SIZE / 50;
+			double cy = ((i / 50) % 50) * SIZE / 50;
+			xs[i] = cx + random.nextGaussian() * 3000;
+			ys[i] = cy + random.nextGaussian() * 3000;
+			values[i] = i;
+		}
+		double[] qx = new double[numberOfQueries];
+		double[] qy = new double[numberOfQueries];
+		for (int i = 0; i < numberOfQueries; i++) {
+			qx[i] = random.nextDouble() * SIZE;
+			qy[i] = random.nextDouble() * SIZE;
+		}
+
+		// the packed tree first, the quad tree leaves some memory behind which would distort the measurement
+		runPackedRTree(xs, ys, values, qx, qy);
+		runQuadTree(xs, ys, values, qx, qy);
+	}
+
+	private static void runQuadTree(double[] xs, double[] ys, Integer[] values, double[] qx, double[] qy) {
+		int numberOfPoints = xs.length;
+		int numberOfQueries = qx.length;
+		long memory = usedMemory();
+		long start = System.nanoTime();
+		QuadTree<Integer> quadTree = new QuadTree<>(-SIZE, -SIZE, 2 * SIZE, 2 * SIZE);
+		for (int i = 0; i < numberOfPoints; i++) {
+			quadTree.put(xs[i], ys[i], values[i]);
+		}
+		log.info("QuadTree: built in " + (System.nanoTime() - start) / 1000000 + " ms, " + (usedMemory() - memory) / 1024 / 1024 + " MB");
+		for (int round = 0; round < 2; round++) {
+			// the first round is the warm-up
+			start = System.nanoTime();
+			long sum = 0;
+			for (int i = 0; i < numberOfQueries; i++) {
+				sum += quadTree.getClosest(qx[i], qy[i]);
+			}
+			long closestTime = System.nanoTime() - start;
+			start = System.nanoTime();
+			long found = 0;
+			for (int i = 0; i < numberOfQueries / 10; i++) {
+				found += quadTree.getDisk(qx[i], qy[i], 500).size();
+			}
+			if (round == 1) {
+				log.info("QuadTree: getClosest " + closestTime / numberOfQueries + " ns (" + sum + "), getDisk(500) "
+						+ (System.nanoTime() - start) / (numberOfQueries / 10) + " ns (" + found + ")");
+			}
+		}
+		if (quadTree.size() != numberOfPoints) {
+			throw new IllegalStateException();
+		}
+	}
+
+	private static void runPackedRTree(double[] xs, double[] ys, Integer[] values, double[] qx, double[] qy) {
+		int numberOfPoints = xs.length;
+		int numberOfQueries = qx.length;
+		long memory = usedMemory();
+		long start = System.nanoTime();
+		PackedRTree.Builder<Integer> builder = new PackedRTree.Builder<>();
+		for (int i = 0; i < numberOfPoints; i++) {
+			builder.put(xs[i], ys[i], values[i]);
+		}
+		PackedRTree<Integer> tree = builder.build();
+		builder = null;
+		long buildTime = System.nanoTime() - start;
+		log.info("PackedRTree: built in " + buildTime / 1000000 + " ms, " + (usedMemory() - memory) / 1024 / 1024 + " MB");
+		for (int round = 0; round < 2; round++) {
+			start = System.nanoTime();
+			long sum = 0;
+			for (int i = 0; i < numberOfQueries; i++) {
+				sum += tree.getClosest(qx[i], qy[i]);
+			}
+			long closestTime = System.nanoTime() - start;
+			start = System.nanoTime();
+			long bulkSum = 0;
+			for (Integer value : tree.getClosest(qx, qy)) {
+				bulkSum += value;
+			}
+			long bulkTime = System.nanoTime() - start;
+			start = System.nanoTime();
+			long found = 0;
+			for (int i = 0; i < numberOfQueries / 10; i++) {
+				found += tree.getDisk(qx[i], qy[i], 500).size();
+			}
+			long diskTime = System.nanoTime() - start;
+			start = System.nanoTime();
+			for (int i = 0; i < numberOfQueries / 10; i++) {
+				tree.getKNearest(qx[i], qy[i], 10);
+			}
+			if (round == 1) {
+				log.info("PackedRTree: getClosest " + closestTime / numberOfQueries + " ns (" + sum + "), bulk getClosest "
+						+ bulkTime / numberOfQueries + " ns (" + bulkSum + "), getDisk(500) " + diskTime / (numberOfQueries / 10) + " ns ("
+						+ found + "), getKNearest(10) " + (System.nanoTime() - start) / (numberOfQueries / 10) + " ns");
+			}
+		}
+		if (tree.size() != numberOfPoints) {
+			throw new IllegalStateException();
+		}
+	}
+
+	private static long usedMemory() {
+		for (int i = 0; i < 3; i++) {
+			System.gc();
+		}
+		return Runtime.getRuntime().totalMemory() - Runtime.getRuntime().freeMemory();
+	}
+
+}
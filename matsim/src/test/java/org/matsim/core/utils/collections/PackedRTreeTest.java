@@ -0,0 +1,188 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * PackedRTreeTest.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2016 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.utils.collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Test for {@link PackedRTree}, mostly by comparing it to the results of a search through all elements.
+ */
+public class PackedRTreeTest {
+
+	@Test
+	public void testEmpty() {
+		PackedRTree<String> tree = new PackedRTree.Builder<String>().build();
+		assertEquals(0, tree.size());
+		assertNull(tree.getClosest(0, 0));
+		assertTrue(tree.getKNearest(0, 0, 3).isEmpty());
+		assertTrue(tree.getDisk(0, 0, 100).isEmpty());
+		assertTrue(tree.getRectangle(-10, -10, 10, 10, new ArrayList<String>()).isEmpty());
+		assertNull(tree.getClosest(new double[] {1}, new double[] {1}).get(0));
+	}
+
+	@Test
+	public void testSmallTree() {
+		PackedRTree<String> tree = new PackedRTree.Builder<String>()
+				.put(10.0, 10.0, "10.0, 10.0")
+				.put(15.0, 15.0, "15.0, 15.0")
+				.put(-15.0, 0.0, "-15.0, 0.0")
+				.put(20.0, 10.0, "20.0, 10.0")
+				.put(100.0, 0.0, "100.0, 0.0")
+				.put(15.0, 15.0, "15.0, 15.0 B")
+				.build();
+		assertEquals(6, tree.size());
+		assertEquals("10.0, 10.0", tree.getClosest(0.0, 0.0));
+		assertEquals("-15.0, 0.0", tree.getClosest(-5.0, 0.0));
+		assertEquals("15.0, 15.0", tree.getClosest(16.0, 16.0)); // the one added first
+		assertEquals("100.0, 0.0", tree.getClosest(200.0, 0.0));
+
+		List<String> nearest = tree.getKNearest(14.0, 14.0, 3);
+		assertEquals(3, nearest.size());
+		assertEquals("15.0, 15.0", nearest.get(0));
+		assertEquals("15.0, 15.0 B", nearest.get(1));
+		assertEquals("10.0, 10.0", nearest.get(2));
+		assertEquals(6, tree.getKNearest(14.0, 14.0, 10).size());
+		assertEquals(2, tree.getKNearest(14.0, 14.0, 10, 2.0).size());
+
+		Collection<String> disk = tree.getDisk(10.0, 10.0, 10.0);
+		assertEquals(4, disk.size());
+		assertTrue(disk.contains("20.0, 10.0"));
+
+		Collection<String> rect = tree.getRectangle(10.0, 10.0, 20.0, 20.0, new ArrayList<String>());
+		assertEquals(4, rect.size());
+		assertTrue(rect.contains("20.0, 10.0"));
+	}
+
+	@Test
+	public void testRandomPoints() {
+		Random random = new Random(4711);
+		int n = 5000;
+		double[] xs = new double[n];
+		double[] ys = new double[n];
+		PackedRTree.Builder<Integer> builder = new PackedRTree.Builder<>();
+		for (int i = 0; i < n; i++) {
+			// round the coordinates to get some points at the same location
+			xs[i] = Math.round(random.nextDouble() * 1000);
+			ys[i] = Math.round(random.nextDouble() * 500);
+			builder.put(xs[i], ys[i], i);
+		}
+		PackedRTree<Integer> tree = builder.build();
+
+		double[] qx = new double[500];
+		double[] qy = new double[500];
+		for (int q = 0; q < qx.length; q++) {
+			qx[q] = random.nextDouble() * 1200 - 100;
+			qy[q] = random.nextDouble() * 700 - 100;
+		}
+		List<Integer> bulk = tree.getClosest(qx, qy);
+		for (int q = 0; q < qx.length; q++) {
+			double x = qx[q];
+			double y = qy[q];
+			int closest = 0;
+			for (int i = 1; i < n; i++) {
+				if (distance(xs[i], ys[i], x, y) < distance(xs[closest], ys[closest], x, y)) {
+					closest = i;
+				}
+			}
+			assertEquals(closest, tree.getClosest(x, y).intValue());
+			assertEquals(closest, bulk.get(q).intValue());
+
+			List<Integer> nearest = tree.getKNearest(x, y, 20);
+			assertEquals(20, nearest.size());
+			assertEquals(closest, nearest.get(0).intValue());
+			for (int i = 1; i < nearest.size(); i++) {
+				assertTrue(distance(xs[nearest.get(i - 1)], ys[nearest.get(i - 1)], x, y) <= distance(xs[nearest.get(i)], ys[nearest.get(i)], x, y));
+			}
+			double last = distance(xs[nearest.get(19)], ys[nearest.get(19)], x, y);
+			int closer = 0;
+			for (int i = 0; i < n; i++) {
+				if (distance(xs[i], ys[i], x, y) < last) {
+					closer++;
+				}
+			}
+			assertTrue(closer < 20);
+
+			Collection<Integer> disk = tree.getDisk(x, y, 30);
+			Collection<Integer> rect = tree.getRectangle(x - 30, y - 30, x + 30, y + 30, new HashSet<Integer>());
+			int inDisk = 0;
+			int inRect = 0;
+			for (int i = 0; i < n; i++) {
+				if (distance(xs[i], ys[i], x, y) <= 30) {
+					assertTrue(disk.contains(i));
+					inDisk++;
+				}
+				if (Math.abs(xs[i] - x) <= 30 && Math.abs(ys[i] - y) <= 30) {
+					assertTrue(rect.contains(i));
+					inRect++;
+				}
+			}
+			assertEquals(inDisk, disk.size());
+			assertEquals(inRect, rect.size());
+		}
+	}
+
+	@Test
+	public void testElementDistance() {
+		// line segments from (x1,y1) to (x2,y2)
+		final double[][] segments = new double[][] {{0, 0, 1000, 0}, {0, 0, 0, 1000}, {1000, 0, 0, 0}, {500, 100, 900, 500}};
+		PackedRTree.Builder<double[]> builder = new PackedRTree.Builder<>();
+		for (double[] segment : segments) {
+			builder.put(segment[0], segment[1], segment[2], segment[3], segment);
+		}
+		builder.setElementDistance(new PackedRTree.ElementDistance<double[]>() {
+			@Override
+			public double calcDistance(double x, double y, double[] segment) {
+				return distanceToSegment(x, y, segment);
+			}
+		});
+		PackedRTree<double[]> tree = builder.build();
+		assertEquals(segments[0], tree.getClosest(250, 10)); // the same distance as segments[2], but added first
+		assertEquals(segments[1], tree.getClosest(10, 300));
+		assertEquals(segments[3], tree.getClosest(700, 310));
+		assertEquals(segments[0], tree.getClosest(880, 120)); // within the bounds of segments[3], but closer to segments[0]
+		assertEquals(2, tree.getDisk(500, 5, 10).size());
+		List<double[]> nearest = tree.getKNearest(250, 10, 4);
+		assertEquals(segments[0], nearest.get(0));
+		assertEquals(segments[2], nearest.get(1));
+	}
+
+	private static double distance(double x1, double y1, double x2, double y2) {
+		return Math.sqrt((x1 - x2) * (x1 - x2) + (y1 - y2) * (y1 - y2));
+	}
+
+	private static double distanceToSegment(double x, double y, double[] segment) {
+		double dx = segment[2] - segment[0];
+		double dy = segment[3] - segment[1];
+		double u = Math.max(0, Math.min(1, ((x - segment[0]) * dx + (y - segment[1]) * dy) / (dx * dx + dy * dy)));
+		return distance(x, y, segment[0] + u * dx, segment[1] + u * dy);
+	}
+
+}
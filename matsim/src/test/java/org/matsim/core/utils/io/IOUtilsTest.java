@@ -22,14 +22,21 @@ package org.matsim.core.utils.io;
 import java.io.BufferedReader;
 import java.io.BufferedWriter;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InputStreamReader;
 import java.io.OutputStream;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.nio.charset.Charset;
 import java.nio.file.Paths;
+import java.util.Random;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.InflaterInputStream;
 
 import org.apache.log4j.Logger;
 import org.junit.Assert;
@@ -328,6 +335,127 @@ public class IOUtilsTest {
 		Assert.assertTrue("compressed file should be less than 50 bytes, but is " + file.length(), file.length() < 50);
 	}
 
+	@Test
+	public void testGetBufferedWriter_gzipped_parallel() throws IOException {
+		String filename = this.utils.getOutputDirectory() + "test.txt.gz";
+		int numberOfThreads = GzipCompression.getNumberOfThreads();
+		IOUtils.setNumberOfCompressionThreads(3);
+		try {
+			BufferedWriter writer = IOUtils.getBufferedWriter(filename);
+			for (int i = 0; i < 1000000; i++) {
+				writer.write("line " + i + "\n");
+			}
+			writer.close();
+			// the blocks can be read by every gzip reader
+			assertLines(new BufferedReader(new InputStreamReader(new GZIPInputStream(new FileInputStream(filename)))), 1000000);
+			assertLines(IOUtils.getBufferedReader(filename), 1000000);
+		} finally {
+			IOUtils.setNumberOfCompressionThreads(numberOfThreads);
+		}
+	}
+
+	@Test
+	public void testGetBufferedReader_gzippedWithoutBlocks() throws IOException {
+		String filename = this.utils.getOutputDirectory() + "test.txt.gz";
+		OutputStream out = IOUtils.getOutputStream(filename);
+		out.write("line 0\n".getBytes());
+		out.close();
+		// appended gzip members without block size, as written by other programs
+		for (int i = 1; i < 3; i++) {
+			out = new GZIPOutputStream(new FileOutputStream(filename, true));
+			out.write(("line " + i + "\n").getBytes());
+			out.close();
+		}
+		assertLines(IOUtils.getBufferedReader(filename), 3);
+
+		out = new GZIPOutputStream(new FileOutputStream(filename));
+		out.write("line 0\nline 1\n".getBytes());
+		out.close();
+		assertLines(IOUtils.getBufferedReader(filename), 2);
+	}
+
+	@Test
+	public void testGetInputStream_incompressible_gzipped() throws IOException {
+		String filename = this.utils.getOutputDirectory() + "test.bin.gz";
+		byte[] data = new byte[200000];
+		new Random(4711).nextBytes(data);
+		OutputStream out = IOUtils.getOutputStream(filename);
+		out.write(data);
+		out.close();
+
+		InputStream in = IOUtils.getInputStream(filename);
+		byte[] read = new byte[data.length];
+		int n = 0;
+		while (n < read.length) {
+			n += in.read(read, n, read.length - n);
+		}
+		Assert.assertEquals(-1, in.read());
+		in.close();
+		Assert.assertArrayEquals(data, read);
+	}
+
+	@Test
+	public void testRegisterCompression() throws IOException {
+		String filename = this.utils.getOutputDirectory() + "test.txt";
+		IOUtils.registerCompression(new Compression() {
+			@Override
+			public String getFileEnding() {
+				return ".zz";
+			}
+			@Override
+			public InputStream createInputStream(InputStream in) {
+				return new InflaterInputStream(in);
+			}
+			@Override
+			public OutputStream createOutputStream(OutputStream out) {
+				return new DeflaterOutputStream(out);
+			}
+		});
+		try {
+			BufferedWriter writer = IOUtils.getBufferedWriter(filename + ".zz");
+			writer.write("line 0\n");
+			writer.close();
+			assertLines(new BufferedReader(new InputStreamReader(new InflaterInputStream(new FileInputStream(filename + ".zz")))), 1);
+			assertLines(IOUtils.getBufferedReader(filename + ".zz"), 1);
+			// the compressed file is found without ending
+			assertLines(IOUtils.getBufferedReader(filename), 1);
+		} finally {
+			IOUtils.unregisterCompression(".zz");
+		}
+		Assert.assertNull(IOUtils.getCompression(filename + ".zz"));
+	}
+
+	@Test
+	public void testSetNumberOfCompressionThreads_whileStreamsAreOpen() throws IOException {
+		String filename = this.utils.getOutputDirectory() + "test.txt.gz";
+		int numberOfThreads = GzipCompression.getNumberOfThreads();
+		IOUtils.setNumberOfCompressionThreads(2);
+		try {
+			BufferedWriter writer = IOUtils.getBufferedWriter(filename);
+			for (int i = 0; i < 500000; i++) {
+				if (i == 250000) {
+					// the open stream keeps using its pool
+					IOUtils.setNumberOfCompressionThreads(3);
+				}
+				writer.write("line " + i + "\n");
+			}
+			writer.close();
+			BufferedReader reader = IOUtils.getBufferedReader(filename);
+			IOUtils.setNumberOfCompressionThreads(2);
+			assertLines(reader, 500000);
+		} finally {
+			IOUtils.setNumberOfCompressionThreads(numberOfThreads);
+		}
+	}
+
+	private static void assertLines(final BufferedReader reader, final int expectedLines) throws IOException {
+		for (int i = 0; i < expectedLines; i++) {
+			Assert.assertEquals("line " + i, reader.readLine());
+		}
+		Assert.assertNull(reader.readLine());
+		reader.close();
+	}
+
 	@Test
 	public void testGetInputStream_UTFwithoutBOM() throws IOException {
 		String filename = utils.getOutputDirectory() + "test.txt";
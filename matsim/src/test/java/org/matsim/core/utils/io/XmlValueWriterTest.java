@@ -0,0 +1,96 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * XmlValueWriterTest.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2016 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.utils.io;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.matsim.core.utils.misc.Time;
+
+public class XmlValueWriterTest {
+
+	@Test
+	public void testWriteDouble() throws IOException {
+		double[] values = { 0.0, -0.0, 1.0, -1.0, 0.1, 0.001, 0.0015, 0.000999, 12.5, -1234.567, 9999999.0, 1.0e7, 1.0e-3,
+				123456.789, 3600.0, 1.0 / 3, Math.PI * 1e5, Double.NaN, Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY,
+				Double.MAX_VALUE, Double.MIN_VALUE, Long.MAX_VALUE };
+		for (double value : values) {
+			assertDouble(value);
+		}
+		Random random = new Random(4711);
+		for (int i = 0; i < 100000; i++) {
+			assertDouble(random.nextInt(100000000) / Math.pow(10, random.nextInt(5)) * (random.nextBoolean() ? 1 : -1));
+			assertDouble(random.nextDouble() * Math.pow(10, random.nextInt(12) - 4));
+		}
+	}
+
+	@Test
+	public void testWriteLong() throws IOException {
+		long[] values = { 0, 1, -1, 9, 10, 123456789, Integer.MIN_VALUE, Long.MAX_VALUE, Long.MIN_VALUE };
+		for (long value : values) {
+			StringWriter out = new StringWriter();
+			new XmlValueWriter(out).write(value);
+			Assert.assertEquals(Long.toString(value), out.toString());
+		}
+	}
+
+	@Test
+	public void testWriteTime() throws IOException {
+		double[] values = { 0.0, 59.9, 3599.7, 3600.0, 86399.0, 86400.0, 360000.0, 1.0e8, 12345.6789, -1.0, -3601.5, Time.UNDEFINED_TIME };
+		for (double value : values) {
+			StringWriter out = new StringWriter();
+			new XmlValueWriter(out).writeTime(value);
+			Assert.assertEquals(Time.writeTime(value), out.toString());
+		}
+		String format = Time.getDefaultTimeFormat();
+		try {
+			Time.setDefaultTimeFormat(Time.TIMEFORMAT_HHMM);
+			StringWriter out = new StringWriter();
+			new XmlValueWriter(out).writeTime(3690.0);
+			Assert.assertEquals("01:01", out.toString());
+		} finally {
+			Time.setDefaultTimeFormat(format);
+		}
+	}
+
+	@Test
+	public void testWriteAttribute() throws IOException {
+		StringWriter out = new StringWriter();
+		XmlValueWriter writer = new XmlValueWriter(out);
+		writer.writeAttribute("a", "plain");
+		writer.writeAttribute("b", "<a & \"b\">");
+		writer.writeAttribute("c", 42);
+		writer.writeAttribute("d", 0.5);
+		writer.writeTimeAttribute("e", 3661.0);
+		writer.writeEscaped(null);
+		Assert.assertEquals(" a=\"plain\" b=\"&lt;a &amp; &quot;b&quot;&gt;\" c=\"42\" d=\"0.5\" e=\"01:01:01\"null", out.toString());
+	}
+
+	private static void assertDouble(final double value) throws IOException {
+		StringWriter out = new StringWriter();
+		new XmlValueWriter(out).write(value);
+		Assert.assertEquals(Double.toString(value), out.toString());
+	}
+
+}
@@ -0,0 +1,148 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * FloatMatrixTest.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2016 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.matrices;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.matsim.testcases.MatsimTestUtils;
+
+public class FloatMatrixTest {
+
+	@Rule public MatsimTestUtils utils = new MatsimTestUtils();
+
+	@Test
+	public void testGetSetValue() {
+		List<String> zones = Arrays.asList("a", "b", "c");
+		FloatMatrix matrix = new FloatMatrix("m", null, zones, zones);
+		Assert.assertTrue(Float.isNaN(matrix.getValue("a", "b")));
+		matrix.setValue("a", "b", 1.5f);
+		matrix.setValue(2, 0, 3.0f);
+		Assert.assertEquals(1.5f, matrix.getValue(0, 1), 0.0f);
+		Assert.assertEquals(3.0f, matrix.getValue("c", "a"), 0.0f);
+		Assert.assertEquals(2, matrix.getFromIndex("c"));
+		Assert.assertEquals(-1, matrix.getToIndex("d"));
+		Assert.assertTrue(Float.isNaN(matrix.getValue("d", "a")));
+		Assert.assertFalse(matrix.isReadOnly());
+
+		float[] row = matrix.getRow(2, new float[3]);
+		Assert.assertEquals(3.0f, row[0], 0.0f);
+		Assert.assertTrue(Float.isNaN(row[1]));
+
+		try {
+			matrix.setValue("a", "d", 1.0f);
+			Assert.fail("expected exception for unknown zone");
+		} catch (IllegalArgumentException e) {
+		}
+		try {
+			matrix.getValue(3, 0);
+			Assert.fail("expected exception for invalid index");
+		} catch (IndexOutOfBoundsException e) {
+		}
+		try {
+			new FloatMatrix("m", null, Arrays.asList("a", "a"), zones);
+			Assert.fail("expected exception for duplicate zone");
+		} catch (IllegalArgumentException e) {
+		}
+	}
+
+	@Test
+	public void testCopyOfAndToMatrix() {
+		Matrix matrix = new Matrix("m", "some matrix");
+		matrix.createEntry("1", "2", 12.0);
+		matrix.createEntry("1", "3", 13.0);
+		matrix.createEntry("2", "3", 23.0);
+
+		FloatMatrix floatMatrix = FloatMatrix.copyOf(matrix);
+		Assert.assertEquals("some matrix", floatMatrix.getDesc());
+		Assert.assertEquals(Arrays.asList("1", "2"), floatMatrix.getFromZoneIds());
+		Assert.assertEquals(Arrays.asList("2", "3"), floatMatrix.getToZoneIds());
+		Assert.assertEquals(13.0f, floatMatrix.getValue("1", "3"), 0.0f);
+		Assert.assertTrue(Float.isNaN(floatMatrix.getValue("2", "2")));
+
+		Matrix copy = floatMatrix.toMatrix();
+		Assert.assertEquals("m", copy.getId());
+		Assert.assertEquals(2, copy.getFromLocEntries("1").size());
+		Assert.assertEquals(1, copy.getFromLocEntries("2").size());
+		Assert.assertEquals(23.0, copy.getEntry("2", "3").getValue(), 0.0);
+	}
+
+	@Test
+	public void testWriteRead() {
+		List<String> from = Arrays.asList("1", "2", "3", "zone with a longer id");
+		List<String> to = Arrays.asList("x", "y", "z");
+		FloatMatrix matrix = new FloatMatrix("skim", "travel times", from, to);
+		for (int i = 0; i < from.size(); i++) {
+			for (int j = 0; j < to.size(); j++) {
+				matrix.setValue(i, j, i * 10.5f + j);
+			}
+		}
+		matrix.setValue(1, 1, Float.NaN);
+		matrix.setValue(1, 2, Float.POSITIVE_INFINITY);
+		String filename = this.utils.getOutputDirectory() + "matrix.bin";
+		new FloatMatrixWriter(matrix).write(filename);
+
+		FloatMatrix read = new FloatMatrixReader().read(filename);
+		FloatMatrix mapped = new FloatMatrixReader().map(filename);
+		Assert.assertFalse(read.isReadOnly());
+		Assert.assertTrue(mapped.isReadOnly());
+		for (FloatMatrix m : Arrays.asList(read, mapped)) {
+			Assert.assertEquals("skim", m.getId());
+			Assert.assertEquals("travel times", m.getDesc());
+			Assert.assertEquals(from, m.getFromZoneIds());
+			Assert.assertEquals(to, m.getToZoneIds());
+			for (int i = 0; i < from.size(); i++) {
+				for (int j = 0; j < to.size(); j++) {
+					Assert.assertEquals(matrix.getValue(i, j), m.getValue(i, j), 0.0f);
+				}
+			}
+			Assert.assertTrue(Float.isNaN(m.getValue("2", "y")));
+		}
+	}
+
+	@Test
+	public void testWriteRead_noDescLargeMatrix() {
+		// more values than fit into the buffers of the reader and writer
+		String[] zones = new String[300];
+		for (int i = 0; i < zones.length; i++) {
+			zones[i] = Integer.toString(i);
+		}
+		float[] values = new float[zones.length * zones.length];
+		for (int i = 0; i < values.length; i++) {
+			values[i] = i * 0.25f;
+		}
+		FloatMatrix matrix = new FloatMatrix("m", null, Arrays.asList(zones), Arrays.asList(zones), values);
+		String filename = this.utils.getOutputDirectory() + "matrix.bin";
+		new FloatMatrixWriter(matrix).write(filename);
+
+		FloatMatrix read = new FloatMatrixReader().read(filename);
+		Assert.assertNull(read.getDesc());
+		float[] row = new float[zones.length];
+		for (int i = 0; i < zones.length; i++) {
+			Assert.assertArrayEquals(Arrays.copyOfRange(values, i * zones.length, (i + 1) * zones.length), read.getRow(i, row), 0.0f);
+		}
+		Assert.assertEquals(values[values.length - 1], new FloatMatrixReader().map(filename).getValue(299, 299), 0.0f);
+	}
+
+}
@@ -0,0 +1,156 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * TransitRouterRaptorBenchmark.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2016 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.pt.router;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.apache.log4j.Logger;
+import org.matsim.api.core.v01.Coord;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.Scenario;
+import org.matsim.api.core.v01.population.Leg;
+import org.matsim.core.config.Config;
+import org.matsim.core.config.ConfigUtils;
+import org.matsim.core.scenario.ScenarioUtils;
+import org.matsim.pt.transitSchedule.api.Departure;
+import org.matsim.pt.transitSchedule.api.TransitLine;
+import org.matsim.pt.transitSchedule.api.TransitRoute;
+import org.matsim.pt.transitSchedule.api.TransitRouteStop;
+import org.matsim.pt.transitSchedule.api.TransitSchedule;
+import org.matsim.pt.transitSchedule.api.TransitScheduleFactory;
+import org.matsim.pt.transitSchedule.api.TransitScheduleReader;
+import org.matsim.pt.transitSchedule.api.TransitStopFacility;
+
+/**
+ * Compares the query times of {@link TransitRouterRaptor} with the ones of {@link TransitRouterImpl} for random
+ * coordinate pairs and departure times, and reports the time needed to prepare the data of both routers. Not a
+ * unit test; run the main method with the test classpath. The optional arguments are the number of queries and
+ * a transit schedule file; without the file, a grid of bus lines is generated. Profile queries are compared in
+ * {@link TransitRouterRaptorProfileBenchmark}.
+ */
+public class TransitRouterRaptorBenchmark {
+
+	private static final Logger log = Logger.getLogger(TransitRouterRaptorBenchmark.class);
+
+	private static final int GRID_SIZE = 40;
+	private static final double GRID_SPACING = 400.0;
+
+	public static void main(String[] args) {
+		int numberOfQueries = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+
+		Config config = ConfigUtils.createConfig();
+		config.transit().setUseTransit(true);
+		Scenario scenario = ScenarioUtils.createScenario(config);
+		TransitSchedule schedule = scenario.getTransitSchedule();
+		if (args.length > 1) {
+			new TransitScheduleReader(scenario).readFile(args[1]);
+		} else {
+			createGridSchedule(schedule);
+		}
+		TransitRouterConfig routerConfig = new TransitRouterConfig(config);
+
+		double minX = Double.POSITIVE_INFINITY, minY = Double.POSITIVE_INFINITY, maxX = Double.NEGATIVE_INFINITY, maxY = Double.NEGATIVE_INFINITY;
+		for (TransitStopFacility stop : schedule.getFacilities().values()) {
+			minX = Math.min(minX, stop.getCoord().getX());
+			minY = Math.min(minY, stop.getCoord().getY());
+			maxX = Math.max(maxX, stop.getCoord().getX());
+			maxY = Math.max(maxY, stop.getCoord().getY());
+		}
+		Random random = new Random(4711);
+		FakeFacility[][] queries = new FakeFacility[numberOfQueries][];
+		double[] times = new double[numberOfQueries];
+		for (int i = 0; i < numberOfQueries; i++) {
+			queries[i] = new FakeFacility[] {
+					new FakeFacility(new Coord(minX + random.nextDouble() * (maxX - minX), minY + random.nextDouble() * (maxY - minY))),
+					new FakeFacility(new Coord(minX + random.nextDouble() * (maxX - minX), minY + random.nextDouble() * (maxY - minY)))};
+			times[i] = 6 * 3600 + random.nextDouble() * 12 * 3600;
+		}
+		log.info("stops: " + schedule.getFacilities().size() + ", lines: " + schedule.getTransitLines().size());
+
+		long start = System.nanoTime();
+		TransitRouterRaptorData data = new TransitRouterRaptorData(schedule, routerConfig.getBeelineWalkConnectionDistance());
+		log.info("RAPTOR data: " + (System.nanoTime() - start) / 1000000 + " ms");
+		start = System.nanoTime();
+		TransitRouterNetwork network = TransitRouterNetwork.createFromSchedule(schedule, routerConfig.getBeelineWalkConnectionDistance());
+		log.info("transit router network: " + (System.nanoTime() - start) / 1000000 + " ms");
+
+		TransitRouterRaptor raptor = new TransitRouterRaptor(routerConfig, data);
+		PreparedTransitSchedule preparedSchedule = new PreparedTransitSchedule(schedule);
+		TransitRouterNetworkTravelTimeAndDisutility travelDisutility = new TransitRouterNetworkTravelTimeAndDisutility(routerConfig, preparedSchedule);
+		TransitRouter dijkstra = new TransitRouterImpl(routerConfig, preparedSchedule, network, travelDisutility, travelDisutility);
+		for (int round = 0; round < 2; round++) {
+			// the first round is the warm-up
+			measure("TransitRouterImpl", dijkstra, queries, times, round == 1);
+			measure("TransitRouterRaptor", raptor, queries, times, round == 1);
+		}
+	}
+
+	private static void measure(String name, TransitRouter router, FakeFacility[][] queries, double[] times, boolean print) {
+		long start = System.nanoTime();
+		double sum = 0;
+		for (int i = 0; i < queries.length; i++) {
+			List<Leg> legs = router.calcRoute(queries[i][0], queries[i][1], times[i], null);
+			if (legs != null) {
+				for (Leg leg : legs) {
+					sum += leg.getTravelTime();
+				}
+			}
+		}
+		if (print) {
+			log.info(name + ": " + (System.nanoTime() - start) / 1000 / queries.length + " us per query (sum of travel times " + sum + ")");
+		}
+	}
+
+	/**
+	 * Creates a bus line along each row and column of a grid of stops, running in both directions every
+	 * ten minutes.
+	 */
+	/*package*/ static void createGridSchedule(TransitSchedule schedule) {
+		TransitScheduleFactory factory = schedule.getFactory();
+		TransitStopFacility[][] stops = new TransitStopFacility[GRID_SIZE][GRID_SIZE];
+		for (int x = 0; x < GRID_SIZE; x++) {
+			for (int y = 0; y < GRID_SIZE; y++) {
+				stops[x][y] = factory.createTransitStopFacility(Id.create(x + "_" + y, TransitStopFacility.class), new Coord(x * GRID_SPACING, y * GRID_SPACING), false);
+				schedule.addStopFacility(stops[x][y]);
+			}
+		}
+		for (int i = 0; i < GRID_SIZE; i++) {
+			for (int direction = 0; direction < 4; direction++) {
+				TransitLine line = factory.createTransitLine(Id.create(i + "_" + direction, TransitLine.class));
+				List<TransitRouteStop> routeStops = new ArrayList<>();
+				for (int j = 0; j < GRID_SIZE; j++) {
+					int k = direction % 2 == 0 ? j : GRID_SIZE - 1 - j;
+					TransitStopFacility stop = direction < 2 ? stops[i][k] : stops[k][i];
+					routeStops.add(factory.createTransitRouteStop(stop, j * 60.0, j * 60.0 + 20.0));
+				}
+				TransitRoute route = factory.createTransitRoute(Id.create(i + "_" + direction, TransitRoute.class), null, routeStops, "bus");
+				for (int d = 0; d < 6 * 20; d++) {
+					route.addDeparture(factory.createDeparture(Id.create(d, Departure.class), 5 * 3600 + d * 600 + (i * 37) % 600));
+				}
+				line.addRoute(route);
+				schedule.addTransitLine(line);
+			}
+		}
+	}
+
+}
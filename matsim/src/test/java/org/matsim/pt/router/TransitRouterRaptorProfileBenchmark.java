@@ -0,0 +1,141 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * TransitRouterRaptorProfileBenchmark.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2016 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.pt.router;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
+import org.matsim.api.core.v01.Coord;
+import org.matsim.api.core.v01.Scenario;
+import org.matsim.core.config.Config;
+import org.matsim.core.config.ConfigUtils;
+import org.matsim.core.scenario.ScenarioUtils;
+import org.matsim.pt.transitSchedule.api.TransitSchedule;
+import org.matsim.pt.transitSchedule.api.TransitScheduleReader;
+import org.matsim.pt.transitSchedule.api.TransitStopFacility;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Compares a profile query of {@link TransitRouterRaptor} for a departure time window of one hour with one
+ * {@link TransitRouterRaptor#calcParetoRoutes} query per minute of the window, for random coordinate pairs. The
+ * schedules are the generated grid of bus lines of {@link TransitRouterRaptorBenchmark} and the one of the Sioux
+ * Falls example. Not a unit test; run the main method after <code>mvn test-compile</code> with the test classpath
+ * in the directory of the matsim module.
+ * <p></p>
+ * Without JMH, the profile query took about half the time of the 60 queries on the grid and was within noise of
+ * them on the small Sioux Falls schedule; the main advantage of the profile is that it does not miss departures.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class TransitRouterRaptorProfileBenchmark {
+
+	private static final String GRID = "grid";
+
+	@Param({GRID, "examples/siouxfalls-2014/Siouxfalls_transitSchedule.xml"})
+	public String schedule;
+
+	private static final int NUMBER_OF_QUERIES = 200;
+	private static final double WINDOW = 3600;
+
+	private TransitRouterRaptor router;
+	private FakeFacility[] fromFacilities;
+	private FakeFacility[] toFacilities;
+	private double[] times;
+	private int query = 0;
+
+	@Setup
+	public void setup() {
+		Logger.getRootLogger().setLevel(Level.WARN);
+		Config config = ConfigUtils.createConfig();
+		config.transit().setUseTransit(true);
+		Scenario scenario = ScenarioUtils.createScenario(config);
+		TransitSchedule transitSchedule = scenario.getTransitSchedule();
+		if (this.schedule.equals(GRID)) {
+			TransitRouterRaptorBenchmark.createGridSchedule(transitSchedule);
+		} else {
+			new TransitScheduleReader(scenario).readFile(this.schedule);
+		}
+		TransitRouterConfig routerConfig = new TransitRouterConfig(config);
+		this.router = new TransitRouterRaptor(routerConfig, new TransitRouterRaptorData(transitSchedule, routerConfig.getBeelineWalkConnectionDistance()));
+
+		double minX = Double.POSITIVE_INFINITY, minY = Double.POSITIVE_INFINITY, maxX = Double.NEGATIVE_INFINITY, maxY = Double.NEGATIVE_INFINITY;
+		for (TransitStopFacility stop : transitSchedule.getFacilities().values()) {
+			minX = Math.min(minX, stop.getCoord().getX());
+			minY = Math.min(minY, stop.getCoord().getY());
+			maxX = Math.max(maxX, stop.getCoord().getX());
+			maxY = Math.max(maxY, stop.getCoord().getY());
+		}
+		Random random = new Random(4711);
+		this.fromFacilities = new FakeFacility[NUMBER_OF_QUERIES];
+		this.toFacilities = new FakeFacility[NUMBER_OF_QUERIES];
+		this.times = new double[NUMBER_OF_QUERIES];
+		for (int i = 0; i < NUMBER_OF_QUERIES; i++) {
+			this.fromFacilities[i] = new FakeFacility(new Coord(minX + random.nextDouble() * (maxX - minX), minY + random.nextDouble() * (maxY - minY)));
+			this.toFacilities[i] = new FakeFacility(new Coord(minX + random.nextDouble() * (maxX - minX), minY + random.nextDouble() * (maxY - minY)));
+			this.times[i] = 6 * 3600 + random.nextDouble() * 12 * 3600;
+		}
+	}
+
+	@Benchmark
+	public List<?> profileQuery() {
+		int i = nextQuery();
+		return this.router.calcProfileRoutes(this.fromFacilities[i], this.toFacilities[i], this.times[i], this.times[i] + WINDOW, null);
+	}
+
+	@Benchmark
+	public void queryPerMinute(final Blackhole blackhole) {
+		int i = nextQuery();
+		for (int minute = 0; minute < WINDOW / 60; minute++) {
+			blackhole.consume(this.router.calcParetoRoutes(this.fromFacilities[i], this.toFacilities[i], this.times[i] + minute * 60, null));
+		}
+	}
+
+	private int nextQuery() {
+		int i = this.query;
+		this.query = (i + 1) % NUMBER_OF_QUERIES;
+		return i;
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		new Runner(new OptionsBuilder().include(TransitRouterRaptorProfileBenchmark.class.getSimpleName()).build()).run();
+	}
+}
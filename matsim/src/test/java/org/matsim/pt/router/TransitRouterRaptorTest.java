@@ -0,0 +1,353 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * TransitRouterRaptorTest.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2016 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.pt.router;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+
+import org.junit.Test;
+import org.matsim.api.core.v01.Coord;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.TransportMode;
+import org.matsim.api.core.v01.population.Leg;
+import org.matsim.core.utils.geometry.CoordUtils;
+import org.matsim.pt.router.TransitRouterRaptor.Journey;
+import org.matsim.pt.routes.ExperimentalTransitRoute;
+import org.matsim.pt.transitSchedule.api.TransitRoute;
+import org.matsim.pt.transitSchedule.api.TransitStopFacility;
+import org.matsim.testcases.MatsimTestCase;
+
+/**
+ * Mostly the same cases as {@link TransitRouterImplTest}, which the RAPTOR router should route the same way.
+ */
+public class TransitRouterRaptorTest {
+
+	@Test
+	public void testSingleLine() {
+		Fixture f = new Fixture();
+		f.init();
+		TransitRouterConfig config = createConfig(f);
+		TransitRouterRaptor router = new TransitRouterRaptor(config, new TransitRouterRaptorData(f.schedule, config.getBeelineWalkConnectionDistance()));
+		Coord toCoord = new Coord((double) 16100, (double) 5050);
+		List<Leg> legs = router.calcRoute(new FakeFacility(new Coord((double) 3800, (double) 5100)), new FakeFacility(toCoord), 5.0*3600, null);
+		assertEquals(3, legs.size());
+		assertEquals(TransportMode.transit_walk, legs.get(0).getMode());
+		assertEquals(TransportMode.pt, legs.get(1).getMode());
+		assertEquals(TransportMode.transit_walk, legs.get(2).getMode());
+		ExperimentalTransitRoute ptRoute = (ExperimentalTransitRoute) legs.get(1).getRoute();
+		assertEquals(Id.create("0", TransitStopFacility.class), ptRoute.getAccessStopId());
+		assertEquals(Id.create("6", TransitStopFacility.class), ptRoute.getEgressStopId());
+		assertEquals(f.blueLine.getId(), ptRoute.getLineId());
+		assertEquals(Id.create("blue A > I", TransitRoute.class), ptRoute.getRouteId());
+		double expectedTravelTime = 29.0 * 60 + // agent takes the *:06 course, arriving in D at *:29
+				CoordUtils.calcEuclideanDistance(f.schedule.getFacilities().get(Id.create("6", TransitStopFacility.class)).getCoord(), toCoord) / config.getBeelineWalkSpeed();
+		assertEquals(expectedTravelTime, calcTravelTime(legs), MatsimTestCase.EPSILON);
+	}
+
+	@Test
+	public void testFromToSameStop() {
+		Fixture f = new Fixture();
+		f.init();
+		TransitRouterConfig config = createConfig(f);
+		TransitRouterRaptor router = new TransitRouterRaptor(config, new TransitRouterRaptorData(f.schedule, config.getBeelineWalkConnectionDistance()));
+		Coord fromCoord = new Coord((double) 3800, (double) 5100);
+		Coord toCoord = new Coord((double) 4100, (double) 5050);
+		List<Leg> legs = router.calcRoute(new FakeFacility(fromCoord), new FakeFacility(toCoord), 5.0*3600, null);
+		assertEquals(1, legs.size());
+		assertEquals(TransportMode.transit_walk, legs.get(0).getMode());
+		assertEquals(CoordUtils.calcEuclideanDistance(fromCoord, toCoord) / config.getBeelineWalkSpeed(), calcTravelTime(legs), MatsimTestCase.EPSILON);
+	}
+
+	@Test
+	public void testDirectWalkCheaper() {
+		Fixture f = new Fixture();
+		f.init();
+		TransitRouterConfig config = createConfig(f);
+		TransitRouterRaptor router = new TransitRouterRaptor(config, new TransitRouterRaptorData(f.schedule, config.getBeelineWalkConnectionDistance()));
+		Coord fromCoord = new Coord((double) 4000, (double) 3000);
+		Coord toCoord = new Coord((double) 8000, (double) 3000);
+		List<Leg> legs = router.calcRoute(new FakeFacility(fromCoord), new FakeFacility(toCoord), 5.0*3600, null);
+		assertEquals(1, legs.size());
+		assertEquals(TransportMode.transit_walk, legs.get(0).getMode());
+		assertEquals(CoordUtils.calcEuclideanDistance(fromCoord, toCoord) / config.getBeelineWalkSpeed(), calcTravelTime(legs), MatsimTestCase.EPSILON);
+	}
+
+	@Test
+	public void testSingleLine_DifferentWaitingTime() {
+		Fixture f = new Fixture();
+		f.init();
+		TransitRouterConfig config = createConfig(f);
+		TransitRouterRaptor router = new TransitRouterRaptor(config, new TransitRouterRaptorData(f.schedule, config.getBeelineWalkConnectionDistance()));
+		Coord fromCoord = new Coord((double) 4000, (double) 5002);
+		Coord toCoord = new Coord((double) 8000, (double) 5002);
+		double inVehicleTime = 7.0*60; // travel time from A to B
+		for (int min = 0; min < 30; min += 3) {
+			List<Leg> legs = router.calcRoute(new FakeFacility(fromCoord), new FakeFacility(toCoord), 5.0*3600 + min*60, null);
+			assertEquals(3, legs.size()); // walk-pt-walk
+			double waitingTime = ((46 - min) % 20) * 60; // departures at *:06 and *:26 and *:46
+			assertEquals("expected different waiting time at 05:"+min, waitingTime, calcTravelTime(legs) - inVehicleTime, MatsimTestCase.EPSILON);
+		}
+	}
+
+	@Test
+	public void testLineChange() {
+		Fixture f = new Fixture();
+		f.init();
+		TransitRouterConfig config = createConfig(f);
+		TransitRouterRaptor router = new TransitRouterRaptor(config, new TransitRouterRaptorData(f.schedule, config.getBeelineWalkConnectionDistance()));
+		Coord toCoord = new Coord((double) 16100, (double) 10050);
+		List<Leg> legs = router.calcRoute(new FakeFacility(new Coord((double) 3800, (double) 5100)), new FakeFacility(toCoord), 6.0*3600, null);
+		assertEquals(5, legs.size());
+		assertEquals(TransportMode.transit_walk, legs.get(0).getMode());
+		assertEquals(TransportMode.pt, legs.get(1).getMode());
+		assertEquals(TransportMode.transit_walk, legs.get(2).getMode());
+		assertEquals(TransportMode.pt, legs.get(3).getMode());
+		assertEquals(TransportMode.transit_walk, legs.get(4).getMode());
+		ExperimentalTransitRoute ptRoute = (ExperimentalTransitRoute) legs.get(1).getRoute();
+		assertEquals(Id.create("0", TransitStopFacility.class), ptRoute.getAccessStopId());
+		assertEquals(Id.create("4", TransitStopFacility.class), ptRoute.getEgressStopId());
+		assertEquals(f.blueLine.getId(), ptRoute.getLineId());
+		ptRoute = (ExperimentalTransitRoute) legs.get(3).getRoute();
+		assertEquals(Id.create("18", TransitStopFacility.class), ptRoute.getAccessStopId());
+		assertEquals(Id.create("19", TransitStopFacility.class), ptRoute.getEgressStopId());
+		assertEquals(f.greenLine.getId(), ptRoute.getLineId());
+		assertEquals(Id.create("green clockwise", TransitRoute.class), ptRoute.getRouteId());
+		double expectedTravelTime = 31.0 * 60 + // agent takes the *:06 course, arriving in C at *:18, departing at *:21, arriving in K at*:31
+				CoordUtils.calcEuclideanDistance(f.schedule.getFacilities().get(Id.create("19", TransitStopFacility.class)).getCoord(), toCoord) / config.getBeelineWalkSpeed();
+		assertEquals(expectedTravelTime, calcTravelTime(legs), MatsimTestCase.EPSILON);
+	}
+
+	@Test
+	public void testFasterAlternative() {
+		Fixture f = new Fixture();
+		f.init();
+		TransitRouterConfig config = createConfig(f);
+		TransitRouterRaptor router = new TransitRouterRaptor(config, new TransitRouterRaptorData(f.schedule, config.getBeelineWalkConnectionDistance()));
+		Coord toCoord = new Coord((double) 28100, (double) 4950);
+		List<Leg> legs = router.calcRoute(new FakeFacility(new Coord((double) 3800, (double) 5100)), new FakeFacility(toCoord), 5.0*3600 + 40.0*60, null);
+		assertEquals(4, legs.size());
+		assertEquals(TransportMode.transit_walk, legs.get(0).getMode());
+		assertEquals(TransportMode.pt, legs.get(1).getMode());
+		assertEquals(TransportMode.pt, legs.get(2).getMode());
+		assertEquals(TransportMode.transit_walk, legs.get(3).getMode());
+		ExperimentalTransitRoute ptRoute = (ExperimentalTransitRoute) legs.get(1).getRoute();
+		assertEquals(Id.create("0", TransitStopFacility.class), ptRoute.getAccessStopId());
+		assertEquals(Id.create("4", TransitStopFacility.class), ptRoute.getEgressStopId());
+		assertEquals(f.blueLine.getId(), ptRoute.getLineId());
+		ptRoute = (ExperimentalTransitRoute) legs.get(2).getRoute();
+		assertEquals(Id.create("4", TransitStopFacility.class), ptRoute.getAccessStopId());
+		assertEquals(Id.create("12", TransitStopFacility.class), ptRoute.getEgressStopId());
+		assertEquals(f.redLine.getId(), ptRoute.getLineId());
+		double expectedTravelTime = 29.0 * 60 + // agent takes the *:46 course, arriving in C at *:58, departing at *:00, arriving in G at*:09
+				CoordUtils.calcEuclideanDistance(f.schedule.getFacilities().get(Id.create("12", TransitStopFacility.class)).getCoord(), toCoord) / config.getBeelineWalkSpeed();
+		assertEquals(expectedTravelTime, calcTravelTime(legs), MatsimTestCase.EPSILON);
+	}
+
+	/**
+	 * From C to F: either red to G and back with blue, arriving at *:19, or blue only, arriving at *:23. Both are
+	 * part of the Pareto set; the line switch utility decides which one is returned.
+	 */
+	@Test
+	public void testTransferWeights() {
+		Fixture f = new Fixture();
+		f.init();
+		TransitRouterConfig config = createConfig(f);
+		config.setUtilityOfLineSwitch_utl(0);
+		TransitRouterRaptor router = new TransitRouterRaptor(config, new TransitRouterRaptorData(f.schedule, config.getBeelineWalkConnectionDistance()));
+		FakeFacility from = new FakeFacility(new Coord((double) 11900, (double) 5100));
+		FakeFacility to = new FakeFacility(new Coord((double) 24100, (double) 4950));
+
+		List<Journey> journeys = router.calcParetoRoutes(from, to, 6.0*3600 - 5.0*60, null);
+		assertEquals(2, journeys.size());
+		assertEquals(0, journeys.get(0).getNumberOfTransfers());
+		assertEquals(1, journeys.get(1).getNumberOfTransfers());
+		assertTrue(journeys.get(1).getArrivalTime() < journeys.get(0).getArrivalTime());
+
+		List<Leg> legs = router.calcRoute(from, to, 6.0*3600 - 5.0*60, null);
+		assertEquals(5, legs.size());
+		assertEquals(f.redLine.getId(), ((ExperimentalTransitRoute) legs.get(1).getRoute()).getLineId());
+		assertEquals(TransportMode.transit_walk, legs.get(2).getMode());
+		assertEquals(f.blueLine.getId(), ((ExperimentalTransitRoute) legs.get(3).getRoute()).getLineId());
+
+		config.setUtilityOfLineSwitch_utl(300.0 * config.getMarginalUtilityOfTravelTimePt_utl_s()); // corresponds to 5 minutes transit travel time
+		legs = router.calcRoute(from, to, 6.0*3600 - 5.0*60, null);
+		assertEquals(3, legs.size());
+		assertEquals(f.blueLine.getId(), ((ExperimentalTransitRoute) legs.get(1).getRoute()).getLineId());
+	}
+
+	@Test
+	public void testTransferTime() {
+		Fixture f = new Fixture();
+		f.init();
+		TransitRouterConfig config = createConfig(f);
+		config.setUtilityOfLineSwitch_utl(0);
+		TransitRouterRaptor router = new TransitRouterRaptor(config, new TransitRouterRaptorData(f.schedule, config.getBeelineWalkConnectionDistance()));
+		FakeFacility from = new FakeFacility(new Coord((double) 11900, (double) 5100));
+		FakeFacility to = new FakeFacility(new Coord((double) 24100, (double) 4950));
+		List<Leg> legs = router.calcRoute(from, to, 6.0*3600 - 5.0*60, null);
+		assertEquals(5, legs.size());
+
+		config.setAdditionalTransferTime(3.0*60); // 3 mins already enough, as there is a small distance to walk anyway which adds some time
+		legs = router.calcRoute(from, to, 6.0*3600 - 5.0*60, null);
+		assertEquals(3, legs.size());
+		assertEquals(f.blueLine.getId(), ((ExperimentalTransitRoute) legs.get(1).getRoute()).getLineId());
+	}
+
+	@Test
+	public void testAfterMidnight() {
+		Fixture f = new Fixture();
+		f.init();
+		TransitRouterConfig config = createConfig(f);
+		config.setBeelineWalkSpeed(0.1); // something very slow, so the agent does not walk over night
+		TransitRouterRaptor router = new TransitRouterRaptor(config, new TransitRouterRaptorData(f.schedule, config.getBeelineWalkConnectionDistance()));
+		Coord toCoord = new Coord((double) 16100, (double) 5050);
+		List<Leg> legs = router.calcRoute(new FakeFacility(new Coord((double) 3800, (double) 5100)), new FakeFacility(toCoord), 25.0*3600, null);
+		assertEquals(3, legs.size());
+		ExperimentalTransitRoute ptRoute = (ExperimentalTransitRoute) legs.get(1).getRoute();
+		assertEquals(Id.create("0", TransitStopFacility.class), ptRoute.getAccessStopId());
+		assertEquals(Id.create("6", TransitStopFacility.class), ptRoute.getEgressStopId());
+		double expectedTravelTime = 4*3600 + 29.0 * 60 + // arrival at 05:29 at D
+				CoordUtils.calcEuclideanDistance(f.schedule.getFacilities().get(Id.create("6", TransitStopFacility.class)).getCoord(), toCoord) / config.getBeelineWalkSpeed();
+		assertEquals(expectedTravelTime, calcTravelTime(legs), MatsimTestCase.EPSILON);
+	}
+
+	@Test
+	public void testProfile_SingleLine() {
+		Fixture f = new Fixture();
+		f.init();
+		TransitRouterConfig config = createConfig(f);
+		TransitRouterRaptor router = new TransitRouterRaptor(config, new TransitRouterRaptorData(f.schedule, config.getBeelineWalkConnectionDistance()));
+		Coord fromCoord = new Coord((double) 3800, (double) 5100);
+		Coord toCoord = new Coord((double) 16100, (double) 5050);
+		List<Journey> journeys = router.calcProfileRoutes(new FakeFacility(fromCoord), new FakeFacility(toCoord), 5.0*3600, 6.0*3600, null);
+		assertEquals(3, journeys.size()); // departures at *:06 and *:26 and *:46
+		double accessTime = CoordUtils.calcEuclideanDistance(fromCoord, f.schedule.getFacilities().get(Id.create("0", TransitStopFacility.class)).getCoord()) / config.getBeelineWalkSpeed();
+		double egressTime = CoordUtils.calcEuclideanDistance(f.schedule.getFacilities().get(Id.create("6", TransitStopFacility.class)).getCoord(), toCoord) / config.getBeelineWalkSpeed();
+		for (int i = 0; i < 3; i++) {
+			Journey journey = journeys.get(i);
+			double busDeparture = 5.0*3600 + (6 + 20 * i) * 60;
+			assertEquals(busDeparture - accessTime, journey.getDepartureTime(), MatsimTestCase.EPSILON);
+			assertEquals(busDeparture + 23.0 * 60 + egressTime, journey.getArrivalTime(), MatsimTestCase.EPSILON);
+			assertEquals(0, journey.getNumberOfTransfers());
+			assertEquals(3, journey.getLegs().size());
+			assertEquals(journey.getArrivalTime() - journey.getDepartureTime(), calcTravelTime(journey.getLegs()), MatsimTestCase.EPSILON);
+		}
+	}
+
+	/**
+	 * For each departure time in the window, the profile must contain the journeys found by a separate query for
+	 * that departure time: for each number of transfers, the earliest arrival of the journeys departing later
+	 * must be the one of the query.
+	 */
+	@Test
+	public void testProfile_SameAsParetoRoutes() {
+		Fixture f = new Fixture();
+		f.init();
+		TransitRouterConfig config = createConfig(f);
+		config.setUtilityOfLineSwitch_utl(0);
+		TransitRouterRaptor router = new TransitRouterRaptor(config, new TransitRouterRaptorData(f.schedule, config.getBeelineWalkConnectionDistance()));
+		Coord[] coords = new Coord[] {new Coord((double) 3800, (double) 5100), new Coord((double) 11900, (double) 5100),
+				new Coord((double) 16100, (double) 10050), new Coord((double) 24100, (double) 4950), new Coord((double) 28100, (double) 4950)};
+		int compared = 0;
+		for (Coord fromCoord : coords) {
+			for (Coord toCoord : coords) {
+				if (fromCoord == toCoord) {
+					continue;
+				}
+				FakeFacility from = new FakeFacility(fromCoord);
+				FakeFacility to = new FakeFacility(toCoord);
+				List<Journey> profile = router.calcProfileRoutes(from, to, 5.0*3600, 9.0*3600, null);
+				for (int i = 1; i < profile.size(); i++) {
+					Journey previous = profile.get(i - 1);
+					assertTrue(previous.getDepartureTime() <= profile.get(i).getDepartureTime());
+					assertTrue(previous.getArrivalTime() < profile.get(i).getArrivalTime() || previous.getNumberOfTransfers() < profile.get(i).getNumberOfTransfers());
+				}
+				for (double time = 5.0*3600; time < 7.0*3600; time += 60) {
+					for (Journey expected : router.calcParetoRoutes(from, to, time, null)) {
+						double bestArrival = Double.POSITIVE_INFINITY;
+						for (Journey journey : profile) {
+							if (journey.getDepartureTime() >= time && journey.getNumberOfTransfers() <= expected.getNumberOfTransfers()) {
+								bestArrival = Math.min(bestArrival, journey.getArrivalTime());
+							}
+						}
+						assertEquals(expected.getArrivalTime(), bestArrival, MatsimTestCase.EPSILON);
+						compared++;
+					}
+				}
+			}
+		}
+		assertTrue(compared > 1000);
+	}
+
+	/**
+	 * The router should return journeys with the same legs and travel time as {@link TransitRouterImpl} in the
+	 * fixture, where the least cost journeys are also the fastest ones. The lines used may differ when several
+	 * journeys have the same cost.
+	 */
+	@Test
+	public void testSameAsTransitRouterImpl() {
+		Fixture f = new Fixture();
+		f.init();
+		TransitRouterConfig config = createConfig(f);
+		TransitRouterRaptor raptor = new TransitRouterRaptor(config, new TransitRouterRaptorData(f.schedule, config.getBeelineWalkConnectionDistance()));
+		TransitRouterImpl dijkstra = new TransitRouterImpl(config, f.schedule);
+		int compared = 0;
+		for (int x = 0; x <= 40000; x += 4000) {
+			for (int y = 0; y <= 10000; y += 5000) {
+				for (double time = 5.0 * 3600; time < 7.0 * 3600; time += 1357) {
+					FakeFacility from = new FakeFacility(new Coord((double) 3800, (double) 5100));
+					FakeFacility to = new FakeFacility(new Coord(x + 50, y - 50));
+					List<Leg> expected = dijkstra.calcRoute(from, to, time, null);
+					List<Leg> actual = raptor.calcRoute(from, to, time, null);
+					if (expected == null) {
+						assertNull(actual);
+						continue;
+					}
+					assertEquals(expected.size(), actual.size());
+					assertEquals(calcTravelTime(expected), calcTravelTime(actual), MatsimTestCase.EPSILON);
+					for (int i = 0; i < expected.size(); i++) {
+						assertEquals(expected.get(i).getMode(), actual.get(i).getMode());
+					}
+					compared++;
+				}
+			}
+		}
+		assertTrue(compared > 100);
+	}
+
+	private static TransitRouterConfig createConfig(final Fixture f) {
+		return new TransitRouterConfig(f.scenario.getConfig().planCalcScore(),
+				f.scenario.getConfig().plansCalcRoute(), f.scenario.getConfig().transitRouter(),
+				f.scenario.getConfig().vspExperimental());
+	}
+
+	private static double calcTravelTime(final List<Leg> legs) {
+		double travelTime = 0.0;
+		for (Leg leg : legs) {
+			travelTime += leg.getTravelTime();
+		}
+		return travelTime;
+	}
+
+}
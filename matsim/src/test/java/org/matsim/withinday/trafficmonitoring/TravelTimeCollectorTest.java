@@ -29,6 +29,8 @@ import org.junit.runners.Parameterized;
 import org.junit.runners.Parameterized.Parameters;
 import org.matsim.api.core.v01.Id;
 import org.matsim.api.core.v01.Scenario;
+import org.matsim.api.core.v01.events.LinkEnterEvent;
+import org.matsim.api.core.v01.events.LinkLeaveEvent;
 import org.matsim.api.core.v01.network.Link;
 import org.matsim.core.config.Config;
 import org.matsim.core.config.groups.QSimConfigGroup;
@@ -37,7 +39,9 @@ import org.matsim.core.controler.Controler;
 import org.matsim.core.controler.OutputDirectoryHierarchy.OverwriteFileSetting;
 import org.matsim.core.controler.events.StartupEvent;
 import org.matsim.core.controler.listener.StartupListener;
+import org.matsim.core.mobsim.framework.Mobsim;
 import org.matsim.core.mobsim.framework.events.MobsimAfterSimStepEvent;
+import org.matsim.core.mobsim.framework.events.MobsimBeforeCleanupEvent;
 import org.matsim.core.mobsim.framework.events.MobsimBeforeSimStepEvent;
 import org.matsim.core.mobsim.framework.events.MobsimInitializedEvent;
 import org.matsim.core.mobsim.framework.listeners.FixedOrderSimulationListener;
@@ -47,6 +51,7 @@ import org.matsim.core.mobsim.framework.listeners.MobsimInitializedListener;
 import org.matsim.core.router.util.TravelTime;
 import org.matsim.core.scenario.ScenarioUtils;
 import org.matsim.testcases.MatsimTestCase;
+import org.matsim.vehicles.Vehicle;
 
 /**
  * @author cdobler
@@ -118,6 +123,61 @@ public class TravelTimeCollectorTest extends MatsimTestCase {
 		controler.run();
 	}
 
+	/**
+	 * Handles the events of several vehicles from several threads at the same time
+	 * and checks that the travel times are published only at the next time step.
+	 */
+	@Test
+	public void testConcurrentEventHandling() throws InterruptedException {
+		Config config = loadConfig("test/scenarios/equil/config.xml");
+		config.global().setNumberOfThreads(2);
+		Scenario scenario = ScenarioUtils.loadScenario(config);
+		final Id<Link> linkId = Id.create("6", Link.class);
+		Link link = scenario.getNetwork().getLinks().get(linkId);
+		Link otherLink = scenario.getNetwork().getLinks().get(Id.create("1", Link.class));
+		double freeSpeedTravelTime = link.getLength() / link.getFreespeed();
+
+		final TravelTimeCollector travelTime = new TravelTimeCollector(scenario, null);
+		travelTime.notifyMobsimInitialized(new MobsimInitializedEvent<Mobsim>(null));
+		assertEquals(freeSpeedTravelTime, travelTime.getLinkTravelTime(link, 0.0, null, null), 0.0);
+
+		// every thread handles the events of its own vehicles, the trips take 400 to 404 seconds
+		Thread[] threads = new Thread[4];
+		for (int i = 0; i < threads.length; i++) {
+			final int thread = i;
+			threads[i] = new Thread(new Runnable() {
+				@Override
+				public void run() {
+					for (int j = 0; j < 1000; j++) {
+						Id<Vehicle> vehicleId = Id.create(thread + "_" + j, Vehicle.class);
+						travelTime.handleEvent(new LinkEnterEvent(0.0, vehicleId, linkId));
+						travelTime.handleEvent(new LinkLeaveEvent(400.0 + j % 5, vehicleId, linkId));
+					}
+				}
+			});
+			threads[i].start();
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+		assertEquals(freeSpeedTravelTime, travelTime.getLinkTravelTime(link, 405.0, null, null), 0.0);
+
+		travelTime.notifyMobsimBeforeSimStep(new MobsimBeforeSimStepEvent<Mobsim>(null, 410.0));
+		assertEquals(402.0, travelTime.getLinkTravelTime(link, 410.0, null, null), 1e-9);
+		assertEquals(otherLink.getLength() / otherLink.getFreespeed(), travelTime.getLinkTravelTime(otherLink, 410.0, null, null), 0.0);
+
+		// trips finished after the update are not seen before the next time step
+		travelTime.handleEvent(new LinkEnterEvent(1500.0, Id.create("late", Vehicle.class), linkId));
+		travelTime.handleEvent(new LinkLeaveEvent(1900.0, Id.create("late", Vehicle.class), linkId));
+		assertEquals(402.0, travelTime.getLinkTravelTime(link, 1900.0, null, null), 1e-9);
+
+		// the other trips have left the time window
+		travelTime.notifyMobsimBeforeSimStep(new MobsimBeforeSimStepEvent<Mobsim>(null, 2000.0));
+		assertEquals(400.0, travelTime.getLinkTravelTime(link, 2000.0, null, null), 1e-9);
+
+		travelTime.notifyMobsimBeforeCleanup(new MobsimBeforeCleanupEvent<Mobsim>(null));
+	}
+
 	/**
 	 * Check travel times before and after a time step.
 	 * 